@@ -17,7 +17,12 @@ android {
     }
 
     buildTypes {
+        debug {
+            buildConfigField("boolean", "GL_ERROR_CHECKS", "true")
+        }
         release {
+            // A constant false lets the compiler strip all OpenGL error checks from release builds
+            buildConfigField("boolean", "GL_ERROR_CHECKS", "false")
             isMinifyEnabled = false
             proguardFiles(
                 getDefaultProguardFile("proguard-android-optimize.txt"),
@@ -25,6 +30,13 @@ android {
             )
         }
     }
+    buildFeatures {
+        buildConfig = true
+    }
+    androidResources {
+        // Asset archives are memory mapped, which requires them to be stored uncompressed
+        noCompress += "pak"
+    }
     compileOptions {
         sourceCompatibility = JavaVersion.VERSION_1_8
         targetCompatibility = JavaVersion.VERSION_1_8
@@ -33,6 +45,7 @@ android {
 
 dependencies {
 
+    implementation(project(":core"))
     implementation(libs.appcompat)
     implementation(libs.material)
     implementation(libs.activity)
@@ -0,0 +1,144 @@
+package com.tembins.tagdk.audio;
+
+import android.content.Context;
+import android.media.AudioAttributes;
+import android.media.AudioFormat;
+import android.media.AudioManager;
+import android.media.AudioTrack;
+import android.os.Process;
+import android.util.Log;
+
+import java.util.Arrays;
+
+/**
+ * Plays the output of an AudioMixer through an AudioTrack in low latency mode. The track uses the
+ * native sample rate and buffer size of the device, which lets it take the fast mixer path, and
+ * is fed by a dedicated thread with urgent audio priority that mixes one buffer after another and
+ * blocks while the track is full. The output has to be stopped together with its activity.
+ */
+public final class AudioTrackOutput {
+
+    private static final int DEFAULT_SAMPLE_RATE = 48000;
+    private static final int DEFAULT_FRAMES_PER_BUFFER = 256;
+
+    private final AudioMixer mixer;
+    private final AudioTrack track;
+    private final int framesPerBuffer;
+    private volatile boolean running;
+    private Thread thread;
+
+    /**
+     * Initializes the output with the following parameters:
+     *
+     * @param context The context to query the native audio properties from.
+     * @param maxVoices The largest amount of voices playing at once.
+     * @param commandCapacity The amount of commands the game thread can issue between two buffers.
+     */
+    public AudioTrackOutput(final Context context, final int maxVoices, final int commandCapacity) {
+        final AudioManager audioManager = (AudioManager) context.getSystemService(Context.AUDIO_SERVICE);
+        final int sampleRate = parseProperty(audioManager,
+                AudioManager.PROPERTY_OUTPUT_SAMPLE_RATE, DEFAULT_SAMPLE_RATE);
+        framesPerBuffer = parseProperty(audioManager,
+                AudioManager.PROPERTY_OUTPUT_FRAMES_PER_BUFFER, DEFAULT_FRAMES_PER_BUFFER);
+        mixer = new AudioMixer(sampleRate, maxVoices, commandCapacity);
+
+        // Two bursts keep the track fed while the next one is mixed
+        final int bytesPerFrame = AudioMixer.CHANNEL_COUNT * 4;
+        track = new AudioTrack.Builder()
+                .setAudioAttributes(new AudioAttributes.Builder()
+                        .setUsage(AudioAttributes.USAGE_GAME)
+                        .setContentType(AudioAttributes.CONTENT_TYPE_SONIFICATION)
+                        .build())
+                .setAudioFormat(new AudioFormat.Builder()
+                        .setEncoding(AudioFormat.ENCODING_PCM_FLOAT)
+                        .setSampleRate(sampleRate)
+                        .setChannelMask(AudioFormat.CHANNEL_OUT_STEREO)
+                        .build())
+                .setBufferSizeInBytes(framesPerBuffer * 2 * bytesPerFrame)
+                .setPerformanceMode(AudioTrack.PERFORMANCE_MODE_LOW_LATENCY)
+                .setTransferMode(AudioTrack.MODE_STREAM)
+                .build();
+    }
+
+    private static int parseProperty(final AudioManager audioManager, final String key, final int fallback) {
+        final String value = audioManager.getProperty(key);
+        try {
+            return value == null ? fallback : Integer.parseInt(value);
+        } catch(NumberFormatException exception) {
+            return fallback;
+        }
+    }
+
+    /**
+     * Starts playback and the mixing thread.
+     */
+    public void start() {
+        if(running)
+            return;
+
+        running = true;
+        track.play();
+        thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                Process.setThreadPriority(Process.THREAD_PRIORITY_URGENT_AUDIO);
+                final float[] buffer = new float[framesPerBuffer * AudioMixer.CHANNEL_COUNT];
+                while(running) {
+                    try {
+                        mixer.mix(buffer, framesPerBuffer);
+                    } catch(RuntimeException exception) {
+                        // A broken buffer is played as silence instead of ending all audio
+                        Log.e("AudioTrackOutput", "Mixing failed", exception);
+                        Arrays.fill(buffer, 0.0f);
+                    }
+                    track.write(buffer, 0, buffer.length, AudioTrack.WRITE_BLOCKING);
+                }
+            }
+        }, "AudioMixer");
+        thread.start();
+    }
+
+    /**
+     * Stops the mixing thread and pauses playback. Playing voices continue after start().
+     */
+    public void stop() {
+        if(!running)
+            return;
+
+        running = false;
+        try {
+            thread.join();
+        } catch(InterruptedException exception) {
+            Thread.currentThread().interrupt();
+        }
+        thread = null;
+        track.pause();
+        track.flush();
+    }
+
+    /**
+     * Stops playback and frees the track. The output can not be started again.
+     */
+    public void release() {
+        stop();
+        track.release();
+    }
+
+    /**
+     * Returns the mixer fed into the track, to be controlled by the game thread.
+     *
+     * @return The mixer.
+     */
+    public AudioMixer getMixer() {
+        return mixer;
+    }
+
+    /**
+     * Returns the amount of frames mixed per buffer.
+     *
+     * @return The frames per buffer.
+     */
+    public int getFramesPerBuffer() {
+        return framesPerBuffer;
+    }
+}
@@ -0,0 +1,450 @@
+package com.tembins.tagdk.graphics.backend;
+
+import android.opengl.GLES30;
+import android.util.Log;
+
+import com.tembins.tagdk.graphics.util.ErrorCheckLevel;
+import com.tembins.tagdk.graphics.util.OpenGLError;
+import com.tembins.tagdk.graphics.util.OpenGLUtil;
+import com.tembins.tagdk.profiling.FrameProfiler;
+
+import java.nio.Buffer;
+
+/**
+ * The GraphicsBackend executing all calls with OpenGL ES 3.0. Must only be used on the GL thread.
+ * If a FrameProfiler is given, draw calls, binds and state changes, uploaded bytes and loaded
+ * resources are added to its frame counters. Depending on OpenGLUtil.getErrorCheckLevel(), errors are checked and
+ * logged after every draw call (PER_DRAW) or additionally after every bind and state change
+ * (PARANOID).
+ */
+public final class GLESBackend implements GraphicsBackend {
+
+    private final FrameProfiler profiler;
+    private final int[] names = new int[1];
+    private final int[] parameters = new int[1];
+
+    /**
+     * Initializes the backend without profiling.
+     */
+    public GLESBackend() {
+        this(null);
+    }
+
+    /**
+     * Initializes the backend with the following parameters:
+     *
+     * @param profiler The profiler of the GL thread to count calls with, or null.
+     */
+    public GLESBackend(final FrameProfiler profiler) {
+        this.profiler = profiler;
+    }
+
+    private void count(final FrameProfiler.Counter counter, final long amount) {
+        if(profiler != null)
+            profiler.count(counter, amount);
+    }
+
+    private static void check(final ErrorCheckLevel level, final String call) {
+        final OpenGLError error = OpenGLUtil.checkError(level);
+        if(error != null)
+            Log.e("GLESBackend", "OpenGL error " + error.category + " after " + call);
+    }
+
+    // Buffers
+
+    @Override
+    public int createBuffer() {
+        GLES30.glGenBuffers(1, names, 0);
+        return names[0];
+    }
+
+    @Override
+    public void deleteBuffer(final int buffer) {
+        names[0] = buffer;
+        GLES30.glDeleteBuffers(1, names, 0);
+    }
+
+    @Override
+    public void bindBuffer(final int target, final int buffer) {
+        GLES30.glBindBuffer(target, buffer);
+        check(ErrorCheckLevel.PARANOID, "glBindBuffer");
+        count(FrameProfiler.Counter.STATE_CHANGES, 1L);
+    }
+
+    @Override
+    public void bufferData(final int target, final int sizeBytes, final Buffer data, final int usage) {
+        GLES30.glBufferData(target, sizeBytes, data, usage);
+        if(data != null)
+            count(FrameProfiler.Counter.UPLOADED_BYTES, sizeBytes);
+    }
+
+    @Override
+    public void bufferSubData(final int target, final int offsetBytes, final int sizeBytes, final Buffer data) {
+        GLES30.glBufferSubData(target, offsetBytes, sizeBytes, data);
+        count(FrameProfiler.Counter.UPLOADED_BYTES, sizeBytes);
+    }
+
+    // Vertex arrays
+
+    @Override
+    public int createVertexArray() {
+        GLES30.glGenVertexArrays(1, names, 0);
+        return names[0];
+    }
+
+    @Override
+    public void deleteVertexArray(final int vertexArray) {
+        names[0] = vertexArray;
+        GLES30.glDeleteVertexArrays(1, names, 0);
+    }
+
+    @Override
+    public void bindVertexArray(final int vertexArray) {
+        GLES30.glBindVertexArray(vertexArray);
+        check(ErrorCheckLevel.PARANOID, "glBindVertexArray");
+        count(FrameProfiler.Counter.STATE_CHANGES, 1L);
+    }
+
+    @Override
+    public void enableVertexAttribArray(final int index) {
+        GLES30.glEnableVertexAttribArray(index);
+    }
+
+    @Override
+    public void vertexAttribPointer(final int index, final int size, final int type, final boolean normalized,
+                                    final int strideBytes, final int offsetBytes) {
+        GLES30.glVertexAttribPointer(index, size, type, normalized, strideBytes, offsetBytes);
+    }
+
+    @Override
+    public void vertexAttribDivisor(final int index, final int divisor) {
+        GLES30.glVertexAttribDivisor(index, divisor);
+    }
+
+    // Textures
+
+    @Override
+    public int createTexture() {
+        GLES30.glGenTextures(1, names, 0);
+        return names[0];
+    }
+
+    @Override
+    public void deleteTexture(final int texture) {
+        names[0] = texture;
+        GLES30.glDeleteTextures(1, names, 0);
+    }
+
+    @Override
+    public void activeTexture(final int unit) {
+        GLES30.glActiveTexture(unit);
+        check(ErrorCheckLevel.PARANOID, "glActiveTexture");
+        count(FrameProfiler.Counter.STATE_CHANGES, 1L);
+    }
+
+    @Override
+    public void bindTexture(final int target, final int texture) {
+        GLES30.glBindTexture(target, texture);
+        check(ErrorCheckLevel.PARANOID, "glBindTexture");
+        count(FrameProfiler.Counter.STATE_CHANGES, 1L);
+    }
+
+    @Override
+    public void texParameteri(final int target, final int parameter, final int value) {
+        GLES30.glTexParameteri(target, parameter, value);
+    }
+
+    @Override
+    public void texImage2D(final int target, final int level, final int internalFormat, final int width, final int height,
+                           final int format, final int type, final Buffer pixels) {
+        GLES30.glTexImage2D(target, level, internalFormat, width, height, 0, format, type, pixels);
+        if(pixels != null)
+            count(FrameProfiler.Counter.UPLOADED_BYTES, GLConstants.getImageSize(width, height, format, type));
+    }
+
+    @Override
+    public void texSubImage2D(final int target, final int level, final int x, final int y, final int width, final int height,
+                              final int format, final int type, final Buffer pixels) {
+        GLES30.glTexSubImage2D(target, level, x, y, width, height, format, type, pixels);
+        count(FrameProfiler.Counter.UPLOADED_BYTES, GLConstants.getImageSize(width, height, format, type));
+    }
+
+    @Override
+    public void generateMipmap(final int target) {
+        GLES30.glGenerateMipmap(target);
+    }
+
+    // Framebuffers
+
+    @Override
+    public int createFramebuffer() {
+        GLES30.glGenFramebuffers(1, names, 0);
+        return names[0];
+    }
+
+    @Override
+    public void deleteFramebuffer(final int framebuffer) {
+        names[0] = framebuffer;
+        GLES30.glDeleteFramebuffers(1, names, 0);
+    }
+
+    @Override
+    public void bindFramebuffer(final int target, final int framebuffer) {
+        GLES30.glBindFramebuffer(target, framebuffer);
+        check(ErrorCheckLevel.PARANOID, "glBindFramebuffer");
+        count(FrameProfiler.Counter.STATE_CHANGES, 1L);
+    }
+
+    @Override
+    public void framebufferTexture2D(final int target, final int attachment, final int textureTarget,
+                                     final int texture, final int level) {
+        GLES30.glFramebufferTexture2D(target, attachment, textureTarget, texture, level);
+    }
+
+    @Override
+    public void framebufferRenderbuffer(final int target, final int attachment, final int renderbufferTarget,
+                                        final int renderbuffer) {
+        GLES30.glFramebufferRenderbuffer(target, attachment, renderbufferTarget, renderbuffer);
+    }
+
+    @Override
+    public int checkFramebufferStatus(final int target) {
+        return GLES30.glCheckFramebufferStatus(target);
+    }
+
+    @Override
+    public void blitFramebuffer(final int sourceX0, final int sourceY0, final int sourceX1, final int sourceY1,
+                                final int destinationX0, final int destinationY0, final int destinationX1,
+                                final int destinationY1, final int mask, final int filter) {
+        GLES30.glBlitFramebuffer(sourceX0, sourceY0, sourceX1, sourceY1,
+                destinationX0, destinationY0, destinationX1, destinationY1, mask, filter);
+        check(ErrorCheckLevel.PER_DRAW, "glBlitFramebuffer");
+        count(FrameProfiler.Counter.DRAW_CALLS, 1L);
+    }
+
+    @Override
+    public void invalidateFramebuffer(final int target, final int count, final int[] attachments, final int offset) {
+        GLES30.glInvalidateFramebuffer(target, count, attachments, offset);
+    }
+
+    @Override
+    public int createRenderbuffer() {
+        GLES30.glGenRenderbuffers(1, names, 0);
+        return names[0];
+    }
+
+    @Override
+    public void deleteRenderbuffer(final int renderbuffer) {
+        names[0] = renderbuffer;
+        GLES30.glDeleteRenderbuffers(1, names, 0);
+    }
+
+    @Override
+    public void bindRenderbuffer(final int target, final int renderbuffer) {
+        GLES30.glBindRenderbuffer(target, renderbuffer);
+        check(ErrorCheckLevel.PARANOID, "glBindRenderbuffer");
+        count(FrameProfiler.Counter.STATE_CHANGES, 1L);
+    }
+
+    @Override
+    public void renderbufferStorage(final int target, final int internalFormat, final int width, final int height) {
+        GLES30.glRenderbufferStorage(target, internalFormat, width, height);
+    }
+
+    // Shaders
+
+    @Override
+    public int createShader(final int type) {
+        return GLES30.glCreateShader(type);
+    }
+
+    @Override
+    public void shaderSource(final int shader, final String source) {
+        GLES30.glShaderSource(shader, source);
+    }
+
+    @Override
+    public void compileShader(final int shader) {
+        GLES30.glCompileShader(shader);
+    }
+
+    @Override
+    public int getShaderi(final int shader, final int parameter) {
+        GLES30.glGetShaderiv(shader, parameter, parameters, 0);
+        return parameters[0];
+    }
+
+    @Override
+    public String getShaderInfoLog(final int shader) {
+        return GLES30.glGetShaderInfoLog(shader);
+    }
+
+    @Override
+    public void deleteShader(final int shader) {
+        GLES30.glDeleteShader(shader);
+    }
+
+    @Override
+    public int createProgram() {
+        return GLES30.glCreateProgram();
+    }
+
+    @Override
+    public void attachShader(final int program, final int shader) {
+        GLES30.glAttachShader(program, shader);
+    }
+
+    @Override
+    public void detachShader(final int program, final int shader) {
+        GLES30.glDetachShader(program, shader);
+    }
+
+    @Override
+    public void linkProgram(final int program) {
+        GLES30.glLinkProgram(program);
+    }
+
+    @Override
+    public int getProgrami(final int program, final int parameter) {
+        GLES30.glGetProgramiv(program, parameter, parameters, 0);
+        return parameters[0];
+    }
+
+    @Override
+    public String getProgramInfoLog(final int program) {
+        return GLES30.glGetProgramInfoLog(program);
+    }
+
+    @Override
+    public void deleteProgram(final int program) {
+        GLES30.glDeleteProgram(program);
+    }
+
+    @Override
+    public void useProgram(final int program) {
+        GLES30.glUseProgram(program);
+        check(ErrorCheckLevel.PARANOID, "glUseProgram");
+        count(FrameProfiler.Counter.STATE_CHANGES, 1L);
+    }
+
+    @Override
+    public int getUniformLocation(final int program, final String name) {
+        return GLES30.glGetUniformLocation(program, name);
+    }
+
+    @Override
+    public void uniform1i(final int location, final int value) {
+        GLES30.glUniform1i(location, value);
+    }
+
+    @Override
+    public void uniform1f(final int location, final float value) {
+        GLES30.glUniform1f(location, value);
+    }
+
+    @Override
+    public void uniform4f(final int location, final float x, final float y, final float z, final float w) {
+        GLES30.glUniform4f(location, x, y, z, w);
+    }
+
+    @Override
+    public void uniform4fv(final int location, final int count, final float[] values, final int offset) {
+        GLES30.glUniform4fv(location, count, values, offset);
+    }
+
+    @Override
+    public void uniformMatrix4fv(final int location, final int count, final float[] values, final int offset) {
+        // The engine stores matrices row by row, OpenGL expects them column by column
+        GLES30.glUniformMatrix4fv(location, count, true, values, offset);
+    }
+
+    // State
+
+    @Override
+    public void enable(final int capability) {
+        GLES30.glEnable(capability);
+        check(ErrorCheckLevel.PARANOID, "glEnable");
+        count(FrameProfiler.Counter.STATE_CHANGES, 1L);
+    }
+
+    @Override
+    public void disable(final int capability) {
+        GLES30.glDisable(capability);
+        check(ErrorCheckLevel.PARANOID, "glDisable");
+        count(FrameProfiler.Counter.STATE_CHANGES, 1L);
+    }
+
+    @Override
+    public void blendFunc(final int sourceFactor, final int destinationFactor) {
+        GLES30.glBlendFunc(sourceFactor, destinationFactor);
+        check(ErrorCheckLevel.PARANOID, "glBlendFunc");
+        count(FrameProfiler.Counter.STATE_CHANGES, 1L);
+    }
+
+    @Override
+    public void depthMask(final boolean enabled) {
+        GLES30.glDepthMask(enabled);
+        check(ErrorCheckLevel.PARANOID, "glDepthMask");
+        count(FrameProfiler.Counter.STATE_CHANGES, 1L);
+    }
+
+    @Override
+    public void viewport(final int x, final int y, final int width, final int height) {
+        GLES30.glViewport(x, y, width, height);
+        check(ErrorCheckLevel.PARANOID, "glViewport");
+        count(FrameProfiler.Counter.STATE_CHANGES, 1L);
+    }
+
+    @Override
+    public void clearColor(final float red, final float green, final float blue, final float alpha) {
+        GLES30.glClearColor(red, green, blue, alpha);
+    }
+
+    @Override
+    public void clear(final int mask) {
+        GLES30.glClear(mask);
+    }
+
+    // Drawing
+
+    @Override
+    public void drawArrays(final int mode, final int first, final int count) {
+        GLES30.glDrawArrays(mode, first, count);
+        check(ErrorCheckLevel.PER_DRAW, "glDrawArrays");
+        count(FrameProfiler.Counter.DRAW_CALLS, 1L);
+    }
+
+    @Override
+    public void drawElements(final int mode, final int count, final int type, final int offsetBytes) {
+        GLES30.glDrawElements(mode, count, type, offsetBytes);
+        check(ErrorCheckLevel.PER_DRAW, "glDrawElements");
+        count(FrameProfiler.Counter.DRAW_CALLS, 1L);
+    }
+
+    @Override
+    public void drawElementsInstanced(final int mode, final int count, final int type, final int offsetBytes,
+                                      final int instanceCount) {
+        GLES30.glDrawElementsInstanced(mode, count, type, offsetBytes, instanceCount);
+        check(ErrorCheckLevel.PER_DRAW, "glDrawElementsInstanced");
+        count(FrameProfiler.Counter.DRAW_CALLS, 1L);
+    }
+
+    // Errors
+
+    @Override
+    public OpenGLError checkError(final ErrorCheckLevel level) {
+        return OpenGLUtil.checkError(level);
+    }
+
+    @Override
+    public void clearErrors(final ErrorCheckLevel level) {
+        OpenGLUtil.clearErrors(level);
+    }
+
+    // Statistics
+
+    @Override
+    public void countLoadedResource() {
+        count(FrameProfiler.Counter.LOADED_RESOURCES, 1L);
+    }
+}
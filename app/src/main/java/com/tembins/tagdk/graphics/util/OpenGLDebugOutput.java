@@ -0,0 +1,173 @@
+package com.tembins.tagdk.graphics.util;
+
+import android.opengl.GLES20;
+import android.opengl.GLES31Ext;
+import android.opengl.GLES32;
+import android.util.Log;
+
+/**
+ * Integrates the OpenGL debug output (core in OpenGL ES 3.2, KHR_debug extension before), which
+ * makes the driver report errors and warnings with a description instead of bare error codes.
+ * If possible, messages are delivered asynchronously through a callback. Where the Java bindings
+ * do not support the callback, the message log is read once per frame by pollMessages() instead.
+ * Either way, no glGetError round trips are needed after draw calls while debug output is enabled.
+ */
+public final class OpenGLDebugOutput {
+
+    /**
+     * Receives debug messages. May be called on any thread when the callback is active.
+     */
+    public interface MessageListener {
+
+        /**
+         * Called for every debug message.
+         *
+         * @param source The source of the message, e.g. GL_DEBUG_SOURCE_API.
+         * @param type The type of the message, e.g. GL_DEBUG_TYPE_ERROR.
+         * @param id The implementation specific message ID.
+         * @param severity The severity of the message, e.g. GL_DEBUG_SEVERITY_HIGH.
+         * @param message The human readable message.
+         */
+        void onMessage(final int source, final int type, final int id, final int severity, final String message);
+    }
+
+    /**
+     * Logs errors and high severity messages as errors, everything else as debug messages.
+     */
+    public static final MessageListener LOG_LISTENER = new MessageListener() {
+        @Override
+        public void onMessage(final int source, final int type, final int id, final int severity, final String message) {
+            if(type == GLES32.GL_DEBUG_TYPE_ERROR || severity == GLES32.GL_DEBUG_SEVERITY_HIGH)
+                Log.e("OpenGLDebugOutput", message + " (ID " + id + ")");
+            else
+                Log.d("OpenGLDebugOutput", message + " (ID " + id + ")");
+        }
+    };
+
+    private static final int POLL_BATCH_SIZE = 16;
+
+    private static MessageListener listener;
+    private static boolean core;
+    private static boolean enabled;
+    private static boolean callbackActive;
+
+    private static final int[] sources = new int[POLL_BATCH_SIZE];
+    private static final int[] types = new int[POLL_BATCH_SIZE];
+    private static final int[] ids = new int[POLL_BATCH_SIZE];
+    private static final int[] severities = new int[POLL_BATCH_SIZE];
+
+    /**
+     * Enables debug output for the current context. Must be called on the GL thread. Does nothing
+     * in builds without error checks.
+     *
+     * @param messageListener The listener receiving all messages.
+     * @return True if debug output is supported and now enabled.
+     */
+    public static boolean enable(final MessageListener messageListener) {
+        if(!OpenGLUtil.ERROR_CHECKS_COMPILED)
+            return false;
+
+        final String version = GLES20.glGetString(GLES20.GL_VERSION);
+        final String extensions = GLES20.glGetString(GLES20.GL_EXTENSIONS);
+        core = version != null && isAtLeastES32(version);
+
+        if(!core && (extensions == null || !extensions.contains("GL_KHR_debug")))
+            return false;
+
+        listener = messageListener;
+        GLES20.glEnable(GLES32.GL_DEBUG_OUTPUT);
+
+        try {
+            if(core) {
+                GLES32.glDebugMessageCallback(new GLES32.DebugProc() {
+                    @Override
+                    public void onMessage(final int source, final int type, final int id, final int severity, final String message) {
+                        listener.onMessage(source, type, id, severity, message);
+                    }
+                });
+            } else {
+                GLES31Ext.glDebugMessageCallbackKHR(new GLES31Ext.DebugProcKHR() {
+                    @Override
+                    public void onMessage(final int source, final int type, final int id, final int severity, final String message) {
+                        listener.onMessage(source, type, id, severity, message);
+                    }
+                });
+            }
+            callbackActive = true;
+        } catch(UnsupportedOperationException exception) {
+            // Some Android versions declare but do not implement the callback binding
+            callbackActive = false;
+        }
+
+        enabled = true;
+        return true;
+    }
+
+    private static boolean isAtLeastES32(final String version) {
+        // The version string is "OpenGL ES major.minor vendor-specific"
+        final String prefix = "OpenGL ES ";
+        if(!version.startsWith(prefix) || version.length() < prefix.length() + 3)
+            return false;
+
+        final int major = version.charAt(prefix.length()) - '0';
+        final int minor = version.charAt(prefix.length() + 2) - '0';
+        return major > 3 || (major == 3 && minor >= 2);
+    }
+
+    /**
+     * Disables debug output for the current context. Must be called on the GL thread.
+     */
+    public static void disable() {
+        if(!enabled)
+            return;
+
+        GLES20.glDisable(GLES32.GL_DEBUG_OUTPUT);
+        enabled = false;
+        callbackActive = false;
+    }
+
+    /**
+     * Delivers all messages queued in the message log to the listener. Should be called once per
+     * frame on the GL thread. Does nothing while the callback is active, as messages are
+     * delivered right away then.
+     *
+     * @return The amount of delivered messages.
+     */
+    public static int pollMessages() {
+        if(!enabled || callbackActive)
+            return 0;
+
+        int delivered = 0;
+        while(true) {
+            final String[] messages = core ?
+                    GLES32.glGetDebugMessageLog(POLL_BATCH_SIZE, sources, 0, types, 0, ids, 0, severities, 0) :
+                    GLES31Ext.glGetDebugMessageLogKHR(POLL_BATCH_SIZE, sources, 0, types, 0, ids, 0, severities, 0);
+
+            if(messages == null || messages.length == 0)
+                return delivered;
+
+            for(int index = 0; index < messages.length; index++)
+                listener.onMessage(sources[index], types[index], ids[index], severities[index], messages[index]);
+
+            delivered += messages.length;
+        }
+    }
+
+    /**
+     * Returns whether debug output is enabled, either through the callback or through polling.
+     *
+     * @return True if debug output is enabled.
+     */
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Returns whether messages are delivered through the asynchronous callback.
+     *
+     * @return True if the callback is active, false if messages have to be polled.
+     */
+    public static boolean isCallbackActive() {
+        return callbackActive;
+    }
+}
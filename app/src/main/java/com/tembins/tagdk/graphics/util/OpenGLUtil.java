@@ -3,11 +3,52 @@ package com.tembins.tagdk.graphics.util;
 import android.opengl.GLES20;
 import android.util.Log;
 
+import com.tembins.tagdk.BuildConfig;
+
 /**
  * Provides utility methods for dealing with OpenGL.
  */
 public class OpenGLUtil {
 
+    /**
+     * Whether error checks are compiled into this build. This is a compile time constant, so all
+     * checks guarded by it are removed from release builds.
+     */
+    public static final boolean ERROR_CHECKS_COMPILED = BuildConfig.GL_ERROR_CHECKS;
+
+    private static ErrorCheckLevel errorCheckLevel = ERROR_CHECKS_COMPILED ? ErrorCheckLevel.LOAD_ONLY : ErrorCheckLevel.OFF;
+
+    /**
+     * Sets how often OpenGL errors are checked. Has no effect in builds without error checks.
+     * Should be set before rendering starts, as the level is read without synchronization.
+     *
+     * @param level The new error check level.
+     */
+    public static void setErrorCheckLevel(final ErrorCheckLevel level) {
+        if(ERROR_CHECKS_COMPILED)
+            errorCheckLevel = level;
+    }
+
+    /**
+     * Returns how often OpenGL errors are checked.
+     *
+     * @return The current error check level.
+     */
+    public static ErrorCheckLevel getErrorCheckLevel() {
+        return errorCheckLevel;
+    }
+
+    /**
+     * Returns whether checks of the given level are currently performed.
+     *
+     * @param level The level of the check, e.g. ErrorCheckLevel.PER_DRAW for a check after a
+     *              draw call.
+     * @return True if the check should be performed.
+     */
+    public static boolean isChecking(final ErrorCheckLevel level) {
+        return ERROR_CHECKS_COMPILED && errorCheckLevel.includes(level);
+    }
+
     /**
      * Returns the oldest OpenGL error code if one exists. If none exists, GL_NO_ERROR will be
      * returned.
@@ -29,15 +70,48 @@ public class OpenGLUtil {
         if(rawErrorCode == GLES20.GL_NO_ERROR)
             return null;
 
-        return new OpenGLError(rawErrorCode);
+        return OpenGLError.of(rawErrorCode);
+    }
+
+    /**
+     * Returns the oldest OpenGL error if checks of the given level are performed. Checks after
+     * draw calls and state changes are skipped while OpenGLDebugOutput is enabled, as it already
+     * reports those errors and glGetError forces a round trip to the driver.
+     *
+     * @param level The level of the check.
+     * @return The oldest OpenGL error, or null if none exists or the check is not performed.
+     */
+    public static OpenGLError checkError(final ErrorCheckLevel level) {
+        if(!isChecking(level))
+            return null;
+
+        if(level != ErrorCheckLevel.LOAD_ONLY && OpenGLDebugOutput.isEnabled())
+            return null;
+
+        return getError();
     }
 
     /**
      * Clears all still existing OpenGL error codes.
+     *
+     * @param logErrors Whether the cleared errors should be logged.
      */
     public static void clearErrors(final boolean logErrors) {
         OpenGLError error = null;
-        while((error = getError()) != null)
-            Log.e("OpenGLUtil", "Encountered error while clearing error codes: " + error.category);
+        while((error = getError()) != null) {
+            if(logErrors)
+                Log.e("OpenGLUtil", "Encountered error while clearing error codes: " + error.category);
+        }
+    }
+
+    /**
+     * Clears and logs all still existing OpenGL error codes if checks of the given level are
+     * performed.
+     *
+     * @param level The level of the check.
+     */
+    public static void clearErrors(final ErrorCheckLevel level) {
+        if(isChecking(level))
+            clearErrors(true);
     }
 }
@@ -0,0 +1,88 @@
+package com.tembins.tagdk.input;
+
+import android.view.KeyEvent;
+import android.view.MotionEvent;
+import android.view.View;
+
+/**
+ * Forwards the touch and key events of a view, e.g. a GameSurfaceView, into an InputQueue read by
+ * the simulation thread. The events are copied into the primitive records of the queue right
+ * away, so no MotionEvent is kept and nothing is allocated.
+ *
+ * Move events batch all samples since the previous event. Those historical samples are pushed
+ * too, each with its own timestamp, so the simulation sees the full path of fast gestures and can
+ * apply every sample in the tick it belongs to.
+ */
+public final class InputEventAdapter implements View.OnTouchListener, View.OnKeyListener {
+
+    private static final long NANOS_PER_MILLISECOND = 1000000L;
+
+    private final InputQueue queue;
+
+    /**
+     * Initializes the adapter with the following parameters:
+     *
+     * @param queue The queue to push the events into, produced only by the main thread.
+     */
+    public InputEventAdapter(final InputQueue queue) {
+        this.queue = queue;
+    }
+
+    @Override
+    public boolean onTouch(final View view, final MotionEvent event) {
+        // Event times are in the uptime base, which matches System.nanoTime() on Android
+        final long timeNanos = event.getEventTime() * NANOS_PER_MILLISECOND;
+
+        switch(event.getActionMasked()) {
+            case MotionEvent.ACTION_DOWN:
+            case MotionEvent.ACTION_POINTER_DOWN:
+                push(InputQueue.TOUCH_DOWN, event, event.getActionIndex(), timeNanos);
+                break;
+            case MotionEvent.ACTION_UP:
+            case MotionEvent.ACTION_POINTER_UP:
+                push(InputQueue.TOUCH_UP, event, event.getActionIndex(), timeNanos);
+                break;
+            case MotionEvent.ACTION_MOVE:
+                final int pointerCount = event.getPointerCount();
+                for(int sample = 0; sample < event.getHistorySize(); sample++) {
+                    final long sampleNanos = event.getHistoricalEventTime(sample) * NANOS_PER_MILLISECOND;
+                    for(int pointer = 0; pointer < pointerCount; pointer++)
+                        queue.push(InputQueue.TOUCH_MOVE, event.getPointerId(pointer),
+                                event.getHistoricalX(pointer, sample), event.getHistoricalY(pointer, sample),
+                                sampleNanos);
+                }
+                for(int pointer = 0; pointer < pointerCount; pointer++)
+                    push(InputQueue.TOUCH_MOVE, event, pointer, timeNanos);
+                break;
+            case MotionEvent.ACTION_CANCEL:
+                for(int pointer = 0; pointer < event.getPointerCount(); pointer++)
+                    push(InputQueue.TOUCH_CANCEL, event, pointer, timeNanos);
+                break;
+            default:
+                return false;
+        }
+        return true;
+    }
+
+    private void push(final int type, final MotionEvent event, final int pointer, final long timeNanos) {
+        queue.push(type, event.getPointerId(pointer), event.getX(pointer), event.getY(pointer), timeNanos);
+    }
+
+    @Override
+    public boolean onKey(final View view, final int keyCode, final KeyEvent event) {
+        final long timeNanos = event.getEventTime() * NANOS_PER_MILLISECOND;
+
+        switch(event.getAction()) {
+            case KeyEvent.ACTION_DOWN:
+                // Auto repeated key downs are consumed but not queued, the simulation tracks held keys
+                if(event.getRepeatCount() == 0)
+                    queue.push(InputQueue.KEY_DOWN, keyCode, 0.0f, 0.0f, timeNanos);
+                return true;
+            case KeyEvent.ACTION_UP:
+                queue.push(InputQueue.KEY_UP, keyCode, 0.0f, 0.0f, timeNanos);
+                return true;
+            default:
+                return false;
+        }
+    }
+}
@@ -0,0 +1,125 @@
+package com.tembins.tagdk.loop;
+
+import android.content.Context;
+import android.opengl.GLSurfaceView;
+import android.os.Process;
+import android.view.Choreographer;
+
+import java.util.concurrent.ThreadFactory;
+
+import javax.microedition.khronos.egl.EGLConfig;
+import javax.microedition.khronos.opengles.GL10;
+
+/**
+ * A GLSurfaceView driving a GameLoop with the display vsync. Every vsync reported by the
+ * Choreographer wakes the update thread of the loop and requests a new frame from the GL thread,
+ * which then draws the newest published render state. The view has to be paused and resumed
+ * together with its activity.
+ *
+ * @param <T> The render state type.
+ */
+public final class GameSurfaceView<T> extends GLSurfaceView implements Choreographer.FrameCallback {
+
+    private static final int GLES_VERSION = 3;
+
+    private final GameLoop<T> gameLoop;
+    private final StateBuffer<T> stateBuffer;
+    private final StateRenderer<T> stateRenderer;
+    private boolean resumed;
+
+    /**
+     * Initializes the view with the following parameters:
+     *
+     * @param context The activity context.
+     * @param gameLoop The loop running the simulation.
+     * @param stateBuffer The buffer the loop publishes its render states to.
+     * @param stateRenderer The renderer drawing the render states.
+     */
+    public GameSurfaceView(final Context context, final GameLoop<T> gameLoop,
+                           final StateBuffer<T> stateBuffer, final StateRenderer<T> stateRenderer) {
+        super(context);
+        this.gameLoop = gameLoop;
+        this.stateBuffer = stateBuffer;
+        this.stateRenderer = stateRenderer;
+
+        setEGLContextClientVersion(GLES_VERSION);
+        setPreserveEGLContextOnPause(true);
+        setRenderer(new BufferRenderer());
+        setRenderMode(RENDERMODE_WHEN_DIRTY);
+    }
+
+    /**
+     * Resumes the GL thread, starts the update thread and starts listening for vsync.
+     */
+    @Override
+    public void onResume() {
+        super.onResume();
+
+        gameLoop.start(new ThreadFactory() {
+            @Override
+            public Thread newThread(final Runnable runnable) {
+                return new Thread(new Runnable() {
+                    @Override
+                    public void run() {
+                        Process.setThreadPriority(Process.THREAD_PRIORITY_DISPLAY);
+                        runnable.run();
+                    }
+                }, "GameLoop-Update");
+            }
+        });
+
+        resumed = true;
+        Choreographer.getInstance().postFrameCallback(this);
+    }
+
+    /**
+     * Stops listening for vsync, stops the update thread and pauses the GL thread.
+     */
+    @Override
+    public void onPause() {
+        resumed = false;
+        Choreographer.getInstance().removeFrameCallback(this);
+
+        try {
+            gameLoop.stop();
+        } catch(InterruptedException exception) {
+            Thread.currentThread().interrupt();
+        }
+
+        super.onPause();
+    }
+
+    /**
+     * Called by the Choreographer on every vsync, on the main thread.
+     *
+     * @param frameTimeNanos The vsync time in the System.nanoTime() time base.
+     */
+    @Override
+    public void doFrame(final long frameTimeNanos) {
+        if(!resumed)
+            return;
+
+        gameLoop.requestTick(frameTimeNanos);
+        requestRender();
+        Choreographer.getInstance().postFrameCallback(this);
+    }
+
+    private final class BufferRenderer implements GLSurfaceView.Renderer {
+
+        @Override
+        public void onSurfaceCreated(final GL10 unused, final EGLConfig config) {
+            Process.setThreadPriority(Process.THREAD_PRIORITY_DISPLAY);
+            stateRenderer.onSurfaceCreated();
+        }
+
+        @Override
+        public void onSurfaceChanged(final GL10 unused, final int width, final int height) {
+            stateRenderer.onSurfaceChanged(width, height);
+        }
+
+        @Override
+        public void onDrawFrame(final GL10 unused) {
+            stateRenderer.render(stateBuffer.acquire());
+        }
+    }
+}
@@ -0,0 +1,29 @@
+package com.tembins.tagdk.loop;
+
+/**
+ * Draws the render states produced by a GameLoop. All methods are called on the GL thread.
+ *
+ * @param <T> The render state type.
+ */
+public interface StateRenderer<T> {
+
+    /**
+     * Called when the GL context was (re)created. All GPU resources have to be (re)loaded here.
+     */
+    void onSurfaceCreated();
+
+    /**
+     * Called when the size of the surface changed.
+     *
+     * @param width The new width in pixels.
+     * @param height The new height in pixels.
+     */
+    void onSurfaceChanged(final int width, final int height);
+
+    /**
+     * Draws a frame.
+     *
+     * @param state The newest render state published by the update thread.
+     */
+    void render(final T state);
+}
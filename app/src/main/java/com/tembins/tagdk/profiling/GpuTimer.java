@@ -0,0 +1,155 @@
+package com.tembins.tagdk.profiling;
+
+import android.opengl.GLES20;
+import android.opengl.GLES30;
+
+import java.util.Arrays;
+
+/**
+ * Measures GPU durations with timer queries of the EXT_disjoint_timer_query extension and reports
+ * them to a FrameProfiler. Query results become available a few frames after submission, so
+ * every frame gets its own set of queries, which are only read when the frame comes up again in
+ * the ring. Reading results never stalls the GL thread: unavailable results are dropped.
+ *
+ * Only one time elapsed query can be active at a time, so GPU scopes cannot be nested. They are
+ * meant for coarse passes like shadows, opaque geometry and post processing. All methods must be
+ * called on the GL thread.
+ */
+public final class GpuTimer {
+
+    private static final int GL_TIME_ELAPSED_EXT = 0x88BF;
+    private static final int GL_GPU_DISJOINT_EXT = 0x8FBB;
+
+    private final FrameProfiler profiler;
+    private final int frameLatency, maxScopesPerFrame;
+
+    private int[] queries;
+    private final int[] scopes;
+    private final int[] scopeCounts;
+    private final long[] frameNumbers;
+    private final int[] result = new int[1];
+    private int frameSlot;
+    private boolean active;
+    private boolean supported;
+
+    /**
+     * Initializes the timer with the following parameters:
+     *
+     * @param profiler The profiler receiving the measured durations.
+     * @param frameLatency The amount of frames to wait before reading results, at least 2.
+     * @param maxScopesPerFrame The amount of GPU scopes measurable per frame. Further scopes in a
+     *                          frame are ignored.
+     */
+    public GpuTimer(final FrameProfiler profiler, final int frameLatency, final int maxScopesPerFrame) {
+        this.profiler = profiler;
+        this.frameLatency = Math.max(2, frameLatency);
+        this.maxScopesPerFrame = maxScopesPerFrame;
+        scopes = new int[this.frameLatency * maxScopesPerFrame];
+        scopeCounts = new int[this.frameLatency];
+        frameNumbers = new long[this.frameLatency];
+    }
+
+    /**
+     * Creates the queries if the context supports timer queries. Must be called after the
+     * context was created, again after it was lost.
+     *
+     * @return True if timer queries are supported.
+     */
+    public boolean init() {
+        final String extensions = GLES20.glGetString(GLES20.GL_EXTENSIONS);
+        supported = extensions != null && extensions.contains("GL_EXT_disjoint_timer_query");
+        if(!supported)
+            return false;
+
+        queries = new int[scopes.length];
+        GLES30.glGenQueries(queries.length, queries, 0);
+        Arrays.fill(scopeCounts, 0);
+        frameSlot = 0;
+        active = false;
+        return true;
+    }
+
+    /**
+     * Deletes the queries. Must be called while the context is still current.
+     */
+    public void release() {
+        if(!supported)
+            return;
+
+        GLES30.glDeleteQueries(queries.length, queries, 0);
+        supported = false;
+    }
+
+    /**
+     * Returns whether timer queries are supported and initialized.
+     *
+     * @return True if GPU scopes are measured.
+     */
+    public boolean isSupported() {
+        return supported;
+    }
+
+    /**
+     * Starts measuring a GPU scope. Ignored if timer queries are not supported, another GPU
+     * scope is active or the frame already used up all of its queries.
+     *
+     * @param scope The ID returned by FrameProfiler.registerScope.
+     */
+    public void begin(final int scope) {
+        if(!supported || active || scopeCounts[frameSlot] == maxScopesPerFrame)
+            return;
+
+        final int index = frameSlot * maxScopesPerFrame + scopeCounts[frameSlot]++;
+        scopes[index] = scope;
+        GLES30.glBeginQuery(GL_TIME_ELAPSED_EXT, queries[index]);
+        active = true;
+    }
+
+    /**
+     * Stops measuring the active GPU scope.
+     */
+    public void end() {
+        if(!active)
+            return;
+
+        GLES30.glEndQuery(GL_TIME_ELAPSED_EXT);
+        active = false;
+    }
+
+    /**
+     * Finishes the queries of the current frame and reads the results of the oldest frame in the
+     * ring. Should be called once per frame after the last GPU scope, before swapping buffers.
+     */
+    public void endFrame() {
+        if(!supported)
+            return;
+
+        end();
+        frameNumbers[frameSlot] = profiler.getFrameNumber();
+        frameSlot = (frameSlot + 1) % frameLatency;
+        collect(frameSlot);
+    }
+
+    private void collect(final int slot) {
+        final int count = scopeCounts[slot];
+        scopeCounts[slot] = 0;
+        if(count == 0)
+            return;
+
+        // A disjoint operation (e.g. a frequency change) makes all pending results meaningless
+        GLES20.glGetIntegerv(GL_GPU_DISJOINT_EXT, result, 0);
+        if(result[0] != 0)
+            return;
+
+        final int first = slot * maxScopesPerFrame;
+        GLES30.glGetQueryObjectuiv(queries[first + count - 1], GLES30.GL_QUERY_RESULT_AVAILABLE, result, 0);
+        if(result[0] == GLES20.GL_FALSE)
+            return;
+
+        for(int index = first; index < first + count; index++) {
+            GLES30.glGetQueryObjectuiv(queries[index], GLES30.GL_QUERY_RESULT, result, 0);
+            // The 32 bit binding wraps after about 4.3 seconds, far beyond any sane pass duration
+            profiler.recordGpuTime(scopes[index], frameNumbers[slot], result[0] & 0xFFFFFFFFL);
+        }
+    }
+}
@@ -0,0 +1,70 @@
+package com.tembins.tagdk.util.resource;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Provides the resources of the app resource directory.
+ */
+public final class AndroidResourceProvider implements ResourceProvider {
+
+    private final Context context;
+
+    /**
+     * Initializes the provider with the following parameters:
+     *
+     * @param context The context needed to access the resources.
+     */
+    public AndroidResourceProvider(final Context context) {
+        this.context = context;
+    }
+
+    @Override
+    public InputStream openResource(final int resourceID) throws IOException {
+        return context.getResources().openRawResource(resourceID);
+    }
+
+    @Override
+    public ImageData decodeImage(final int resourceID) throws IOException {
+        final Bitmap bitmap = BitmapFactory.decodeResource(context.getResources(), resourceID, createDecodingOptions());
+        if(bitmap == null)
+            throw new IOException("Resource " + resourceID + " is not a decodable image");
+
+        return toImageData(bitmap);
+    }
+
+    /**
+     * Returns the options to decode images for textures with: unscaled, with RGBA pixels.
+     *
+     * @return The decoding options.
+     */
+    static BitmapFactory.Options createDecodingOptions() {
+        final BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inScaled = false;
+        options.inPreferredConfig = Bitmap.Config.ARGB_8888;
+        return options;
+    }
+
+    /**
+     * Copies the pixels of a bitmap decoded with createDecodingOptions() and recycles it.
+     *
+     * @param bitmap The bitmap to convert.
+     * @return The image holding the pixels.
+     */
+    static ImageData toImageData(final Bitmap bitmap) {
+        // ARGB_8888 bitmaps store their pixels as RGBA bytes, which is what OpenGL expects
+        final ByteBuffer pixels = ByteBuffer.allocateDirect(bitmap.getByteCount()).order(ByteOrder.nativeOrder());
+        bitmap.copyPixelsToBuffer(pixels);
+        pixels.position(0);
+
+        final ImageData image = new ImageData(bitmap.getWidth(), bitmap.getHeight(), pixels);
+        bitmap.recycle();
+        return image;
+    }
+}
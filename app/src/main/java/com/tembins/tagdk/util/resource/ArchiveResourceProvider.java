@@ -0,0 +1,118 @@
+package com.tembins.tagdk.util.resource;
+
+import android.content.Context;
+import android.content.res.AssetFileDescriptor;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+
+import com.tembins.tagdk.asset.AssetArchive;
+import com.tembins.tagdk.asset.ByteBufferInputStream;
+import com.tembins.tagdk.jobs.JobSystem;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.FileChannel;
+
+/**
+ * Provides the resources packed into an AssetArchive, using the asset IDs as resource IDs. The
+ * archive is opened once, so loading a resource does not open a stream through the APK.
+ * Compressed assets are decompressed transparently, in parallel if a job system is given.
+ */
+public final class ArchiveResourceProvider implements ResourceProvider {
+
+    private final AssetArchive archive;
+    private final JobSystem jobs;
+
+    /**
+     * Initializes the provider with the following parameters:
+     *
+     * @param archive The archive holding the resources.
+     */
+    public ArchiveResourceProvider(final AssetArchive archive) {
+        this(archive, null);
+    }
+
+    /**
+     * Initializes the provider with the following parameters:
+     *
+     * @param archive The archive holding the resources.
+     * @param jobs The job system decompressing compressed assets, or null to decompress them on
+     *             the loading thread.
+     */
+    public ArchiveResourceProvider(final AssetArchive archive, final JobSystem jobs) {
+        this.archive = archive;
+        this.jobs = jobs;
+    }
+
+    /**
+     * Maps an archive stored in the assets directory of the APK. The archive must be stored
+     * uncompressed, which the app build configures for the "pak" extension.
+     *
+     * @param context The context needed to access the assets.
+     * @param assetName The path of the archive inside of the assets directory.
+     * @return The provider reading from the mapped archive.
+     * @throws IOException If the archive can not be mapped or is invalid.
+     */
+    public static ArchiveResourceProvider fromAsset(final Context context, final String assetName) throws IOException {
+        return fromAsset(context, assetName, null);
+    }
+
+    /**
+     * Maps an archive stored in the assets directory of the APK. The archive must be stored
+     * uncompressed, which the app build configures for the "pak" extension.
+     *
+     * @param context The context needed to access the assets.
+     * @param assetName The path of the archive inside of the assets directory.
+     * @param jobs The job system decompressing compressed assets, or null to decompress them on
+     *             the loading thread.
+     * @return The provider reading from the mapped archive.
+     * @throws IOException If the archive can not be mapped or is invalid.
+     */
+    public static ArchiveResourceProvider fromAsset(final Context context, final String assetName,
+                                                    final JobSystem jobs) throws IOException {
+        final AssetFileDescriptor descriptor = context.getAssets().openFd(assetName);
+        try {
+            final FileInputStream inputStream = descriptor.createInputStream();
+            try {
+                return new ArchiveResourceProvider(new AssetArchive(inputStream.getChannel().map(
+                        FileChannel.MapMode.READ_ONLY, descriptor.getStartOffset(), descriptor.getLength())), jobs);
+            } finally {
+                inputStream.close();
+            }
+        } finally {
+            descriptor.close();
+        }
+    }
+
+    /**
+     * Returns the archive the resources are read from.
+     *
+     * @return The archive.
+     */
+    public AssetArchive getArchive() {
+        return archive;
+    }
+
+    @Override
+    public InputStream openResource(final int resourceID) throws IOException {
+        if(!archive.contains(resourceID))
+            throw new IOException("Resource " + resourceID + " is not part of the archive");
+
+        try {
+            return new ByteBufferInputStream(archive.load(resourceID, jobs));
+        } catch(IllegalArgumentException exception) {
+            throw new IOException("Resource " + resourceID + " is corrupted", exception);
+        }
+    }
+
+    @Override
+    public ImageData decodeImage(final int resourceID) throws IOException {
+        final Bitmap bitmap = BitmapFactory.decodeStream(openResource(resourceID), null,
+                AndroidResourceProvider.createDecodingOptions());
+        if(bitmap == null)
+            throw new IOException("Resource " + resourceID + " is not a decodable image");
+
+        return AndroidResourceProvider.toImageData(bitmap);
+    }
+}
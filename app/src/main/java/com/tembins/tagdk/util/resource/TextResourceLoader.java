@@ -2,10 +2,7 @@ package com.tembins.tagdk.util.resource;
 
 import android.content.Context;
 
-import java.io.BufferedReader;
 import java.io.IOException;
-import java.io.InputStream;
-import java.io.InputStreamReader;
 
 /**
  * This class provides utility functions to load text resources.
@@ -21,16 +18,6 @@ public final class TextResourceLoader {
      * @throws IOException If the loading fails due to IO errors.
      */
     public static String loadTextResource(final Context context, final int resourceID) throws IOException {
-        InputStream inputStream = context.getResources().openRawResource(resourceID);
-        InputStreamReader inputStreamReader = new InputStreamReader(inputStream);
-        BufferedReader bufferedReader = new BufferedReader(inputStreamReader);
-        StringBuilder stringBuilder = new StringBuilder();
-
-        int readChar;
-        while((readChar = bufferedReader.read()) != -1)
-            stringBuilder.append((char) readChar);
-
-        bufferedReader.close();
-        return stringBuilder.toString();
+        return TextLoader.loadText(context.getResources().openRawResource(resourceID));
     }
 }
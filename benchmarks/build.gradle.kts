@@ -0,0 +1,47 @@
+plugins {
+    java
+    alias(libs.plugins.jmh)
+}
+
+java {
+    sourceCompatibility = JavaVersion.VERSION_1_8
+    targetCompatibility = JavaVersion.VERSION_1_8
+}
+
+dependencies {
+
+    implementation(project(":core"))
+}
+
+val jmhResults = layout.buildDirectory.file("results/jmh/results.csv")
+val baselineFile = layout.projectDirectory.file("baselines/baseline.csv")
+
+jmh {
+    jmhVersion.set(libs.versions.jmh)
+    benchmarkMode.add("avgt")
+    timeUnit.set("ns")
+    warmupIterations.set(3)
+    warmup.set("1s")
+    iterations.set(5)
+    timeOnIteration.set("1s")
+    fork.set(1)
+    // Reports the allocated bytes per operation next to every score
+    profilers.add("gc")
+    resultFormat.set("CSV")
+    resultsFile.set(jmhResults)
+}
+
+// Fails if a score of the last jmh run is more than 10% worse than the checked in baseline
+tasks.register<JavaExec>("compareBaseline") {
+    group = "verification"
+    classpath = sourceSets["jmh"].runtimeClasspath
+    mainClass.set("com.tembins.tagdk.benchmarks.BaselineComparison")
+    args(baselineFile.asFile, jmhResults.get().asFile, "10")
+}
+
+// Replaces the baseline with the results of the last jmh run
+tasks.register<Copy>("updateBaseline") {
+    from(jmhResults)
+    into(baselineFile.asFile.parentFile)
+    rename { baselineFile.asFile.name }
+}
@@ -0,0 +1,104 @@
+package com.tembins.tagdk.benchmarks;
+
+import com.tembins.tagdk.animation.AnimationClip;
+import com.tembins.tagdk.animation.PoseSampler;
+import com.tembins.tagdk.animation.Skeleton;
+import com.tembins.tagdk.jobs.JobSystem;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.util.Random;
+
+/**
+ * Measures the pose evaluation of 256 characters with 60 joints each, every character playing
+ * one of four clips at its own time, on the calling thread and on the job system.
+ */
+@State(Scope.Thread)
+public class AnimationBenchmark {
+
+    private static final int CHARACTER_COUNT = 256;
+    private static final int JOINT_COUNT = 60;
+    private static final int FRAME_COUNT = 61;
+    private static final float FRAME_RATE = 30.0f;
+
+    private PoseSampler sampler;
+    private JobSystem jobSystem;
+
+    @Setup
+    public void setup() {
+        final Random random = new Random(BenchmarkData.SEED);
+        final int[] parents = new int[JOINT_COUNT];
+        for(int joint = 0; joint < JOINT_COUNT; joint++)
+            parents[joint] = joint == 0 ? Skeleton.NO_PARENT : random.nextInt(joint);
+
+        final AnimationClip[] clips = new AnimationClip[4];
+        for(int clip = 0; clip < clips.length; clip++)
+            clips[clip] = AnimationClip.compress(JOINT_COUNT, FRAME_RATE, randomFrames(random));
+
+        sampler = new PoseSampler(Skeleton.withIdentityBindPose(parents), CHARACTER_COUNT);
+        for(int character = 0; character < CHARACTER_COUNT; character++)
+            sampler.setAnimation(sampler.addCharacter(), clips[character % clips.length], random.nextFloat(), true);
+
+        jobSystem = JobSystem.createDefault();
+    }
+
+    /**
+     * Creates a clip animating the root translation and the rotations of all joints.
+     */
+    private static float[] randomFrames(final Random random) {
+        final float[] phases = new float[JOINT_COUNT * 3];
+        for(int index = 0; index < phases.length; index++)
+            phases[index] = random.nextFloat() * 6.0f;
+
+        final float[] frames = new float[FRAME_COUNT * JOINT_COUNT * AnimationClip.POSE_SIZE];
+        for(int frame = 0; frame < FRAME_COUNT; frame++) {
+            final double angle = frame * 2.0 * Math.PI / (FRAME_COUNT - 1);
+            for(int joint = 0; joint < JOINT_COUNT; joint++) {
+                final int offset = (frame * JOINT_COUNT + joint) * AnimationClip.POSE_SIZE;
+                frames[offset] = joint == 0 ? (float) Math.sin(angle) : 0.1f;
+                frames[offset + 1] = joint == 0 ? (float) Math.cos(angle) : 0.0f;
+
+                final float x = (float) Math.sin(angle + phases[joint * 3]) * 0.3f;
+                final float y = (float) Math.sin(angle + phases[joint * 3 + 1]) * 0.3f;
+                final float z = (float) Math.sin(angle + phases[joint * 3 + 2]) * 0.3f;
+                final float w = (float) Math.sqrt(1.0f - x * x - y * y - z * z);
+                frames[offset + 3] = x;
+                frames[offset + 4] = y;
+                frames[offset + 5] = z;
+                frames[offset + 6] = w;
+                frames[offset + 7] = 1.0f;
+                frames[offset + 8] = 1.0f;
+                frames[offset + 9] = 1.0f;
+            }
+        }
+        return frames;
+    }
+
+    @TearDown
+    public void tearDown() {
+        jobSystem.shutdown();
+    }
+
+    private void advance() {
+        for(int character = 0; character < CHARACTER_COUNT; character++)
+            sampler.setTime(character, sampler.getTime(character) + 1.0f / 60.0f);
+    }
+
+    @Benchmark
+    public float[] evaluate() {
+        advance();
+        sampler.evaluate();
+        return sampler.getPalettes();
+    }
+
+    @Benchmark
+    public float[] evaluateParallel() {
+        advance();
+        sampler.evaluate(jobSystem);
+        return sampler.getPalettes();
+    }
+}
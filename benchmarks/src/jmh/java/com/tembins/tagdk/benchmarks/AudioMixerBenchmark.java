@@ -0,0 +1,62 @@
+package com.tembins.tagdk.benchmarks;
+
+import com.tembins.tagdk.audio.AudioMixer;
+import com.tembins.tagdk.audio.SoundData;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.Random;
+
+/**
+ * Measures mixing one low latency buffer of looping voices with varied pitch, so every voice goes
+ * through the resampler. Dividing the voice count by the time per buffer gives the voices mixed
+ * per buffer duration, 256 frames lasting 5.3 ms at 48 kHz.
+ */
+@State(Scope.Thread)
+public class AudioMixerBenchmark {
+
+    private static final int SAMPLE_RATE = 48000;
+    private static final int FRAMES_PER_BUFFER = 256;
+
+    @Param({ "8", "32", "64" })
+    public int voiceCount;
+
+    private AudioMixer monoMixer, stereoMixer;
+    private final float[] output = new float[FRAMES_PER_BUFFER * AudioMixer.CHANNEL_COUNT];
+
+    @Setup
+    public void setup() {
+        monoMixer = createMixer(1);
+        stereoMixer = createMixer(2);
+    }
+
+    private AudioMixer createMixer(final int channelCount) {
+        final Random random = new Random(BenchmarkData.SEED);
+        final short[] samples = new short[SAMPLE_RATE * channelCount];
+        for(int sample = 0; sample < samples.length; sample++)
+            samples[sample] = (short) (random.nextInt(65536) - 32768);
+        final SoundData sound = new SoundData(samples, channelCount, 44100);
+
+        final AudioMixer mixer = new AudioMixer(SAMPLE_RATE, voiceCount, voiceCount);
+        for(int voice = 0; voice < voiceCount; voice++)
+            mixer.play(sound, 0.1f, random.nextFloat() * 2.0f - 1.0f, 0.5f + random.nextFloat(), true);
+        mixer.mix(output, FRAMES_PER_BUFFER);
+        return mixer;
+    }
+
+    @Benchmark
+    public float[] mixMono() {
+        monoMixer.mix(output, FRAMES_PER_BUFFER);
+        return output;
+    }
+
+    @Benchmark
+    public float[] mixStereo() {
+        stereoMixer.mix(output, FRAMES_PER_BUFFER);
+        return output;
+    }
+}
@@ -0,0 +1,115 @@
+package com.tembins.tagdk.benchmarks;
+
+import java.io.BufferedReader;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Compares a JMH result file in CSV format with a baseline result file and reports every score
+ * that got worse by more than a threshold. Both the average times and the normalized allocation
+ * rates of the gc profiler are compared. Exits with status 1 if a regression was found, so it can
+ * guard a CI step.
+ *
+ * Usage: BaselineComparison baseline.csv results.csv thresholdPercent
+ */
+public final class BaselineComparison {
+
+    private static final String ALLOCATION_SUFFIX = "gc.alloc.rate.norm";
+    private static final double ALLOCATION_TOLERANCE_BYTES = 16.0;
+
+    public static void main(final String[] arguments) throws IOException {
+        if(arguments.length != 3) {
+            System.err.println("Usage: BaselineComparison baseline.csv results.csv thresholdPercent");
+            System.exit(2);
+        }
+
+        final Map<String, Double> baseline = readScores(arguments[0]);
+        final Map<String, Double> results = readScores(arguments[1]);
+        final double threshold = Double.parseDouble(arguments[2]) / 100.0;
+
+        int regressions = 0;
+        for(final Map.Entry<String, Double> result : results.entrySet()) {
+            final Double baselineScore = baseline.get(result.getKey());
+            if(baselineScore == null) {
+                System.out.println("NEW         " + result.getKey() + " = " + format(result.getValue()));
+                continue;
+            }
+
+            final double score = result.getValue();
+            final boolean allocation = result.getKey().contains(ALLOCATION_SUFFIX);
+            // Allocations near zero fluctuate by a few bytes, so they get an absolute tolerance
+            final double limit = baselineScore * (1.0 + threshold) + (allocation ? ALLOCATION_TOLERANCE_BYTES : 0.0);
+            final boolean regressed = score > limit;
+            if(regressed)
+                regressions++;
+
+            System.out.println((regressed ? "REGRESSION  " : "OK          ") + result.getKey() + " = "
+                    + format(score) + " (baseline " + format(baselineScore) + ", "
+                    + String.format(Locale.ROOT, "%+.1f%%", (score / baselineScore - 1.0) * 100.0) + ")");
+        }
+
+        System.out.println(regressions + " regression(s) beyond " + arguments[2] + "%");
+        if(regressions > 0)
+            System.exit(1);
+    }
+
+    private static String format(final double value) {
+        return String.format(Locale.ROOT, "%.3f", value);
+    }
+
+    /**
+     * Reads the scores of all average time and gc.alloc.rate.norm rows, keyed by the benchmark
+     * name followed by its parameters.
+     */
+    private static Map<String, Double> readScores(final String path) throws IOException {
+        final Map<String, Double> scores = new LinkedHashMap<>();
+        final BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(path), Charset.forName("UTF-8")));
+        try {
+            final ArrayList<String> header = parseRow(reader.readLine());
+            final int scoreColumn = header.indexOf("Score");
+
+            String line;
+            while((line = reader.readLine()) != null) {
+                final ArrayList<String> row = parseRow(line);
+                final String name = row.get(0);
+                if(!row.get(1).equals("avgt") || (name.contains(":") && !name.endsWith(ALLOCATION_SUFFIX)))
+                    continue;
+
+                final StringBuilder key = new StringBuilder(name);
+                for(int column = scoreColumn + 3; column < row.size(); column++) {
+                    if(!row.get(column).isEmpty())
+                        key.append(' ').append(header.get(column).replace("Param: ", "")).append('=').append(row.get(column));
+                }
+                scores.put(key.toString(), Double.parseDouble(row.get(scoreColumn)));
+            }
+        } finally {
+            reader.close();
+        }
+        return scores;
+    }
+
+    private static ArrayList<String> parseRow(final String line) {
+        final ArrayList<String> fields = new ArrayList<>();
+        final StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        for(int index = 0; index < line.length(); index++) {
+            final char character = line.charAt(index);
+            if(character == '"') {
+                quoted = !quoted;
+            } else if(character == ',' && !quoted) {
+                fields.add(field.toString());
+                field.setLength(0);
+            } else {
+                field.append(character);
+            }
+        }
+        fields.add(field.toString());
+        return fields;
+    }
+}
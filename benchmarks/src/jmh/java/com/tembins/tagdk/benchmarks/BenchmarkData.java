@@ -0,0 +1,84 @@
+package com.tembins.tagdk.benchmarks;
+
+import com.tembins.tagdk.math.Matrix4f;
+
+import java.util.Random;
+
+/**
+ * Generates the deterministic input data shared by the benchmarks.
+ */
+final class BenchmarkData {
+
+    static final long SEED = 42L;
+
+    /**
+     * Creates a perspective projection looking down -z from the given distance along +z.
+     *
+     * @param distance The distance of the camera from the origin.
+     * @return The view projection matrix.
+     */
+    static Matrix4f perspectiveView(final float distance) {
+        final float near = 0.1f, far = 1000.0f;
+        final float focal = 1.0f / (float) Math.tan(Math.toRadians(35.0));
+        final float a = (far + near) / (near - far), b = 2.0f * far * near / (near - far);
+        return new Matrix4f(
+                focal, 0.0f, 0.0f, 0.0f,
+                0.0f, focal, 0.0f, 0.0f,
+                0.0f, 0.0f, a, b - a * distance,
+                0.0f, 0.0f, -1.0f, distance);
+    }
+
+    /**
+     * Writes random boxes into the given array as minX, minY, minZ, maxX, maxY, maxZ.
+     *
+     * @param count The amount of boxes.
+     * @param worldSize The size of the cube the boxes are spread over, centered at the origin.
+     * @param maxBoxSize The largest edge length of a box.
+     * @return The box coordinates.
+     */
+    static float[] randomBoxes(final int count, final float worldSize, final float maxBoxSize) {
+        final Random random = new Random(SEED);
+        final float[] boxes = new float[count * 6];
+        for(int box = 0; box < count; box++) {
+            for(int axis = 0; axis < 3; axis++) {
+                final float min = (random.nextFloat() - 0.5f) * worldSize;
+                boxes[box * 6 + axis] = min;
+                boxes[box * 6 + 3 + axis] = min + random.nextFloat() * maxBoxSize;
+            }
+        }
+        return boxes;
+    }
+
+    /**
+     * Creates the OBJ source of a grid of quads with positions, texture coordinates and normals.
+     *
+     * @param size The amount of quads along each edge.
+     * @return The OBJ source.
+     */
+    static String gridObj(final int size) {
+        final StringBuilder builder = new StringBuilder();
+        for(int y = 0; y <= size; y++) {
+            for(int x = 0; x <= size; x++) {
+                builder.append("v ").append(x).append(".0 0.0 ").append(y).append(".0\n");
+                builder.append("vt ").append((float) x / size).append(' ').append((float) y / size).append('\n');
+            }
+        }
+        builder.append("vn 0.0 1.0 0.0\n");
+
+        for(int y = 0; y < size; y++) {
+            for(int x = 0; x < size; x++) {
+                final int corner = y * (size + 1) + x + 1;
+                builder.append("f ");
+                appendVertex(builder, corner).append(' ');
+                appendVertex(builder, corner + size + 1).append(' ');
+                appendVertex(builder, corner + size + 2).append(' ');
+                appendVertex(builder, corner + 1).append('\n');
+            }
+        }
+        return builder.toString();
+    }
+
+    private static StringBuilder appendVertex(final StringBuilder builder, final int index) {
+        return builder.append(index).append('/').append(index).append("/1");
+    }
+}
@@ -0,0 +1,100 @@
+package com.tembins.tagdk.benchmarks;
+
+import com.tembins.tagdk.spatial.PairBuffer;
+import com.tembins.tagdk.spatial.SpatialHash2D;
+import com.tembins.tagdk.spatial.SweepAndPrune;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.Random;
+
+/**
+ * Compares one frame of 2D broadphase work, moving every body a little and finding all
+ * overlapping pairs, for sweep and prune, the spatial hash and brute force pair tests.
+ */
+@State(Scope.Thread)
+public class BroadphaseBenchmark {
+
+    private static final float BODY_SIZE = 2.0f;
+    private static final float SPEED = 0.05f;
+
+    @Param({ "1000", "10000", "50000" })
+    public int objectCount;
+
+    private float worldSize;
+    private float[] positions;
+    private float[] velocities;
+    private SweepAndPrune sweepAndPrune;
+    private SpatialHash2D spatialHash;
+    private final PairBuffer pairs = new PairBuffer(1024);
+
+    @Setup
+    public void setup() {
+        // Keeps the body density constant, so the amount of pairs grows linearly
+        worldSize = (float) Math.sqrt(objectCount) * 10.0f;
+        final Random random = new Random(BenchmarkData.SEED);
+        positions = new float[objectCount * 2];
+        velocities = new float[objectCount * 2];
+        sweepAndPrune = new SweepAndPrune(objectCount);
+        spatialHash = new SpatialHash2D(BODY_SIZE * 2.0f, objectCount);
+
+        for(int body = 0; body < objectCount; body++) {
+            final float x = random.nextFloat() * worldSize, y = random.nextFloat() * worldSize;
+            positions[body * 2] = x;
+            positions[body * 2 + 1] = y;
+            velocities[body * 2] = (random.nextFloat() - 0.5f) * SPEED;
+            velocities[body * 2 + 1] = (random.nextFloat() - 0.5f) * SPEED;
+            sweepAndPrune.add(x, y, x + BODY_SIZE, y + BODY_SIZE);
+            spatialHash.add(x, y, x + BODY_SIZE, y + BODY_SIZE);
+        }
+        sweepAndPrune.findPairs(pairs);
+    }
+
+    private void move() {
+        for(int index = 0; index < positions.length; index++) {
+            final float position = positions[index] + velocities[index];
+            if(position < 0.0f || position > worldSize)
+                velocities[index] = -velocities[index];
+            positions[index] = position;
+        }
+    }
+
+    @Benchmark
+    public int sweepAndPrune() {
+        move();
+        for(int body = 0; body < objectCount; body++) {
+            final float x = positions[body * 2], y = positions[body * 2 + 1];
+            sweepAndPrune.update(body, x, y, x + BODY_SIZE, y + BODY_SIZE);
+        }
+        return sweepAndPrune.findPairs(pairs);
+    }
+
+    @Benchmark
+    public int spatialHash() {
+        move();
+        for(int body = 0; body < objectCount; body++) {
+            final float x = positions[body * 2], y = positions[body * 2 + 1];
+            spatialHash.update(body, x, y, x + BODY_SIZE, y + BODY_SIZE);
+        }
+        return spatialHash.findPairs(pairs);
+    }
+
+    @Benchmark
+    public int bruteForce() {
+        move();
+        pairs.clear();
+        final float[] positions = this.positions;
+        for(int first = 0; first < objectCount; first++) {
+            final float x = positions[first * 2], y = positions[first * 2 + 1];
+            for(int second = first + 1; second < objectCount; second++) {
+                if(Math.abs(positions[second * 2] - x) <= BODY_SIZE && Math.abs(positions[second * 2 + 1] - y) <= BODY_SIZE)
+                    pairs.add(first, second);
+            }
+        }
+        return pairs.size();
+    }
+}
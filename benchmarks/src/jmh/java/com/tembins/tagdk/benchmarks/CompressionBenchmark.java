@@ -0,0 +1,84 @@
+package com.tembins.tagdk.benchmarks;
+
+import com.tembins.tagdk.asset.ChunkedLZ4;
+import com.tembins.tagdk.jobs.JobSystem;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.Charset;
+
+/**
+ * Measures the chunked LZ4 codec on 1 MiB of OBJ text or interleaved vertex data. Every operation
+ * processes 1 MiB of uncompressed data, so 1e9 / score is the throughput in MiB/s. The single
+ * threaded decompression scores are the per core throughput; decompressParallel shows how it scales
+ * with the workers of the default job system.
+ */
+@State(Scope.Thread)
+public class CompressionBenchmark {
+
+    private static final int SIZE = 1 << 20;
+
+    @Param({ "obj", "vertices" })
+    public String data;
+
+    private byte[] uncompressed;
+    private ByteBuffer compressed;
+    private ByteBuffer destination;
+    private JobSystem jobSystem;
+
+    @Setup
+    public void setup() {
+        uncompressed = new byte[SIZE];
+        if(data.equals("obj")) {
+            final byte[] source = BenchmarkData.gridObj(256).getBytes(Charset.forName("UTF-8"));
+            System.arraycopy(source, 0, uncompressed, 0, Math.min(SIZE, source.length));
+        } else {
+            // Positions, UVs and normals of a grid, as the mesh loading task uploads them
+            final ByteBuffer vertices = ByteBuffer.wrap(uncompressed).order(ByteOrder.LITTLE_ENDIAN);
+            for(int vertex = 0; vertices.remaining() >= 32; vertex++) {
+                final int x = vertex % 256, y = vertex / 256;
+                vertices.putFloat(x).putFloat(0.0f).putFloat(y);
+                vertices.putFloat(x / 255.0f).putFloat(y / 255.0f);
+                vertices.putFloat(0.0f).putFloat(1.0f).putFloat(0.0f);
+            }
+        }
+
+        final byte[] packed = ChunkedLZ4.compress(uncompressed);
+        // Mapped archives are direct buffers, so the source is one as well
+        compressed = ByteBuffer.allocateDirect(packed.length);
+        compressed.put(packed).flip();
+        destination = ByteBuffer.allocateDirect(SIZE);
+        jobSystem = JobSystem.createDefault();
+    }
+
+    @TearDown
+    public void tearDown() {
+        jobSystem.shutdown();
+    }
+
+    @Benchmark
+    public byte[] compress() {
+        return ChunkedLZ4.compress(uncompressed);
+    }
+
+    @Benchmark
+    public ByteBuffer decompress() {
+        destination.clear();
+        ChunkedLZ4.decompress(compressed, destination, null);
+        return destination;
+    }
+
+    @Benchmark
+    public ByteBuffer decompressParallel() {
+        destination.clear();
+        ChunkedLZ4.decompress(compressed, destination, jobSystem);
+        return destination;
+    }
+}
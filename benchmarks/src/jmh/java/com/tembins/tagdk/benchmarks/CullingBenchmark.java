@@ -0,0 +1,52 @@
+package com.tembins.tagdk.benchmarks;
+
+import com.tembins.tagdk.graphics.culling.CullingBatch;
+import com.tembins.tagdk.graphics.culling.Frustum;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Measures frustum culling of 20k objects with the batched SoA kernel against testing each box
+ * on its own.
+ */
+@State(Scope.Thread)
+public class CullingBenchmark {
+
+    private static final int OBJECT_COUNT = 20_000;
+
+    private final Frustum frustum = new Frustum();
+    private final CullingBatch batch = new CullingBatch(OBJECT_COUNT);
+    private final int[] visible = new int[OBJECT_COUNT];
+    private float[] boxes;
+
+    @Setup
+    public void setup() {
+        frustum.set(BenchmarkData.perspectiveView(0.0f));
+        boxes = BenchmarkData.randomBoxes(OBJECT_COUNT, 400.0f, 4.0f);
+        for(int box = 0; box < OBJECT_COUNT; box++) {
+            final int offset = box * 6;
+            batch.add(boxes[offset], boxes[offset + 1], boxes[offset + 2],
+                    boxes[offset + 3], boxes[offset + 4], boxes[offset + 5]);
+        }
+    }
+
+    @Benchmark
+    public int cullBatch() {
+        return batch.cull(frustum, visible);
+    }
+
+    @Benchmark
+    public int cullIndividually() {
+        int count = 0;
+        for(int box = 0; box < OBJECT_COUNT; box++) {
+            final int offset = box * 6;
+            if(frustum.testBox(boxes[offset], boxes[offset + 1], boxes[offset + 2],
+                    boxes[offset + 3], boxes[offset + 4], boxes[offset + 5]))
+                visible[count++] = box;
+        }
+        return count;
+    }
+}
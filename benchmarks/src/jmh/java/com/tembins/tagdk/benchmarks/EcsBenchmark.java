@@ -0,0 +1,142 @@
+package com.tembins.tagdk.benchmarks;
+
+import com.tembins.tagdk.ecs.ComponentStorage;
+import com.tembins.tagdk.ecs.EntityQuery;
+import com.tembins.tagdk.ecs.EntityRegistry;
+import com.tembins.tagdk.ecs.EntitySystem;
+import com.tembins.tagdk.ecs.FloatComponentStorage;
+import com.tembins.tagdk.ecs.IntComponentStorage;
+import com.tembins.tagdk.ecs.SystemScheduler;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Measures a movement system over 100k entities, all with a position and half of them with a
+ * velocity, as well as the creation and destruction of entities. The scheduler benchmarks run the
+ * movement system next to an independent aging system, serially and on a pool.
+ */
+@State(Scope.Thread)
+public class EcsBenchmark {
+
+    private static final int ENTITY_COUNT = 100_000;
+
+    private EntityRegistry registry;
+    private FloatComponentStorage positions, velocities;
+    private IntComponentStorage ages;
+    private EntityQuery query;
+    private ForkJoinPool pool;
+    private SystemScheduler serialScheduler, parallelScheduler;
+
+    @Setup
+    public void setup() {
+        registry = new EntityRegistry(ENTITY_COUNT);
+        positions = registry.register(new FloatComponentStorage(3, ENTITY_COUNT));
+        velocities = registry.register(new FloatComponentStorage(3, ENTITY_COUNT));
+        ages = registry.register(new IntComponentStorage(1, ENTITY_COUNT));
+        query = new EntityQuery(positions, velocities);
+
+        for(int index = 0; index < ENTITY_COUNT; index++) {
+            final int entity = registry.create();
+            positions.add(entity, 0.0f);
+            if(index % 2 == 0)
+                velocities.add(entity, 1.0f);
+            ages.add(entity, 0);
+        }
+
+        final EntitySystem movement = new EntitySystem() {
+            @Override
+            public ComponentStorage[] getReadStorages() {
+                return new ComponentStorage[] { velocities };
+            }
+
+            @Override
+            public ComponentStorage[] getWrittenStorages() {
+                return new ComponentStorage[] { positions };
+            }
+
+            @Override
+            public void update(final float deltaTime) {
+                queryAndIntegrate();
+            }
+        };
+        final EntitySystem aging = new EntitySystem() {
+            @Override
+            public ComponentStorage[] getReadStorages() {
+                return new ComponentStorage[0];
+            }
+
+            @Override
+            public ComponentStorage[] getWrittenStorages() {
+                return new ComponentStorage[] { ages };
+            }
+
+            @Override
+            public void update(final float deltaTime) {
+                final int[] age = ages.getData();
+                for(int index = 0, count = ages.size(); index < count; index++)
+                    age[index]++;
+            }
+        };
+
+        pool = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+        serialScheduler = new SystemScheduler(null);
+        parallelScheduler = new SystemScheduler(pool);
+        for(final SystemScheduler scheduler : new SystemScheduler[] { serialScheduler, parallelScheduler }) {
+            scheduler.add(movement);
+            scheduler.add(aging);
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        pool.shutdown();
+    }
+
+    @Benchmark
+    public int queryAndIntegrate() {
+        final int count = query.run();
+        final int[] positionIndices = query.getIndices(0);
+        final int[] velocityIndices = query.getIndices(1);
+        final float[] position = positions.getData();
+        final float[] velocity = velocities.getData();
+
+        for(int match = 0; match < count; match++) {
+            final int p = positionIndices[match] * 3, v = velocityIndices[match] * 3;
+            position[p] += velocity[v] * 0.016f;
+            position[p + 1] += velocity[v + 1] * 0.016f;
+            position[p + 2] += velocity[v + 2] * 0.016f;
+        }
+        return count;
+    }
+
+    @Benchmark
+    public int queryOnly() {
+        return query.run();
+    }
+
+    @Benchmark
+    public int createAndDestroy() {
+        final int entity = registry.create();
+        positions.add(entity, 0.0f);
+        registry.destroy(entity);
+        return entity;
+    }
+
+    @Benchmark
+    public float[] schedulerSerial() {
+        serialScheduler.run(0.016f);
+        return positions.getData();
+    }
+
+    @Benchmark
+    public float[] schedulerParallel() {
+        parallelScheduler.run(0.016f);
+        return positions.getData();
+    }
+}
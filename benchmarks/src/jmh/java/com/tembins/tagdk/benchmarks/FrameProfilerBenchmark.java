@@ -0,0 +1,43 @@
+package com.tembins.tagdk.benchmarks;
+
+import com.tembins.tagdk.loop.Clock;
+import com.tembins.tagdk.profiling.FrameProfiler;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Measures the cost of recording a profiler scope, compared to the bare clock reads it needs.
+ */
+@State(Scope.Thread)
+public class FrameProfilerBenchmark {
+
+    private final FrameProfiler profiler = new FrameProfiler("Benchmark", 1 << 16, 64, Clock.SYSTEM);
+    private int scope;
+
+    @Setup
+    public void setup() {
+        scope = profiler.registerScope("Scope");
+    }
+
+    @Benchmark
+    public void scope() {
+        profiler.begin(scope);
+        profiler.end();
+    }
+
+    @Benchmark
+    public void disabledScope() {
+        profiler.setEnabled(false);
+        profiler.begin(scope);
+        profiler.end();
+        profiler.setEnabled(true);
+    }
+
+    @Benchmark
+    public long clockReads() {
+        return System.nanoTime() + System.nanoTime();
+    }
+}
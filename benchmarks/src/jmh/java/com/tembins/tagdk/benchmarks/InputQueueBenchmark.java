@@ -0,0 +1,63 @@
+package com.tembins.tagdk.benchmarks;
+
+import com.tembins.tagdk.input.InputBatch;
+import com.tembins.tagdk.input.InputQueue;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Measures handing one tick worth of touch samples to the simulation, through the lock-free
+ * queue and through a synchronized list of event objects as used before.
+ */
+@State(Scope.Thread)
+public class InputQueueBenchmark {
+
+    private static final int EVENTS_PER_TICK = 32;
+
+    private static final class TouchEvent {
+
+        final int type, pointerID;
+        final float x, y;
+        final long timeNanos;
+
+        TouchEvent(final int type, final int pointerID, final float x, final float y, final long timeNanos) {
+            this.type = type;
+            this.pointerID = pointerID;
+            this.x = x;
+            this.y = y;
+            this.timeNanos = timeNanos;
+        }
+    }
+
+    private final InputQueue queue = new InputQueue(256);
+    private final InputBatch batch = new InputBatch(256);
+    private final List<TouchEvent> list = Collections.synchronizedList(new ArrayList<TouchEvent>());
+    private final ArrayList<TouchEvent> drained = new ArrayList<>();
+    private long time;
+
+    @Benchmark
+    public int queueTick() {
+        for(int event = 0; event < EVENTS_PER_TICK; event++)
+            queue.push(InputQueue.TOUCH_MOVE, event & 3, event, event, ++time);
+        return queue.drain(batch, time);
+    }
+
+    @Benchmark
+    public int synchronizedListTick() {
+        for(int event = 0; event < EVENTS_PER_TICK; event++)
+            list.add(new TouchEvent(InputQueue.TOUCH_MOVE, event & 3, event, event, ++time));
+
+        drained.clear();
+        synchronized(list) {
+            drained.addAll(list);
+            list.clear();
+        }
+        return drained.size();
+    }
+}
@@ -0,0 +1,70 @@
+package com.tembins.tagdk.benchmarks;
+
+import com.tembins.tagdk.jobs.Job;
+import com.tembins.tagdk.jobs.JobCounter;
+import com.tembins.tagdk.jobs.JobSystem;
+import com.tembins.tagdk.jobs.RangeJob;
+import com.tembins.tagdk.jobs.ScratchAllocator;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * Measures the scheduling overhead of the job system with empty jobs and a parallel loop over
+ * 100k floats, with 4, 6 and 8 workers to match the core counts of common devices.
+ */
+@State(Scope.Thread)
+public class JobSystemBenchmark {
+
+    private static final int JOB_COUNT = 256;
+    private static final int ELEMENT_COUNT = 100_000;
+
+    private static final Job EMPTY_JOB = new Job() {
+        @Override
+        public void execute(final ScratchAllocator scratch) {
+        }
+    };
+
+    @Param({ "4", "6", "8" })
+    public int workers;
+
+    private JobSystem jobSystem;
+    private final JobCounter counter = new JobCounter();
+    private final float[] values = new float[ELEMENT_COUNT];
+    private final RangeJob scaleJob = new RangeJob() {
+        @Override
+        public void execute(final int start, final int end, final ScratchAllocator scratch) {
+            for(int index = start; index < end; index++)
+                values[index] = values[index] * 0.5f + 1.0f;
+        }
+    };
+
+    @Setup
+    public void setup() {
+        jobSystem = new JobSystem(workers);
+    }
+
+    @TearDown
+    public void tearDown() {
+        jobSystem.shutdown();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(JOB_COUNT)
+    public void emptyJobs() {
+        for(int job = 0; job < JOB_COUNT; job++)
+            jobSystem.run(EMPTY_JOB, counter);
+        counter.await();
+    }
+
+    @Benchmark
+    public float[] parallelFor() {
+        jobSystem.parallelFor(0, ELEMENT_COUNT, 4096, scaleJob);
+        return values;
+    }
+}
@@ -0,0 +1,60 @@
+package com.tembins.tagdk.benchmarks;
+
+import com.tembins.tagdk.math.Matrix4f;
+import com.tembins.tagdk.math.Vector3f;
+import com.tembins.tagdk.math.Vector4f;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Measures the immutable vector and matrix operations, including the allocations they cause,
+ * against the allocation free array variant used by the transform hierarchy.
+ */
+@State(Scope.Thread)
+public class MathBenchmark {
+
+    private Vector3f first, second;
+    private Vector4f point;
+    private Matrix4f left, right;
+    private final float[] leftArray = new float[16], rightArray = new float[16], resultArray = new float[16];
+
+    @Setup
+    public void setup() {
+        first = new Vector3f(1.0f, 2.0f, 3.0f);
+        second = new Vector3f(-0.5f, 4.0f, 0.25f);
+        point = new Vector4f(1.0f, 2.0f, 3.0f, 1.0f);
+        left = BenchmarkData.perspectiveView(1.0f);
+        right = BenchmarkData.perspectiveView(2.0f);
+        left.store(leftArray, 0);
+        right.store(rightArray, 0);
+    }
+
+    @Benchmark
+    public Vector3f vectorArithmetic() {
+        return first.add(second).mul(0.5f).sub(1.0f).normalize();
+    }
+
+    @Benchmark
+    public float vectorDot() {
+        return first.dot(second);
+    }
+
+    @Benchmark
+    public Matrix4f matrixMultiply() {
+        return left.mul(right);
+    }
+
+    @Benchmark
+    public float[] matrixMultiplyArrays() {
+        Matrix4f.mul(leftArray, 0, rightArray, 0, resultArray, 0);
+        return resultArray;
+    }
+
+    @Benchmark
+    public Vector4f matrixTransform() {
+        return left.mul(point);
+    }
+}
@@ -0,0 +1,55 @@
+package com.tembins.tagdk.benchmarks;
+
+import com.tembins.tagdk.graphics.resource.mesh.MeshData;
+import com.tembins.tagdk.graphics.resource.mesh.MeshLods;
+import com.tembins.tagdk.graphics.resource.mesh.ObjParser;
+import com.tembins.tagdk.math.BoundingBox;
+import com.tembins.tagdk.math.BoundingSphere;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.IOException;
+
+/**
+ * Measures the CPU side of mesh loading: parsing OBJ sources, computing the bounds and generating
+ * levels of detail.
+ */
+@State(Scope.Thread)
+public class MeshProcessingBenchmark {
+
+    @Param({ "16", "128" })
+    public int gridSize;
+
+    private String source;
+    private MeshData meshData;
+
+    @Setup
+    public void setup() throws IOException {
+        source = BenchmarkData.gridObj(gridSize);
+        meshData = ObjParser.parse(source);
+    }
+
+    @Benchmark
+    public MeshData parseObj() throws IOException {
+        return ObjParser.parse(source);
+    }
+
+    @Benchmark
+    public BoundingBox computeBoundingBox() {
+        return BoundingBox.fromPositions(meshData.positions);
+    }
+
+    @Benchmark
+    public BoundingSphere computeBoundingSphere() {
+        return BoundingSphere.fromPositions(meshData.positions);
+    }
+
+    @Benchmark
+    public MeshLods generateLods() {
+        return MeshLods.generate(meshData.positions, meshData.indices, 4, MeshLods.DEFAULT_REDUCTION, 0.5f);
+    }
+}
@@ -0,0 +1,93 @@
+package com.tembins.tagdk.benchmarks;
+
+import com.tembins.tagdk.graphics.culling.CullingBatch;
+import com.tembins.tagdk.graphics.culling.Frustum;
+import com.tembins.tagdk.graphics.culling.OcclusionCuller;
+import com.tembins.tagdk.jobs.JobSystem;
+import com.tembins.tagdk.math.Matrix4f;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * Measures software occlusion culling of 20k objects in a city of 256 box shaped buildings:
+ * rasterizing the buildings into the 256x128 depth buffer, serially and on the job system, and
+ * testing the frustum culled objects against it.
+ */
+@State(Scope.Thread)
+public class OcclusionBenchmark {
+
+    private static final int OBJECT_COUNT = 20_000;
+    private static final int BLOCKS = 16;
+    private static final short[] BOX_INDICES = {
+            0, 1, 2, 0, 2, 3, 4, 6, 5, 4, 7, 6, 0, 4, 5, 0, 5, 1,
+            3, 2, 6, 3, 6, 7, 0, 3, 7, 0, 7, 4, 1, 5, 6, 1, 6, 2 };
+
+    private final Matrix4f viewProjection = BenchmarkData.perspectiveView(0.0f);
+    private final Frustum frustum = new Frustum();
+    private final CullingBatch batch = new CullingBatch(OBJECT_COUNT);
+    private final int[] visible = new int[OBJECT_COUNT];
+    private final OcclusionCuller culler = new OcclusionCuller();
+    private int frustumVisibleCount;
+    private JobSystem jobSystem;
+
+    @Setup
+    public void setup() {
+        frustum.set(viewProjection);
+        final float[] boxes = BenchmarkData.randomBoxes(OBJECT_COUNT, 400.0f, 4.0f);
+        for(int box = 0; box < OBJECT_COUNT; box++) {
+            final int offset = box * 6;
+            batch.add(boxes[offset], boxes[offset + 1], boxes[offset + 2],
+                    boxes[offset + 3], boxes[offset + 4], boxes[offset + 5]);
+        }
+
+        // Buildings of 10x10 units on a 25 unit grid in front of the camera, 10 to 70 units high
+        for(int row = 0; row < BLOCKS; row++) {
+            for(int column = 0; column < BLOCKS; column++) {
+                final float minX = (column - BLOCKS / 2) * 25.0f, minZ = -10.0f - row * 25.0f - 10.0f;
+                final float maxX = minX + 10.0f, maxZ = minZ + 10.0f;
+                final float minY = -200.0f, maxY = 10.0f + (row * 7 + column * 13) % 60;
+                culler.addOccluder(new float[] {
+                        minX, minY, minZ, maxX, minY, minZ, maxX, maxY, minZ, minX, maxY, minZ,
+                        minX, minY, maxZ, maxX, minY, maxZ, maxX, maxY, maxZ, minX, maxY, maxZ },
+                        BOX_INDICES);
+            }
+        }
+
+        jobSystem = JobSystem.createDefault();
+        culler.render(viewProjection, null);
+        frustumVisibleCount = batch.cull(frustum, visible);
+    }
+
+    @TearDown
+    public void tearDown() {
+        jobSystem.shutdown();
+    }
+
+    @Benchmark
+    public float rasterizeOccluders() {
+        culler.render(viewProjection, null);
+        return culler.getDepth(128, 64);
+    }
+
+    @Benchmark
+    public float rasterizeOccludersParallel() {
+        culler.render(viewProjection, jobSystem);
+        return culler.getDepth(128, 64);
+    }
+
+    @Benchmark
+    public int testObjects() {
+        batch.cull(frustum, visible);
+        return culler.cull(batch, visible, frustumVisibleCount, null);
+    }
+
+    @Benchmark
+    public int testObjectsParallel() {
+        batch.cull(frustum, visible);
+        return culler.cull(batch, visible, frustumVisibleCount, jobSystem);
+    }
+}
@@ -0,0 +1,161 @@
+package com.tembins.tagdk.benchmarks;
+
+import com.tembins.tagdk.graphics.culling.Frustum;
+import com.tembins.tagdk.spatial.DynamicAABBTree;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Compares queries of the dynamic AABB tree with brute force loops over all boxes.
+ */
+@State(Scope.Thread)
+public class SpatialQueryBenchmark {
+
+    private static final float QUERY_SIZE = 20.0f;
+    private static final float MOVE_AMPLITUDE = 0.25f;
+
+    @Param({ "1000", "10000", "100000" })
+    public int objectCount;
+
+    private final Frustum frustum = new Frustum();
+    private DynamicAABBTree tree;
+    private float[] boxes;
+    private int[] proxies;
+    private int[] results;
+    private float worldSize;
+    private int frame;
+
+    @Setup
+    public void setup() {
+        // Keeps the object density constant, so the amount of query results stays comparable
+        worldSize = (float) Math.cbrt(objectCount) * 10.0f;
+        boxes = BenchmarkData.randomBoxes(objectCount, worldSize, 2.0f);
+        results = new int[objectCount];
+        frustum.set(BenchmarkData.perspectiveView(worldSize * 0.5f));
+
+        tree = new DynamicAABBTree(objectCount, 0.1f);
+        proxies = new int[objectCount];
+        for(int box = 0; box < objectCount; box++) {
+            final int offset = box * 6;
+            proxies[box] = tree.createProxy(boxes[offset], boxes[offset + 1], boxes[offset + 2],
+                    boxes[offset + 3], boxes[offset + 4], boxes[offset + 5], box);
+        }
+    }
+
+    @Benchmark
+    public int queryBoxTree() {
+        return tree.queryBox(0.0f, 0.0f, 0.0f, QUERY_SIZE, QUERY_SIZE, QUERY_SIZE, results);
+    }
+
+    @Benchmark
+    public int queryBoxBruteForce() {
+        int count = 0;
+        for(int box = 0; box < objectCount; box++) {
+            final int offset = box * 6;
+            if(boxes[offset] <= QUERY_SIZE && boxes[offset + 3] >= 0.0f
+                    && boxes[offset + 1] <= QUERY_SIZE && boxes[offset + 4] >= 0.0f
+                    && boxes[offset + 2] <= QUERY_SIZE && boxes[offset + 5] >= 0.0f)
+                results[count++] = box;
+        }
+        return count;
+    }
+
+    @Benchmark
+    public int queryFrustumTree() {
+        return tree.queryFrustum(frustum, results);
+    }
+
+    @Benchmark
+    public int queryFrustumBruteForce() {
+        int count = 0;
+        for(int box = 0; box < objectCount; box++) {
+            final int offset = box * 6;
+            if(frustum.testBox(boxes[offset], boxes[offset + 1], boxes[offset + 2],
+                    boxes[offset + 3], boxes[offset + 4], boxes[offset + 5]))
+                results[count++] = box;
+        }
+        return count;
+    }
+
+    @Benchmark
+    public int rayCastTree() {
+        return tree.rayCast(0.0f, 0.0f, 0.0f, 0.577f, 0.577f, 0.577f, worldSize);
+    }
+
+    @Benchmark
+    public int rayCastBruteForce() {
+        final float inverse = 1.0f / 0.577f;
+        float closest = worldSize;
+        int hit = DynamicAABBTree.NULL_NODE;
+        for(int box = 0; box < objectCount; box++) {
+            final int offset = box * 6;
+            float near = 0.0f, far = closest;
+            for(int axis = 0; axis < 3; axis++) {
+                near = Math.max(near, boxes[offset + axis] * inverse);
+                far = Math.min(far, boxes[offset + 3 + axis] * inverse);
+            }
+            if(near <= far) {
+                closest = near;
+                hit = box;
+            }
+        }
+        return hit;
+    }
+
+    @Benchmark
+    public int findNearestTree() {
+        return tree.findNearest(worldSize * 0.25f, worldSize * 0.25f, worldSize * 0.25f, Float.POSITIVE_INFINITY);
+    }
+
+    @Benchmark
+    public int findNearestBruteForce() {
+        final float center = worldSize * 0.25f;
+        float closest = Float.POSITIVE_INFINITY;
+        int nearest = DynamicAABBTree.NULL_NODE;
+        for(int box = 0; box < objectCount; box++) {
+            final int offset = box * 6;
+            float distanceSquared = 0.0f;
+            for(int axis = 0; axis < 3; axis++) {
+                final float delta = Math.max(Math.max(boxes[offset + axis] - center, 0.0f), center - boxes[offset + 3 + axis]);
+                distanceSquared += delta * delta;
+            }
+            if(distanceSquared < closest) {
+                closest = distanceSquared;
+                nearest = box;
+            }
+        }
+        return nearest;
+    }
+
+    /**
+     * Moves every proxy back and forth around its initial position, so some frames stay inside of
+     * the fat boxes and others force reinsertion.
+     */
+    @Benchmark
+    public int moveProxies() {
+        final float delta = MOVE_AMPLITUDE * (float) Math.sin(frame++ * 0.4);
+        int reinserted = 0;
+        for(int box = 0; box < objectCount; box++) {
+            final int offset = box * 6;
+            if(tree.moveProxy(proxies[box], boxes[offset] + delta, boxes[offset + 1], boxes[offset + 2],
+                    boxes[offset + 3] + delta, boxes[offset + 4], boxes[offset + 5]))
+                reinserted++;
+        }
+        return reinserted;
+    }
+
+    @Benchmark
+    public int refitProxies() {
+        final float delta = MOVE_AMPLITUDE * (float) Math.sin(frame++ * 0.4);
+        for(int box = 0; box < objectCount; box++) {
+            final int offset = box * 6;
+            tree.refitProxy(proxies[box], boxes[offset] + delta, boxes[offset + 1], boxes[offset + 2],
+                    boxes[offset + 3] + delta, boxes[offset + 4], boxes[offset + 5]);
+        }
+        return tree.getHeight();
+    }
+}
@@ -0,0 +1,72 @@
+package com.tembins.tagdk.benchmarks;
+
+import com.tembins.tagdk.graphics.backend.RecordingBackend;
+import com.tembins.tagdk.graphics.text.FontAtlas;
+import com.tembins.tagdk.graphics.text.SdfAtlasBuilder;
+import com.tembins.tagdk.graphics.text.SdfGenerator;
+import com.tembins.tagdk.graphics.text.TextBatch;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Measures the per frame cost of a HUD whose score changes every frame, laying out the text with
+ * and without uploading the glyph instances, and the one time cost of turning a glyph into a
+ * distance field. The upload goes to the recording backend, which allocates while counting.
+ */
+@State(Scope.Thread)
+public class TextBenchmark {
+
+    private static final int GLYPH_SIZE = 64;
+    private static final String LABEL = "Score: ";
+
+    private final RecordingBackend graphics = new RecordingBackend();
+    private TextBatch batch;
+    private byte[] coverage;
+    private long score;
+
+    @Setup
+    public void setup() {
+        // A ring as a stand in for a rasterized glyph
+        coverage = new byte[GLYPH_SIZE * GLYPH_SIZE];
+        for(int y = 0; y < GLYPH_SIZE; y++) {
+            for(int x = 0; x < GLYPH_SIZE; x++) {
+                final float dx = x - GLYPH_SIZE / 2 + 0.5f, dy = y - GLYPH_SIZE / 2 + 0.5f;
+                final float distance = (float) Math.sqrt(dx * dx + dy * dy);
+                coverage[y * GLYPH_SIZE + x] = (byte) (distance > 12.0f && distance < 24.0f ? 255 : 0);
+            }
+        }
+
+        final SdfAtlasBuilder builder = new SdfAtlasBuilder(256, 256, 4.0f, 4);
+        for(char character = ' '; character <= '~'; character++)
+            builder.addGlyph(character, coverage, GLYPH_SIZE, GLYPH_SIZE, 0.0f, 16.0f, 56.0f);
+        final FontAtlas font = builder.buildAtlas(96.0f, 76.0f);
+        batch = new TextBatch(graphics, font, 256);
+    }
+
+    private void layoutHud() {
+        batch.clear();
+        final float x = batch.add(LABEL, 16.0f, 16.0f, 32.0f, 0xFFFFFFFF);
+        batch.addNumber(score++, x, 16.0f, 32.0f, 0xFFD700FF);
+        batch.add("Lives: 3\nLevel: 12", 16.0f, 56.0f, 24.0f, 0xFFFFFFFF);
+    }
+
+    @Benchmark
+    public int layoutChangingScore() {
+        layoutHud();
+        return batch.getGlyphCount();
+    }
+
+    @Benchmark
+    public int layoutAndUploadChangingScore() {
+        layoutHud();
+        return batch.upload();
+    }
+
+    @Benchmark
+    public byte[] generateGlyphField() {
+        return SdfGenerator.generate(coverage, GLYPH_SIZE, GLYPH_SIZE, 16.0f);
+    }
+}
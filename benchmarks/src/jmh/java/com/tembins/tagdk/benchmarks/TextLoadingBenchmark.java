@@ -0,0 +1,35 @@
+package com.tembins.tagdk.benchmarks;
+
+import com.tembins.tagdk.util.resource.TextLoader;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.Charset;
+
+/**
+ * Measures reading text resources, using OBJ sources of different sizes held in memory.
+ */
+@State(Scope.Thread)
+public class TextLoadingBenchmark {
+
+    @Param({ "16", "128" })
+    public int gridSize;
+
+    private byte[] source;
+
+    @Setup
+    public void setup() {
+        source = BenchmarkData.gridObj(gridSize).getBytes(Charset.forName("UTF-8"));
+    }
+
+    @Benchmark
+    public String loadText() throws IOException {
+        return TextLoader.loadText(new ByteArrayInputStream(source));
+    }
+}
@@ -0,0 +1,328 @@
+package com.tembins.tagdk.animation;
+
+/**
+ * An animation of all joints of a skeleton, sampled at a fixed frame rate and stored compressed.
+ * Poses are written as POSE_SIZE floats per joint: the translation (x, y, z), the rotation
+ * quaternion (x, y, z, w) and the scale (x, y, z), relative to the parent joint.
+ *
+ * When compressing, every channel (translation, rotation or scale of one joint) that does not
+ * change during the clip is stored only once. Animated translations and scales are quantized to
+ * 16 bits per component within the range of their channel, rotations are stored as their three
+ * smallest components with 15 bits each plus the index of the dropped one, so every animated
+ * channel takes 6 bytes per frame instead of 12 or 16. Frames are stored one after another, so
+ * sampling reads two short contiguous runs of memory.
+ */
+public final class AnimationClip {
+
+    public static final int POSE_SIZE = 10;
+    public static final int TRANSLATION_OFFSET = 0, ROTATION_OFFSET = 3, SCALE_OFFSET = 7;
+    public static final float DEFAULT_TOLERANCE = 1.0e-4f;
+
+    private static final int SHORTS_PER_CHANNEL = 3;
+    private static final float ROTATION_RANGE = (float) Math.sqrt(0.5);
+    private static final int ROTATION_STEPS = (1 << 15) - 1;
+    private static final int RANGE_STEPS = (1 << 16) - 1;
+
+    private final int jointCount, frameCount;
+    private final float frameRate;
+    private final float[] constantPose;
+
+    // The pose offset, the minimum and the step size of every animated channel
+    private final int[] channelOffsets;
+    private final float[] channelRanges;
+    private final short[] samples;
+    private final int frameStride;
+
+    private AnimationClip(final int jointCount, final int frameCount, final float frameRate,
+                          final float[] constantPose, final int[] channelOffsets, final float[] channelRanges,
+                          final short[] samples) {
+        this.jointCount = jointCount;
+        this.frameCount = frameCount;
+        this.frameRate = frameRate;
+        this.constantPose = constantPose;
+        this.channelOffsets = channelOffsets;
+        this.channelRanges = channelRanges;
+        this.samples = samples;
+        frameStride = channelOffsets.length * SHORTS_PER_CHANNEL;
+    }
+
+    /**
+     * Compresses an animation with the default tolerance.
+     *
+     * @param jointCount The amount of joints of the skeleton.
+     * @param frameRate The amount of frames per second.
+     * @param frames The poses of all frames, POSE_SIZE floats per joint and jointCount joints per
+     *               frame.
+     * @return The compressed clip.
+     */
+    public static AnimationClip compress(final int jointCount, final float frameRate, final float[] frames) {
+        return compress(jointCount, frameRate, frames, DEFAULT_TOLERANCE);
+    }
+
+    /**
+     * Compresses an animation with the following parameters:
+     *
+     * @param jointCount The amount of joints of the skeleton.
+     * @param frameRate The amount of frames per second.
+     * @param frames The poses of all frames, POSE_SIZE floats per joint and jointCount joints per
+     *               frame.
+     * @param tolerance The largest difference of a component to its first frame value for which
+     *                  a channel is still considered constant.
+     * @return The compressed clip.
+     */
+    public static AnimationClip compress(final int jointCount, final float frameRate, final float[] frames,
+                                         final float tolerance) {
+        final int poseSize = jointCount * POSE_SIZE;
+        if(jointCount <= 0 || frames.length == 0 || frames.length % poseSize != 0)
+            throw new IllegalArgumentException("The frames have to contain whole poses");
+        if(frameRate <= 0.0f)
+            throw new IllegalArgumentException("The frame rate must be positive");
+
+        final int frameCount = frames.length / poseSize;
+        final float[] constantPose = new float[poseSize];
+        System.arraycopy(frames, 0, constantPose, 0, poseSize);
+
+        final int[] animated = new int[jointCount * 3];
+        int channelCount = 0;
+        for(int joint = 0; joint < jointCount; joint++) {
+            final int pose = joint * POSE_SIZE;
+            normalizeRotation(constantPose, pose + ROTATION_OFFSET);
+
+            if(isAnimated(frames, frameCount, poseSize, pose + TRANSLATION_OFFSET, 3, tolerance))
+                animated[channelCount++] = pose + TRANSLATION_OFFSET;
+            if(isAnimated(frames, frameCount, poseSize, pose + ROTATION_OFFSET, 4, tolerance))
+                animated[channelCount++] = pose + ROTATION_OFFSET;
+            if(isAnimated(frames, frameCount, poseSize, pose + SCALE_OFFSET, 3, tolerance))
+                animated[channelCount++] = pose + SCALE_OFFSET;
+        }
+
+        final int[] channelOffsets = new int[channelCount];
+        System.arraycopy(animated, 0, channelOffsets, 0, channelCount);
+        final float[] channelRanges = new float[channelCount * 6];
+        final short[] samples = new short[frameCount * channelCount * SHORTS_PER_CHANNEL];
+
+        for(int channel = 0; channel < channelCount; channel++) {
+            final int offset = channelOffsets[channel];
+            if(offset % POSE_SIZE == ROTATION_OFFSET) {
+                for(int frame = 0; frame < frameCount; frame++)
+                    encodeRotation(frames, frame * poseSize + offset, samples,
+                            (frame * channelCount + channel) * SHORTS_PER_CHANNEL);
+                continue;
+            }
+
+            for(int component = 0; component < 3; component++) {
+                float min = Float.POSITIVE_INFINITY, max = Float.NEGATIVE_INFINITY;
+                for(int frame = 0; frame < frameCount; frame++) {
+                    min = Math.min(min, frames[frame * poseSize + offset + component]);
+                    max = Math.max(max, frames[frame * poseSize + offset + component]);
+                }
+
+                final float step = (max - min) / RANGE_STEPS;
+                channelRanges[channel * 6 + component] = min;
+                channelRanges[channel * 6 + 3 + component] = step;
+                for(int frame = 0; frame < frameCount; frame++) {
+                    final float value = frames[frame * poseSize + offset + component];
+                    final int quantized = step > 0.0f ? Math.round((value - min) / step) : 0;
+                    samples[(frame * channelCount + channel) * SHORTS_PER_CHANNEL + component] =
+                            (short) Math.min(RANGE_STEPS, quantized);
+                }
+            }
+        }
+
+        return new AnimationClip(jointCount, frameCount, frameRate, constantPose, channelOffsets, channelRanges,
+                samples);
+    }
+
+    private static boolean isAnimated(final float[] frames, final int frameCount, final int poseSize, final int offset,
+                                      final int size, final float tolerance) {
+        // Rotations q and -q are the same, so quaternions are compared after aligning their signs
+        final boolean rotation = size == 4;
+        for(int frame = 1; frame < frameCount; frame++) {
+            final int current = frame * poseSize + offset;
+            float sign = 1.0f;
+            if(rotation && frames[current] * frames[offset] + frames[current + 1] * frames[offset + 1]
+                    + frames[current + 2] * frames[offset + 2] + frames[current + 3] * frames[offset + 3] < 0.0f)
+                sign = -1.0f;
+
+            for(int component = 0; component < size; component++)
+                if(Math.abs(frames[current + component] * sign - frames[offset + component]) > tolerance)
+                    return true;
+        }
+
+        return false;
+    }
+
+    private static void normalizeRotation(final float[] pose, final int offset) {
+        final float x = pose[offset], y = pose[offset + 1], z = pose[offset + 2], w = pose[offset + 3];
+        final float length = (float) Math.sqrt(x * x + y * y + z * z + w * w);
+        if(length == 0.0f)
+            throw new IllegalArgumentException("Rotations must not be zero");
+
+        pose[offset] = x / length;
+        pose[offset + 1] = y / length;
+        pose[offset + 2] = z / length;
+        pose[offset + 3] = w / length;
+    }
+
+    private static void encodeRotation(final float[] frames, final int offset, final short[] samples, final int target) {
+        float lengthSquared = 0.0f;
+        int largest = 0;
+        for(int component = 0; component < 4; component++) {
+            lengthSquared += frames[offset + component] * frames[offset + component];
+            if(Math.abs(frames[offset + component]) > Math.abs(frames[offset + largest]))
+                largest = component;
+        }
+
+        // The dropped component is reconstructed as positive, so the quaternion is negated if needed
+        final float scale = (frames[offset + largest] < 0.0f ? -1.0f : 1.0f) / (float) Math.sqrt(lengthSquared);
+        long packed = largest;
+        for(int component = 0; component < 4; component++) {
+            if(component == largest)
+                continue;
+
+            final float value = frames[offset + component] * scale;
+            final float normalized = Math.max(0.0f, Math.min(1.0f, (value / ROTATION_RANGE + 1.0f) * 0.5f));
+            packed = packed << 15 | Math.round(normalized * ROTATION_STEPS);
+        }
+
+        samples[target] = (short) (packed >>> 32);
+        samples[target + 1] = (short) (packed >>> 16);
+        samples[target + 2] = (short) packed;
+    }
+
+    private static float decodeRotationComponent(final long packed, final int shift) {
+        return (((packed >>> shift) & ROTATION_STEPS) * (2.0f / ROTATION_STEPS) - 1.0f) * ROTATION_RANGE;
+    }
+
+    /**
+     * Samples the clip, interpolating between the two closest frames.
+     *
+     * @param time The time in seconds since the start of the clip.
+     * @param loop Whether the clip repeats, otherwise the time is clamped to the duration. Looping
+     *             clips are expected to end with the same pose they start with.
+     * @param pose The array to write the joint poses to, POSE_SIZE floats per joint.
+     * @param offset The index of the first value to write.
+     */
+    public void sample(final float time, final boolean loop, final float[] pose, final int offset) {
+        System.arraycopy(constantPose, 0, pose, offset, constantPose.length);
+        if(channelOffsets.length == 0)
+            return;
+
+        final int lastFrame = frameCount - 1;
+        float position = time * frameRate;
+        if(loop && lastFrame > 0) {
+            position %= lastFrame;
+            if(position < 0.0f)
+                position += lastFrame;
+        } else {
+            position = Math.max(0.0f, Math.min(lastFrame, position));
+        }
+
+        final int frame = Math.min((int) position, lastFrame);
+        final float alpha = position - frame;
+        final int first = frame * frameStride;
+        final int second = Math.min(frame + 1, lastFrame) * frameStride;
+        final short[] samples = this.samples;
+
+        for(int channel = 0; channel < channelOffsets.length; channel++) {
+            final int target = offset + channelOffsets[channel];
+            final int a = first + channel * SHORTS_PER_CHANNEL, b = second + channel * SHORTS_PER_CHANNEL;
+
+            if(channelOffsets[channel] % POSE_SIZE != ROTATION_OFFSET) {
+                final int range = channel * 6;
+                for(int component = 0; component < 3; component++) {
+                    final int valueA = samples[a + component] & 0xFFFF, valueB = samples[b + component] & 0xFFFF;
+                    pose[target + component] = channelRanges[range + component]
+                            + (valueA + (valueB - valueA) * alpha) * channelRanges[range + 3 + component];
+                }
+                continue;
+            }
+
+            final long packedA = (samples[a] & 0xFFFFL) << 32 | (samples[a + 1] & 0xFFFFL) << 16 | samples[a + 2] & 0xFFFFL;
+            final int droppedA = (int) (packedA >>> 45);
+            final float a0 = decodeRotationComponent(packedA, 30), a1 = decodeRotationComponent(packedA, 15);
+            final float a2 = decodeRotationComponent(packedA, 0);
+            final float aLargest = (float) Math.sqrt(Math.max(0.0f, 1.0f - a0 * a0 - a1 * a1 - a2 * a2));
+            final float ax = droppedA == 0 ? aLargest : a0;
+            final float ay = droppedA == 0 ? a0 : droppedA == 1 ? aLargest : a1;
+            final float az = droppedA <= 1 ? a1 : droppedA == 2 ? aLargest : a2;
+            final float aw = droppedA == 3 ? aLargest : a2;
+
+            final long packedB = (samples[b] & 0xFFFFL) << 32 | (samples[b + 1] & 0xFFFFL) << 16 | samples[b + 2] & 0xFFFFL;
+            final int droppedB = (int) (packedB >>> 45);
+            final float b0 = decodeRotationComponent(packedB, 30), b1 = decodeRotationComponent(packedB, 15);
+            final float b2 = decodeRotationComponent(packedB, 0);
+            final float bLargest = (float) Math.sqrt(Math.max(0.0f, 1.0f - b0 * b0 - b1 * b1 - b2 * b2));
+            final float bx = droppedB == 0 ? bLargest : b0;
+            final float by = droppedB == 0 ? b0 : droppedB == 1 ? bLargest : b1;
+            final float bz = droppedB <= 1 ? b1 : droppedB == 2 ? bLargest : b2;
+            final float bw = droppedB == 3 ? bLargest : b2;
+
+            // Normalized linear interpolation along the shorter arc
+            final float weightA = 1.0f - alpha;
+            final float weightB = ax * bx + ay * by + az * bz + aw * bw < 0.0f ? -alpha : alpha;
+            final float x = ax * weightA + bx * weightB, y = ay * weightA + by * weightB;
+            final float z = az * weightA + bz * weightB, w = aw * weightA + bw * weightB;
+            final float inverseLength = 1.0f / (float) Math.sqrt(x * x + y * y + z * z + w * w);
+            pose[target] = x * inverseLength;
+            pose[target + 1] = y * inverseLength;
+            pose[target + 2] = z * inverseLength;
+            pose[target + 3] = w * inverseLength;
+        }
+    }
+
+    /**
+     * Returns the amount of joints animated by this clip.
+     *
+     * @return The joint count.
+     */
+    public int getJointCount() {
+        return jointCount;
+    }
+
+    /**
+     * Returns the amount of stored frames.
+     *
+     * @return The frame count.
+     */
+    public int getFrameCount() {
+        return frameCount;
+    }
+
+    /**
+     * Returns the amount of frames per second.
+     *
+     * @return The frame rate.
+     */
+    public float getFrameRate() {
+        return frameRate;
+    }
+
+    /**
+     * Returns the time from the first to the last frame.
+     *
+     * @return The duration in seconds.
+     */
+    public float getDuration() {
+        return (frameCount - 1) / frameRate;
+    }
+
+    /**
+     * Returns the amount of channels that change during the clip. Every joint has a translation,
+     * a rotation and a scale channel.
+     *
+     * @return The animated channel count.
+     */
+    public int getAnimatedChannelCount() {
+        return channelOffsets.length;
+    }
+
+    /**
+     * Returns the approximate amount of memory used by the compressed data.
+     *
+     * @return The size in bytes.
+     */
+    public int getCompressedSize() {
+        return samples.length * 2 + (constantPose.length + channelRanges.length + channelOffsets.length) * 4;
+    }
+}
@@ -0,0 +1,291 @@
+package com.tembins.tagdk.animation;
+
+import com.tembins.tagdk.graphics.backend.GraphicsBackend;
+import com.tembins.tagdk.jobs.JobSystem;
+import com.tembins.tagdk.jobs.RangeJob;
+import com.tembins.tagdk.jobs.ScratchAllocator;
+
+import java.util.Arrays;
+
+/**
+ * Evaluates the poses of many characters sharing a skeleton in one batch. Every character plays
+ * one clip; evaluating samples the clips into local poses, composes the model space transform of
+ * every joint and multiplies it with the inverse bind matrix, yielding the skinning palette.
+ *
+ * All results are kept in flat arrays with one contiguous region per character, so characters can
+ * be evaluated in parallel without synchronization. Palette matrices are affine 3x4 matrices, 12
+ * row-major floats per joint, which is the layout expected by Skinning.uploadPalette.
+ */
+public final class PoseSampler {
+
+    public static final int PALETTE_SIZE = Skeleton.AFFINE_SIZE;
+    private static final int DEFAULT_GRAIN_SIZE = 8;
+
+    private final Skeleton skeleton;
+    private final int jointCount;
+
+    private AnimationClip[] clips;
+    private float[] times;
+    private boolean[] loops;
+    private float[] localPoses;
+    private float[] modelMatrices;
+    private float[] palettes;
+    private int characterCount;
+
+    private final RangeJob evaluateJob = new RangeJob() {
+        @Override
+        public void execute(final int start, final int end, final ScratchAllocator scratch) {
+            for(int character = start; character < end; character++)
+                evaluate(character);
+        }
+    };
+
+    /**
+     * Initializes an empty sampler. It grows if more characters are added.
+     *
+     * @param skeleton The skeleton shared by all characters.
+     * @param initialCapacity The amount of characters to reserve memory for.
+     */
+    public PoseSampler(final Skeleton skeleton, final int initialCapacity) {
+        this.skeleton = skeleton;
+        jointCount = skeleton.getJointCount();
+        grow(Math.max(1, initialCapacity));
+    }
+
+    private void grow(final int capacity) {
+        clips = clips == null ? new AnimationClip[capacity] : Arrays.copyOf(clips, capacity);
+        times = times == null ? new float[capacity] : Arrays.copyOf(times, capacity);
+        loops = loops == null ? new boolean[capacity] : Arrays.copyOf(loops, capacity);
+        localPoses = localPoses == null ? new float[capacity * jointCount * AnimationClip.POSE_SIZE]
+                : Arrays.copyOf(localPoses, capacity * jointCount * AnimationClip.POSE_SIZE);
+        modelMatrices = modelMatrices == null ? new float[capacity * jointCount * PALETTE_SIZE]
+                : Arrays.copyOf(modelMatrices, capacity * jointCount * PALETTE_SIZE);
+        palettes = palettes == null ? new float[capacity * jointCount * PALETTE_SIZE]
+                : Arrays.copyOf(palettes, capacity * jointCount * PALETTE_SIZE);
+    }
+
+    /**
+     * Adds a character without a clip, which stays in the bind pose.
+     *
+     * @return The index of the character.
+     */
+    public int addCharacter() {
+        if(characterCount == clips.length)
+            grow(characterCount * 2);
+
+        final int character = characterCount++;
+        clips[character] = null;
+        times[character] = 0.0f;
+        loops[character] = false;
+        return character;
+    }
+
+    /**
+     * Sets the clip played by a character.
+     *
+     * @param character The character index.
+     * @param clip The clip to play, or null for the bind pose.
+     * @param time The time within the clip in seconds.
+     * @param loop Whether the clip repeats.
+     */
+    public void setAnimation(final int character, final AnimationClip clip, final float time, final boolean loop) {
+        if(clip != null && clip.getJointCount() != jointCount)
+            throw new IllegalArgumentException("The clip animates " + clip.getJointCount() + " joints instead of "
+                    + jointCount);
+
+        clips[character] = clip;
+        times[character] = time;
+        loops[character] = loop;
+    }
+
+    /**
+     * Sets the time within the clip of a character, e.g. after advancing it by the frame time.
+     *
+     * @param character The character index.
+     * @param time The time within the clip in seconds.
+     */
+    public void setTime(final int character, final float time) {
+        times[character] = time;
+    }
+
+    /**
+     * Returns the time within the clip of a character.
+     *
+     * @param character The character index.
+     * @return The time in seconds.
+     */
+    public float getTime(final int character) {
+        return times[character];
+    }
+
+    /**
+     * Evaluates the palettes of all characters on the calling thread.
+     */
+    public void evaluate() {
+        for(int character = 0; character < characterCount; character++)
+            evaluate(character);
+    }
+
+    /**
+     * Evaluates the palettes of all characters like evaluate(), distributing the characters over
+     * the workers of the job system.
+     *
+     * @param jobs The job system to run the evaluation on.
+     */
+    public void evaluate(final JobSystem jobs) {
+        jobs.parallelFor(0, characterCount, DEFAULT_GRAIN_SIZE, evaluateJob);
+    }
+
+    private void evaluate(final int character) {
+        final int poseOffset = character * jointCount * AnimationClip.POSE_SIZE;
+        final int matrixOffset = character * jointCount * PALETTE_SIZE;
+        final AnimationClip clip = clips[character];
+        if(clip == null) {
+            // In the bind pose the joints are at their bind transforms and skinning does nothing
+            System.arraycopy(skeleton.bindMatrices, 0, modelMatrices, matrixOffset, jointCount * PALETTE_SIZE);
+            for(int joint = 0; joint < jointCount; joint++)
+                setIdentity(palettes, matrixOffset + joint * PALETTE_SIZE);
+            return;
+        }
+
+        clip.sample(times[character], loops[character], localPoses, poseOffset);
+
+        final int[] parents = skeleton.parents;
+        final float[] inverseBindMatrices = skeleton.inverseBindMatrices;
+        for(int joint = 0; joint < jointCount; joint++) {
+            final int model = matrixOffset + joint * PALETTE_SIZE;
+            final int parent = parents[joint];
+
+            // The local transform is composed in the palette, which is overwritten right after
+            compose(localPoses, poseOffset + joint * AnimationClip.POSE_SIZE, palettes, model);
+            if(parent == Skeleton.NO_PARENT)
+                System.arraycopy(palettes, model, modelMatrices, model, PALETTE_SIZE);
+            else
+                mulAffine(modelMatrices, matrixOffset + parent * PALETTE_SIZE, palettes, model, modelMatrices, model);
+
+            mulAffine(modelMatrices, model, inverseBindMatrices, joint * PALETTE_SIZE, palettes, model);
+        }
+    }
+
+    private static void setIdentity(final float[] m, final int offset) {
+        Arrays.fill(m, offset, offset + PALETTE_SIZE, 0.0f);
+        m[offset] = 1.0f;
+        m[offset + 5] = 1.0f;
+        m[offset + 10] = 1.0f;
+    }
+
+    /**
+     * Writes the affine matrix applying the scale, the rotation and the translation of a pose.
+     */
+    private static void compose(final float[] pose, final int offset, final float[] m, final int target) {
+        final float rotationX = pose[offset + 3], rotationY = pose[offset + 4];
+        final float rotationZ = pose[offset + 5], rotationW = pose[offset + 6];
+        final float scaleX = pose[offset + 7], scaleY = pose[offset + 8], scaleZ = pose[offset + 9];
+
+        final float xx = rotationX * rotationX, yy = rotationY * rotationY, zz = rotationZ * rotationZ;
+        final float xy = rotationX * rotationY, xz = rotationX * rotationZ, yz = rotationY * rotationZ;
+        final float wx = rotationW * rotationX, wy = rotationW * rotationY, wz = rotationW * rotationZ;
+
+        m[target] = (1.0f - 2.0f * (yy + zz)) * scaleX;
+        m[target + 1] = 2.0f * (xy - wz) * scaleY;
+        m[target + 2] = 2.0f * (xz + wy) * scaleZ;
+        m[target + 3] = pose[offset];
+        m[target + 4] = 2.0f * (xy + wz) * scaleX;
+        m[target + 5] = (1.0f - 2.0f * (xx + zz)) * scaleY;
+        m[target + 6] = 2.0f * (yz - wx) * scaleZ;
+        m[target + 7] = pose[offset + 1];
+        m[target + 8] = 2.0f * (xz - wy) * scaleX;
+        m[target + 9] = 2.0f * (yz + wx) * scaleY;
+        m[target + 10] = (1.0f - 2.0f * (xx + yy)) * scaleZ;
+        m[target + 11] = pose[offset + 2];
+    }
+
+    /**
+     * Multiplies two affine 3x4 matrices, treating the missing last rows as (0, 0, 0, 1). The
+     * result may be stored in place of either operand.
+     */
+    private static void mulAffine(final float[] a, final int aOffset, final float[] b, final int bOffset,
+                                  final float[] result, final int resultOffset) {
+        final float b00 = b[bOffset], b01 = b[bOffset + 1], b02 = b[bOffset + 2], b03 = b[bOffset + 3];
+        final float b10 = b[bOffset + 4], b11 = b[bOffset + 5], b12 = b[bOffset + 6], b13 = b[bOffset + 7];
+        final float b20 = b[bOffset + 8], b21 = b[bOffset + 9], b22 = b[bOffset + 10], b23 = b[bOffset + 11];
+
+        for(int row = 0; row < 3; row++) {
+            final int index = aOffset + row * 4;
+            final float a0 = a[index], a1 = a[index + 1], a2 = a[index + 2], a3 = a[index + 3];
+            final int target = resultOffset + row * 4;
+            result[target] = a0 * b00 + a1 * b10 + a2 * b20;
+            result[target + 1] = a0 * b01 + a1 * b11 + a2 * b21;
+            result[target + 2] = a0 * b02 + a1 * b12 + a2 * b22;
+            result[target + 3] = a0 * b03 + a1 * b13 + a2 * b23 + a3;
+        }
+    }
+
+    /**
+     * Uploads the palette of a character to the skinning uniform of the bound program.
+     *
+     * @param graphics The backend to upload with.
+     * @param location The location of the palette uniform, see Skinning.PALETTE_UNIFORM.
+     * @param character The character index.
+     */
+    public void uploadPalette(final GraphicsBackend graphics, final int location, final int character) {
+        Skinning.uploadPalette(graphics, location, palettes, getPaletteOffset(character), jointCount);
+    }
+
+    /**
+     * Returns the palettes of all characters as computed by the last evaluation.
+     *
+     * @return The palettes, starting at getPaletteOffset for every character.
+     */
+    public float[] getPalettes() {
+        return palettes;
+    }
+
+    /**
+     * Returns the model space transforms of all joints of all characters as computed by the last
+     * evaluation, laid out like the palettes. These can be used to attach objects to joints.
+     *
+     * @return The model space transforms.
+     */
+    public float[] getModelMatrices() {
+        return modelMatrices;
+    }
+
+    /**
+     * Returns the local poses of all characters as sampled by the last evaluation,
+     * AnimationClip.POSE_SIZE floats per joint.
+     *
+     * @return The local poses.
+     */
+    public float[] getLocalPoses() {
+        return localPoses;
+    }
+
+    /**
+     * Returns the index of the first palette value of a character.
+     *
+     * @param character The character index.
+     * @return The palette offset.
+     */
+    public int getPaletteOffset(final int character) {
+        return character * jointCount * PALETTE_SIZE;
+    }
+
+    /**
+     * Returns the amount of characters.
+     *
+     * @return The character count.
+     */
+    public int getCharacterCount() {
+        return characterCount;
+    }
+
+    /**
+     * Returns the skeleton shared by all characters.
+     *
+     * @return The skeleton.
+     */
+    public Skeleton getSkeleton() {
+        return skeleton;
+    }
+}
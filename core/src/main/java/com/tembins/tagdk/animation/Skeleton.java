@@ -0,0 +1,119 @@
+package com.tembins.tagdk.animation;
+
+import java.util.Arrays;
+
+/**
+ * The joint hierarchy of a skinned mesh. Joints are identified by their index, and every parent
+ * is stored in front of its children, so model space transforms can be computed in a single pass
+ * in index order like in TransformHierarchy.
+ *
+ * The inverse bind matrices transform mesh vertices from model space into the space of their
+ * joint. They are kept as affine 3x4 matrices, 12 consecutive row-major floats per joint, along
+ * with their inverses, the model space transforms of the joints in the bind pose.
+ */
+public final class Skeleton {
+
+    public static final int NO_PARENT = -1;
+    static final int AFFINE_SIZE = 12;
+
+    final int[] parents;
+    final float[] inverseBindMatrices;
+    final float[] bindMatrices;
+
+    /**
+     * Initializes the skeleton with the following parameters:
+     *
+     * @param parents The parent of every joint, NO_PARENT for roots. Parents have to be stored
+     *                in front of their children.
+     * @param inverseBindMatrices The inverse bind matrix of every joint as 16 row-major floats,
+     *                            see Matrix4f.store. The last row is expected to be (0, 0, 0, 1).
+     * @throws IllegalArgumentException If a parent does not precede its child or an inverse bind
+     *                                  matrix is not invertible.
+     */
+    public Skeleton(final int[] parents, final float[] inverseBindMatrices) {
+        if(inverseBindMatrices.length != parents.length * 16)
+            throw new IllegalArgumentException("Every joint needs an inverse bind matrix");
+
+        for(int joint = 0; joint < parents.length; joint++)
+            if(parents[joint] != NO_PARENT && (parents[joint] < 0 || parents[joint] >= joint))
+                throw new IllegalArgumentException("Joint " + joint + " has to follow its parent");
+
+        this.parents = Arrays.copyOf(parents, parents.length);
+        this.inverseBindMatrices = new float[parents.length * AFFINE_SIZE];
+        for(int joint = 0; joint < parents.length; joint++)
+            System.arraycopy(inverseBindMatrices, joint * 16, this.inverseBindMatrices, joint * AFFINE_SIZE,
+                    AFFINE_SIZE);
+
+        bindMatrices = new float[parents.length * AFFINE_SIZE];
+        for(int joint = 0; joint < parents.length; joint++)
+            if(!invertAffine(this.inverseBindMatrices, joint * AFFINE_SIZE, bindMatrices, joint * AFFINE_SIZE))
+                throw new IllegalArgumentException("The inverse bind matrix of joint " + joint + " is not invertible");
+    }
+
+    private static boolean invertAffine(final float[] m, final int offset, final float[] result, final int resultOffset) {
+        final float a = m[offset], b = m[offset + 1], c = m[offset + 2], x = m[offset + 3];
+        final float d = m[offset + 4], e = m[offset + 5], f = m[offset + 6], y = m[offset + 7];
+        final float g = m[offset + 8], h = m[offset + 9], i = m[offset + 10], z = m[offset + 11];
+
+        final float cofactor0 = e * i - f * h, cofactor1 = f * g - d * i, cofactor2 = d * h - e * g;
+        final float determinant = a * cofactor0 + b * cofactor1 + c * cofactor2;
+        if(determinant == 0.0f)
+            return false;
+
+        // The inverse rotation and scale, followed by the inverse translation
+        final float inverse = 1.0f / determinant;
+        final float r00 = cofactor0 * inverse, r01 = (c * h - b * i) * inverse, r02 = (b * f - c * e) * inverse;
+        final float r10 = cofactor1 * inverse, r11 = (a * i - c * g) * inverse, r12 = (c * d - a * f) * inverse;
+        final float r20 = cofactor2 * inverse, r21 = (b * g - a * h) * inverse, r22 = (a * e - b * d) * inverse;
+        result[resultOffset] = r00;
+        result[resultOffset + 1] = r01;
+        result[resultOffset + 2] = r02;
+        result[resultOffset + 3] = -(r00 * x + r01 * y + r02 * z);
+        result[resultOffset + 4] = r10;
+        result[resultOffset + 5] = r11;
+        result[resultOffset + 6] = r12;
+        result[resultOffset + 7] = -(r10 * x + r11 * y + r12 * z);
+        result[resultOffset + 8] = r20;
+        result[resultOffset + 9] = r21;
+        result[resultOffset + 10] = r22;
+        result[resultOffset + 11] = -(r20 * x + r21 * y + r22 * z);
+        return true;
+    }
+
+    /**
+     * Creates a skeleton whose bind pose is the identity for every joint, which is mostly useful
+     * for tests and procedurally animated rigs.
+     *
+     * @param parents The parent of every joint, NO_PARENT for roots.
+     * @return The new skeleton.
+     */
+    public static Skeleton withIdentityBindPose(final int[] parents) {
+        final float[] matrices = new float[parents.length * 16];
+        for(int joint = 0; joint < parents.length; joint++) {
+            matrices[joint * 16] = 1.0f;
+            matrices[joint * 16 + 5] = 1.0f;
+            matrices[joint * 16 + 10] = 1.0f;
+            matrices[joint * 16 + 15] = 1.0f;
+        }
+        return new Skeleton(parents, matrices);
+    }
+
+    /**
+     * Returns the amount of joints.
+     *
+     * @return The joint count.
+     */
+    public int getJointCount() {
+        return parents.length;
+    }
+
+    /**
+     * Returns the parent of a joint.
+     *
+     * @param joint The joint index.
+     * @return The parent index, or NO_PARENT for roots.
+     */
+    public int getParent(final int joint) {
+        return parents[joint];
+    }
+}
@@ -0,0 +1,60 @@
+package com.tembins.tagdk.animation;
+
+import com.tembins.tagdk.graphics.backend.GraphicsBackend;
+import com.tembins.tagdk.graphics.resource.mesh.MeshData;
+
+/**
+ * Uploads skinning palettes and provides the matching vertex shader code. Every joint takes three
+ * vec4 uniforms, the rows of its affine palette matrix, so a palette of MAX_JOINTS joints fits
+ * into the 256 vertex uniform vectors guaranteed by OpenGL ES 3.0 with room to spare.
+ *
+ * Skinned meshes provide up to four joint indices and weights per vertex in the attributes
+ * MeshData.JOINT_ATTRIBUTE and MeshData.WEIGHT_ATTRIBUTE, both stored as unsigned bytes.
+ */
+public final class Skinning {
+
+    public static final int MAX_JOINTS = 64;
+    public static final String PALETTE_UNIFORM = "u_palette";
+
+    /**
+     * GLSL ES 3.00 declarations and functions for skinning in the vertex shader. Include it after
+     * the version directive and transform positions with skinPosition and normals with
+     * skinNormal.
+     */
+    public static final String VERTEX_SHADER_SOURCE = ""
+            + "#define MAX_JOINTS " + MAX_JOINTS + "\n"
+            + "layout(location = " + MeshData.JOINT_ATTRIBUTE + ") in vec4 a_joints;\n"
+            + "layout(location = " + MeshData.WEIGHT_ATTRIBUTE + ") in vec4 a_weights;\n"
+            + "uniform vec4 " + PALETTE_UNIFORM + "[MAX_JOINTS * 3];\n"
+            + "vec3 skin(vec4 v) {\n"
+            + "    vec3 result = vec3(0.0);\n"
+            + "    for(int i = 0; i < 4; i++) {\n"
+            + "        int row = int(a_joints[i]) * 3;\n"
+            + "        result += a_weights[i] * vec3(dot(" + PALETTE_UNIFORM + "[row], v), dot("
+            + PALETTE_UNIFORM + "[row + 1], v), dot(" + PALETTE_UNIFORM + "[row + 2], v));\n"
+            + "    }\n"
+            + "    return result;\n"
+            + "}\n"
+            + "vec3 skinPosition(vec3 position) { return skin(vec4(position, 1.0)); }\n"
+            + "vec3 skinNormal(vec3 normal) { return normalize(skin(vec4(normal, 0.0))); }\n";
+
+    private Skinning() {
+    }
+
+    /**
+     * Uploads a palette to the skinning uniform of the bound program.
+     *
+     * @param graphics The backend to upload with.
+     * @param location The location of the palette uniform.
+     * @param palettes The array holding the palette, PoseSampler.PALETTE_SIZE floats per joint.
+     * @param offset The index of the first palette value.
+     * @param jointCount The amount of joints, at most MAX_JOINTS.
+     */
+    public static void uploadPalette(final GraphicsBackend graphics, final int location, final float[] palettes,
+                                     final int offset, final int jointCount) {
+        if(jointCount > MAX_JOINTS)
+            throw new IllegalArgumentException("At most " + MAX_JOINTS + " joints can be skinned");
+
+        graphics.uniform4fv(location, jointCount * 3, palettes, offset);
+    }
+}
@@ -0,0 +1,378 @@
+package com.tembins.tagdk.asset;
+
+import com.tembins.tagdk.jobs.JobSystem;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+
+/**
+ * Reads an archive written by AssetArchiveWriter. The whole archive is a single buffer, usually a
+ * memory mapped file, and assets are returned as slices of it, so reading an asset copies nothing
+ * and only touches the pages it spans.
+ *
+ * The archive starts with a header and a table of contents sorted by asset ID, followed by the
+ * asset data. Assets of the same group, e.g. all assets of a level, are stored contiguously, so a
+ * whole group can be read sequentially with getGroupData(int). All values are little endian:
+ *
+ * <pre>
+ * header:  int magic, int version, int entryCount, int groupCount
+ * entries: int id, int type, int group, int flags, long offset, int size, int uncompressedSize,
+ *          long hash (sorted by id)
+ * groups:  int group, int entryCount, long offset, long size (sorted by group)
+ * data:    the assets, each aligned to DATA_ALIGNMENT bytes
+ * </pre>
+ *
+ * Assets flagged with FLAG_COMPRESSED are stored as ChunkedLZ4 data; the size and hash describe
+ * the stored bytes. load and openStream decompress them transparently, so loaders do not need to
+ * know how an asset was stored.
+ *
+ * A single archive is limited to 2 GB, as Java buffers are indexed by int. The reader is thread
+ * safe once opened.
+ */
+public final class AssetArchive {
+
+    public static final int MAGIC = 0x41474154; // "TAGA" in little endian
+    public static final int VERSION = 2;
+    public static final int HEADER_SIZE = 16;
+    public static final int ENTRY_SIZE = 40;
+    public static final int GROUP_SIZE = 24;
+    public static final int DATA_ALIGNMENT = 16;
+    public static final int FLAG_COMPRESSED = 1;
+
+    private final ByteBuffer data;
+    private final int[] ids, types, groups, flags, sizes, uncompressedSizes;
+    private final int[] offsets;
+    private final long[] hashes;
+    private final int[] groupIDs, groupEntryCounts, groupOffsets, groupSizes;
+
+    /**
+     * Reads the table of contents of an archive held by the given buffer.
+     *
+     * @param buffer The archive, from its position to its limit. The buffer is not modified.
+     * @throws IOException If the buffer does not hold a valid archive.
+     */
+    public AssetArchive(final ByteBuffer buffer) throws IOException {
+        data = buffer.slice().order(ByteOrder.LITTLE_ENDIAN);
+        if(data.capacity() < HEADER_SIZE || data.getInt(0) != MAGIC)
+            throw new IOException("Not an asset archive");
+        if(data.getInt(4) != VERSION)
+            throw new IOException("Unsupported asset archive version " + data.getInt(4));
+
+        final int entryCount = data.getInt(8);
+        final int groupCount = data.getInt(12);
+        if(entryCount < 0 || groupCount < 0
+                || HEADER_SIZE + (long) entryCount * ENTRY_SIZE + (long) groupCount * GROUP_SIZE > data.capacity())
+            throw new IOException("Truncated asset archive table of contents");
+
+        ids = new int[entryCount];
+        types = new int[entryCount];
+        groups = new int[entryCount];
+        flags = new int[entryCount];
+        sizes = new int[entryCount];
+        uncompressedSizes = new int[entryCount];
+        offsets = new int[entryCount];
+        hashes = new long[entryCount];
+        for(int entry = 0; entry < entryCount; entry++) {
+            final int position = HEADER_SIZE + entry * ENTRY_SIZE;
+            ids[entry] = data.getInt(position);
+            types[entry] = data.getInt(position + 4);
+            groups[entry] = data.getInt(position + 8);
+            flags[entry] = data.getInt(position + 12);
+            sizes[entry] = data.getInt(position + 24);
+            offsets[entry] = checkRange(data.getLong(position + 16), sizes[entry]);
+            uncompressedSizes[entry] = data.getInt(position + 28);
+            hashes[entry] = data.getLong(position + 32);
+            if(uncompressedSizes[entry] < 0)
+                throw new IOException("Asset archive entry has a negative size");
+
+            if(entry > 0 && ids[entry] <= ids[entry - 1])
+                throw new IOException("Asset archive table of contents is not sorted");
+        }
+
+        groupIDs = new int[groupCount];
+        groupEntryCounts = new int[groupCount];
+        groupOffsets = new int[groupCount];
+        groupSizes = new int[groupCount];
+        for(int group = 0; group < groupCount; group++) {
+            final int position = HEADER_SIZE + entryCount * ENTRY_SIZE + group * GROUP_SIZE;
+            groupIDs[group] = data.getInt(position);
+            groupEntryCounts[group] = data.getInt(position + 4);
+            final long size = data.getLong(position + 16);
+            if(size > Integer.MAX_VALUE)
+                throw new IOException("Asset group " + groupIDs[group] + " is too large");
+            groupSizes[group] = (int) size;
+            groupOffsets[group] = checkRange(data.getLong(position + 8), groupSizes[group]);
+
+            // Groups are looked up with a binary search
+            if(group > 0 && groupIDs[group] <= groupIDs[group - 1])
+                throw new IOException("Asset archive group table is not sorted");
+        }
+    }
+
+    private int checkRange(final long offset, final int size) throws IOException {
+        if(offset < 0 || size < 0 || offset + size > data.capacity())
+            throw new IOException("Asset archive entry exceeds the archive");
+
+        return (int) offset;
+    }
+
+    /**
+     * Opens an archive file by mapping it into memory. The mapping stays valid until the archive
+     * is garbage collected, the file can be closed right away and is.
+     *
+     * @param file The archive file.
+     * @return The opened archive.
+     * @throws IOException If the file can not be mapped or is not a valid archive.
+     */
+    public static AssetArchive open(final File file) throws IOException {
+        final RandomAccessFile randomAccessFile = new RandomAccessFile(file, "r");
+        try {
+            final FileChannel channel = randomAccessFile.getChannel();
+            return new AssetArchive(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        } finally {
+            randomAccessFile.close();
+        }
+    }
+
+    private int indexOf(final int assetID) {
+        return Arrays.binarySearch(ids, assetID);
+    }
+
+    private int requireIndex(final int assetID) {
+        final int index = indexOf(assetID);
+        if(index < 0)
+            throw new IllegalArgumentException("Asset " + assetID + " is not part of the archive");
+
+        return index;
+    }
+
+    private ByteBuffer slice(final int offset, final int size) {
+        final ByteBuffer slice = data.duplicate();
+        slice.limit(offset + size).position(offset);
+        return slice.slice().asReadOnlyBuffer().order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    /**
+     * Returns whether the archive contains an asset.
+     *
+     * @param assetID The ID of the asset.
+     * @return True if the asset exists.
+     */
+    public boolean contains(final int assetID) {
+        return indexOf(assetID) >= 0;
+    }
+
+    /**
+     * Returns the data of an asset as stored, without copying it. Compressed assets are returned
+     * compressed, use load to get their contents.
+     *
+     * @param assetID The ID of the asset.
+     * @return A read only, little endian buffer spanning exactly the stored asset data.
+     * @throws IllegalArgumentException If the asset does not exist.
+     */
+    public ByteBuffer get(final int assetID) {
+        final int index = requireIndex(assetID);
+        return slice(offsets[index], sizes[index]);
+    }
+
+    /**
+     * Returns the contents of an asset. Uncompressed assets are returned without copying them,
+     * compressed ones are decompressed into a new direct buffer, which can be handed to
+     * glBufferData or glTexImage2D as it is.
+     *
+     * @param assetID The ID of the asset.
+     * @param jobs The job system to decompress with, or null to decompress on the calling thread.
+     * @return A little endian buffer spanning exactly the asset contents.
+     * @throws IllegalArgumentException If the asset does not exist or its compressed data is
+     *                                  malformed.
+     */
+    public ByteBuffer load(final int assetID, final JobSystem jobs) {
+        final int index = requireIndex(assetID);
+        if((flags[index] & FLAG_COMPRESSED) == 0)
+            return slice(offsets[index], sizes[index]);
+
+        final ByteBuffer buffer = ByteBuffer.allocateDirect(uncompressedSizes[index]).order(ByteOrder.LITTLE_ENDIAN);
+        ChunkedLZ4.decompress(slice(offsets[index], sizes[index]), buffer, jobs);
+        buffer.flip();
+        return buffer;
+    }
+
+    /**
+     * Writes the contents of an asset into a buffer, e.g. a reused staging buffer, decompressing
+     * it if needed.
+     *
+     * @param assetID The ID of the asset.
+     * @param destination The buffer receiving getUncompressedSize(assetID) bytes at its position,
+     *                    which is advanced past them.
+     * @param jobs The job system to decompress with, or null to decompress on the calling thread.
+     * @throws IllegalArgumentException If the asset does not exist, the destination is too small or
+     *                                  the compressed data is malformed.
+     */
+    public void load(final int assetID, final ByteBuffer destination, final JobSystem jobs) {
+        final int index = requireIndex(assetID);
+        if((flags[index] & FLAG_COMPRESSED) == 0) {
+            if(destination.remaining() < sizes[index])
+                throw new IllegalArgumentException("The destination can not hold " + sizes[index] + " bytes");
+
+            destination.put(slice(offsets[index], sizes[index]));
+        } else {
+            ChunkedLZ4.decompress(slice(offsets[index], sizes[index]), destination, jobs);
+        }
+    }
+
+    /**
+     * Opens a stream reading the contents of an asset, for APIs expecting streams. Compressed
+     * assets are decompressed on the calling thread first.
+     *
+     * @param assetID The ID of the asset.
+     * @return The stream, which does not need to be closed.
+     * @throws IllegalArgumentException If the asset does not exist or its compressed data is
+     *                                  malformed.
+     */
+    public InputStream openStream(final int assetID) {
+        return new ByteBufferInputStream(load(assetID, null));
+    }
+
+    /**
+     * Returns the type of an asset, as given to the writer.
+     *
+     * @param assetID The ID of the asset.
+     * @return The asset type.
+     */
+    public int getType(final int assetID) {
+        return types[requireIndex(assetID)];
+    }
+
+    /**
+     * Returns the group of an asset.
+     *
+     * @param assetID The ID of the asset.
+     * @return The group ID.
+     */
+    public int getGroup(final int assetID) {
+        return groups[requireIndex(assetID)];
+    }
+
+    /**
+     * Returns the stored size of an asset, which is its compressed size for compressed assets.
+     *
+     * @param assetID The ID of the asset.
+     * @return The size in bytes.
+     */
+    public int getSize(final int assetID) {
+        return sizes[requireIndex(assetID)];
+    }
+
+    /**
+     * Returns the size of the contents of an asset, as returned by load.
+     *
+     * @param assetID The ID of the asset.
+     * @return The size in bytes.
+     */
+    public int getUncompressedSize(final int assetID) {
+        return uncompressedSizes[requireIndex(assetID)];
+    }
+
+    /**
+     * Returns whether an asset is stored compressed.
+     *
+     * @param assetID The ID of the asset.
+     * @return True if the asset is stored as ChunkedLZ4 data.
+     */
+    public boolean isCompressed(final int assetID) {
+        return (flags[requireIndex(assetID)] & FLAG_COMPRESSED) != 0;
+    }
+
+    /**
+     * Returns the hash of an asset stored in the table of contents.
+     *
+     * @param assetID The ID of the asset.
+     * @return The 64 bit FNV-1a hash of the stored asset data.
+     */
+    public long getHash(final int assetID) {
+        return hashes[requireIndex(assetID)];
+    }
+
+    /**
+     * Hashes the stored data of an asset and compares it with the stored hash. Reads the whole
+     * asset, but does not decompress it.
+     *
+     * @param assetID The ID of the asset.
+     * @return True if the data is intact.
+     */
+    public boolean verify(final int assetID) {
+        return hash(get(assetID)) == getHash(assetID);
+    }
+
+    /**
+     * Returns the amount of assets in the archive.
+     *
+     * @return The asset count.
+     */
+    public int getAssetCount() {
+        return ids.length;
+    }
+
+    /**
+     * Returns the ID of an asset by its index in the table of contents, to iterate all assets.
+     *
+     * @param index The index, from 0 to getAssetCount() - 1.
+     * @return The asset ID.
+     */
+    public int getAssetID(final int index) {
+        return ids[index];
+    }
+
+    private int requireGroupIndex(final int groupID) {
+        final int index = Arrays.binarySearch(groupIDs, groupID);
+        if(index < 0)
+            throw new IllegalArgumentException("Group " + groupID + " is not part of the archive");
+
+        return index;
+    }
+
+    /**
+     * Returns the data of all assets of a group without copying it. Touching the returned buffer
+     * sequentially, e.g. with load() on a mapped archive, prefetches the whole group.
+     *
+     * @param groupID The ID of the group.
+     * @return A read only buffer spanning the data of all assets of the group.
+     * @throws IllegalArgumentException If the group does not exist.
+     */
+    public ByteBuffer getGroupData(final int groupID) {
+        final int index = requireGroupIndex(groupID);
+        return slice(groupOffsets[index], groupSizes[index]);
+    }
+
+    /**
+     * Returns the amount of assets in a group.
+     *
+     * @param groupID The ID of the group.
+     * @return The asset count.
+     */
+    public int getGroupAssetCount(final int groupID) {
+        return groupEntryCounts[requireGroupIndex(groupID)];
+    }
+
+    /**
+     * Hashes the remaining bytes of a buffer with the 64 bit FNV-1a hash, as stored in archives.
+     * The position of the buffer is not changed.
+     *
+     * @param buffer The data to hash.
+     * @return The hash.
+     */
+    public static long hash(final ByteBuffer buffer) {
+        long hash = 0xCBF29CE484222325L;
+        for(int index = buffer.position(); index < buffer.limit(); index++) {
+            hash ^= buffer.get(index) & 0xFF;
+            hash *= 0x100000001B3L;
+        }
+        return hash;
+    }
+}
@@ -0,0 +1,180 @@
+package com.tembins.tagdk.asset;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+
+/**
+ * Packs assets into an archive readable by AssetArchive. Assets are collected in memory and
+ * written at once; their data is laid out group by group, so the assets of a group end up next
+ * to each other, while the table of contents is sorted by asset ID for binary searches. Assets
+ * can be compressed individually with ChunkedLZ4 when added.
+ */
+public final class AssetArchiveWriter {
+
+    private static final class Asset {
+        final int id, type, group, flags, uncompressedSize;
+        final byte[] data;
+        long offset;
+
+        Asset(final int id, final int type, final int group, final int flags, final int uncompressedSize,
+              final byte[] data) {
+            this.id = id;
+            this.type = type;
+            this.group = group;
+            this.flags = flags;
+            this.uncompressedSize = uncompressedSize;
+            this.data = data;
+        }
+    }
+
+    private final ArrayList<Asset> assets = new ArrayList<>();
+
+    /**
+     * Adds an asset to the archive.
+     *
+     * @param assetID The unique ID of the asset.
+     * @param type The type of the asset, an arbitrary value returned by AssetArchive.getType.
+     * @param group The group of the asset, e.g. the level it belongs to.
+     * @param data The asset data, which is not copied.
+     * @throws IllegalArgumentException If an asset with the same ID was already added.
+     */
+    public void add(final int assetID, final int type, final int group, final byte[] data) {
+        add(assetID, type, group, data, false);
+    }
+
+    /**
+     * Adds an asset to the archive, optionally compressing it. Compression is skipped if it does
+     * not make the asset smaller, so AssetArchive.isCompressed tells whether it was applied.
+     *
+     * @param assetID The unique ID of the asset.
+     * @param type The type of the asset, an arbitrary value returned by AssetArchive.getType.
+     * @param group The group of the asset, e.g. the level it belongs to.
+     * @param data The asset data, which is not copied if stored uncompressed.
+     * @param compress Whether to compress the asset with ChunkedLZ4.
+     * @throws IllegalArgumentException If an asset with the same ID was already added.
+     */
+    public void add(final int assetID, final int type, final int group, final byte[] data, final boolean compress) {
+        for(final Asset asset : assets)
+            if(asset.id == assetID)
+                throw new IllegalArgumentException("Asset " + assetID + " added twice");
+
+        if(compress) {
+            final byte[] compressed = ChunkedLZ4.compress(data);
+            if(compressed.length < data.length) {
+                assets.add(new Asset(assetID, type, group, AssetArchive.FLAG_COMPRESSED, data.length, compressed));
+                return;
+            }
+        }
+        assets.add(new Asset(assetID, type, group, 0, data.length, data));
+    }
+
+    /**
+     * Returns the amount of added assets.
+     *
+     * @return The asset count.
+     */
+    public int getAssetCount() {
+        return assets.size();
+    }
+
+    /**
+     * Writes the archive to a file, replacing it if it exists.
+     *
+     * @param file The file to write.
+     * @throws IOException If writing fails.
+     */
+    public void write(final File file) throws IOException {
+        final OutputStream outputStream = new BufferedOutputStream(new FileOutputStream(file));
+        try {
+            write(outputStream);
+        } finally {
+            outputStream.close();
+        }
+    }
+
+    /**
+     * Writes the archive to a stream. The stream is not closed.
+     *
+     * @param outputStream The stream to write to.
+     * @throws IOException If writing fails or the archive would exceed 2 GB.
+     */
+    public void write(final OutputStream outputStream) throws IOException {
+        // Data layout: ordered by group, then by ID within the group
+        final ArrayList<Asset> layout = new ArrayList<>(assets);
+        Collections.sort(layout, new Comparator<Asset>() {
+            @Override
+            public int compare(final Asset first, final Asset second) {
+                if(first.group != second.group)
+                    return Integer.compare(first.group, second.group);
+
+                return Integer.compare(first.id, second.id);
+            }
+        });
+
+        int groupCount = 0;
+        for(int index = 0; index < layout.size(); index++)
+            if(index == 0 || layout.get(index).group != layout.get(index - 1).group)
+                groupCount++;
+
+        final long tableSize = AssetArchive.HEADER_SIZE + (long) layout.size() * AssetArchive.ENTRY_SIZE
+                + (long) groupCount * AssetArchive.GROUP_SIZE;
+        long offset = align(tableSize);
+        for(final Asset asset : layout) {
+            asset.offset = offset;
+            offset = align(offset + asset.data.length);
+        }
+        if(offset > Integer.MAX_VALUE)
+            throw new IOException("Asset archive exceeds 2 GB");
+
+        final ByteBuffer table = ByteBuffer.allocate((int) align(tableSize)).order(ByteOrder.LITTLE_ENDIAN);
+        table.putInt(AssetArchive.MAGIC).putInt(AssetArchive.VERSION).putInt(layout.size()).putInt(groupCount);
+
+        final ArrayList<Asset> byID = new ArrayList<>(assets);
+        Collections.sort(byID, new Comparator<Asset>() {
+            @Override
+            public int compare(final Asset first, final Asset second) {
+                return Integer.compare(first.id, second.id);
+            }
+        });
+        for(final Asset asset : byID) {
+            table.putInt(asset.id).putInt(asset.type).putInt(asset.group).putInt(asset.flags);
+            table.putLong(asset.offset).putInt(asset.data.length).putInt(asset.uncompressedSize);
+            table.putLong(AssetArchive.hash(ByteBuffer.wrap(asset.data)));
+        }
+
+        for(int start = 0; start < layout.size(); ) {
+            final Asset first = layout.get(start);
+            int end = start + 1;
+            while(end < layout.size() && layout.get(end).group == first.group)
+                end++;
+
+            final Asset last = layout.get(end - 1);
+            table.putInt(first.group).putInt(end - start);
+            table.putLong(first.offset).putLong(last.offset + last.data.length - first.offset);
+            start = end;
+        }
+
+        outputStream.write(table.array());
+        long position = table.capacity();
+        final byte[] padding = new byte[AssetArchive.DATA_ALIGNMENT];
+        for(final Asset asset : layout) {
+            outputStream.write(padding, 0, (int) (asset.offset - position));
+            outputStream.write(asset.data);
+            position = asset.offset + asset.data.length;
+        }
+        outputStream.write(padding, 0, (int) (offset - position));
+        outputStream.flush();
+    }
+
+    private static long align(final long offset) {
+        return (offset + AssetArchive.DATA_ALIGNMENT - 1) & -AssetArchive.DATA_ALIGNMENT;
+    }
+}
@@ -0,0 +1,80 @@
+package com.tembins.tagdk.asset;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+
+/**
+ * A command line tool packing the assets listed in a manifest into an archive:
+ *
+ * <pre>
+ * java -cp core.jar com.tembins.tagdk.asset.AssetPacker assets.manifest assets.pak
+ * </pre>
+ *
+ * Every non empty manifest line not starting with '#' describes one asset as
+ * "id type group path", separated by whitespace, or "id type group lz4 path" to compress the
+ * asset with ChunkedLZ4. Relative paths are resolved against the directory of the manifest.
+ */
+public final class AssetPacker {
+
+    public static void main(final String[] arguments) throws IOException {
+        if(arguments.length != 2) {
+            System.err.println("Usage: AssetPacker <manifest> <archive>");
+            System.exit(2);
+        }
+
+        final File manifest = new File(arguments[0]);
+        final AssetArchiveWriter writer = pack(manifest);
+        writer.write(new File(arguments[1]));
+        System.out.println("Packed " + writer.getAssetCount() + " assets into " + arguments[1]);
+    }
+
+    /**
+     * Reads a manifest and adds all assets listed in it to a new writer.
+     *
+     * @param manifest The manifest file.
+     * @return The writer holding all assets.
+     * @throws IOException If the manifest or an asset can not be read or a line is malformed.
+     */
+    public static AssetArchiveWriter pack(final File manifest) throws IOException {
+        final File directory = manifest.getAbsoluteFile().getParentFile();
+        final AssetArchiveWriter writer = new AssetArchiveWriter();
+        final BufferedReader reader = new BufferedReader(
+                new InputStreamReader(new FileInputStream(manifest), Charset.forName("UTF-8")));
+
+        try {
+            String line;
+            int lineNumber = 0;
+            while((line = reader.readLine()) != null) {
+                lineNumber++;
+                line = line.trim();
+                if(line.isEmpty() || line.startsWith("#"))
+                    continue;
+
+                final String[] fields = line.split("\\s+", 4);
+                if(fields.length != 4)
+                    throw new IOException(manifest + ":" + lineNumber + ": Expected \"id type group [lz4] path\"");
+
+                final boolean compress = fields[3].startsWith("lz4 ") || fields[3].startsWith("lz4\t");
+                final String path = compress ? fields[3].substring(4).trim() : fields[3];
+                File file = new File(path);
+                if(!file.isAbsolute())
+                    file = new File(directory, path);
+
+                try {
+                    writer.add(Integer.parseInt(fields[0]), Integer.parseInt(fields[1]), Integer.parseInt(fields[2]),
+                            Files.readAllBytes(file.toPath()), compress);
+                } catch(IllegalArgumentException exception) {
+                    throw new IOException(manifest + ":" + lineNumber + ": " + exception.getMessage());
+                }
+            }
+        } finally {
+            reader.close();
+        }
+        return writer;
+    }
+}
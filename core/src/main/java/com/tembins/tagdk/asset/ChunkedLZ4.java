@@ -0,0 +1,210 @@
+package com.tembins.tagdk.asset;
+
+import com.tembins.tagdk.jobs.JobSystem;
+import com.tembins.tagdk.jobs.RangeJob;
+import com.tembins.tagdk.jobs.ScratchAllocator;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * A compressed format splitting data into independently compressed LZ4 chunks, so large assets
+ * can be decompressed by several workers at once, each writing its chunks straight into the
+ * destination buffer. All values are little endian:
+ *
+ * <pre>
+ * header: int magic, int uncompressedSize, int chunkSize, int chunkCount
+ * chunks: int storedSize per chunk, with STORED_FLAG set for chunks stored uncompressed
+ * data:   the chunks back to back
+ * </pre>
+ *
+ * Every chunk except the last holds chunkSize uncompressed bytes. Chunks that do not get smaller
+ * by compressing them are stored as they are, so incompressible data costs nothing but the table.
+ */
+public final class ChunkedLZ4 {
+
+    public static final int MAGIC = 0x5A474154; // "TAGZ" in little endian
+    public static final int HEADER_SIZE = 16;
+    public static final int DEFAULT_CHUNK_SIZE = 64 * 1024;
+    public static final int STORED_FLAG = 0x80000000;
+
+    private static final ThreadLocal<byte[][]> STAGING = new ThreadLocal<byte[][]>() {
+        @Override
+        protected byte[][] initialValue() {
+            return new byte[2][0];
+        }
+    };
+
+    /**
+     * Compresses data with the default chunk size.
+     *
+     * @param data The data to compress.
+     * @return The compressed data, including the header.
+     */
+    public static byte[] compress(final byte[] data) {
+        return compress(data, DEFAULT_CHUNK_SIZE);
+    }
+
+    /**
+     * Compresses data. Smaller chunks allow more parallelism when decompressing small assets but
+     * compress worse, as matches can not reach into previous chunks.
+     *
+     * @param data The data to compress.
+     * @param chunkSize The uncompressed size of a chunk.
+     * @return The compressed data, including the header.
+     */
+    public static byte[] compress(final byte[] data, final int chunkSize) {
+        if(chunkSize <= 0)
+            throw new IllegalArgumentException("The chunk size must be positive");
+
+        final int chunkCount = (data.length + chunkSize - 1) / chunkSize;
+        final int tableSize = HEADER_SIZE + chunkCount * 4;
+        final byte[] compressed = new byte[tableSize + chunkCount * LZ4Block.maxCompressedLength(chunkSize)];
+        final ByteBuffer table = ByteBuffer.wrap(compressed).order(ByteOrder.LITTLE_ENDIAN);
+        table.putInt(MAGIC).putInt(data.length).putInt(chunkSize).putInt(chunkCount);
+
+        int position = tableSize;
+        for(int chunk = 0; chunk < chunkCount; chunk++) {
+            final int start = chunk * chunkSize;
+            final int length = Math.min(chunkSize, data.length - start);
+            final int storedSize = LZ4Block.compress(data, start, length, compressed, position);
+
+            if(storedSize < length) {
+                table.putInt(storedSize);
+                position += storedSize;
+            } else {
+                System.arraycopy(data, start, compressed, position, length);
+                table.putInt(length | STORED_FLAG);
+                position += length;
+            }
+        }
+
+        final byte[] result = new byte[position];
+        System.arraycopy(compressed, 0, result, 0, position);
+        return result;
+    }
+
+    private static ByteBuffer checkHeader(final ByteBuffer payload) {
+        final ByteBuffer source = payload.slice().order(ByteOrder.LITTLE_ENDIAN);
+        if(source.capacity() < HEADER_SIZE || source.getInt(0) != MAGIC)
+            throw new IllegalArgumentException("Not chunked LZ4 data");
+
+        final int size = source.getInt(4);
+        final int chunkSize = source.getInt(8);
+        final int chunkCount = source.getInt(12);
+        if(size < 0 || chunkSize <= 0 || chunkCount != (int) ((size + (long) chunkSize - 1) / chunkSize)
+                || HEADER_SIZE + (long) chunkCount * 4 > source.capacity())
+            throw new IllegalArgumentException("Malformed chunked LZ4 header");
+
+        return source;
+    }
+
+    /**
+     * Returns whether the remaining bytes of a buffer start with the chunked LZ4 magic.
+     *
+     * @param payload The buffer to check. Its position is not changed.
+     * @return True if the buffer looks like chunked LZ4 data.
+     */
+    public static boolean isCompressed(final ByteBuffer payload) {
+        return payload.remaining() >= HEADER_SIZE
+                && payload.duplicate().order(ByteOrder.LITTLE_ENDIAN).getInt(payload.position()) == MAGIC;
+    }
+
+    /**
+     * Returns the size of the data after decompressing it.
+     *
+     * @param payload The compressed data, from its position on. Its position is not changed.
+     * @return The uncompressed size in bytes.
+     * @throws IllegalArgumentException If the payload is not chunked LZ4 data.
+     */
+    public static int getUncompressedSize(final ByteBuffer payload) {
+        return checkHeader(payload).getInt(4);
+    }
+
+    /**
+     * Decompresses data into a buffer, e.g. a direct buffer passed to glBufferData afterwards.
+     * With a job system, the chunks are distributed over its workers and the calling thread; the
+     * method returns when all chunks are written.
+     *
+     * @param payload The compressed data, from its position on. Its position is not changed.
+     * @param destination The buffer receiving getUncompressedSize(payload) bytes at its position,
+     *                    which is advanced past them.
+     * @param jobs The job system to decompress with, or null to decompress on the calling thread.
+     * @throws IllegalArgumentException If the payload is malformed or the destination too small.
+     */
+    public static void decompress(final ByteBuffer payload, final ByteBuffer destination, final JobSystem jobs) {
+        final ByteBuffer source = checkHeader(payload);
+        final int size = source.getInt(4);
+        final int chunkSize = source.getInt(8);
+        final int chunkCount = source.getInt(12);
+        if(destination.remaining() < size)
+            throw new IllegalArgumentException("The destination can not hold " + size + " bytes");
+
+        // The chunk offsets follow from the stored sizes, which makes the chunks independent
+        final int[] chunkOffsets = new int[chunkCount + 1];
+        chunkOffsets[0] = HEADER_SIZE + chunkCount * 4;
+        for(int chunk = 0; chunk < chunkCount; chunk++) {
+            final int storedSize = source.getInt(HEADER_SIZE + chunk * 4) & ~STORED_FLAG;
+            chunkOffsets[chunk + 1] = chunkOffsets[chunk] + storedSize;
+            if(chunkOffsets[chunk + 1] < 0 || chunkOffsets[chunk + 1] > source.capacity())
+                throw new IllegalArgumentException("Chunk " + chunk + " exceeds the compressed data");
+        }
+
+        final int base = destination.position();
+        final RangeJob job = new RangeJob() {
+            @Override
+            public void execute(final int start, final int end, final ScratchAllocator scratch) {
+                for(int chunk = start; chunk < end; chunk++)
+                    decompressChunk(source, chunk, chunkOffsets, chunkSize, size, destination, base);
+            }
+        };
+        if(jobs == null || chunkCount < 2)
+            job.execute(0, chunkCount, null);
+        else
+            jobs.parallelFor(0, chunkCount, 1, job);
+
+        destination.position(base + size);
+    }
+
+    private static void decompressChunk(final ByteBuffer source, final int chunk, final int[] chunkOffsets,
+                                        final int chunkSize, final int size, final ByteBuffer destination,
+                                        final int base) {
+        final int storedSize = source.getInt(HEADER_SIZE + chunk * 4);
+        final int offset = chunkOffsets[chunk];
+        final int length = chunkOffsets[chunk + 1] - offset;
+        final int target = base + chunk * chunkSize;
+        final int expected = Math.min(chunkSize, size - chunk * chunkSize);
+
+        if((storedSize & STORED_FLAG) != 0) {
+            if(length != expected)
+                throw new IllegalArgumentException("Stored chunk " + chunk + " has the wrong size");
+
+            final ByteBuffer from = source.duplicate();
+            from.limit(offset + length).position(offset);
+            final ByteBuffer to = destination.duplicate();
+            to.position(target);
+            to.put(from);
+        } else if(source.hasArray() && destination.hasArray() && !destination.isReadOnly()) {
+            if(LZ4Block.decompress(source, offset, length, destination, target, expected) != expected)
+                throw new IllegalArgumentException("Chunk " + chunk + " has the wrong size");
+        } else {
+            // Single accesses of direct buffers are slow compared to arrays, so the chunk is
+            // decompressed between per thread arrays, costing two bulk copies instead
+            final byte[][] staging = STAGING.get();
+            if(staging[0].length < length)
+                staging[0] = new byte[length];
+            if(staging[1].length < expected)
+                staging[1] = new byte[expected];
+
+            final ByteBuffer from = source.duplicate();
+            from.position(offset);
+            from.get(staging[0], 0, length);
+            if(LZ4Block.decompress(staging[0], 0, length, staging[1], 0, expected) != expected)
+                throw new IllegalArgumentException("Chunk " + chunk + " has the wrong size");
+
+            final ByteBuffer to = destination.duplicate();
+            to.position(target);
+            to.put(staging[1], 0, expected);
+        }
+    }
+}
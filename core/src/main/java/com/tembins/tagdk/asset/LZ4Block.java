@@ -0,0 +1,296 @@
+package com.tembins.tagdk.asset;
+
+import java.nio.ByteBuffer;
+
+/**
+ * A pure Java implementation of the LZ4 block format. Compression uses a single hash table probe
+ * per position, trading ratio for speed like the LZ4 default level. Decompression is available
+ * for arrays and for buffers, so data can be decompressed from a mapped archive straight into a
+ * direct buffer. Malformed input is detected and reported with an IllegalArgumentException
+ * instead of reading or writing out of bounds.
+ */
+public final class LZ4Block {
+
+    private static final int MIN_MATCH = 4;
+    private static final int LAST_LITERALS = 5;
+    private static final int MATCH_FIND_LIMIT = 12;
+    private static final int MAX_DISTANCE = 0xFFFF;
+    private static final int HASH_LOG = 14;
+    private static final int RUN_MASK = 15;
+
+    /**
+     * Returns the largest possible compressed size of the given amount of bytes.
+     *
+     * @param length The uncompressed size.
+     * @return The size the destination of compress needs.
+     */
+    public static int maxCompressedLength(final int length) {
+        return length + length / 255 + 16;
+    }
+
+    private static int readInt(final byte[] array, final int index) {
+        return (array[index] & 0xFF) | (array[index + 1] & 0xFF) << 8
+                | (array[index + 2] & 0xFF) << 16 | (array[index + 3] & 0xFF) << 24;
+    }
+
+    private static int hash(final int sequence) {
+        return (sequence * -1640531535) >>> (32 - HASH_LOG);
+    }
+
+    private static int writeLength(final byte[] destination, int index, int length) {
+        while(length >= 255) {
+            destination[index++] = (byte) 255;
+            length -= 255;
+        }
+        destination[index++] = (byte) length;
+        return index;
+    }
+
+    /**
+     * Compresses a range of bytes into an LZ4 block.
+     *
+     * @param source The array holding the data to compress.
+     * @param sourceOffset The index of the first byte to compress.
+     * @param sourceLength The amount of bytes to compress.
+     * @param destination The array receiving the block, with at least maxCompressedLength(sourceLength)
+     *                    bytes after destinationOffset.
+     * @param destinationOffset The index to write the block to.
+     * @return The size of the compressed block.
+     */
+    public static int compress(final byte[] source, final int sourceOffset, final int sourceLength,
+                               final byte[] destination, final int destinationOffset) {
+        final int end = sourceOffset + sourceLength;
+        final int matchLimit = end - LAST_LITERALS;
+        final int findLimit = end - MATCH_FIND_LIMIT;
+        // Positions are stored plus one, so zero marks an empty slot
+        final int[] table = new int[1 << HASH_LOG];
+
+        int position = sourceOffset;
+        int anchor = sourceOffset;
+        int output = destinationOffset;
+
+        while(position < findLimit) {
+            final int sequence = readInt(source, position);
+            final int slot = hash(sequence);
+            int reference = table[slot] - 1;
+            table[slot] = position + 1;
+
+            if(reference < 0 || position - reference > MAX_DISTANCE || readInt(source, reference) != sequence) {
+                position++;
+                continue;
+            }
+
+            while(position > anchor && reference > sourceOffset && source[position - 1] == source[reference - 1]) {
+                position--;
+                reference--;
+            }
+
+            int matchLength = MIN_MATCH;
+            while(position + matchLength < matchLimit && source[position + matchLength] == source[reference + matchLength])
+                matchLength++;
+
+            final int literalLength = position - anchor;
+            final int tokenIndex = output++;
+            int token = Math.min(literalLength, RUN_MASK) << 4;
+            if(literalLength >= RUN_MASK)
+                output = writeLength(destination, output, literalLength - RUN_MASK);
+            System.arraycopy(source, anchor, destination, output, literalLength);
+            output += literalLength;
+
+            final int distance = position - reference;
+            destination[output++] = (byte) distance;
+            destination[output++] = (byte) (distance >>> 8);
+
+            token |= Math.min(matchLength - MIN_MATCH, RUN_MASK);
+            if(matchLength - MIN_MATCH >= RUN_MASK)
+                output = writeLength(destination, output, matchLength - MIN_MATCH - RUN_MASK);
+            destination[tokenIndex] = (byte) token;
+
+            position += matchLength;
+            anchor = position;
+        }
+
+        final int literalLength = end - anchor;
+        destination[output++] = (byte) (Math.min(literalLength, RUN_MASK) << 4);
+        if(literalLength >= RUN_MASK)
+            output = writeLength(destination, output, literalLength - RUN_MASK);
+        System.arraycopy(source, anchor, destination, output, literalLength);
+        output += literalLength;
+
+        return output - destinationOffset;
+    }
+
+    private static IllegalArgumentException malformed() {
+        return new IllegalArgumentException("Malformed LZ4 block");
+    }
+
+    /**
+     * Decompresses an LZ4 block between arrays.
+     *
+     * @param source The array holding the block.
+     * @param sourceOffset The index of the block.
+     * @param sourceLength The size of the block.
+     * @param destination The array receiving the data.
+     * @param destinationOffset The index to write the data to.
+     * @param destinationLength The space available at destinationOffset.
+     * @return The amount of bytes written.
+     * @throws IllegalArgumentException If the block is malformed or does not fit the destination.
+     */
+    public static int decompress(final byte[] source, final int sourceOffset, final int sourceLength,
+                                 final byte[] destination, final int destinationOffset, final int destinationLength) {
+        final int end = sourceOffset + sourceLength;
+        final int outputEnd = destinationOffset + destinationLength;
+        int input = sourceOffset;
+        int output = destinationOffset;
+
+        while(input < end) {
+            final int token = source[input++] & 0xFF;
+
+            int literalLength = token >>> 4;
+            if(literalLength == RUN_MASK) {
+                int lengthByte;
+                do {
+                    if(input == end)
+                        throw malformed();
+                    lengthByte = source[input++] & 0xFF;
+                    literalLength += lengthByte;
+                } while(lengthByte == 255);
+            }
+
+            if(literalLength > end - input || literalLength > outputEnd - output)
+                throw malformed();
+            System.arraycopy(source, input, destination, output, literalLength);
+            input += literalLength;
+            output += literalLength;
+
+            // The last sequence consists of literals only
+            if(input == end)
+                break;
+
+            if(end - input < 2)
+                throw malformed();
+            final int distance = (source[input] & 0xFF) | (source[input + 1] & 0xFF) << 8;
+            input += 2;
+
+            int matchLength = token & RUN_MASK;
+            if(matchLength == RUN_MASK) {
+                int lengthByte;
+                do {
+                    if(input == end)
+                        throw malformed();
+                    lengthByte = source[input++] & 0xFF;
+                    matchLength += lengthByte;
+                } while(lengthByte == 255);
+            }
+            matchLength += MIN_MATCH;
+
+            int reference = output - distance;
+            if(distance == 0 || reference < destinationOffset || matchLength > outputEnd - output)
+                throw malformed();
+
+            if(distance >= matchLength) {
+                System.arraycopy(destination, reference, destination, output, matchLength);
+                output += matchLength;
+            } else {
+                // Overlapping matches repeat the bytes written just before
+                final int matchEnd = output + matchLength;
+                while(output < matchEnd)
+                    destination[output++] = destination[reference++];
+            }
+        }
+
+        return output - destinationOffset;
+    }
+
+    /**
+     * Decompresses an LZ4 block between buffers, using absolute indices only. Neither buffer's
+     * position is changed, so multiple threads can decompress into the same destination.
+     *
+     * @param source The buffer holding the block.
+     * @param sourceOffset The index of the block.
+     * @param sourceLength The size of the block.
+     * @param destination The buffer receiving the data.
+     * @param destinationOffset The index to write the data to.
+     * @param destinationLength The space available at destinationOffset.
+     * @return The amount of bytes written.
+     * @throws IllegalArgumentException If the block is malformed or does not fit the destination.
+     */
+    public static int decompress(final ByteBuffer source, final int sourceOffset, final int sourceLength,
+                                 final ByteBuffer destination, final int destinationOffset, final int destinationLength) {
+        if(source.hasArray() && destination.hasArray() && !destination.isReadOnly())
+            return decompress(source.array(), source.arrayOffset() + sourceOffset, sourceLength,
+                    destination.array(), destination.arrayOffset() + destinationOffset, destinationLength);
+
+        final boolean wideLiterals = source.order() == destination.order();
+        final int end = sourceOffset + sourceLength;
+        final int outputEnd = destinationOffset + destinationLength;
+        int input = sourceOffset;
+        int output = destinationOffset;
+
+        while(input < end) {
+            final int token = source.get(input++) & 0xFF;
+
+            int literalLength = token >>> 4;
+            if(literalLength == RUN_MASK) {
+                int lengthByte;
+                do {
+                    if(input == end)
+                        throw malformed();
+                    lengthByte = source.get(input++) & 0xFF;
+                    literalLength += lengthByte;
+                } while(lengthByte == 255);
+            }
+
+            if(literalLength > end - input || literalLength > outputEnd - output)
+                throw malformed();
+
+            // Copying 8 bytes at a time avoids most of the per access cost of direct buffers, which
+            // only preserves the bytes if both buffers use the same byte order
+            final int literalEnd = input + literalLength;
+            while(wideLiterals && input + 8 <= literalEnd) {
+                destination.putLong(output, source.getLong(input));
+                input += 8;
+                output += 8;
+            }
+            while(input < literalEnd)
+                destination.put(output++, source.get(input++));
+
+            if(input == end)
+                break;
+
+            if(end - input < 2)
+                throw malformed();
+            final int distance = (source.get(input) & 0xFF) | (source.get(input + 1) & 0xFF) << 8;
+            input += 2;
+
+            int matchLength = token & RUN_MASK;
+            if(matchLength == RUN_MASK) {
+                int lengthByte;
+                do {
+                    if(input == end)
+                        throw malformed();
+                    lengthByte = source.get(input++) & 0xFF;
+                    matchLength += lengthByte;
+                } while(lengthByte == 255);
+            }
+            matchLength += MIN_MATCH;
+
+            int reference = output - distance;
+            if(distance == 0 || reference < destinationOffset || matchLength > outputEnd - output)
+                throw malformed();
+
+            final int matchEnd = output + matchLength;
+            if(distance >= 8) {
+                while(output + 8 <= matchEnd) {
+                    destination.putLong(output, destination.getLong(reference));
+                    output += 8;
+                    reference += 8;
+                }
+            }
+            while(output < matchEnd)
+                destination.put(output++, destination.get(reference++));
+        }
+
+        return output - destinationOffset;
+    }
+}
@@ -0,0 +1,84 @@
+package com.tembins.tagdk.audio;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Carries commands from the game thread to the audio thread in a single-producer/single-consumer
+ * ring buffer of preallocated records, published with ordered stores like the InputQueue, so
+ * neither thread ever waits for the other.
+ */
+final class AudioCommandQueue {
+
+    static final int PLAY = 0, PLAY_LOOPING = 1, STOP = 2, SET_VOLUME = 3, SET_PAN = 4, SET_PITCH = 5;
+    static final int SET_MASTER_VOLUME = 6, STOP_ALL = 7;
+
+    private final int mask;
+    final int[] types, voices;
+    final float[] volumes, pans, pitches;
+    final SoundData[] sounds;
+
+    private final AtomicLong head = new AtomicLong(), tail = new AtomicLong();
+    private long producerTail, cachedHead;
+    private long consumerHead;
+
+    /**
+     * Initializes the queue with the following parameters:
+     *
+     * @param capacity The amount of commands held before pushing fails, rounded up to a power of
+     *                 two.
+     */
+    AudioCommandQueue(final int capacity) {
+        final int size = Integer.highestOneBit(Math.max(2, capacity) * 2 - 1);
+        mask = size - 1;
+        types = new int[size];
+        voices = new int[size];
+        volumes = new float[size];
+        pans = new float[size];
+        pitches = new float[size];
+        sounds = new SoundData[size];
+    }
+
+    /**
+     * Adds a command. Must only be called by the producing thread.
+     *
+     * @return False if the queue is full.
+     */
+    boolean push(final int type, final int voice, final SoundData sound, final float volume, final float pan,
+                 final float pitch) {
+        final long index = producerTail;
+        if(index - cachedHead > mask) {
+            cachedHead = head.get();
+            if(index - cachedHead > mask)
+                return false;
+        }
+
+        final int slot = (int) index & mask;
+        types[slot] = type;
+        voices[slot] = voice;
+        sounds[slot] = sound;
+        volumes[slot] = volume;
+        pans[slot] = pan;
+        pitches[slot] = pitch;
+
+        producerTail = index + 1;
+        tail.lazySet(index + 1);
+        return true;
+    }
+
+    /**
+     * Returns the slot of the oldest command, or -1 if there is none. Must only be called by the
+     * consuming thread, which calls pop() after reading the slot.
+     */
+    int peek() {
+        return consumerHead < tail.get() ? (int) consumerHead & mask : -1;
+    }
+
+    /**
+     * Frees the slot returned by the last peek().
+     */
+    void pop() {
+        // Dropping the reference lets unused sounds be collected
+        sounds[(int) consumerHead & mask] = null;
+        head.lazySet(++consumerHead);
+    }
+}
@@ -0,0 +1,434 @@
+package com.tembins.tagdk.audio;
+
+import java.util.Arrays;
+
+/**
+ * Mixes many PCM voices into a stereo float buffer, to be written to an audio output such as an
+ * AudioTrack by a dedicated audio thread. Every voice plays a SoundData with its own volume, pan
+ * and pitch, the pitch being applied by a linear interpolating resampler that also converts the
+ * sample rate of the sound to the output rate.
+ *
+ * The game thread controls the voices through play, stop and the setters, which only push
+ * commands into a lock-free ring and return immediately; the audio thread applies all pending
+ * commands at the start of every mix. Both sides must each be used by a single thread. Gain
+ * changes are ramped over one buffer to avoid clicks, and stopped voices fade out within one
+ * buffer. If more voices are played than available, the oldest voice is replaced.
+ */
+public final class AudioMixer {
+
+    public static final int CHANNEL_COUNT = 2;
+    public static final int NO_VOICE = 0;
+    private static final int FREE = 0;
+    private static final float SAMPLE_SCALE = 1.0f / 32768.0f;
+    private static final double FIXED_ONE = 4294967296.0;
+    private static final long FRAME = 1L << 32;
+
+    private final int sampleRate, maxVoices;
+    private final AudioCommandQueue commands;
+
+    // Game thread
+    private int nextVoice = 1;
+
+    // Audio thread, one entry per voice
+    private final int[] voiceHandles;
+    private final SoundData[] voiceSounds;
+    private final long[] positions, steps, startOrder;
+    private final float[] volumes, pans, pitches;
+    private final float[] leftGains, rightGains, targetLeftGains, targetRightGains;
+    private final boolean[] looping, stopping;
+    private float masterVolume = 1.0f;
+    private long playCount;
+    private int activeVoiceCount;
+
+    /**
+     * Initializes the mixer with the following parameters:
+     *
+     * @param sampleRate The sample rate of the output, ideally the native rate of the device.
+     * @param maxVoices The largest amount of voices playing at once.
+     * @param commandCapacity The amount of commands the game thread can issue between two mixes.
+     */
+    public AudioMixer(final int sampleRate, final int maxVoices, final int commandCapacity) {
+        if(sampleRate <= 0 || maxVoices <= 0)
+            throw new IllegalArgumentException("Invalid sample rate " + sampleRate + " or voice count " + maxVoices);
+
+        this.sampleRate = sampleRate;
+        this.maxVoices = maxVoices;
+        commands = new AudioCommandQueue(commandCapacity);
+        voiceHandles = new int[maxVoices];
+        voiceSounds = new SoundData[maxVoices];
+        positions = new long[maxVoices];
+        steps = new long[maxVoices];
+        startOrder = new long[maxVoices];
+        volumes = new float[maxVoices];
+        pans = new float[maxVoices];
+        pitches = new float[maxVoices];
+        leftGains = new float[maxVoices];
+        rightGains = new float[maxVoices];
+        targetLeftGains = new float[maxVoices];
+        targetRightGains = new float[maxVoices];
+        looping = new boolean[maxVoices];
+        stopping = new boolean[maxVoices];
+    }
+
+    /**
+     * Starts playing a sound. Called by the game thread.
+     *
+     * @param sound The sound to play.
+     * @param volume The volume, 1 for the original loudness.
+     * @param pan The position in the stereo field, from -1 (left) over 0 (center) to 1 (right).
+     * @param pitch The playback speed, 1 for the original pitch.
+     * @param loop Whether to repeat the sound until it is stopped.
+     * @return The handle of the voice, or NO_VOICE if the command ring is full.
+     */
+    public int play(final SoundData sound, final float volume, final float pan, final float pitch,
+                    final boolean loop) {
+        if(sound == null)
+            throw new IllegalArgumentException("The sound must not be null");
+        if(pitch <= 0.0f)
+            throw new IllegalArgumentException("The pitch must be positive");
+
+        final int voice = nextVoice;
+        if(!commands.push(loop ? AudioCommandQueue.PLAY_LOOPING : AudioCommandQueue.PLAY, voice, sound,
+                volume, pan, pitch))
+            return NO_VOICE;
+
+        nextVoice = nextVoice == Integer.MAX_VALUE ? 1 : nextVoice + 1;
+        return voice;
+    }
+
+    /**
+     * Stops a voice, fading it out within the next buffer. Called by the game thread.
+     *
+     * @param voice The handle returned by play. Handles of voices that already ended are ignored.
+     * @return False if the command ring is full.
+     */
+    public boolean stop(final int voice) {
+        return commands.push(AudioCommandQueue.STOP, voice, null, 0.0f, 0.0f, 0.0f);
+    }
+
+    /**
+     * Stops all voices. Called by the game thread.
+     *
+     * @return False if the command ring is full.
+     */
+    public boolean stopAll() {
+        return commands.push(AudioCommandQueue.STOP_ALL, NO_VOICE, null, 0.0f, 0.0f, 0.0f);
+    }
+
+    /**
+     * Changes the volume of a voice. Called by the game thread.
+     *
+     * @param voice The handle returned by play.
+     * @param volume The new volume.
+     * @return False if the command ring is full.
+     */
+    public boolean setVolume(final int voice, final float volume) {
+        return commands.push(AudioCommandQueue.SET_VOLUME, voice, null, volume, 0.0f, 0.0f);
+    }
+
+    /**
+     * Changes the pan of a voice. Called by the game thread.
+     *
+     * @param voice The handle returned by play.
+     * @param pan The new pan, from -1 to 1.
+     * @return False if the command ring is full.
+     */
+    public boolean setPan(final int voice, final float pan) {
+        return commands.push(AudioCommandQueue.SET_PAN, voice, null, 0.0f, pan, 0.0f);
+    }
+
+    /**
+     * Changes the pitch of a voice. Called by the game thread.
+     *
+     * @param voice The handle returned by play.
+     * @param pitch The new playback speed, positive.
+     * @return False if the command ring is full.
+     */
+    public boolean setPitch(final int voice, final float pitch) {
+        if(pitch <= 0.0f)
+            throw new IllegalArgumentException("The pitch must be positive");
+
+        return commands.push(AudioCommandQueue.SET_PITCH, voice, null, 0.0f, 0.0f, pitch);
+    }
+
+    /**
+     * Changes the volume of all voices. Called by the game thread.
+     *
+     * @param volume The master volume, 1 to keep the voice volumes.
+     * @return False if the command ring is full.
+     */
+    public boolean setMasterVolume(final float volume) {
+        return commands.push(AudioCommandQueue.SET_MASTER_VOLUME, NO_VOICE, null, volume, 0.0f, 0.0f);
+    }
+
+    /**
+     * Applies all pending commands and mixes the next frames. Called by the audio thread. Does not
+     * allocate or lock.
+     *
+     * @param output The buffer receiving the frames as interleaved left and right samples.
+     * @param frameCount The amount of frames to mix.
+     */
+    public void mix(final float[] output, final int frameCount) {
+        if(output.length < frameCount * CHANNEL_COUNT)
+            throw new IllegalArgumentException("Output of " + output.length + " samples is too small for "
+                    + frameCount + " frames");
+
+        applyCommands();
+        Arrays.fill(output, 0, frameCount * CHANNEL_COUNT, 0.0f);
+
+        for(int voice = 0; voice < maxVoices; voice++) {
+            if(voiceHandles[voice] == FREE)
+                continue;
+
+            // Voices reaching the end of their sound free themselves while mixing
+            if(mixVoice(voice, output, frameCount) && stopping[voice])
+                free(voice);
+        }
+    }
+
+    private void applyCommands() {
+        int slot;
+        while((slot = commands.peek()) >= 0) {
+            final int handle = commands.voices[slot];
+            // A command failing to apply is dropped, so it can not block all later commands
+            try {
+                switch(commands.types[slot]) {
+                    case AudioCommandQueue.PLAY:
+                    case AudioCommandQueue.PLAY_LOOPING:
+                        start(handle, commands.sounds[slot], commands.volumes[slot], commands.pans[slot],
+                                commands.pitches[slot], commands.types[slot] == AudioCommandQueue.PLAY_LOOPING);
+                        break;
+                    case AudioCommandQueue.STOP:
+                        final int stopped = find(handle);
+                        if(stopped >= 0)
+                            fadeOut(stopped);
+                        break;
+                    case AudioCommandQueue.STOP_ALL:
+                        for(int voice = 0; voice < maxVoices; voice++)
+                            if(voiceHandles[voice] != FREE)
+                                fadeOut(voice);
+                        break;
+                    case AudioCommandQueue.SET_VOLUME:
+                    case AudioCommandQueue.SET_PAN:
+                        final int changed = find(handle);
+                        if(changed >= 0) {
+                            if(commands.types[slot] == AudioCommandQueue.SET_VOLUME)
+                                volumes[changed] = commands.volumes[slot];
+                            else
+                                pans[changed] = commands.pans[slot];
+                            updateTargetGains(changed);
+                        }
+                        break;
+                    case AudioCommandQueue.SET_PITCH:
+                        final int pitched = find(handle);
+                        if(pitched >= 0) {
+                            pitches[pitched] = commands.pitches[slot];
+                            steps[pitched] = step(voiceSounds[pitched], pitches[pitched]);
+                        }
+                        break;
+                    case AudioCommandQueue.SET_MASTER_VOLUME:
+                        masterVolume = commands.volumes[slot];
+                        for(int voice = 0; voice < maxVoices; voice++)
+                            if(voiceHandles[voice] != FREE)
+                                updateTargetGains(voice);
+                        break;
+                }
+            } finally {
+                commands.pop();
+            }
+        }
+    }
+
+    private void start(final int handle, final SoundData sound, final float volume, final float pan,
+                       final float pitch, final boolean loop) {
+        int voice = -1;
+        for(int candidate = 0; candidate < maxVoices && voice < 0; candidate++)
+            if(voiceHandles[candidate] == FREE)
+                voice = candidate;
+
+        if(voice < 0) {
+            // All voices are busy, the one playing the longest is the least likely to be missed
+            voice = 0;
+            for(int candidate = 1; candidate < maxVoices; candidate++)
+                if(startOrder[candidate] < startOrder[voice])
+                    voice = candidate;
+        } else {
+            activeVoiceCount++;
+        }
+
+        voiceHandles[voice] = handle;
+        voiceSounds[voice] = sound;
+        positions[voice] = 0L;
+        steps[voice] = step(sound, pitch);
+        startOrder[voice] = playCount++;
+        volumes[voice] = volume;
+        pans[voice] = pan;
+        pitches[voice] = pitch;
+        looping[voice] = loop;
+        stopping[voice] = false;
+        updateTargetGains(voice);
+
+        // Sounds start at their own attack, ramping them in would soften it
+        leftGains[voice] = targetLeftGains[voice];
+        rightGains[voice] = targetRightGains[voice];
+    }
+
+    private long step(final SoundData sound, final float pitch) {
+        return (long) ((double) pitch * sound.sampleRate / sampleRate * FIXED_ONE);
+    }
+
+    private void updateTargetGains(final int voice) {
+        // Equal power panning keeps the loudness constant across the stereo field
+        final double angle = (Math.max(-1.0f, Math.min(1.0f, pans[voice])) + 1.0) * Math.PI / 4.0;
+        final float gain = volumes[voice] * masterVolume;
+        targetLeftGains[voice] = gain * (float) Math.cos(angle);
+        targetRightGains[voice] = gain * (float) Math.sin(angle);
+    }
+
+    private void fadeOut(final int voice) {
+        targetLeftGains[voice] = 0.0f;
+        targetRightGains[voice] = 0.0f;
+        stopping[voice] = true;
+    }
+
+    private int find(final int handle) {
+        for(int voice = 0; voice < maxVoices; voice++)
+            if(voiceHandles[voice] == handle && handle != NO_VOICE)
+                return voice;
+        return -1;
+    }
+
+    private void free(final int voice) {
+        voiceHandles[voice] = FREE;
+        voiceSounds[voice] = null;
+        activeVoiceCount--;
+    }
+
+    private boolean mixVoice(final int voice, final float[] output, final int frameCount) {
+        final SoundData sound = voiceSounds[voice];
+        final long end = (long) sound.frameCount << 32;
+        // Looping voices interpolate from the last frame into the first instead of the silent guard
+        final long kernelEnd = looping[voice] ? end - FRAME : end;
+        final long step = steps[voice];
+        final float inverseFrames = 1.0f / frameCount;
+        final float leftStep = (targetLeftGains[voice] - leftGains[voice]) * inverseFrames;
+        final float rightStep = (targetRightGains[voice] - rightGains[voice]) * inverseFrames;
+        long position = positions[voice];
+        float left = leftGains[voice], right = rightGains[voice];
+
+        int frame = 0;
+        while(frame < frameCount) {
+            if(position >= end) {
+                if(!looping[voice]) {
+                    free(voice);
+                    return false;
+                }
+                position %= end;
+            }
+
+            final int count;
+            if(position < kernelEnd) {
+                // Every frame of this run reads at most the guard frame, so the kernels need no checks
+                count = (int) Math.min(frameCount - frame, (kernelEnd - position + step - 1) / step);
+                if(sound.channelCount == 1)
+                    mixMono(sound.samples, output, frame, count, position, step, left, leftStep, right, rightStep);
+                else
+                    mixStereo(sound.samples, output, frame, count, position, step, left, leftStep, right, rightStep);
+            } else {
+                count = 1;
+                mixLoopSeam(sound, output, frame, position, left, right);
+            }
+
+            position += count * step;
+            left += count * leftStep;
+            right += count * rightStep;
+            frame += count;
+        }
+
+        positions[voice] = position;
+        leftGains[voice] = targetLeftGains[voice];
+        rightGains[voice] = targetRightGains[voice];
+        return true;
+    }
+
+    private static void mixMono(final short[] samples, final float[] output, final int firstFrame, final int count,
+                                long position, final long step, float left, final float leftStep,
+                                float right, final float rightStep) {
+        int target = firstFrame * CHANNEL_COUNT;
+        for(int frame = 0; frame < count; frame++) {
+            final int index = (int) (position >>> 32);
+            final float fraction = ((int) (position >>> 1) & 0x7FFFFFFF) * (1.0f / 2147483648.0f);
+            final float first = samples[index];
+            final float sample = (first + (samples[index + 1] - first) * fraction) * SAMPLE_SCALE;
+            output[target] += sample * left;
+            output[target + 1] += sample * right;
+
+            target += CHANNEL_COUNT;
+            position += step;
+            left += leftStep;
+            right += rightStep;
+        }
+    }
+
+    private static void mixStereo(final short[] samples, final float[] output, final int firstFrame, final int count,
+                                  long position, final long step, float left, final float leftStep,
+                                  float right, final float rightStep) {
+        int target = firstFrame * CHANNEL_COUNT;
+        for(int frame = 0; frame < count; frame++) {
+            final int index = (int) (position >>> 32) * CHANNEL_COUNT;
+            final float fraction = ((int) (position >>> 1) & 0x7FFFFFFF) * (1.0f / 2147483648.0f);
+            final float firstLeft = samples[index], firstRight = samples[index + 1];
+            output[target] += (firstLeft + (samples[index + 2] - firstLeft) * fraction) * SAMPLE_SCALE * left;
+            output[target + 1] += (firstRight + (samples[index + 3] - firstRight) * fraction) * SAMPLE_SCALE * right;
+
+            target += CHANNEL_COUNT;
+            position += step;
+            left += leftStep;
+            right += rightStep;
+        }
+    }
+
+    private static void mixLoopSeam(final SoundData sound, final float[] output, final int frame,
+                                    final long position, final float left, final float right) {
+        final short[] samples = sound.samples;
+        final int last = (sound.frameCount - 1) * sound.channelCount;
+        final float fraction = ((int) (position >>> 1) & 0x7FFFFFFF) * (1.0f / 2147483648.0f);
+        final float firstLeft = samples[last];
+        final float leftSample = (firstLeft + (samples[0] - firstLeft) * fraction) * SAMPLE_SCALE;
+        float rightSample = leftSample;
+        if(sound.channelCount == 2) {
+            final float firstRight = samples[last + 1];
+            rightSample = (firstRight + (samples[1] - firstRight) * fraction) * SAMPLE_SCALE;
+        }
+
+        output[frame * CHANNEL_COUNT] += leftSample * left;
+        output[frame * CHANNEL_COUNT + 1] += rightSample * right;
+    }
+
+    /**
+     * Returns the amount of voices currently playing, as seen by the audio thread.
+     *
+     * @return The active voice count.
+     */
+    public int getActiveVoiceCount() {
+        return activeVoiceCount;
+    }
+
+    /**
+     * Returns the sample rate of the output.
+     *
+     * @return The sample rate in Hz.
+     */
+    public int getSampleRate() {
+        return sampleRate;
+    }
+
+    /**
+     * Returns the largest amount of voices playing at once.
+     *
+     * @return The voice count.
+     */
+    public int getMaxVoices() {
+        return maxVoices;
+    }
+}
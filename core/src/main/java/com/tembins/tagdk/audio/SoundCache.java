@@ -0,0 +1,86 @@
+package com.tembins.tagdk.audio;
+
+import com.tembins.tagdk.graphics.resource.tasks.ResourceLoadingException;
+import com.tembins.tagdk.profiling.FrameProfiler;
+import com.tembins.tagdk.util.resource.ResourceProvider;
+
+import java.util.HashMap;
+
+/**
+ * Keeps decoded sounds by resource ID, so every sound is decoded once no matter how often it is
+ * requested. Sounds stay cached until they are released, e.g. when leaving a level. All methods
+ * are thread safe.
+ */
+public final class SoundCache {
+
+    private final HashMap<Integer, SoundData> sounds = new HashMap<>();
+    private long cachedBytes;
+    private FrameProfiler profiler;
+
+    /**
+     * Counts every sound loaded by get as a loaded resource of the given profiler. The profiler has
+     * to belong to the thread calling get.
+     *
+     * @param profiler The profiler to report to, or null to stop reporting.
+     */
+    public synchronized void setProfiler(final FrameProfiler profiler) {
+        this.profiler = profiler;
+    }
+
+    /**
+     * Returns a sound, loading it with a SoundLoadingTask if it is not cached yet.
+     *
+     * @param resources The provider for accessing the resources.
+     * @param resourceID The resource ID of the sound.
+     * @return The decoded sound.
+     * @throws ResourceLoadingException If the sound is not cached and loading it fails.
+     */
+    public synchronized SoundData get(final ResourceProvider resources, final int resourceID)
+            throws ResourceLoadingException {
+        SoundData sound = sounds.get(resourceID);
+        if(sound == null) {
+            sound = new SoundLoadingTask(resourceID).load(resources, profiler);
+            sounds.put(resourceID, sound);
+            cachedBytes += sound.getSizeBytes();
+        }
+        return sound;
+    }
+
+    /**
+     * Returns whether a sound is cached.
+     *
+     * @param resourceID The resource ID of the sound.
+     * @return True if get returns without loading.
+     */
+    public synchronized boolean contains(final int resourceID) {
+        return sounds.containsKey(resourceID);
+    }
+
+    /**
+     * Drops a sound from the cache. Voices still playing it keep it alive until they end.
+     *
+     * @param resourceID The resource ID of the sound.
+     */
+    public synchronized void release(final int resourceID) {
+        final SoundData sound = sounds.remove(resourceID);
+        if(sound != null)
+            cachedBytes -= sound.getSizeBytes();
+    }
+
+    /**
+     * Drops all sounds from the cache.
+     */
+    public synchronized void clear() {
+        sounds.clear();
+        cachedBytes = 0L;
+    }
+
+    /**
+     * Returns the memory held by the cached samples.
+     *
+     * @return The size in bytes.
+     */
+    public synchronized long getCachedBytes() {
+        return cachedBytes;
+    }
+}
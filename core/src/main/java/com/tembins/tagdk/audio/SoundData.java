@@ -0,0 +1,82 @@
+package com.tembins.tagdk.audio;
+
+/**
+ * Holds a decoded sound as 16 bit PCM samples, mono or stereo with interleaved channels.
+ *
+ * The sample array ends with one additional silent guard frame, so the resampler of the
+ * AudioMixer can always read the frame after the current one without bounds checks, and sounds
+ * played once fade into silence instead of into their start. Looping voices interpolate between
+ * the last and the first frame separately.
+ */
+public final class SoundData {
+
+    final short[] samples;
+    final int channelCount, sampleRate, frameCount;
+
+    /**
+     * Initializes the sound with the following parameters:
+     *
+     * @param samples The samples, with the channels of a frame stored next to each other.
+     * @param channelCount The amount of channels, 1 or 2.
+     * @param sampleRate The amount of frames per second.
+     */
+    public SoundData(final short[] samples, final int channelCount, final int sampleRate) {
+        if(channelCount != 1 && channelCount != 2)
+            throw new IllegalArgumentException("Only mono and stereo sounds are supported");
+        if(sampleRate <= 0)
+            throw new IllegalArgumentException("Invalid sample rate " + sampleRate);
+        if(samples.length == 0 || samples.length % channelCount != 0)
+            throw new IllegalArgumentException("The samples must contain at least one whole frame");
+
+        this.channelCount = channelCount;
+        this.sampleRate = sampleRate;
+        frameCount = samples.length / channelCount;
+        this.samples = new short[samples.length + channelCount];
+        System.arraycopy(samples, 0, this.samples, 0, samples.length);
+    }
+
+    /**
+     * Returns the amount of channels.
+     *
+     * @return 1 for mono, 2 for stereo.
+     */
+    public int getChannelCount() {
+        return channelCount;
+    }
+
+    /**
+     * Returns the amount of frames per second.
+     *
+     * @return The sample rate in Hz.
+     */
+    public int getSampleRate() {
+        return sampleRate;
+    }
+
+    /**
+     * Returns the amount of frames, each holding one sample per channel.
+     *
+     * @return The frame count.
+     */
+    public int getFrameCount() {
+        return frameCount;
+    }
+
+    /**
+     * Returns the duration of the sound when played at its own rate.
+     *
+     * @return The duration in seconds.
+     */
+    public float getDuration() {
+        return (float) frameCount / sampleRate;
+    }
+
+    /**
+     * Returns the memory held by the samples.
+     *
+     * @return The size in bytes.
+     */
+    public int getSizeBytes() {
+        return samples.length * 2;
+    }
+}
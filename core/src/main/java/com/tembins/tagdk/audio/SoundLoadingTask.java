@@ -0,0 +1,86 @@
+package com.tembins.tagdk.audio;
+
+import com.tembins.tagdk.graphics.resource.tasks.ResourceLoadingException;
+import com.tembins.tagdk.graphics.resource.tasks.ResourceType;
+import com.tembins.tagdk.profiling.FrameProfiler;
+import com.tembins.tagdk.util.resource.ResourceProvider;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * This class represents a task which, when executed, loads and decodes a WAVE sound from the
+ * resource directory. Unlike the graphics loading tasks it needs no graphics context, so sounds
+ * can be loaded on any thread.
+ */
+public final class SoundLoadingTask {
+
+    private static final int BUFFER_SIZE = 8192;
+
+    private final int resourceID;
+
+    /**
+     * Initializes the task with the following parameters:
+     *
+     * @param resourceID The ID of the resource to load as a sound.
+     */
+    public SoundLoadingTask(final int resourceID) {
+        this.resourceID = resourceID;
+    }
+
+    /**
+     * Executes the task, thus loading the sound.
+     *
+     * @param resources The provider for accessing the resources.
+     * @return The decoded sound.
+     * @throws ResourceLoadingException If the resource can not be read or decoded.
+     */
+    public SoundData load(final ResourceProvider resources) throws ResourceLoadingException {
+        return load(resources, null);
+    }
+
+    /**
+     * Executes the task, thus loading the sound, and counts it as a loaded resource of the given
+     * profiler if it succeeds.
+     *
+     * @param resources The provider for accessing the resources.
+     * @param profiler The profiler of the loading thread, or null.
+     * @return The decoded sound.
+     * @throws ResourceLoadingException If the resource can not be read or decoded.
+     */
+    public SoundData load(final ResourceProvider resources, final FrameProfiler profiler)
+            throws ResourceLoadingException {
+        final SoundData sound;
+        try {
+            final InputStream inputStream = resources.openResource(resourceID);
+            try {
+                final ByteArrayOutputStream outputStream = new ByteArrayOutputStream(
+                        Math.max(BUFFER_SIZE, inputStream.available()));
+                final byte[] buffer = new byte[BUFFER_SIZE];
+                int read;
+                while((read = inputStream.read(buffer)) != -1)
+                    outputStream.write(buffer, 0, read);
+
+                sound = WavDecoder.decode(outputStream.toByteArray());
+            } finally {
+                inputStream.close();
+            }
+        } catch(IOException ioException) {
+            throw new ResourceLoadingException(ResourceType.SOUND, resourceID, ioException);
+        }
+
+        if(profiler != null)
+            profiler.count(FrameProfiler.Counter.LOADED_RESOURCES, 1L);
+        return sound;
+    }
+
+    /**
+     * Returns the resource type this task loads.
+     *
+     * @return ResourceType.SOUND
+     */
+    public ResourceType getLoadedResourceType() {
+        return ResourceType.SOUND;
+    }
+}
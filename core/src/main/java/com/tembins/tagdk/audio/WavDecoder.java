@@ -0,0 +1,82 @@
+package com.tembins.tagdk.audio;
+
+import java.io.IOException;
+
+/**
+ * Decodes RIFF WAVE files holding uncompressed 8 or 16 bit PCM, the format sound effects are best
+ * stored in when they are played often: decoding them is a plain copy, and they are small anyway.
+ */
+public final class WavDecoder {
+
+    private static final int FORMAT_PCM = 1;
+    private static final int FORMAT_EXTENSIBLE = 0xFFFE;
+
+    private WavDecoder() {
+    }
+
+    /**
+     * Decodes a WAVE file.
+     *
+     * @param data The contents of the file.
+     * @return The decoded sound.
+     * @throws IOException If the data is no WAVE file or uses an unsupported format.
+     */
+    public static SoundData decode(final byte[] data) throws IOException {
+        if(data.length < 12 || !tag(data, 0, "RIFF") || !tag(data, 8, "WAVE"))
+            throw new IOException("Not a RIFF WAVE file");
+
+        int channelCount = 0, sampleRate = 0, bitsPerSample = 0;
+        int offset = 12;
+        while(offset + 8 <= data.length) {
+            final int chunkSize = readInt(data, offset + 4);
+            final int chunkStart = offset + 8;
+            if(chunkSize < 0 || chunkStart + chunkSize > data.length)
+                throw new IOException("Truncated chunk at " + offset);
+
+            if(tag(data, offset, "fmt ")) {
+                if(chunkSize < 16)
+                    throw new IOException("Invalid format chunk");
+
+                final int format = readShort(data, chunkStart) & 0xFFFF;
+                channelCount = readShort(data, chunkStart + 2);
+                sampleRate = readInt(data, chunkStart + 4);
+                bitsPerSample = readShort(data, chunkStart + 14);
+                if(format != FORMAT_PCM && format != FORMAT_EXTENSIBLE || bitsPerSample != 8 && bitsPerSample != 16)
+                    throw new IOException("Unsupported format " + format + " with " + bitsPerSample + " bits");
+            } else if(tag(data, offset, "data")) {
+                if(channelCount == 0)
+                    throw new IOException("Data chunk before format chunk");
+
+                final int bytesPerSample = bitsPerSample / 8;
+                final short[] samples = new short[chunkSize / bytesPerSample / channelCount * channelCount];
+                if(samples.length == 0 || channelCount > 2 || sampleRate <= 0)
+                    throw new IOException("Empty data chunk or unsupported channel count " + channelCount);
+                for(int sample = 0; sample < samples.length; sample++) {
+                    samples[sample] = bytesPerSample == 2 ? readShort(data, chunkStart + sample * 2)
+                            : (short) (((data[chunkStart + sample] & 0xFF) - 128) << 8);
+                }
+                return new SoundData(samples, channelCount, sampleRate);
+            }
+
+            // Chunks are padded to an even size
+            offset = chunkStart + chunkSize + (chunkSize & 1);
+        }
+        throw new IOException("No data chunk");
+    }
+
+    private static boolean tag(final byte[] data, final int offset, final String tag) {
+        for(int index = 0; index < 4; index++)
+            if(data[offset + index] != tag.charAt(index))
+                return false;
+        return true;
+    }
+
+    private static short readShort(final byte[] data, final int offset) {
+        return (short) (data[offset] & 0xFF | data[offset + 1] << 8);
+    }
+
+    private static int readInt(final byte[] data, final int offset) {
+        return data[offset] & 0xFF | (data[offset + 1] & 0xFF) << 8 | (data[offset + 2] & 0xFF) << 16
+                | data[offset + 3] << 24;
+    }
+}
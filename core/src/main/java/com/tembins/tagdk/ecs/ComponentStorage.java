@@ -0,0 +1,150 @@
+package com.tembins.tagdk.ecs;
+
+import java.util.Arrays;
+
+/**
+ * The base of all component storages, implemented as a sparse set. Every entity owning the
+ * component has a dense index; the dense indices of all owners are kept contiguous from 0 to
+ * size() - 1, so subclasses can store the component data in primitive arrays indexed by it.
+ * Removing a component moves the last owner into the freed slot.
+ */
+public abstract class ComponentStorage {
+
+    private static final int ABSENT = -1;
+
+    private int[] sparse = new int[0];
+    private int[] dense;
+    private int size;
+    int id = -1;
+
+    /**
+     * Initializes the storage with the given capacity.
+     *
+     * @param initialCapacity The amount of components to reserve memory for.
+     */
+    protected ComponentStorage(final int initialCapacity) {
+        dense = new int[Math.max(1, initialCapacity)];
+    }
+
+    /**
+     * Adds the component to the given entity. The component data at the returned index is not
+     * cleared and should be set by the caller.
+     *
+     * @param entity The entity to add the component to.
+     * @return The dense index of the component.
+     */
+    public int add(final int entity) {
+        final int entityIndex = EntityRegistry.indexOf(entity);
+        if(entityIndex >= sparse.length) {
+            final int oldLength = sparse.length;
+            sparse = Arrays.copyOf(sparse, Math.max(entityIndex + 1, oldLength * 2));
+            Arrays.fill(sparse, oldLength, sparse.length, ABSENT);
+        }
+
+        final int existing = sparse[entityIndex];
+        if(existing != ABSENT && dense[existing] == entity)
+            return existing;
+
+        if(size == dense.length) {
+            dense = Arrays.copyOf(dense, size * 2);
+            grow(dense.length);
+        }
+
+        final int denseIndex = size++;
+        dense[denseIndex] = entity;
+        sparse[entityIndex] = denseIndex;
+        return denseIndex;
+    }
+
+    /**
+     * Removes the component from the given entity, if present.
+     *
+     * @param entity The entity to remove the component from.
+     * @return True if the entity owned the component.
+     */
+    public boolean remove(final int entity) {
+        final int denseIndex = indexOf(entity);
+        if(denseIndex == ABSENT)
+            return false;
+
+        final int last = --size;
+        if(denseIndex != last) {
+            final int movedEntity = dense[last];
+            dense[denseIndex] = movedEntity;
+            sparse[EntityRegistry.indexOf(movedEntity)] = denseIndex;
+            move(last, denseIndex);
+        }
+
+        sparse[EntityRegistry.indexOf(entity)] = ABSENT;
+        return true;
+    }
+
+    /**
+     * Returns whether the given entity owns this component.
+     *
+     * @param entity The entity to check.
+     * @return True if the entity owns the component.
+     */
+    public boolean contains(final int entity) {
+        return indexOf(entity) != ABSENT;
+    }
+
+    /**
+     * Returns the dense index of the component of the given entity.
+     *
+     * @param entity The entity to look up.
+     * @return The dense index, or -1 if the entity does not own the component.
+     */
+    public int indexOf(final int entity) {
+        final int entityIndex = EntityRegistry.indexOf(entity);
+        if(entityIndex >= sparse.length)
+            return ABSENT;
+
+        final int denseIndex = sparse[entityIndex];
+        // The generation check rejects stale handles of destroyed entities
+        return denseIndex != ABSENT && dense[denseIndex] == entity ? denseIndex : ABSENT;
+    }
+
+    /**
+     * Returns the entity owning the component at the given dense index.
+     *
+     * @param denseIndex The dense index.
+     * @return The owning entity.
+     */
+    public int getEntity(final int denseIndex) {
+        return dense[denseIndex];
+    }
+
+    /**
+     * Returns the amount of entities owning this component.
+     *
+     * @return The component count.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns the ID assigned by the EntityRegistry this storage was registered with.
+     *
+     * @return The storage ID, or -1 if the storage is not registered.
+     */
+    public int getID() {
+        return id;
+    }
+
+    /**
+     * Grows the component data to hold at least the given amount of components.
+     *
+     * @param capacity The new minimum capacity.
+     */
+    protected abstract void grow(final int capacity);
+
+    /**
+     * Moves the component data from one dense index to another, overwriting the target.
+     *
+     * @param from The dense index to move from.
+     * @param to The dense index to move to.
+     */
+    protected abstract void move(final int from, final int to);
+}
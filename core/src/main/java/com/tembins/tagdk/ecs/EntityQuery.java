@@ -0,0 +1,114 @@
+package com.tembins.tagdk.ecs;
+
+import java.util.Arrays;
+
+/**
+ * Finds all entities owning every one of a set of components. Running the query fills one dense
+ * index array per storage, so systems can loop over the matches and access the primitive component
+ * arrays directly:
+ *
+ * <pre>
+ * final int count = query.run();
+ * final int[] positionIndices = query.getIndices(0);
+ * final float[] positions = positionStorage.getData();
+ * for(int match = 0; match &lt; count; match++)
+ *     positions[positionIndices[match] * 3] += 1.0f;
+ * </pre>
+ *
+ * The query iterates the smallest storage and looks the entities up in the others, so matching
+ * costs are bound by the rarest component. The index arrays are reused, a query does not allocate
+ * once they are large enough.
+ */
+public final class EntityQuery {
+
+    private final ComponentStorage[] storages;
+    private final int[][] indices;
+    private int[] entities;
+    private int count;
+
+    /**
+     * Initializes the query over the given storages.
+     *
+     * @param storages The storages whose components a matching entity must own.
+     */
+    public EntityQuery(final ComponentStorage... storages) {
+        if(storages.length == 0)
+            throw new IllegalArgumentException("Query without storages");
+
+        this.storages = storages.clone();
+        indices = new int[storages.length][16];
+        entities = new int[16];
+    }
+
+    /**
+     * Runs the query, replacing the results of the previous run.
+     *
+     * @return The amount of matching entities.
+     */
+    public int run() {
+        int driver = 0;
+        for(int slot = 1; slot < storages.length; slot++)
+            if(storages[slot].size() < storages[driver].size())
+                driver = slot;
+
+        final ComponentStorage driverStorage = storages[driver];
+        final int driverSize = driverStorage.size();
+        ensureCapacity(driverSize);
+
+        count = 0;
+        candidates:
+        for(int denseIndex = 0; denseIndex < driverSize; denseIndex++) {
+            final int entity = driverStorage.getEntity(denseIndex);
+
+            for(int slot = 0; slot < storages.length; slot++) {
+                final int index = slot == driver ? denseIndex : storages[slot].indexOf(entity);
+                if(index < 0)
+                    continue candidates;
+
+                indices[slot][count] = index;
+            }
+
+            entities[count++] = entity;
+        }
+
+        return count;
+    }
+
+    private void ensureCapacity(final int capacity) {
+        if(capacity <= entities.length)
+            return;
+
+        final int newCapacity = Math.max(capacity, entities.length * 2);
+        entities = Arrays.copyOf(entities, newCapacity);
+        for(int slot = 0; slot < indices.length; slot++)
+            indices[slot] = Arrays.copyOf(indices[slot], newCapacity);
+    }
+
+    /**
+     * Returns the dense indices of the matches inside of one storage.
+     *
+     * @param slot The position of the storage in the constructor arguments.
+     * @return The dense indices, valid up to the count returned by run().
+     */
+    public int[] getIndices(final int slot) {
+        return indices[slot];
+    }
+
+    /**
+     * Returns the matching entities.
+     *
+     * @return The entities, valid up to the count returned by run().
+     */
+    public int[] getEntities() {
+        return entities;
+    }
+
+    /**
+     * Returns the amount of matches of the last run.
+     *
+     * @return The match count.
+     */
+    public int getCount() {
+        return count;
+    }
+}
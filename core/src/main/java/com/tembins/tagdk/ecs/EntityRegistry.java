@@ -0,0 +1,145 @@
+package com.tembins.tagdk.ecs;
+
+import java.util.Arrays;
+
+/**
+ * Creates and destroys entities and knows all component storages. An entity is a plain int
+ * combining an index (lower 20 bits) with a generation (upper 11 bits). Destroyed indices are
+ * recycled with an increased generation, so handles to destroyed entities never match a new
+ * entity reusing the same index.
+ */
+public final class EntityRegistry {
+
+    public static final int NULL_ENTITY = -1;
+    public static final int MAX_STORAGES = 64;
+
+    private static final int INDEX_BITS = 20;
+    private static final int INDEX_MASK = (1 << INDEX_BITS) - 1;
+    private static final int GENERATION_MASK = 0x7FF;
+
+    private int[] generations;
+    private int[] freeIndices;
+    private int freeCount;
+    private int indexCount;
+    private int aliveCount;
+
+    private final ComponentStorage[] storages = new ComponentStorage[MAX_STORAGES];
+    private int storageCount;
+
+    /**
+     * Initializes the registry with the given capacity. The registry grows if more entities are
+     * created, up to 2^20 entities alive at once.
+     *
+     * @param initialCapacity The amount of entities to reserve memory for.
+     */
+    public EntityRegistry(final int initialCapacity) {
+        final int capacity = Math.max(1, initialCapacity);
+        generations = new int[capacity];
+        freeIndices = new int[capacity];
+    }
+
+    /**
+     * Returns the index part of an entity, usable to index arrays.
+     *
+     * @param entity The entity.
+     * @return The entity index.
+     */
+    public static int indexOf(final int entity) {
+        return entity & INDEX_MASK;
+    }
+
+    /**
+     * Returns the generation part of an entity.
+     *
+     * @param entity The entity.
+     * @return The entity generation.
+     */
+    public static int generationOf(final int entity) {
+        return (entity >>> INDEX_BITS) & GENERATION_MASK;
+    }
+
+    /**
+     * Registers a component storage, so components are removed when their entity is destroyed
+     * and the storage can be referenced by systems.
+     *
+     * @param storage The storage to register.
+     * @param <T> The storage type.
+     * @return The given storage, for convenient field initialization.
+     */
+    public <T extends ComponentStorage> T register(final T storage) {
+        if(storage.id != -1)
+            throw new IllegalArgumentException("Storage already registered");
+        if(storageCount == MAX_STORAGES)
+            throw new IllegalStateException("More than " + MAX_STORAGES + " storages registered");
+
+        storage.id = storageCount;
+        storages[storageCount++] = storage;
+        return storage;
+    }
+
+    /**
+     * Creates a new entity without any components.
+     *
+     * @return The new entity.
+     */
+    public int create() {
+        final int index;
+        if(freeCount > 0) {
+            index = freeIndices[--freeCount];
+        } else {
+            if(indexCount > INDEX_MASK)
+                throw new IllegalStateException("More than " + (INDEX_MASK + 1) + " entities alive");
+
+            if(indexCount == generations.length) {
+                generations = Arrays.copyOf(generations, Math.min(indexCount * 2, INDEX_MASK + 1));
+                freeIndices = Arrays.copyOf(freeIndices, generations.length);
+            }
+            index = indexCount++;
+        }
+
+        aliveCount++;
+        return (generations[index] << INDEX_BITS) | index;
+    }
+
+    /**
+     * Destroys the given entity and removes all of its components. Destroying an entity which is
+     * not alive has no effect.
+     *
+     * @param entity The entity to destroy.
+     */
+    public void destroy(final int entity) {
+        if(!isAlive(entity))
+            return;
+
+        for(int storage = 0; storage < storageCount; storage++)
+            storages[storage].remove(entity);
+
+        final int index = indexOf(entity);
+        generations[index] = (generations[index] + 1) & GENERATION_MASK;
+        freeIndices[freeCount++] = index;
+        aliveCount--;
+    }
+
+    /**
+     * Returns whether the given entity was created by this registry and not destroyed yet.
+     *
+     * @param entity The entity to check.
+     * @return True if the entity is alive.
+     */
+    public boolean isAlive(final int entity) {
+        if(entity < 0)
+            return false;
+
+        final int index = indexOf(entity);
+        return index < indexCount && generations[index] == generationOf(entity);
+    }
+
+    /**
+     * Returns the amount of alive entities.
+     *
+     * @return The entity count.
+     */
+    public int getAliveCount() {
+        return aliveCount;
+    }
+}
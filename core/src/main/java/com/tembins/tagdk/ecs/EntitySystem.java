@@ -0,0 +1,31 @@
+package com.tembins.tagdk.ecs;
+
+/**
+ * A system updating the components of entities every frame. The storages a system reads and
+ * writes are declared up front, so the SystemScheduler can run systems touching disjoint data in
+ * parallel.
+ */
+public interface EntitySystem {
+
+    /**
+     * Returns the storages this system only reads from.
+     *
+     * @return The read storages.
+     */
+    ComponentStorage[] getReadStorages();
+
+    /**
+     * Returns the storages this system writes to, or reads and writes.
+     *
+     * @return The written storages.
+     */
+    ComponentStorage[] getWrittenStorages();
+
+    /**
+     * Updates the system. Implementations must not create or destroy entities or add or remove
+     * components, as other systems may be running at the same time.
+     *
+     * @param deltaTime The time since the last update, in seconds.
+     */
+    void update(final float deltaTime);
+}
@@ -0,0 +1,91 @@
+package com.tembins.tagdk.ecs;
+
+import java.util.Arrays;
+
+/**
+ * Stores components consisting of a fixed amount of floats, e.g. 3 for a position or velocity.
+ * The floats of all components are packed into a single array: the component with dense index i
+ * starts at i * getComponentSize().
+ */
+public final class FloatComponentStorage extends ComponentStorage {
+
+    private final int componentSize;
+    private float[] data;
+
+    /**
+     * Initializes the storage with the given parameters:
+     *
+     * @param componentSize The amount of floats per component.
+     * @param initialCapacity The amount of components to reserve memory for.
+     */
+    public FloatComponentStorage(final int componentSize, final int initialCapacity) {
+        super(initialCapacity);
+        this.componentSize = componentSize;
+        data = new float[Math.max(1, initialCapacity) * componentSize];
+    }
+
+    /**
+     * Adds the component to the given entity and sets all of its floats to the given value.
+     *
+     * @param entity The entity to add the component to.
+     * @param value The initial value of every float of the component.
+     * @return The dense index of the component.
+     */
+    public int add(final int entity, final float value) {
+        final int denseIndex = add(entity);
+        final int offset = denseIndex * componentSize;
+        Arrays.fill(data, offset, offset + componentSize, value);
+        return denseIndex;
+    }
+
+    /**
+     * Returns one float of a component.
+     *
+     * @param denseIndex The dense index of the component.
+     * @param element The index of the float inside of the component.
+     * @return The value.
+     */
+    public float get(final int denseIndex, final int element) {
+        return data[denseIndex * componentSize + element];
+    }
+
+    /**
+     * Sets one float of a component.
+     *
+     * @param denseIndex The dense index of the component.
+     * @param element The index of the float inside of the component.
+     * @param value The new value.
+     */
+    public void set(final int denseIndex, final int element, final float value) {
+        data[denseIndex * componentSize + element] = value;
+    }
+
+    /**
+     * Returns the backing array of all components. The array is replaced when the storage grows,
+     * so it should be fetched again after adding components.
+     *
+     * @return The component data.
+     */
+    public float[] getData() {
+        return data;
+    }
+
+    /**
+     * Returns the amount of floats per component.
+     *
+     * @return The component size.
+     */
+    public int getComponentSize() {
+        return componentSize;
+    }
+
+    @Override
+    protected void grow(final int capacity) {
+        data = Arrays.copyOf(data, capacity * componentSize);
+    }
+
+    @Override
+    protected void move(final int from, final int to) {
+        System.arraycopy(data, from * componentSize, data, to * componentSize, componentSize);
+    }
+}
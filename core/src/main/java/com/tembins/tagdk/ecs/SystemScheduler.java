@@ -0,0 +1,156 @@
+package com.tembins.tagdk.ecs;
+
+import java.util.ArrayList;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Runs entity systems, executing systems without conflicting data access in parallel. Two
+ * systems conflict if one of them writes a storage the other one reads or writes. Systems are
+ * grouped into phases in the order they were added: every system is placed in the first phase
+ * after all conflicting systems added before it, so conflicting systems always run in the order
+ * they were added. Phases run one after the other, the systems of one phase at the same time.
+ */
+public final class SystemScheduler {
+
+    private final ForkJoinPool pool;
+    private final ArrayList<SystemTask> tasks = new ArrayList<>();
+    private SystemTask[][] phases;
+    private final PhaseRunner phaseRunner = new PhaseRunner();
+    private float deltaTime;
+
+    /**
+     * Initializes the scheduler with the pool to run systems on.
+     *
+     * @param pool The pool to run parallel phases on, or null to run all systems on the calling
+     *             thread.
+     */
+    public SystemScheduler(final ForkJoinPool pool) {
+        this.pool = pool;
+    }
+
+    /**
+     * Adds a system. All storages the system accesses must be registered with an EntityRegistry.
+     *
+     * @param system The system to add.
+     */
+    public void add(final EntitySystem system) {
+        tasks.add(new SystemTask(system, mask(system.getReadStorages()), mask(system.getWrittenStorages())));
+        phases = null;
+    }
+
+    private static long mask(final ComponentStorage[] storages) {
+        long mask = 0L;
+        for(final ComponentStorage storage : storages) {
+            if(storage.getID() < 0)
+                throw new IllegalArgumentException("Storage not registered with an EntityRegistry");
+
+            mask |= 1L << storage.getID();
+        }
+
+        return mask;
+    }
+
+    private static boolean conflicts(final SystemTask first, final SystemTask second) {
+        return (first.writeMask & (second.readMask | second.writeMask)) != 0L
+                || (second.writeMask & first.readMask) != 0L;
+    }
+
+    private void buildPhases() {
+        final int[] phaseOfTask = new int[tasks.size()];
+        int phaseCount = 0;
+
+        for(int task = 0; task < tasks.size(); task++) {
+            int phase = 0;
+            for(int previous = 0; previous < task; previous++)
+                if(conflicts(tasks.get(previous), tasks.get(task)))
+                    phase = Math.max(phase, phaseOfTask[previous] + 1);
+
+            phaseOfTask[task] = phase;
+            phaseCount = Math.max(phaseCount, phase + 1);
+        }
+
+        final int[] phaseSizes = new int[phaseCount];
+        for(final int phase : phaseOfTask)
+            phaseSizes[phase]++;
+
+        phases = new SystemTask[phaseCount][];
+        for(int phase = 0; phase < phaseCount; phase++)
+            phases[phase] = new SystemTask[phaseSizes[phase]];
+
+        final int[] cursors = new int[phaseCount];
+        for(int task = 0; task < tasks.size(); task++)
+            phases[phaseOfTask[task]][cursors[phaseOfTask[task]]++] = tasks.get(task);
+    }
+
+    /**
+     * Returns the amount of phases the systems are grouped into.
+     *
+     * @return The phase count.
+     */
+    public int getPhaseCount() {
+        if(phases == null)
+            buildPhases();
+
+        return phases.length;
+    }
+
+    /**
+     * Runs all systems once. Apart from the first run after adding systems, this does not
+     * allocate.
+     *
+     * @param deltaTime The time since the last update, in seconds.
+     */
+    public void run(final float deltaTime) {
+        if(phases == null)
+            buildPhases();
+
+        this.deltaTime = deltaTime;
+
+        if(pool == null) {
+            for(final SystemTask[] phase : phases)
+                for(final SystemTask task : phase)
+                    task.system.update(deltaTime);
+            return;
+        }
+
+        phaseRunner.reinitialize();
+        pool.invoke(phaseRunner);
+    }
+
+    private final class PhaseRunner extends RecursiveAction {
+
+        @Override
+        protected void compute() {
+            for(final SystemTask[] phase : phases) {
+                if(phase.length == 1) {
+                    phase[0].system.update(deltaTime);
+                    continue;
+                }
+
+                for(final SystemTask task : phase)
+                    task.reinitialize();
+
+                ForkJoinTask.invokeAll(phase);
+            }
+        }
+    }
+
+    private final class SystemTask extends RecursiveAction {
+
+        private final EntitySystem system;
+        private final long readMask, writeMask;
+
+        private SystemTask(final EntitySystem system, final long readMask, final long writeMask) {
+            this.system = system;
+            this.readMask = readMask;
+            this.writeMask = writeMask;
+        }
+
+        @Override
+        protected void compute() {
+            system.update(deltaTime);
+        }
+    }
+}
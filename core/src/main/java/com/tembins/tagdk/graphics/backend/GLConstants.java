@@ -0,0 +1,153 @@
+package com.tembins.tagdk.graphics.backend;
+
+/**
+ * The OpenGL ES constants used by the engine, so code running against a GraphicsBackend does not
+ * depend on the Android GLES classes. The values are the ones defined by the OpenGL ES
+ * specification and can be passed to the Android bindings unchanged.
+ */
+public final class GLConstants {
+
+    public static final int GL_FALSE = 0;
+    public static final int GL_TRUE = 1;
+
+    // Errors
+    public static final int GL_NO_ERROR = 0;
+    public static final int GL_INVALID_ENUM = 0x0500;
+    public static final int GL_INVALID_VALUE = 0x0501;
+    public static final int GL_INVALID_OPERATION = 0x0502;
+    public static final int GL_OUT_OF_MEMORY = 0x0505;
+    public static final int GL_INVALID_FRAMEBUFFER_OPERATION = 0x0506;
+
+    // Data types
+    public static final int GL_UNSIGNED_BYTE = 0x1401;
+    public static final int GL_UNSIGNED_SHORT = 0x1403;
+    public static final int GL_UNSIGNED_INT = 0x1405;
+    public static final int GL_FLOAT = 0x1406;
+    public static final int GL_HALF_FLOAT = 0x140B;
+
+    // Primitives
+    public static final int GL_POINTS = 0x0000;
+    public static final int GL_LINES = 0x0001;
+    public static final int GL_TRIANGLES = 0x0004;
+    public static final int GL_TRIANGLE_STRIP = 0x0005;
+
+    // Buffers
+    public static final int GL_ARRAY_BUFFER = 0x8892;
+    public static final int GL_ELEMENT_ARRAY_BUFFER = 0x8893;
+    public static final int GL_UNIFORM_BUFFER = 0x8A11;
+    public static final int GL_STATIC_DRAW = 0x88E4;
+    public static final int GL_STREAM_DRAW = 0x88E0;
+    public static final int GL_DYNAMIC_DRAW = 0x88E8;
+
+    // Textures
+    public static final int GL_TEXTURE_2D = 0x0DE1;
+    public static final int GL_TEXTURE0 = 0x84C0;
+    public static final int GL_TEXTURE_WRAP_S = 0x2802;
+    public static final int GL_TEXTURE_WRAP_T = 0x2803;
+    public static final int GL_TEXTURE_MIN_FILTER = 0x2801;
+    public static final int GL_TEXTURE_MAG_FILTER = 0x2800;
+    public static final int GL_REPEAT = 0x2901;
+    public static final int GL_CLAMP_TO_EDGE = 0x812F;
+    public static final int GL_NEAREST = 0x2600;
+    public static final int GL_LINEAR = 0x2601;
+    public static final int GL_NEAREST_MIPMAP_NEAREST = 0x2700;
+    public static final int GL_LINEAR_MIPMAP_LINEAR = 0x2703;
+    public static final int GL_TEXTURE_BASE_LEVEL = 0x813C;
+    public static final int GL_TEXTURE_MAX_LEVEL = 0x813D;
+    public static final int GL_RED = 0x1903;
+    public static final int GL_ALPHA = 0x1906;
+    public static final int GL_RGB = 0x1907;
+    public static final int GL_RGBA = 0x1908;
+    public static final int GL_LUMINANCE = 0x1909;
+    public static final int GL_RG = 0x8227;
+    public static final int GL_RGBA8 = 0x8058;
+    public static final int GL_RGB8 = 0x8051;
+    public static final int GL_RGBA16F = 0x881A;
+
+    // Framebuffers
+    public static final int GL_FRAMEBUFFER = 0x8D40;
+    public static final int GL_READ_FRAMEBUFFER = 0x8CA8;
+    public static final int GL_DRAW_FRAMEBUFFER = 0x8CA9;
+    public static final int GL_RENDERBUFFER = 0x8D41;
+    public static final int GL_FRAMEBUFFER_COMPLETE = 0x8CD5;
+    public static final int GL_COLOR_ATTACHMENT0 = 0x8CE0;
+    public static final int GL_DEPTH_ATTACHMENT = 0x8D00;
+    public static final int GL_STENCIL_ATTACHMENT = 0x8D20;
+    public static final int GL_DEPTH_STENCIL_ATTACHMENT = 0x821A;
+    public static final int GL_DEPTH_COMPONENT16 = 0x81A5;
+    public static final int GL_DEPTH_COMPONENT24 = 0x81A6;
+    public static final int GL_DEPTH24_STENCIL8 = 0x88F0;
+
+    // Shaders
+    public static final int GL_FRAGMENT_SHADER = 0x8B30;
+    public static final int GL_VERTEX_SHADER = 0x8B31;
+    public static final int GL_COMPILE_STATUS = 0x8B81;
+    public static final int GL_LINK_STATUS = 0x8B82;
+
+    // Capabilities
+    public static final int GL_CULL_FACE = 0x0B44;
+    public static final int GL_DEPTH_TEST = 0x0B71;
+    public static final int GL_BLEND = 0x0BE2;
+    public static final int GL_SCISSOR_TEST = 0x0C11;
+
+    // Blending
+    public static final int GL_ONE = 1;
+    public static final int GL_SRC_ALPHA = 0x0302;
+    public static final int GL_ONE_MINUS_SRC_ALPHA = 0x0303;
+
+    // Clearing
+    public static final int GL_DEPTH_BUFFER_BIT = 0x00000100;
+    public static final int GL_STENCIL_BUFFER_BIT = 0x00000400;
+    public static final int GL_COLOR_BUFFER_BIT = 0x00004000;
+
+    /**
+     * Returns the size of tightly packed, uncompressed pixel data.
+     *
+     * @param width The width in pixels.
+     * @param height The height in pixels.
+     * @param format The pixel format, e.g. GL_RGBA.
+     * @param type The component type, e.g. GL_UNSIGNED_BYTE.
+     * @return The size in bytes, or 0 for unknown formats and types.
+     */
+    public static int getImageSize(final int width, final int height, final int format, final int type) {
+        final int components;
+        switch(format) {
+            case GL_RGBA: components = 4; break;
+            case GL_RGB: components = 3; break;
+            case GL_RG: components = 2; break;
+            case GL_RED: case GL_ALPHA: case GL_LUMINANCE: components = 1; break;
+            default: return 0;
+        }
+
+        final int componentSize;
+        switch(type) {
+            case GL_UNSIGNED_BYTE: componentSize = 1; break;
+            case GL_UNSIGNED_SHORT: case GL_HALF_FLOAT: componentSize = 2; break;
+            case GL_UNSIGNED_INT: case GL_FLOAT: componentSize = 4; break;
+            default: return 0;
+        }
+
+        return width * height * components * componentSize;
+    }
+
+    /**
+     * Returns the size of renderbuffer storage as commonly allocated by drivers, with 24 bit depth
+     * padded to 32 bits.
+     *
+     * @param width The width in pixels.
+     * @param height The height in pixels.
+     * @param internalFormat The sized format, e.g. GL_DEPTH24_STENCIL8.
+     * @return The size in bytes, or 0 for unknown formats.
+     */
+    public static int getRenderbufferSize(final int width, final int height, final int internalFormat) {
+        final int pixelSize;
+        switch(internalFormat) {
+            case GL_DEPTH_COMPONENT16: pixelSize = 2; break;
+            case GL_DEPTH_COMPONENT24: case GL_DEPTH24_STENCIL8: case GL_RGBA8: pixelSize = 4; break;
+            case GL_RGBA16F: pixelSize = 8; break;
+            default: return 0;
+        }
+
+        return width * height * pixelSize;
+    }
+}
@@ -0,0 +1,242 @@
+package com.tembins.tagdk.graphics.backend;
+
+import com.tembins.tagdk.graphics.util.ErrorCheckLevel;
+import com.tembins.tagdk.graphics.util.OpenGLError;
+
+import java.nio.Buffer;
+
+/**
+ * The graphics API used by the loading tasks and the renderer. The methods mirror the OpenGL ES 3.0
+ * functions of the same name and take the constants of GLConstants. Objects are created one at a
+ * time and identified by their OpenGL name. Besides the OpenGL ES implementation, a recording
+ * implementation allows running graphics code without a GPU, e.g. to check the amount of calls
+ * and uploaded bytes in tests.
+ */
+public interface GraphicsBackend {
+
+    // Buffers
+
+    int createBuffer();
+
+    void deleteBuffer(final int buffer);
+
+    void bindBuffer(final int target, final int buffer);
+
+    /**
+     * Allocates the storage of the bound buffer and fills it with the given data.
+     *
+     * @param target The binding target, e.g. GL_ARRAY_BUFFER.
+     * @param sizeBytes The size of the storage in bytes.
+     * @param data The data to copy into the storage starting at its position, or null.
+     * @param usage The usage hint, e.g. GL_STATIC_DRAW.
+     */
+    void bufferData(final int target, final int sizeBytes, final Buffer data, final int usage);
+
+    void bufferSubData(final int target, final int offsetBytes, final int sizeBytes, final Buffer data);
+
+    // Vertex arrays
+
+    int createVertexArray();
+
+    void deleteVertexArray(final int vertexArray);
+
+    void bindVertexArray(final int vertexArray);
+
+    void enableVertexAttribArray(final int index);
+
+    void vertexAttribPointer(final int index, final int size, final int type, final boolean normalized,
+                             final int strideBytes, final int offsetBytes);
+
+    void vertexAttribDivisor(final int index, final int divisor);
+
+    // Textures
+
+    int createTexture();
+
+    void deleteTexture(final int texture);
+
+    void activeTexture(final int unit);
+
+    void bindTexture(final int target, final int texture);
+
+    void texParameteri(final int target, final int parameter, final int value);
+
+    /**
+     * Specifies one mip level of the bound texture.
+     *
+     * @param target The binding target, e.g. GL_TEXTURE_2D.
+     * @param level The mip level.
+     * @param internalFormat The format of the texture storage, e.g. GL_RGBA.
+     * @param width The width in pixels.
+     * @param height The height in pixels.
+     * @param format The format of the pixel data, e.g. GL_RGBA.
+     * @param type The type of the pixel data, e.g. GL_UNSIGNED_BYTE.
+     * @param pixels The tightly packed pixel data, or null to only allocate the level.
+     */
+    void texImage2D(final int target, final int level, final int internalFormat, final int width, final int height,
+                    final int format, final int type, final Buffer pixels);
+
+    void texSubImage2D(final int target, final int level, final int x, final int y, final int width, final int height,
+                       final int format, final int type, final Buffer pixels);
+
+    void generateMipmap(final int target);
+
+    // Framebuffers
+
+    int createFramebuffer();
+
+    void deleteFramebuffer(final int framebuffer);
+
+    /**
+     * Binds a framebuffer, 0 being the default framebuffer of the surface.
+     *
+     * @param target The binding target, GL_FRAMEBUFFER binding for both drawing and reading.
+     * @param framebuffer The framebuffer.
+     */
+    void bindFramebuffer(final int target, final int framebuffer);
+
+    void framebufferTexture2D(final int target, final int attachment, final int textureTarget, final int texture,
+                              final int level);
+
+    void framebufferRenderbuffer(final int target, final int attachment, final int renderbufferTarget,
+                                 final int renderbuffer);
+
+    int checkFramebufferStatus(final int target);
+
+    /**
+     * Copies a rectangle from the bound read framebuffer into the bound draw framebuffer, scaling
+     * it if the sizes differ.
+     *
+     * @param mask The buffers to copy, e.g. GL_COLOR_BUFFER_BIT.
+     * @param filter The filter used for scaling, GL_NEAREST or GL_LINEAR (color only).
+     */
+    void blitFramebuffer(final int sourceX0, final int sourceY0, final int sourceX1, final int sourceY1,
+                         final int destinationX0, final int destinationY0, final int destinationX1,
+                         final int destinationY1, final int mask, final int filter);
+
+    /**
+     * Tells the driver that the content of attachments of the bound framebuffer is no longer
+     * needed, so tiled GPUs neither load it into nor store it from tile memory.
+     *
+     * @param target The binding target, e.g. GL_FRAMEBUFFER.
+     * @param count The amount of attachments.
+     * @param attachments The attachment points, e.g. GL_DEPTH_ATTACHMENT.
+     * @param offset The index of the first attachment point.
+     */
+    void invalidateFramebuffer(final int target, final int count, final int[] attachments, final int offset);
+
+    int createRenderbuffer();
+
+    void deleteRenderbuffer(final int renderbuffer);
+
+    void bindRenderbuffer(final int target, final int renderbuffer);
+
+    void renderbufferStorage(final int target, final int internalFormat, final int width, final int height);
+
+    // Shaders
+
+    int createShader(final int type);
+
+    void shaderSource(final int shader, final String source);
+
+    void compileShader(final int shader);
+
+    int getShaderi(final int shader, final int parameter);
+
+    String getShaderInfoLog(final int shader);
+
+    void deleteShader(final int shader);
+
+    int createProgram();
+
+    void attachShader(final int program, final int shader);
+
+    void detachShader(final int program, final int shader);
+
+    void linkProgram(final int program);
+
+    int getProgrami(final int program, final int parameter);
+
+    String getProgramInfoLog(final int program);
+
+    void deleteProgram(final int program);
+
+    void useProgram(final int program);
+
+    int getUniformLocation(final int program, final String name);
+
+    void uniform1i(final int location, final int value);
+
+    void uniform1f(final int location, final float value);
+
+    void uniform4f(final int location, final float x, final float y, final float z, final float w);
+
+    /**
+     * Sets a vec4 uniform array.
+     *
+     * @param location The uniform location.
+     * @param count The amount of vectors.
+     * @param values The vectors, four consecutive floats each.
+     * @param offset The index of the first value.
+     */
+    void uniform4fv(final int location, final int count, final float[] values, final int offset);
+
+    /**
+     * Sets a mat4 uniform or uniform array.
+     *
+     * @param location The uniform location.
+     * @param count The amount of matrices.
+     * @param values The matrices in row-major order, as written by Matrix4f.store(float[], int).
+     * @param offset The index of the first value.
+     */
+    void uniformMatrix4fv(final int location, final int count, final float[] values, final int offset);
+
+    // State
+
+    void enable(final int capability);
+
+    void disable(final int capability);
+
+    void blendFunc(final int sourceFactor, final int destinationFactor);
+
+    void depthMask(final boolean enabled);
+
+    void viewport(final int x, final int y, final int width, final int height);
+
+    void clearColor(final float red, final float green, final float blue, final float alpha);
+
+    void clear(final int mask);
+
+    // Drawing
+
+    void drawArrays(final int mode, final int first, final int count);
+
+    void drawElements(final int mode, final int count, final int type, final int offsetBytes);
+
+    void drawElementsInstanced(final int mode, final int count, final int type, final int offsetBytes,
+                               final int instanceCount);
+
+    // Errors
+
+    /**
+     * Returns the oldest OpenGL error if checks of the given level are performed by this backend.
+     *
+     * @param level The level of the check.
+     * @return The oldest OpenGL error, or null if none exists or the check is not performed.
+     */
+    OpenGLError checkError(final ErrorCheckLevel level);
+
+    /**
+     * Clears all still existing OpenGL errors if checks of the given level are performed.
+     *
+     * @param level The level of the check.
+     */
+    void clearErrors(final ErrorCheckLevel level);
+
+    // Statistics
+
+    /**
+     * Called by the loading tasks once for every resource loaded successfully with this backend.
+     */
+    void countLoadedResource();
+}
@@ -0,0 +1,627 @@
+package com.tembins.tagdk.graphics.backend;
+
+import com.tembins.tagdk.graphics.util.ErrorCheckLevel;
+import com.tembins.tagdk.graphics.util.OpenGLError;
+
+import java.nio.Buffer;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.HashMap;
+
+/**
+ * A headless GraphicsBackend which executes nothing, but counts calls, state changes and uploaded
+ * bytes. It tracks the bound objects and pipeline state, so redundant binds and state changes are
+ * counted separately. Tests can run loading tasks or whole frames against it and check budgets:
+ *
+ * <pre>
+ * final RecordingBackend graphics = new RecordingBackend();
+ * loadLevel(resources, graphics);
+ * graphics.assertTotalBudget(RecordingBackend.Counter.UPLOADED_BYTES, 16 * 1024 * 1024);
+ * graphics.assertTotalBudget(RecordingBackend.Counter.BINDS, 500);
+ * </pre>
+ *
+ * Shader compilation and program linking always succeed. OpenGL errors can be simulated with
+ * raiseError(int), error checks are gated by setErrorCheckLevel like on a real device.
+ */
+public final class RecordingBackend implements GraphicsBackend {
+
+    /**
+     * The counted events.
+     */
+    public enum Counter {
+        /** Every call of a backend method. */
+        CALLS,
+        /** Every draw call, instanced draws count once. */
+        DRAW_CALLS,
+        /** Every bind of a buffer, vertex array, texture, framebuffer, renderbuffer or program, including redundant ones. */
+        BINDS,
+        /** Every bind or state change which did not change the current state. */
+        REDUNDANT_CALLS,
+        /** Every bind or state change which did change the current state. */
+        STATE_CHANGES,
+        /** The bytes passed to buffer and texture uploads. */
+        UPLOADED_BYTES,
+        /** Every created buffer, vertex array, texture, framebuffer, renderbuffer, shader and program. */
+        CREATED_OBJECTS,
+        /** Every framebuffer attachment whose content was invalidated. */
+        INVALIDATED_ATTACHMENTS,
+        /** Every resource loaded successfully by a loading task. */
+        LOADED_RESOURCES
+    }
+
+    private static final int COUNTER_COUNT = Counter.values().length;
+
+    // Slots of state not identified by an OpenGL enum, which are all positive
+    private static final int VERTEX_ARRAY_SLOT = -1;
+    private static final int PROGRAM_SLOT = -2;
+    private static final int ACTIVE_TEXTURE_SLOT = -3;
+    private static final int BLEND_FUNC_SLOT = -4;
+    private static final int DEPTH_MASK_SLOT = -5;
+    private static final int VIEWPORT_POSITION_SLOT = -6;
+    private static final int VIEWPORT_SIZE_SLOT = -7;
+    private static final int TEXTURE_UNIT_SHIFT = 20;
+
+    private final long[] frameCounts = new long[COUNTER_COUNT];
+    private final long[] totalCounts = new long[COUNTER_COUNT];
+    private long frameNumber;
+
+    private final HashMap<Integer, Long> state = new HashMap<>();
+    private final HashMap<Integer, Long> bufferSizes = new HashMap<>();
+    private final HashMap<Long, Long> textureLevelSizes = new HashMap<>();
+    private final HashMap<Integer, Long> renderbufferSizes = new HashMap<>();
+    private final HashMap<String, Integer> uniformLocations = new HashMap<>();
+    private final ArrayDeque<Integer> errors = new ArrayDeque<>();
+    private ErrorCheckLevel errorCheckLevel = ErrorCheckLevel.LOAD_ONLY;
+    private long allocatedBytes;
+    private int nextName = 1;
+
+    /**
+     * Starts a new frame, resetting the frame counters.
+     */
+    public void beginFrame() {
+        Arrays.fill(frameCounts, 0L);
+        frameNumber++;
+    }
+
+    /**
+     * Returns the number of the current frame, counting the calls of beginFrame().
+     *
+     * @return The frame number.
+     */
+    public long getFrameNumber() {
+        return frameNumber;
+    }
+
+    /**
+     * Returns a counter of the current frame.
+     *
+     * @param counter The counter.
+     * @return The count since the last call of beginFrame().
+     */
+    public long getFrameCount(final Counter counter) {
+        return frameCounts[counter.ordinal()];
+    }
+
+    /**
+     * Returns a counter since the creation of this backend or the last reset.
+     *
+     * @param counter The counter.
+     * @return The total count.
+     */
+    public long getTotalCount(final Counter counter) {
+        return totalCounts[counter.ordinal()];
+    }
+
+    /**
+     * Returns the bytes of buffer and texture storage currently allocated.
+     *
+     * @return The allocated bytes.
+     */
+    public long getAllocatedBytes() {
+        return allocatedBytes;
+    }
+
+    /**
+     * Resets all counters. The tracked state and allocations are kept.
+     */
+    public void resetCounters() {
+        Arrays.fill(frameCounts, 0L);
+        Arrays.fill(totalCounts, 0L);
+    }
+
+    /**
+     * Throws an AssertionError if a counter of the current frame exceeds the given budget.
+     *
+     * @param counter The counter to check.
+     * @param budget The largest allowed count.
+     */
+    public void assertFrameBudget(final Counter counter, final long budget) {
+        final long count = getFrameCount(counter);
+        if(count > budget)
+            throw new AssertionError(counter.name() + " of frame " + frameNumber + " is " + count + ", budget is " + budget);
+    }
+
+    /**
+     * Throws an AssertionError if a total counter exceeds the given budget.
+     *
+     * @param counter The counter to check.
+     * @param budget The largest allowed count.
+     */
+    public void assertTotalBudget(final Counter counter, final long budget) {
+        final long count = getTotalCount(counter);
+        if(count > budget)
+            throw new AssertionError(counter.name() + " is " + count + " in total, budget is " + budget);
+    }
+
+    /**
+     * Queues an OpenGL error, which will be returned by the next error check.
+     *
+     * @param errorCode The error code, e.g. GL_INVALID_OPERATION.
+     */
+    public void raiseError(final int errorCode) {
+        errors.add(errorCode);
+    }
+
+    /**
+     * Sets which error checks are performed, LOAD_ONLY by default.
+     *
+     * @param level The new error check level.
+     */
+    public void setErrorCheckLevel(final ErrorCheckLevel level) {
+        errorCheckLevel = level;
+    }
+
+    private void count(final Counter counter, final long amount) {
+        frameCounts[counter.ordinal()] += amount;
+        totalCounts[counter.ordinal()] += amount;
+    }
+
+    private void call() {
+        count(Counter.CALLS, 1L);
+    }
+
+    private int create() {
+        call();
+        count(Counter.CREATED_OBJECTS, 1L);
+        return nextName++;
+    }
+
+    private boolean setState(final int slot, final long value) {
+        final Long previous = state.put(slot, value);
+        final boolean changed = previous == null || previous != value;
+        count(changed ? Counter.STATE_CHANGES : Counter.REDUNDANT_CALLS, 1L);
+        return changed;
+    }
+
+    private void bind(final int slot, final int object) {
+        call();
+        count(Counter.BINDS, 1L);
+        setState(slot, object);
+    }
+
+    private long getState(final int slot, final long defaultValue) {
+        final Long value = state.get(slot);
+        return value == null ? defaultValue : value;
+    }
+
+    private void upload(final Buffer data, final long sizeBytes) {
+        if(data != null)
+            count(Counter.UPLOADED_BYTES, sizeBytes);
+    }
+
+    // Buffers
+
+    @Override
+    public int createBuffer() {
+        return create();
+    }
+
+    @Override
+    public void deleteBuffer(final int buffer) {
+        call();
+        final Long size = bufferSizes.remove(buffer);
+        if(size != null)
+            allocatedBytes -= size;
+    }
+
+    @Override
+    public void bindBuffer(final int target, final int buffer) {
+        bind(target, buffer);
+    }
+
+    @Override
+    public void bufferData(final int target, final int sizeBytes, final Buffer data, final int usage) {
+        call();
+        final int buffer = (int) getState(target, 0L);
+        final Long previousSize = bufferSizes.put(buffer, (long) sizeBytes);
+        allocatedBytes += sizeBytes - (previousSize == null ? 0L : previousSize);
+        upload(data, sizeBytes);
+    }
+
+    @Override
+    public void bufferSubData(final int target, final int offsetBytes, final int sizeBytes, final Buffer data) {
+        call();
+        upload(data, sizeBytes);
+    }
+
+    // Vertex arrays
+
+    @Override
+    public int createVertexArray() {
+        return create();
+    }
+
+    @Override
+    public void deleteVertexArray(final int vertexArray) {
+        call();
+    }
+
+    @Override
+    public void bindVertexArray(final int vertexArray) {
+        bind(VERTEX_ARRAY_SLOT, vertexArray);
+        // The element buffer binding belongs to the vertex array, so its state is unknown now
+        state.remove(GLConstants.GL_ELEMENT_ARRAY_BUFFER);
+    }
+
+    @Override
+    public void enableVertexAttribArray(final int index) {
+        call();
+    }
+
+    @Override
+    public void vertexAttribPointer(final int index, final int size, final int type, final boolean normalized,
+                                    final int strideBytes, final int offsetBytes) {
+        call();
+    }
+
+    @Override
+    public void vertexAttribDivisor(final int index, final int divisor) {
+        call();
+    }
+
+    // Textures
+
+    @Override
+    public int createTexture() {
+        return create();
+    }
+
+    @Override
+    public void deleteTexture(final int texture) {
+        call();
+        final Long[] keys = textureLevelSizes.keySet().toArray(new Long[0]);
+        for(final Long key : keys) {
+            if((int) (key >> 32) == texture)
+                allocatedBytes -= textureLevelSizes.remove(key);
+        }
+    }
+
+    @Override
+    public void activeTexture(final int unit) {
+        call();
+        setState(ACTIVE_TEXTURE_SLOT, unit);
+    }
+
+    private int getTextureSlot(final int target) {
+        final int unit = (int) getState(ACTIVE_TEXTURE_SLOT, GLConstants.GL_TEXTURE0) - GLConstants.GL_TEXTURE0;
+        return target + ((unit + 1) << TEXTURE_UNIT_SHIFT);
+    }
+
+    @Override
+    public void bindTexture(final int target, final int texture) {
+        bind(getTextureSlot(target), texture);
+    }
+
+    @Override
+    public void texParameteri(final int target, final int parameter, final int value) {
+        call();
+    }
+
+    @Override
+    public void texImage2D(final int target, final int level, final int internalFormat, final int width, final int height,
+                           final int format, final int type, final Buffer pixels) {
+        call();
+        final long size = GLConstants.getImageSize(width, height, format, type);
+        final long texture = getState(getTextureSlot(target), 0L);
+        final Long previousSize = textureLevelSizes.put((texture << 32) | level, size);
+        allocatedBytes += size - (previousSize == null ? 0L : previousSize);
+        upload(pixels, size);
+    }
+
+    @Override
+    public void texSubImage2D(final int target, final int level, final int x, final int y, final int width, final int height,
+                              final int format, final int type, final Buffer pixels) {
+        call();
+        upload(pixels, GLConstants.getImageSize(width, height, format, type));
+    }
+
+    @Override
+    public void generateMipmap(final int target) {
+        call();
+    }
+
+    // Framebuffers
+
+    @Override
+    public int createFramebuffer() {
+        return create();
+    }
+
+    @Override
+    public void deleteFramebuffer(final int framebuffer) {
+        call();
+    }
+
+    @Override
+    public void bindFramebuffer(final int target, final int framebuffer) {
+        if(target == GLConstants.GL_FRAMEBUFFER) {
+            bind(GLConstants.GL_DRAW_FRAMEBUFFER, framebuffer);
+            setState(GLConstants.GL_READ_FRAMEBUFFER, framebuffer);
+        } else {
+            bind(target, framebuffer);
+        }
+    }
+
+    @Override
+    public void framebufferTexture2D(final int target, final int attachment, final int textureTarget,
+                                     final int texture, final int level) {
+        call();
+    }
+
+    @Override
+    public void framebufferRenderbuffer(final int target, final int attachment, final int renderbufferTarget,
+                                        final int renderbuffer) {
+        call();
+    }
+
+    @Override
+    public int checkFramebufferStatus(final int target) {
+        call();
+        return GLConstants.GL_FRAMEBUFFER_COMPLETE;
+    }
+
+    @Override
+    public void blitFramebuffer(final int sourceX0, final int sourceY0, final int sourceX1, final int sourceY1,
+                                final int destinationX0, final int destinationY0, final int destinationX1,
+                                final int destinationY1, final int mask, final int filter) {
+        call();
+        count(Counter.DRAW_CALLS, 1L);
+    }
+
+    @Override
+    public void invalidateFramebuffer(final int target, final int count, final int[] attachments, final int offset) {
+        call();
+        count(Counter.INVALIDATED_ATTACHMENTS, count);
+    }
+
+    @Override
+    public int createRenderbuffer() {
+        return create();
+    }
+
+    @Override
+    public void deleteRenderbuffer(final int renderbuffer) {
+        call();
+        final Long size = renderbufferSizes.remove(renderbuffer);
+        if(size != null)
+            allocatedBytes -= size;
+    }
+
+    @Override
+    public void bindRenderbuffer(final int target, final int renderbuffer) {
+        bind(target, renderbuffer);
+    }
+
+    @Override
+    public void renderbufferStorage(final int target, final int internalFormat, final int width, final int height) {
+        call();
+        final int renderbuffer = (int) getState(target, 0L);
+        final long size = GLConstants.getRenderbufferSize(width, height, internalFormat);
+        final Long previousSize = renderbufferSizes.put(renderbuffer, size);
+        allocatedBytes += size - (previousSize == null ? 0L : previousSize);
+    }
+
+    // Shaders
+
+    @Override
+    public int createShader(final int type) {
+        return create();
+    }
+
+    @Override
+    public void shaderSource(final int shader, final String source) {
+        call();
+    }
+
+    @Override
+    public void compileShader(final int shader) {
+        call();
+    }
+
+    @Override
+    public int getShaderi(final int shader, final int parameter) {
+        call();
+        return parameter == GLConstants.GL_COMPILE_STATUS ? GLConstants.GL_TRUE : 0;
+    }
+
+    @Override
+    public String getShaderInfoLog(final int shader) {
+        call();
+        return "";
+    }
+
+    @Override
+    public void deleteShader(final int shader) {
+        call();
+    }
+
+    @Override
+    public int createProgram() {
+        return create();
+    }
+
+    @Override
+    public void attachShader(final int program, final int shader) {
+        call();
+    }
+
+    @Override
+    public void detachShader(final int program, final int shader) {
+        call();
+    }
+
+    @Override
+    public void linkProgram(final int program) {
+        call();
+    }
+
+    @Override
+    public int getProgrami(final int program, final int parameter) {
+        call();
+        return parameter == GLConstants.GL_LINK_STATUS ? GLConstants.GL_TRUE : 0;
+    }
+
+    @Override
+    public String getProgramInfoLog(final int program) {
+        call();
+        return "";
+    }
+
+    @Override
+    public void deleteProgram(final int program) {
+        call();
+    }
+
+    @Override
+    public void useProgram(final int program) {
+        bind(PROGRAM_SLOT, program);
+    }
+
+    @Override
+    public int getUniformLocation(final int program, final String name) {
+        call();
+        final Integer location = uniformLocations.get(name);
+        if(location != null)
+            return location;
+
+        uniformLocations.put(name, uniformLocations.size());
+        return uniformLocations.size() - 1;
+    }
+
+    @Override
+    public void uniform1i(final int location, final int value) {
+        call();
+    }
+
+    @Override
+    public void uniform1f(final int location, final float value) {
+        call();
+    }
+
+    @Override
+    public void uniform4f(final int location, final float x, final float y, final float z, final float w) {
+        call();
+    }
+
+    @Override
+    public void uniform4fv(final int location, final int count, final float[] values, final int offset) {
+        call();
+    }
+
+    @Override
+    public void uniformMatrix4fv(final int location, final int count, final float[] values, final int offset) {
+        call();
+    }
+
+    // State
+
+    @Override
+    public void enable(final int capability) {
+        call();
+        setState(capability, 1L);
+    }
+
+    @Override
+    public void disable(final int capability) {
+        call();
+        setState(capability, 0L);
+    }
+
+    @Override
+    public void blendFunc(final int sourceFactor, final int destinationFactor) {
+        call();
+        setState(BLEND_FUNC_SLOT, ((long) sourceFactor << 32) | (destinationFactor & 0xFFFFFFFFL));
+    }
+
+    @Override
+    public void depthMask(final boolean enabled) {
+        call();
+        setState(DEPTH_MASK_SLOT, enabled ? 1L : 0L);
+    }
+
+    @Override
+    public void viewport(final int x, final int y, final int width, final int height) {
+        call();
+        final long position = ((long) x << 32) | (y & 0xFFFFFFFFL);
+        final long size = ((long) width << 32) | (height & 0xFFFFFFFFL);
+        final boolean changed = getState(VIEWPORT_POSITION_SLOT, ~position) != position
+                || getState(VIEWPORT_SIZE_SLOT, ~size) != size;
+        state.put(VIEWPORT_POSITION_SLOT, position);
+        state.put(VIEWPORT_SIZE_SLOT, size);
+        count(changed ? Counter.STATE_CHANGES : Counter.REDUNDANT_CALLS, 1L);
+    }
+
+    @Override
+    public void clearColor(final float red, final float green, final float blue, final float alpha) {
+        call();
+    }
+
+    @Override
+    public void clear(final int mask) {
+        call();
+    }
+
+    // Drawing
+
+    @Override
+    public void drawArrays(final int mode, final int first, final int count) {
+        call();
+        count(Counter.DRAW_CALLS, 1L);
+    }
+
+    @Override
+    public void drawElements(final int mode, final int count, final int type, final int offsetBytes) {
+        call();
+        count(Counter.DRAW_CALLS, 1L);
+    }
+
+    @Override
+    public void drawElementsInstanced(final int mode, final int count, final int type, final int offsetBytes,
+                                      final int instanceCount) {
+        call();
+        count(Counter.DRAW_CALLS, 1L);
+    }
+
+    // Errors
+
+    @Override
+    public OpenGLError checkError(final ErrorCheckLevel level) {
+        if(!errorCheckLevel.includes(level) || errors.isEmpty())
+            return null;
+
+        return OpenGLError.of(errors.poll());
+    }
+
+    @Override
+    public void clearErrors(final ErrorCheckLevel level) {
+        if(errorCheckLevel.includes(level))
+            errors.clear();
+    }
+
+    // Statistics
+
+    @Override
+    public void countLoadedResource() {
+        count(Counter.LOADED_RESOURCES, 1L);
+    }
+}
@@ -0,0 +1,232 @@
+package com.tembins.tagdk.graphics.batching;
+
+import java.util.Arrays;
+import java.util.HashMap;
+
+/**
+ * Manages the space of a GPU buffer, handing out ranges of it without touching the buffer itself.
+ * The allocator works in abstract units, e.g. vertices or indices, and picks the free block that
+ * leaves the smallest remainder (best fit). Freed ranges are merged with adjacent free blocks, so
+ * the free list only fragments where ranges are still in use.
+ *
+ * Free blocks are kept in arrays sorted by offset, making allocating and freeing linear in the
+ * amount of free blocks, which is small for the static data this is meant for.
+ */
+public final class GpuHeapAllocator {
+
+    private int capacity;
+    private int[] freeOffsets = new int[16];
+    private int[] freeSizes = new int[16];
+    private int freeCount;
+    private final HashMap<Integer, Integer> allocations = new HashMap<>();
+    private int usedSize;
+
+    /**
+     * Initializes the allocator with the following parameters:
+     *
+     * @param capacity The size of the managed range, starting at offset 0.
+     */
+    public GpuHeapAllocator(final int capacity) {
+        if(capacity < 0)
+            throw new IllegalArgumentException("The capacity must not be negative");
+
+        this.capacity = capacity;
+        if(capacity > 0)
+            insertFreeBlock(0, 0, capacity);
+    }
+
+    /**
+     * Allocates a range without alignment.
+     *
+     * @param size The size of the range.
+     * @return The offset of the range, or -1 if no free block is large enough.
+     */
+    public int allocate(final int size) {
+        return allocate(size, 1);
+    }
+
+    /**
+     * Allocates a range starting at a multiple of the given alignment.
+     *
+     * @param size The size of the range.
+     * @param alignment The alignment of the offset, a power of two.
+     * @return The offset of the range, or -1 if no free block is large enough.
+     */
+    public int allocate(final int size, final int alignment) {
+        if(size <= 0)
+            throw new IllegalArgumentException("Allocations must have a positive size");
+        if(Integer.bitCount(alignment) != 1)
+            throw new IllegalArgumentException("The alignment must be a power of two");
+
+        int best = -1;
+        int bestRemainder = Integer.MAX_VALUE;
+        for(int block = 0; block < freeCount; block++) {
+            final int padding = align(freeOffsets[block], alignment) - freeOffsets[block];
+            final int remainder = freeSizes[block] - padding - size;
+            if(remainder >= 0 && remainder < bestRemainder) {
+                best = block;
+                bestRemainder = remainder;
+                if(remainder == 0)
+                    break;
+            }
+        }
+        if(best < 0)
+            return -1;
+
+        final int blockOffset = freeOffsets[best];
+        final int blockSize = freeSizes[best];
+        final int offset = align(blockOffset, alignment);
+        removeFreeBlock(best);
+
+        // The padding before and the remainder after the range stay free
+        int insertAt = best;
+        if(offset > blockOffset)
+            insertFreeBlock(insertAt++, blockOffset, offset - blockOffset);
+        if(bestRemainder > 0)
+            insertFreeBlock(insertAt, offset + size, blockOffset + blockSize - offset - size);
+
+        allocations.put(offset, size);
+        usedSize += size;
+        return offset;
+    }
+
+    private static int align(final int offset, final int alignment) {
+        return (offset + alignment - 1) & -alignment;
+    }
+
+    /**
+     * Frees a range, merging it with adjacent free blocks.
+     *
+     * @param offset The offset returned by allocate.
+     * @throws IllegalArgumentException If no range was allocated at the offset.
+     */
+    public void free(final int offset) {
+        final Integer size = allocations.remove(offset);
+        if(size == null)
+            throw new IllegalArgumentException("No range is allocated at " + offset);
+
+        usedSize -= size;
+        addFreeRange(offset, size);
+    }
+
+    private void addFreeRange(final int offset, final int size) {
+        int block = 0;
+        while(block < freeCount && freeOffsets[block] < offset)
+            block++;
+
+        final boolean mergePrevious = block > 0 && freeOffsets[block - 1] + freeSizes[block - 1] == offset;
+        final boolean mergeNext = block < freeCount && offset + size == freeOffsets[block];
+        if(mergePrevious && mergeNext) {
+            freeSizes[block - 1] += size + freeSizes[block];
+            removeFreeBlock(block);
+        } else if(mergePrevious) {
+            freeSizes[block - 1] += size;
+        } else if(mergeNext) {
+            freeOffsets[block] = offset;
+            freeSizes[block] += size;
+        } else {
+            insertFreeBlock(block, offset, size);
+        }
+    }
+
+    private void insertFreeBlock(final int block, final int offset, final int size) {
+        if(freeCount == freeOffsets.length) {
+            freeOffsets = Arrays.copyOf(freeOffsets, freeCount * 2);
+            freeSizes = Arrays.copyOf(freeSizes, freeCount * 2);
+        }
+        System.arraycopy(freeOffsets, block, freeOffsets, block + 1, freeCount - block);
+        System.arraycopy(freeSizes, block, freeSizes, block + 1, freeCount - block);
+        freeOffsets[block] = offset;
+        freeSizes[block] = size;
+        freeCount++;
+    }
+
+    private void removeFreeBlock(final int block) {
+        System.arraycopy(freeOffsets, block + 1, freeOffsets, block, freeCount - block - 1);
+        System.arraycopy(freeSizes, block + 1, freeSizes, block, freeCount - block - 1);
+        freeCount--;
+    }
+
+    /**
+     * Extends the managed range, e.g. after reallocating the buffer with a larger size. The new
+     * space is merged with a free block at the old end.
+     *
+     * @param newCapacity The new size of the managed range, not smaller than the current one.
+     */
+    public void grow(final int newCapacity) {
+        if(newCapacity < capacity)
+            throw new IllegalArgumentException("The capacity can not shrink");
+
+        if(newCapacity > capacity)
+            addFreeRange(capacity, newCapacity - capacity);
+        capacity = newCapacity;
+    }
+
+    /**
+     * Returns the size of an allocated range.
+     *
+     * @param offset The offset returned by allocate.
+     * @return The size of the range, or -1 if no range is allocated at the offset.
+     */
+    public int getSize(final int offset) {
+        final Integer size = allocations.get(offset);
+        return size == null ? -1 : size;
+    }
+
+    /**
+     * Returns the size of the managed range.
+     *
+     * @return The capacity.
+     */
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * Returns the summed size of all allocated ranges.
+     *
+     * @return The used size.
+     */
+    public int getUsedSize() {
+        return usedSize;
+    }
+
+    /**
+     * Returns the summed size of all free blocks, including alignment padding.
+     *
+     * @return The free size.
+     */
+    public int getFreeSize() {
+        return capacity - usedSize;
+    }
+
+    /**
+     * Returns the size of the largest free block, the largest unaligned allocation that succeeds.
+     *
+     * @return The largest free block size.
+     */
+    public int getLargestFreeBlock() {
+        int largest = 0;
+        for(int block = 0; block < freeCount; block++)
+            largest = Math.max(largest, freeSizes[block]);
+        return largest;
+    }
+
+    /**
+     * Returns the amount of free blocks, a measure of fragmentation.
+     *
+     * @return The free block count.
+     */
+    public int getFreeBlockCount() {
+        return freeCount;
+    }
+
+    /**
+     * Returns the amount of allocated ranges.
+     *
+     * @return The allocation count.
+     */
+    public int getAllocationCount() {
+        return allocations.size();
+    }
+}
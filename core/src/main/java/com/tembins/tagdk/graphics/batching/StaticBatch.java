@@ -0,0 +1,314 @@
+package com.tembins.tagdk.graphics.batching;
+
+import com.tembins.tagdk.graphics.backend.GLConstants;
+import com.tembins.tagdk.graphics.backend.GraphicsBackend;
+import com.tembins.tagdk.graphics.resource.mesh.MeshData;
+import com.tembins.tagdk.math.Matrix4f;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.util.Arrays;
+
+/**
+ * Merges static meshes sharing a material into one vertex and one index buffer behind a single
+ * VAO. Meshes are transformed into world space when added, and their indices are rebased onto
+ * their vertex range and stored as 32 bit values, so no base vertex draw call is needed. Objects
+ * whose index ranges are adjacent are drawn with a single drawElements call.
+ *
+ * The space in both buffers is managed by GpuHeapAllocators, so objects can be removed and their
+ * space reused. Vertices are interleaved as position, texture coordinates and normal, using the
+ * attribute locations 0, 1 and 2 like meshes loaded by MeshLoadingTask.
+ */
+public final class StaticBatch {
+
+    public static final int FLOATS_PER_VERTEX = 8;
+    public static final int VERTEX_STRIDE = FLOATS_PER_VERTEX * 4;
+    private static final int INDEX_SIZE = 4;
+
+    private final GraphicsBackend graphics;
+    private final int vertexArray, vertexBuffer, indexBuffer;
+    private final GpuHeapAllocator vertexHeap, indexHeap;
+
+    private int[] vertexOffsets = new int[16], indexOffsets = new int[16], indexCounts = new int[16];
+    private int[] freeHandles = new int[16];
+    private int handleCount, freeHandleCount;
+
+    private long[] ranges = new long[16];
+    private int[] runOffsets = new int[16], runCounts = new int[16];
+    private int runCount;
+    private boolean runsDirty;
+
+    /**
+     * Creates the buffers of the batch with the following parameters:
+     *
+     * @param graphics The backend creating and drawing the buffers.
+     * @param vertexCapacity The amount of vertices the batch can hold.
+     * @param indexCapacity The amount of indices the batch can hold.
+     */
+    public StaticBatch(final GraphicsBackend graphics, final int vertexCapacity, final int indexCapacity) {
+        this.graphics = graphics;
+        vertexHeap = new GpuHeapAllocator(vertexCapacity);
+        indexHeap = new GpuHeapAllocator(indexCapacity);
+
+        vertexArray = graphics.createVertexArray();
+        graphics.bindVertexArray(vertexArray);
+
+        vertexBuffer = graphics.createBuffer();
+        graphics.bindBuffer(GLConstants.GL_ARRAY_BUFFER, vertexBuffer);
+        graphics.bufferData(GLConstants.GL_ARRAY_BUFFER, vertexCapacity * VERTEX_STRIDE, null, GLConstants.GL_STATIC_DRAW);
+        graphics.enableVertexAttribArray(0);
+        graphics.vertexAttribPointer(0, MeshData.POSITION_SIZE, GLConstants.GL_FLOAT, false, VERTEX_STRIDE, 0);
+        graphics.enableVertexAttribArray(1);
+        graphics.vertexAttribPointer(1, MeshData.TEXTURE_COORDINATE_SIZE, GLConstants.GL_FLOAT, false, VERTEX_STRIDE, 12);
+        graphics.enableVertexAttribArray(2);
+        graphics.vertexAttribPointer(2, MeshData.NORMAL_SIZE, GLConstants.GL_FLOAT, false, VERTEX_STRIDE, 20);
+
+        // The element buffer binding is part of the VAO state, so it has to be bound in here
+        indexBuffer = graphics.createBuffer();
+        graphics.bindBuffer(GLConstants.GL_ELEMENT_ARRAY_BUFFER, indexBuffer);
+        graphics.bufferData(GLConstants.GL_ELEMENT_ARRAY_BUFFER, indexCapacity * INDEX_SIZE, null,
+                GLConstants.GL_STATIC_DRAW);
+
+        graphics.bindVertexArray(0);
+    }
+
+    /**
+     * Adds a mesh to the batch, transforming its positions and normals into world space. Mirroring
+     * transforms have their triangle winding reversed, so front faces stay front faces.
+     *
+     * @param mesh The mesh to add.
+     * @param transform The model matrix of the object.
+     * @return The handle of the object, or -1 if the batch has no room for it.
+     */
+    public int add(final MeshData mesh, final Matrix4f transform) {
+        final int vertexCount = mesh.getVertexCount();
+        final int indexCount = mesh.indices.length;
+        if(vertexCount == 0 || indexCount == 0)
+            throw new IllegalArgumentException("Empty meshes can not be batched");
+
+        final int vertexOffset = vertexHeap.allocate(vertexCount);
+        if(vertexOffset < 0)
+            return -1;
+
+        final int indexOffset = indexHeap.allocate(indexCount);
+        if(indexOffset < 0) {
+            vertexHeap.free(vertexOffset);
+            return -1;
+        }
+
+        final boolean mirrored = uploadVertices(mesh, transform, vertexOffset);
+        uploadIndices(mesh.indices, vertexOffset, indexOffset, mirrored);
+
+        final int handle = createHandle();
+        vertexOffsets[handle] = vertexOffset;
+        indexOffsets[handle] = indexOffset;
+        indexCounts[handle] = indexCount;
+        runsDirty = true;
+        return handle;
+    }
+
+    private boolean uploadVertices(final MeshData mesh, final Matrix4f m, final int vertexOffset) {
+        // The cofactor matrix of the upper 3x3 is the inverse transpose scaled by the determinant,
+        // which keeps normals perpendicular under non uniform scaling
+        final float c00 = m.v11 * m.v22 - m.v12 * m.v21, c01 = m.v12 * m.v20 - m.v10 * m.v22;
+        final float c02 = m.v10 * m.v21 - m.v11 * m.v20, c10 = m.v02 * m.v21 - m.v01 * m.v22;
+        final float c11 = m.v00 * m.v22 - m.v02 * m.v20, c12 = m.v01 * m.v20 - m.v00 * m.v21;
+        final float c20 = m.v01 * m.v12 - m.v02 * m.v11, c21 = m.v02 * m.v10 - m.v00 * m.v12;
+        final float c22 = m.v00 * m.v11 - m.v01 * m.v10;
+        final float determinant = m.v00 * c00 + m.v01 * c01 + m.v02 * c02;
+        final float normalSign = determinant < 0.0f ? -1.0f : 1.0f;
+
+        final int vertexCount = mesh.getVertexCount();
+        final FloatBuffer vertices = ByteBuffer.allocateDirect(vertexCount * VERTEX_STRIDE)
+                .order(ByteOrder.nativeOrder()).asFloatBuffer();
+        for(int vertex = 0; vertex < vertexCount; vertex++) {
+            final float x = mesh.positions[vertex * 3], y = mesh.positions[vertex * 3 + 1];
+            final float z = mesh.positions[vertex * 3 + 2];
+            vertices.put(m.v00 * x + m.v01 * y + m.v02 * z + m.v03);
+            vertices.put(m.v10 * x + m.v11 * y + m.v12 * z + m.v13);
+            vertices.put(m.v20 * x + m.v21 * y + m.v22 * z + m.v23);
+
+            vertices.put(mesh.textureCoordinates[vertex * 2]);
+            vertices.put(mesh.textureCoordinates[vertex * 2 + 1]);
+
+            final float nx = mesh.normals[vertex * 3], ny = mesh.normals[vertex * 3 + 1];
+            final float nz = mesh.normals[vertex * 3 + 2];
+            final float tx = c00 * nx + c01 * ny + c02 * nz;
+            final float ty = c10 * nx + c11 * ny + c12 * nz;
+            final float tz = c20 * nx + c21 * ny + c22 * nz;
+            final float length = (float) Math.sqrt(tx * tx + ty * ty + tz * tz);
+            final float scale = length > 0.0f ? normalSign / length : 0.0f;
+            vertices.put(tx * scale).put(ty * scale).put(tz * scale);
+        }
+        vertices.flip();
+
+        graphics.bindBuffer(GLConstants.GL_ARRAY_BUFFER, vertexBuffer);
+        graphics.bufferSubData(GLConstants.GL_ARRAY_BUFFER, vertexOffset * VERTEX_STRIDE, vertexCount * VERTEX_STRIDE,
+                vertices);
+        return determinant < 0.0f;
+    }
+
+    private void uploadIndices(final short[] indices, final int vertexOffset, final int indexOffset,
+                               final boolean mirrored) {
+        final IntBuffer rebased = ByteBuffer.allocateDirect(indices.length * INDEX_SIZE)
+                .order(ByteOrder.nativeOrder()).asIntBuffer();
+        for(int triangle = 0; triangle + 2 < indices.length; triangle += 3) {
+            rebased.put((indices[triangle] & 0xFFFF) + vertexOffset);
+            rebased.put((indices[triangle + (mirrored ? 2 : 1)] & 0xFFFF) + vertexOffset);
+            rebased.put((indices[triangle + (mirrored ? 1 : 2)] & 0xFFFF) + vertexOffset);
+        }
+        rebased.flip();
+
+        graphics.bindVertexArray(vertexArray);
+        graphics.bufferSubData(GLConstants.GL_ELEMENT_ARRAY_BUFFER, indexOffset * INDEX_SIZE,
+                rebased.remaining() * INDEX_SIZE, rebased);
+        graphics.bindVertexArray(0);
+    }
+
+    private int createHandle() {
+        if(freeHandleCount > 0)
+            return freeHandles[--freeHandleCount];
+
+        if(handleCount == vertexOffsets.length) {
+            vertexOffsets = Arrays.copyOf(vertexOffsets, handleCount * 2);
+            indexOffsets = Arrays.copyOf(indexOffsets, handleCount * 2);
+            indexCounts = Arrays.copyOf(indexCounts, handleCount * 2);
+        }
+        return handleCount++;
+    }
+
+    /**
+     * Removes an object, freeing its space in the buffers for later additions.
+     *
+     * @param handle The handle returned by add.
+     */
+    public void remove(final int handle) {
+        if(handle < 0 || handle >= handleCount || indexCounts[handle] == 0)
+            throw new IllegalArgumentException("Object " + handle + " is not part of the batch");
+
+        vertexHeap.free(vertexOffsets[handle]);
+        indexHeap.free(indexOffsets[handle]);
+        indexCounts[handle] = 0;
+
+        if(freeHandleCount == freeHandles.length)
+            freeHandles = Arrays.copyOf(freeHandles, freeHandleCount * 2);
+        freeHandles[freeHandleCount++] = handle;
+        runsDirty = true;
+    }
+
+    /**
+     * Draws all objects of the batch. The material has to be bound before.
+     *
+     * @return The amount of draw calls issued.
+     */
+    public int draw() {
+        if(runsDirty) {
+            int rangeCount = 0;
+            for(int handle = 0; handle < handleCount; handle++)
+                if(indexCounts[handle] > 0)
+                    rangeCount = addRange(rangeCount, handle);
+
+            runCount = mergeRanges(rangeCount);
+            runsDirty = false;
+        }
+        return drawRuns(runCount);
+    }
+
+    /**
+     * Draws a subset of the objects, e.g. the visible ones. The material has to be bound before.
+     *
+     * @param handles The handles of the objects to draw, in any order.
+     * @param count The amount of handles to use.
+     * @return The amount of draw calls issued.
+     */
+    public int draw(final int[] handles, final int count) {
+        int rangeCount = 0;
+        for(int index = 0; index < count; index++)
+            rangeCount = addRange(rangeCount, handles[index]);
+
+        // The cached runs of draw() are overwritten by the subset
+        runsDirty = true;
+        return drawRuns(mergeRanges(rangeCount));
+    }
+
+    private int addRange(final int rangeCount, final int handle) {
+        if(rangeCount == ranges.length)
+            ranges = Arrays.copyOf(ranges, rangeCount * 2);
+
+        ranges[rangeCount] = (long) indexOffsets[handle] << 32 | indexCounts[handle];
+        return rangeCount + 1;
+    }
+
+    /**
+     * Sorts the collected index ranges and merges adjacent ones into runs.
+     */
+    private int mergeRanges(final int rangeCount) {
+        Arrays.sort(ranges, 0, rangeCount);
+        int count = 0;
+        for(int range = 0; range < rangeCount; range++) {
+            final int offset = (int) (ranges[range] >>> 32), indexCount = (int) ranges[range];
+            if(count > 0 && runOffsets[count - 1] + runCounts[count - 1] == offset) {
+                runCounts[count - 1] += indexCount;
+                continue;
+            }
+
+            if(count == runOffsets.length) {
+                runOffsets = Arrays.copyOf(runOffsets, count * 2);
+                runCounts = Arrays.copyOf(runCounts, count * 2);
+            }
+            runOffsets[count] = offset;
+            runCounts[count] = indexCount;
+            count++;
+        }
+        return count;
+    }
+
+    private int drawRuns(final int count) {
+        if(count == 0)
+            return 0;
+
+        graphics.bindVertexArray(vertexArray);
+        for(int run = 0; run < count; run++)
+            graphics.drawElements(GLConstants.GL_TRIANGLES, runCounts[run], GLConstants.GL_UNSIGNED_INT,
+                    runOffsets[run] * INDEX_SIZE);
+        return count;
+    }
+
+    /**
+     * Deletes the buffers and the VAO of the batch.
+     */
+    public void release() {
+        graphics.deleteVertexArray(vertexArray);
+        graphics.deleteBuffer(vertexBuffer);
+        graphics.deleteBuffer(indexBuffer);
+    }
+
+    /**
+     * Returns the allocator of the vertex buffer, in vertices.
+     *
+     * @return The vertex allocator.
+     */
+    public GpuHeapAllocator getVertexHeap() {
+        return vertexHeap;
+    }
+
+    /**
+     * Returns the allocator of the index buffer, in indices.
+     *
+     * @return The index allocator.
+     */
+    public GpuHeapAllocator getIndexHeap() {
+        return indexHeap;
+    }
+
+    /**
+     * Returns the amount of objects in the batch.
+     *
+     * @return The object count.
+     */
+    public int getObjectCount() {
+        return handleCount - freeHandleCount;
+    }
+}
@@ -0,0 +1,155 @@
+package com.tembins.tagdk.graphics.batching;
+
+import com.tembins.tagdk.graphics.backend.GraphicsBackend;
+import com.tembins.tagdk.graphics.resource.mesh.MeshData;
+import com.tembins.tagdk.math.Matrix4f;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+
+/**
+ * Groups static objects by material into StaticBatches, so each material needs only one or a few
+ * draw calls no matter how many objects use it. A new batch is created whenever the existing
+ * batches of a material are full.
+ */
+public final class StaticBatcher {
+
+    public static final int DEFAULT_VERTEX_CAPACITY = 65536;
+    public static final int DEFAULT_INDEX_CAPACITY = 196608;
+
+    private final GraphicsBackend graphics;
+    private final int vertexCapacity, indexCapacity;
+    private final HashMap<Integer, ArrayList<StaticBatch>> batches = new HashMap<>();
+
+    private StaticBatch[] objectBatches = new StaticBatch[16];
+    private int[] objectHandles = new int[16];
+    private int[] freeObjects = new int[16];
+    private int objectCount, freeObjectCount;
+
+    /**
+     * Creates a batcher with the default batch capacities.
+     *
+     * @param graphics The backend creating and drawing the batches.
+     */
+    public StaticBatcher(final GraphicsBackend graphics) {
+        this(graphics, DEFAULT_VERTEX_CAPACITY, DEFAULT_INDEX_CAPACITY);
+    }
+
+    /**
+     * Creates a batcher with the following parameters:
+     *
+     * @param graphics The backend creating and drawing the batches.
+     * @param vertexCapacity The amount of vertices each batch can hold.
+     * @param indexCapacity The amount of indices each batch can hold.
+     */
+    public StaticBatcher(final GraphicsBackend graphics, final int vertexCapacity, final int indexCapacity) {
+        this.graphics = graphics;
+        this.vertexCapacity = vertexCapacity;
+        this.indexCapacity = indexCapacity;
+    }
+
+    /**
+     * Adds a static object, creating a new batch for its material if the existing ones are full.
+     *
+     * @param materialID The material the object is drawn with.
+     * @param mesh The mesh of the object.
+     * @param transform The model matrix of the object.
+     * @return The handle of the object.
+     */
+    public int add(final int materialID, final MeshData mesh, final Matrix4f transform) {
+        ArrayList<StaticBatch> materialBatches = batches.get(materialID);
+        if(materialBatches == null) {
+            materialBatches = new ArrayList<>();
+            batches.put(materialID, materialBatches);
+        }
+
+        for(int index = 0; index < materialBatches.size(); index++) {
+            final StaticBatch batch = materialBatches.get(index);
+            final int handle = batch.add(mesh, transform);
+            if(handle >= 0)
+                return createObject(batch, handle);
+        }
+
+        // Meshes larger than a whole batch get a batch of their own size
+        final StaticBatch batch = new StaticBatch(graphics, Math.max(vertexCapacity, mesh.getVertexCount()),
+                Math.max(indexCapacity, mesh.indices.length));
+        materialBatches.add(batch);
+        return createObject(batch, batch.add(mesh, transform));
+    }
+
+    private int createObject(final StaticBatch batch, final int handle) {
+        final int object;
+        if(freeObjectCount > 0) {
+            object = freeObjects[--freeObjectCount];
+        } else {
+            if(objectCount == objectHandles.length) {
+                objectBatches = Arrays.copyOf(objectBatches, objectCount * 2);
+                objectHandles = Arrays.copyOf(objectHandles, objectCount * 2);
+            }
+            object = objectCount++;
+        }
+
+        objectBatches[object] = batch;
+        objectHandles[object] = handle;
+        return object;
+    }
+
+    /**
+     * Removes a static object. Empty batches are kept, so their buffers can be reused.
+     *
+     * @param object The handle returned by add.
+     */
+    public void remove(final int object) {
+        if(object < 0 || object >= objectCount || objectBatches[object] == null)
+            throw new IllegalArgumentException("Object " + object + " is not batched");
+
+        objectBatches[object].remove(objectHandles[object]);
+        objectBatches[object] = null;
+
+        if(freeObjectCount == freeObjects.length)
+            freeObjects = Arrays.copyOf(freeObjects, freeObjectCount * 2);
+        freeObjects[freeObjectCount++] = object;
+    }
+
+    /**
+     * Draws all objects of a material. The material has to be bound before.
+     *
+     * @param materialID The material to draw.
+     * @return The amount of draw calls issued.
+     */
+    public int draw(final int materialID) {
+        final ArrayList<StaticBatch> materialBatches = batches.get(materialID);
+        if(materialBatches == null)
+            return 0;
+
+        int drawCalls = 0;
+        for(int index = 0; index < materialBatches.size(); index++)
+            drawCalls += materialBatches.get(index).draw();
+        return drawCalls;
+    }
+
+    /**
+     * Returns the amount of batches created for a material.
+     *
+     * @param materialID The material.
+     * @return The batch count.
+     */
+    public int getBatchCount(final int materialID) {
+        final ArrayList<StaticBatch> materialBatches = batches.get(materialID);
+        return materialBatches == null ? 0 : materialBatches.size();
+    }
+
+    /**
+     * Deletes the buffers of all batches.
+     */
+    public void release() {
+        for(final ArrayList<StaticBatch> materialBatches : batches.values())
+            for(final StaticBatch batch : materialBatches)
+                batch.release();
+        batches.clear();
+        Arrays.fill(objectBatches, null);
+        objectCount = 0;
+        freeObjectCount = 0;
+    }
+}
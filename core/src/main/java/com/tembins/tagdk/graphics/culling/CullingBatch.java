@@ -0,0 +1,186 @@
+package com.tembins.tagdk.graphics.culling;
+
+import com.tembins.tagdk.math.BoundingBox;
+
+import java.util.Arrays;
+
+/**
+ * Stores the world space bounds of many objects as a structure of float arrays and culls them
+ * against a frustum in a single pass. Every object is stored as the center and the extents (half
+ * sizes) of its axis aligned bounding box, plus the radius of the sphere around that box, which
+ * is used for a cheaper first rejection test.
+ */
+public final class CullingBatch {
+
+    float[] centerX, centerY, centerZ;
+    float[] extentX, extentY, extentZ;
+    private float[] radius;
+    private int size;
+
+    /**
+     * Initializes the batch with the given capacity. The batch grows if more objects are added.
+     *
+     * @param initialCapacity The amount of objects to reserve memory for.
+     */
+    public CullingBatch(final int initialCapacity) {
+        final int capacity = Math.max(1, initialCapacity);
+        centerX = new float[capacity];
+        centerY = new float[capacity];
+        centerZ = new float[capacity];
+        extentX = new float[capacity];
+        extentY = new float[capacity];
+        extentZ = new float[capacity];
+        radius = new float[capacity];
+    }
+
+    /**
+     * Adds an object with the given world space bounds.
+     *
+     * @param minX The smallest x coordinate of the bounds.
+     * @param minY The smallest y coordinate of the bounds.
+     * @param minZ The smallest z coordinate of the bounds.
+     * @param maxX The largest x coordinate of the bounds.
+     * @param maxY The largest y coordinate of the bounds.
+     * @param maxZ The largest z coordinate of the bounds.
+     * @return The index of the object inside of this batch.
+     */
+    public int add(final float minX, final float minY, final float minZ,
+                   final float maxX, final float maxY, final float maxZ) {
+        if(size == centerX.length)
+            grow(size * 2);
+
+        final int index = size++;
+        set(index, minX, minY, minZ, maxX, maxY, maxZ);
+        return index;
+    }
+
+    /**
+     * Adds an object with the given world space bounds.
+     *
+     * @param boundingBox The world space bounds of the object.
+     * @return The index of the object inside of this batch.
+     */
+    public int add(final BoundingBox boundingBox) {
+        return add(boundingBox.min.x, boundingBox.min.y, boundingBox.min.z,
+                boundingBox.max.x, boundingBox.max.y, boundingBox.max.z);
+    }
+
+    /**
+     * Updates the bounds of an already added object, e.g. after it moved.
+     *
+     * @param index The index returned when adding the object.
+     * @param minX The smallest x coordinate of the bounds.
+     * @param minY The smallest y coordinate of the bounds.
+     * @param minZ The smallest z coordinate of the bounds.
+     * @param maxX The largest x coordinate of the bounds.
+     * @param maxY The largest y coordinate of the bounds.
+     * @param maxZ The largest z coordinate of the bounds.
+     */
+    public void set(final int index, final float minX, final float minY, final float minZ,
+                    final float maxX, final float maxY, final float maxZ) {
+        if(index < 0 || index >= size)
+            throw new IndexOutOfBoundsException("Index " + index + ", size " + size);
+
+        final float halfX = (maxX - minX) * 0.5f;
+        final float halfY = (maxY - minY) * 0.5f;
+        final float halfZ = (maxZ - minZ) * 0.5f;
+
+        centerX[index] = minX + halfX;
+        centerY[index] = minY + halfY;
+        centerZ[index] = minZ + halfZ;
+        extentX[index] = halfX;
+        extentY[index] = halfY;
+        extentZ[index] = halfZ;
+        radius[index] = (float) Math.sqrt(halfX * halfX + halfY * halfY + halfZ * halfZ);
+    }
+
+    /**
+     * Removes all objects, keeping the allocated memory.
+     */
+    public void clear() {
+        size = 0;
+    }
+
+    /**
+     * Returns the amount of objects in this batch.
+     *
+     * @return The object count.
+     */
+    public int size() {
+        return size;
+    }
+
+    private void grow(final int capacity) {
+        centerX = Arrays.copyOf(centerX, capacity);
+        centerY = Arrays.copyOf(centerY, capacity);
+        centerZ = Arrays.copyOf(centerZ, capacity);
+        extentX = Arrays.copyOf(extentX, capacity);
+        extentY = Arrays.copyOf(extentY, capacity);
+        extentZ = Arrays.copyOf(extentZ, capacity);
+        radius = Arrays.copyOf(radius, capacity);
+    }
+
+    /**
+     * Culls all objects against the given frustum and writes the indices of the (potentially)
+     * visible objects into the given array, in ascending order. This method does not allocate.
+     *
+     * @param frustum The frustum to cull against.
+     * @param visibleIndices The array receiving the visible indices, at least size() long.
+     * @return The amount of visible objects written to visibleIndices.
+     */
+    public int cull(final Frustum frustum, final int[] visibleIndices) {
+        if(visibleIndices.length < size)
+            throw new IllegalArgumentException("Output array too small (" + visibleIndices.length + " < " + size + ")");
+
+        // Copying the planes into locals lets the JIT keep them in registers for the whole loop
+        final float[] planes = frustum.planes;
+        final float a0 = planes[0], b0 = planes[1], c0 = planes[2], d0 = planes[3];
+        final float a1 = planes[4], b1 = planes[5], c1 = planes[6], d1 = planes[7];
+        final float a2 = planes[8], b2 = planes[9], c2 = planes[10], d2 = planes[11];
+        final float a3 = planes[12], b3 = planes[13], c3 = planes[14], d3 = planes[15];
+        final float a4 = planes[16], b4 = planes[17], c4 = planes[18], d4 = planes[19];
+        final float a5 = planes[20], b5 = planes[21], c5 = planes[22], d5 = planes[23];
+        final float absA0 = Math.abs(a0), absB0 = Math.abs(b0), absC0 = Math.abs(c0);
+        final float absA1 = Math.abs(a1), absB1 = Math.abs(b1), absC1 = Math.abs(c1);
+        final float absA2 = Math.abs(a2), absB2 = Math.abs(b2), absC2 = Math.abs(c2);
+        final float absA3 = Math.abs(a3), absB3 = Math.abs(b3), absC3 = Math.abs(c3);
+        final float absA4 = Math.abs(a4), absB4 = Math.abs(b4), absC4 = Math.abs(c4);
+        final float absA5 = Math.abs(a5), absB5 = Math.abs(b5), absC5 = Math.abs(c5);
+
+        final float[] centerX = this.centerX, centerY = this.centerY, centerZ = this.centerZ;
+        final float[] extentX = this.extentX, extentY = this.extentY, extentZ = this.extentZ;
+        final float[] radius = this.radius;
+        final int size = this.size;
+        int visibleCount = 0;
+
+        for(int index = 0; index < size; index++) {
+            final float x = centerX[index], y = centerY[index], z = centerZ[index];
+            final float distance0 = a0 * x + b0 * y + c0 * z + d0;
+            final float distance1 = a1 * x + b1 * y + c1 * z + d1;
+            final float distance2 = a2 * x + b2 * y + c2 * z + d2;
+            final float distance3 = a3 * x + b3 * y + c3 * z + d3;
+            final float distance4 = a4 * x + b4 * y + c4 * z + d4;
+            final float distance5 = a5 * x + b5 * y + c5 * z + d5;
+
+            // Sphere test: if the center is further than the radius behind any plane, it is culled
+            final float negativeRadius = -radius[index];
+            if(distance0 < negativeRadius || distance1 < negativeRadius || distance2 < negativeRadius
+                    || distance3 < negativeRadius || distance4 < negativeRadius || distance5 < negativeRadius)
+                continue;
+
+            // Box test: the box reaches (|a| * ex + |b| * ey + |c| * ez) along each plane normal
+            final float ex = extentX[index], ey = extentY[index], ez = extentZ[index];
+            if(distance0 + absA0 * ex + absB0 * ey + absC0 * ez < 0.0f
+                    || distance1 + absA1 * ex + absB1 * ey + absC1 * ez < 0.0f
+                    || distance2 + absA2 * ex + absB2 * ey + absC2 * ez < 0.0f
+                    || distance3 + absA3 * ex + absB3 * ey + absC3 * ez < 0.0f
+                    || distance4 + absA4 * ex + absB4 * ey + absC4 * ez < 0.0f
+                    || distance5 + absA5 * ex + absB5 * ey + absC5 * ez < 0.0f)
+                continue;
+
+            visibleIndices[visibleCount++] = index;
+        }
+
+        return visibleCount;
+    }
+}
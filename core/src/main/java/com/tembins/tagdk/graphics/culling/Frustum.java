@@ -0,0 +1,112 @@
+package com.tembins.tagdk.graphics.culling;
+
+import com.tembins.tagdk.math.Matrix4f;
+
+/**
+ * Represents the six planes of a view frustum. Unlike the math classes this class is mutable, so
+ * a single instance can be updated every frame without allocating.
+ */
+public final class Frustum {
+
+    public static final int LEFT = 0, RIGHT = 1, BOTTOM = 2, TOP = 3, NEAR = 4, FAR = 5;
+    public static final int PLANE_COUNT = 6;
+
+    /**
+     * The planes as (a, b, c, d) quadruples, with (a, b, c) being the normalized normal pointing
+     * into the frustum. A point p lies inside of a plane if a * p.x + b * p.y + c * p.z + d >= 0.
+     */
+    final float[] planes = new float[PLANE_COUNT * 4];
+
+    /**
+     * Initializes the frustum with all planes zeroed, so everything is considered visible until
+     * set(Matrix4f) is called.
+     */
+    public Frustum() {
+    }
+
+    /**
+     * Extracts the frustum planes from the given view projection matrix. The matrix is expected to
+     * be used as in (ViewProjection * Point), the resulting planes are in world space.
+     *
+     * @param viewProjection The combined view and projection matrix.
+     */
+    public void set(final Matrix4f viewProjection) {
+        final Matrix4f m = viewProjection;
+        setPlane(LEFT, m.v30 + m.v00, m.v31 + m.v01, m.v32 + m.v02, m.v33 + m.v03);
+        setPlane(RIGHT, m.v30 - m.v00, m.v31 - m.v01, m.v32 - m.v02, m.v33 - m.v03);
+        setPlane(BOTTOM, m.v30 + m.v10, m.v31 + m.v11, m.v32 + m.v12, m.v33 + m.v13);
+        setPlane(TOP, m.v30 - m.v10, m.v31 - m.v11, m.v32 - m.v12, m.v33 - m.v13);
+        setPlane(NEAR, m.v30 + m.v20, m.v31 + m.v21, m.v32 + m.v22, m.v33 + m.v23);
+        setPlane(FAR, m.v30 - m.v20, m.v31 - m.v21, m.v32 - m.v22, m.v33 - m.v23);
+    }
+
+    private void setPlane(final int plane, final float a, final float b, final float c, final float d) {
+        final float length = (float) Math.sqrt(a * a + b * b + c * c);
+        final float inverseLength = length != 0.0f ? 1.0f / length : 0.0f;
+        final int offset = plane * 4;
+
+        planes[offset] = a * inverseLength;
+        planes[offset + 1] = b * inverseLength;
+        planes[offset + 2] = c * inverseLength;
+        planes[offset + 3] = d * inverseLength;
+    }
+
+    /**
+     * Returns a single plane component.
+     *
+     * @param plane The plane index, e.g. Frustum.LEFT.
+     * @param component The component index, 0 to 3 for a, b, c and d.
+     * @return The plane component.
+     */
+    public float getPlane(final int plane, final int component) {
+        return planes[plane * 4 + component];
+    }
+
+    /**
+     * Tests whether the given sphere is at least partially inside of the frustum.
+     *
+     * @param x The x coordinate of the sphere center.
+     * @param y The y coordinate of the sphere center.
+     * @param z The z coordinate of the sphere center.
+     * @param radius The sphere radius.
+     * @return False if the sphere is completely outside, true otherwise.
+     */
+    public boolean testSphere(final float x, final float y, final float z, final float radius) {
+        for(int offset = 0; offset < planes.length; offset += 4) {
+            if(planes[offset] * x + planes[offset + 1] * y + planes[offset + 2] * z + planes[offset + 3] < -radius)
+                return false;
+        }
+
+        return true;
+    }
+
+    /**
+     * Tests whether the given axis aligned box is at least partially inside of the frustum. Boxes
+     * close to the frustum corners may be reported as visible even though they are not, which is
+     * the usual conservative tradeoff for culling.
+     *
+     * @param minX The smallest x coordinate of the box.
+     * @param minY The smallest y coordinate of the box.
+     * @param minZ The smallest z coordinate of the box.
+     * @param maxX The largest x coordinate of the box.
+     * @param maxY The largest y coordinate of the box.
+     * @param maxZ The largest z coordinate of the box.
+     * @return False if the box is completely outside, true otherwise.
+     */
+    public boolean testBox(final float minX, final float minY, final float minZ,
+                           final float maxX, final float maxY, final float maxZ) {
+        for(int offset = 0; offset < planes.length; offset += 4) {
+            final float a = planes[offset], b = planes[offset + 1], c = planes[offset + 2];
+
+            // Only the corner furthest along the plane normal has to be tested
+            final float x = a >= 0.0f ? maxX : minX;
+            final float y = b >= 0.0f ? maxY : minY;
+            final float z = c >= 0.0f ? maxZ : minZ;
+
+            if(a * x + b * y + c * z + planes[offset + 3] < 0.0f)
+                return false;
+        }
+
+        return true;
+    }
+}
@@ -0,0 +1,98 @@
+package com.tembins.tagdk.graphics.culling;
+
+import com.tembins.tagdk.graphics.resource.mesh.MeshLods;
+import com.tembins.tagdk.math.Matrix4f;
+
+/**
+ * Selects the level of detail of objects by projecting the error of every level onto the screen
+ * and picking the coarsest level whose error stays below a threshold in pixels. Like Frustum, the
+ * selector is mutable, so a single instance can be updated every frame without allocating.
+ */
+public final class LodSelector {
+
+    private static final float MIN_DEPTH = 1e-3f;
+
+    private float depthX, depthY, depthZ, depthW;
+    private float projectionScale;
+    private float thresholdPixels;
+
+    /**
+     * Initializes the selector with the following parameters:
+     *
+     * @param thresholdPixels The largest error on screen accepted, in pixels.
+     */
+    public LodSelector(final float thresholdPixels) {
+        this.thresholdPixels = thresholdPixels;
+    }
+
+    /**
+     * Updates the camera. The matrices are expected to be used as in (Projection * View * Point),
+     * with the camera looking down its -z axis.
+     *
+     * @param view The view matrix.
+     * @param projection The perspective projection matrix.
+     * @param viewportHeight The height of the viewport in pixels.
+     */
+    public void set(final Matrix4f view, final Matrix4f projection, final int viewportHeight) {
+        depthX = -view.v20;
+        depthY = -view.v21;
+        depthZ = -view.v22;
+        depthW = -view.v23;
+        // v11 is the cotangent of half the vertical field of view
+        projectionScale = projection.v11 * viewportHeight * 0.5f;
+    }
+
+    /**
+     * Sets the largest error on screen accepted.
+     *
+     * @param thresholdPixels The threshold in pixels.
+     */
+    public void setThreshold(final float thresholdPixels) {
+        this.thresholdPixels = thresholdPixels;
+    }
+
+    /**
+     * Returns the distance of a world space point from the camera along its view direction.
+     *
+     * @param x The x coordinate of the point.
+     * @param y The y coordinate of the point.
+     * @param z The z coordinate of the point.
+     * @return The view depth, negative behind the camera.
+     */
+    public float getDepth(final float x, final float y, final float z) {
+        return depthX * x + depthY * y + depthZ * z + depthW;
+    }
+
+    /**
+     * Returns the size in pixels a world space length covers on screen at a given depth.
+     *
+     * @param size The length in world space units.
+     * @param depth The view depth, see getDepth.
+     * @return The projected size in pixels.
+     */
+    public float getProjectedSize(final float size, final float depth) {
+        return size * projectionScale / Math.max(depth, MIN_DEPTH);
+    }
+
+    /**
+     * Selects the level of detail of an object. The nearest point of its bounding sphere is used,
+     * so objects intersecting the near plane or behind the camera get level 0.
+     *
+     * @param lods The levels of the mesh of the object.
+     * @param x The world space x coordinate of the center of the bounding sphere.
+     * @param y The world space y coordinate of the center of the bounding sphere.
+     * @param z The world space z coordinate of the center of the bounding sphere.
+     * @param radius The world space radius of the bounding sphere.
+     * @param scale The scale of the object, converting the model space errors to world space.
+     * @return The coarsest level whose projected error is within the threshold.
+     */
+    public int select(final MeshLods lods, final float x, final float y, final float z, final float radius,
+                      final float scale) {
+        final float depth = getDepth(x, y, z) - radius;
+        for(int lod = lods.getLodCount() - 1; lod > 0; lod--)
+            if(getProjectedSize(lods.getError(lod) * scale, depth) <= thresholdPixels)
+                return lod;
+
+        return 0;
+    }
+}
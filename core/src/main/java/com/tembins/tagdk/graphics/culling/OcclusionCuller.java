@@ -0,0 +1,498 @@
+package com.tembins.tagdk.graphics.culling;
+
+import com.tembins.tagdk.jobs.JobSystem;
+import com.tembins.tagdk.jobs.RangeJob;
+import com.tembins.tagdk.jobs.ScratchAllocator;
+import com.tembins.tagdk.math.Matrix4f;
+import com.tembins.tagdk.profiling.FrameProfiler;
+
+import java.util.Arrays;
+
+/**
+ * Culls objects hidden behind large occluders on the CPU. A small set of occluder meshes, e.g.
+ * simplified walls and buildings, is rasterized into a low resolution depth buffer every frame,
+ * and the screen space bounds of objects are tested against it before their draws are submitted.
+ *
+ * The depth buffer is split into tiles of TILE_SIZE pixels. Occluder triangles are binned into
+ * the tiles they overlap, and every tile is then rasterized independently, so the tiles can be
+ * distributed over the workers of a job system without synchronization. The farthest depth of
+ * every tile is kept as well, which rejects most occluded objects without touching single pixels.
+ *
+ * Depths are stored as window depths in [0, 1], larger being farther away. Triangles crossing the
+ * near plane are skipped and objects crossing it are always visible, which keeps the culling
+ * conservative without clipping.
+ */
+public final class OcclusionCuller {
+
+    public static final int TILE_SIZE = 32;
+    public static final int DEFAULT_WIDTH = 256, DEFAULT_HEIGHT = 128;
+    private static final float MIN_W = 1.0e-5f;
+    private static final int OBJECT_GRAIN_SIZE = 256;
+
+    private final int width, height, tilesX, tilesY;
+    private final float[] depth;
+    private final float[] tileMaxDepth;
+
+    private float[] occluderPositions = new float[96];
+    private int[] occluderIndices = new int[96];
+    private int occluderVertexCount, occluderIndexCount;
+
+    private float[] screenX = new float[0], screenY = new float[0], screenDepth = new float[0];
+    private final int[][] bins;
+    private final int[] binCounts;
+    private final float[] viewProjection = new float[16];
+
+    private CullingBatch testBatch;
+    private int[] testIndices;
+    private boolean[] visible = new boolean[0];
+    private int lastTestedCount, lastCulledCount;
+
+    private FrameProfiler profiler;
+    private int rasterizeScope, testScope;
+
+    private final RangeJob rasterizeJob = new RangeJob() {
+        @Override
+        public void execute(final int start, final int end, final ScratchAllocator scratch) {
+            for(int tile = start; tile < end; tile++)
+                rasterizeTile(tile);
+        }
+    };
+
+    private final RangeJob testJob = new RangeJob() {
+        @Override
+        public void execute(final int start, final int end, final ScratchAllocator scratch) {
+            testRange(start, end);
+        }
+    };
+
+    /**
+     * Creates a culler with a depth buffer of DEFAULT_WIDTH x DEFAULT_HEIGHT pixels.
+     */
+    public OcclusionCuller() {
+        this(DEFAULT_WIDTH, DEFAULT_HEIGHT);
+    }
+
+    /**
+     * Creates a culler with the following parameters:
+     *
+     * @param width The width of the depth buffer in pixels.
+     * @param height The height of the depth buffer in pixels.
+     */
+    public OcclusionCuller(final int width, final int height) {
+        if(width <= 0 || height <= 0)
+            throw new IllegalArgumentException("Invalid depth buffer size " + width + "x" + height);
+
+        this.width = width;
+        this.height = height;
+        tilesX = (width + TILE_SIZE - 1) / TILE_SIZE;
+        tilesY = (height + TILE_SIZE - 1) / TILE_SIZE;
+        depth = new float[width * height];
+        tileMaxDepth = new float[tilesX * tilesY];
+        bins = new int[tilesX * tilesY][16];
+        binCounts = new int[tilesX * tilesY];
+        Arrays.fill(depth, 1.0f);
+        Arrays.fill(tileMaxDepth, 1.0f);
+    }
+
+    /**
+     * Reports the time spent rasterizing and testing as scopes, and the amount of tested and
+     * culled objects as counters of the given profiler. The profiler has to belong to the thread
+     * calling render and cull.
+     *
+     * @param profiler The profiler to report to, or null to stop reporting.
+     */
+    public void setProfiler(final FrameProfiler profiler) {
+        this.profiler = profiler;
+        if(profiler != null) {
+            rasterizeScope = profiler.registerScope("Occlusion Rasterize");
+            testScope = profiler.registerScope("Occlusion Test");
+        }
+    }
+
+    /**
+     * Adds an occluder mesh whose positions are already in world space.
+     *
+     * @param positions The x, y, z positions of every vertex.
+     * @param indices The vertex indices, three per triangle.
+     */
+    public void addOccluder(final float[] positions, final short[] indices) {
+        addOccluder(positions, indices, null);
+    }
+
+    /**
+     * Adds an occluder mesh, transforming its positions into world space. Occluders should be
+     * simplified, watertight versions of large opaque meshes lying inside of them.
+     *
+     * @param positions The x, y, z positions of every vertex.
+     * @param indices The vertex indices, three per triangle.
+     * @param transform The model matrix of the occluder, or null if the positions are in world space.
+     */
+    public void addOccluder(final float[] positions, final short[] indices, final Matrix4f transform) {
+        final int vertexCount = positions.length / 3;
+        if(occluderPositions.length < (occluderVertexCount + vertexCount) * 3)
+            occluderPositions = Arrays.copyOf(occluderPositions,
+                    Math.max(occluderPositions.length * 2, (occluderVertexCount + vertexCount) * 3));
+        if(occluderIndices.length < occluderIndexCount + indices.length)
+            occluderIndices = Arrays.copyOf(occluderIndices,
+                    Math.max(occluderIndices.length * 2, occluderIndexCount + indices.length));
+
+        for(int vertex = 0; vertex < vertexCount; vertex++) {
+            final float x = positions[vertex * 3], y = positions[vertex * 3 + 1], z = positions[vertex * 3 + 2];
+            final int target = (occluderVertexCount + vertex) * 3;
+            if(transform == null) {
+                occluderPositions[target] = x;
+                occluderPositions[target + 1] = y;
+                occluderPositions[target + 2] = z;
+            } else {
+                occluderPositions[target] = transform.v00 * x + transform.v01 * y + transform.v02 * z + transform.v03;
+                occluderPositions[target + 1] = transform.v10 * x + transform.v11 * y + transform.v12 * z + transform.v13;
+                occluderPositions[target + 2] = transform.v20 * x + transform.v21 * y + transform.v22 * z + transform.v23;
+            }
+        }
+
+        for(int index = 0; index < indices.length; index++)
+            occluderIndices[occluderIndexCount + index] = (indices[index] & 0xFFFF) + occluderVertexCount;
+
+        occluderVertexCount += vertexCount;
+        occluderIndexCount += indices.length - indices.length % 3;
+    }
+
+    /**
+     * Removes all occluders.
+     */
+    public void clearOccluders() {
+        occluderVertexCount = 0;
+        occluderIndexCount = 0;
+    }
+
+    /**
+     * Rasterizes all occluders as seen with the given matrix, replacing the previous depth buffer.
+     *
+     * @param viewProjection The combined view and projection matrix of the camera.
+     * @param jobs The job system to rasterize the tiles on, or null to rasterize on the calling
+     *             thread.
+     */
+    public void render(final Matrix4f viewProjection, final JobSystem jobs) {
+        if(profiler != null)
+            profiler.begin(rasterizeScope);
+
+        viewProjection.store(this.viewProjection, 0);
+        transformVertices();
+        binTriangles();
+
+        if(jobs != null)
+            jobs.parallelFor(0, tilesX * tilesY, 1, rasterizeJob);
+        else
+            rasterizeJob.execute(0, tilesX * tilesY, null);
+
+        if(profiler != null)
+            profiler.end();
+    }
+
+    private void transformVertices() {
+        if(screenX.length < occluderVertexCount) {
+            screenX = new float[occluderPositions.length / 3];
+            screenY = new float[screenX.length];
+            screenDepth = new float[screenX.length];
+        }
+
+        final float[] m = viewProjection;
+        for(int vertex = 0; vertex < occluderVertexCount; vertex++) {
+            final float x = occluderPositions[vertex * 3], y = occluderPositions[vertex * 3 + 1];
+            final float z = occluderPositions[vertex * 3 + 2];
+            final float w = m[12] * x + m[13] * y + m[14] * z + m[15];
+            if(w < MIN_W) {
+                // Marks the vertex as behind the camera, its triangles are skipped
+                screenX[vertex] = Float.NaN;
+                continue;
+            }
+
+            final float inverseW = 1.0f / w;
+            screenX[vertex] = ((m[0] * x + m[1] * y + m[2] * z + m[3]) * inverseW * 0.5f + 0.5f) * width;
+            screenY[vertex] = ((m[4] * x + m[5] * y + m[6] * z + m[7]) * inverseW * 0.5f + 0.5f) * height;
+            screenDepth[vertex] = (m[8] * x + m[9] * y + m[10] * z + m[11]) * inverseW * 0.5f + 0.5f;
+        }
+    }
+
+    private void binTriangles() {
+        Arrays.fill(binCounts, 0);
+
+        for(int triangle = 0; triangle < occluderIndexCount; triangle += 3) {
+            final int a = occluderIndices[triangle], b = occluderIndices[triangle + 1];
+            final int c = occluderIndices[triangle + 2];
+            final float ax = screenX[a], bx = screenX[b], cx = screenX[c];
+            if(Float.isNaN(ax) || Float.isNaN(bx) || Float.isNaN(cx))
+                continue;
+
+            final float ay = screenY[a], by = screenY[b], cy = screenY[c];
+            if(Math.abs((bx - ax) * (cy - ay) - (by - ay) * (cx - ax)) < 1.0e-6f)
+                continue;
+
+            // Pixels are covered if their centers are inside, see rasterizeTile
+            final int minX = Math.max(0, (int) Math.ceil(Math.min(ax, Math.min(bx, cx)) - 0.5f));
+            final int maxX = Math.min(width - 1, (int) Math.floor(Math.max(ax, Math.max(bx, cx)) - 0.5f));
+            final int minY = Math.max(0, (int) Math.ceil(Math.min(ay, Math.min(by, cy)) - 0.5f));
+            final int maxY = Math.min(height - 1, (int) Math.floor(Math.max(ay, Math.max(by, cy)) - 0.5f));
+            if(minX > maxX || minY > maxY)
+                continue;
+
+            for(int tileY = minY / TILE_SIZE; tileY <= maxY / TILE_SIZE; tileY++) {
+                for(int tileX = minX / TILE_SIZE; tileX <= maxX / TILE_SIZE; tileX++) {
+                    final int tile = tileY * tilesX + tileX;
+                    if(binCounts[tile] == bins[tile].length)
+                        bins[tile] = Arrays.copyOf(bins[tile], binCounts[tile] * 2);
+                    bins[tile][binCounts[tile]++] = triangle;
+                }
+            }
+        }
+    }
+
+    private void rasterizeTile(final int tile) {
+        final int tileMinX = (tile % tilesX) * TILE_SIZE, tileMinY = (tile / tilesX) * TILE_SIZE;
+        final int tileMaxX = Math.min(width, tileMinX + TILE_SIZE) - 1;
+        final int tileMaxY = Math.min(height, tileMinY + TILE_SIZE) - 1;
+        final float[] depth = this.depth;
+
+        for(int y = tileMinY; y <= tileMaxY; y++)
+            Arrays.fill(depth, y * width + tileMinX, y * width + tileMaxX + 1, 1.0f);
+
+        final int[] bin = bins[tile];
+        for(int entry = 0; entry < binCounts[tile]; entry++) {
+            final int triangle = bin[entry];
+            final int a = occluderIndices[triangle];
+            int b = occluderIndices[triangle + 1], c = occluderIndices[triangle + 2];
+            final float ax = screenX[a], ay = screenY[a];
+            float area = (screenX[b] - ax) * (screenY[c] - ay) - (screenY[b] - ay) * (screenX[c] - ax);
+            if(area < 0.0f) {
+                // Occluders are rendered from both sides, so clockwise triangles are flipped
+                final int swap = b;
+                b = c;
+                c = swap;
+                area = -area;
+            }
+
+            final float bx = screenX[b], by = screenY[b], cx = screenX[c], cy = screenY[c];
+            final float inverseArea = 1.0f / area;
+            final float az = screenDepth[a] * inverseArea, bz = screenDepth[b] * inverseArea;
+            final float cz = screenDepth[c] * inverseArea;
+
+            final int minX = Math.max(tileMinX, (int) Math.ceil(Math.min(ax, Math.min(bx, cx)) - 0.5f));
+            final int maxX = Math.min(tileMaxX, (int) Math.floor(Math.max(ax, Math.max(bx, cx)) - 0.5f));
+            final int minY = Math.max(tileMinY, (int) Math.ceil(Math.min(ay, Math.min(by, cy)) - 0.5f));
+            final int maxY = Math.min(tileMaxY, (int) Math.floor(Math.max(ay, Math.max(by, cy)) - 0.5f));
+
+            // Edge functions at the center of the first pixel, weighting the opposite vertex
+            final float startX = minX + 0.5f, startY = minY + 0.5f;
+            float rowA = (cx - bx) * (startY - by) - (cy - by) * (startX - bx);
+            float rowB = (ax - cx) * (startY - cy) - (ay - cy) * (startX - cx);
+            float rowC = (bx - ax) * (startY - ay) - (by - ay) * (startX - ax);
+            final float stepAX = by - cy, stepBX = cy - ay, stepCX = ay - by;
+            final float stepAY = cx - bx, stepBY = ax - cx, stepCY = bx - ax;
+
+            for(int y = minY; y <= maxY; y++) {
+                float edgeA = rowA, edgeB = rowB, edgeC = rowC;
+                int pixel = y * width + minX;
+                for(int x = minX; x <= maxX; x++, pixel++) {
+                    if(edgeA >= 0.0f && edgeB >= 0.0f && edgeC >= 0.0f) {
+                        final float z = edgeA * az + edgeB * bz + edgeC * cz;
+                        if(z < depth[pixel])
+                            depth[pixel] = z;
+                    }
+                    edgeA += stepAX;
+                    edgeB += stepBX;
+                    edgeC += stepCX;
+                }
+                rowA += stepAY;
+                rowB += stepBY;
+                rowC += stepCY;
+            }
+        }
+
+        float farthest = 0.0f;
+        for(int y = tileMinY; y <= tileMaxY; y++)
+            for(int pixel = y * width + tileMinX; pixel <= y * width + tileMaxX; pixel++)
+                farthest = Math.max(farthest, depth[pixel]);
+        tileMaxDepth[tile] = farthest;
+    }
+
+    /**
+     * Tests whether a box is at least partially visible in the depth buffer of the last render.
+     *
+     * @param minX The smallest x coordinate of the box.
+     * @param minY The smallest y coordinate of the box.
+     * @param minZ The smallest z coordinate of the box.
+     * @param maxX The largest x coordinate of the box.
+     * @param maxY The largest y coordinate of the box.
+     * @param maxZ The largest z coordinate of the box.
+     * @return False if the box is completely hidden behind occluders, true otherwise.
+     */
+    public boolean isVisible(final float minX, final float minY, final float minZ,
+                             final float maxX, final float maxY, final float maxZ) {
+        final float halfX = (maxX - minX) * 0.5f, halfY = (maxY - minY) * 0.5f, halfZ = (maxZ - minZ) * 0.5f;
+        return testBox(minX + halfX, minY + halfY, minZ + halfZ, halfX, halfY, halfZ);
+    }
+
+    /**
+     * Removes the occluded objects from a list of object indices, e.g. the output of
+     * CullingBatch.cull(Frustum, int[]), keeping the order of the remaining ones. The amount of
+     * tested and culled objects is reported to the profiler.
+     *
+     * @param batch The batch holding the bounds of the objects.
+     * @param indices The indices of the objects to test, overwritten with the visible ones.
+     * @param count The amount of indices to test.
+     * @param jobs The job system to test on, or null to test on the calling thread.
+     * @return The amount of visible objects written to indices.
+     */
+    public int cull(final CullingBatch batch, final int[] indices, final int count, final JobSystem jobs) {
+        if(count > indices.length)
+            throw new IllegalArgumentException("Count " + count + " exceeds the index array (" + indices.length + ")");
+
+        if(profiler != null)
+            profiler.begin(testScope);
+
+        if(visible.length < count)
+            visible = new boolean[Math.max(count, visible.length * 2)];
+        testBatch = batch;
+        testIndices = indices;
+        if(jobs != null)
+            jobs.parallelFor(0, count, OBJECT_GRAIN_SIZE, testJob);
+        else
+            testRange(0, count);
+        testBatch = null;
+        testIndices = null;
+
+        int visibleCount = 0;
+        for(int entry = 0; entry < count; entry++)
+            if(visible[entry])
+                indices[visibleCount++] = indices[entry];
+
+        lastTestedCount = count;
+        lastCulledCount = count - visibleCount;
+        if(profiler != null) {
+            profiler.count(FrameProfiler.Counter.OCCLUSION_TESTED, count);
+            profiler.count(FrameProfiler.Counter.OCCLUSION_CULLED, count - visibleCount);
+            profiler.end();
+        }
+        return visibleCount;
+    }
+
+    private void testRange(final int start, final int end) {
+        final CullingBatch batch = testBatch;
+        final int[] indices = testIndices;
+        for(int entry = start; entry < end; entry++) {
+            final int index = indices[entry];
+            visible[entry] = testBox(batch.centerX[index], batch.centerY[index], batch.centerZ[index],
+                    batch.extentX[index], batch.extentY[index], batch.extentZ[index]);
+        }
+    }
+
+    private boolean testBox(final float centerX, final float centerY, final float centerZ,
+                            final float extentX, final float extentY, final float extentZ) {
+        final float[] m = viewProjection;
+
+        // Every corner is the projected center plus or minus the projected extent along each axis
+        final float x = m[0] * centerX + m[1] * centerY + m[2] * centerZ + m[3];
+        final float y = m[4] * centerX + m[5] * centerY + m[6] * centerZ + m[7];
+        final float z = m[8] * centerX + m[9] * centerY + m[10] * centerZ + m[11];
+        final float w = m[12] * centerX + m[13] * centerY + m[14] * centerZ + m[15];
+        final float xx = m[0] * extentX, xy = m[4] * extentX, xz = m[8] * extentX, xw = m[12] * extentX;
+        final float yx = m[1] * extentY, yy = m[5] * extentY, yz = m[9] * extentY, yw = m[13] * extentY;
+        final float zx = m[2] * extentZ, zy = m[6] * extentZ, zz = m[10] * extentZ, zw = m[14] * extentZ;
+
+        // The box crosses the near plane (or lies behind the camera) if any corner has a small w
+        if(w - Math.abs(xw) - Math.abs(yw) - Math.abs(zw) < MIN_W)
+            return true;
+
+        float minX = Float.MAX_VALUE, minY = Float.MAX_VALUE, maxX = -Float.MAX_VALUE, maxY = -Float.MAX_VALUE;
+        float nearest = Float.MAX_VALUE;
+        for(int corner = 0; corner < 8; corner++) {
+            final float signX = (corner & 1) == 0 ? -1.0f : 1.0f;
+            final float signY = (corner & 2) == 0 ? -1.0f : 1.0f;
+            final float signZ = (corner & 4) == 0 ? -1.0f : 1.0f;
+            final float inverseW = 1.0f / (w + signX * xw + signY * yw + signZ * zw);
+            final float cornerX = (x + signX * xx + signY * yx + signZ * zx) * inverseW;
+            final float cornerY = (y + signX * xy + signY * yy + signZ * zy) * inverseW;
+            final float cornerZ = (z + signX * xz + signY * yz + signZ * zz) * inverseW;
+            minX = Math.min(minX, cornerX);
+            maxX = Math.max(maxX, cornerX);
+            minY = Math.min(minY, cornerY);
+            maxY = Math.max(maxY, cornerY);
+            nearest = Math.min(nearest, cornerZ);
+        }
+        nearest = nearest * 0.5f + 0.5f;
+
+        // All pixels the rectangle touches, objects outside of the screen are left to frustum culling
+        final int pixelMinX = Math.max(0, (int) Math.floor((minX * 0.5f + 0.5f) * width));
+        final int pixelMaxX = Math.min(width - 1, (int) Math.ceil((maxX * 0.5f + 0.5f) * width) - 1);
+        final int pixelMinY = Math.max(0, (int) Math.floor((minY * 0.5f + 0.5f) * height));
+        final int pixelMaxY = Math.min(height - 1, (int) Math.ceil((maxY * 0.5f + 0.5f) * height) - 1);
+        if(pixelMinX > pixelMaxX || pixelMinY > pixelMaxY)
+            return true;
+
+        for(int tileY = pixelMinY / TILE_SIZE; tileY <= pixelMaxY / TILE_SIZE; tileY++) {
+            for(int tileX = pixelMinX / TILE_SIZE; tileX <= pixelMaxX / TILE_SIZE; tileX++) {
+                // The whole tile is in front of the box, no need to look at its pixels
+                if(nearest > tileMaxDepth[tileY * tilesX + tileX])
+                    continue;
+
+                final int startX = Math.max(pixelMinX, tileX * TILE_SIZE);
+                final int endX = Math.min(pixelMaxX, tileX * TILE_SIZE + TILE_SIZE - 1);
+                final int startY = Math.max(pixelMinY, tileY * TILE_SIZE);
+                final int endY = Math.min(pixelMaxY, tileY * TILE_SIZE + TILE_SIZE - 1);
+                for(int pixelY = startY; pixelY <= endY; pixelY++)
+                    for(int pixel = pixelY * width + startX; pixel <= pixelY * width + endX; pixel++)
+                        if(depth[pixel] >= nearest)
+                            return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns the depth of a pixel of the last render, 1 where no occluder was rasterized.
+     *
+     * @param x The column of the pixel, starting on the left.
+     * @param y The row of the pixel, starting at the bottom.
+     * @return The window depth of the nearest occluder.
+     */
+    public float getDepth(final int x, final int y) {
+        return depth[y * width + x];
+    }
+
+    /**
+     * Returns the amount of objects tested by the last call to cull.
+     *
+     * @return The tested object count.
+     */
+    public int getLastTestedCount() {
+        return lastTestedCount;
+    }
+
+    /**
+     * Returns the amount of objects found occluded by the last call to cull. Divided by the
+     * tested count, this is the reject rate.
+     *
+     * @return The culled object count.
+     */
+    public int getLastCulledCount() {
+        return lastCulledCount;
+    }
+
+    /**
+     * Returns the width of the depth buffer.
+     *
+     * @return The width in pixels.
+     */
+    public int getWidth() {
+        return width;
+    }
+
+    /**
+     * Returns the height of the depth buffer.
+     *
+     * @return The height in pixels.
+     */
+    public int getHeight() {
+        return height;
+    }
+}
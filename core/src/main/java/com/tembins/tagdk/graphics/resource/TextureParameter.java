@@ -1,6 +1,6 @@
 package com.tembins.tagdk.graphics.resource;
 
-import android.opengl.GLES20;
+import com.tembins.tagdk.graphics.backend.GLConstants;
 
 /**
  * Provides static wrappers for OpenGL texture flags.
@@ -15,13 +15,13 @@ public final class TextureParameter {
         /**
          * Will repeat the texture if the uv coordinates are outside the normalized space.
          */
-        REPEAT(GLES20.GL_REPEAT),
+        REPEAT(GLConstants.GL_REPEAT),
 
         /**
          * Will return the textures edge colors if the uv coordinates are outside the normalized
          * space.
          */
-        CLAMP_TO_EDGE(GLES20.GL_CLAMP_TO_EDGE);
+        CLAMP_TO_EDGE(GLConstants.GL_CLAMP_TO_EDGE);
 
         public final int openGLID;
 
@@ -37,12 +37,12 @@ public final class TextureParameter {
         /**
          * WIll interpolate the colors.
          */
-        LINEAR(GLES20.GL_LINEAR),
+        LINEAR(GLConstants.GL_LINEAR),
 
         /**
          * Will not interpolate and just use the nearest full color.
          */
-        NEAREST(GLES20.GL_NEAREST);
+        NEAREST(GLConstants.GL_NEAREST);
 
         public final int openGLID;
 
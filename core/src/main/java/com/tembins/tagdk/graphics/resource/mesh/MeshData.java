@@ -0,0 +1,89 @@
+package com.tembins.tagdk.graphics.resource.mesh;
+
+/**
+ * Holds the raw vertex and index data of a mesh before it is uploaded to OpenGL. All vertex
+ * attributes are tightly packed and share the same vertex indices. Skinned meshes additionally
+ * have up to JOINTS_PER_VERTEX joint indices and weights per vertex.
+ */
+public final class MeshData {
+
+    public static final int POSITION_SIZE = 3;
+    public static final int TEXTURE_COORDINATE_SIZE = 2;
+    public static final int NORMAL_SIZE = 3;
+    public static final int JOINTS_PER_VERTEX = 4;
+
+    public static final int POSITION_ATTRIBUTE = 0;
+    public static final int TEXTURE_COORDINATE_ATTRIBUTE = 1;
+    public static final int NORMAL_ATTRIBUTE = 2;
+    public static final int JOINT_ATTRIBUTE = 3;
+    public static final int WEIGHT_ATTRIBUTE = 4;
+
+    public final float[] positions;
+    public final float[] textureCoordinates;
+    public final float[] normals;
+    public final short[] indices;
+
+    /**
+     * The joint indices of every vertex, or null if the mesh is not skinned.
+     */
+    public final byte[] joints;
+
+    /**
+     * The joint weights of every vertex, summing up to 1, or null if the mesh is not skinned.
+     */
+    public final float[] weights;
+
+    /**
+     * Initializes the mesh data with the given arrays.
+     *
+     * @param positions The x, y, z positions of every vertex.
+     * @param textureCoordinates The u, v texture coordinates of every vertex.
+     * @param normals The x, y, z normals of every vertex.
+     * @param indices The vertex indices, three per triangle.
+     */
+    public MeshData(final float[] positions, final float[] textureCoordinates, final float[] normals,
+                    final short[] indices) {
+        this(positions, textureCoordinates, normals, indices, null, null);
+    }
+
+    /**
+     * Initializes the data of a skinned mesh with the given arrays.
+     *
+     * @param positions The x, y, z positions of every vertex.
+     * @param textureCoordinates The u, v texture coordinates of every vertex.
+     * @param normals The x, y, z normals of every vertex.
+     * @param indices The vertex indices, three per triangle.
+     * @param joints JOINTS_PER_VERTEX joint indices of every vertex, read as unsigned bytes.
+     * @param weights JOINTS_PER_VERTEX weights of every vertex, matching the joint indices.
+     */
+    public MeshData(final float[] positions, final float[] textureCoordinates, final float[] normals,
+                    final short[] indices, final byte[] joints, final float[] weights) {
+        if((joints == null) != (weights == null))
+            throw new IllegalArgumentException("Joint indices and weights have to be given together");
+
+        this.positions = positions;
+        this.textureCoordinates = textureCoordinates;
+        this.normals = normals;
+        this.indices = indices;
+        this.joints = joints;
+        this.weights = weights;
+    }
+
+    /**
+     * Returns whether the mesh has joint indices and weights.
+     *
+     * @return True if the mesh is skinned.
+     */
+    public boolean isSkinned() {
+        return joints != null;
+    }
+
+    /**
+     * Returns the amount of vertices of this mesh.
+     *
+     * @return The vertex count.
+     */
+    public int getVertexCount() {
+        return positions.length / POSITION_SIZE;
+    }
+}
@@ -0,0 +1,116 @@
+package com.tembins.tagdk.graphics.resource.mesh;
+
+/**
+ * Holds the index buffers of the levels of detail of a mesh, concatenated into one array so they
+ * can be uploaded as a single element buffer. All levels reference the same vertices; level 0 is
+ * the original mesh and every following level has fewer triangles and a larger error.
+ */
+public final class MeshLods {
+
+    public static final float DEFAULT_REDUCTION = 0.5f;
+
+    public final short[] indices;
+    private final int[] offsets;
+    private final float[] errors;
+
+    /**
+     * Initializes the levels with the following parameters:
+     *
+     * @param indices The indices of all levels, level after level.
+     * @param offsets The index offset of every level, followed by the total index count.
+     * @param errors The error of every level in model space units, see MeshSimplifier.simplify.
+     */
+    public MeshLods(final short[] indices, final int[] offsets, final float[] errors) {
+        if(offsets.length != errors.length + 1 || offsets[errors.length] != indices.length)
+            throw new IllegalArgumentException("Offsets and errors do not describe the indices");
+
+        this.indices = indices;
+        this.offsets = offsets;
+        this.errors = errors;
+    }
+
+    /**
+     * Generates levels of detail by simplifying a mesh repeatedly, each level aiming for the given
+     * fraction of the triangles of the previous one. Generation stops early if a level can not be
+     * reduced by at least 10% within the error limit.
+     *
+     * @param positions The x, y, z positions of the vertices.
+     * @param indices The indices of the original mesh, which becomes level 0.
+     * @param maxLodCount The largest amount of levels, including level 0.
+     * @param reduction The fraction of triangles each level keeps of the previous one, e.g. 0.5.
+     * @param maxError The largest error allowed, in model space units.
+     * @return The generated levels.
+     */
+    public static MeshLods generate(final float[] positions, final short[] indices, final int maxLodCount,
+                                    final float reduction, final float maxError) {
+        final MeshSimplifier simplifier = new MeshSimplifier(positions, indices);
+        final short[][] levels = new short[maxLodCount][];
+        final float[] levelErrors = new float[maxLodCount];
+        final float[] error = new float[1];
+        levels[0] = indices;
+
+        int lodCount = 1;
+        int totalIndexCount = indices.length;
+        while(lodCount < maxLodCount) {
+            final int previousCount = levels[lodCount - 1].length;
+            final int target = (int) (previousCount / 3 * reduction) * 3;
+            final short[] simplified = simplifier.simplify(indices, target, maxError, error);
+            if(simplified.length == 0 || simplified.length > previousCount * 0.9f)
+                break;
+
+            levels[lodCount] = simplified;
+            levelErrors[lodCount] = Math.max(error[0], levelErrors[lodCount - 1]);
+            totalIndexCount += simplified.length;
+            lodCount++;
+        }
+
+        final short[] allIndices = new short[totalIndexCount];
+        final int[] offsets = new int[lodCount + 1];
+        for(int lod = 0; lod < lodCount; lod++) {
+            System.arraycopy(levels[lod], 0, allIndices, offsets[lod], levels[lod].length);
+            offsets[lod + 1] = offsets[lod] + levels[lod].length;
+        }
+        final float[] errors = new float[lodCount];
+        System.arraycopy(levelErrors, 0, errors, 0, lodCount);
+        return new MeshLods(allIndices, offsets, errors);
+    }
+
+    /**
+     * Returns the amount of levels.
+     *
+     * @return The level count, at least 1.
+     */
+    public int getLodCount() {
+        return errors.length;
+    }
+
+    /**
+     * Returns the index of the first index of a level, e.g. to compute the offset for drawElements.
+     *
+     * @param lod The level.
+     * @return The index offset.
+     */
+    public int getIndexOffset(final int lod) {
+        return offsets[lod];
+    }
+
+    /**
+     * Returns the amount of indices of a level.
+     *
+     * @param lod The level.
+     * @return The index count, three per triangle.
+     */
+    public int getIndexCount(final int lod) {
+        return offsets[lod + 1] - offsets[lod];
+    }
+
+    /**
+     * Returns the error of a level, an estimate of its largest deviation from the original mesh.
+     *
+     * @param lod The level.
+     * @return The error in model space units, 0 for level 0.
+     */
+    public float getError(final int lod) {
+        return errors[lod];
+    }
+}
@@ -0,0 +1,395 @@
+package com.tembins.tagdk.graphics.resource.mesh;
+
+import java.util.Arrays;
+
+/**
+ * Simplifies triangle meshes with quadric error metric edge collapses. Vertices are only ever
+ * collapsed onto other existing vertices, so the simplified index buffers reference the vertex
+ * buffer of the original mesh and all levels of detail can share it.
+ *
+ * Every vertex accumulates the quadric of the planes of its triangles; collapsing a vertex onto a
+ * neighbor costs the summed squared distance of the neighbor to those planes. Collapses are done
+ * in passes: each pass sorts the candidate edges by cost and collapses the cheapest ones whose
+ * neighborhoods were not changed yet in the pass. Vertices on attribute seams, where several
+ * vertices share a position, are never moved, and border vertices only move along the border, so
+ * UV islands and open edges keep their shape. Collapses that would flip a triangle are rejected.
+ */
+public final class MeshSimplifier {
+
+    private static final byte MANIFOLD = 0, BORDER = 1, LOCKED = 2;
+    private static final int QUADRIC_SIZE = 10;
+
+    private final float[] positions;
+    private final int vertexCount;
+    private final byte[] kinds;
+    private final int[] canonical;
+    private final double[] quadrics;
+
+    /**
+     * Prepares the simplification of a mesh by classifying its vertices and computing their
+     * quadrics. The prepared simplifier can produce multiple simplified index buffers.
+     *
+     * @param positions The x, y, z positions of the vertices.
+     * @param indices The vertex indices, three per triangle.
+     */
+    public MeshSimplifier(final float[] positions, final short[] indices) {
+        this.positions = positions;
+        vertexCount = positions.length / 3;
+        kinds = new byte[vertexCount];
+        quadrics = new double[vertexCount * QUADRIC_SIZE];
+
+        canonical = weldPositions();
+        final int[] triangles = toInts(indices);
+        accumulateQuadrics(triangles, classifyVertices(triangles));
+    }
+
+    private static int[] toInts(final short[] indices) {
+        final int[] result = new int[indices.length];
+        for(int index = 0; index < indices.length; index++)
+            result[index] = indices[index] & 0xFFFF;
+        return result;
+    }
+
+    /**
+     * Maps every vertex to the first vertex with the same position and locks vertices sharing a
+     * position with others, as moving them would tear the seam open.
+     */
+    private int[] weldPositions() {
+        final int[] canonical = new int[vertexCount];
+        final int[] table = new int[Integer.highestOneBit(Math.max(1, vertexCount)) * 4];
+        Arrays.fill(table, -1);
+        final int mask = table.length - 1;
+
+        for(int vertex = 0; vertex < vertexCount; vertex++) {
+            int slot = hashPosition(vertex) & mask;
+            while(table[slot] >= 0 && !samePosition(table[slot], vertex))
+                slot = (slot + 1) & mask;
+
+            if(table[slot] < 0) {
+                table[slot] = vertex;
+                canonical[vertex] = vertex;
+            } else {
+                canonical[vertex] = table[slot];
+                kinds[vertex] = LOCKED;
+                kinds[table[slot]] = LOCKED;
+            }
+        }
+        return canonical;
+    }
+
+    private int hashPosition(final int vertex) {
+        int hash = Float.floatToIntBits(positions[vertex * 3]);
+        hash = hash * 31 + Float.floatToIntBits(positions[vertex * 3 + 1]);
+        hash = hash * 31 + Float.floatToIntBits(positions[vertex * 3 + 2]);
+        return hash ^ (hash >>> 16);
+    }
+
+    private boolean samePosition(final int first, final int second) {
+        return positions[first * 3] == positions[second * 3] && positions[first * 3 + 1] == positions[second * 3 + 1]
+                && positions[first * 3 + 2] == positions[second * 3 + 2];
+    }
+
+    /**
+     * Marks vertices with edges used by a single triangle as border vertices. Vertices with more
+     * than two border edges, where borders meet, are locked.
+     *
+     * @return Whether the edge starting at each corner is a border edge.
+     */
+    private boolean[] classifyVertices(final int[] indices) {
+        final long[] edges = new long[indices.length];
+        for(int corner = 0; corner < indices.length; corner++) {
+            final int from = canonical[indices[corner]];
+            final int to = canonical[indices[nextCorner(corner)]];
+            edges[corner] = (long) from << 32 | to;
+        }
+        final long[] sortedEdges = edges.clone();
+        Arrays.sort(sortedEdges);
+
+        final int[] borderEdgeCounts = new int[vertexCount];
+        final boolean[] borderCorners = new boolean[indices.length];
+        for(int corner = 0; corner < indices.length; corner++) {
+            final long edge = edges[corner];
+            final long reverse = (edge & 0xFFFFFFFFL) << 32 | edge >>> 32;
+            if(Arrays.binarySearch(sortedEdges, reverse) < 0) {
+                borderCorners[corner] = true;
+                borderEdgeCounts[indices[corner]]++;
+                borderEdgeCounts[indices[nextCorner(corner)]]++;
+            }
+        }
+
+        for(int vertex = 0; vertex < vertexCount; vertex++) {
+            if(kinds[vertex] == LOCKED || borderEdgeCounts[vertex] == 0)
+                continue;
+
+            kinds[vertex] = borderEdgeCounts[vertex] == 2 ? BORDER : LOCKED;
+        }
+        return borderCorners;
+    }
+
+    private static int nextCorner(final int corner) {
+        return corner % 3 == 2 ? corner - 2 : corner + 1;
+    }
+
+    private void accumulateQuadrics(final int[] indices, final boolean[] borderCorners) {
+        for(int triangle = 0; triangle < indices.length; triangle += 3) {
+            final int a = indices[triangle], b = indices[triangle + 1], c = indices[triangle + 2];
+            final double[] normal = normal(a, b, c);
+            if(normal == null)
+                continue;
+
+            final double d = -(normal[0] * positions[a * 3] + normal[1] * positions[a * 3 + 1]
+                    + normal[2] * positions[a * 3 + 2]);
+            for(int corner = 0; corner < 3; corner++) {
+                final int vertex = indices[triangle + corner];
+                addPlane(vertex, normal[0], normal[1], normal[2], d);
+
+                // Planes perpendicular to the triangle through border edges keep borders in place
+                if(borderCorners[triangle + corner])
+                    addBorderPlane(vertex, indices[triangle + (corner + 1) % 3], normal);
+            }
+        }
+    }
+
+    private void addBorderPlane(final int from, final int to, final double[] normal) {
+        final double edgeX = positions[to * 3] - positions[from * 3];
+        final double edgeY = positions[to * 3 + 1] - positions[from * 3 + 1];
+        final double edgeZ = positions[to * 3 + 2] - positions[from * 3 + 2];
+        double x = edgeY * normal[2] - edgeZ * normal[1];
+        double y = edgeZ * normal[0] - edgeX * normal[2];
+        double z = edgeX * normal[1] - edgeY * normal[0];
+        final double length = Math.sqrt(x * x + y * y + z * z);
+        if(length == 0.0)
+            return;
+
+        x /= length;
+        y /= length;
+        z /= length;
+        final double d = -(x * positions[from * 3] + y * positions[from * 3 + 1] + z * positions[from * 3 + 2]);
+        addPlane(from, x, y, z, d);
+        addPlane(to, x, y, z, d);
+    }
+
+    private void addPlane(final int vertex, final double a, final double b, final double c, final double d) {
+        final int offset = vertex * QUADRIC_SIZE;
+        quadrics[offset] += a * a;
+        quadrics[offset + 1] += a * b;
+        quadrics[offset + 2] += a * c;
+        quadrics[offset + 3] += a * d;
+        quadrics[offset + 4] += b * b;
+        quadrics[offset + 5] += b * c;
+        quadrics[offset + 6] += b * d;
+        quadrics[offset + 7] += c * c;
+        quadrics[offset + 8] += c * d;
+        quadrics[offset + 9] += d * d;
+    }
+
+    private static double evaluate(final double[] quadrics, final int vertex, final double x, final double y,
+                                   final double z) {
+        final int o = vertex * QUADRIC_SIZE;
+        final double error = quadrics[o] * x * x + 2.0 * quadrics[o + 1] * x * y + 2.0 * quadrics[o + 2] * x * z
+                + 2.0 * quadrics[o + 3] * x + quadrics[o + 4] * y * y + 2.0 * quadrics[o + 5] * y * z
+                + 2.0 * quadrics[o + 6] * y + quadrics[o + 7] * z * z + 2.0 * quadrics[o + 8] * z + quadrics[o + 9];
+        return Math.max(0.0, error);
+    }
+
+    private double[] normal(final int a, final int b, final int c) {
+        final double abX = positions[b * 3] - positions[a * 3];
+        final double abY = positions[b * 3 + 1] - positions[a * 3 + 1];
+        final double abZ = positions[b * 3 + 2] - positions[a * 3 + 2];
+        final double acX = positions[c * 3] - positions[a * 3];
+        final double acY = positions[c * 3 + 1] - positions[a * 3 + 1];
+        final double acZ = positions[c * 3 + 2] - positions[a * 3 + 2];
+        final double x = abY * acZ - abZ * acY, y = abZ * acX - abX * acZ, z = abX * acY - abY * acX;
+        final double length = Math.sqrt(x * x + y * y + z * z);
+        return length == 0.0 ? null : new double[] { x / length, y / length, z / length };
+    }
+
+    /**
+     * Simplifies the mesh until it has at most the target amount of indices or no collapse within
+     * the error limit is left.
+     *
+     * @param indices The indices to simplify, usually those of the original mesh. Vertices unused by
+     *                them are ignored.
+     * @param targetIndexCount The index count to reach, a multiple of 3.
+     * @param maxError The largest error allowed, as a distance in model space units.
+     * @param resultError Receives the error of the result at index 0 if not null. The error is the
+     *                    square root of the largest quadric error of a collapse, an estimate of the
+     *                    largest deviation from the original surface.
+     * @return The simplified indices.
+     */
+    public short[] simplify(final short[] indices, final int targetIndexCount, final float maxError,
+                            final float[] resultError) {
+        final double[] quadrics = this.quadrics.clone();
+        int[] current = toInts(indices);
+        int indexCount = current.length;
+        double error = 0.0;
+        final double maxCost = (double) maxError * maxError;
+
+        final int[] collapseTarget = new int[vertexCount];
+        final boolean[] touched = new boolean[vertexCount];
+        final int[] triangleOffsets = new int[vertexCount + 1];
+        final int[] vertexTriangles = new int[indexCount];
+
+        while(indexCount > targetIndexCount) {
+            // Vertex to triangle adjacency of the remaining triangles
+            Arrays.fill(triangleOffsets, 0);
+            for(int corner = 0; corner < indexCount; corner++)
+                triangleOffsets[current[corner] + 1]++;
+            for(int vertex = 0; vertex < vertexCount; vertex++)
+                triangleOffsets[vertex + 1] += triangleOffsets[vertex];
+            final int[] fill = Arrays.copyOf(triangleOffsets, vertexCount);
+            for(int corner = 0; corner < indexCount; corner++)
+                vertexTriangles[fill[current[corner]]++] = corner / 3;
+
+            // Candidates sorted by cost, packed as cost bits above the candidate index
+            final long[] candidates = new long[indexCount];
+            final int[] candidateFrom = new int[indexCount], candidateTo = new int[indexCount];
+            int candidateCount = 0;
+            for(int corner = 0; corner < indexCount; corner++) {
+                final int a = current[corner], b = current[nextCorner(corner)];
+                final double costAB = collapseCost(quadrics, current, triangleOffsets, vertexTriangles, a, b);
+                final double costBA = collapseCost(quadrics, current, triangleOffsets, vertexTriangles, b, a);
+                final double cost = Math.min(costAB, costBA);
+                if(cost > maxCost || cost == Double.POSITIVE_INFINITY)
+                    continue;
+
+                candidateFrom[candidateCount] = costAB <= costBA ? a : b;
+                candidateTo[candidateCount] = costAB <= costBA ? b : a;
+                candidates[candidateCount] = (long) Float.floatToIntBits((float) cost) << 32 | candidateCount;
+                candidateCount++;
+            }
+            Arrays.sort(candidates, 0, candidateCount);
+
+            for(int vertex = 0; vertex < vertexCount; vertex++)
+                collapseTarget[vertex] = vertex;
+            Arrays.fill(touched, false);
+
+            // Every collapse removes about two triangles, the pass stops once the target is reached
+            int trianglesToRemove = (indexCount - targetIndexCount + 2) / 3;
+            int collapses = 0;
+            for(int candidate = 0; candidate < candidateCount && trianglesToRemove > 0; candidate++) {
+                final int index = (int) candidates[candidate];
+                final int from = candidateFrom[index], to = candidateTo[index];
+                if(touched[from] || touched[to] || flips(current, triangleOffsets, vertexTriangles, from, to))
+                    continue;
+
+                collapseTarget[from] = to;
+                for(int offset = triangleOffsets[from]; offset < triangleOffsets[from + 1]; offset++) {
+                    final int triangle = vertexTriangles[offset];
+                    touched[current[triangle * 3]] = true;
+                    touched[current[triangle * 3 + 1]] = true;
+                    touched[current[triangle * 3 + 2]] = true;
+                    if(current[triangle * 3] == to || current[triangle * 3 + 1] == to || current[triangle * 3 + 2] == to)
+                        trianglesToRemove--;
+                }
+                for(int component = 0; component < QUADRIC_SIZE; component++)
+                    quadrics[to * QUADRIC_SIZE + component] += quadrics[from * QUADRIC_SIZE + component];
+                error = Math.max(error, Float.intBitsToFloat((int) (candidates[candidate] >>> 32)));
+                collapses++;
+            }
+
+            if(collapses == 0)
+                break;
+
+            // Apply the collapses and drop the triangles that became degenerate
+            int kept = 0;
+            for(int triangle = 0; triangle < indexCount; triangle += 3) {
+                final int a = collapseTarget[current[triangle]];
+                final int b = collapseTarget[current[triangle + 1]];
+                final int c = collapseTarget[current[triangle + 2]];
+                if(a == b || b == c || a == c)
+                    continue;
+
+                current[kept++] = a;
+                current[kept++] = b;
+                current[kept++] = c;
+            }
+            indexCount = kept;
+        }
+
+        if(resultError != null)
+            resultError[0] = (float) Math.sqrt(error);
+
+        final short[] result = new short[indexCount];
+        for(int index = 0; index < indexCount; index++)
+            result[index] = (short) current[index];
+        return result;
+    }
+
+    /**
+     * Returns the cost of collapsing one vertex onto another, or infinity if the collapse is not
+     * allowed. Flipped triangles are only checked for the collapses actually attempted, as the
+     * check is more expensive than the quadric.
+     */
+    private double collapseCost(final double[] quadrics, final int[] indices, final int[] triangleOffsets,
+                                final int[] vertexTriangles, final int from, final int to) {
+        final int kind = kinds[from];
+        if(kind == LOCKED || (kind == BORDER && (kinds[to] == MANIFOLD || !isBorderEdge(indices, triangleOffsets,
+                vertexTriangles, from, to))))
+            return Double.POSITIVE_INFINITY;
+
+        return evaluate(quadrics, from, positions[to * 3], positions[to * 3 + 1], positions[to * 3 + 2]);
+    }
+
+    /**
+     * Returns whether collapsing one vertex onto another would flip one of the remaining triangles
+     * around it.
+     */
+    private boolean flips(final int[] indices, final int[] triangleOffsets, final int[] vertexTriangles,
+                          final int from, final int to) {
+        final double toX = positions[to * 3], toY = positions[to * 3 + 1], toZ = positions[to * 3 + 2];
+        for(int offset = triangleOffsets[from]; offset < triangleOffsets[from + 1]; offset++) {
+            final int triangle = vertexTriangles[offset] * 3;
+            final int a = indices[triangle], b = indices[triangle + 1], c = indices[triangle + 2];
+            if(a == to || b == to || c == to)
+                continue;
+
+            if(flips(a, b, c, from, toX, toY, toZ))
+                return true;
+        }
+        return false;
+    }
+
+    /**
+     * Returns whether an edge between two border vertices is used by a single triangle. Positions
+     * are compared, so triangles on the other side of a seam count as well.
+     */
+    private boolean isBorderEdge(final int[] indices, final int[] triangleOffsets, final int[] vertexTriangles,
+                                        final int from, final int to) {
+        int sharedTriangles = 0;
+        for(int offset = triangleOffsets[from]; offset < triangleOffsets[from + 1]; offset++) {
+            final int triangle = vertexTriangles[offset] * 3;
+            final int target = canonical[to];
+            if(canonical[indices[triangle]] == target || canonical[indices[triangle + 1]] == target
+                    || canonical[indices[triangle + 2]] == target)
+                sharedTriangles++;
+        }
+        return sharedTriangles == 1;
+    }
+
+    private boolean flips(final int a, final int b, final int c, final int moved, final double x, final double y,
+                          final double z) {
+        final double ax = positions[a * 3], ay = positions[a * 3 + 1], az = positions[a * 3 + 2];
+        final double bx = positions[b * 3], by = positions[b * 3 + 1], bz = positions[b * 3 + 2];
+        final double cx = positions[c * 3], cy = positions[c * 3 + 1], cz = positions[c * 3 + 2];
+        final double beforeX = (by - ay) * (cz - az) - (bz - az) * (cy - ay);
+        final double beforeY = (bz - az) * (cx - ax) - (bx - ax) * (cz - az);
+        final double beforeZ = (bx - ax) * (cy - ay) - (by - ay) * (cx - ax);
+
+        final double nax = a == moved ? x : ax, nay = a == moved ? y : ay, naz = a == moved ? z : az;
+        final double nbx = b == moved ? x : bx, nby = b == moved ? y : by, nbz = b == moved ? z : bz;
+        final double ncx = c == moved ? x : cx, ncy = c == moved ? y : cy, ncz = c == moved ? z : cz;
+        final double afterX = (nby - nay) * (ncz - naz) - (nbz - naz) * (ncy - nay);
+        final double afterY = (nbz - naz) * (ncx - nax) - (nbx - nax) * (ncz - naz);
+        final double afterZ = (nbx - nax) * (ncy - nay) - (nby - nay) * (ncx - nax);
+
+        final double beforeLength = Math.sqrt(beforeX * beforeX + beforeY * beforeY + beforeZ * beforeZ);
+        final double afterLength = Math.sqrt(afterX * afterX + afterY * afterY + afterZ * afterZ);
+        if(beforeLength == 0.0)
+            return false;
+
+        // Triangles collapsing to slivers count as flipped as well
+        return afterLength == 0.0
+                || (afterX * beforeX + afterY * beforeY + afterZ * beforeZ) / (afterLength * beforeLength) < 0.2;
+    }
+}
@@ -0,0 +1,181 @@
+package com.tembins.tagdk.graphics.resource.mesh;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashMap;
+
+/**
+ * This class parses Wavefront OBJ sources into MeshData. Only the geometry statements v, vt, vn
+ * and f are interpreted, everything else (materials, groups, smoothing) is ignored. Faces with
+ * more than three corners are triangulated as a fan.
+ */
+public final class ObjParser {
+
+    private static final int MAX_VERTICES = 0xFFFF;
+    private static final int KEY_BITS = 21;
+    private static final int MAX_SOURCE_ELEMENTS = (1 << KEY_BITS) - 1;
+
+    /**
+     * Parses the given OBJ source. Every distinct position/texture coordinate/normal combination
+     * referenced by a face becomes one vertex of the resulting mesh. Missing texture coordinates
+     * or normals are filled with zeros.
+     *
+     * @param source The OBJ source text.
+     * @return The parsed mesh data.
+     * @throws IOException If the source is malformed or the mesh exceeds the short index range.
+     */
+    public static MeshData parse(final String source) throws IOException {
+        final FloatArray sourcePositions = new FloatArray();
+        final FloatArray sourceTextureCoordinates = new FloatArray();
+        final FloatArray sourceNormals = new FloatArray();
+
+        final FloatArray positions = new FloatArray();
+        final FloatArray textureCoordinates = new FloatArray();
+        final FloatArray normals = new FloatArray();
+        short[] indices = new short[64];
+        int indexCount = 0;
+
+        final HashMap<Long, Integer> vertexIndices = new HashMap<>();
+        final String[] lines = source.split("\n");
+
+        for(int lineIndex = 0; lineIndex < lines.length; lineIndex++) {
+            final String line = lines[lineIndex].trim();
+            if(line.isEmpty() || line.charAt(0) == '#')
+                continue;
+
+            final String[] tokens = line.split("\\s+");
+            try {
+                switch(tokens[0]) {
+                    case "v":
+                        sourcePositions.add(Float.parseFloat(tokens[1]));
+                        sourcePositions.add(Float.parseFloat(tokens[2]));
+                        sourcePositions.add(Float.parseFloat(tokens[3]));
+                        break;
+                    case "vt":
+                        sourceTextureCoordinates.add(Float.parseFloat(tokens[1]));
+                        sourceTextureCoordinates.add(Float.parseFloat(tokens[2]));
+                        break;
+                    case "vn":
+                        sourceNormals.add(Float.parseFloat(tokens[1]));
+                        sourceNormals.add(Float.parseFloat(tokens[2]));
+                        sourceNormals.add(Float.parseFloat(tokens[3]));
+                        break;
+                    case "f":
+                        if(tokens.length < 4)
+                            throw new IOException("Line " + (lineIndex + 1) + ": Face with less than three corners");
+
+                        final int[] corners = new int[tokens.length - 1];
+                        for(int corner = 0; corner < corners.length; corner++) {
+                            final String[] parts = tokens[corner + 1].split("/", -1);
+                            final int position = resolveIndex(parts[0], sourcePositions.size / 3, lineIndex);
+                            final int textureCoordinate = parts.length > 1 && !parts[1].isEmpty() ?
+                                    resolveIndex(parts[1], sourceTextureCoordinates.size / 2, lineIndex) : -1;
+                            final int normal = parts.length > 2 && !parts[2].isEmpty() ?
+                                    resolveIndex(parts[2], sourceNormals.size / 3, lineIndex) : -1;
+
+                            final long key = ((long) position << (2 * KEY_BITS))
+                                    | ((long) (textureCoordinate + 1) << KEY_BITS) | (normal + 1);
+                            Integer vertexIndex = vertexIndices.get(key);
+
+                            if(vertexIndex == null) {
+                                vertexIndex = positions.size / 3;
+                                if(vertexIndex >= MAX_VERTICES)
+                                    throw new IOException("Mesh exceeds " + MAX_VERTICES + " vertices");
+
+                                vertexIndices.put(key, vertexIndex);
+                                positions.add(sourcePositions.data, position * 3, 3);
+
+                                if(textureCoordinate >= 0)
+                                    textureCoordinates.add(sourceTextureCoordinates.data, textureCoordinate * 2, 2);
+                                else
+                                    textureCoordinates.addZeros(2);
+
+                                if(normal >= 0)
+                                    normals.add(sourceNormals.data, normal * 3, 3);
+                                else
+                                    normals.addZeros(3);
+                            }
+
+                            corners[corner] = vertexIndex;
+                        }
+
+                        final int triangleCount = corners.length - 2;
+                        if(indexCount + triangleCount * 3 > indices.length)
+                            indices = Arrays.copyOf(indices, Math.max(indices.length * 2, indexCount + triangleCount * 3));
+
+                        for(int triangle = 0; triangle < triangleCount; triangle++) {
+                            indices[indexCount++] = (short) corners[0];
+                            indices[indexCount++] = (short) corners[triangle + 1];
+                            indices[indexCount++] = (short) corners[triangle + 2];
+                        }
+                        break;
+                    default:
+                        break;
+                }
+            } catch(NumberFormatException | ArrayIndexOutOfBoundsException exception) {
+                throw new IOException("Line " + (lineIndex + 1) + ": Malformed statement \"" + line + "\"");
+            }
+        }
+
+        return new MeshData(positions.toArray(), textureCoordinates.toArray(), normals.toArray(),
+                Arrays.copyOf(indices, indexCount));
+    }
+
+    /**
+     * Converts a one based, possibly negative (relative) OBJ index to a zero based index.
+     *
+     * @param token The index token.
+     * @param count The amount of elements defined so far.
+     * @param lineIndex The zero based line index, used for error reporting.
+     * @return The zero based index.
+     * @throws IOException If the index does not reference a defined element.
+     */
+    private static int resolveIndex(final String token, final int count, final int lineIndex) throws IOException {
+        // The vertex keys combine three source indices of 21 bits each, larger ones would collide
+        if(count > MAX_SOURCE_ELEMENTS)
+            throw new IOException("Line " + (lineIndex + 1) + ": More than " + MAX_SOURCE_ELEMENTS
+                    + " source elements of one kind");
+
+        final int index = Integer.parseInt(token);
+        final int resolved = index < 0 ? count + index : index - 1;
+
+        if(resolved < 0 || resolved >= count)
+            throw new IOException("Line " + (lineIndex + 1) + ": Index " + index + " out of range");
+
+        return resolved;
+    }
+
+    /**
+     * A minimal growable float array, to avoid boxing every parsed value.
+     */
+    private static final class FloatArray {
+
+        private float[] data = new float[64];
+        private int size;
+
+        private void ensureCapacity(final int capacity) {
+            if(capacity > data.length)
+                data = Arrays.copyOf(data, Math.max(data.length * 2, capacity));
+        }
+
+        private void add(final float value) {
+            ensureCapacity(size + 1);
+            data[size++] = value;
+        }
+
+        private void add(final float[] source, final int offset, final int length) {
+            ensureCapacity(size + length);
+            System.arraycopy(source, offset, data, size, length);
+            size += length;
+        }
+
+        private void addZeros(final int length) {
+            ensureCapacity(size + length);
+            size += length;
+        }
+
+        private float[] toArray() {
+            return Arrays.copyOf(data, size);
+        }
+    }
+}
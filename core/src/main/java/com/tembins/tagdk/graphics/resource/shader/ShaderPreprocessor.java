@@ -0,0 +1,276 @@
+package com.tembins.tagdk.graphics.resource.shader;
+
+import com.tembins.tagdk.util.resource.ResourceProvider;
+import com.tembins.tagdk.util.resource.TextLoader;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.HashSet;
+
+/**
+ * Expands shader sources before compilation, so shared code lives in one place and feature
+ * variants do not need hand-copied files. Two things are done:
+ *
+ * <ul>
+ * <li>Lines of the form <code>#include "name"</code> are replaced by the source registered under
+ * that name. Every name is included once per shader, later includes of it are dropped, which
+ * makes include guards unnecessary and cyclic includes harmless. <code>#line</code> directives
+ * around the included code keep compiler errors pointing at the right line: included sources get
+ * the source string numbers 1, 2, ... in the order they are first included, the shader itself
+ * keeps 0.</li>
+ * <li>The given defines are injected as <code>#define</code> lines right after the
+ * <code>#version</code> directive, or at the top if there is none. Comments and blank lines in
+ * front of the directive are kept in place. A define is a name, optionally followed by whitespace
+ * and a value; defines without a value are defined as 1, so both #ifdef and #if work with them.
+ * A <code>#line</code> directive follows the defines, so compiler errors still refer to the lines
+ * of the original source.</li>
+ * </ul>
+ *
+ * Raw sources and preprocessed results of resources are cached in memory, so every combination of
+ * resource and defines is only read and expanded once. All methods are thread safe.
+ */
+public final class ShaderPreprocessor {
+
+    private static final String INCLUDE = "#include";
+    private static final String VERSION = "#version";
+
+    private final HashMap<String, Integer> includeResources = new HashMap<>();
+    private final HashMap<String, String> includeSources = new HashMap<>();
+    private final HashMap<Integer, String> resourceSources = new HashMap<>();
+    private final HashMap<String, String> preprocessedSources = new HashMap<>();
+
+    /**
+     * Registers a resource to be included under the given name.
+     *
+     * @param name The name used in #include directives.
+     * @param resourceID The resource ID of the included source.
+     */
+    public synchronized void addInclude(final String name, final int resourceID) {
+        includeResources.put(name, resourceID);
+        includeSources.remove(name);
+        preprocessedSources.clear();
+    }
+
+    /**
+     * Registers a source to be included under the given name, e.g. Skinning.VERTEX_SHADER_SOURCE.
+     *
+     * @param name The name used in #include directives.
+     * @param source The included source.
+     */
+    public synchronized void addInclude(final String name, final String source) {
+        includeResources.remove(name);
+        includeSources.put(name, source);
+        preprocessedSources.clear();
+    }
+
+    /**
+     * Preprocesses a shader resource, returning the cached result if the same resource was already
+     * preprocessed with the same defines in the same order.
+     *
+     * @param resources The provider to read the shader and its includes from.
+     * @param resourceID The resource ID of the shader.
+     * @param defines The defines to inject, either names or names followed by a value.
+     * @return The preprocessed source.
+     * @throws IOException If a resource can not be read, or an include is unknown or malformed.
+     */
+    public synchronized String preprocess(final ResourceProvider resources, final int resourceID,
+                                          final String... defines) throws IOException {
+        final StringBuilder key = new StringBuilder().append(resourceID);
+        for(final String define : defines)
+            key.append('\n').append(define);
+
+        String preprocessed = preprocessedSources.get(key.toString());
+        if(preprocessed == null) {
+            String source = resourceSources.get(resourceID);
+            if(source == null) {
+                source = TextLoader.loadText(resources.openResource(resourceID));
+                resourceSources.put(resourceID, source);
+            }
+            preprocessed = preprocess(resources, source, defines);
+            preprocessedSources.put(key.toString(), preprocessed);
+        }
+        return preprocessed;
+    }
+
+    /**
+     * Preprocesses a shader source without caching the result.
+     *
+     * @param resources The provider to read included resources from.
+     * @param source The source of the shader.
+     * @param defines The defines to inject, either names or names followed by a value.
+     * @return The preprocessed source.
+     * @throws IOException If an included resource can not be read, or an include is unknown or
+     *                     malformed.
+     */
+    public synchronized String preprocess(final ResourceProvider resources, final String source,
+                                          final String... defines) throws IOException {
+        final StringBuilder output = new StringBuilder(source.length() + 64 * defines.length + 64);
+
+        // The version directive has to come first, so the defines go below it
+        int bodyStart = 0;
+        int version = 100;
+        final int versionStart = findVersion(source);
+        if(versionStart >= 0) {
+            final int lineEnd = source.indexOf('\n', versionStart);
+            bodyStart = lineEnd < 0 ? source.length() : lineEnd + 1;
+            output.append(source, 0, bodyStart);
+            if(lineEnd < 0)
+                output.append('\n');
+            version = parseVersion(source.substring(versionStart + VERSION.length(), bodyStart));
+        }
+
+        for(final String define : defines) {
+            final String trimmed = define.trim();
+            int nameEnd = 0;
+            while(nameEnd < trimmed.length() && !Character.isWhitespace(trimmed.charAt(nameEnd)))
+                nameEnd++;
+
+            output.append("#define ").append(trimmed, 0, nameEnd).append(' ');
+            if(nameEnd == trimmed.length())
+                output.append('1');
+            else
+                output.append(trimmed.substring(nameEnd).trim());
+            output.append('\n');
+        }
+
+        int bodyLine = 1;
+        for(int index = 0; index < bodyStart; index++)
+            if(source.charAt(index) == '\n')
+                bodyLine++;
+
+        // Keeps the line numbers in compiler errors matching the source
+        if(defines.length > 0)
+            output.append("#line ").append(lineDirective(bodyLine, version)).append('\n');
+
+        expand(resources, source, bodyStart, bodyLine, 0, version, false, output, new HashSet<String>());
+        return output.toString();
+    }
+
+    /**
+     * Returns the number to pass to #line for the line after the directive to get the given
+     * number. GLSL ES 1.00 numbers that line n + 1, later versions n.
+     */
+    private static int lineDirective(final int nextLine, final int version) {
+        return version >= 300 ? nextLine : nextLine - 1;
+    }
+
+    /**
+     * Returns the index of the #version directive, which may only be preceded by whitespace and
+     * comments, or -1 if there is none.
+     */
+    private static int findVersion(final String source) {
+        int index = 0;
+        while(index < source.length()) {
+            if(Character.isWhitespace(source.charAt(index))) {
+                index++;
+            } else if(source.startsWith("//", index)) {
+                final int lineEnd = source.indexOf('\n', index);
+                if(lineEnd < 0)
+                    return -1;
+                index = lineEnd + 1;
+            } else if(source.startsWith("/*", index)) {
+                final int commentEnd = source.indexOf("*/", index + 2);
+                if(commentEnd < 0)
+                    return -1;
+                index = commentEnd + 2;
+            } else {
+                return source.startsWith(VERSION, index) ? index : -1;
+            }
+        }
+        return -1;
+    }
+
+    private static int parseVersion(final String arguments) {
+        final String trimmed = arguments.trim();
+        int digits = 0;
+        while(digits < trimmed.length() && Character.isDigit(trimmed.charAt(digits)))
+            digits++;
+
+        return digits == 0 ? 100 : Integer.parseInt(trimmed.substring(0, digits));
+    }
+
+    private void expand(final ResourceProvider resources, final String source, final int start,
+                        final int firstLine, final int sourceString, final int version, final boolean numberFirstLine,
+                        final StringBuilder output, final HashSet<String> included) throws IOException {
+        // Set whenever the output lines stopped matching the source lines, resolved by a #line
+        // directive in front of the next copied line
+        boolean outOfLine = numberFirstLine;
+        int lineNumber = firstLine;
+        int lineStart = start;
+        while(lineStart < source.length()) {
+            int lineEnd = source.indexOf('\n', lineStart);
+            if(lineEnd < 0)
+                lineEnd = source.length();
+
+            final String line = source.substring(lineStart, lineEnd).trim();
+            if(isInclude(line)) {
+                final String name = parseIncludeName(line);
+                if(included.add(name)) {
+                    expand(resources, getInclude(resources, name), 0, 1, included.size(), version, true,
+                            output, included);
+                }
+                outOfLine = true;
+            } else {
+                if(outOfLine) {
+                    output.append("#line ").append(lineDirective(lineNumber, version)).append(' ')
+                            .append(sourceString).append('\n');
+                    outOfLine = false;
+                }
+                output.append(source, lineStart, lineEnd).append('\n');
+            }
+            lineStart = lineEnd + 1;
+            lineNumber++;
+        }
+    }
+
+    private static boolean isInclude(final String line) {
+        if(!line.startsWith(INCLUDE))
+            return false;
+        if(line.length() == INCLUDE.length())
+            return true;
+
+        final char next = line.charAt(INCLUDE.length());
+        return Character.isWhitespace(next) || next == '"' || next == '<';
+    }
+
+    private static String parseIncludeName(final String line) throws IOException {
+        final String argument = line.substring(INCLUDE.length()).trim();
+        if(argument.length() < 3 || !(argument.charAt(0) == '"' && argument.endsWith("\"")
+                || argument.charAt(0) == '<' && argument.endsWith(">")))
+            throw new IOException("Malformed include directive: " + line);
+
+        return argument.substring(1, argument.length() - 1);
+    }
+
+    private String getInclude(final ResourceProvider resources, final String name) throws IOException {
+        String source = includeSources.get(name);
+        if(source == null) {
+            final Integer resourceID = includeResources.get(name);
+            if(resourceID == null)
+                throw new IOException("Unknown include \"" + name + "\"");
+
+            source = TextLoader.loadText(resources.openResource(resourceID));
+            includeSources.put(name, source);
+        }
+        return source;
+    }
+
+    /**
+     * Returns the amount of cached preprocessed sources.
+     *
+     * @return The cached source count.
+     */
+    public synchronized int getCachedSourceCount() {
+        return preprocessedSources.size();
+    }
+
+    /**
+     * Drops all cached sources, e.g. after the shader resources changed.
+     */
+    public synchronized void clearCache() {
+        resourceSources.clear();
+        preprocessedSources.clear();
+        for(final String name : includeResources.keySet())
+            includeSources.remove(name);
+    }
+}
@@ -0,0 +1,155 @@
+package com.tembins.tagdk.graphics.resource.shader;
+
+import com.tembins.tagdk.graphics.backend.GraphicsBackend;
+import com.tembins.tagdk.graphics.resource.tasks.ResourceLoadingException;
+import com.tembins.tagdk.graphics.resource.tasks.ShaderLoadingTask;
+import com.tembins.tagdk.util.resource.ResourceProvider;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+
+/**
+ * Manages the permutations of a shader program built from one vertex and one fragment shader
+ * with optional features, e.g. fog, skinning or normal mapping. Each feature is a define the
+ * shaders test with #ifdef, and a variant is identified by a bitmask of enabled features, bit i
+ * enabling the i-th feature name given to the constructor.
+ *
+ * Variants are compiled the first time they are requested, or ahead of time with prewarm to avoid
+ * compiling in the middle of gameplay. Compiled programs are kept until release, so no variant is
+ * ever compiled twice. Materials should only enable the features they use, which strips the
+ * unused code from their shaders. This class must be used on the thread owning the graphics
+ * context.
+ */
+public final class ShaderVariants {
+
+    public static final int MAX_FEATURES = 32;
+
+    private final ShaderPreprocessor preprocessor;
+    private final int vertexShaderResourceID, fragmentShaderResourceID;
+    private final String[] features;
+    private final HashMap<Integer, Integer> programs = new HashMap<>();
+
+    /**
+     * Initializes the variants with the following parameters:
+     *
+     * @param preprocessor The preprocessor expanding the shader sources.
+     * @param vertexShaderResourceID The resource ID of the vertex shader.
+     * @param fragmentShaderResourceID The resource ID of the fragment shader.
+     * @param features The names of the feature defines, at most MAX_FEATURES.
+     */
+    public ShaderVariants(final ShaderPreprocessor preprocessor, final int vertexShaderResourceID,
+                          final int fragmentShaderResourceID, final String... features) {
+        if(features.length > MAX_FEATURES)
+            throw new IllegalArgumentException("At most " + MAX_FEATURES + " features are supported");
+
+        this.preprocessor = preprocessor;
+        this.vertexShaderResourceID = vertexShaderResourceID;
+        this.fragmentShaderResourceID = fragmentShaderResourceID;
+        this.features = features.clone();
+    }
+
+    /**
+     * Returns the mask enabling the given features.
+     *
+     * @param enabledFeatures The names of the features to enable.
+     * @return The feature mask.
+     * @throws IllegalArgumentException If a feature is unknown.
+     */
+    public int getFeatureMask(final String... enabledFeatures) {
+        int mask = 0;
+        outer:
+        for(final String feature : enabledFeatures) {
+            for(int bit = 0; bit < features.length; bit++) {
+                if(features[bit].equals(feature)) {
+                    mask |= 1 << bit;
+                    continue outer;
+                }
+            }
+            throw new IllegalArgumentException("Unknown feature " + feature);
+        }
+        return mask;
+    }
+
+    /**
+     * Returns the defines enabled by a feature mask, in the order of the features.
+     *
+     * @param featureMask The feature mask.
+     * @return The names of the enabled features.
+     */
+    public String[] getDefines(final int featureMask) {
+        if(features.length < MAX_FEATURES && featureMask >>> features.length != 0)
+            throw new IllegalArgumentException("Mask " + Integer.toBinaryString(featureMask)
+                    + " enables undefined features");
+
+        final ArrayList<String> defines = new ArrayList<>(Integer.bitCount(featureMask));
+        for(int bit = 0; bit < features.length; bit++)
+            if((featureMask & 1 << bit) != 0)
+                defines.add(features[bit]);
+        return defines.toArray(new String[defines.size()]);
+    }
+
+    /**
+     * Returns the program of a variant, compiling it if this is the first request for it.
+     *
+     * @param resources The provider to read the shaders from.
+     * @param graphics The backend to compile the program with.
+     * @param featureMask The enabled features.
+     * @return The OpenGL ID of the program.
+     * @throws ResourceLoadingException If preprocessing, compiling or linking fails.
+     */
+    public int getProgram(final ResourceProvider resources, final GraphicsBackend graphics,
+                          final int featureMask) throws ResourceLoadingException {
+        final Integer program = programs.get(featureMask);
+        if(program != null)
+            return program;
+
+        final int compiled = new ShaderLoadingTask(vertexShaderResourceID, fragmentShaderResourceID,
+                preprocessor, getDefines(featureMask)).load(resources, graphics);
+        programs.put(featureMask, compiled);
+        return compiled;
+    }
+
+    /**
+     * Compiles the given variants unless they are already compiled, e.g. on a loading screen.
+     *
+     * @param resources The provider to read the shaders from.
+     * @param graphics The backend to compile the programs with.
+     * @param featureMasks The variants to compile.
+     * @throws ResourceLoadingException If preprocessing, compiling or linking fails.
+     */
+    public void prewarm(final ResourceProvider resources, final GraphicsBackend graphics,
+                        final int... featureMasks) throws ResourceLoadingException {
+        for(final int featureMask : featureMasks)
+            getProgram(resources, graphics, featureMask);
+    }
+
+    /**
+     * Returns whether a variant is already compiled.
+     *
+     * @param featureMask The enabled features.
+     * @return True if getProgram returns without compiling.
+     */
+    public boolean isCompiled(final int featureMask) {
+        return programs.containsKey(featureMask);
+    }
+
+    /**
+     * Returns the amount of compiled variants.
+     *
+     * @return The compiled variant count.
+     */
+    public int getCompiledCount() {
+        return programs.size();
+    }
+
+    /**
+     * Deletes all compiled programs.
+     *
+     * @param graphics The backend the programs were compiled with.
+     */
+    public void release(final GraphicsBackend graphics) {
+        for(final int program : programs.values())
+            graphics.deleteProgram(program);
+        programs.clear();
+    }
+}
@@ -0,0 +1,10 @@
+package com.tembins.tagdk.graphics.resource.tasks;
+
+import com.tembins.tagdk.graphics.backend.GraphicsBackend;
+import com.tembins.tagdk.util.resource.ResourceProvider;
+
+public interface LoadingTask {
+
+    int load(final ResourceProvider resources, final GraphicsBackend graphics) throws ResourceLoadingException;
+    ResourceType getLoadedResourceType();
+}
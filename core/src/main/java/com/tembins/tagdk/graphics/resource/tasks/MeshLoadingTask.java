@@ -0,0 +1,259 @@
+package com.tembins.tagdk.graphics.resource.tasks;
+
+import com.tembins.tagdk.graphics.backend.GLConstants;
+import com.tembins.tagdk.graphics.backend.GraphicsBackend;
+import com.tembins.tagdk.graphics.resource.mesh.MeshData;
+import com.tembins.tagdk.graphics.resource.mesh.MeshLods;
+import com.tembins.tagdk.graphics.resource.mesh.ObjParser;
+import com.tembins.tagdk.graphics.util.ErrorCheckLevel;
+import com.tembins.tagdk.graphics.util.OpenGLError;
+import com.tembins.tagdk.math.BoundingBox;
+import com.tembins.tagdk.math.BoundingSphere;
+import com.tembins.tagdk.util.resource.ResourceProvider;
+import com.tembins.tagdk.util.resource.TextLoader;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.ShortBuffer;
+
+/**
+ * This class represents a task which, when executed, loads a mesh from the resource directory.
+ * Optionally, levels of detail are generated while loading; their indices are uploaded into the
+ * element buffer of the mesh one after another and can be drawn with the offsets of getLods().
+ */
+public final class MeshLoadingTask implements LoadingTask {
+
+    /**
+     * The largest error of generated levels of detail, relative to the bounding sphere radius.
+     */
+    public static final float DEFAULT_MAX_LOD_ERROR = 0.05f;
+
+    private final int resourceID;
+    private final int maxLodCount;
+    private BoundingBox boundingBox;
+    private BoundingSphere boundingSphere;
+    private MeshLods lods;
+
+    /**
+     * Initializes the task with the following parameters:
+     *
+     * @param resourceID The resource to load the mesh from.
+     */
+    public MeshLoadingTask(final int resourceID) {
+        this(resourceID, 1);
+    }
+
+    /**
+     * Initializes the task with the following parameters:
+     *
+     * @param resourceID The resource to load the mesh from.
+     * @param maxLodCount The largest amount of levels of detail to generate, 1 to only load the
+     *                    original mesh.
+     */
+    public MeshLoadingTask(final int resourceID, final int maxLodCount) {
+        if(maxLodCount < 1)
+            throw new IllegalArgumentException("At least one level of detail is needed");
+
+        this.resourceID = resourceID;
+        this.maxLodCount = maxLodCount;
+    }
+
+    /**
+     * Executes the task, thus loading the mesh. Unless OpenGL error checks are turned off, this
+     * method will erase all recent OpenGL errors as it tries to give as much feedback as possible
+     * should the loading fail. The bounds of the mesh are computed while loading and can be
+     * queried afterwards.
+     *
+     * @param resources The provider for accessing the resources.
+     * @param graphics The backend to create the mesh with.
+     * @return The OpenGL ID of the loaded mesh.
+     * @throws ResourceLoadingException If something goes wrong.
+     */
+    @Override
+    public int load(final ResourceProvider resources, final GraphicsBackend graphics) throws ResourceLoadingException {
+        graphics.clearErrors(ErrorCheckLevel.LOAD_ONLY);
+
+        final MeshData meshData;
+        try {
+            final String objSource = TextLoader.loadText(resources.openResource(resourceID));
+            meshData = ObjParser.parse(objSource);
+        } catch (IOException exception) {
+            throw new ResourceLoadingException(ResourceType.MESH, resourceID, exception);
+        }
+
+        boundingBox = BoundingBox.fromPositions(meshData.positions);
+        boundingSphere = BoundingSphere.fromPositions(meshData.positions);
+        lods = maxLodCount > 1
+                ? MeshLods.generate(meshData.positions, meshData.indices, maxLodCount, MeshLods.DEFAULT_REDUCTION,
+                        boundingSphere.radius * DEFAULT_MAX_LOD_ERROR)
+                : new MeshLods(meshData.indices, new int[] { 0, meshData.indices.length }, new float[] { 0.0f });
+
+        final int vaoID = loadVAO(graphics, meshData, lods.indices);
+
+        final OpenGLError openGLError = graphics.checkError(ErrorCheckLevel.LOAD_ONLY);
+        if(openGLError != null)
+            throw new ResourceLoadingException(ResourceType.MESH, resourceID, openGLError);
+
+        graphics.countLoadedResource();
+        return vaoID;
+    }
+
+    /**
+     * Returns the axis aligned bounding box of the mesh in model space.
+     *
+     * @return The bounding box, or null if the mesh was not loaded yet.
+     */
+    public BoundingBox getBoundingBox() {
+        return boundingBox;
+    }
+
+    /**
+     * Returns the bounding sphere of the mesh in model space.
+     *
+     * @return The bounding sphere, or null if the mesh was not loaded yet.
+     */
+    public BoundingSphere getBoundingSphere() {
+        return boundingSphere;
+    }
+
+    /**
+     * Returns the levels of detail of the mesh, describing the ranges of the element buffer to
+     * draw for every level. Without generated levels, the only level is the original mesh.
+     *
+     * @return The levels of detail, or null if the mesh was not loaded yet.
+     */
+    public MeshLods getLods() {
+        return lods;
+    }
+
+    /**
+     * Uploads mesh data which was not loaded from a resource, e.g. procedurally generated or
+     * skinned meshes. The attributes are bound to the locations defined in MeshData.
+     *
+     * @param graphics The backend to create the mesh with.
+     * @param meshData The mesh to upload.
+     * @return The OpenGL ID of the vertex array.
+     */
+    public static int upload(final GraphicsBackend graphics, final MeshData meshData) {
+        return loadVAO(graphics, meshData, meshData.indices);
+    }
+
+    // TODO Check if stride is correct or needs to be smth else
+    private static int loadVAO(final GraphicsBackend graphics, final MeshData meshData, final short[] indices) {
+        final int vaoID = graphics.createVertexArray();
+        graphics.bindVertexArray(vaoID);
+
+        loadVBO(graphics, meshData.positions, MeshData.POSITION_SIZE, MeshData.POSITION_ATTRIBUTE);
+        loadVBO(graphics, meshData.textureCoordinates, MeshData.TEXTURE_COORDINATE_SIZE,
+                MeshData.TEXTURE_COORDINATE_ATTRIBUTE);
+        loadVBO(graphics, meshData.normals, MeshData.NORMAL_SIZE, MeshData.NORMAL_ATTRIBUTE);
+        if(meshData.isSkinned())
+            loadSkinVBO(graphics, meshData.joints, meshData.weights);
+
+        // The element buffer binding is part of the VAO state, so it has to be bound in here
+        loadElementVBO(graphics, indices);
+
+        graphics.bindVertexArray(0);
+        return vaoID;
+    }
+
+    private static final int BYTES_PER_FLOAT = 4;
+
+    private static int loadVBO(final GraphicsBackend graphics, final float[] data, final int elementsPerVertex,
+                               final int vboIndex) {
+        final int vboID = graphics.createBuffer();
+
+        // TODO Check if id not 0
+
+        graphics.bindBuffer(GLConstants.GL_ARRAY_BUFFER, vboID);
+
+        final int dataSizeBytes = data.length * BYTES_PER_FLOAT;
+        final FloatBuffer dataBuffer = createFloatBuffer(data);
+        graphics.bufferData(GLConstants.GL_ARRAY_BUFFER, dataSizeBytes, dataBuffer, GLConstants.GL_STATIC_DRAW);
+
+        // TODO Check if this call must come after all other VBOs (including indices) are bound?
+        graphics.enableVertexAttribArray(vboIndex);
+        graphics.vertexAttribPointer(vboIndex, elementsPerVertex, GLConstants.GL_FLOAT, false, 0, 0);
+
+        return vboID;
+    }
+
+    /**
+     * Uploads joint indices and weights interleaved into a single buffer, four unsigned bytes each.
+     * Weights are normalized bytes, which keeps a skinned vertex 8 bytes larger instead of 32.
+     */
+    private static int loadSkinVBO(final GraphicsBackend graphics, final byte[] joints, final float[] weights) {
+        final int vboID = graphics.createBuffer();
+        graphics.bindBuffer(GLConstants.GL_ARRAY_BUFFER, vboID);
+
+        final int stride = MeshData.JOINTS_PER_VERTEX * 2;
+        final ByteBuffer dataBuffer = ByteBuffer.allocateDirect(joints.length * 2);
+        for(int offset = 0; offset < joints.length; offset += MeshData.JOINTS_PER_VERTEX) {
+            dataBuffer.put(joints, offset, MeshData.JOINTS_PER_VERTEX);
+            for(int weight = 0; weight < MeshData.JOINTS_PER_VERTEX; weight++)
+                dataBuffer.put((byte) Math.round(Math.max(0.0f, Math.min(1.0f, weights[offset + weight])) * 255.0f));
+        }
+        dataBuffer.flip();
+        graphics.bufferData(GLConstants.GL_ARRAY_BUFFER, dataBuffer.remaining(), dataBuffer,
+                GLConstants.GL_STATIC_DRAW);
+
+        graphics.enableVertexAttribArray(MeshData.JOINT_ATTRIBUTE);
+        graphics.vertexAttribPointer(MeshData.JOINT_ATTRIBUTE, MeshData.JOINTS_PER_VERTEX,
+                GLConstants.GL_UNSIGNED_BYTE, false, stride, 0);
+        graphics.enableVertexAttribArray(MeshData.WEIGHT_ATTRIBUTE);
+        graphics.vertexAttribPointer(MeshData.WEIGHT_ATTRIBUTE, MeshData.JOINTS_PER_VERTEX,
+                GLConstants.GL_UNSIGNED_BYTE, true, stride, MeshData.JOINTS_PER_VERTEX);
+
+        return vboID;
+    }
+
+    private static FloatBuffer createFloatBuffer(final float[] array) {
+        ByteBuffer byteBuffer = ByteBuffer.allocateDirect(array.length * BYTES_PER_FLOAT);
+        byteBuffer.order(ByteOrder.nativeOrder());
+
+        FloatBuffer floatBuffer = byteBuffer.asFloatBuffer();
+        floatBuffer.put(array);
+        floatBuffer.position(0);
+
+        return floatBuffer;
+    }
+
+    private static final int BYTES_PER_SHORT = 2;
+
+    private static int loadElementVBO(final GraphicsBackend graphics, final short[] indexData) {
+        final int vboID = graphics.createBuffer();
+
+        // TODO Check if id not 0
+
+        graphics.bindBuffer(GLConstants.GL_ELEMENT_ARRAY_BUFFER, vboID);
+
+        final int dataSizeBytes = indexData.length * BYTES_PER_SHORT;
+        final ShortBuffer dataBuffer = createShortBuffer(indexData);
+        graphics.bufferData(GLConstants.GL_ELEMENT_ARRAY_BUFFER, dataSizeBytes, dataBuffer, GLConstants.GL_STATIC_DRAW);
+
+        return vboID;
+    }
+
+    private static ShortBuffer createShortBuffer(final short[] array) {
+        ByteBuffer byteBuffer = ByteBuffer.allocateDirect(array.length * BYTES_PER_SHORT);
+        byteBuffer.order(ByteOrder.nativeOrder());
+
+        ShortBuffer shortBuffer = byteBuffer.asShortBuffer();
+        shortBuffer.put(array);
+        shortBuffer.position(0);
+
+        return shortBuffer;
+    }
+
+    /**
+     * Returns the resource type this task loads.
+     *
+     * @return ResourceType.MESH
+     */
+    @Override
+    public ResourceType getLoadedResourceType() {
+        return ResourceType.MESH;
+    }
+}
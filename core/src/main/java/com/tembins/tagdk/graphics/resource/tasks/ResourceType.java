@@ -4,5 +4,6 @@ public enum ResourceType {
 
     MESH,
     TEXTURE,
-    SHADER
+    SHADER,
+    SOUND
 }
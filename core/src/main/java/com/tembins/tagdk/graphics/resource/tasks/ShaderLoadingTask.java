@@ -0,0 +1,144 @@
+package com.tembins.tagdk.graphics.resource.tasks;
+
+import com.tembins.tagdk.graphics.backend.GLConstants;
+import com.tembins.tagdk.graphics.backend.GraphicsBackend;
+import com.tembins.tagdk.graphics.resource.shader.ShaderPreprocessor;
+import com.tembins.tagdk.graphics.util.ErrorCheckLevel;
+import com.tembins.tagdk.graphics.util.OpenGLError;
+import com.tembins.tagdk.util.resource.ResourceProvider;
+import com.tembins.tagdk.util.resource.TextLoader;
+
+import java.io.IOException;
+
+/**
+ * This class represents a task which, when executed, loads a shader program from its source files
+ * in the resource directory. If a ShaderPreprocessor is given, the sources are expanded by it
+ * before compilation.
+ */
+public final class ShaderLoadingTask implements LoadingTask{
+
+    private final int vertexShaderResourceID, fragmentShaderResourceID;
+    private final ShaderPreprocessor preprocessor;
+    private final String[] defines;
+
+    /**
+     * Initializes the task with the following parameters:
+     *
+     * @param vertexShaderResourceID The resource ID of the vertex shader to load.
+     * @param fragmentShaderResourceID The resource ID of the fragment shader to load.
+     */
+    public ShaderLoadingTask(final int vertexShaderResourceID, final int fragmentShaderResourceID) {
+        this(vertexShaderResourceID, fragmentShaderResourceID, null);
+    }
+
+    /**
+     * Initializes the task with the following parameters:
+     *
+     * @param vertexShaderResourceID The resource ID of the vertex shader to load.
+     * @param fragmentShaderResourceID The resource ID of the fragment shader to load.
+     * @param preprocessor The preprocessor expanding both sources, or null to compile them as they
+     *                     are.
+     * @param defines The defines the preprocessor injects into both sources.
+     */
+    public ShaderLoadingTask(final int vertexShaderResourceID, final int fragmentShaderResourceID,
+                             final ShaderPreprocessor preprocessor, final String... defines) {
+        this.vertexShaderResourceID = vertexShaderResourceID;
+        this.fragmentShaderResourceID = fragmentShaderResourceID;
+        this.preprocessor = preprocessor;
+        this.defines = defines.clone();
+    }
+
+    /**
+     * Executes the task, thus loading the shaders. Unless OpenGL error checks are turned off,
+     * this method will erase all recent OpenGL errors as it tries to give as much feedback as
+     * possible should the loading fail. Note that all
+     * errors regarding the shader program itself will be reported using the vertex shaders
+     * resource ID.
+     *
+     * @param resources The provider for accessing the resources.
+     * @param graphics The backend to create the shader program with.
+     * @return The OpenGL ID of the loaded shader program.
+     * @throws ResourceLoadingException If something goes wrong.
+     */
+    @Override
+    public int load(final ResourceProvider resources, final GraphicsBackend graphics) throws ResourceLoadingException {
+        graphics.clearErrors(ErrorCheckLevel.LOAD_ONLY);
+
+        final int vertexShaderID = loadShader(resources, graphics, GLConstants.GL_VERTEX_SHADER, vertexShaderResourceID);
+        final int fragmentShaderID;
+        try {
+            fragmentShaderID = loadShader(resources, graphics, GLConstants.GL_FRAGMENT_SHADER, fragmentShaderResourceID);
+        } catch(ResourceLoadingException exception) {
+            graphics.deleteShader(vertexShaderID);
+            throw exception;
+        }
+        final int programID = graphics.createProgram();
+
+        graphics.attachShader(programID, vertexShaderID);
+        graphics.attachShader(programID, fragmentShaderID);
+        graphics.linkProgram(programID);
+
+        if(graphics.getProgrami(programID, GLConstants.GL_LINK_STATUS) == GLConstants.GL_FALSE) {
+            final String log = graphics.getProgramInfoLog(programID);
+            graphics.deleteProgram(programID);
+            graphics.deleteShader(vertexShaderID);
+            graphics.deleteShader(fragmentShaderID);
+            throw new ResourceLoadingException(ResourceType.SHADER, vertexShaderResourceID, "Linking log: " + log);
+        }
+
+        // The shaders itself are no longer needed after linking
+        graphics.detachShader(programID, vertexShaderID);
+        graphics.detachShader(programID, fragmentShaderID);
+        graphics.deleteShader(vertexShaderID);
+        graphics.deleteShader(fragmentShaderID);
+
+        final OpenGLError openGLError = graphics.checkError(ErrorCheckLevel.LOAD_ONLY);
+        if(openGLError != null)
+            throw new ResourceLoadingException(ResourceType.SHADER, vertexShaderResourceID, openGLError);
+
+        graphics.countLoadedResource();
+        return programID;
+    }
+
+    /**
+     * Loads and compiles a single shader, either a vertex or fragment shader, from a given resource
+     * ID.
+     *
+     * @param resources The provider to access the resources.
+     * @param graphics The backend to create the shader with.
+     * @param shaderType The OpenGL ID of the shader type to load.
+     * @param resourceID The resource ID to load.
+     * @return The OpenGL ID of the loaded shader.
+     * @throws ResourceLoadingException If loading or compilation fails.
+     */
+    private int loadShader(final ResourceProvider resources, final GraphicsBackend graphics,
+                           final int shaderType, final int resourceID) throws ResourceLoadingException {
+        try {
+            final String shaderSource = preprocessor != null ? preprocessor.preprocess(resources, resourceID, defines)
+                    : TextLoader.loadText(resources.openResource(resourceID));
+            final int shaderID = graphics.createShader(shaderType);
+            graphics.shaderSource(shaderID, shaderSource);
+            graphics.compileShader(shaderID);
+
+            // Shader compilation will not result in an OpenGL error, separate checks needed:
+            if(graphics.getShaderi(shaderID, GLConstants.GL_COMPILE_STATUS) == GLConstants.GL_FALSE) {
+                final String log = graphics.getShaderInfoLog(shaderID);
+                throw new ResourceLoadingException(ResourceType.SHADER, resourceID, "Compilation log: " + log);
+            }
+
+            return shaderID;
+        } catch(IOException ioException) {
+            throw new ResourceLoadingException(ResourceType.SHADER, resourceID, ioException);
+        }
+    }
+
+    /**
+     * Returns the resource type this task loads.
+     *
+     * @return ResourceType.SHADER
+     */
+    @Override
+    public ResourceType getLoadedResourceType() {
+        return ResourceType.SHADER;
+    }
+}
@@ -0,0 +1,143 @@
+package com.tembins.tagdk.graphics.resource.tasks;
+
+import com.tembins.tagdk.graphics.backend.GLConstants;
+import com.tembins.tagdk.graphics.backend.GraphicsBackend;
+import com.tembins.tagdk.graphics.resource.TextureParameter;
+import com.tembins.tagdk.graphics.resource.texture.MipChain;
+import com.tembins.tagdk.graphics.resource.texture.TextureStreamer;
+import com.tembins.tagdk.graphics.util.ErrorCheckLevel;
+import com.tembins.tagdk.graphics.util.OpenGLError;
+import com.tembins.tagdk.util.resource.ImageData;
+import com.tembins.tagdk.util.resource.ResourceProvider;
+
+import java.io.IOException;
+
+/**
+ * This class represents a task which, when executed, loads a texture from the resource directory.
+ * In streaming mode, the task generates the mip levels of the texture and hands them to a
+ * TextureStreamer, which uploads the smallest levels right away and the others over the
+ * following frames.
+ */
+public final class TextureLoadingTask implements LoadingTask {
+
+    private final int resourceID;
+    private final ImageData image;
+    private final TextureParameter.WRAP wrapParameter;
+    private final TextureParameter.FILTER filterParameter;
+    private final TextureStreamer streamer;
+
+    /**
+     * Initializes the task with the following parameters:
+     *
+     * @param resourceID The ID of the resource to load as a texture.
+     * @param wrapParameter How the loaded texture should behave when exceeding its bounds.
+     * @param filterParameter How the loaded texture should behave when resizing.
+     */
+    public TextureLoadingTask(final int resourceID, final TextureParameter.WRAP wrapParameter,
+                              final TextureParameter.FILTER filterParameter) {
+        this(resourceID, wrapParameter, filterParameter, null);
+    }
+
+    /**
+     * Initializes the task with the following parameters:
+     *
+     * @param resourceID The ID of the resource to load as a texture.
+     * @param wrapParameter How the loaded texture should behave when exceeding its bounds.
+     * @param filterParameter How the loaded texture should behave when resizing.
+     * @param streamer The streamer to add the texture to, or null to upload the full texture at
+     *                 once. The streamed texture can be looked up by the returned ID.
+     */
+    public TextureLoadingTask(final int resourceID, final TextureParameter.WRAP wrapParameter,
+                              final TextureParameter.FILTER filterParameter, final TextureStreamer streamer) {
+        this.resourceID = resourceID;
+        this.image = null;
+        this.wrapParameter = wrapParameter;
+        this.filterParameter = filterParameter;
+        this.streamer = streamer;
+    }
+
+    /**
+     * Initializes the task to upload an image generated at runtime, e.g. by SdfAtlasBuilder.
+     * Errors are reported with the resource ID -1.
+     *
+     * @param image The image to upload.
+     * @param wrapParameter How the loaded texture should behave when exceeding its bounds.
+     * @param filterParameter How the loaded texture should behave when resizing.
+     */
+    public TextureLoadingTask(final ImageData image, final TextureParameter.WRAP wrapParameter,
+                              final TextureParameter.FILTER filterParameter) {
+        this.resourceID = -1;
+        this.image = image;
+        this.wrapParameter = wrapParameter;
+        this.filterParameter = filterParameter;
+        this.streamer = null;
+    }
+
+    /**
+     * Executes the task, thus loading the texture. Unless OpenGL error checks are turned off, this
+     * method will erase all recent OpenGL errors as it tries to give as much feedback as possible
+     * should the loading fail.
+     *
+     * @param resources The provider for accessing the resources.
+     * @param graphics The backend to create the texture with.
+     * @return The OpenGL ID of the loaded texture.
+     * @throws ResourceLoadingException If something goes wrong.
+     */
+    @Override
+    public int load(final ResourceProvider resources, final GraphicsBackend graphics) throws ResourceLoadingException {
+        graphics.clearErrors(ErrorCheckLevel.LOAD_ONLY);
+
+        final ImageData image;
+        try {
+            image = this.image != null ? this.image : resources.decodeImage(resourceID);
+        } catch(IOException exception) {
+            throw new ResourceLoadingException(ResourceType.TEXTURE, resourceID, exception);
+        }
+
+        final int textureID = graphics.createTexture();
+
+        if(textureID == 0) {
+            String description = "Texture generation failed!";
+            final OpenGLError openGLError = graphics.checkError(ErrorCheckLevel.LOAD_ONLY);
+
+            if(openGLError != null)
+                description += " (OpenGL Error " + openGLError.category + ")";
+
+            throw new ResourceLoadingException(ResourceType.TEXTURE, resourceID, description);
+        }
+
+        graphics.bindTexture(GLConstants.GL_TEXTURE_2D, textureID);
+        graphics.texParameteri(GLConstants.GL_TEXTURE_2D, GLConstants.GL_TEXTURE_WRAP_S, wrapParameter.openGLID);
+        graphics.texParameteri(GLConstants.GL_TEXTURE_2D, GLConstants.GL_TEXTURE_WRAP_T, wrapParameter.openGLID);
+        graphics.texParameteri(GLConstants.GL_TEXTURE_2D, GLConstants.GL_TEXTURE_MAG_FILTER, filterParameter.openGLID);
+
+        if(streamer == null) {
+            graphics.texParameteri(GLConstants.GL_TEXTURE_2D, GLConstants.GL_TEXTURE_MIN_FILTER, filterParameter.openGLID);
+            graphics.texImage2D(GLConstants.GL_TEXTURE_2D, 0, GLConstants.GL_RGBA, image.width, image.height,
+                    GLConstants.GL_RGBA, GLConstants.GL_UNSIGNED_BYTE, image.pixels);
+        } else {
+            // Streamed textures sample their mip levels, so the resident ones are used when minifying
+            graphics.texParameteri(GLConstants.GL_TEXTURE_2D, GLConstants.GL_TEXTURE_MIN_FILTER,
+                    filterParameter == TextureParameter.FILTER.LINEAR
+                            ? GLConstants.GL_LINEAR_MIPMAP_LINEAR : GLConstants.GL_NEAREST_MIPMAP_NEAREST);
+            streamer.add(textureID, MipChain.generate(image));
+        }
+
+        final OpenGLError openGLError = graphics.checkError(ErrorCheckLevel.LOAD_ONLY);
+        if(openGLError != null)
+            throw new ResourceLoadingException(ResourceType.TEXTURE, resourceID, openGLError);
+
+        graphics.countLoadedResource();
+        return textureID;
+    }
+
+    /**
+     * Returns the resource type this task loads.
+     *
+     * @return ResourceType.TEXTURE
+     */
+    @Override
+    public ResourceType getLoadedResourceType() {
+        return ResourceType.TEXTURE;
+    }
+}
@@ -0,0 +1,63 @@
+package com.tembins.tagdk.graphics.resource.texture;
+
+import com.tembins.tagdk.util.resource.ImageData;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Generates the mip levels of an RGBA image on the CPU, so they can be uploaded one by one
+ * instead of letting glGenerateMipmap derive them from a full resolution upload.
+ */
+public final class MipChain {
+
+    /**
+     * Returns the amount of mip levels of an image, down to and including 1x1.
+     *
+     * @param width The width of the full resolution level.
+     * @param height The height of the full resolution level.
+     * @return The level count.
+     */
+    public static int getLevelCount(final int width, final int height) {
+        return 32 - Integer.numberOfLeadingZeros(Math.max(1, Math.max(width, height)));
+    }
+
+    /**
+     * Generates all mip levels of an image with a box filter. Level sizes follow OpenGL, halving
+     * and rounding down but never getting smaller than 1, so odd sizes drop their last row or
+     * column.
+     *
+     * @param image The full resolution image, which becomes level 0 without being copied.
+     * @return The levels, from full resolution down to 1x1.
+     */
+    public static ImageData[] generate(final ImageData image) {
+        final ImageData[] levels = new ImageData[getLevelCount(image.width, image.height)];
+        levels[0] = image;
+        for(int level = 1; level < levels.length; level++)
+            levels[level] = downsample(levels[level - 1]);
+
+        return levels;
+    }
+
+    private static ImageData downsample(final ImageData source) {
+        final int width = Math.max(1, source.width / 2), height = Math.max(1, source.height / 2);
+        final ByteBuffer pixels = ByteBuffer.allocateDirect(width * height * 4);
+        final ByteBuffer from = source.pixels;
+        final int base = from.position();
+        // A source dimension of 1 has no second row or column to average with
+        final int stepX = source.width > 1 ? 4 : 0, stepY = source.height > 1 ? source.width * 4 : 0;
+
+        for(int y = 0; y < height; y++) {
+            for(int x = 0; x < width; x++) {
+                final int corner = base + ((y * 2) * source.width + x * 2) * 4;
+                for(int channel = 0; channel < 4; channel++) {
+                    final int index = corner + channel;
+                    final int sum = (from.get(index) & 0xFF) + (from.get(index + stepX) & 0xFF)
+                            + (from.get(index + stepY) & 0xFF) + (from.get(index + stepX + stepY) & 0xFF);
+                    pixels.put((byte) ((sum + 2) >> 2));
+                }
+            }
+        }
+        pixels.flip();
+        return new ImageData(width, height, pixels);
+    }
+}
@@ -0,0 +1,109 @@
+package com.tembins.tagdk.graphics.resource.texture;
+
+import com.tembins.tagdk.util.resource.ImageData;
+
+/**
+ * A texture whose mip levels are uploaded and dropped by a TextureStreamer. The levels from the
+ * resident level down to 1x1 are on the GPU, and the texture's base level is set to the resident
+ * level, so it can always be sampled.
+ *
+ * Users report how large the texture appears on screen every frame with requestSize; the
+ * streamer derives the level it should have from the largest size reported since its last update.
+ */
+public final class StreamingTexture {
+
+    final int textureID;
+    final ImageData[] levels;
+    final int tailLevel;
+
+    int residentLevel;
+    int desiredLevel;
+    float requestedSize;
+    float frameSize;
+
+    // The level being uploaded in row bands and the next row to upload, or -1
+    int uploadingLevel = -1;
+    int uploadedRows;
+
+    StreamingTexture(final int textureID, final ImageData[] levels, final int tailLevel) {
+        this.textureID = textureID;
+        this.levels = levels;
+        this.tailLevel = tailLevel;
+        residentLevel = levels.length;
+        desiredLevel = tailLevel;
+    }
+
+    /**
+     * Reports the size the texture covers on screen this frame. Multiple reports per frame, e.g.
+     * for multiple objects using the texture, keep the largest one.
+     *
+     * @param pixels The on screen size of the full texture along its larger axis, in pixels.
+     */
+    public void requestSize(final float pixels) {
+        requestedSize = Math.max(requestedSize, pixels);
+    }
+
+    /**
+     * Returns the OpenGL name of the texture.
+     *
+     * @return The texture ID.
+     */
+    public int getTextureID() {
+        return textureID;
+    }
+
+    /**
+     * Returns the amount of mip levels of the full texture.
+     *
+     * @return The level count.
+     */
+    public int getLevelCount() {
+        return levels.length;
+    }
+
+    /**
+     * Returns the finest level currently on the GPU.
+     *
+     * @return The resident level, 0 being full resolution.
+     */
+    public int getResidentLevel() {
+        return residentLevel;
+    }
+
+    /**
+     * Returns the level the streamer tries to make resident, as of its last update.
+     *
+     * @return The desired level, 0 being full resolution.
+     */
+    public int getDesiredLevel() {
+        return desiredLevel;
+    }
+
+    /**
+     * Returns the coarsest level that is never dropped, uploaded when the texture is created.
+     *
+     * @return The tail level.
+     */
+    public int getTailLevel() {
+        return tailLevel;
+    }
+
+    int getLevelSize(final int level) {
+        return levels[level].width * levels[level].height * 4;
+    }
+
+    int getAllocatedLevel() {
+        return uploadingLevel >= 0 ? uploadingLevel : residentLevel;
+    }
+
+    /**
+     * Returns the on screen magnification of a level. Values above 1 mean the level looks blurry,
+     * values below 1 mean it holds more texels than needed.
+     *
+     * @param level The level to check.
+     * @return The magnification, based on the size requested in the last frame.
+     */
+    float getMagnification(final int level) {
+        return frameSize / Math.max(levels[level].width, levels[level].height);
+    }
+}
@@ -0,0 +1,337 @@
+package com.tembins.tagdk.graphics.resource.texture;
+
+import com.tembins.tagdk.graphics.backend.GLConstants;
+import com.tembins.tagdk.graphics.backend.GraphicsBackend;
+import com.tembins.tagdk.util.resource.ImageData;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+
+/**
+ * Streams the mip levels of textures to the GPU over multiple frames. Adding a texture uploads
+ * only its smallest levels, so it can be rendered right away; update() then uploads finer levels
+ * for the textures that appear largest on screen relative to their resident resolution, without
+ * exceeding an upload budget per frame. Large levels are uploaded in bands of rows, so the budget
+ * also holds for levels larger than it.
+ *
+ * The resident levels of all textures are kept below a memory budget. Uploads only replace levels
+ * that are finer than needed, and lowering the budget, e.g. when the system reports memory
+ * pressure, drops the finest levels of the least magnified textures on the next update. Dropped
+ * levels are respecified with a size of 0, which releases their storage.
+ *
+ * The streamer only talks to a GraphicsBackend, so its policy runs without a GPU. It binds the
+ * textures it changes to GL_TEXTURE_2D of the active texture unit and must be used on the GL
+ * thread.
+ */
+public final class TextureStreamer {
+
+    public static final int DEFAULT_TAIL_SIZE = 32;
+
+    private final GraphicsBackend graphics;
+    private final ArrayList<StreamingTexture> textures = new ArrayList<>();
+    private final int tailSize;
+    private long uploadBudget, memoryBudget;
+    private long residentBytes, peakResidentBytes, frameUploadedBytes;
+
+    /**
+     * Initializes the streamer with the following parameters:
+     *
+     * @param graphics The backend uploading the levels.
+     * @param uploadBudget The bytes uploaded per update at most.
+     * @param memoryBudget The bytes all resident levels may occupy.
+     */
+    public TextureStreamer(final GraphicsBackend graphics, final long uploadBudget, final long memoryBudget) {
+        this(graphics, uploadBudget, memoryBudget, DEFAULT_TAIL_SIZE);
+    }
+
+    /**
+     * Initializes the streamer with the following parameters:
+     *
+     * @param graphics The backend uploading the levels.
+     * @param uploadBudget The bytes uploaded per update at most.
+     * @param memoryBudget The bytes all resident levels may occupy.
+     * @param tailSize The largest size of the levels uploaded when adding a texture and never
+     *                 dropped.
+     */
+    public TextureStreamer(final GraphicsBackend graphics, final long uploadBudget, final long memoryBudget,
+                           final int tailSize) {
+        this.graphics = graphics;
+        this.uploadBudget = uploadBudget;
+        this.memoryBudget = memoryBudget;
+        this.tailSize = tailSize;
+    }
+
+    /**
+     * Starts streaming a texture. Its tail levels are uploaded right away and its base level is
+     * set accordingly; the caller creates the texture and sets its wrap and filter parameters.
+     * The tail is uploaded even if it exceeds the budgets.
+     *
+     * @param textureID The OpenGL name of the texture.
+     * @param levels All mip levels, as generated by MipChain.generate. They are kept in memory
+     *               to upload them later.
+     * @return The texture, to report its on screen size to.
+     */
+    public StreamingTexture add(final int textureID, final ImageData[] levels) {
+        int tailLevel = 0;
+        while(tailLevel < levels.length - 1 && Math.max(levels[tailLevel].width, levels[tailLevel].height) > tailSize)
+            tailLevel++;
+
+        final StreamingTexture texture = new StreamingTexture(textureID, levels, tailLevel);
+        graphics.bindTexture(GLConstants.GL_TEXTURE_2D, textureID);
+        graphics.texParameteri(GLConstants.GL_TEXTURE_2D, GLConstants.GL_TEXTURE_MAX_LEVEL, levels.length - 1);
+        for(int level = levels.length - 1; level >= tailLevel; level--) {
+            final ImageData image = levels[level];
+            graphics.texImage2D(GLConstants.GL_TEXTURE_2D, level, GLConstants.GL_RGBA, image.width, image.height,
+                    GLConstants.GL_RGBA, GLConstants.GL_UNSIGNED_BYTE, image.pixels);
+            addResidentBytes(texture.getLevelSize(level));
+        }
+        graphics.texParameteri(GLConstants.GL_TEXTURE_2D, GLConstants.GL_TEXTURE_BASE_LEVEL, tailLevel);
+        texture.residentLevel = tailLevel;
+
+        textures.add(texture);
+        return texture;
+    }
+
+    /**
+     * Stops streaming a texture and deletes it.
+     *
+     * @param texture The texture to remove.
+     */
+    public void remove(final StreamingTexture texture) {
+        if(!textures.remove(texture))
+            return;
+
+        for(int level = texture.getAllocatedLevel(); level < texture.levels.length; level++)
+            residentBytes -= texture.getLevelSize(level);
+        graphics.deleteTexture(texture.textureID);
+    }
+
+    /**
+     * Updates the desired levels from the sizes requested since the last update, drops levels if
+     * the memory budget is exceeded and uploads levels within the upload budget. Call once per
+     * frame after reporting the sizes.
+     */
+    public void update() {
+        frameUploadedBytes = 0;
+        for(int index = 0; index < textures.size(); index++) {
+            final StreamingTexture texture = textures.get(index);
+            texture.frameSize = texture.requestedSize;
+            texture.requestedSize = 0.0f;
+            texture.desiredLevel = computeDesiredLevel(texture);
+        }
+
+        while(residentBytes > memoryBudget) {
+            final StreamingTexture victim = findVictim(false);
+            if(victim == null)
+                break;
+
+            drop(victim);
+        }
+
+        while(frameUploadedBytes < uploadBudget) {
+            final StreamingTexture texture = findUploadCandidate();
+            if(texture == null || !upload(texture))
+                break;
+        }
+    }
+
+    private static int computeDesiredLevel(final StreamingTexture texture) {
+        if(texture.frameSize <= 0.0f)
+            return texture.tailLevel;
+
+        final float ratio = Math.max(texture.levels[0].width, texture.levels[0].height) / texture.frameSize;
+        return ratio <= 1.0f ? 0 : Math.min(Math.getExponent(ratio), texture.tailLevel);
+    }
+
+    private StreamingTexture findUploadCandidate() {
+        StreamingTexture best = null;
+        float bestMagnification = 0.0f;
+        for(int index = 0; index < textures.size(); index++) {
+            final StreamingTexture texture = textures.get(index);
+            if(texture.residentLevel <= texture.desiredLevel)
+                continue;
+
+            // Finishing a level already allocated comes first, as it is no use until complete
+            if(texture.uploadingLevel >= 0)
+                return texture;
+
+            final float magnification = texture.getMagnification(texture.residentLevel);
+            if(best == null || magnification > bestMagnification) {
+                best = texture;
+                bestMagnification = magnification;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Finds the texture whose finest allocated level is least magnified on screen.
+     *
+     * @param excessOnly Whether to consider only levels finer than the desired ones.
+     * @return The texture to drop a level of, or null if none can be dropped.
+     */
+    private StreamingTexture findVictim(final boolean excessOnly) {
+        StreamingTexture best = null;
+        float bestMagnification = 0.0f;
+        for(int index = 0; index < textures.size(); index++) {
+            final StreamingTexture texture = textures.get(index);
+            final int level = texture.getAllocatedLevel();
+            if(level >= texture.tailLevel || (excessOnly && level >= texture.desiredLevel))
+                continue;
+
+            final float magnification = texture.getMagnification(level);
+            if(best == null || magnification < bestMagnification) {
+                best = texture;
+                bestMagnification = magnification;
+            }
+        }
+        return best;
+    }
+
+    private void drop(final StreamingTexture texture) {
+        graphics.bindTexture(GLConstants.GL_TEXTURE_2D, texture.textureID);
+        final int level;
+        if(texture.uploadingLevel >= 0) {
+            level = texture.uploadingLevel;
+            texture.uploadingLevel = -1;
+        } else {
+            // Raising the base level first keeps the texture complete
+            level = texture.residentLevel++;
+            graphics.texParameteri(GLConstants.GL_TEXTURE_2D, GLConstants.GL_TEXTURE_BASE_LEVEL, texture.residentLevel);
+        }
+
+        graphics.texImage2D(GLConstants.GL_TEXTURE_2D, level, GLConstants.GL_RGBA, 0, 0,
+                GLConstants.GL_RGBA, GLConstants.GL_UNSIGNED_BYTE, null);
+        residentBytes -= texture.getLevelSize(level);
+    }
+
+    /**
+     * Uploads the next rows of the next finer level of a texture.
+     *
+     * @param texture The texture to upload to.
+     * @return False if nothing could be uploaded, as the budgets are exhausted.
+     */
+    private boolean upload(final StreamingTexture texture) {
+        final int level = texture.residentLevel - 1;
+        final ImageData image = texture.levels[level];
+
+        if(texture.uploadingLevel < 0) {
+            final int size = texture.getLevelSize(level);
+            while(residentBytes + size > memoryBudget) {
+                final StreamingTexture victim = findVictim(true);
+                if(victim == null)
+                    return false;
+
+                drop(victim);
+            }
+
+            graphics.bindTexture(GLConstants.GL_TEXTURE_2D, texture.textureID);
+            graphics.texImage2D(GLConstants.GL_TEXTURE_2D, level, GLConstants.GL_RGBA, image.width, image.height,
+                    GLConstants.GL_RGBA, GLConstants.GL_UNSIGNED_BYTE, null);
+            addResidentBytes(size);
+            texture.uploadingLevel = level;
+            texture.uploadedRows = 0;
+        } else {
+            graphics.bindTexture(GLConstants.GL_TEXTURE_2D, texture.textureID);
+        }
+
+        final int rowSize = image.width * 4;
+        int rows = (int) Math.min(image.height - texture.uploadedRows, (uploadBudget - frameUploadedBytes) / rowSize);
+        if(rows == 0) {
+            // A single row larger than the budget still has to make progress
+            if(frameUploadedBytes > 0)
+                return false;
+
+            rows = 1;
+        }
+
+        final ByteBuffer band = image.pixels.duplicate();
+        band.position(image.pixels.position() + texture.uploadedRows * rowSize);
+        band.limit(band.position() + rows * rowSize);
+        graphics.texSubImage2D(GLConstants.GL_TEXTURE_2D, level, 0, texture.uploadedRows, image.width, rows,
+                GLConstants.GL_RGBA, GLConstants.GL_UNSIGNED_BYTE, band.slice());
+        frameUploadedBytes += (long) rows * rowSize;
+        texture.uploadedRows += rows;
+
+        if(texture.uploadedRows == image.height) {
+            graphics.texParameteri(GLConstants.GL_TEXTURE_2D, GLConstants.GL_TEXTURE_BASE_LEVEL, level);
+            texture.residentLevel = level;
+            texture.uploadingLevel = -1;
+        }
+        return true;
+    }
+
+    private void addResidentBytes(final long bytes) {
+        residentBytes += bytes;
+        peakResidentBytes = Math.max(peakResidentBytes, residentBytes);
+    }
+
+    /**
+     * Sets the bytes uploaded per update at most.
+     *
+     * @param uploadBudget The upload budget in bytes.
+     */
+    public void setUploadBudget(final long uploadBudget) {
+        this.uploadBudget = uploadBudget;
+    }
+
+    /**
+     * Sets the bytes all resident levels may occupy. Lowering it drops levels on the next update.
+     *
+     * @param memoryBudget The memory budget in bytes.
+     */
+    public void setMemoryBudget(final long memoryBudget) {
+        this.memoryBudget = memoryBudget;
+    }
+
+    /**
+     * Returns the bytes occupied by all resident levels, including levels being uploaded.
+     *
+     * @return The resident bytes.
+     */
+    public long getResidentBytes() {
+        return residentBytes;
+    }
+
+    /**
+     * Returns the highest amount of resident bytes so far.
+     *
+     * @return The peak resident bytes.
+     */
+    public long getPeakResidentBytes() {
+        return peakResidentBytes;
+    }
+
+    /**
+     * Returns the bytes uploaded by the last update.
+     *
+     * @return The uploaded bytes.
+     */
+    public long getFrameUploadedBytes() {
+        return frameUploadedBytes;
+    }
+
+    /**
+     * Returns the streamed texture with the given OpenGL name, e.g. to look up the texture added
+     * by a TextureLoadingTask.
+     *
+     * @param textureID The OpenGL name of the texture.
+     * @return The texture, or null if it is not streamed.
+     */
+    public StreamingTexture getTexture(final int textureID) {
+        for(int index = 0; index < textures.size(); index++)
+            if(textures.get(index).textureID == textureID)
+                return textures.get(index);
+
+        return null;
+    }
+
+    /**
+     * Returns the amount of streamed textures.
+     *
+     * @return The texture count.
+     */
+    public int getTextureCount() {
+        return textures.size();
+    }
+}
@@ -0,0 +1,106 @@
+package com.tembins.tagdk.graphics.target;
+
+import com.tembins.tagdk.graphics.backend.GLConstants;
+
+/**
+ * A texture or renderbuffer handed out by a RenderTargetPool, to be attached to framebuffers by
+ * its user, e.g. a RenderGraph. Textures use linear filtering and clamp to the edge.
+ */
+public final class Attachment {
+
+    final int name, width, height, format;
+    final boolean renderbuffer;
+    long lastUsedFrame;
+    boolean acquired;
+
+    Attachment(final int name, final int width, final int height, final int format, final boolean renderbuffer) {
+        this.name = name;
+        this.width = width;
+        this.height = height;
+        this.format = format;
+        this.renderbuffer = renderbuffer;
+    }
+
+    boolean matches(final int width, final int height, final int format, final boolean renderbuffer) {
+        return this.width == width && this.height == height && this.format == format
+                && this.renderbuffer == renderbuffer;
+    }
+
+    /**
+     * Returns whether the format is a depth format, to be attached as depth (and stencil)
+     * attachment.
+     *
+     * @param format The sized format.
+     * @return True for GL_DEPTH_COMPONENT16, GL_DEPTH_COMPONENT24 and GL_DEPTH24_STENCIL8.
+     */
+    public static boolean isDepthFormat(final int format) {
+        return format == GLConstants.GL_DEPTH_COMPONENT16 || format == GLConstants.GL_DEPTH_COMPONENT24
+                || format == GLConstants.GL_DEPTH24_STENCIL8;
+    }
+
+    /**
+     * Returns the framebuffer attachment point of the given format.
+     *
+     * @param format The sized format.
+     * @return GL_DEPTH_STENCIL_ATTACHMENT, GL_DEPTH_ATTACHMENT or GL_COLOR_ATTACHMENT0.
+     */
+    public static int getAttachmentPoint(final int format) {
+        if(format == GLConstants.GL_DEPTH24_STENCIL8)
+            return GLConstants.GL_DEPTH_STENCIL_ATTACHMENT;
+        return isDepthFormat(format) ? GLConstants.GL_DEPTH_ATTACHMENT : GLConstants.GL_COLOR_ATTACHMENT0;
+    }
+
+    /**
+     * Returns the OpenGL name of the texture or renderbuffer.
+     *
+     * @return The name.
+     */
+    public int getName() {
+        return name;
+    }
+
+    /**
+     * Returns the width of the attachment.
+     *
+     * @return The width in pixels.
+     */
+    public int getWidth() {
+        return width;
+    }
+
+    /**
+     * Returns the height of the attachment.
+     *
+     * @return The height in pixels.
+     */
+    public int getHeight() {
+        return height;
+    }
+
+    /**
+     * Returns the sized format of the attachment.
+     *
+     * @return The format, e.g. GL_RGBA16F.
+     */
+    public int getFormat() {
+        return format;
+    }
+
+    /**
+     * Returns whether the attachment is a renderbuffer, which can not be sampled.
+     *
+     * @return True for a renderbuffer, false for a texture.
+     */
+    public boolean isRenderbuffer() {
+        return renderbuffer;
+    }
+
+    /**
+     * Returns the memory used by the attachment.
+     *
+     * @return The size in bytes.
+     */
+    public int getSizeBytes() {
+        return RenderTarget.getPixelSize(format) * width * height;
+    }
+}
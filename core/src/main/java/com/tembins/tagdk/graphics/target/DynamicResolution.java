@@ -0,0 +1,146 @@
+package com.tembins.tagdk.graphics.target;
+
+import com.tembins.tagdk.graphics.backend.GLConstants;
+import com.tembins.tagdk.graphics.backend.GraphicsBackend;
+
+/**
+ * Renders the 3D scene at a resolution chosen by a ResolutionController and upscales it to the
+ * screen, so the UI drawn afterwards stays at native resolution. A frame looks like this:
+ *
+ * <pre>
+ * resolution.beginScene(screenWidth, screenHeight);
+ * drawScene(); // with the viewport set by beginScene
+ * resolution.endScene();
+ * drawUI();
+ * ...
+ * resolution.update(gpuFrameNanos);
+ * </pre>
+ *
+ * The scene target is acquired from a RenderTargetPool at the full screen size and the scene is
+ * drawn into its lower left part, so the scale can change every frame without reallocating
+ * anything. The part is blitted to the default framebuffer with linear filtering. Must only be
+ * used on the GL thread.
+ */
+public final class DynamicResolution {
+
+    private final GraphicsBackend graphics;
+    private final RenderTargetPool pool;
+    private final ResolutionController controller;
+    private final int colorFormat, depthFormat;
+    private final int[] depthAttachment = new int[1];
+
+    private RenderTarget target;
+    private int screenWidth, screenHeight;
+    private int sceneWidth, sceneHeight;
+
+    /**
+     * Initializes the dynamic resolution with the following parameters:
+     *
+     * @param graphics The backend to draw with.
+     * @param pool The pool to acquire the scene target from.
+     * @param controller The controller choosing the scale.
+     * @param colorFormat The sized color format of the scene target, e.g. GL_RGBA8.
+     * @param depthFormat The sized depth format of the scene target, e.g. GL_DEPTH24_STENCIL8.
+     */
+    public DynamicResolution(final GraphicsBackend graphics, final RenderTargetPool pool,
+                             final ResolutionController controller, final int colorFormat, final int depthFormat) {
+        this.graphics = graphics;
+        this.pool = pool;
+        this.controller = controller;
+        this.colorFormat = colorFormat;
+        this.depthFormat = depthFormat;
+    }
+
+    /**
+     * Adds the time of a finished frame to the controller. The new scale is used from the next
+     * call of beginScene on.
+     *
+     * @param frameNanos The measured frame time in nanoseconds, preferably the GPU time.
+     */
+    public void update(final long frameNanos) {
+        controller.update(frameNanos);
+    }
+
+    /**
+     * Binds the scene target and sets the viewport to the scaled scene size.
+     *
+     * @param screenWidth The width of the screen in pixels.
+     * @param screenHeight The height of the screen in pixels.
+     * @return The scene target.
+     */
+    public RenderTarget beginScene(final int screenWidth, final int screenHeight) {
+        if(target == null || target.width != screenWidth || target.height != screenHeight) {
+            if(target != null)
+                pool.release(target);
+            target = pool.acquire(screenWidth, screenHeight, colorFormat, depthFormat);
+        }
+
+        final float scale = controller.getScale();
+        this.screenWidth = screenWidth;
+        this.screenHeight = screenHeight;
+        sceneWidth = Math.max(1, Math.min(screenWidth, Math.round(screenWidth * scale)));
+        sceneHeight = Math.max(1, Math.min(screenHeight, Math.round(screenHeight * scale)));
+
+        graphics.bindFramebuffer(GLConstants.GL_FRAMEBUFFER, target.framebuffer);
+        graphics.viewport(0, 0, sceneWidth, sceneHeight);
+        return target;
+    }
+
+    /**
+     * Upscales the scene to the default framebuffer, which stays bound with a full screen
+     * viewport for drawing the UI.
+     */
+    public void endScene() {
+        if(target == null)
+            throw new IllegalStateException("beginScene was not called");
+
+        graphics.bindFramebuffer(GLConstants.GL_READ_FRAMEBUFFER, target.framebuffer);
+        graphics.bindFramebuffer(GLConstants.GL_DRAW_FRAMEBUFFER, 0);
+        graphics.blitFramebuffer(0, 0, sceneWidth, sceneHeight, 0, 0, screenWidth, screenHeight,
+                GLConstants.GL_COLOR_BUFFER_BIT, GLConstants.GL_LINEAR);
+        if(depthFormat != 0) {
+            // The scene depth is not needed after the blit, so tiled GPUs can skip storing it
+            depthAttachment[0] = Attachment.getAttachmentPoint(depthFormat);
+            graphics.invalidateFramebuffer(GLConstants.GL_READ_FRAMEBUFFER, 1, depthAttachment, 0);
+        }
+        graphics.bindFramebuffer(GLConstants.GL_FRAMEBUFFER, 0);
+        graphics.viewport(0, 0, screenWidth, screenHeight);
+    }
+
+    /**
+     * Returns the scene target to the pool. The next beginScene acquires a new one.
+     */
+    public void release() {
+        if(target != null) {
+            pool.release(target);
+            target = null;
+        }
+    }
+
+    /**
+     * Returns the width the scene is currently drawn at.
+     *
+     * @return The scene width in pixels.
+     */
+    public int getSceneWidth() {
+        return sceneWidth;
+    }
+
+    /**
+     * Returns the height the scene is currently drawn at.
+     *
+     * @return The scene height in pixels.
+     */
+    public int getSceneHeight() {
+        return sceneHeight;
+    }
+
+    /**
+     * Returns the controller choosing the scale.
+     *
+     * @return The controller.
+     */
+    public ResolutionController getController() {
+        return controller;
+    }
+}
@@ -0,0 +1,567 @@
+package com.tembins.tagdk.graphics.target;
+
+import com.tembins.tagdk.graphics.backend.GLConstants;
+import com.tembins.tagdk.graphics.backend.GraphicsBackend;
+
+import java.util.Arrays;
+
+/**
+ * Runs a fixed sequence of render passes that pass textures to each other, e.g. scene, bloom and
+ * composite, without the passes managing framebuffers. Resources are declared with their size and
+ * format, passes with the resources they read and write:
+ *
+ * <pre>
+ * final int color = graph.createTexture("Scene Color", width, height, GL_RGBA16F);
+ * final int depth = graph.createRenderbuffer("Scene Depth", width, height, GL_DEPTH24_STENCIL8);
+ * final int scene = graph.addPass("Scene", scenePass);
+ * graph.write(scene, color);
+ * graph.write(scene, depth);
+ * final int composite = graph.addPass("Composite", compositePass);
+ * graph.read(composite, color);
+ * graph.writeScreen(composite);
+ * ...
+ * graph.execute();
+ * </pre>
+ *
+ * Compiling the graph culls the passes none of whose output reaches the screen, computes the
+ * lifetime of every resource from its first to its last use and assigns the resources to physical
+ * attachments. Resources of the same size and format whose lifetimes do not overlap share an
+ * attachment, so e.g. the ping-pong targets of a blur chain only need two textures. Compiling
+ * does not touch the GPU and can be checked headlessly. The attachments are acquired from a
+ * RenderTargetPool on the first execution and kept until the graph is changed or released.
+ *
+ * Attachments are invalidated before the pass writing them first and after the pass using them
+ * last, if that pass wrote them, e.g. a depth buffer never read by a later pass. Tiled GPUs then
+ * neither load nor store their content. A pass writes at most one color and one depth resource,
+ * all of the same size. Must only be used on the GL thread.
+ */
+public final class RenderGraph {
+
+    private static final int UNUSED = -1;
+
+    private final GraphicsBackend graphics;
+    private final RenderTargetPool pool;
+    private int screenWidth, screenHeight;
+
+    // Resources
+    private String[] resourceNames = new String[8];
+    private int[] resourceWidths = new int[8], resourceHeights = new int[8], resourceFormats = new int[8];
+    private boolean[] resourceRenderbuffers = new boolean[8];
+    private int[] firstPasses = new int[8], lastPasses = new int[8], resourceSlots = new int[8];
+    private boolean[] resourcesNeeded = new boolean[8];
+    private int resourceCount;
+
+    // Passes
+    private String[] passNames = new String[8];
+    private RenderPass[] passes = new RenderPass[8];
+    private boolean[] screenPasses = new boolean[8], culledPasses = new boolean[8];
+    private int[] passFramebuffers = new int[8];
+    private int passCount;
+
+    // Reads and writes of the passes
+    private int[] usePasses = new int[16], useResources = new int[16];
+    private boolean[] useWrites = new boolean[16];
+    private int useCount;
+
+    // Physical attachments
+    private int[] slotWidths = new int[8], slotHeights = new int[8], slotFormats = new int[8];
+    private boolean[] slotRenderbuffers = new boolean[8];
+    private int[] slotLastPasses = new int[8];
+    private Attachment[] slotAttachments = new Attachment[8];
+    private int slotCount;
+
+    private final int[] invalidated = new int[2];
+    private boolean compiled;
+
+    /**
+     * Initializes the graph with the following parameters:
+     *
+     * @param graphics The backend to draw with.
+     * @param pool The pool to acquire the attachments from.
+     */
+    public RenderGraph(final GraphicsBackend graphics, final RenderTargetPool pool) {
+        this.graphics = graphics;
+        this.pool = pool;
+    }
+
+    /**
+     * Declares a texture resource, which can be written by a pass and sampled by later ones.
+     *
+     * @param name The name of the resource, for error messages.
+     * @param width The width in pixels.
+     * @param height The height in pixels.
+     * @param format The sized format, GL_RGBA8, GL_RGB8 or GL_RGBA16F.
+     * @return The handle of the resource.
+     */
+    public int createTexture(final String name, final int width, final int height, final int format) {
+        return createResource(name, width, height, format, false);
+    }
+
+    /**
+     * Declares a renderbuffer resource, which can be written by passes but not sampled, e.g. a
+     * depth buffer.
+     *
+     * @param name The name of the resource, for error messages.
+     * @param width The width in pixels.
+     * @param height The height in pixels.
+     * @param format The sized format, e.g. GL_DEPTH24_STENCIL8.
+     * @return The handle of the resource.
+     */
+    public int createRenderbuffer(final String name, final int width, final int height, final int format) {
+        return createResource(name, width, height, format, true);
+    }
+
+    private int createResource(final String name, final int width, final int height, final int format,
+                               final boolean renderbuffer) {
+        if(width <= 0 || height <= 0)
+            throw new IllegalArgumentException("Invalid size " + width + "x" + height + " of " + name);
+
+        if(resourceCount == resourceNames.length) {
+            final int capacity = resourceCount * 2;
+            resourceNames = Arrays.copyOf(resourceNames, capacity);
+            resourceWidths = Arrays.copyOf(resourceWidths, capacity);
+            resourceHeights = Arrays.copyOf(resourceHeights, capacity);
+            resourceFormats = Arrays.copyOf(resourceFormats, capacity);
+            resourceRenderbuffers = Arrays.copyOf(resourceRenderbuffers, capacity);
+            firstPasses = Arrays.copyOf(firstPasses, capacity);
+            lastPasses = Arrays.copyOf(lastPasses, capacity);
+            resourceSlots = Arrays.copyOf(resourceSlots, capacity);
+            resourcesNeeded = Arrays.copyOf(resourcesNeeded, capacity);
+        }
+
+        resourceNames[resourceCount] = name;
+        resourceWidths[resourceCount] = width;
+        resourceHeights[resourceCount] = height;
+        resourceFormats[resourceCount] = format;
+        resourceRenderbuffers[resourceCount] = renderbuffer;
+        invalidate();
+        return resourceCount++;
+    }
+
+    /**
+     * Adds a pass, executed after all previously added passes.
+     *
+     * @param name The name of the pass, for error messages.
+     * @param pass The pass.
+     * @return The handle of the pass.
+     */
+    public int addPass(final String name, final RenderPass pass) {
+        if(passCount == passNames.length) {
+            final int capacity = passCount * 2;
+            passNames = Arrays.copyOf(passNames, capacity);
+            passes = Arrays.copyOf(passes, capacity);
+            screenPasses = Arrays.copyOf(screenPasses, capacity);
+            culledPasses = Arrays.copyOf(culledPasses, capacity);
+            passFramebuffers = Arrays.copyOf(passFramebuffers, capacity);
+        }
+
+        passNames[passCount] = name;
+        passes[passCount] = pass;
+        screenPasses[passCount] = false;
+        invalidate();
+        return passCount++;
+    }
+
+    /**
+     * Declares that a pass samples a texture resource written by an earlier pass.
+     *
+     * @param pass The handle of the reading pass.
+     * @param resource The handle of the read resource.
+     */
+    public void read(final int pass, final int resource) {
+        if(resourceRenderbuffers[resource])
+            throw new IllegalArgumentException("Renderbuffer " + resourceNames[resource] + " can not be read");
+        if(findUse(pass, resource, true) >= 0)
+            throw new IllegalArgumentException("Pass " + passNames[pass] + " can not read and write "
+                    + resourceNames[resource]);
+
+        addUse(pass, resource, false);
+    }
+
+    /**
+     * Declares that a pass draws into a resource. A later pass writing the same resource keeps
+     * its content, e.g. for drawing transparent objects over the opaque ones.
+     *
+     * @param pass The handle of the writing pass.
+     * @param resource The handle of the written resource.
+     */
+    public void write(final int pass, final int resource) {
+        if(screenPasses[pass] || findUse(pass, resource, false) >= 0)
+            throw new IllegalArgumentException("Pass " + passNames[pass] + " can not write " + resourceNames[resource]);
+
+        final boolean depth = Attachment.isDepthFormat(resourceFormats[resource]);
+        for(int use = 0; use < useCount; use++) {
+            if(usePasses[use] != pass || !useWrites[use])
+                continue;
+
+            final int other = useResources[use];
+            if(Attachment.isDepthFormat(resourceFormats[other]) == depth)
+                throw new IllegalArgumentException("Pass " + passNames[pass] + " already writes "
+                        + (depth ? "depth" : "color") + " resource " + resourceNames[other]);
+            if(resourceWidths[other] != resourceWidths[resource] || resourceHeights[other] != resourceHeights[resource])
+                throw new IllegalArgumentException("The resources written by pass " + passNames[pass]
+                        + " must have the same size");
+        }
+
+        addUse(pass, resource, true);
+    }
+
+    /**
+     * Declares that a pass draws into the default framebuffer. Such a pass can not write other
+     * resources and is never culled.
+     *
+     * @param pass The handle of the pass.
+     */
+    public void writeScreen(final int pass) {
+        for(int use = 0; use < useCount; use++)
+            if(usePasses[use] == pass && useWrites[use])
+                throw new IllegalArgumentException("Pass " + passNames[pass] + " already writes resources");
+
+        screenPasses[pass] = true;
+        invalidate();
+    }
+
+    /**
+     * Sets the viewport size of passes writing the default framebuffer.
+     *
+     * @param width The width of the screen in pixels.
+     * @param height The height of the screen in pixels.
+     */
+    public void setScreenSize(final int width, final int height) {
+        screenWidth = width;
+        screenHeight = height;
+    }
+
+    private int findUse(final int pass, final int resource, final boolean write) {
+        for(int use = 0; use < useCount; use++)
+            if(usePasses[use] == pass && useResources[use] == resource && useWrites[use] == write)
+                return use;
+        return -1;
+    }
+
+    private void addUse(final int pass, final int resource, final boolean write) {
+        if(pass < 0 || pass >= passCount || resource < 0 || resource >= resourceCount)
+            throw new IllegalArgumentException("Invalid pass " + pass + " or resource " + resource);
+
+        if(useCount == usePasses.length) {
+            usePasses = Arrays.copyOf(usePasses, useCount * 2);
+            useResources = Arrays.copyOf(useResources, useCount * 2);
+            useWrites = Arrays.copyOf(useWrites, useCount * 2);
+        }
+
+        usePasses[useCount] = pass;
+        useResources[useCount] = resource;
+        useWrites[useCount] = write;
+        useCount++;
+        invalidate();
+    }
+
+    private void invalidate() {
+        if(compiled) {
+            releaseAttachments();
+            compiled = false;
+        }
+    }
+
+    /**
+     * Culls unneeded passes, computes the resource lifetimes and assigns the resources to physical
+     * attachments. Called by execute() if the graph changed, but can be called headlessly to
+     * inspect the result.
+     *
+     * @throws IllegalStateException If a pass reads a resource no earlier pass writes.
+     */
+    public void compile() {
+        releaseAttachments();
+        cullPasses();
+        computeLifetimes();
+        assignSlots();
+        compiled = true;
+    }
+
+    private void cullPasses() {
+        // Walking backwards, a pass is needed if the screen or a later needed pass uses its output
+        Arrays.fill(resourcesNeeded, 0, resourceCount, false);
+        for(int pass = passCount - 1; pass >= 0; pass--) {
+            boolean needed = screenPasses[pass];
+            for(int use = 0; use < useCount && !needed; use++)
+                needed = usePasses[use] == pass && useWrites[use] && resourcesNeeded[useResources[use]];
+
+            culledPasses[pass] = !needed;
+            if(needed)
+                for(int use = 0; use < useCount; use++)
+                    if(usePasses[use] == pass && !useWrites[use])
+                        resourcesNeeded[useResources[use]] = true;
+        }
+    }
+
+    private void computeLifetimes() {
+        // Resources start with their first write and end with their last use
+        Arrays.fill(firstPasses, 0, resourceCount, UNUSED);
+        Arrays.fill(lastPasses, 0, resourceCount, UNUSED);
+        for(int use = 0; use < useCount; use++) {
+            final int pass = usePasses[use];
+            final int resource = useResources[use];
+            if(culledPasses[pass])
+                continue;
+
+            if(useWrites[use] && (firstPasses[resource] == UNUSED || pass < firstPasses[resource]))
+                firstPasses[resource] = pass;
+            lastPasses[resource] = Math.max(lastPasses[resource], pass);
+        }
+
+        for(int use = 0; use < useCount; use++) {
+            final int resource = useResources[use];
+            if(!useWrites[use] && !culledPasses[usePasses[use]]
+                    && (firstPasses[resource] == UNUSED || usePasses[use] < firstPasses[resource]))
+                throw new IllegalStateException("Pass " + passNames[usePasses[use]] + " reads "
+                        + resourceNames[resource] + " before any pass writes it");
+        }
+    }
+
+    private void assignSlots() {
+        // Assigning in the order of first use reuses every attachment as early as possible
+        slotCount = 0;
+        Arrays.fill(resourceSlots, 0, resourceCount, UNUSED);
+        for(int pass = 0; pass < passCount; pass++) {
+            for(int resource = 0; resource < resourceCount; resource++) {
+                if(firstPasses[resource] != pass)
+                    continue;
+
+                int slot = 0;
+                while(slot < slotCount && !(slotLastPasses[slot] < pass && slotWidths[slot] == resourceWidths[resource]
+                        && slotHeights[slot] == resourceHeights[resource] && slotFormats[slot] == resourceFormats[resource]
+                        && slotRenderbuffers[slot] == resourceRenderbuffers[resource]))
+                    slot++;
+
+                if(slot == slotCount)
+                    addSlot(resource);
+                slotLastPasses[slot] = lastPasses[resource];
+                resourceSlots[resource] = slot;
+            }
+        }
+    }
+
+    private void addSlot(final int resource) {
+        if(slotCount == slotWidths.length) {
+            final int capacity = slotCount * 2;
+            slotWidths = Arrays.copyOf(slotWidths, capacity);
+            slotHeights = Arrays.copyOf(slotHeights, capacity);
+            slotFormats = Arrays.copyOf(slotFormats, capacity);
+            slotRenderbuffers = Arrays.copyOf(slotRenderbuffers, capacity);
+            slotLastPasses = Arrays.copyOf(slotLastPasses, capacity);
+            slotAttachments = Arrays.copyOf(slotAttachments, capacity);
+        }
+
+        slotWidths[slotCount] = resourceWidths[resource];
+        slotHeights[slotCount] = resourceHeights[resource];
+        slotFormats[slotCount] = resourceFormats[resource];
+        slotRenderbuffers[slotCount] = resourceRenderbuffers[resource];
+        slotAttachments[slotCount] = null;
+        slotCount++;
+    }
+
+    /**
+     * Executes all passes that were not culled, compiling the graph first if it changed.
+     */
+    public void execute() {
+        if(!compiled)
+            compile();
+
+        for(int pass = 0; pass < passCount; pass++) {
+            if(culledPasses[pass])
+                continue;
+
+            if(screenPasses[pass]) {
+                graphics.bindFramebuffer(GLConstants.GL_FRAMEBUFFER, 0);
+                graphics.viewport(0, 0, screenWidth, screenHeight);
+                passes[pass].execute(this, graphics);
+                continue;
+            }
+
+            bindFramebuffer(pass);
+            invalidateAttachments(pass, true);
+            passes[pass].execute(this, graphics);
+            invalidateAttachments(pass, false);
+        }
+    }
+
+    private void bindFramebuffer(final int pass) {
+        if(passFramebuffers[pass] != 0) {
+            graphics.bindFramebuffer(GLConstants.GL_FRAMEBUFFER, passFramebuffers[pass]);
+        } else {
+            passFramebuffers[pass] = graphics.createFramebuffer();
+            graphics.bindFramebuffer(GLConstants.GL_FRAMEBUFFER, passFramebuffers[pass]);
+            for(int use = 0; use < useCount; use++) {
+                if(usePasses[use] != pass || !useWrites[use])
+                    continue;
+
+                final Attachment attachment = getAttachment(useResources[use]);
+                final int point = Attachment.getAttachmentPoint(attachment.format);
+                if(attachment.renderbuffer)
+                    graphics.framebufferRenderbuffer(GLConstants.GL_FRAMEBUFFER, point,
+                            GLConstants.GL_RENDERBUFFER, attachment.name);
+                else
+                    graphics.framebufferTexture2D(GLConstants.GL_FRAMEBUFFER, point,
+                            GLConstants.GL_TEXTURE_2D, attachment.name, 0);
+            }
+
+            final int status = graphics.checkFramebufferStatus(GLConstants.GL_FRAMEBUFFER);
+            if(status != GLConstants.GL_FRAMEBUFFER_COMPLETE)
+                throw new IllegalStateException("Framebuffer of pass " + passNames[pass]
+                        + " is incomplete, status 0x" + Integer.toHexString(status));
+        }
+
+        for(int use = 0; use < useCount; use++) {
+            if(usePasses[use] == pass && useWrites[use]) {
+                graphics.viewport(0, 0, resourceWidths[useResources[use]], resourceHeights[useResources[use]]);
+                return;
+            }
+        }
+    }
+
+    private Attachment getAttachment(final int resource) {
+        final int slot = resourceSlots[resource];
+        if(slotAttachments[slot] == null)
+            slotAttachments[slot] = pool.acquire(slotWidths[slot], slotHeights[slot], slotFormats[slot],
+                    slotRenderbuffers[slot]);
+        return slotAttachments[slot];
+    }
+
+    private void invalidateAttachments(final int pass, final boolean beforePass) {
+        int count = 0;
+        for(int use = 0; use < useCount; use++) {
+            if(usePasses[use] != pass || !useWrites[use])
+                continue;
+
+            final int resource = useResources[use];
+            if(beforePass ? firstPasses[resource] == pass : lastPasses[resource] == pass)
+                invalidated[count++] = Attachment.getAttachmentPoint(resourceFormats[resource]);
+        }
+
+        if(count > 0)
+            graphics.invalidateFramebuffer(GLConstants.GL_FRAMEBUFFER, count, invalidated, 0);
+    }
+
+    /**
+     * Returns the texture of a resource, to be bound by a pass reading it. Only valid during
+     * execute().
+     *
+     * @param resource The handle of the resource.
+     * @return The OpenGL name of the texture.
+     */
+    public int getTexture(final int resource) {
+        if(resourceRenderbuffers[resource] || resourceSlots[resource] == UNUSED)
+            throw new IllegalArgumentException(resourceNames[resource] + " is no texture in use");
+
+        return getAttachment(resource).name;
+    }
+
+    private void releaseAttachments() {
+        for(int slot = 0; slot < slotCount; slot++) {
+            if(slotAttachments[slot] != null) {
+                pool.release(slotAttachments[slot]);
+                slotAttachments[slot] = null;
+            }
+        }
+        for(int pass = 0; pass < passCount; pass++) {
+            if(passFramebuffers[pass] != 0) {
+                graphics.deleteFramebuffer(passFramebuffers[pass]);
+                passFramebuffers[pass] = 0;
+            }
+        }
+    }
+
+    /**
+     * Returns the attachments to the pool and deletes the framebuffers. The next execution
+     * acquires them again.
+     */
+    public void release() {
+        releaseAttachments();
+        compiled = false;
+    }
+
+    /**
+     * Returns whether a pass was culled by the last compilation.
+     *
+     * @param pass The handle of the pass.
+     * @return True if the pass is not executed.
+     */
+    public boolean isCulled(final int pass) {
+        return culledPasses[pass];
+    }
+
+    /**
+     * Returns the index of the first pass using a resource, as computed by the last compilation.
+     *
+     * @param resource The handle of the resource.
+     * @return The first pass, or -1 if the resource is only used by culled passes.
+     */
+    public int getFirstPass(final int resource) {
+        return firstPasses[resource];
+    }
+
+    /**
+     * Returns the index of the last pass using a resource, as computed by the last compilation.
+     *
+     * @param resource The handle of the resource.
+     * @return The last pass, or -1 if the resource is only used by culled passes.
+     */
+    public int getLastPass(final int resource) {
+        return lastPasses[resource];
+    }
+
+    /**
+     * Returns the physical attachment assigned to a resource. Resources with the same slot share
+     * memory.
+     *
+     * @param resource The handle of the resource.
+     * @return The slot, or -1 if the resource is only used by culled passes.
+     */
+    public int getSlot(final int resource) {
+        return resourceSlots[resource];
+    }
+
+    /**
+     * Returns the amount of physical attachments.
+     *
+     * @return The slot count.
+     */
+    public int getSlotCount() {
+        return slotCount;
+    }
+
+    /**
+     * Returns the memory of all physical attachments.
+     *
+     * @return The size in bytes.
+     */
+    public long getSlotBytes() {
+        long bytes = 0L;
+        for(int slot = 0; slot < slotCount; slot++)
+            bytes += (long) RenderTarget.getPixelSize(slotFormats[slot]) * slotWidths[slot] * slotHeights[slot];
+        return bytes;
+    }
+
+    /**
+     * Returns the memory all used resources would need without aliasing.
+     *
+     * @return The size in bytes.
+     */
+    public long getResourceBytes() {
+        long bytes = 0L;
+        for(int resource = 0; resource < resourceCount; resource++)
+            if(resourceSlots[resource] != UNUSED)
+                bytes += (long) RenderTarget.getPixelSize(resourceFormats[resource])
+                        * resourceWidths[resource] * resourceHeights[resource];
+        return bytes;
+    }
+
+    /**
+     * Returns the amount of declared passes, including culled ones.
+     *
+     * @return The pass count.
+     */
+    public int getPassCount() {
+        return passCount;
+    }
+}
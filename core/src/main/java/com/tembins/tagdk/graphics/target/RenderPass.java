@@ -0,0 +1,19 @@
+package com.tembins.tagdk.graphics.target;
+
+import com.tembins.tagdk.graphics.backend.GraphicsBackend;
+
+/**
+ * Draws one pass of a RenderGraph. The graph binds the framebuffer of the pass and sets the
+ * viewport before calling it; the pass binds its inputs with RenderGraph.getTexture(int).
+ */
+public interface RenderPass {
+
+    /**
+     * Draws the pass. Resources written for the first time have undefined content, so the pass
+     * has to clear or fully overwrite them.
+     *
+     * @param graph The executing graph, to look up the textures of read resources.
+     * @param graphics The backend to draw with.
+     */
+    void execute(final RenderGraph graph, final GraphicsBackend graphics);
+}
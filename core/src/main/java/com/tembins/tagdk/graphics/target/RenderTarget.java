@@ -0,0 +1,108 @@
+package com.tembins.tagdk.graphics.target;
+
+import com.tembins.tagdk.graphics.backend.GLConstants;
+
+/**
+ * A framebuffer with a color texture and an optional depth renderbuffer, as handed out by a
+ * RenderTargetPool. The color texture uses linear filtering and clamps to the edge, so it can be
+ * sampled or blitted to the screen directly.
+ */
+public final class RenderTarget {
+
+    final int framebuffer, colorTexture, depthRenderbuffer;
+    final int width, height, colorFormat, depthFormat;
+    long lastUsedFrame;
+    boolean acquired;
+
+    RenderTarget(final int framebuffer, final int colorTexture, final int depthRenderbuffer, final int width,
+                 final int height, final int colorFormat, final int depthFormat) {
+        this.framebuffer = framebuffer;
+        this.colorTexture = colorTexture;
+        this.depthRenderbuffer = depthRenderbuffer;
+        this.width = width;
+        this.height = height;
+        this.colorFormat = colorFormat;
+        this.depthFormat = depthFormat;
+    }
+
+    boolean matches(final int width, final int height, final int colorFormat, final int depthFormat) {
+        return this.width == width && this.height == height
+                && this.colorFormat == colorFormat && this.depthFormat == depthFormat;
+    }
+
+    /**
+     * Returns the OpenGL name of the framebuffer.
+     *
+     * @return The framebuffer.
+     */
+    public int getFramebuffer() {
+        return framebuffer;
+    }
+
+    /**
+     * Returns the OpenGL name of the color texture.
+     *
+     * @return The color texture.
+     */
+    public int getColorTexture() {
+        return colorTexture;
+    }
+
+    /**
+     * Returns the OpenGL name of the depth renderbuffer.
+     *
+     * @return The depth renderbuffer, or 0 if the target has no depth.
+     */
+    public int getDepthRenderbuffer() {
+        return depthRenderbuffer;
+    }
+
+    /**
+     * Returns the width of the attachments.
+     *
+     * @return The width in pixels.
+     */
+    public int getWidth() {
+        return width;
+    }
+
+    /**
+     * Returns the height of the attachments.
+     *
+     * @return The height in pixels.
+     */
+    public int getHeight() {
+        return height;
+    }
+
+    /**
+     * Returns the sized format of the color texture.
+     *
+     * @return The color format, e.g. GL_RGBA8.
+     */
+    public int getColorFormat() {
+        return colorFormat;
+    }
+
+    /**
+     * Returns the sized format of the depth renderbuffer.
+     *
+     * @return The depth format, e.g. GL_DEPTH24_STENCIL8, or 0 if the target has no depth.
+     */
+    public int getDepthFormat() {
+        return depthFormat;
+    }
+
+    /**
+     * Returns the memory used by the attachments.
+     *
+     * @return The size in bytes.
+     */
+    public int getSizeBytes() {
+        return width * height * (getPixelSize(colorFormat) + getPixelSize(depthFormat));
+    }
+
+    static int getPixelSize(final int format) {
+        return format == GLConstants.GL_RGB8 ? 3 : GLConstants.getRenderbufferSize(1, 1, format);
+    }
+}
@@ -0,0 +1,320 @@
+package com.tembins.tagdk.graphics.target;
+
+import com.tembins.tagdk.graphics.backend.GLConstants;
+import com.tembins.tagdk.graphics.backend.GraphicsBackend;
+
+import java.util.ArrayList;
+
+/**
+ * Hands out render targets and single attachments of a given size and format, reusing released
+ * ones instead of creating and deleting framebuffers, textures and renderbuffers every frame.
+ * Released objects stay in the pool until they were unused for a configurable amount of frames,
+ * so one whose size is no longer requested, e.g. after the screen was rotated, is eventually
+ * deleted.
+ *
+ * Free objects are kept in lists searched linearly, which is fast for the handful of targets a
+ * frame uses. Must only be used on the GL thread.
+ */
+public final class RenderTargetPool {
+
+    private final GraphicsBackend graphics;
+    private final int maxIdleFrames;
+    private final ArrayList<RenderTarget> freeTargets = new ArrayList<>();
+    private final ArrayList<Attachment> freeAttachments = new ArrayList<>();
+    private long frame;
+    private int targetCount, createdCount;
+    private int attachmentCount, createdAttachmentCount;
+    private long allocatedBytes;
+
+    /**
+     * Initializes the pool with the following parameters:
+     *
+     * @param graphics The backend to create the targets with.
+     * @param maxIdleFrames The amount of frames a released target is kept before it is deleted.
+     */
+    public RenderTargetPool(final GraphicsBackend graphics, final int maxIdleFrames) {
+        if(maxIdleFrames < 0)
+            throw new IllegalArgumentException("The idle frame count must not be negative");
+
+        this.graphics = graphics;
+        this.maxIdleFrames = maxIdleFrames;
+    }
+
+    /**
+     * Returns a render target, reusing a released one with the same size and formats if possible.
+     * The content of reused targets is undefined.
+     *
+     * @param width The width in pixels.
+     * @param height The height in pixels.
+     * @param colorFormat The sized color format, GL_RGBA8, GL_RGB8 or GL_RGBA16F.
+     * @param depthFormat The sized depth format, e.g. GL_DEPTH_COMPONENT24, or 0 for no depth.
+     * @return The render target, to be passed to release(RenderTarget) once it is no longer used.
+     * @throws IllegalArgumentException If the size or a format is not supported.
+     * @throws IllegalStateException If the framebuffer is not complete.
+     */
+    public RenderTarget acquire(final int width, final int height, final int colorFormat, final int depthFormat) {
+        if(width <= 0 || height <= 0)
+            throw new IllegalArgumentException("Invalid render target size " + width + "x" + height);
+
+        for(int index = freeTargets.size() - 1; index >= 0; index--) {
+            final RenderTarget target = freeTargets.get(index);
+            if(target.matches(width, height, colorFormat, depthFormat)) {
+                freeTargets.remove(index);
+                target.acquired = true;
+                return target;
+            }
+        }
+
+        final RenderTarget target = create(width, height, colorFormat, depthFormat);
+        target.acquired = true;
+        return target;
+    }
+
+    private RenderTarget create(final int width, final int height, final int colorFormat, final int depthFormat) {
+        // Checked before creating anything, so an unsupported format leaks no objects or bindings
+        if(!isTextureFormat(colorFormat))
+            throw new IllegalArgumentException("Unsupported texture format 0x" + Integer.toHexString(colorFormat));
+        if(depthFormat != 0 && !Attachment.isDepthFormat(depthFormat))
+            throw new IllegalArgumentException("Unsupported depth format 0x" + Integer.toHexString(depthFormat));
+
+        final int framebuffer = graphics.createFramebuffer();
+        graphics.bindFramebuffer(GLConstants.GL_FRAMEBUFFER, framebuffer);
+
+        final int colorTexture = createTexture(width, height, colorFormat);
+        graphics.framebufferTexture2D(GLConstants.GL_FRAMEBUFFER, GLConstants.GL_COLOR_ATTACHMENT0,
+                GLConstants.GL_TEXTURE_2D, colorTexture, 0);
+
+        int depthRenderbuffer = 0;
+        if(depthFormat != 0) {
+            depthRenderbuffer = createRenderbuffer(width, height, depthFormat);
+            graphics.framebufferRenderbuffer(GLConstants.GL_FRAMEBUFFER, Attachment.getAttachmentPoint(depthFormat),
+                    GLConstants.GL_RENDERBUFFER, depthRenderbuffer);
+        }
+
+        final int status = graphics.checkFramebufferStatus(GLConstants.GL_FRAMEBUFFER);
+        graphics.bindFramebuffer(GLConstants.GL_FRAMEBUFFER, 0);
+        final RenderTarget target = new RenderTarget(framebuffer, colorTexture, depthRenderbuffer, width, height,
+                colorFormat, depthFormat);
+        if(status != GLConstants.GL_FRAMEBUFFER_COMPLETE) {
+            delete(target);
+            throw new IllegalStateException("Render target " + width + "x" + height + " is incomplete, status 0x"
+                    + Integer.toHexString(status));
+        }
+
+        targetCount++;
+        createdCount++;
+        allocatedBytes += target.getSizeBytes();
+        return target;
+    }
+
+    private static boolean isTextureFormat(final int internalFormat) {
+        return internalFormat == GLConstants.GL_RGBA8 || internalFormat == GLConstants.GL_RGB8
+                || internalFormat == GLConstants.GL_RGBA16F;
+    }
+
+    private int createTexture(final int width, final int height, final int internalFormat) {
+        final int format, type;
+        switch(internalFormat) {
+            case GLConstants.GL_RGBA8: format = GLConstants.GL_RGBA; type = GLConstants.GL_UNSIGNED_BYTE; break;
+            case GLConstants.GL_RGB8: format = GLConstants.GL_RGB; type = GLConstants.GL_UNSIGNED_BYTE; break;
+            case GLConstants.GL_RGBA16F: format = GLConstants.GL_RGBA; type = GLConstants.GL_HALF_FLOAT; break;
+            default: throw new IllegalArgumentException("Unsupported texture format 0x" + Integer.toHexString(internalFormat));
+        }
+
+        final int texture = graphics.createTexture();
+        graphics.bindTexture(GLConstants.GL_TEXTURE_2D, texture);
+        graphics.texImage2D(GLConstants.GL_TEXTURE_2D, 0, internalFormat, width, height, format, type, null);
+        graphics.texParameteri(GLConstants.GL_TEXTURE_2D, GLConstants.GL_TEXTURE_MIN_FILTER, GLConstants.GL_LINEAR);
+        graphics.texParameteri(GLConstants.GL_TEXTURE_2D, GLConstants.GL_TEXTURE_MAG_FILTER, GLConstants.GL_LINEAR);
+        graphics.texParameteri(GLConstants.GL_TEXTURE_2D, GLConstants.GL_TEXTURE_WRAP_S, GLConstants.GL_CLAMP_TO_EDGE);
+        graphics.texParameteri(GLConstants.GL_TEXTURE_2D, GLConstants.GL_TEXTURE_WRAP_T, GLConstants.GL_CLAMP_TO_EDGE);
+        return texture;
+    }
+
+    private int createRenderbuffer(final int width, final int height, final int internalFormat) {
+        if(RenderTarget.getPixelSize(internalFormat) == 0)
+            throw new IllegalArgumentException("Unsupported renderbuffer format 0x" + Integer.toHexString(internalFormat));
+
+        final int renderbuffer = graphics.createRenderbuffer();
+        graphics.bindRenderbuffer(GLConstants.GL_RENDERBUFFER, renderbuffer);
+        graphics.renderbufferStorage(GLConstants.GL_RENDERBUFFER, internalFormat, width, height);
+        return renderbuffer;
+    }
+
+    private void delete(final RenderTarget target) {
+        graphics.deleteFramebuffer(target.framebuffer);
+        graphics.deleteTexture(target.colorTexture);
+        if(target.depthRenderbuffer != 0)
+            graphics.deleteRenderbuffer(target.depthRenderbuffer);
+    }
+
+    /**
+     * Returns a render target to the pool, making it available to later acquires.
+     *
+     * @param target The target returned by acquire.
+     */
+    public void release(final RenderTarget target) {
+        if(!target.acquired)
+            throw new IllegalArgumentException("The render target was already released");
+
+        target.acquired = false;
+        target.lastUsedFrame = frame;
+        freeTargets.add(target);
+    }
+
+    /**
+     * Returns a single texture or renderbuffer, reusing a released one with the same size and
+     * format if possible. The content of reused attachments is undefined.
+     *
+     * @param width The width in pixels.
+     * @param height The height in pixels.
+     * @param format The sized format, GL_RGBA8, GL_RGB8 or GL_RGBA16F for textures, or a depth
+     *               format for renderbuffers.
+     * @param renderbuffer Whether to create a renderbuffer instead of a texture, for attachments
+     *                     that are never sampled.
+     * @return The attachment, to be passed to release(Attachment) once it is no longer used.
+     */
+    public Attachment acquire(final int width, final int height, final int format, final boolean renderbuffer) {
+        if(width <= 0 || height <= 0)
+            throw new IllegalArgumentException("Invalid attachment size " + width + "x" + height);
+
+        for(int index = freeAttachments.size() - 1; index >= 0; index--) {
+            final Attachment attachment = freeAttachments.get(index);
+            if(attachment.matches(width, height, format, renderbuffer)) {
+                freeAttachments.remove(index);
+                attachment.acquired = true;
+                return attachment;
+            }
+        }
+
+        final int name = renderbuffer ? createRenderbuffer(width, height, format) : createTexture(width, height, format);
+        final Attachment attachment = new Attachment(name, width, height, format, renderbuffer);
+        attachment.acquired = true;
+        attachmentCount++;
+        createdAttachmentCount++;
+        allocatedBytes += attachment.getSizeBytes();
+        return attachment;
+    }
+
+    /**
+     * Returns an attachment to the pool, making it available to later acquires.
+     *
+     * @param attachment The attachment returned by acquire.
+     */
+    public void release(final Attachment attachment) {
+        if(!attachment.acquired)
+            throw new IllegalArgumentException("The attachment was already released");
+
+        attachment.acquired = false;
+        attachment.lastUsedFrame = frame;
+        freeAttachments.add(attachment);
+    }
+
+    /**
+     * Starts a new frame, deleting the free targets and attachments that were unused for too long.
+     */
+    public void beginFrame() {
+        frame++;
+        for(int index = freeTargets.size() - 1; index >= 0; index--) {
+            final RenderTarget target = freeTargets.get(index);
+            if(frame - target.lastUsedFrame > maxIdleFrames)
+                deleteFree(index);
+        }
+        for(int index = freeAttachments.size() - 1; index >= 0; index--) {
+            final Attachment attachment = freeAttachments.get(index);
+            if(frame - attachment.lastUsedFrame > maxIdleFrames)
+                deleteFreeAttachment(index);
+        }
+    }
+
+    private void deleteFree(final int index) {
+        final RenderTarget target = freeTargets.remove(index);
+        delete(target);
+        targetCount--;
+        allocatedBytes -= target.getSizeBytes();
+    }
+
+    private void deleteFreeAttachment(final int index) {
+        final Attachment attachment = freeAttachments.remove(index);
+        if(attachment.renderbuffer)
+            graphics.deleteRenderbuffer(attachment.name);
+        else
+            graphics.deleteTexture(attachment.name);
+        attachmentCount--;
+        allocatedBytes -= attachment.getSizeBytes();
+    }
+
+    /**
+     * Deletes all free targets and attachments, e.g. when leaving a level. Acquired ones are not
+     * affected.
+     */
+    public void clear() {
+        for(int index = freeTargets.size() - 1; index >= 0; index--)
+            deleteFree(index);
+        for(int index = freeAttachments.size() - 1; index >= 0; index--)
+            deleteFreeAttachment(index);
+    }
+
+    /**
+     * Returns the amount of existing targets, acquired or free.
+     *
+     * @return The target count.
+     */
+    public int getTargetCount() {
+        return targetCount;
+    }
+
+    /**
+     * Returns the amount of released targets waiting for reuse.
+     *
+     * @return The free target count.
+     */
+    public int getFreeCount() {
+        return freeTargets.size();
+    }
+
+    /**
+     * Returns the amount of targets created since the pool was initialized, a measure of reuse.
+     *
+     * @return The created target count.
+     */
+    public int getCreatedCount() {
+        return createdCount;
+    }
+
+    /**
+     * Returns the amount of existing single attachments, acquired or free.
+     *
+     * @return The attachment count.
+     */
+    public int getAttachmentCount() {
+        return attachmentCount;
+    }
+
+    /**
+     * Returns the amount of released single attachments waiting for reuse.
+     *
+     * @return The free attachment count.
+     */
+    public int getFreeAttachmentCount() {
+        return freeAttachments.size();
+    }
+
+    /**
+     * Returns the amount of single attachments created since the pool was initialized.
+     *
+     * @return The created attachment count.
+     */
+    public int getCreatedAttachmentCount() {
+        return createdAttachmentCount;
+    }
+
+    /**
+     * Returns the memory used by all existing targets and single attachments.
+     *
+     * @return The size in bytes.
+     */
+    public long getAllocatedBytes() {
+        return allocatedBytes;
+    }
+}
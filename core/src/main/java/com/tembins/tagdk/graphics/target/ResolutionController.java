@@ -0,0 +1,181 @@
+package com.tembins.tagdk.graphics.target;
+
+/**
+ * Chooses the render resolution scale from measured frame times, lowering it while frames take
+ * longer than the target and raising it again once there is headroom. The frame times are
+ * smoothed with an exponential moving average and fed into a PID controller in velocity form,
+ * which adjusts the scale by a delta each frame:
+ *
+ * <pre>
+ * error = (target - smoothed) / target
+ * scale += kp * (error - previous) + ki * error + kd * (error - 2 * previous + beforePrevious)
+ * </pre>
+ *
+ * Since only the delta is integrated, clamping the scale to its bounds cannot wind up the
+ * integral, so the controller reacts right away when the load changes after a long time at a
+ * bound. Errors within a small dead band count as zero to keep the scale from jittering around
+ * the target.
+ *
+ * The measured time should be the one the resolution affects: the GPU time of the frame if it is
+ * available, e.g. from a GpuTimer, otherwise the CPU frame time. The target should leave some
+ * headroom below the vsync interval, e.g. 15 ms for 60 Hz. The controller holds no graphics
+ * state and can be driven with synthetic frame times.
+ */
+public final class ResolutionController {
+
+    public static final float DEFAULT_PROPORTIONAL_GAIN = 0.1f;
+    public static final float DEFAULT_INTEGRAL_GAIN = 0.03f;
+    public static final float DEFAULT_DERIVATIVE_GAIN = 0.02f;
+    public static final float DEFAULT_SMOOTHING = 0.1f;
+    public static final float DEFAULT_DEAD_BAND = 0.02f;
+
+    private final long targetFrameNanos;
+    private final float minScale, maxScale;
+    private float proportionalGain = DEFAULT_PROPORTIONAL_GAIN;
+    private float integralGain = DEFAULT_INTEGRAL_GAIN;
+    private float derivativeGain = DEFAULT_DERIVATIVE_GAIN;
+    private float smoothing = DEFAULT_SMOOTHING;
+    private float deadBand = DEFAULT_DEAD_BAND;
+
+    private float scale;
+    private double smoothedNanos;
+    private float previousError, beforePreviousError;
+    private boolean measured;
+
+    /**
+     * Initializes the controller with the following parameters:
+     *
+     * @param targetFrameNanos The frame time to aim for in nanoseconds.
+     * @param minScale The smallest scale of the render resolution per axis, e.g. 0.5.
+     * @param maxScale The largest scale of the render resolution per axis, usually 1. The
+     *                 controller starts at this scale.
+     */
+    public ResolutionController(final long targetFrameNanos, final float minScale, final float maxScale) {
+        if(targetFrameNanos <= 0L)
+            throw new IllegalArgumentException("The target frame time must be positive");
+        if(minScale <= 0.0f || minScale > maxScale)
+            throw new IllegalArgumentException("Invalid scale bounds " + minScale + " to " + maxScale);
+
+        this.targetFrameNanos = targetFrameNanos;
+        this.minScale = minScale;
+        this.maxScale = maxScale;
+        scale = maxScale;
+    }
+
+    /**
+     * Changes the gains of the controller.
+     *
+     * @param proportional The gain applied to the change of the error.
+     * @param integral The gain applied to the error, the main driver of the scale.
+     * @param derivative The gain applied to the change of the error's change.
+     */
+    public void setGains(final float proportional, final float integral, final float derivative) {
+        proportionalGain = proportional;
+        integralGain = integral;
+        derivativeGain = derivative;
+    }
+
+    /**
+     * Changes how strongly frame times are smoothed.
+     *
+     * @param smoothing The weight of the newest frame time in (0, 1], 1 disabling smoothing.
+     */
+    public void setSmoothing(final float smoothing) {
+        if(smoothing <= 0.0f || smoothing > 1.0f)
+            throw new IllegalArgumentException("The smoothing must be in (0, 1]");
+
+        this.smoothing = smoothing;
+    }
+
+    /**
+     * Changes the relative error ignored by the controller.
+     *
+     * @param deadBand The error relative to the target below which the scale is kept, e.g. 0.02.
+     */
+    public void setDeadBand(final float deadBand) {
+        this.deadBand = deadBand;
+    }
+
+    /**
+     * Adds the time of a finished frame and updates the scale.
+     *
+     * @param frameNanos The measured frame time in nanoseconds.
+     * @return The new scale per axis.
+     */
+    public float update(final long frameNanos) {
+        if(measured) {
+            smoothedNanos += smoothing * (frameNanos - smoothedNanos);
+        } else {
+            smoothedNanos = frameNanos;
+            measured = true;
+        }
+
+        float error = (float) ((targetFrameNanos - smoothedNanos) / targetFrameNanos);
+        if(Math.abs(error) < deadBand)
+            error = 0.0f;
+
+        final float delta = proportionalGain * (error - previousError) + integralGain * error
+                + derivativeGain * (error - 2.0f * previousError + beforePreviousError);
+        scale = Math.max(minScale, Math.min(maxScale, scale + delta));
+        beforePreviousError = previousError;
+        previousError = error;
+        return scale;
+    }
+
+    /**
+     * Returns to the largest scale and forgets the measured frame times, e.g. after loading a
+     * level.
+     */
+    public void reset() {
+        scale = maxScale;
+        measured = false;
+        smoothedNanos = 0.0;
+        previousError = 0.0f;
+        beforePreviousError = 0.0f;
+    }
+
+    /**
+     * Returns the current scale of the render resolution per axis.
+     *
+     * @return The scale, between the bounds.
+     */
+    public float getScale() {
+        return scale;
+    }
+
+    /**
+     * Returns the smoothed frame time the scale is based on.
+     *
+     * @return The smoothed frame time in nanoseconds.
+     */
+    public long getSmoothedFrameNanos() {
+        return (long) smoothedNanos;
+    }
+
+    /**
+     * Returns the frame time the controller aims for.
+     *
+     * @return The target frame time in nanoseconds.
+     */
+    public long getTargetFrameNanos() {
+        return targetFrameNanos;
+    }
+
+    /**
+     * Returns the smallest scale.
+     *
+     * @return The lower bound.
+     */
+    public float getMinScale() {
+        return minScale;
+    }
+
+    /**
+     * Returns the largest scale.
+     *
+     * @return The upper bound.
+     */
+    public float getMaxScale() {
+        return maxScale;
+    }
+}
@@ -0,0 +1,264 @@
+package com.tembins.tagdk.graphics.text;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Holds the metrics of the glyphs of a signed distance field font and where they are stored in
+ * its atlas texture. The metrics are kept in primitive arrays indexed by glyph, and characters
+ * are mapped to glyphs through a table indexed by the character itself, so laying out text only
+ * reads arrays.
+ *
+ * Metrics are in pixels of the atlas, with the y axis pointing down: a glyph is drawn offsetX to
+ * the right of the pen and offsetY below the top of the line, and the pen then advances by the
+ * glyph advance. Atlases are either baked offline and parsed from the text format of BMFont, as
+ * written by Hiero or msdf-bmfont, or built at runtime with SdfAtlasBuilder.
+ */
+public final class FontAtlas {
+
+    public static final int NO_GLYPH = -1;
+    private static final char FALLBACK_CHARACTER = '?';
+
+    private final float lineHeight, base, distanceRange;
+    private final int atlasWidth, atlasHeight;
+    private final int[] glyphs;
+    final float[] advance, offsetX, offsetY, width, height;
+    final float[] u0, v0, u1, v1;
+    private final int glyphCount;
+    private final int fallbackGlyph;
+
+    /**
+     * Creates an atlas from the given glyph metrics, all arrays being indexed by glyph.
+     *
+     * @param lineHeight The distance between two lines.
+     * @param base The distance from the top of a line to the baseline.
+     * @param distanceRange The distance in atlas pixels covered by the distance field on each side
+     *                      of a glyph outline.
+     * @param atlasWidth The width of the atlas texture.
+     * @param atlasHeight The height of the atlas texture.
+     * @param characters The character of every glyph.
+     * @param bounds The x, y, width and height of every glyph in the atlas.
+     * @param offsets The x and y offset of every glyph.
+     * @param advances The advance of every glyph.
+     */
+    public FontAtlas(final float lineHeight, final float base, final float distanceRange,
+                     final int atlasWidth, final int atlasHeight, final char[] characters,
+                     final float[] bounds, final float[] offsets, final float[] advances) {
+        this(lineHeight, base, distanceRange, atlasWidth, atlasHeight, characters, bounds, offsets, advances,
+                characters.length);
+    }
+
+    private FontAtlas(final float lineHeight, final float base, final float distanceRange,
+                      final int atlasWidth, final int atlasHeight, final char[] characters,
+                      final float[] bounds, final float[] offsets, final float[] advances, final int glyphCount) {
+        if(bounds.length < glyphCount * 4 || offsets.length < glyphCount * 2 || advances.length < glyphCount)
+            throw new IllegalArgumentException("Metrics missing for some of the " + glyphCount + " glyphs");
+        if(atlasWidth <= 0 || atlasHeight <= 0)
+            throw new IllegalArgumentException("Invalid atlas size " + atlasWidth + "x" + atlasHeight);
+
+        this.lineHeight = lineHeight;
+        this.base = base;
+        this.distanceRange = distanceRange;
+        this.atlasWidth = atlasWidth;
+        this.atlasHeight = atlasHeight;
+        this.glyphCount = glyphCount;
+
+        int maxCharacter = 0;
+        for(int glyph = 0; glyph < glyphCount; glyph++)
+            maxCharacter = Math.max(maxCharacter, characters[glyph]);
+        glyphs = new int[maxCharacter + 1];
+        Arrays.fill(glyphs, NO_GLYPH);
+
+        advance = Arrays.copyOf(advances, glyphCount);
+        offsetX = new float[glyphCount];
+        offsetY = new float[glyphCount];
+        width = new float[glyphCount];
+        height = new float[glyphCount];
+        u0 = new float[glyphCount];
+        v0 = new float[glyphCount];
+        u1 = new float[glyphCount];
+        v1 = new float[glyphCount];
+        for(int glyph = 0; glyph < glyphCount; glyph++) {
+            glyphs[characters[glyph]] = glyph;
+            offsetX[glyph] = offsets[glyph * 2];
+            offsetY[glyph] = offsets[glyph * 2 + 1];
+            width[glyph] = bounds[glyph * 4 + 2];
+            height[glyph] = bounds[glyph * 4 + 3];
+            u0[glyph] = bounds[glyph * 4] / atlasWidth;
+            v0[glyph] = bounds[glyph * 4 + 1] / atlasHeight;
+            u1[glyph] = (bounds[glyph * 4] + width[glyph]) / atlasWidth;
+            v1[glyph] = (bounds[glyph * 4 + 1] + height[glyph]) / atlasHeight;
+        }
+        fallbackGlyph = FALLBACK_CHARACTER < glyphs.length ? glyphs[FALLBACK_CHARACTER] : NO_GLYPH;
+    }
+
+    /**
+     * Parses the text format of BMFont. The common line, all char lines and the optional
+     * distanceField line of msdf-bmfont are read, everything else is ignored.
+     *
+     * @param text The contents of the font file.
+     * @return The parsed atlas.
+     * @throws IOException If the text is not a valid single page font.
+     */
+    public static FontAtlas parse(final String text) throws IOException {
+        float lineHeight = -1.0f, base = 0.0f, distanceRange = 1.0f;
+        int atlasWidth = 0, atlasHeight = 0;
+        int count = 0;
+        char[] characters = new char[128];
+        float[] bounds = new float[128 * 4], offsets = new float[128 * 2], advances = new float[128];
+
+        for(final String line : text.split("\n")) {
+            final String[] tokens = line.trim().split("\\s+");
+            if(tokens[0].equals("common")) {
+                lineHeight = value(tokens, "lineHeight", line);
+                base = value(tokens, "base", line);
+                atlasWidth = (int) value(tokens, "scaleW", line);
+                atlasHeight = (int) value(tokens, "scaleH", line);
+            } else if(tokens[0].equals("distanceField")) {
+                distanceRange = value(tokens, "distanceRange", line);
+            } else if(tokens[0].equals("char")) {
+                if(count == characters.length) {
+                    characters = Arrays.copyOf(characters, count * 2);
+                    bounds = Arrays.copyOf(bounds, count * 8);
+                    offsets = Arrays.copyOf(offsets, count * 4);
+                    advances = Arrays.copyOf(advances, count * 2);
+                }
+
+                final float id = value(tokens, "id", line);
+                if(id < 0 || id > Character.MAX_VALUE)
+                    throw new IOException("Character out of range: " + line);
+
+                characters[count] = (char) id;
+                bounds[count * 4] = value(tokens, "x", line);
+                bounds[count * 4 + 1] = value(tokens, "y", line);
+                bounds[count * 4 + 2] = value(tokens, "width", line);
+                bounds[count * 4 + 3] = value(tokens, "height", line);
+                offsets[count * 2] = value(tokens, "xoffset", line);
+                offsets[count * 2 + 1] = value(tokens, "yoffset", line);
+                advances[count] = value(tokens, "xadvance", line);
+                count++;
+            }
+        }
+
+        if(lineHeight < 0.0f)
+            throw new IOException("The font has no common line");
+
+        return new FontAtlas(lineHeight, base, distanceRange, atlasWidth, atlasHeight,
+                characters, bounds, offsets, advances, count);
+    }
+
+    private static float value(final String[] tokens, final String key, final String line) throws IOException {
+        for(final String token : tokens) {
+            if(token.length() > key.length() && token.startsWith(key) && token.charAt(key.length()) == '=') {
+                try {
+                    return Float.parseFloat(token.substring(key.length() + 1));
+                } catch(NumberFormatException exception) {
+                    throw new IOException("Invalid value of " + key + ": " + line);
+                }
+            }
+        }
+        throw new IOException("Missing " + key + ": " + line);
+    }
+
+    /**
+     * Returns the glyph of a character, falling back to the glyph of '?' if the font does not
+     * contain the character.
+     *
+     * @param character The character.
+     * @return The glyph index, or NO_GLYPH if neither the character nor '?' are in the font.
+     */
+    public int getGlyph(final char character) {
+        if(character < glyphs.length && glyphs[character] != NO_GLYPH)
+            return glyphs[character];
+        return fallbackGlyph;
+    }
+
+    /**
+     * Returns the width of a single line of text.
+     *
+     * @param text The text to measure.
+     * @param size The line height to draw the text with in pixels.
+     * @return The width in pixels.
+     */
+    public float measure(final CharSequence text, final float size) {
+        float lineWidth = 0.0f, maxWidth = 0.0f;
+        for(int index = 0; index < text.length(); index++) {
+            final char character = text.charAt(index);
+            if(character == '\n') {
+                maxWidth = Math.max(maxWidth, lineWidth);
+                lineWidth = 0.0f;
+                continue;
+            }
+
+            final int glyph = getGlyph(character);
+            if(glyph != NO_GLYPH)
+                lineWidth += advance[glyph];
+        }
+        return Math.max(maxWidth, lineWidth) * size / lineHeight;
+    }
+
+    /**
+     * Returns the advance of a glyph.
+     *
+     * @param glyph The glyph index.
+     * @return The advance in atlas pixels.
+     */
+    public float getAdvance(final int glyph) {
+        return advance[glyph];
+    }
+
+    /**
+     * Returns the distance between two lines.
+     *
+     * @return The line height in atlas pixels.
+     */
+    public float getLineHeight() {
+        return lineHeight;
+    }
+
+    /**
+     * Returns the distance from the top of a line to the baseline.
+     *
+     * @return The base in atlas pixels.
+     */
+    public float getBase() {
+        return base;
+    }
+
+    /**
+     * Returns the distance covered by the distance field on each side of an outline, needed by
+     * the shader to compute the antialiasing width.
+     *
+     * @return The distance range in atlas pixels.
+     */
+    public float getDistanceRange() {
+        return distanceRange;
+    }
+
+    /**
+     * Returns the width of the atlas texture.
+     *
+     * @return The width in pixels.
+     */
+    public int getAtlasWidth() {
+        return atlasWidth;
+    }
+
+    /**
+     * Returns the height of the atlas texture.
+     *
+     * @return The height in pixels.
+     */
+    public int getAtlasHeight() {
+        return atlasHeight;
+    }
+
+    /**
+     * Returns the amount of glyphs in the font.
+     *
+     * @return The glyph count.
+     */
+    public int getGlyphCount() {
+        return glyphCount;
+    }
+}
@@ -0,0 +1,169 @@
+package com.tembins.tagdk.graphics.text;
+
+import com.tembins.tagdk.util.resource.ImageData;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Builds a signed distance field font at runtime or in an offline tool. Glyphs are rasterized
+ * once, e.g. with a large Android Paint into a coverage bitmap, converted with SdfGenerator and
+ * packed into shelves of an atlas image. The image can be uploaded with a TextureLoadingTask and
+ * the returned FontAtlas holds the matching metrics.
+ *
+ * All metrics given to the builder are in pixels of the coverage bitmaps, which are scaled down by
+ * the downscale factor, since a distance field needs far fewer pixels than the coverage it is
+ * computed from.
+ */
+public final class SdfAtlasBuilder {
+
+    private static final int PADDING = 1;
+
+    private final int atlasWidth, atlasHeight, downscale;
+    private final float spread;
+    private final byte[] distances;
+
+    private int count;
+    private char[] characters = new char[64];
+    private float[] bounds = new float[64 * 4], offsets = new float[64 * 2], advances = new float[64];
+    private int shelfX = PADDING, shelfY = PADDING, shelfHeight;
+
+    /**
+     * Initializes the builder with the following parameters:
+     *
+     * @param atlasWidth The width of the atlas image.
+     * @param atlasHeight The height of the atlas image.
+     * @param spread The distance in atlas pixels covered by the field on each side of an outline.
+     * @param downscale The factor between coverage and atlas pixels, 1 to keep the size.
+     */
+    public SdfAtlasBuilder(final int atlasWidth, final int atlasHeight, final float spread, final int downscale) {
+        if(atlasWidth <= 0 || atlasHeight <= 0)
+            throw new IllegalArgumentException("Invalid atlas size " + atlasWidth + "x" + atlasHeight);
+        if(downscale < 1)
+            throw new IllegalArgumentException("The downscale factor must be at least 1");
+
+        this.atlasWidth = atlasWidth;
+        this.atlasHeight = atlasHeight;
+        this.spread = spread;
+        this.downscale = downscale;
+        distances = new byte[atlasWidth * atlasHeight];
+    }
+
+    /**
+     * Converts a glyph into a distance field and packs it into the atlas. Glyphs with an empty
+     * bitmap, such as spaces, only get their metrics recorded and take no room in the atlas.
+     *
+     * @param character The character of the glyph.
+     * @param coverage The coverage of the glyph as unsigned bytes, row by row from the top.
+     * @param width The width of the coverage bitmap.
+     * @param height The height of the coverage bitmap.
+     * @param offsetX The distance from the pen to the left edge of the bitmap.
+     * @param offsetY The distance from the top of the line to the top edge of the bitmap.
+     * @param advance The distance the pen moves after the glyph.
+     * @return False if the atlas is full, in which case the glyph is not added.
+     */
+    public boolean addGlyph(final char character, final byte[] coverage, final int width, final int height,
+                            final float offsetX, final float offsetY, final float advance) {
+        if(width == 0 || height == 0) {
+            // Zero bounds let TextBatch skip the glyph instead of drawing an empty quad
+            addMetrics(character, 0, 0, 0, 0, offsetX / downscale, offsetY / downscale, advance / downscale);
+            return true;
+        }
+
+        // The field needs room to fall off around the outline, in coverage pixels
+        final int border = (int) Math.ceil(spread) * downscale;
+        final int paddedWidth = width + 2 * border, paddedHeight = height + 2 * border;
+        final int fieldWidth = (paddedWidth + downscale - 1) / downscale;
+        final int fieldHeight = (paddedHeight + downscale - 1) / downscale;
+
+        if(shelfX + fieldWidth + PADDING > atlasWidth) {
+            shelfX = PADDING;
+            shelfY += shelfHeight + PADDING;
+            shelfHeight = 0;
+        }
+        if(shelfY + fieldHeight + PADDING > atlasHeight || fieldWidth + 2 * PADDING > atlasWidth)
+            return false;
+
+        final byte[] padded = new byte[fieldWidth * downscale * fieldHeight * downscale];
+        final int paddedStride = fieldWidth * downscale;
+        for(int y = 0; y < height; y++)
+            System.arraycopy(coverage, y * width, padded, (y + border) * paddedStride + border, width);
+        final byte[] field = SdfGenerator.generate(padded, paddedStride, fieldHeight * downscale, spread * downscale);
+
+        // Point sampling the center of each block keeps the field exact at the sampled pixels
+        for(int y = 0; y < fieldHeight; y++) {
+            final int sourceRow = (y * downscale + downscale / 2) * paddedStride;
+            for(int x = 0; x < fieldWidth; x++)
+                distances[(shelfY + y) * atlasWidth + shelfX + x] = field[sourceRow + x * downscale + downscale / 2];
+        }
+
+        addMetrics(character, shelfX, shelfY, fieldWidth, fieldHeight, (offsetX - border) / downscale,
+                (offsetY - border) / downscale, advance / downscale);
+
+        shelfX += fieldWidth + PADDING;
+        shelfHeight = Math.max(shelfHeight, fieldHeight);
+        return true;
+    }
+
+    private void addMetrics(final char character, final int x, final int y, final int width, final int height,
+                            final float offsetX, final float offsetY, final float advance) {
+        if(count == characters.length) {
+            characters = Arrays.copyOf(characters, count * 2);
+            bounds = Arrays.copyOf(bounds, count * 8);
+            offsets = Arrays.copyOf(offsets, count * 4);
+            advances = Arrays.copyOf(advances, count * 2);
+        }
+        characters[count] = character;
+        bounds[count * 4] = x;
+        bounds[count * 4 + 1] = y;
+        bounds[count * 4 + 2] = width;
+        bounds[count * 4 + 3] = height;
+        offsets[count * 2] = offsetX;
+        offsets[count * 2 + 1] = offsetY;
+        advances[count] = advance;
+        count++;
+    }
+
+    /**
+     * Creates the metrics of all added glyphs.
+     *
+     * @param lineHeight The distance between two lines, in coverage pixels.
+     * @param base The distance from the top of a line to the baseline, in coverage pixels.
+     * @return The font atlas.
+     */
+    public FontAtlas buildAtlas(final float lineHeight, final float base) {
+        return new FontAtlas(lineHeight / downscale, base / downscale, spread, atlasWidth, atlasHeight,
+                Arrays.copyOf(characters, count), bounds, offsets, advances);
+    }
+
+    /**
+     * Creates the atlas image, white with the distance field in the alpha channel.
+     *
+     * @return The RGBA image.
+     */
+    public ImageData buildImage() {
+        final ByteBuffer pixels = ByteBuffer.allocateDirect(atlasWidth * atlasHeight * 4);
+        for(final byte distance : distances)
+            pixels.put((byte) 0xFF).put((byte) 0xFF).put((byte) 0xFF).put(distance);
+        pixels.flip();
+        return new ImageData(atlasWidth, atlasHeight, pixels);
+    }
+
+    /**
+     * Returns the distance field of the whole atlas.
+     *
+     * @return The distances as unsigned bytes, row by row from the top.
+     */
+    public byte[] getDistances() {
+        return distances;
+    }
+
+    /**
+     * Returns the amount of packed glyphs.
+     *
+     * @return The glyph count.
+     */
+    public int getGlyphCount() {
+        return count;
+    }
+}
@@ -0,0 +1,117 @@
+package com.tembins.tagdk.graphics.text;
+
+/**
+ * Converts coverage bitmaps, e.g. glyphs rasterized at a large size, into signed distance fields.
+ * The distances are exact euclidean distances between pixel centers, computed with the linear time
+ * transform of Felzenszwalb and Huttenlocher once for the inside and once for the outside.
+ *
+ * The result stores 128 on the outline, larger values inside and smaller values outside, reaching
+ * 255 and 0 at the given spread. Sampled with linear filtering, the outline stays sharp at any
+ * scale, which lets one small atlas serve all text sizes.
+ */
+public final class SdfGenerator {
+
+    private static final float FAR = 1.0e20f;
+
+    private SdfGenerator() {
+    }
+
+    /**
+     * Computes the distance field of a coverage bitmap of the same size. Pixels with a coverage of
+     * at least 128 are inside. The bitmap should have a free border of spread pixels, otherwise
+     * the field is cut off at its edges.
+     *
+     * @param coverage The coverage of every pixel as unsigned bytes, row by row.
+     * @param width The width of the bitmap.
+     * @param height The height of the bitmap.
+     * @param spread The distance in pixels mapped to the full range on each side of the outline.
+     * @return The distance field as unsigned bytes, row by row.
+     */
+    public static byte[] generate(final byte[] coverage, final int width, final int height, final float spread) {
+        if(coverage.length < width * height)
+            throw new IllegalArgumentException("Coverage of " + coverage.length + " bytes is too small for "
+                    + width + "x" + height + " pixels");
+        if(spread <= 0.0f)
+            throw new IllegalArgumentException("The spread must be positive");
+
+        final int pixelCount = width * height;
+        final float[] toInside = new float[pixelCount], toOutside = new float[pixelCount];
+        for(int pixel = 0; pixel < pixelCount; pixel++) {
+            final boolean inside = (coverage[pixel] & 0xFF) >= 128;
+            toInside[pixel] = inside ? 0.0f : FAR;
+            toOutside[pixel] = inside ? FAR : 0.0f;
+        }
+
+        final int length = Math.max(width, height);
+        final float[] line = new float[length], distances = new float[length], boundaries = new float[length + 1];
+        final int[] parabolas = new int[length];
+        transform(toInside, width, height, line, distances, parabolas, boundaries);
+        transform(toOutside, width, height, line, distances, parabolas, boundaries);
+
+        final byte[] field = new byte[pixelCount];
+        for(int pixel = 0; pixel < pixelCount; pixel++) {
+            // The outline runs between the pixel centers, half a pixel from either side
+            final float distance = toInside[pixel] == 0.0f
+                    ? (float) Math.sqrt(toOutside[pixel]) - 0.5f : 0.5f - (float) Math.sqrt(toInside[pixel]);
+            final int value = Math.round(128.0f + distance / spread * 127.0f);
+            field[pixel] = (byte) Math.max(0, Math.min(255, value));
+        }
+        return field;
+    }
+
+    /**
+     * Replaces the values of the grid, 0 at feature pixels and FAR elsewhere, with the squared
+     * distance to the nearest feature pixel, transforming the columns and then the rows.
+     */
+    private static void transform(final float[] grid, final int width, final int height, final float[] line,
+                                  final float[] distances, final int[] parabolas, final float[] boundaries) {
+        for(int x = 0; x < width; x++) {
+            for(int y = 0; y < height; y++)
+                line[y] = grid[y * width + x];
+            transform(line, height, distances, parabolas, boundaries);
+            for(int y = 0; y < height; y++)
+                grid[y * width + x] = distances[y];
+        }
+
+        for(int y = 0; y < height; y++) {
+            System.arraycopy(grid, y * width, line, 0, width);
+            transform(line, width, distances, parabolas, boundaries);
+            System.arraycopy(distances, 0, grid, y * width, width);
+        }
+    }
+
+    /**
+     * Computes the lower envelope of the parabolas rooted at every sample, as described in
+     * "Distance Transforms of Sampled Functions" by Felzenszwalb and Huttenlocher.
+     */
+    private static void transform(final float[] samples, final int count, final float[] distances,
+                                  final int[] parabolas, final float[] boundaries) {
+        int rightmost = 0;
+        parabolas[0] = 0;
+        boundaries[0] = -FAR;
+        boundaries[1] = FAR;
+
+        for(int q = 1; q < count; q++) {
+            // Drops the parabolas hidden by the new one, the first boundary is never passed
+            int p = parabolas[rightmost];
+            float intersection = ((samples[q] + q * q) - (samples[p] + p * p)) / (2 * q - 2 * p);
+            while(intersection <= boundaries[rightmost]) {
+                p = parabolas[--rightmost];
+                intersection = ((samples[q] + q * q) - (samples[p] + p * p)) / (2 * q - 2 * p);
+            }
+
+            rightmost++;
+            parabolas[rightmost] = q;
+            boundaries[rightmost] = intersection;
+            boundaries[rightmost + 1] = FAR;
+        }
+
+        int parabola = 0;
+        for(int q = 0; q < count; q++) {
+            while(boundaries[parabola + 1] < q)
+                parabola++;
+            final int p = parabolas[parabola];
+            distances[q] = (q - p) * (q - p) + samples[p];
+        }
+    }
+}
@@ -0,0 +1,310 @@
+package com.tembins.tagdk.graphics.text;
+
+import com.tembins.tagdk.graphics.backend.GLConstants;
+import com.tembins.tagdk.graphics.backend.GraphicsBackend;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.nio.ShortBuffer;
+
+/**
+ * Lays out text of one FontAtlas into glyph quads and draws all of them with one instanced draw
+ * call. Laying out writes into a preallocated staging array and does not allocate, numbers are
+ * formatted without creating strings, so text changing every frame, e.g. a score counter, only
+ * costs the layout and a small buffer upload instead of rendering and uploading a texture.
+ *
+ * Positions are in pixels with the y axis pointing down, and text is placed by the top left
+ * corner of its first line. The shaders in VERTEX_SHADER_SOURCE and FRAGMENT_SHADER_SOURCE
+ * expect an orthographic projection matrix in PROJECTION_UNIFORM and the atlas texture, with
+ * linear filtering, in ATLAS_UNIFORM.
+ */
+public final class TextBatch {
+
+    public static final int CORNER_ATTRIBUTE = 0, RECTANGLE_ATTRIBUTE = 1, TEXTURE_COORDINATE_ATTRIBUTE = 2,
+            COLOR_ATTRIBUTE = 3;
+    public static final int INSTANCE_STRIDE = 28;
+    public static final String PROJECTION_UNIFORM = "u_projection", ATLAS_UNIFORM = "u_atlas";
+
+    public static final String VERTEX_SHADER_SOURCE = ""
+            + "#version 300 es\n"
+            + "layout(location = 0) in vec2 a_corner;\n"
+            + "layout(location = 1) in vec4 a_rectangle;\n"
+            + "layout(location = 2) in vec4 a_textureCoordinates;\n"
+            + "layout(location = 3) in vec4 a_color;\n"
+            + "uniform mat4 u_projection;\n"
+            + "out vec2 v_textureCoordinate;\n"
+            + "out vec4 v_color;\n"
+            + "void main() {\n"
+            + "    v_textureCoordinate = mix(a_textureCoordinates.xy, a_textureCoordinates.zw, a_corner);\n"
+            + "    v_color = a_color;\n"
+            + "    gl_Position = u_projection * vec4(a_rectangle.xy + a_corner * a_rectangle.zw, 0.0, 1.0);\n"
+            + "}\n";
+
+    public static final String FRAGMENT_SHADER_SOURCE = ""
+            + "#version 300 es\n"
+            + "precision mediump float;\n"
+            + "uniform sampler2D u_atlas;\n"
+            + "in vec2 v_textureCoordinate;\n"
+            + "in vec4 v_color;\n"
+            + "out vec4 o_color;\n"
+            + "void main() {\n"
+            + "    float distance = texture(u_atlas, v_textureCoordinate).a;\n"
+            + "    // Antialiases over about one screen pixel, whatever the text size\n"
+            + "    float width = fwidth(distance) * 0.75;\n"
+            + "    float alpha = smoothstep(0.5 - width, 0.5 + width, distance);\n"
+            + "    o_color = vec4(v_color.rgb, v_color.a * alpha);\n"
+            + "}\n";
+
+    private static final int INTS_PER_INSTANCE = INSTANCE_STRIDE / 4;
+    private static final boolean LITTLE_ENDIAN = ByteOrder.nativeOrder() == ByteOrder.LITTLE_ENDIAN;
+
+    private final GraphicsBackend graphics;
+    private final FontAtlas font;
+    private final int maxGlyphs;
+    private final int vertexArray, cornerBuffer, indexBuffer, instanceBuffer;
+    private final int[] staging, uploaded;
+    private final IntBuffer uploadBuffer;
+    private final char[] digits = new char[20];
+    private int glyphCount, uploadedCount;
+    private boolean changed;
+
+    /**
+     * Creates the buffers of the batch with the following parameters:
+     *
+     * @param graphics The backend creating and drawing the buffers.
+     * @param font The font to lay out the text with.
+     * @param maxGlyphs The largest amount of glyphs drawn at once, further glyphs are skipped.
+     */
+    public TextBatch(final GraphicsBackend graphics, final FontAtlas font, final int maxGlyphs) {
+        this.graphics = graphics;
+        this.font = font;
+        this.maxGlyphs = maxGlyphs;
+        staging = new int[maxGlyphs * INTS_PER_INSTANCE];
+        uploaded = new int[maxGlyphs * INTS_PER_INSTANCE];
+        uploadBuffer = ByteBuffer.allocateDirect(maxGlyphs * INSTANCE_STRIDE).order(ByteOrder.nativeOrder())
+                .asIntBuffer();
+
+        vertexArray = graphics.createVertexArray();
+        graphics.bindVertexArray(vertexArray);
+
+        final FloatBuffer corners = ByteBuffer.allocateDirect(8 * 4).order(ByteOrder.nativeOrder()).asFloatBuffer();
+        corners.put(new float[] { 0.0f, 0.0f, 1.0f, 0.0f, 1.0f, 1.0f, 0.0f, 1.0f }).flip();
+        cornerBuffer = graphics.createBuffer();
+        graphics.bindBuffer(GLConstants.GL_ARRAY_BUFFER, cornerBuffer);
+        graphics.bufferData(GLConstants.GL_ARRAY_BUFFER, 8 * 4, corners, GLConstants.GL_STATIC_DRAW);
+        graphics.enableVertexAttribArray(CORNER_ATTRIBUTE);
+        graphics.vertexAttribPointer(CORNER_ATTRIBUTE, 2, GLConstants.GL_FLOAT, false, 0, 0);
+
+        instanceBuffer = graphics.createBuffer();
+        graphics.bindBuffer(GLConstants.GL_ARRAY_BUFFER, instanceBuffer);
+        graphics.bufferData(GLConstants.GL_ARRAY_BUFFER, maxGlyphs * INSTANCE_STRIDE, null,
+                GLConstants.GL_STREAM_DRAW);
+        graphics.enableVertexAttribArray(RECTANGLE_ATTRIBUTE);
+        graphics.vertexAttribPointer(RECTANGLE_ATTRIBUTE, 4, GLConstants.GL_FLOAT, false, INSTANCE_STRIDE, 0);
+        graphics.vertexAttribDivisor(RECTANGLE_ATTRIBUTE, 1);
+        graphics.enableVertexAttribArray(TEXTURE_COORDINATE_ATTRIBUTE);
+        graphics.vertexAttribPointer(TEXTURE_COORDINATE_ATTRIBUTE, 4, GLConstants.GL_UNSIGNED_SHORT, true,
+                INSTANCE_STRIDE, 16);
+        graphics.vertexAttribDivisor(TEXTURE_COORDINATE_ATTRIBUTE, 1);
+        graphics.enableVertexAttribArray(COLOR_ATTRIBUTE);
+        graphics.vertexAttribPointer(COLOR_ATTRIBUTE, 4, GLConstants.GL_UNSIGNED_BYTE, true, INSTANCE_STRIDE, 24);
+        graphics.vertexAttribDivisor(COLOR_ATTRIBUTE, 1);
+
+        // The element buffer binding is part of the VAO state, so it has to be bound in here
+        final ShortBuffer indices = ByteBuffer.allocateDirect(6 * 2).order(ByteOrder.nativeOrder()).asShortBuffer();
+        indices.put(new short[] { 0, 1, 2, 0, 2, 3 }).flip();
+        indexBuffer = graphics.createBuffer();
+        graphics.bindBuffer(GLConstants.GL_ELEMENT_ARRAY_BUFFER, indexBuffer);
+        graphics.bufferData(GLConstants.GL_ELEMENT_ARRAY_BUFFER, 6 * 2, indices, GLConstants.GL_STATIC_DRAW);
+
+        graphics.bindVertexArray(0);
+    }
+
+    /**
+     * Removes all text, usually before laying out the text of a new frame.
+     */
+    public void clear() {
+        changed |= glyphCount > 0;
+        glyphCount = 0;
+    }
+
+    /**
+     * Lays out text, starting a new line at every '\n'.
+     *
+     * @param text The text to add.
+     * @param x The left edge of the text.
+     * @param y The top edge of the first line.
+     * @param size The line height in pixels.
+     * @param color The color as 0xRRGGBBAA.
+     * @return The x coordinate after the last character, where following text would continue.
+     */
+    public float add(final CharSequence text, final float x, final float y, final float size, final int color) {
+        final float scale = size / font.getLineHeight();
+        float penX = x, penY = y;
+        for(int index = 0; index < text.length(); index++) {
+            final char character = text.charAt(index);
+            if(character == '\n') {
+                penX = x;
+                penY += size;
+            } else {
+                penX = addGlyph(character, penX, penY, scale, color);
+            }
+        }
+        return penX;
+    }
+
+    /**
+     * Lays out a part of a character array on a single line.
+     *
+     * @param text The characters to add.
+     * @param offset The index of the first character.
+     * @param length The amount of characters.
+     * @param x The left edge of the text.
+     * @param y The top edge of the line.
+     * @param size The line height in pixels.
+     * @param color The color as 0xRRGGBBAA.
+     * @return The x coordinate after the last character.
+     */
+    public float add(final char[] text, final int offset, final int length, final float x, final float y,
+                     final float size, final int color) {
+        final float scale = size / font.getLineHeight();
+        float penX = x;
+        for(int index = offset; index < offset + length; index++)
+            penX = addGlyph(text[index], penX, y, scale, color);
+        return penX;
+    }
+
+    /**
+     * Lays out a number in decimal without allocating, e.g. a score appended to a label.
+     *
+     * @param value The number to add.
+     * @param x The left edge of the number.
+     * @param y The top edge of the line.
+     * @param size The line height in pixels.
+     * @param color The color as 0xRRGGBBAA.
+     * @return The x coordinate after the last digit.
+     */
+    public float addNumber(final long value, final float x, final float y, final float size, final int color) {
+        // Works on the negative value, which also covers Long.MIN_VALUE
+        long remaining = value < 0 ? value : -value;
+        int start = digits.length;
+        do {
+            digits[--start] = (char) ('0' - remaining % 10);
+            remaining /= 10;
+        } while(remaining != 0);
+        if(value < 0)
+            digits[--start] = '-';
+
+        return add(digits, start, digits.length - start, x, y, size, color);
+    }
+
+    private float addGlyph(final char character, final float penX, final float penY, final float scale,
+                           final int color) {
+        final FontAtlas font = this.font;
+        final int glyph = font.getGlyph(character);
+        if(glyph == FontAtlas.NO_GLYPH)
+            return penX;
+
+        // Whitespace has an advance, but nothing to draw
+        if(font.width[glyph] > 0.0f && glyphCount < maxGlyphs) {
+            final int[] staging = this.staging;
+            final int target = glyphCount++ * INTS_PER_INSTANCE;
+            staging[target] = Float.floatToRawIntBits(penX + font.offsetX[glyph] * scale);
+            staging[target + 1] = Float.floatToRawIntBits(penY + font.offsetY[glyph] * scale);
+            staging[target + 2] = Float.floatToRawIntBits(font.width[glyph] * scale);
+            staging[target + 3] = Float.floatToRawIntBits(font.height[glyph] * scale);
+            staging[target + 4] = packShorts(font.u0[glyph], font.v0[glyph]);
+            staging[target + 5] = packShorts(font.u1[glyph], font.v1[glyph]);
+            // The color bytes have to end up in memory as R, G, B, A
+            staging[target + 6] = LITTLE_ENDIAN ? Integer.reverseBytes(color) : color;
+            changed = true;
+        }
+        return penX + font.advance[glyph] * scale;
+    }
+
+    private static int packShorts(final float first, final float second) {
+        final int firstShort = (int) (first * 65535.0f + 0.5f), secondShort = (int) (second * 65535.0f + 0.5f);
+        return LITTLE_ENDIAN ? secondShort << 16 | firstShort : firstShort << 16 | secondShort;
+    }
+
+    /**
+     * Uploads the laid out glyphs, unless they are the same as in the last upload. Text cleared and
+     * laid out again every frame is only uploaded when it looks different.
+     *
+     * @return The amount of glyphs drawn by draw().
+     */
+    public int upload() {
+        if(!changed)
+            return uploadedCount;
+
+        changed = false;
+        final int length = glyphCount * INTS_PER_INSTANCE;
+        if(glyphCount == uploadedCount && isUploaded(length))
+            return uploadedCount;
+
+        uploadedCount = glyphCount;
+        if(glyphCount == 0)
+            return 0;
+
+        System.arraycopy(staging, 0, uploaded, 0, length);
+        uploadBuffer.clear();
+        uploadBuffer.put(staging, 0, glyphCount * INTS_PER_INSTANCE).flip();
+
+        // Orphaning gives the driver a fresh buffer while the old one may still be in use
+        graphics.bindBuffer(GLConstants.GL_ARRAY_BUFFER, instanceBuffer);
+        graphics.bufferData(GLConstants.GL_ARRAY_BUFFER, maxGlyphs * INSTANCE_STRIDE, null,
+                GLConstants.GL_STREAM_DRAW);
+        graphics.bufferSubData(GLConstants.GL_ARRAY_BUFFER, 0, glyphCount * INSTANCE_STRIDE, uploadBuffer);
+        return glyphCount;
+    }
+
+    private boolean isUploaded(final int length) {
+        final int[] staging = this.staging, uploaded = this.uploaded;
+        for(int index = 0; index < length; index++)
+            if(staging[index] != uploaded[index])
+                return false;
+        return true;
+    }
+
+    /**
+     * Draws the glyphs of the last upload. The text program and the atlas texture have to be bound
+     * before.
+     */
+    public void draw() {
+        if(uploadedCount == 0)
+            return;
+
+        graphics.bindVertexArray(vertexArray);
+        graphics.drawElementsInstanced(GLConstants.GL_TRIANGLES, 6, GLConstants.GL_UNSIGNED_SHORT, 0, uploadedCount);
+    }
+
+    /**
+     * Deletes the buffers and the VAO of the batch.
+     */
+    public void release() {
+        graphics.deleteVertexArray(vertexArray);
+        graphics.deleteBuffer(cornerBuffer);
+        graphics.deleteBuffer(instanceBuffer);
+        graphics.deleteBuffer(indexBuffer);
+    }
+
+    /**
+     * Returns the amount of glyphs laid out since the last clear.
+     *
+     * @return The glyph count.
+     */
+    public int getGlyphCount() {
+        return glyphCount;
+    }
+
+    /**
+     * Returns the font of this batch.
+     *
+     * @return The font atlas.
+     */
+    public FontAtlas getFont() {
+        return font;
+    }
+}
@@ -0,0 +1,38 @@
+package com.tembins.tagdk.graphics.util;
+
+/**
+ * Defines how often OpenGL errors are checked. Every level includes the checks of the levels
+ * before it. Release builds ignore the level and never check.
+ */
+public enum ErrorCheckLevel {
+    /**
+     * Never checks for errors.
+     */
+    OFF,
+
+    /**
+     * Checks for errors while loading resources only, which is cheap as loading is rare.
+     */
+    LOAD_ONLY,
+
+    /**
+     * Additionally checks for errors after every draw call.
+     */
+    PER_DRAW,
+
+    /**
+     * Additionally checks for errors after every bind and state change. Very slow, meant for
+     * tracking down the exact call causing an error.
+     */
+    PARANOID;
+
+    /**
+     * Returns whether checks of the given level are performed when this level is set.
+     *
+     * @param check The level of the check, e.g. PER_DRAW for a check after a draw call.
+     * @return True if the check should be performed.
+     */
+    public boolean includes(final ErrorCheckLevel check) {
+        return check != OFF && ordinal() >= check.ordinal();
+    }
+}
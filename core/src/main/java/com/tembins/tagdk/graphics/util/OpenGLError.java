@@ -0,0 +1,64 @@
+package com.tembins.tagdk.graphics.util;
+
+import com.tembins.tagdk.graphics.backend.GLConstants;
+
+/**
+ * Represents an OpenGL error code.
+ */
+public final class OpenGLError {
+
+    public final int code;
+    public final String category;
+
+    private static final OpenGLError[] KNOWN_ERRORS = {
+            new OpenGLError(GLConstants.GL_INVALID_ENUM),
+            new OpenGLError(GLConstants.GL_INVALID_VALUE),
+            new OpenGLError(GLConstants.GL_INVALID_OPERATION),
+            new OpenGLError(GLConstants.GL_OUT_OF_MEMORY),
+            new OpenGLError(GLConstants.GL_INVALID_FRAMEBUFFER_OPERATION)
+    };
+
+    /**
+     * Initializes with the given error code.
+     *
+     * @param errorCode The code to represent.
+     */
+    public OpenGLError(final int errorCode) {
+        code = errorCode;
+        category = getCodeCategory(errorCode);
+    }
+
+    /**
+     * Returns the error representing the given error code. Known error codes are represented by
+     * shared instances, so no allocation takes place for them.
+     *
+     * @param errorCode The code to represent.
+     * @return The error representing the code.
+     */
+    public static OpenGLError of(final int errorCode) {
+        for(final OpenGLError error : KNOWN_ERRORS)
+            if(error.code == errorCode)
+                return error;
+
+        return new OpenGLError(errorCode);
+    }
+
+    /**
+     * Creates a string representation of the given error code. Returns "Unknown Error" if the code
+     * is not known or not valid.
+     *
+     * @param errorCode The error code.
+     * @return A string representation of the error code.
+     */
+    private static String getCodeCategory(final int errorCode) {
+        switch(errorCode) {
+            case GLConstants.GL_NO_ERROR: return "GL_NO_ERROR";
+            case GLConstants.GL_INVALID_ENUM: return "GL_INVALID_ENUM";
+            case GLConstants.GL_INVALID_VALUE: return "GL_INVALID_VALUE";
+            case GLConstants.GL_INVALID_OPERATION: return "GL_INVALID_OPERATION";
+            case GLConstants.GL_OUT_OF_MEMORY: return "GL_OUT_OF_MEMORY";
+            case GLConstants.GL_INVALID_FRAMEBUFFER_OPERATION: return "GL_INVALID_FRAMEBUFFER_OPERATION";
+            default: return "Unknown Error";
+        }
+    }
+}
@@ -0,0 +1,97 @@
+package com.tembins.tagdk.input;
+
+/**
+ * Holds the events drained from an InputQueue for one simulation tick, in the order they
+ * happened. The batch belongs to the consuming thread and is reused every tick.
+ */
+public final class InputBatch {
+
+    final int[] types, codes;
+    final float[] positionX, positionY;
+    final long[] timestamps;
+    int size;
+
+    /**
+     * Initializes the batch with the following parameters:
+     *
+     * @param capacity The largest amount of events drained per tick.
+     */
+    public InputBatch(final int capacity) {
+        if(capacity <= 0)
+            throw new IllegalArgumentException("Invalid capacity " + capacity);
+
+        types = new int[capacity];
+        codes = new int[capacity];
+        positionX = new float[capacity];
+        positionY = new float[capacity];
+        timestamps = new long[capacity];
+    }
+
+    /**
+     * Returns the amount of events in this batch.
+     *
+     * @return The event count.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns the largest amount of events this batch can hold.
+     *
+     * @return The capacity.
+     */
+    public int getCapacity() {
+        return types.length;
+    }
+
+    /**
+     * Returns the type of an event.
+     *
+     * @param index The index of the event, 0 for the oldest.
+     * @return The type, e.g. InputQueue.TOUCH_DOWN.
+     */
+    public int getType(final int index) {
+        return types[index];
+    }
+
+    /**
+     * Returns the pointer ID of a touch event or the key code of a key event.
+     *
+     * @param index The index of the event.
+     * @return The pointer ID or key code.
+     */
+    public int getCode(final int index) {
+        return codes[index];
+    }
+
+    /**
+     * Returns the x coordinate of a touch event.
+     *
+     * @param index The index of the event.
+     * @return The x coordinate in pixels.
+     */
+    public float getX(final int index) {
+        return positionX[index];
+    }
+
+    /**
+     * Returns the y coordinate of a touch event.
+     *
+     * @param index The index of the event.
+     * @return The y coordinate in pixels.
+     */
+    public float getY(final int index) {
+        return positionY[index];
+    }
+
+    /**
+     * Returns when an event happened.
+     *
+     * @param index The index of the event.
+     * @return The timestamp in the System.nanoTime() time base.
+     */
+    public long getTimestamp(final int index) {
+        return timestamps[index];
+    }
+}
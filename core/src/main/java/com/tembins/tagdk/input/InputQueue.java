@@ -0,0 +1,193 @@
+package com.tembins.tagdk.input;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Hands input events from the thread receiving them, on Android the main thread, to the thread
+ * running the simulation without locks and without allocating. Events are stored as primitive
+ * records in preallocated arrays forming a ring buffer, which is safe for exactly one producing
+ * and one consuming thread.
+ *
+ * The producer publishes an event by advancing the tail index with an ordered store after
+ * writing the record, the consumer frees records the same way with the head index. The producer
+ * keeps a cached copy of the head index and only reads the shared one when the ring looks full,
+ * the consumer reads the tail index once per drain.
+ *
+ * The consumer drains all events due at a given time into an InputBatch once per simulation
+ * tick, which also measures the latency from the event timestamps to the time they reach the
+ * simulation. Timestamps must use the System.nanoTime() time base, which on Android matches
+ * SystemClock.uptimeMillis() and thereby MotionEvent.getEventTime().
+ */
+public final class InputQueue {
+
+    public static final int TOUCH_DOWN = 0, TOUCH_MOVE = 1, TOUCH_UP = 2, TOUCH_CANCEL = 3;
+    public static final int KEY_DOWN = 4, KEY_UP = 5;
+
+    private final int mask;
+    private final int[] types, codes;
+    private final float[] positionX, positionY;
+    private final long[] timestamps;
+
+    private final AtomicLong head = new AtomicLong(), tail = new AtomicLong();
+
+    // Only accessed by the producer, apart from the dropped count
+    private long producerTail, cachedHead;
+    private volatile long droppedCount;
+
+    // Only accessed by the consumer
+    private long consumerHead;
+    private long latencySum, latencyCount, maxLatency;
+
+    /**
+     * Initializes the queue with the following parameters:
+     *
+     * @param capacity The amount of events the queue holds before dropping new ones, rounded up to
+     *                 a power of two.
+     */
+    public InputQueue(final int capacity) {
+        if(capacity <= 0 || capacity > 1 << 30)
+            throw new IllegalArgumentException("Invalid capacity " + capacity);
+
+        final int size = Integer.highestOneBit(capacity * 2 - 1);
+        mask = size - 1;
+        types = new int[size];
+        codes = new int[size];
+        positionX = new float[size];
+        positionY = new float[size];
+        timestamps = new long[size];
+    }
+
+    /**
+     * Adds an event. Must only be called by the producing thread, with increasing timestamps.
+     *
+     * @param type The event type, e.g. TOUCH_DOWN.
+     * @param code The pointer ID of touch events or the key code of key events.
+     * @param x The x coordinate of touch events.
+     * @param y The y coordinate of touch events.
+     * @param timeNanos When the event happened, in the System.nanoTime() time base.
+     * @return False if the queue is full, in which case the event is dropped.
+     */
+    public boolean push(final int type, final int code, final float x, final float y, final long timeNanos) {
+        final long index = producerTail;
+        if(index - cachedHead > mask) {
+            cachedHead = head.get();
+            if(index - cachedHead > mask) {
+                // Only the producer writes the count, so the increment does not need to be atomic
+                droppedCount = droppedCount + 1;
+                return false;
+            }
+        }
+
+        final int slot = (int) index & mask;
+        types[slot] = type;
+        codes[slot] = code;
+        positionX[slot] = x;
+        positionY[slot] = y;
+        timestamps[slot] = timeNanos;
+
+        producerTail = index + 1;
+        tail.lazySet(index + 1);
+        return true;
+    }
+
+    /**
+     * Moves all events that happened until the given time into the batch, replacing its previous
+     * contents. Later events stay in the queue for the next tick, as do events not fitting into
+     * the batch. Must only be called by the consuming thread.
+     *
+     * @param batch The batch receiving the events.
+     * @param nowNanos The current simulation time, in the System.nanoTime() time base.
+     * @return The amount of drained events.
+     */
+    public int drain(final InputBatch batch, final long nowNanos) {
+        // Read once per drain, so a tick always sees every event published before it started
+        final long available = tail.get();
+        long index = consumerHead;
+        final int capacity = batch.getCapacity();
+        int count = 0;
+        while(index < available && count < capacity) {
+            final int slot = (int) index & mask;
+            final long timestamp = timestamps[slot];
+            if(timestamp > nowNanos)
+                break;
+
+            batch.types[count] = types[slot];
+            batch.codes[count] = codes[slot];
+            batch.positionX[count] = positionX[slot];
+            batch.positionY[count] = positionY[slot];
+            batch.timestamps[count] = timestamp;
+            count++;
+            index++;
+
+            final long latency = nowNanos - timestamp;
+            latencySum += latency;
+            maxLatency = Math.max(maxLatency, latency);
+        }
+        latencyCount += count;
+        batch.size = count;
+
+        if(count > 0) {
+            consumerHead = index;
+            head.lazySet(index);
+        }
+        return count;
+    }
+
+    /**
+     * Returns the amount of events waiting in the queue. The value is only a snapshot while the
+     * other thread is running.
+     *
+     * @return The event count.
+     */
+    public int size() {
+        return (int) (tail.get() - head.get());
+    }
+
+    /**
+     * Returns the amount of slots of the ring buffer.
+     *
+     * @return The capacity.
+     */
+    public int getCapacity() {
+        return mask + 1;
+    }
+
+    /**
+     * Returns the amount of events dropped because the queue was full.
+     *
+     * @return The dropped event count.
+     */
+    public long getDroppedCount() {
+        return droppedCount;
+    }
+
+    /**
+     * Returns the largest time from an event to the drain delivering it since the last reset.
+     * Must only be called by the consuming thread.
+     *
+     * @return The maximum latency in nanoseconds.
+     */
+    public long getMaxLatencyNanos() {
+        return maxLatency;
+    }
+
+    /**
+     * Returns the average time from an event to the drain delivering it since the last reset.
+     * Must only be called by the consuming thread.
+     *
+     * @return The average latency in nanoseconds, 0 if no event was drained.
+     */
+    public long getAverageLatencyNanos() {
+        return latencyCount == 0 ? 0L : latencySum / latencyCount;
+    }
+
+    /**
+     * Resets the latency statistics, e.g. once per second to report the latest values. Must only
+     * be called by the consuming thread.
+     */
+    public void resetLatencyStatistics() {
+        latencySum = 0L;
+        latencyCount = 0L;
+        maxLatency = 0L;
+    }
+}
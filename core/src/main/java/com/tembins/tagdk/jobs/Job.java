@@ -0,0 +1,15 @@
+package com.tembins.tagdk.jobs;
+
+/**
+ * A unit of work scheduled on a JobSystem.
+ */
+public interface Job {
+
+    /**
+     * Executes the job on a worker thread.
+     *
+     * @param scratch The scratch allocator of the executing worker. Everything allocated from it
+     *                is released after the job.
+     */
+    void execute(final ScratchAllocator scratch);
+}
@@ -0,0 +1,107 @@
+package com.tembins.tagdk.jobs;
+
+import java.util.ArrayList;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Counts the unfinished jobs of a group. Jobs can wait for a counter to reach zero, either by
+ * being scheduled with it as a dependency or by calling await(). A counter can be reused once it
+ * reached zero, e.g. once per frame.
+ */
+public final class JobCounter {
+
+    private final AtomicInteger count = new AtomicInteger();
+    private final Object lock = new Object();
+    private final ArrayList<Runnable> dependents = new ArrayList<>();
+    private volatile Throwable failure;
+
+    void increment() {
+        count.incrementAndGet();
+    }
+
+    void decrement() {
+        if(count.decrementAndGet() != 0)
+            return;
+
+        synchronized(lock) {
+            // Another job may have been added after reaching zero, its dependents keep waiting
+            if(count.get() != 0)
+                return;
+
+            // The dependents only submit their jobs to the pool, so running them here is cheap
+            for(int index = 0; index < dependents.size(); index++)
+                dependents.get(index).run();
+            dependents.clear();
+            lock.notifyAll();
+        }
+    }
+
+    void fail(final Throwable throwable) {
+        if(failure == null)
+            failure = throwable;
+    }
+
+    /**
+     * Runs the given action once this counter reaches zero, or right away if it already is zero.
+     * The action must not block, it may be run while holding the lock of this counter.
+     */
+    void whenDone(final Runnable action) {
+        synchronized(lock) {
+            if(count.get() != 0) {
+                dependents.add(action);
+                return;
+            }
+        }
+
+        action.run();
+    }
+
+    /**
+     * Returns whether all jobs of this counter finished.
+     *
+     * @return True if the counter is zero.
+     */
+    public boolean isDone() {
+        return count.get() == 0;
+    }
+
+    /**
+     * Waits until all jobs of this counter finished. When called on a worker thread, the worker
+     * runs other jobs while waiting instead of blocking the pool.
+     *
+     * @throws RuntimeException If one of the jobs failed, wrapping the first failure.
+     */
+    public void await() {
+        while(count.get() != 0 && JobSystem.helpOnce());
+
+        if(count.get() != 0) {
+            try {
+                ForkJoinPool.managedBlock(new ForkJoinPool.ManagedBlocker() {
+                    @Override
+                    public boolean block() throws InterruptedException {
+                        synchronized(lock) {
+                            while(count.get() != 0)
+                                lock.wait();
+                        }
+                        return true;
+                    }
+
+                    @Override
+                    public boolean isReleasable() {
+                        return count.get() == 0;
+                    }
+                });
+            } catch(InterruptedException exception) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException("Interrupted while waiting for jobs", exception);
+            }
+        }
+
+        final Throwable throwable = failure;
+        if(throwable != null) {
+            failure = null;
+            throw new RuntimeException("Job failed", throwable);
+        }
+    }
+}
@@ -0,0 +1,302 @@
+package com.tembins.tagdk.jobs;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Schedules jobs on a work stealing ForkJoinPool. Jobs are grouped with JobCounters, which can be
+ * waited on or used as dependencies of other jobs. Every worker owns a ScratchAllocator for
+ * temporary memory. The pool is exposed through getPool(), so other parallel engine parts, such
+ * as TransformHierarchy or SystemScheduler, can share the same workers.
+ *
+ * Failures of jobs with a counter are rethrown by JobCounter.await(). Failures of jobs without a
+ * counter have nobody waiting for them, so they are passed to an uncaught exception handler.
+ */
+public final class JobSystem {
+
+    private static final int SCRATCH_FLOATS = 16 * 1024;
+    private static final int SCRATCH_INTS = 16 * 1024;
+
+    private final ForkJoinPool pool;
+    private final int workerCount;
+    private final Thread.UncaughtExceptionHandler exceptionHandler;
+
+    private static final ThreadLocal<ScratchAllocator> EXTERNAL_SCRATCH = new ThreadLocal<ScratchAllocator>() {
+        @Override
+        protected ScratchAllocator initialValue() {
+            return new ScratchAllocator(SCRATCH_FLOATS, SCRATCH_INTS);
+        }
+    };
+
+    /**
+     * Initializes the job system with the given amount of worker threads. Failures of jobs without
+     * a counter go to the uncaught exception handler of the thread running the job.
+     *
+     * @param workerCount The amount of workers.
+     */
+    public JobSystem(final int workerCount) {
+        this(workerCount, null);
+    }
+
+    /**
+     * Initializes the job system with the following parameters:
+     *
+     * @param workerCount The amount of workers.
+     * @param exceptionHandler The handler receiving failures of jobs without a counter, or null
+     *                         for the uncaught exception handler of the thread running the job.
+     */
+    public JobSystem(final int workerCount, final Thread.UncaughtExceptionHandler exceptionHandler) {
+        if(workerCount <= 0)
+            throw new IllegalArgumentException("Worker count must be positive");
+
+        this.workerCount = workerCount;
+        this.exceptionHandler = exceptionHandler;
+        pool = new ForkJoinPool(workerCount, new ForkJoinPool.ForkJoinWorkerThreadFactory() {
+            private int nextIndex;
+
+            @Override
+            public synchronized ForkJoinWorkerThread newThread(final ForkJoinPool pool) {
+                return new Worker(pool, nextIndex++);
+            }
+        }, null, false);
+    }
+
+    /**
+     * Creates a job system with one worker less than the amount of available processors, leaving
+     * a core for the thread scheduling the jobs.
+     *
+     * @return The job system.
+     */
+    public static JobSystem createDefault() {
+        return new JobSystem(Math.max(1, Runtime.getRuntime().availableProcessors() - 1));
+    }
+
+    /**
+     * Schedules a job.
+     *
+     * @param job The job to run.
+     * @param counter The counter to increment now and decrement when the job finished, or null.
+     */
+    public void run(final Job job, final JobCounter counter) {
+        run(job, counter, null);
+    }
+
+    /**
+     * Schedules a job which starts once the given dependency reached zero.
+     *
+     * @param job The job to run.
+     * @param counter The counter to increment now and decrement when the job finished, or null.
+     * @param dependency The counter to wait for, or null to start right away.
+     */
+    public void run(final Job job, final JobCounter counter, final JobCounter dependency) {
+        if(counter != null)
+            counter.increment();
+
+        final JobTask task = new JobTask(job, counter);
+        if(dependency == null)
+            task.run();
+        else
+            dependency.whenDone(task);
+    }
+
+    /**
+     * Processes the given index range in parallel and returns when all indices were processed.
+     * The range is split in halves until the parts are no larger than the grain size. The calling
+     * thread takes part in the work.
+     *
+     * @param start The first index to process.
+     * @param end The index after the last one to process.
+     * @param grainSize The largest amount of indices processed by a single call of the job.
+     * @param job The job processing the index ranges.
+     */
+    public void parallelFor(final int start, final int end, final int grainSize, final RangeJob job) {
+        if(start >= end)
+            return;
+
+        final RangeTask task = new RangeTask(start, end, Math.max(1, grainSize), job);
+        if(isWorkerOfThisPool())
+            task.invoke();
+        else
+            pool.invoke(task);
+    }
+
+    private void reportFailure(final Throwable throwable) {
+        final Thread thread = Thread.currentThread();
+        final Thread.UncaughtExceptionHandler handler = exceptionHandler != null
+                ? exceptionHandler : thread.getUncaughtExceptionHandler();
+        handler.uncaughtException(thread, throwable);
+    }
+
+    private boolean isWorkerOfThisPool() {
+        final Thread thread = Thread.currentThread();
+        return thread instanceof Worker && ((Worker) thread).getPool() == pool;
+    }
+
+    /**
+     * Runs one pending job if the calling thread is a worker and a job is available.
+     *
+     * @return True if a job was run.
+     */
+    static boolean helpOnce() {
+        if(!(Thread.currentThread() instanceof Worker))
+            return false;
+
+        final ForkJoinTask<?> task = RangeTask.pollPending();
+        if(task == null)
+            return false;
+
+        task.quietlyInvoke();
+        return true;
+    }
+
+    /**
+     * Returns the scratch allocator of the calling thread. Worker threads own one allocator each,
+     * other threads get a thread local one.
+     *
+     * @return The scratch allocator.
+     */
+    public static ScratchAllocator getScratch() {
+        final Thread thread = Thread.currentThread();
+        if(thread instanceof Worker)
+            return ((Worker) thread).scratch;
+
+        return EXTERNAL_SCRATCH.get();
+    }
+
+    /**
+     * Returns the index of the calling worker.
+     *
+     * @return The worker index from 0 to getWorkerCount() - 1, or -1 if the calling thread is not
+     *         a worker.
+     */
+    public static int getWorkerIndex() {
+        final Thread thread = Thread.currentThread();
+        return thread instanceof Worker ? ((Worker) thread).index : -1;
+    }
+
+    /**
+     * Returns the amount of workers.
+     *
+     * @return The worker count.
+     */
+    public int getWorkerCount() {
+        return workerCount;
+    }
+
+    /**
+     * Returns the pool the jobs run on.
+     *
+     * @return The pool.
+     */
+    public ForkJoinPool getPool() {
+        return pool;
+    }
+
+    /**
+     * Stops all workers after the already scheduled jobs finished.
+     */
+    public void shutdown() {
+        pool.shutdown();
+    }
+
+    private static final class Worker extends ForkJoinWorkerThread {
+
+        private final int index;
+        private final ScratchAllocator scratch = new ScratchAllocator(SCRATCH_FLOATS, SCRATCH_INTS);
+
+        private Worker(final ForkJoinPool pool, final int index) {
+            super(pool);
+            this.index = index;
+            setName("JobSystem-Worker-" + index);
+        }
+    }
+
+    /**
+     * Runs a single job. Also serves as the action submitting itself once its dependency is done.
+     */
+    private final class JobTask extends ForkJoinTask<Void> implements Runnable {
+
+        private final Job job;
+        private final JobCounter counter;
+
+        private JobTask(final Job job, final JobCounter counter) {
+            this.job = job;
+            this.counter = counter;
+        }
+
+        @Override
+        public void run() {
+            pool.execute((ForkJoinTask<?>) this);
+        }
+
+        @Override
+        protected boolean exec() {
+            final ScratchAllocator scratch = getScratch();
+            final long mark = scratch.mark();
+
+            try {
+                job.execute(scratch);
+            } catch(Throwable throwable) {
+                if(counter != null)
+                    counter.fail(throwable);
+                else
+                    reportFailure(throwable);
+            } finally {
+                scratch.release(mark);
+                if(counter != null)
+                    counter.decrement();
+            }
+
+            return true;
+        }
+
+        @Override
+        public Void getRawResult() {
+            return null;
+        }
+
+        @Override
+        protected void setRawResult(final Void value) {
+        }
+    }
+
+    private static final class RangeTask extends RecursiveAction {
+
+        private final int start, end, grainSize;
+        private final RangeJob job;
+
+        private RangeTask(final int start, final int end, final int grainSize, final RangeJob job) {
+            this.start = start;
+            this.end = end;
+            this.grainSize = grainSize;
+            this.job = job;
+        }
+
+        @Override
+        protected void compute() {
+            if(end - start <= grainSize) {
+                final ScratchAllocator scratch = getScratch();
+                final long mark = scratch.mark();
+
+                try {
+                    job.execute(start, end, scratch);
+                } finally {
+                    scratch.release(mark);
+                }
+                return;
+            }
+
+            final int middle = (start + end) >>> 1;
+            invokeAll(new RangeTask(start, middle, grainSize, job), new RangeTask(middle, end, grainSize, job));
+        }
+
+        /**
+         * Takes a not yet started task from the queue of the calling worker, or steals one.
+         */
+        private static ForkJoinTask<?> pollPending() {
+            return pollTask();
+        }
+    }
+}
@@ -0,0 +1,17 @@
+package com.tembins.tagdk.jobs;
+
+/**
+ * A job processing a range of indices, used by JobSystem.parallelFor.
+ */
+public interface RangeJob {
+
+    /**
+     * Processes the indices from start (inclusive) to end (exclusive).
+     *
+     * @param start The first index to process.
+     * @param end The index after the last one to process.
+     * @param scratch The scratch allocator of the executing worker. Everything allocated from it
+     *                is released after the range.
+     */
+    void execute(final int start, final int end, final ScratchAllocator scratch);
+}
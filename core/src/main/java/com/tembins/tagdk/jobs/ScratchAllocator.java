@@ -0,0 +1,107 @@
+package com.tembins.tagdk.jobs;
+
+import java.util.Arrays;
+
+/**
+ * A bump allocator handing out temporary float and int ranges to jobs. Every worker of a
+ * JobSystem owns one allocator, and all ranges a job allocated are released when the job ends, so
+ * jobs can use scratch memory without allocating or synchronizing. Memory is handed out as offsets into the backing arrays:
+ *
+ * <pre>
+ * final int offset = scratch.allocateFloats(64);
+ * final float[] floats = scratch.getFloats();
+ * floats[offset] = 1.0f;
+ * </pre>
+ *
+ * If a job needs more memory than the allocator holds, the backing array grows once and stays
+ * large for all later jobs. Offsets remain valid, but the array returned before the growth does
+ * not contain later allocations.
+ */
+public final class ScratchAllocator {
+
+    private float[] floats;
+    private int[] ints;
+    private int floatTop, intTop;
+
+    /**
+     * Initializes the allocator with the given capacities.
+     *
+     * @param floatCapacity The amount of floats to reserve.
+     * @param intCapacity The amount of ints to reserve.
+     */
+    public ScratchAllocator(final int floatCapacity, final int intCapacity) {
+        floats = new float[Math.max(1, floatCapacity)];
+        ints = new int[Math.max(1, intCapacity)];
+    }
+
+    /**
+     * Reserves a range of floats. The contents of the range are undefined.
+     *
+     * @param count The amount of floats to reserve.
+     * @return The offset of the range inside of getFloats().
+     */
+    public int allocateFloats(final int count) {
+        final int offset = floatTop;
+        floatTop += count;
+
+        if(floatTop > floats.length)
+            floats = Arrays.copyOf(floats, Math.max(floatTop, floats.length * 2));
+
+        return offset;
+    }
+
+    /**
+     * Reserves a range of ints. The contents of the range are undefined.
+     *
+     * @param count The amount of ints to reserve.
+     * @return The offset of the range inside of getInts().
+     */
+    public int allocateInts(final int count) {
+        final int offset = intTop;
+        intTop += count;
+
+        if(intTop > ints.length)
+            ints = Arrays.copyOf(ints, Math.max(intTop, ints.length * 2));
+
+        return offset;
+    }
+
+    /**
+     * Returns the backing float array.
+     *
+     * @return The float array holding all float ranges.
+     */
+    public float[] getFloats() {
+        return floats;
+    }
+
+    /**
+     * Returns the backing int array.
+     *
+     * @return The int array holding all int ranges.
+     */
+    public int[] getInts() {
+        return ints;
+    }
+
+    /**
+     * Returns the current allocation state, to release everything allocated afterwards with
+     * release(long). Used by the JobSystem around every job, so a worker starting another job
+     * while waiting for a counter does not release the ranges of the job it is waiting in.
+     *
+     * @return The allocation state.
+     */
+    public long mark() {
+        return ((long) floatTop << 32) | (intTop & 0xFFFFFFFFL);
+    }
+
+    /**
+     * Releases all ranges allocated after the given mark.
+     *
+     * @param mark The state returned by mark().
+     */
+    public void release(final long mark) {
+        floatTop = (int) (mark >>> 32);
+        intTop = (int) mark;
+    }
+}
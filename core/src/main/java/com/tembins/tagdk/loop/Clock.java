@@ -0,0 +1,21 @@
+package com.tembins.tagdk.loop;
+
+/**
+ * Provides the current time to the game loop. Tests can supply their own implementation to drive
+ * the loop deterministically.
+ */
+public interface Clock {
+
+    /**
+     * The clock backed by System.nanoTime(), which uses the same time base as the frame times
+     * reported by Android's Choreographer.
+     */
+    Clock SYSTEM = System::nanoTime;
+
+    /**
+     * Returns the current time of a monotonic clock.
+     *
+     * @return The current time in nanoseconds.
+     */
+    long nanoTime();
+}
@@ -0,0 +1,108 @@
+package com.tembins.tagdk.loop;
+
+/**
+ * Converts the variable time between frames into a whole number of fixed simulation steps. The
+ * time left over after the last step is kept for the next frame and exposed as an interpolation
+ * factor, so rendering can blend between the last two simulated states.
+ */
+public final class FixedTimestep {
+
+    private final long stepNanos;
+    private final int maxStepsPerFrame;
+
+    private long lastTime;
+    private boolean started;
+    private long accumulator;
+    private long droppedSteps;
+
+    /**
+     * Initializes the timestep with the following parameters:
+     *
+     * @param stepsPerSecond The amount of simulation steps per second, e.g. 60.
+     * @param maxStepsPerFrame The maximum amount of steps run for a single frame. If a frame takes
+     *                         longer (e.g. after a hitch), the remaining time is dropped instead of
+     *                         making the next frames even slower.
+     */
+    public FixedTimestep(final int stepsPerSecond, final int maxStepsPerFrame) {
+        if(stepsPerSecond <= 0 || maxStepsPerFrame <= 0)
+            throw new IllegalArgumentException("Steps per second and max steps must be positive");
+
+        this.stepNanos = 1_000_000_000L / stepsPerSecond;
+        this.maxStepsPerFrame = maxStepsPerFrame;
+    }
+
+    /**
+     * Advances the timestep to the given time. The first call only records the time and never
+     * runs a step.
+     *
+     * @param nanoTime The current time in nanoseconds.
+     * @return The amount of steps to simulate for this frame.
+     */
+    public int advance(final long nanoTime) {
+        if(!started) {
+            started = true;
+            lastTime = nanoTime;
+            return 0;
+        }
+
+        // A clock going backwards is treated as no time passing
+        accumulator += Math.max(0L, nanoTime - lastTime);
+        lastTime = nanoTime;
+
+        final long availableSteps = accumulator / stepNanos;
+        final int steps = (int) Math.min(availableSteps, maxStepsPerFrame);
+        accumulator -= steps * stepNanos;
+
+        if(availableSteps > steps) {
+            droppedSteps += availableSteps - steps;
+            accumulator %= stepNanos;
+        }
+
+        return steps;
+    }
+
+    /**
+     * Forgets the last time, so the next call to advance() starts over. Should be called when
+     * the game resumes after being paused, so the paused time is not simulated.
+     */
+    public void reset() {
+        started = false;
+        accumulator = 0L;
+    }
+
+    /**
+     * Returns how far the current time is between the last simulated step and the next one.
+     *
+     * @return The interpolation factor, from 0 (inclusive) to 1 (exclusive).
+     */
+    public float getAlpha() {
+        return (float) accumulator / stepNanos;
+    }
+
+    /**
+     * Returns the duration of one simulation step.
+     *
+     * @return The step duration in seconds.
+     */
+    public float getStepSeconds() {
+        return stepNanos / 1_000_000_000.0f;
+    }
+
+    /**
+     * Returns the duration of one simulation step.
+     *
+     * @return The step duration in nanoseconds.
+     */
+    public long getStepNanos() {
+        return stepNanos;
+    }
+
+    /**
+     * Returns the amount of steps dropped because frames took too long.
+     *
+     * @return The total dropped step count.
+     */
+    public long getDroppedSteps() {
+        return droppedSteps;
+    }
+}
@@ -0,0 +1,236 @@
+package com.tembins.tagdk.loop;
+
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Runs a fixed timestep simulation on its own update thread and hands interpolated render states
+ * to the render thread through a StateBuffer. Every frame (usually every vsync) requestTick() wakes
+ * the update thread, which simulates all steps due until the given frame time and writes the
+ * render state for that frame while the render thread is still drawing the previous one.
+ *
+ * The scheduling itself happens in tick(), which can be called directly, e.g. with the times of a
+ * fake Clock to test a simulation without any threads.
+ *
+ * @param <T> The render state type.
+ */
+public final class GameLoop<T> {
+
+    /**
+     * The game specific part of the loop, called on the update thread.
+     *
+     * @param <T> The render state type.
+     */
+    public interface Simulation<T> {
+
+        /**
+         * Advances the simulation by one fixed step.
+         *
+         * @param deltaTime The step duration in seconds.
+         */
+        void step(final float deltaTime);
+
+        /**
+         * Writes everything the renderer needs into the given state, interpolated between the
+         * previous and the current simulation step.
+         *
+         * @param state The state to write to. It still contains the values written two frames
+         *              ago and must be overwritten completely.
+         * @param alpha The interpolation factor, 0 for the previous step and 1 for the current.
+         */
+        void writeRenderState(final T state, final float alpha);
+    }
+
+    private final Simulation<T> simulation;
+    private final StateBuffer<T> stateBuffer;
+    private final FixedTimestep timestep;
+    private final Clock clock;
+
+    private final Object tickLock = new Object();
+    private long requestedTime;
+    private boolean tickRequested;
+    private long coalescedTicks;
+
+    private Thread updateThread;
+    private volatile boolean running;
+    private volatile Throwable failure;
+
+    /**
+     * Initializes the loop with the following parameters:
+     *
+     * @param simulation The simulation to run.
+     * @param stateBuffer The buffer handing render states to the render thread.
+     * @param timestep The timestep defining the simulation rate.
+     * @param clock The clock used by requestTick() without an explicit time.
+     */
+    public GameLoop(final Simulation<T> simulation, final StateBuffer<T> stateBuffer,
+                    final FixedTimestep timestep, final Clock clock) {
+        this.simulation = simulation;
+        this.stateBuffer = stateBuffer;
+        this.timestep = timestep;
+        this.clock = clock;
+    }
+
+    /**
+     * Runs all simulation steps due until the given time and publishes the render state. Blocks
+     * while the render thread has not picked up the previously published state yet.
+     *
+     * @param nanoTime The frame time in nanoseconds.
+     * @return The amount of simulation steps run.
+     * @throws InterruptedException If the thread is interrupted while waiting for the renderer.
+     */
+    public int tick(final long nanoTime) throws InterruptedException {
+        final int steps = timestep.advance(nanoTime);
+        final float stepSeconds = timestep.getStepSeconds();
+
+        for(int step = 0; step < steps; step++)
+            simulation.step(stepSeconds);
+
+        final T state = stateBuffer.beginWrite();
+        simulation.writeRenderState(state, timestep.getAlpha());
+        stateBuffer.publish();
+
+        return steps;
+    }
+
+    /**
+     * Asks the update thread to run a tick for the given frame time. If the update thread is
+     * still busy with the last request, the requests are merged and only the newest time is
+     * simulated. Never blocks, so it is safe to call from a vsync callback.
+     *
+     * @param frameTimeNanos The frame time in nanoseconds.
+     */
+    public void requestTick(final long frameTimeNanos) {
+        synchronized(tickLock) {
+            if(tickRequested)
+                coalescedTicks++;
+
+            requestedTime = frameTimeNanos;
+            tickRequested = true;
+            tickLock.notifyAll();
+        }
+    }
+
+    /**
+     * Asks the update thread to run a tick for the current time of the clock.
+     */
+    public void requestTick() {
+        requestTick(clock.nanoTime());
+    }
+
+    /**
+     * Starts the update thread. The timestep is reset, so time passed while the loop was stopped
+     * is not simulated. A failure of a previous run is cleared.
+     *
+     * @param threadFactory The factory creating the update thread, e.g. to raise its priority.
+     */
+    public synchronized void start(final ThreadFactory threadFactory) {
+        if(running)
+            return;
+
+        timestep.reset();
+        failure = null;
+        running = true;
+        updateThread = threadFactory.newThread(new Runnable() {
+            @Override
+            public void run() {
+                runUpdateThread();
+            }
+        });
+        updateThread.start();
+    }
+
+    /**
+     * Starts the update thread with a default thread factory.
+     */
+    public void start() {
+        start(new ThreadFactory() {
+            @Override
+            public Thread newThread(final Runnable runnable) {
+                return new Thread(runnable, "GameLoop-Update");
+            }
+        });
+    }
+
+    /**
+     * Stops the update thread and waits for it to finish its current tick. Also releases the
+     * thread of a loop which stopped by itself because of a failure.
+     *
+     * @throws InterruptedException If the calling thread is interrupted while waiting.
+     */
+    public synchronized void stop() throws InterruptedException {
+        if(updateThread == null)
+            return;
+
+        running = false;
+        updateThread.interrupt();
+        updateThread.join();
+        updateThread = null;
+
+        synchronized(tickLock) {
+            tickRequested = false;
+        }
+    }
+
+    private void runUpdateThread() {
+        try {
+            while(running) {
+                final long frameTime;
+                synchronized(tickLock) {
+                    while(!tickRequested)
+                        tickLock.wait();
+
+                    frameTime = requestedTime;
+                    tickRequested = false;
+                }
+
+                tick(frameTime);
+            }
+        } catch(InterruptedException exception) {
+            // Stopped while waiting for a tick or for the renderer
+        } catch(Throwable throwable) {
+            // The simulation can not continue from a broken state, so the loop ends and reports it
+            failure = throwable;
+            running = false;
+        }
+    }
+
+    /**
+     * Returns whether the update thread is running.
+     *
+     * @return True if the loop was started and neither stopped nor failed yet.
+     */
+    public boolean isRunning() {
+        return running;
+    }
+
+    /**
+     * Returns what ended the update thread, if the simulation threw an exception or error.
+     *
+     * @return The failure of the current or last run, or null if there was none.
+     */
+    public Throwable getFailure() {
+        return failure;
+    }
+
+    /**
+     * Returns the amount of tick requests merged with a newer request because the update thread
+     * was too slow. A steadily growing value means the simulation does not keep up with the
+     * display.
+     *
+     * @return The total merged request count.
+     */
+    public long getCoalescedTicks() {
+        synchronized(tickLock) {
+            return coalescedTicks;
+        }
+    }
+
+    /**
+     * Returns the timestep of this loop.
+     *
+     * @return The timestep.
+     */
+    public FixedTimestep getTimestep() {
+        return timestep;
+    }
+}
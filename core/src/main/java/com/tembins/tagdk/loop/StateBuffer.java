@@ -0,0 +1,93 @@
+package com.tembins.tagdk.loop;
+
+/**
+ * Hands render states from the update thread to the render thread using two preallocated
+ * states. The update thread fills the back state and publishes it, the render thread picks up the
+ * latest published state as its front state. The update thread can only run one frame ahead: it
+ * has to wait for the render thread to pick up the last published state before it can write the
+ * next one.
+ *
+ * @param <T> The render state type.
+ */
+public final class StateBuffer<T> {
+
+    private final Object lock = new Object();
+    private T front, back;
+    private boolean backPublished;
+    private boolean writing;
+
+    /**
+     * Initializes the buffer with two distinct state instances.
+     *
+     * @param first The first state.
+     * @param second The second state.
+     */
+    public StateBuffer(final T first, final T second) {
+        if(first == second)
+            throw new IllegalArgumentException("The states must be distinct instances");
+
+        front = first;
+        back = second;
+    }
+
+    /**
+     * Returns the back state for writing, waiting until the render thread picked up the last
+     * published state. Must only be called by the update thread.
+     *
+     * @return The state to write to.
+     * @throws InterruptedException If the thread is interrupted while waiting.
+     */
+    public T beginWrite() throws InterruptedException {
+        synchronized(lock) {
+            while(backPublished)
+                lock.wait();
+
+            writing = true;
+            return back;
+        }
+    }
+
+    /**
+     * Publishes the state returned by the last call to beginWrite().
+     */
+    public void publish() {
+        synchronized(lock) {
+            if(!writing)
+                throw new IllegalStateException("publish() without beginWrite()");
+
+            writing = false;
+            backPublished = true;
+        }
+    }
+
+    /**
+     * Returns the newest published state. If nothing new was published since the last call, the
+     * same state is returned again. Never blocks the calling render thread on the update thread.
+     *
+     * @return The state to render.
+     */
+    public T acquire() {
+        synchronized(lock) {
+            if(backPublished) {
+                final T published = back;
+                back = front;
+                front = published;
+                backPublished = false;
+                lock.notifyAll();
+            }
+
+            return front;
+        }
+    }
+
+    /**
+     * Returns whether a published state is waiting to be picked up by the render thread.
+     *
+     * @return True if the next acquire() returns a new state.
+     */
+    public boolean hasPublished() {
+        synchronized(lock) {
+            return backPublished;
+        }
+    }
+}
@@ -0,0 +1,102 @@
+package com.tembins.tagdk.math;
+
+/**
+ * Represents an axis aligned bounding box (AABB), with final fields min and max.
+ */
+public final class BoundingBox {
+
+    public final Vector3f min, max;
+
+    /**
+     * Initializes the bounding box with the given corners.
+     *
+     * @param min The corner with the smallest x, y and z values.
+     * @param max The corner with the largest x, y and z values.
+     */
+    public BoundingBox(final Vector3f min, final Vector3f max) {
+        this.min = min;
+        this.max = max;
+    }
+
+    /**
+     * Computes the bounding box enclosing all the given positions. The positions are expected to
+     * be tightly packed x, y, z triples, as they are uploaded to the position VBO of a mesh. If
+     * no positions are given, the returned box is collapsed to the origin.
+     *
+     * @param positions The positions to enclose.
+     * @return The smallest bounding box enclosing all positions.
+     */
+    public static BoundingBox fromPositions(final float[] positions) {
+        if(positions.length < 3)
+            return new BoundingBox(new Vector3f(0.0f, 0.0f, 0.0f), new Vector3f(0.0f, 0.0f, 0.0f));
+
+        float minX = positions[0], minY = positions[1], minZ = positions[2];
+        float maxX = minX, maxY = minY, maxZ = minZ;
+
+        for(int index = 3; index + 2 < positions.length; index += 3) {
+            final float x = positions[index];
+            final float y = positions[index + 1];
+            final float z = positions[index + 2];
+
+            if(x < minX) minX = x; else if(x > maxX) maxX = x;
+            if(y < minY) minY = y; else if(y > maxY) maxY = y;
+            if(z < minZ) minZ = z; else if(z > maxZ) maxZ = z;
+        }
+
+        return new BoundingBox(new Vector3f(minX, minY, minZ), new Vector3f(maxX, maxY, maxZ));
+    }
+
+    /**
+     * Returns the center point of this box.
+     *
+     * @return The center of the box.
+     */
+    public Vector3f getCenter() {
+        return new Vector3f(
+                (min.x + max.x) * 0.5f,
+                (min.y + max.y) * 0.5f,
+                (min.z + max.z) * 0.5f);
+    }
+
+    /**
+     * Returns the half size of this box along each axis.
+     *
+     * @return The extents of the box.
+     */
+    public Vector3f getExtents() {
+        return new Vector3f(
+                (max.x - min.x) * 0.5f,
+                (max.y - min.y) * 0.5f,
+                (max.z - min.z) * 0.5f);
+    }
+
+    /**
+     * Returns the axis aligned box enclosing this box after it has been transformed by the given
+     * matrix. The matrix is applied as in (GivenMatrix * Point), so the translation is expected in
+     * v03, v13 and v23.
+     *
+     * @param matrix The transformation, usually a model matrix.
+     * @return The box enclosing the transformed box.
+     */
+    public BoundingBox transform(final Matrix4f matrix) {
+        final float centerX = (min.x + max.x) * 0.5f;
+        final float centerY = (min.y + max.y) * 0.5f;
+        final float centerZ = (min.z + max.z) * 0.5f;
+        final float extentX = (max.x - min.x) * 0.5f;
+        final float extentY = (max.y - min.y) * 0.5f;
+        final float extentZ = (max.z - min.z) * 0.5f;
+
+        final float newCenterX = matrix.v00 * centerX + matrix.v01 * centerY + matrix.v02 * centerZ + matrix.v03;
+        final float newCenterY = matrix.v10 * centerX + matrix.v11 * centerY + matrix.v12 * centerZ + matrix.v13;
+        final float newCenterZ = matrix.v20 * centerX + matrix.v21 * centerY + matrix.v22 * centerZ + matrix.v23;
+
+        // The extents of a rotated box are the absolute rotation applied to the original extents
+        final float newExtentX = Math.abs(matrix.v00) * extentX + Math.abs(matrix.v01) * extentY + Math.abs(matrix.v02) * extentZ;
+        final float newExtentY = Math.abs(matrix.v10) * extentX + Math.abs(matrix.v11) * extentY + Math.abs(matrix.v12) * extentZ;
+        final float newExtentZ = Math.abs(matrix.v20) * extentX + Math.abs(matrix.v21) * extentY + Math.abs(matrix.v22) * extentZ;
+
+        return new BoundingBox(
+                new Vector3f(newCenterX - newExtentX, newCenterY - newExtentY, newCenterZ - newExtentZ),
+                new Vector3f(newCenterX + newExtentX, newCenterY + newExtentY, newCenterZ + newExtentZ));
+    }
+}
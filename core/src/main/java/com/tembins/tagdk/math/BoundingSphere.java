@@ -0,0 +1,47 @@
+package com.tembins.tagdk.math;
+
+/**
+ * Represents a bounding sphere, with final fields center and radius.
+ */
+public final class BoundingSphere {
+
+    public final Vector3f center;
+    public final float radius;
+
+    /**
+     * Initializes the bounding sphere with the given input.
+     *
+     * @param center The center of the sphere.
+     * @param radius The radius of the sphere.
+     */
+    public BoundingSphere(final Vector3f center, final float radius) {
+        this.center = center;
+        this.radius = radius;
+    }
+
+    /**
+     * Computes a bounding sphere enclosing all the given positions. The positions are expected to
+     * be tightly packed x, y, z triples. The sphere is centered on the bounding box of the
+     * positions, which is not always the smallest possible sphere, but cheap to compute and never
+     * larger than the sphere around the bounding box itself.
+     *
+     * @param positions The positions to enclose.
+     * @return A bounding sphere enclosing all positions.
+     */
+    public static BoundingSphere fromPositions(final float[] positions) {
+        final Vector3f center = BoundingBox.fromPositions(positions).getCenter();
+
+        float maxDistanceSquared = 0.0f;
+        for(int index = 0; index + 2 < positions.length; index += 3) {
+            final float deltaX = positions[index] - center.x;
+            final float deltaY = positions[index + 1] - center.y;
+            final float deltaZ = positions[index + 2] - center.z;
+            final float distanceSquared = deltaX * deltaX + deltaY * deltaY + deltaZ * deltaZ;
+
+            if(distanceSquared > maxDistanceSquared)
+                maxDistanceSquared = distanceSquared;
+        }
+
+        return new BoundingSphere(center, (float) Math.sqrt(maxDistanceSquared));
+    }
+}
@@ -104,6 +104,65 @@ public final class Matrix4f {
                 v30 * vector.x + v31 * vector.y + v32 * vector.z + v33 * vector.w);
     }
 
+    /**
+     * Writes this matrix into the given array, starting at the given offset. The matrices values
+     * are stored in row-major order.
+     *
+     * @param array The array to write to.
+     * @param offset The index of the first value to write.
+     */
+    public void store(final float[] array, final int offset) {
+        array[offset] = v00; array[offset + 1] = v01; array[offset + 2] = v02; array[offset + 3] = v03;
+        array[offset + 4] = v10; array[offset + 5] = v11; array[offset + 6] = v12; array[offset + 7] = v13;
+        array[offset + 8] = v20; array[offset + 9] = v21; array[offset + 10] = v22; array[offset + 11] = v23;
+        array[offset + 12] = v30; array[offset + 13] = v31; array[offset + 14] = v32; array[offset + 15] = v33;
+    }
+
+    /**
+     * Reads a matrix from the given array, starting at the given offset. The values are expected
+     * in row-major order, as written by store(float[], int).
+     *
+     * @param array The array to read from.
+     * @param offset The index of the first value to read.
+     * @return The read matrix.
+     */
+    public static Matrix4f fromArray(final float[] array, final int offset) {
+        return new Matrix4f(
+                array[offset], array[offset + 1], array[offset + 2], array[offset + 3],
+                array[offset + 4], array[offset + 5], array[offset + 6], array[offset + 7],
+                array[offset + 8], array[offset + 9], array[offset + 10], array[offset + 11],
+                array[offset + 12], array[offset + 13], array[offset + 14], array[offset + 15]);
+    }
+
+    /**
+     * Multiplies two row-major matrices stored in float arrays, without allocating. It is the
+     * mathematical equivalent of (Left * Right). The result may not overlap with either input.
+     *
+     * @param left The array holding the left matrix.
+     * @param leftOffset The offset of the left matrix.
+     * @param right The array holding the right matrix.
+     * @param rightOffset The offset of the right matrix.
+     * @param result The array receiving the resulting matrix.
+     * @param resultOffset The offset of the resulting matrix.
+     */
+    public static void mul(final float[] left, final int leftOffset, final float[] right, final int rightOffset,
+                           final float[] result, final int resultOffset) {
+        final float r00 = right[rightOffset], r01 = right[rightOffset + 1], r02 = right[rightOffset + 2], r03 = right[rightOffset + 3];
+        final float r10 = right[rightOffset + 4], r11 = right[rightOffset + 5], r12 = right[rightOffset + 6], r13 = right[rightOffset + 7];
+        final float r20 = right[rightOffset + 8], r21 = right[rightOffset + 9], r22 = right[rightOffset + 10], r23 = right[rightOffset + 11];
+        final float r30 = right[rightOffset + 12], r31 = right[rightOffset + 13], r32 = right[rightOffset + 14], r33 = right[rightOffset + 15];
+
+        for(int row = 0; row < 16; row += 4) {
+            final float l0 = left[leftOffset + row], l1 = left[leftOffset + row + 1];
+            final float l2 = left[leftOffset + row + 2], l3 = left[leftOffset + row + 3];
+
+            result[resultOffset + row] = l0 * r00 + l1 * r10 + l2 * r20 + l3 * r30;
+            result[resultOffset + row + 1] = l0 * r01 + l1 * r11 + l2 * r21 + l3 * r31;
+            result[resultOffset + row + 2] = l0 * r02 + l1 * r12 + l2 * r22 + l3 * r32;
+            result[resultOffset + row + 3] = l0 * r03 + l1 * r13 + l2 * r23 + l3 * r33;
+        }
+    }
+
     /**
      * Returns this matrix as a one-dimensional array. The matrices values are stored in row-major
      * order.
@@ -0,0 +1,40 @@
+package com.tembins.tagdk.particles;
+
+/**
+ * Slows all particles down proportionally to their velocity.
+ */
+public final class DragAffector implements ParticleAffector {
+
+    private float coefficient;
+
+    /**
+     * Initializes the affector with the following parameters:
+     *
+     * @param coefficient The fraction of the velocity lost per second, between 0 and 1.
+     */
+    public DragAffector(final float coefficient) {
+        setCoefficient(coefficient);
+    }
+
+    /**
+     * Changes the drag coefficient.
+     *
+     * @param coefficient The fraction of the velocity lost per second, between 0 and 1.
+     */
+    public void setCoefficient(final float coefficient) {
+        this.coefficient = Math.max(0.0f, Math.min(1.0f, coefficient));
+    }
+
+    @Override
+    public void apply(final ParticlePool pool, final float deltaTime) {
+        final float damping = Math.max(0.0f, 1.0f - coefficient * deltaTime);
+        final float[] velocityX = pool.velocityX, velocityY = pool.velocityY, velocityZ = pool.velocityZ;
+        final int count = pool.count;
+
+        for(int particle = 0; particle < count; particle++) {
+            velocityX[particle] *= damping;
+            velocityY[particle] *= damping;
+            velocityZ[particle] *= damping;
+        }
+    }
+}
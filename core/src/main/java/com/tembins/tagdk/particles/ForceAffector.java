@@ -0,0 +1,46 @@
+package com.tembins.tagdk.particles;
+
+/**
+ * Accelerates all particles uniformly, e.g. for gravity or wind.
+ */
+public final class ForceAffector implements ParticleAffector {
+
+    private float accelerationX, accelerationY, accelerationZ;
+
+    /**
+     * Initializes the affector with the following parameters:
+     *
+     * @param accelerationX The acceleration along x in units per second squared.
+     * @param accelerationY The acceleration along y in units per second squared.
+     * @param accelerationZ The acceleration along z in units per second squared.
+     */
+    public ForceAffector(final float accelerationX, final float accelerationY, final float accelerationZ) {
+        set(accelerationX, accelerationY, accelerationZ);
+    }
+
+    /**
+     * Changes the acceleration.
+     *
+     * @param accelerationX The acceleration along x in units per second squared.
+     * @param accelerationY The acceleration along y in units per second squared.
+     * @param accelerationZ The acceleration along z in units per second squared.
+     */
+    public void set(final float accelerationX, final float accelerationY, final float accelerationZ) {
+        this.accelerationX = accelerationX;
+        this.accelerationY = accelerationY;
+        this.accelerationZ = accelerationZ;
+    }
+
+    @Override
+    public void apply(final ParticlePool pool, final float deltaTime) {
+        final float x = accelerationX * deltaTime, y = accelerationY * deltaTime, z = accelerationZ * deltaTime;
+        final float[] velocityX = pool.velocityX, velocityY = pool.velocityY, velocityZ = pool.velocityZ;
+        final int count = pool.count;
+
+        for(int particle = 0; particle < count; particle++) {
+            velocityX[particle] += x;
+            velocityY[particle] += y;
+            velocityZ[particle] += z;
+        }
+    }
+}
@@ -0,0 +1,16 @@
+package com.tembins.tagdk.particles;
+
+/**
+ * Changes the particles of an emitter every update, before they are moved along their velocity.
+ * Implementations should loop over the pool arrays directly and must not allocate.
+ */
+public interface ParticleAffector {
+
+    /**
+     * Applies the affector to all live particles of a pool.
+     *
+     * @param pool The pool to modify.
+     * @param deltaTime The time step in seconds.
+     */
+    void apply(final ParticlePool pool, final float deltaTime);
+}
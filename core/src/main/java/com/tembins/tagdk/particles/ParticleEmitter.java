@@ -0,0 +1,182 @@
+package com.tembins.tagdk.particles;
+
+import java.util.ArrayList;
+
+/**
+ * Spawns particles into its own pool and simulates them. Particles start at a random point of a
+ * box around the emitter position, with a random velocity around the base velocity and a random
+ * lifetime. Every emitter owns its pool, affectors and random number generator, so different
+ * emitters can be updated in parallel.
+ */
+public final class ParticleEmitter {
+
+    private final ParticlePool pool;
+    private final ArrayList<ParticleAffector> affectors = new ArrayList<>();
+
+    private float positionX, positionY, positionZ;
+    private float extentX, extentY, extentZ;
+    private float velocityX, velocityY, velocityZ, velocitySpread;
+    private float minLifetime = 1.0f, maxLifetime = 1.0f;
+    private float size = 1.0f;
+    private int color = 0xFFFFFFFF;
+
+    private float emissionRate;
+    private float emissionAccumulator;
+    private int randomState;
+
+    /**
+     * Creates an emitter with the following parameters:
+     *
+     * @param capacity The largest amount of live particles.
+     * @param seed The seed of the random number generator.
+     */
+    public ParticleEmitter(final int capacity, final int seed) {
+        pool = new ParticlePool(capacity);
+        randomState = seed != 0 ? seed : 0x9E3779B9;
+    }
+
+    /**
+     * Sets the center of the spawn box.
+     *
+     * @param x The x coordinate.
+     * @param y The y coordinate.
+     * @param z The z coordinate.
+     */
+    public void setPosition(final float x, final float y, final float z) {
+        positionX = x;
+        positionY = y;
+        positionZ = z;
+    }
+
+    /**
+     * Sets the half size of the spawn box, zero to spawn all particles at the emitter position.
+     *
+     * @param x The half size along x.
+     * @param y The half size along y.
+     * @param z The half size along z.
+     */
+    public void setExtent(final float x, final float y, final float z) {
+        extentX = x;
+        extentY = y;
+        extentZ = z;
+    }
+
+    /**
+     * Sets the initial velocity of spawned particles.
+     *
+     * @param x The base velocity along x in units per second.
+     * @param y The base velocity along y in units per second.
+     * @param z The base velocity along z in units per second.
+     * @param spread The largest random deviation per component from the base velocity.
+     */
+    public void setVelocity(final float x, final float y, final float z, final float spread) {
+        velocityX = x;
+        velocityY = y;
+        velocityZ = z;
+        velocitySpread = spread;
+    }
+
+    /**
+     * Sets the range of lifetimes of spawned particles.
+     *
+     * @param min The shortest lifetime in seconds.
+     * @param max The longest lifetime in seconds.
+     */
+    public void setLifetime(final float min, final float max) {
+        if(min <= 0.0f || max < min)
+            throw new IllegalArgumentException("Invalid lifetime range " + min + " to " + max);
+
+        minLifetime = min;
+        maxLifetime = max;
+    }
+
+    /**
+     * Sets the appearance of spawned particles.
+     *
+     * @param size The size of the particles.
+     * @param color The color as 0xRRGGBBAA.
+     */
+    public void setAppearance(final float size, final int color) {
+        this.size = size;
+        this.color = color;
+    }
+
+    /**
+     * Sets the amount of particles spawned continuously.
+     *
+     * @param particlesPerSecond The emission rate, 0 to only spawn bursts.
+     */
+    public void setEmissionRate(final float particlesPerSecond) {
+        emissionRate = Math.max(0.0f, particlesPerSecond);
+    }
+
+    /**
+     * Adds an affector, which is applied in the order of addition.
+     *
+     * @param affector The affector to add.
+     */
+    public void addAffector(final ParticleAffector affector) {
+        affectors.add(affector);
+    }
+
+    /**
+     * Spawns particles at once.
+     *
+     * @param particleCount The amount of particles to spawn.
+     * @return The amount of particles spawned, less than requested if the pool is full.
+     */
+    public int burst(final int particleCount) {
+        final int spawned = Math.min(particleCount, pool.getCapacity() - pool.count);
+        for(int particle = 0; particle < spawned; particle++) {
+            pool.emit(positionX + extentX * nextSigned(), positionY + extentY * nextSigned(),
+                    positionZ + extentZ * nextSigned(),
+                    velocityX + velocitySpread * nextSigned(), velocityY + velocitySpread * nextSigned(),
+                    velocityZ + velocitySpread * nextSigned(),
+                    minLifetime + (maxLifetime - minLifetime) * nextUnsigned(), size, color);
+        }
+        return spawned;
+    }
+
+    /**
+     * Spawns the particles due for the time step, applies the affectors and moves the particles.
+     *
+     * @param deltaTime The time step in seconds.
+     */
+    public void update(final float deltaTime) {
+        for(int index = 0; index < affectors.size(); index++)
+            affectors.get(index).apply(pool, deltaTime);
+        pool.integrate(deltaTime);
+
+        // New particles start at age zero, so they are spawned after the simulation step
+        emissionAccumulator += emissionRate * deltaTime;
+        final int spawnCount = (int) emissionAccumulator;
+        emissionAccumulator -= spawnCount;
+        burst(spawnCount);
+    }
+
+    /**
+     * Returns a random value in [0, 1) from a xorshift generator, which is cheaper than Random
+     * and not shared between threads.
+     */
+    private float nextUnsigned() {
+        int state = randomState;
+        state ^= state << 13;
+        state ^= state >>> 17;
+        state ^= state << 5;
+        randomState = state;
+        return (state >>> 8) * (1.0f / (1 << 24));
+    }
+
+    private float nextSigned() {
+        return nextUnsigned() * 2.0f - 1.0f;
+    }
+
+    /**
+     * Returns the pool holding the particles of this emitter.
+     *
+     * @return The pool.
+     */
+    public ParticlePool getPool() {
+        return pool;
+    }
+}
@@ -0,0 +1,183 @@
+package com.tembins.tagdk.particles;
+
+/**
+ * Stores particles as a structure of arrays, one primitive array per attribute. Live particles
+ * are always packed at the front of the arrays: dead particles are removed by moving the last
+ * live particle into their slot, so iterating needs no liveness checks and the arrays never
+ * fragment. Particle indices are therefore not stable across updates.
+ *
+ * The arrays are exposed as package-private fields, so affectors can run tight loops over them.
+ */
+public final class ParticlePool {
+
+    final float[] positionX, positionY, positionZ;
+    final float[] velocityX, velocityY, velocityZ;
+    final float[] age, lifetime, size;
+    final int[] color;
+    private final int capacity;
+    int count;
+
+    /**
+     * Allocates a pool with the following parameters:
+     *
+     * @param capacity The largest amount of live particles.
+     */
+    public ParticlePool(final int capacity) {
+        this.capacity = capacity;
+        positionX = new float[capacity];
+        positionY = new float[capacity];
+        positionZ = new float[capacity];
+        velocityX = new float[capacity];
+        velocityY = new float[capacity];
+        velocityZ = new float[capacity];
+        age = new float[capacity];
+        lifetime = new float[capacity];
+        size = new float[capacity];
+        color = new int[capacity];
+    }
+
+    /**
+     * Adds a particle.
+     *
+     * @param x The x coordinate of the position.
+     * @param y The y coordinate of the position.
+     * @param z The z coordinate of the position.
+     * @param velocityX The velocity along x in units per second.
+     * @param velocityY The velocity along y in units per second.
+     * @param velocityZ The velocity along z in units per second.
+     * @param lifetime The time in seconds until the particle dies.
+     * @param size The size of the particle.
+     * @param color The color as 0xRRGGBBAA.
+     * @return The index of the particle, or -1 if the pool is full.
+     */
+    public int emit(final float x, final float y, final float z,
+                    final float velocityX, final float velocityY, final float velocityZ,
+                    final float lifetime, final float size, final int color) {
+        if(count == capacity)
+            return -1;
+
+        final int particle = count++;
+        positionX[particle] = x;
+        positionY[particle] = y;
+        positionZ[particle] = z;
+        this.velocityX[particle] = velocityX;
+        this.velocityY[particle] = velocityY;
+        this.velocityZ[particle] = velocityZ;
+        age[particle] = 0.0f;
+        this.lifetime[particle] = lifetime;
+        this.size[particle] = size;
+        this.color[particle] = color;
+        return particle;
+    }
+
+    /**
+     * Removes a particle by moving the last particle into its slot.
+     *
+     * @param particle The index of the particle.
+     */
+    public void kill(final int particle) {
+        final int last = --count;
+        if(particle == last)
+            return;
+
+        positionX[particle] = positionX[last];
+        positionY[particle] = positionY[last];
+        positionZ[particle] = positionZ[last];
+        velocityX[particle] = velocityX[last];
+        velocityY[particle] = velocityY[last];
+        velocityZ[particle] = velocityZ[last];
+        age[particle] = age[last];
+        lifetime[particle] = lifetime[last];
+        size[particle] = size[last];
+        color[particle] = color[last];
+    }
+
+    /**
+     * Ages all particles, removes the ones which outlived their lifetime and moves the others
+     * along their velocity. Removal and integration share a single pass over the arrays.
+     *
+     * @param deltaTime The time step in seconds.
+     */
+    public void integrate(final float deltaTime) {
+        int particle = 0;
+        while(particle < count) {
+            final float newAge = age[particle] + deltaTime;
+            if(newAge >= lifetime[particle]) {
+                // The moved particle has not been processed yet, so the slot is visited again
+                kill(particle);
+                continue;
+            }
+
+            age[particle] = newAge;
+            positionX[particle] += velocityX[particle] * deltaTime;
+            positionY[particle] += velocityY[particle] * deltaTime;
+            positionZ[particle] += velocityZ[particle] * deltaTime;
+            particle++;
+        }
+    }
+
+    /**
+     * Removes all particles.
+     */
+    public void clear() {
+        count = 0;
+    }
+
+    /**
+     * Returns the amount of live particles.
+     *
+     * @return The particle count.
+     */
+    public int getCount() {
+        return count;
+    }
+
+    /**
+     * Returns the largest amount of live particles.
+     *
+     * @return The capacity.
+     */
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * Returns the x coordinate of a particle.
+     *
+     * @param particle The particle index.
+     * @return The x coordinate.
+     */
+    public float getX(final int particle) {
+        return positionX[particle];
+    }
+
+    /**
+     * Returns the y coordinate of a particle.
+     *
+     * @param particle The particle index.
+     * @return The y coordinate.
+     */
+    public float getY(final int particle) {
+        return positionY[particle];
+    }
+
+    /**
+     * Returns the z coordinate of a particle.
+     *
+     * @param particle The particle index.
+     * @return The z coordinate.
+     */
+    public float getZ(final int particle) {
+        return positionZ[particle];
+    }
+
+    /**
+     * Returns the age of a particle.
+     *
+     * @param particle The particle index.
+     * @return The age in seconds.
+     */
+    public float getAge(final int particle) {
+        return age[particle];
+    }
+}
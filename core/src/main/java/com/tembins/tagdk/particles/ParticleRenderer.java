@@ -0,0 +1,158 @@
+package com.tembins.tagdk.particles;
+
+import com.tembins.tagdk.graphics.backend.GLConstants;
+import com.tembins.tagdk.graphics.backend.GraphicsBackend;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.nio.ShortBuffer;
+
+/**
+ * Draws all particles of a ParticleSystem as camera facing quads with one instanced draw call.
+ * Every frame the particles are copied from the pools into a staging buffer and uploaded into a
+ * streaming instance buffer, which is orphaned first so the upload never waits for the GPU to
+ * finish drawing the previous frame.
+ *
+ * The vertex shader receives the quad corner in [-0.5, 0.5] at CORNER_ATTRIBUTE, the particle
+ * position and size as a vec4 at INSTANCE_ATTRIBUTE and the normalized color at COLOR_ATTRIBUTE.
+ */
+public final class ParticleRenderer {
+
+    public static final int CORNER_ATTRIBUTE = 0, INSTANCE_ATTRIBUTE = 1, COLOR_ATTRIBUTE = 2;
+    public static final int INSTANCE_STRIDE = 20;
+    private static final int INTS_PER_INSTANCE = INSTANCE_STRIDE / 4;
+    private static final boolean LITTLE_ENDIAN = ByteOrder.nativeOrder() == ByteOrder.LITTLE_ENDIAN;
+
+    private final GraphicsBackend graphics;
+    private final int maxParticles;
+    private final int vertexArray, cornerBuffer, indexBuffer, instanceBuffer;
+    private final int[] staging;
+    private final IntBuffer uploadBuffer;
+    private int instanceCount;
+
+    /**
+     * Creates the buffers of the renderer with the following parameters:
+     *
+     * @param graphics The backend creating and drawing the buffers.
+     * @param maxParticles The largest amount of particles drawn per frame, further particles are
+     *                     skipped.
+     */
+    public ParticleRenderer(final GraphicsBackend graphics, final int maxParticles) {
+        this.graphics = graphics;
+        this.maxParticles = maxParticles;
+        staging = new int[maxParticles * INTS_PER_INSTANCE];
+        uploadBuffer = ByteBuffer.allocateDirect(maxParticles * INSTANCE_STRIDE).order(ByteOrder.nativeOrder())
+                .asIntBuffer();
+
+        vertexArray = graphics.createVertexArray();
+        graphics.bindVertexArray(vertexArray);
+
+        final FloatBuffer corners = ByteBuffer.allocateDirect(8 * 4).order(ByteOrder.nativeOrder()).asFloatBuffer();
+        corners.put(new float[] { -0.5f, -0.5f, 0.5f, -0.5f, 0.5f, 0.5f, -0.5f, 0.5f }).flip();
+        cornerBuffer = graphics.createBuffer();
+        graphics.bindBuffer(GLConstants.GL_ARRAY_BUFFER, cornerBuffer);
+        graphics.bufferData(GLConstants.GL_ARRAY_BUFFER, 8 * 4, corners, GLConstants.GL_STATIC_DRAW);
+        graphics.enableVertexAttribArray(CORNER_ATTRIBUTE);
+        graphics.vertexAttribPointer(CORNER_ATTRIBUTE, 2, GLConstants.GL_FLOAT, false, 0, 0);
+
+        instanceBuffer = graphics.createBuffer();
+        graphics.bindBuffer(GLConstants.GL_ARRAY_BUFFER, instanceBuffer);
+        graphics.bufferData(GLConstants.GL_ARRAY_BUFFER, maxParticles * INSTANCE_STRIDE, null,
+                GLConstants.GL_STREAM_DRAW);
+        graphics.enableVertexAttribArray(INSTANCE_ATTRIBUTE);
+        graphics.vertexAttribPointer(INSTANCE_ATTRIBUTE, 4, GLConstants.GL_FLOAT, false, INSTANCE_STRIDE, 0);
+        graphics.vertexAttribDivisor(INSTANCE_ATTRIBUTE, 1);
+        graphics.enableVertexAttribArray(COLOR_ATTRIBUTE);
+        graphics.vertexAttribPointer(COLOR_ATTRIBUTE, 4, GLConstants.GL_UNSIGNED_BYTE, true, INSTANCE_STRIDE, 16);
+        graphics.vertexAttribDivisor(COLOR_ATTRIBUTE, 1);
+
+        // The element buffer binding is part of the VAO state, so it has to be bound in here
+        final ShortBuffer indices = ByteBuffer.allocateDirect(6 * 2).order(ByteOrder.nativeOrder()).asShortBuffer();
+        indices.put(new short[] { 0, 1, 2, 0, 2, 3 }).flip();
+        indexBuffer = graphics.createBuffer();
+        graphics.bindBuffer(GLConstants.GL_ELEMENT_ARRAY_BUFFER, indexBuffer);
+        graphics.bufferData(GLConstants.GL_ELEMENT_ARRAY_BUFFER, 6 * 2, indices, GLConstants.GL_STATIC_DRAW);
+
+        graphics.bindVertexArray(0);
+    }
+
+    /**
+     * Copies the particles of all emitters into the instance buffer.
+     *
+     * @param system The particle system to draw.
+     * @return The amount of uploaded particles.
+     */
+    public int upload(final ParticleSystem system) {
+        int count = 0;
+        for(int index = 0; index < system.getEmitterCount() && count < maxParticles; index++)
+            count = write(system.getEmitter(index).getPool(), count);
+
+        instanceCount = count;
+        if(count == 0)
+            return 0;
+
+        uploadBuffer.clear();
+        uploadBuffer.put(staging, 0, count * INTS_PER_INSTANCE).flip();
+
+        // Orphaning gives the driver a fresh buffer while the old one may still be in use
+        final int sizeBytes = count * INSTANCE_STRIDE;
+        graphics.bindBuffer(GLConstants.GL_ARRAY_BUFFER, instanceBuffer);
+        graphics.bufferData(GLConstants.GL_ARRAY_BUFFER, maxParticles * INSTANCE_STRIDE, null,
+                GLConstants.GL_STREAM_DRAW);
+        graphics.bufferSubData(GLConstants.GL_ARRAY_BUFFER, 0, sizeBytes, uploadBuffer);
+        return count;
+    }
+
+    private int write(final ParticlePool pool, final int first) {
+        final int count = Math.min(pool.count, maxParticles - first);
+        final float[] positionX = pool.positionX, positionY = pool.positionY, positionZ = pool.positionZ;
+        final float[] size = pool.size;
+        final int[] color = pool.color;
+        final int[] staging = this.staging;
+
+        int target = first * INTS_PER_INSTANCE;
+        for(int particle = 0; particle < count; particle++) {
+            staging[target] = Float.floatToRawIntBits(positionX[particle]);
+            staging[target + 1] = Float.floatToRawIntBits(positionY[particle]);
+            staging[target + 2] = Float.floatToRawIntBits(positionZ[particle]);
+            staging[target + 3] = Float.floatToRawIntBits(size[particle]);
+            // The color bytes have to end up in memory as R, G, B, A
+            staging[target + 4] = LITTLE_ENDIAN ? Integer.reverseBytes(color[particle]) : color[particle];
+            target += INTS_PER_INSTANCE;
+        }
+        return first + count;
+    }
+
+    /**
+     * Draws the particles of the last upload. The particle program and texture have to be bound
+     * before.
+     */
+    public void draw() {
+        if(instanceCount == 0)
+            return;
+
+        graphics.bindVertexArray(vertexArray);
+        graphics.drawElementsInstanced(GLConstants.GL_TRIANGLES, 6, GLConstants.GL_UNSIGNED_SHORT, 0, instanceCount);
+    }
+
+    /**
+     * Deletes the buffers and the VAO of the renderer.
+     */
+    public void release() {
+        graphics.deleteVertexArray(vertexArray);
+        graphics.deleteBuffer(cornerBuffer);
+        graphics.deleteBuffer(instanceBuffer);
+        graphics.deleteBuffer(indexBuffer);
+    }
+
+    /**
+     * Returns the amount of particles drawn by draw().
+     *
+     * @return The instance count.
+     */
+    public int getInstanceCount() {
+        return instanceCount;
+    }
+}
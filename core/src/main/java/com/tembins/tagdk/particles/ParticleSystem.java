@@ -0,0 +1,96 @@
+package com.tembins.tagdk.particles;
+
+import com.tembins.tagdk.jobs.JobSystem;
+import com.tembins.tagdk.jobs.RangeJob;
+import com.tembins.tagdk.jobs.ScratchAllocator;
+
+import java.util.ArrayList;
+
+/**
+ * Updates a set of emitters, either on the calling thread or distributed over the workers of a
+ * job system with one emitter per job.
+ */
+public final class ParticleSystem {
+
+    private final ArrayList<ParticleEmitter> emitters = new ArrayList<>();
+    private float deltaTime;
+
+    private final RangeJob updateJob = new RangeJob() {
+        @Override
+        public void execute(final int start, final int end, final ScratchAllocator scratch) {
+            for(int index = start; index < end; index++)
+                emitters.get(index).update(deltaTime);
+        }
+    };
+
+    /**
+     * Adds an emitter.
+     *
+     * @param emitter The emitter to add.
+     */
+    public void addEmitter(final ParticleEmitter emitter) {
+        emitters.add(emitter);
+    }
+
+    /**
+     * Removes an emitter together with its particles.
+     *
+     * @param emitter The emitter to remove.
+     */
+    public void removeEmitter(final ParticleEmitter emitter) {
+        emitters.remove(emitter);
+    }
+
+    /**
+     * Updates all emitters on the calling thread.
+     *
+     * @param deltaTime The time step in seconds.
+     */
+    public void update(final float deltaTime) {
+        for(int index = 0; index < emitters.size(); index++)
+            emitters.get(index).update(deltaTime);
+    }
+
+    /**
+     * Updates all emitters in parallel. Emitters share no data, so no synchronization is needed
+     * besides waiting for all of them.
+     *
+     * @param deltaTime The time step in seconds.
+     * @param jobs The job system to run the update on.
+     */
+    public void update(final float deltaTime, final JobSystem jobs) {
+        this.deltaTime = deltaTime;
+        jobs.parallelFor(0, emitters.size(), 1, updateJob);
+    }
+
+    /**
+     * Returns the amount of emitters.
+     *
+     * @return The emitter count.
+     */
+    public int getEmitterCount() {
+        return emitters.size();
+    }
+
+    /**
+     * Returns an emitter.
+     *
+     * @param index The index of the emitter, in the order of addition.
+     * @return The emitter.
+     */
+    public ParticleEmitter getEmitter(final int index) {
+        return emitters.get(index);
+    }
+
+    /**
+     * Returns the amount of live particles of all emitters.
+     *
+     * @return The particle count.
+     */
+    public int getParticleCount() {
+        int count = 0;
+        for(int index = 0; index < emitters.size(); index++)
+            count += emitters.get(index).getPool().getCount();
+        return count;
+    }
+}
@@ -0,0 +1,145 @@
+package com.tembins.tagdk.profiling;
+
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * Exports the data of FrameProfilers in the Chrome trace event format, which can be opened with
+ * chrome://tracing or Perfetto. Every profiler becomes its own thread track containing its scopes,
+ * its frame counters become counter tracks. GPU timings carry no timestamps of their own, so they
+ * are laid out back to back on a separate track, starting at the beginning of their frame.
+ */
+public final class ChromeTraceWriter {
+
+    private static final int PROCESS_ID = 1;
+
+    private final Writer writer;
+    private boolean firstEvent = true;
+
+    private ChromeTraceWriter(final Writer writer) {
+        this.writer = writer;
+    }
+
+    /**
+     * Writes the data of the given profilers as a single trace. The writer is not closed.
+     *
+     * @param writer The writer to write the JSON to.
+     * @param profilers The profilers to export, each with a unique thread name.
+     * @throws IOException If writing fails.
+     */
+    public static void write(final Writer writer, final FrameProfiler... profilers) throws IOException {
+        final ChromeTraceWriter trace = new ChromeTraceWriter(writer);
+        writer.write("{\"traceEvents\":[");
+
+        for(int profiler = 0; profiler < profilers.length; profiler++)
+            trace.writeProfiler(profilers[profiler], profiler * 2 + 1);
+
+        writer.write("\n],\"displayTimeUnit\":\"ms\"}\n");
+        writer.flush();
+    }
+
+    private void writeProfiler(final FrameProfiler profiler, final int threadID) throws IOException {
+        writeThreadName(threadID, profiler.getThreadName());
+
+        for(int event = 0; event < profiler.getEventCount(); event++) {
+            final long end = profiler.getEventEnd(event);
+            if(end < 0)
+                continue;
+
+            final long start = profiler.getEventStart(event);
+            writeComplete(profiler.getScopeName(profiler.getEventScope(event)), threadID, start, end - start);
+        }
+
+        for(int frame = 0; frame < profiler.getFrameCount(); frame++) {
+            final long start = profiler.getFrameStart(frame);
+            for(final FrameProfiler.Counter counter : FrameProfiler.Counter.values()) {
+                beginEvent();
+                writer.write("{\"name\":\"");
+                writeEscaped(profiler.getThreadName() + " " + counter.name());
+                writer.write("\",\"ph\":\"C\",\"pid\":" + PROCESS_ID + ",\"ts\":");
+                writeMicros(start);
+                writer.write(",\"args\":{\"value\":" + profiler.getFrameCounter(frame, counter) + "}}");
+            }
+        }
+
+        if(profiler.getGpuTimingCount() > 0)
+            writeGpuTimings(profiler, threadID + 1);
+    }
+
+    private void writeGpuTimings(final FrameProfiler profiler, final int threadID) throws IOException {
+        writeThreadName(threadID, profiler.getThreadName() + " GPU");
+
+        long frameNumber = -1;
+        long time = 0;
+        for(int timing = 0; timing < profiler.getGpuTimingCount(); timing++) {
+            final long frame = profiler.getGpuFrame(timing);
+            if(frame != frameNumber) {
+                frameNumber = frame;
+                time = findFrameStart(profiler, frame);
+            }
+
+            if(time < 0)
+                continue;
+
+            final long duration = profiler.getGpuDuration(timing);
+            writeComplete(profiler.getScopeName(profiler.getGpuScope(timing)), threadID, time, duration);
+            time += duration;
+        }
+    }
+
+    private static long findFrameStart(final FrameProfiler profiler, final long frameNumber) {
+        for(int frame = profiler.getFrameCount() - 1; frame >= 0; frame--)
+            if(profiler.getFrameNumber(frame) == frameNumber)
+                return profiler.getFrameStart(frame);
+
+        return -1;
+    }
+
+    private void writeThreadName(final int threadID, final String name) throws IOException {
+        beginEvent();
+        writer.write("{\"name\":\"thread_name\",\"ph\":\"M\",\"pid\":" + PROCESS_ID + ",\"tid\":" + threadID + ",\"args\":{\"name\":\"");
+        writeEscaped(name);
+        writer.write("\"}}");
+    }
+
+    private void writeComplete(final String name, final int threadID, final long start, final long duration) throws IOException {
+        beginEvent();
+        writer.write("{\"name\":\"");
+        writeEscaped(name);
+        writer.write("\",\"ph\":\"X\",\"pid\":" + PROCESS_ID + ",\"tid\":" + threadID + ",\"ts\":");
+        writeMicros(start);
+        writer.write(",\"dur\":");
+        writeMicros(duration);
+        writer.write('}');
+    }
+
+    private void beginEvent() throws IOException {
+        writer.write(firstEvent ? "\n" : ",\n");
+        firstEvent = false;
+    }
+
+    private void writeMicros(final long nanos) throws IOException {
+        // Timestamps are in microseconds, the fraction keeps the nanosecond precision
+        if(nanos < 0)
+            writer.write('-');
+
+        writer.write(Long.toString(Math.abs(nanos / 1000L)));
+        writer.write('.');
+        final String fraction = Long.toString(1000L + Math.abs(nanos % 1000L));
+        writer.write(fraction, 1, 3);
+    }
+
+    private void writeEscaped(final String text) throws IOException {
+        for(int index = 0; index < text.length(); index++) {
+            final char character = text.charAt(index);
+            if(character == '"' || character == '\\') {
+                writer.write('\\');
+                writer.write(character);
+            } else if(character < 0x20) {
+                writer.write(String.format("\\u%04x", (int) character));
+            } else {
+                writer.write(character);
+            }
+        }
+    }
+}
@@ -0,0 +1,405 @@
+package com.tembins.tagdk.profiling;
+
+import com.tembins.tagdk.loop.Clock;
+
+import java.util.Arrays;
+
+/**
+ * Records named, nested CPU scopes and per frame counters of a single thread into preallocated
+ * ring buffers. Scope names are registered once and referenced by ID afterwards, so recording a
+ * scope only stores two timestamps and does not allocate:
+ *
+ * <pre>
+ * private static final int CULLING = profiler.registerScope("Culling");
+ * ...
+ * profiler.begin(CULLING);
+ * cull();
+ * profiler.end();
+ * </pre>
+ *
+ * Every thread to profile needs its own profiler. Once the ring buffers are full, the oldest
+ * scopes and frames are overwritten. The recorded data can be exported with ChromeTraceWriter;
+ * exporting while the owning thread is still recording may produce partially written entries.
+ */
+public final class FrameProfiler {
+
+    /**
+     * The counters accumulated per frame.
+     */
+    public enum Counter {
+        DRAW_CALLS,
+        STATE_CHANGES,
+        UPLOADED_BYTES,
+        LOADED_RESOURCES,
+        OCCLUSION_TESTED,
+        OCCLUSION_CULLED
+    }
+
+    private static final int COUNTER_COUNT = Counter.values().length;
+    private static final int MAX_DEPTH = 64;
+    private static final long OPEN = -1L;
+    private static final int NOT_RECORDED = -1;
+
+    private final String threadName;
+    private final Clock clock;
+    private boolean enabled = true;
+
+    private String[] scopeNames = new String[16];
+    private int scopeCount;
+
+    private final int eventMask;
+    private final long[] eventStarts, eventEnds;
+    private final int[] eventScopes, eventDepths;
+    private long eventCount;
+
+    private final int[] openEvents = new int[MAX_DEPTH];
+    private int depth;
+
+    private final int frameMask;
+    private final long[] frameNumbers, frameStarts, frameEnds;
+    private final long[] frameCounters;
+    private final long[] counters = new long[COUNTER_COUNT];
+    private long frameNumber;
+    private long frameStart = OPEN;
+    private long frameCount;
+
+    private final int gpuMask;
+    private final long[] gpuFrames, gpuDurations;
+    private final int[] gpuScopes;
+    private long gpuCount;
+
+    /**
+     * Initializes the profiler with the following parameters:
+     *
+     * @param threadName The name of the profiled thread, shown in exported traces.
+     * @param eventCapacity The amount of scopes to keep, rounded up to a power of two. Should be
+     *                      larger than the amount of scopes recorded per frame.
+     * @param frameCapacity The amount of frames to keep counters for, rounded up to a power of two.
+     * @param clock The clock to take timestamps from, usually Clock.SYSTEM.
+     */
+    public FrameProfiler(final String threadName, final int eventCapacity, final int frameCapacity, final Clock clock) {
+        this.threadName = threadName;
+        this.clock = clock;
+
+        final int events = powerOfTwo(eventCapacity);
+        eventMask = events - 1;
+        eventStarts = new long[events];
+        eventEnds = new long[events];
+        eventScopes = new int[events];
+        eventDepths = new int[events];
+
+        final int frames = powerOfTwo(frameCapacity);
+        frameMask = frames - 1;
+        frameNumbers = new long[frames];
+        frameStarts = new long[frames];
+        frameEnds = new long[frames];
+        frameCounters = new long[frames * COUNTER_COUNT];
+
+        gpuMask = events - 1;
+        gpuFrames = new long[events];
+        gpuDurations = new long[events];
+        gpuScopes = new int[events];
+    }
+
+    private static int powerOfTwo(final int value) {
+        return Integer.highestOneBit(Math.max(2, value) * 2 - 1);
+    }
+
+    /**
+     * Registers a scope name. Registering the same name twice returns the same ID.
+     *
+     * @param name The name of the scope.
+     * @return The ID to pass to begin(int).
+     */
+    public int registerScope(final String name) {
+        for(int scope = 0; scope < scopeCount; scope++)
+            if(scopeNames[scope].equals(name))
+                return scope;
+
+        if(scopeCount == scopeNames.length)
+            scopeNames = Arrays.copyOf(scopeNames, scopeCount * 2);
+
+        scopeNames[scopeCount] = name;
+        return scopeCount++;
+    }
+
+    /**
+     * Enables or disables recording. While disabled, nothing is recorded and the clock is not
+     * read, but begin and end still track the nesting depth. Scopes may therefore be left open
+     * across a toggle: a scope opened while enabled gets its end time when it is closed, one
+     * opened while disabled is not recorded at all.
+     *
+     * @param enabled Whether to record.
+     */
+    public void setEnabled(final boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    /**
+     * Starts a new frame, assigning it the next frame number.
+     */
+    public void beginFrame() {
+        if(!enabled)
+            return;
+
+        frameNumber++;
+        frameStart = clock.nanoTime();
+    }
+
+    /**
+     * Ends the current frame, storing its duration and counters and resetting the counters.
+     */
+    public void endFrame() {
+        if(!enabled || frameStart == OPEN)
+            return;
+
+        final int slot = (int) (frameCount++ & frameMask);
+        frameNumbers[slot] = frameNumber;
+        frameStarts[slot] = frameStart;
+        frameEnds[slot] = clock.nanoTime();
+        System.arraycopy(counters, 0, frameCounters, slot * COUNTER_COUNT, COUNTER_COUNT);
+        Arrays.fill(counters, 0L);
+        frameStart = OPEN;
+    }
+
+    /**
+     * Opens a scope. Every call has to be matched by a call to end().
+     *
+     * @param scope The ID returned by registerScope.
+     */
+    public void begin(final int scope) {
+        if(depth >= MAX_DEPTH) {
+            // Too deep to record, but the matching end() still has to be balanced
+            depth++;
+            return;
+        }
+
+        if(!enabled) {
+            openEvents[depth++] = NOT_RECORDED;
+            return;
+        }
+
+        final int slot = (int) (eventCount++ & eventMask);
+        eventScopes[slot] = scope;
+        eventDepths[slot] = depth;
+        eventEnds[slot] = OPEN;
+        openEvents[depth++] = slot;
+        eventStarts[slot] = clock.nanoTime();
+    }
+
+    /**
+     * Closes the innermost open scope. Only scopes opened while enabled read the clock.
+     */
+    public void end() {
+        if(depth == 0 || --depth >= MAX_DEPTH)
+            return;
+
+        final int slot = openEvents[depth];
+        if(slot != NOT_RECORDED)
+            eventEnds[slot] = clock.nanoTime();
+    }
+
+    /**
+     * Adds to a counter of the current frame.
+     *
+     * @param counter The counter to add to.
+     * @param amount The amount to add.
+     */
+    public void count(final Counter counter, final long amount) {
+        if(enabled)
+            counters[counter.ordinal()] += amount;
+    }
+
+    /**
+     * Records the GPU duration of a scope, as measured by a GpuTimer.
+     *
+     * @param scope The ID returned by registerScope.
+     * @param frame The number of the frame the scope was recorded in.
+     * @param durationNanos The GPU duration in nanoseconds.
+     */
+    public void recordGpuTime(final int scope, final long frame, final long durationNanos) {
+        final int slot = (int) (gpuCount++ & gpuMask);
+        gpuScopes[slot] = scope;
+        gpuFrames[slot] = frame;
+        gpuDurations[slot] = durationNanos;
+    }
+
+    /**
+     * Returns the number of the current (or last) frame.
+     *
+     * @return The frame number.
+     */
+    public long getFrameNumber() {
+        return frameNumber;
+    }
+
+    /**
+     * Returns the name of the profiled thread.
+     *
+     * @return The thread name.
+     */
+    public String getThreadName() {
+        return threadName;
+    }
+
+    /**
+     * Returns the name of a registered scope.
+     *
+     * @param scope The scope ID.
+     * @return The scope name.
+     */
+    public String getScopeName(final int scope) {
+        return scopeNames[scope];
+    }
+
+    /**
+     * Returns the amount of recorded scopes still held by the ring buffer, including scopes which
+     * are still open. Open scopes have an end time of -1, see getEventEnd(int).
+     *
+     * @return The event count.
+     */
+    public int getEventCount() {
+        return (int) Math.min(eventCount, eventMask + 1L);
+    }
+
+    private int eventSlot(final int index) {
+        return (int) ((eventCount - getEventCount() + index) & eventMask);
+    }
+
+    /**
+     * Returns the scope ID of a recorded event, with 0 being the oldest event still held.
+     *
+     * @param index The event index.
+     * @return The scope ID.
+     */
+    public int getEventScope(final int index) {
+        return eventScopes[eventSlot(index)];
+    }
+
+    /**
+     * Returns the nesting depth of a recorded event, 0 for outermost scopes.
+     *
+     * @param index The event index.
+     * @return The depth.
+     */
+    public int getEventDepth(final int index) {
+        return eventDepths[eventSlot(index)];
+    }
+
+    /**
+     * Returns the start time of a recorded event.
+     *
+     * @param index The event index.
+     * @return The start time in nanoseconds.
+     */
+    public long getEventStart(final int index) {
+        return eventStarts[eventSlot(index)];
+    }
+
+    /**
+     * Returns the end time of a recorded event.
+     *
+     * @param index The event index.
+     * @return The end time in nanoseconds, or -1 if the scope is still open.
+     */
+    public long getEventEnd(final int index) {
+        return eventEnds[eventSlot(index)];
+    }
+
+    /**
+     * Returns the amount of finished frames still held by the ring buffer.
+     *
+     * @return The frame count.
+     */
+    public int getFrameCount() {
+        return (int) Math.min(frameCount, frameMask + 1L);
+    }
+
+    private int frameSlot(final int index) {
+        return (int) ((frameCount - getFrameCount() + index) & frameMask);
+    }
+
+    /**
+     * Returns the number of a recorded frame, with 0 being the oldest frame still held.
+     *
+     * @param index The frame index.
+     * @return The frame number.
+     */
+    public long getFrameNumber(final int index) {
+        return frameNumbers[frameSlot(index)];
+    }
+
+    /**
+     * Returns the start time of a recorded frame.
+     *
+     * @param index The frame index.
+     * @return The start time in nanoseconds.
+     */
+    public long getFrameStart(final int index) {
+        return frameStarts[frameSlot(index)];
+    }
+
+    /**
+     * Returns the end time of a recorded frame.
+     *
+     * @param index The frame index.
+     * @return The end time in nanoseconds.
+     */
+    public long getFrameEnd(final int index) {
+        return frameEnds[frameSlot(index)];
+    }
+
+    /**
+     * Returns the value a counter had at the end of a recorded frame.
+     *
+     * @param index The frame index.
+     * @param counter The counter.
+     * @return The counter value.
+     */
+    public long getFrameCounter(final int index, final Counter counter) {
+        return frameCounters[frameSlot(index) * COUNTER_COUNT + counter.ordinal()];
+    }
+
+    /**
+     * Returns the amount of GPU timings still held by the ring buffer.
+     *
+     * @return The GPU timing count.
+     */
+    public int getGpuTimingCount() {
+        return (int) Math.min(gpuCount, gpuMask + 1L);
+    }
+
+    private int gpuSlot(final int index) {
+        return (int) ((gpuCount - getGpuTimingCount() + index) & gpuMask);
+    }
+
+    /**
+     * Returns the scope ID of a GPU timing, with 0 being the oldest timing still held.
+     *
+     * @param index The timing index.
+     * @return The scope ID.
+     */
+    public int getGpuScope(final int index) {
+        return gpuScopes[gpuSlot(index)];
+    }
+
+    /**
+     * Returns the frame number of a GPU timing.
+     *
+     * @param index The timing index.
+     * @return The frame number.
+     */
+    public long getGpuFrame(final int index) {
+        return gpuFrames[gpuSlot(index)];
+    }
+
+    /**
+     * Returns the GPU duration of a GPU timing.
+     *
+     * @param index The timing index.
+     * @return The duration in nanoseconds.
+     */
+    public long getGpuDuration(final int index) {
+        return gpuDurations[gpuSlot(index)];
+    }
+}
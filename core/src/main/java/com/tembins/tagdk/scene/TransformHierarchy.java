@@ -0,0 +1,408 @@
+package com.tembins.tagdk.scene;
+
+import com.tembins.tagdk.math.Matrix4f;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * A hierarchy of transforms stored in contiguous arrays. Nodes are identified by their index and
+ * can only be appended, which keeps every parent in front of its children. Local and world
+ * matrices are stored as 16 consecutive row-major floats per node, see Matrix4f.store.
+ *
+ * Changing a local transform marks the node dirty. update() then recomputes the world matrices
+ * of dirty nodes and all of their descendants in a single pass, skipping everything that did not
+ * change. Neither updating nor changing transforms allocates.
+ */
+public final class TransformHierarchy {
+
+    public static final int NO_PARENT = -1;
+    private static final int MATRIX_SIZE = 16;
+
+    private int[] parents;
+    private int[] depths;
+    private float[] localMatrices;
+    private float[] worldMatrices;
+    private boolean[] dirty;
+    private boolean[] worldChanged;
+    private int size;
+
+    // Nodes sorted by depth, only needed for the parallel update and rebuilt after structural changes
+    private int[] levelOrder;
+    private int[] levelStarts;
+    private int levelCount;
+    private boolean levelsValid;
+    private ParallelUpdate parallelUpdate;
+
+    /**
+     * Initializes an empty hierarchy. The hierarchy grows if more nodes are added.
+     *
+     * @param initialCapacity The amount of nodes to reserve memory for.
+     */
+    public TransformHierarchy(final int initialCapacity) {
+        final int capacity = Math.max(1, initialCapacity);
+        parents = new int[capacity];
+        depths = new int[capacity];
+        localMatrices = new float[capacity * MATRIX_SIZE];
+        worldMatrices = new float[capacity * MATRIX_SIZE];
+        dirty = new boolean[capacity];
+        worldChanged = new boolean[capacity];
+        levelOrder = new int[capacity];
+        levelStarts = new int[2];
+    }
+
+    /**
+     * Appends a new node with an identity local transform.
+     *
+     * @param parent The index of the parent node, or NO_PARENT for a root node.
+     * @return The index of the new node.
+     */
+    public int addNode(final int parent) {
+        if(parent != NO_PARENT && (parent < 0 || parent >= size))
+            throw new IllegalArgumentException("Invalid parent " + parent);
+
+        if(size == parents.length)
+            grow(size * 2);
+
+        final int node = size++;
+        parents[node] = parent;
+        depths[node] = parent == NO_PARENT ? 0 : depths[parent] + 1;
+
+        final int offset = node * MATRIX_SIZE;
+        Arrays.fill(localMatrices, offset, offset + MATRIX_SIZE, 0.0f);
+        localMatrices[offset] = 1.0f;
+        localMatrices[offset + 5] = 1.0f;
+        localMatrices[offset + 10] = 1.0f;
+        localMatrices[offset + 15] = 1.0f;
+        dirty[node] = true;
+        levelsValid = false;
+
+        return node;
+    }
+
+    private void checkNode(final int node) {
+        if(node < 0 || node >= size)
+            throw new IllegalArgumentException("Invalid node " + node);
+    }
+
+    private void grow(final int capacity) {
+        parents = Arrays.copyOf(parents, capacity);
+        depths = Arrays.copyOf(depths, capacity);
+        localMatrices = Arrays.copyOf(localMatrices, capacity * MATRIX_SIZE);
+        worldMatrices = Arrays.copyOf(worldMatrices, capacity * MATRIX_SIZE);
+        dirty = Arrays.copyOf(dirty, capacity);
+        worldChanged = Arrays.copyOf(worldChanged, capacity);
+        levelOrder = new int[capacity];
+    }
+
+    /**
+     * Removes all nodes, keeping the allocated memory.
+     */
+    public void clear() {
+        size = 0;
+        levelsValid = false;
+    }
+
+    /**
+     * Returns the amount of nodes in this hierarchy.
+     *
+     * @return The node count.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns the parent of the given node.
+     *
+     * @param node The node index.
+     * @return The parent index, or NO_PARENT for root nodes.
+     */
+    public int getParent(final int node) {
+        checkNode(node);
+        return parents[node];
+    }
+
+    /**
+     * Sets the local transform of a node relative to its parent.
+     *
+     * @param node The node index.
+     * @param matrix The new local transform.
+     */
+    public void setLocalTransform(final int node, final Matrix4f matrix) {
+        checkNode(node);
+        matrix.store(localMatrices, node * MATRIX_SIZE);
+        dirty[node] = true;
+    }
+
+    /**
+     * Sets the local transform of a node from a translation, a rotation quaternion and a scale.
+     * The transform applies the scale first, then the rotation, then the translation.
+     *
+     * @param node The node index.
+     * @param translationX The translation along x.
+     * @param translationY The translation along y.
+     * @param translationZ The translation along z.
+     * @param rotationX The x component of the normalized rotation quaternion.
+     * @param rotationY The y component of the normalized rotation quaternion.
+     * @param rotationZ The z component of the normalized rotation quaternion.
+     * @param rotationW The w component of the normalized rotation quaternion.
+     * @param scaleX The scale along x.
+     * @param scaleY The scale along y.
+     * @param scaleZ The scale along z.
+     */
+    public void setLocalTransform(final int node,
+                                  final float translationX, final float translationY, final float translationZ,
+                                  final float rotationX, final float rotationY, final float rotationZ, final float rotationW,
+                                  final float scaleX, final float scaleY, final float scaleZ) {
+        checkNode(node);
+        final float xx = rotationX * rotationX, yy = rotationY * rotationY, zz = rotationZ * rotationZ;
+        final float xy = rotationX * rotationY, xz = rotationX * rotationZ, yz = rotationY * rotationZ;
+        final float wx = rotationW * rotationX, wy = rotationW * rotationY, wz = rotationW * rotationZ;
+
+        final float[] m = localMatrices;
+        final int offset = node * MATRIX_SIZE;
+        m[offset] = (1.0f - 2.0f * (yy + zz)) * scaleX;
+        m[offset + 1] = 2.0f * (xy - wz) * scaleY;
+        m[offset + 2] = 2.0f * (xz + wy) * scaleZ;
+        m[offset + 3] = translationX;
+        m[offset + 4] = 2.0f * (xy + wz) * scaleX;
+        m[offset + 5] = (1.0f - 2.0f * (xx + zz)) * scaleY;
+        m[offset + 6] = 2.0f * (yz - wx) * scaleZ;
+        m[offset + 7] = translationY;
+        m[offset + 8] = 2.0f * (xz - wy) * scaleX;
+        m[offset + 9] = 2.0f * (yz + wx) * scaleY;
+        m[offset + 10] = (1.0f - 2.0f * (xx + yy)) * scaleZ;
+        m[offset + 11] = translationZ;
+        m[offset + 12] = 0.0f;
+        m[offset + 13] = 0.0f;
+        m[offset + 14] = 0.0f;
+        m[offset + 15] = 1.0f;
+        dirty[node] = true;
+    }
+
+    /**
+     * Sets only the translation of the local transform of a node, keeping rotation and scale.
+     *
+     * @param node The node index.
+     * @param x The translation along x.
+     * @param y The translation along y.
+     * @param z The translation along z.
+     */
+    public void setLocalTranslation(final int node, final float x, final float y, final float z) {
+        checkNode(node);
+        final int offset = node * MATRIX_SIZE;
+        localMatrices[offset + 3] = x;
+        localMatrices[offset + 7] = y;
+        localMatrices[offset + 11] = z;
+        dirty[node] = true;
+    }
+
+    /**
+     * Returns the local transform of a node. This allocates a new matrix, use getLocalMatrices()
+     * in hot paths.
+     *
+     * @param node The node index.
+     * @return The local transform.
+     */
+    public Matrix4f getLocalTransform(final int node) {
+        checkNode(node);
+        return Matrix4f.fromArray(localMatrices, node * MATRIX_SIZE);
+    }
+
+    /**
+     * Returns the world transform of a node as computed by the last update. This allocates a new
+     * matrix, use getWorldMatrices() in hot paths.
+     *
+     * @param node The node index.
+     * @return The world transform.
+     */
+    public Matrix4f getWorldTransform(final int node) {
+        checkNode(node);
+        return Matrix4f.fromArray(worldMatrices, node * MATRIX_SIZE);
+    }
+
+    /**
+     * Returns the backing array of all local matrices. The matrix of node n starts at n * 16.
+     * Nodes modified through this array have to be marked with markDirty.
+     *
+     * @return The local matrices.
+     */
+    public float[] getLocalMatrices() {
+        return localMatrices;
+    }
+
+    /**
+     * Returns the backing array of all world matrices. The matrix of node n starts at n * 16.
+     *
+     * @return The world matrices.
+     */
+    public float[] getWorldMatrices() {
+        return worldMatrices;
+    }
+
+    /**
+     * Marks the local transform of a node as changed.
+     *
+     * @param node The node index.
+     */
+    public void markDirty(final int node) {
+        checkNode(node);
+        dirty[node] = true;
+    }
+
+    /**
+     * Returns whether the world transform of a node changed during the last update. This can be
+     * used to only update the culling bounds of moved objects.
+     *
+     * @param node The node index.
+     * @return True if the world transform was recomputed.
+     */
+    public boolean hasWorldChanged(final int node) {
+        checkNode(node);
+        return worldChanged[node];
+    }
+
+    /**
+     * Recomputes the world transforms of all dirty nodes and their descendants on the calling
+     * thread. As parents are always stored in front of their children, a single pass in index
+     * order is enough.
+     */
+    public void update() {
+        final int[] parents = this.parents;
+        final boolean[] dirty = this.dirty;
+        final boolean[] worldChanged = this.worldChanged;
+
+        for(int node = 0; node < size; node++) {
+            final int parent = parents[node];
+            final boolean changed = dirty[node] || (parent != NO_PARENT && worldChanged[parent]);
+
+            if(changed)
+                computeWorld(node, parent);
+
+            worldChanged[node] = changed;
+            dirty[node] = false;
+        }
+    }
+
+    /**
+     * Recomputes the world transforms like update(), but distributes the work over the given
+     * pool. Nodes are processed level by level; all nodes of one depth belong to independent
+     * subtrees and are split into one chunk per worker. The tasks are allocated once per pool
+     * parallelism and reused, so repeated updates do not allocate. Hierarchies with only a few
+     * thousand nodes are usually faster to update with update().
+     *
+     * @param pool The pool to run the update on.
+     */
+    public void update(final ForkJoinPool pool) {
+        if(!levelsValid)
+            rebuildLevels();
+
+        if(parallelUpdate == null || parallelUpdate.chunks.length != pool.getParallelism())
+            parallelUpdate = new ParallelUpdate(pool.getParallelism());
+
+        parallelUpdate.reinitialize();
+        pool.invoke(parallelUpdate);
+    }
+
+    private void computeWorld(final int node, final int parent) {
+        final int offset = node * MATRIX_SIZE;
+
+        if(parent == NO_PARENT)
+            System.arraycopy(localMatrices, offset, worldMatrices, offset, MATRIX_SIZE);
+        else
+            Matrix4f.mul(worldMatrices, parent * MATRIX_SIZE, localMatrices, offset, worldMatrices, offset);
+    }
+
+    /**
+     * Sorts all nodes by depth with a counting sort.
+     */
+    private void rebuildLevels() {
+        levelCount = 0;
+        for(int node = 0; node < size; node++)
+            levelCount = Math.max(levelCount, depths[node] + 1);
+
+        if(levelStarts.length < levelCount + 1)
+            levelStarts = new int[levelCount + 1];
+        Arrays.fill(levelStarts, 0, levelCount + 1, 0);
+
+        for(int node = 0; node < size; node++)
+            levelStarts[depths[node] + 1]++;
+        for(int level = 0; level < levelCount; level++)
+            levelStarts[level + 1] += levelStarts[level];
+
+        // Uses the starts as write cursors, shifting them by one level, then shifts them back
+        for(int node = 0; node < size; node++)
+            levelOrder[levelStarts[depths[node]]++] = node;
+        for(int level = levelCount; level > 0; level--)
+            levelStarts[level] = levelStarts[level - 1];
+        levelStarts[0] = 0;
+
+        levelsValid = true;
+    }
+
+    private void updateRange(final int start, final int end) {
+        final int[] parents = this.parents;
+        final boolean[] dirty = this.dirty;
+        final boolean[] worldChanged = this.worldChanged;
+
+        for(int index = start; index < end; index++) {
+            final int node = levelOrder[index];
+            final int parent = parents[node];
+            final boolean changed = dirty[node] || (parent != NO_PARENT && worldChanged[parent]);
+
+            if(changed)
+                computeWorld(node, parent);
+
+            worldChanged[node] = changed;
+            dirty[node] = false;
+        }
+    }
+
+    private final class ParallelUpdate extends RecursiveAction {
+
+        private final Chunk[] chunks;
+
+        private ParallelUpdate(final int parallelism) {
+            chunks = new Chunk[Math.max(1, parallelism)];
+            for(int index = 0; index < chunks.length; index++)
+                chunks[index] = new Chunk();
+        }
+
+        @Override
+        protected void compute() {
+            for(int level = 0; level < levelCount; level++) {
+                final int start = levelStarts[level];
+                final int end = levelStarts[level + 1];
+                final int chunkSize = (end - start + chunks.length - 1) / chunks.length;
+
+                // Small levels are not worth the synchronization
+                if(chunkSize < 256) {
+                    updateRange(start, end);
+                    continue;
+                }
+
+                for(int index = 0; index < chunks.length; index++) {
+                    final Chunk chunk = chunks[index];
+                    chunk.reinitialize();
+                    chunk.start = Math.min(end, start + index * chunkSize);
+                    chunk.end = Math.min(end, chunk.start + chunkSize);
+                }
+
+                ForkJoinTask.invokeAll(chunks);
+            }
+        }
+    }
+
+    private final class Chunk extends RecursiveAction {
+
+        private int start, end;
+
+        @Override
+        protected void compute() {
+            updateRange(start, end);
+        }
+    }
+}
@@ -0,0 +1,776 @@
+package com.tembins.tagdk.spatial;
+
+import com.tembins.tagdk.graphics.culling.Frustum;
+import com.tembins.tagdk.math.BoundingBox;
+import com.tembins.tagdk.math.Vector3f;
+
+import java.util.Arrays;
+
+/**
+ * A dynamic bounding volume hierarchy over axis aligned boxes, kept balanced with tree rotations
+ * while proxies are inserted, moved and removed. All nodes are stored in flat primitive arrays and
+ * referenced by index, so neither building nor querying the tree allocates once its capacity is
+ * large enough.
+ *
+ * Every proxy is a leaf storing two boxes: the tight box given by the user and a fat box enlarged
+ * by a margin. The tree is built from the fat boxes, so small movements only update the tight box
+ * and leave the tree untouched. Queries test leaves against their tight boxes.
+ */
+public final class DynamicAABBTree {
+
+    public static final int NULL_NODE = -1;
+
+    private final float margin;
+
+    private float[] minX, minY, minZ, maxX, maxY, maxZ;
+    private float[] tightMinX, tightMinY, tightMinZ, tightMaxX, tightMaxY, tightMaxZ;
+    private int[] parent, child1, child2, height, userData;
+
+    private int root = NULL_NODE;
+    private int freeList;
+    private int proxyCount;
+
+    private int[] stack = new int[64];
+    private final float[] planes = new float[Frustum.PLANE_COUNT * 4];
+    private float lastHitDistance;
+
+    /**
+     * Initializes an empty tree.
+     *
+     * @param initialCapacity The amount of nodes to reserve memory for. A tree with n proxies
+     *                        needs 2n - 1 nodes.
+     * @param margin The distance by which the fat box of every proxy exceeds its tight box.
+     */
+    public DynamicAABBTree(final int initialCapacity, final float margin) {
+        this.margin = margin;
+        allocate(Math.max(1, initialCapacity));
+    }
+
+    private void allocate(final int capacity) {
+        final int oldCapacity = parent == null ? 0 : parent.length;
+        minX = grow(minX, capacity);
+        minY = grow(minY, capacity);
+        minZ = grow(minZ, capacity);
+        maxX = grow(maxX, capacity);
+        maxY = grow(maxY, capacity);
+        maxZ = grow(maxZ, capacity);
+        tightMinX = grow(tightMinX, capacity);
+        tightMinY = grow(tightMinY, capacity);
+        tightMinZ = grow(tightMinZ, capacity);
+        tightMaxX = grow(tightMaxX, capacity);
+        tightMaxY = grow(tightMaxY, capacity);
+        tightMaxZ = grow(tightMaxZ, capacity);
+        parent = grow(parent, capacity);
+        child1 = grow(child1, capacity);
+        child2 = grow(child2, capacity);
+        height = grow(height, capacity);
+        userData = grow(userData, capacity);
+
+        // The free list is linked through the parent array
+        for(int node = oldCapacity; node < capacity - 1; node++) {
+            parent[node] = node + 1;
+            height[node] = -1;
+        }
+        parent[capacity - 1] = NULL_NODE;
+        height[capacity - 1] = -1;
+        freeList = oldCapacity;
+    }
+
+    private static float[] grow(final float[] array, final int capacity) {
+        return array == null ? new float[capacity] : Arrays.copyOf(array, capacity);
+    }
+
+    private static int[] grow(final int[] array, final int capacity) {
+        return array == null ? new int[capacity] : Arrays.copyOf(array, capacity);
+    }
+
+    private int allocateNode() {
+        if(freeList == NULL_NODE)
+            allocate(parent.length * 2);
+
+        final int node = freeList;
+        freeList = parent[node];
+        parent[node] = NULL_NODE;
+        child1[node] = NULL_NODE;
+        child2[node] = NULL_NODE;
+        height[node] = 0;
+        userData[node] = 0;
+        return node;
+    }
+
+    private void freeNode(final int node) {
+        parent[node] = freeList;
+        height[node] = -1;
+        freeList = node;
+    }
+
+    /**
+     * Inserts a new proxy with the given bounds.
+     *
+     * @param minX The smallest x coordinate of the bounds.
+     * @param minY The smallest y coordinate of the bounds.
+     * @param minZ The smallest z coordinate of the bounds.
+     * @param maxX The largest x coordinate of the bounds.
+     * @param maxY The largest y coordinate of the bounds.
+     * @param maxZ The largest z coordinate of the bounds.
+     * @param userData An arbitrary value identifying the object, e.g. an index into a CullingBatch.
+     * @return The ID of the proxy, needed to move or remove it.
+     */
+    public int createProxy(final float minX, final float minY, final float minZ,
+                           final float maxX, final float maxY, final float maxZ, final int userData) {
+        final int proxy = allocateNode();
+        this.userData[proxy] = userData;
+        setTightBox(proxy, minX, minY, minZ, maxX, maxY, maxZ);
+        setFatBox(proxy);
+        insertLeaf(proxy);
+        proxyCount++;
+        return proxy;
+    }
+
+    /**
+     * Inserts a new proxy with the given bounds.
+     *
+     * @param boundingBox The bounds of the proxy.
+     * @param userData An arbitrary value identifying the object.
+     * @return The ID of the proxy, needed to move or remove it.
+     */
+    public int createProxy(final BoundingBox boundingBox, final int userData) {
+        return createProxy(boundingBox.min.x, boundingBox.min.y, boundingBox.min.z,
+                boundingBox.max.x, boundingBox.max.y, boundingBox.max.z, userData);
+    }
+
+    /**
+     * Removes the given proxy from the tree.
+     *
+     * @param proxy The ID returned by createProxy.
+     */
+    public void destroyProxy(final int proxy) {
+        checkProxy(proxy);
+        removeLeaf(proxy);
+        freeNode(proxy);
+        proxyCount--;
+    }
+
+    /**
+     * Updates the bounds of a proxy. If the new bounds still fit into the fat box of the proxy,
+     * only the tight box is updated. Otherwise the proxy is removed and reinserted with a new fat
+     * box.
+     *
+     * @param proxy The ID returned by createProxy.
+     * @param minX The smallest x coordinate of the bounds.
+     * @param minY The smallest y coordinate of the bounds.
+     * @param minZ The smallest z coordinate of the bounds.
+     * @param maxX The largest x coordinate of the bounds.
+     * @param maxY The largest y coordinate of the bounds.
+     * @param maxZ The largest z coordinate of the bounds.
+     * @return True if the proxy was reinserted, false if the tree structure did not change.
+     */
+    public boolean moveProxy(final int proxy, final float minX, final float minY, final float minZ,
+                             final float maxX, final float maxY, final float maxZ) {
+        checkProxy(proxy);
+        setTightBox(proxy, minX, minY, minZ, maxX, maxY, maxZ);
+
+        if(this.minX[proxy] <= minX && this.minY[proxy] <= minY && this.minZ[proxy] <= minZ
+                && this.maxX[proxy] >= maxX && this.maxY[proxy] >= maxY && this.maxZ[proxy] >= maxZ)
+            return false;
+
+        removeLeaf(proxy);
+        setFatBox(proxy);
+        insertLeaf(proxy);
+        return true;
+    }
+
+    /**
+     * Updates the bounds of a proxy without changing the tree structure. The boxes of all
+     * ancestors are refitted to contain the new bounds. This is cheaper than moveProxy for objects
+     * moving every frame, such as animated characters, but the quality of the tree degrades if
+     * proxies move far from where they were inserted. Such proxies should be moved with moveProxy
+     * from time to time.
+     *
+     * @param proxy The ID returned by createProxy.
+     * @param minX The smallest x coordinate of the bounds.
+     * @param minY The smallest y coordinate of the bounds.
+     * @param minZ The smallest z coordinate of the bounds.
+     * @param maxX The largest x coordinate of the bounds.
+     * @param maxY The largest y coordinate of the bounds.
+     * @param maxZ The largest z coordinate of the bounds.
+     */
+    public void refitProxy(final int proxy, final float minX, final float minY, final float minZ,
+                           final float maxX, final float maxY, final float maxZ) {
+        checkProxy(proxy);
+        setTightBox(proxy, minX, minY, minZ, maxX, maxY, maxZ);
+        setFatBox(proxy);
+
+        int node = parent[proxy];
+        while(node != NULL_NODE) {
+            combine(node, child1[node], child2[node]);
+            node = parent[node];
+        }
+    }
+
+    /**
+     * Returns the user data of the given proxy.
+     *
+     * @param proxy The ID returned by createProxy.
+     * @return The user data passed to createProxy.
+     */
+    public int getUserData(final int proxy) {
+        checkProxy(proxy);
+        return userData[proxy];
+    }
+
+    /**
+     * Returns the amount of proxies in the tree.
+     *
+     * @return The proxy count.
+     */
+    public int getProxyCount() {
+        return proxyCount;
+    }
+
+    /**
+     * Returns the height of the tree, which is 0 for a single proxy.
+     *
+     * @return The tree height, or -1 if the tree is empty.
+     */
+    public int getHeight() {
+        return root == NULL_NODE ? -1 : height[root];
+    }
+
+    private void checkProxy(final int proxy) {
+        if(proxy < 0 || proxy >= parent.length || height[proxy] != 0)
+            throw new IllegalArgumentException("Invalid proxy " + proxy);
+    }
+
+    private void setTightBox(final int node, final float minX, final float minY, final float minZ,
+                             final float maxX, final float maxY, final float maxZ) {
+        tightMinX[node] = minX;
+        tightMinY[node] = minY;
+        tightMinZ[node] = minZ;
+        tightMaxX[node] = maxX;
+        tightMaxY[node] = maxY;
+        tightMaxZ[node] = maxZ;
+    }
+
+    private void setFatBox(final int node) {
+        minX[node] = tightMinX[node] - margin;
+        minY[node] = tightMinY[node] - margin;
+        minZ[node] = tightMinZ[node] - margin;
+        maxX[node] = tightMaxX[node] + margin;
+        maxY[node] = tightMaxY[node] + margin;
+        maxZ[node] = tightMaxZ[node] + margin;
+    }
+
+    private void combine(final int node, final int a, final int b) {
+        minX[node] = Math.min(minX[a], minX[b]);
+        minY[node] = Math.min(minY[a], minY[b]);
+        minZ[node] = Math.min(minZ[a], minZ[b]);
+        maxX[node] = Math.max(maxX[a], maxX[b]);
+        maxY[node] = Math.max(maxY[a], maxY[b]);
+        maxZ[node] = Math.max(maxZ[a], maxZ[b]);
+    }
+
+    private float area(final int node) {
+        return halfSurfaceArea(maxX[node] - minX[node], maxY[node] - minY[node], maxZ[node] - minZ[node]);
+    }
+
+    private float combinedArea(final int a, final int b) {
+        return halfSurfaceArea(
+                Math.max(maxX[a], maxX[b]) - Math.min(minX[a], minX[b]),
+                Math.max(maxY[a], maxY[b]) - Math.min(minY[a], minY[b]),
+                Math.max(maxZ[a], maxZ[b]) - Math.min(minZ[a], minZ[b]));
+    }
+
+    private static float halfSurfaceArea(final float sizeX, final float sizeY, final float sizeZ) {
+        return sizeX * sizeY + sizeY * sizeZ + sizeZ * sizeX;
+    }
+
+    /**
+     * Inserts a leaf using the surface area heuristic to find the cheapest sibling, then walks
+     * back up, refitting and rebalancing every ancestor.
+     */
+    private void insertLeaf(final int leaf) {
+        if(root == NULL_NODE) {
+            root = leaf;
+            parent[root] = NULL_NODE;
+            return;
+        }
+
+        int index = root;
+        while(child1[index] != NULL_NODE) {
+            final int left = child1[index];
+            final int right = child2[index];
+
+            final float area = area(index);
+            final float combinedArea = combinedArea(index, leaf);
+
+            // Cost of creating a new parent for this node and the new leaf
+            final float cost = 2.0f * combinedArea;
+            // Minimum cost of pushing the leaf further down the tree
+            final float inheritanceCost = 2.0f * (combinedArea - area);
+
+            final float costLeft = descendCost(left, leaf) + inheritanceCost;
+            final float costRight = descendCost(right, leaf) + inheritanceCost;
+
+            if(cost < costLeft && cost < costRight)
+                break;
+
+            index = costLeft < costRight ? left : right;
+        }
+
+        final int sibling = index;
+        final int oldParent = parent[sibling];
+        final int newParent = allocateNode();
+        parent[newParent] = oldParent;
+        combine(newParent, leaf, sibling);
+        height[newParent] = height[sibling] + 1;
+
+        if(oldParent != NULL_NODE) {
+            if(child1[oldParent] == sibling)
+                child1[oldParent] = newParent;
+            else
+                child2[oldParent] = newParent;
+        } else {
+            root = newParent;
+        }
+
+        child1[newParent] = sibling;
+        child2[newParent] = leaf;
+        parent[sibling] = newParent;
+        parent[leaf] = newParent;
+
+        refitAncestors(parent[leaf]);
+    }
+
+    private float descendCost(final int child, final int leaf) {
+        if(child1[child] == NULL_NODE)
+            return combinedArea(child, leaf);
+
+        return combinedArea(child, leaf) - area(child);
+    }
+
+    private void removeLeaf(final int leaf) {
+        if(leaf == root) {
+            root = NULL_NODE;
+            return;
+        }
+
+        final int leafParent = parent[leaf];
+        final int grandParent = parent[leafParent];
+        final int sibling = child1[leafParent] == leaf ? child2[leafParent] : child1[leafParent];
+
+        if(grandParent != NULL_NODE) {
+            if(child1[grandParent] == leafParent)
+                child1[grandParent] = sibling;
+            else
+                child2[grandParent] = sibling;
+
+            parent[sibling] = grandParent;
+            freeNode(leafParent);
+            refitAncestors(grandParent);
+        } else {
+            root = sibling;
+            parent[sibling] = NULL_NODE;
+            freeNode(leafParent);
+        }
+    }
+
+    private void refitAncestors(int index) {
+        while(index != NULL_NODE) {
+            index = balance(index);
+
+            final int left = child1[index];
+            final int right = child2[index];
+            height[index] = 1 + Math.max(height[left], height[right]);
+            combine(index, left, right);
+
+            index = parent[index];
+        }
+    }
+
+    /**
+     * Performs a left or right rotation if the subtree rooted at a is imbalanced.
+     *
+     * @return The new root of the subtree.
+     */
+    private int balance(final int a) {
+        if(child1[a] == NULL_NODE || height[a] < 2)
+            return a;
+
+        final int b = child1[a];
+        final int c = child2[a];
+        final int heightDifference = height[c] - height[b];
+
+        if(heightDifference > 1)
+            return rotate(a, c, b);
+        if(heightDifference < -1)
+            return rotate(a, b, c);
+
+        return a;
+    }
+
+    /**
+     * Rotates the higher child up, replacing a.
+     *
+     * @param a The imbalanced node.
+     * @param up The higher child of a, which becomes the new subtree root.
+     * @param other The other child of a.
+     * @return The new subtree root.
+     */
+    private int rotate(final int a, final int up, final int other) {
+        final int f = child1[up];
+        final int g = child2[up];
+
+        child1[up] = a;
+        parent[up] = parent[a];
+        parent[a] = up;
+
+        final int upParent = parent[up];
+        if(upParent != NULL_NODE) {
+            if(child1[upParent] == a)
+                child1[upParent] = up;
+            else
+                child2[upParent] = up;
+        } else {
+            root = up;
+        }
+
+        // Keep the higher grandchild in up, move the other one down into a
+        final int keep = height[f] > height[g] ? f : g;
+        final int move = keep == f ? g : f;
+
+        child2[up] = keep;
+        if(child1[a] == up)
+            child1[a] = move;
+        else
+            child2[a] = move;
+        parent[move] = a;
+
+        combine(a, other, move);
+        combine(up, a, keep);
+        height[a] = 1 + Math.max(height[other], height[move]);
+        height[up] = 1 + Math.max(height[a], height[keep]);
+
+        return up;
+    }
+
+    private int[] ensureStack(final int size) {
+        if(size >= stack.length)
+            stack = Arrays.copyOf(stack, stack.length * 2);
+
+        return stack;
+    }
+
+    /**
+     * Collects the user data of all proxies whose bounds overlap the given box.
+     *
+     * @param minX The smallest x coordinate of the box.
+     * @param minY The smallest y coordinate of the box.
+     * @param minZ The smallest z coordinate of the box.
+     * @param maxX The largest x coordinate of the box.
+     * @param maxY The largest y coordinate of the box.
+     * @param maxZ The largest z coordinate of the box.
+     * @param results The array receiving the user data. Results exceeding its length are dropped.
+     * @return The amount of results written.
+     */
+    public int queryBox(final float minX, final float minY, final float minZ,
+                        final float maxX, final float maxY, final float maxZ, final int[] results) {
+        if(root == NULL_NODE)
+            return 0;
+
+        int resultCount = 0;
+        int stackSize = 0;
+        int[] stack = this.stack;
+        stack[stackSize++] = root;
+
+        while(stackSize > 0 && resultCount < results.length) {
+            final int node = stack[--stackSize];
+
+            if(this.maxX[node] < minX || this.minX[node] > maxX || this.maxY[node] < minY
+                    || this.minY[node] > maxY || this.maxZ[node] < minZ || this.minZ[node] > maxZ)
+                continue;
+
+            if(child1[node] == NULL_NODE) {
+                if(tightMaxX[node] >= minX && tightMinX[node] <= maxX && tightMaxY[node] >= minY
+                        && tightMinY[node] <= maxY && tightMaxZ[node] >= minZ && tightMinZ[node] <= maxZ)
+                    results[resultCount++] = userData[node];
+            } else {
+                stack = ensureStack(stackSize + 1);
+                stack[stackSize++] = child1[node];
+                stack[stackSize++] = child2[node];
+            }
+        }
+
+        return resultCount;
+    }
+
+    /**
+     * Collects the user data of all proxies at least partially inside of the given frustum. Nodes
+     * fully inside of the frustum are not tested any further, all proxies below them are accepted.
+     *
+     * @param frustum The frustum to test against.
+     * @param results The array receiving the user data. Results exceeding its length are dropped.
+     * @return The amount of results written.
+     */
+    public int queryFrustum(final Frustum frustum, final int[] results) {
+        if(root == NULL_NODE)
+            return 0;
+
+        for(int plane = 0; plane < Frustum.PLANE_COUNT; plane++)
+            for(int component = 0; component < 4; component++)
+                planes[plane * 4 + component] = frustum.getPlane(plane, component);
+
+        int resultCount = 0;
+        int stackSize = 0;
+        int[] stack = this.stack;
+        stack[stackSize++] = root;
+
+        while(stackSize > 0 && resultCount < results.length) {
+            final int node = stack[--stackSize];
+            final boolean leaf = child1[node] == NULL_NODE;
+            final int containment = leaf ?
+                    classify(tightMinX[node], tightMinY[node], tightMinZ[node], tightMaxX[node], tightMaxY[node], tightMaxZ[node]) :
+                    classify(minX[node], minY[node], minZ[node], maxX[node], maxY[node], maxZ[node]);
+
+            if(containment == OUTSIDE)
+                continue;
+
+            if(leaf) {
+                results[resultCount++] = userData[node];
+            } else if(containment == INSIDE) {
+                resultCount = collectLeaves(node, stackSize, results, resultCount);
+                stack = this.stack;
+            } else {
+                stack = ensureStack(stackSize + 1);
+                stack[stackSize++] = child1[node];
+                stack[stackSize++] = child2[node];
+            }
+        }
+
+        return resultCount;
+    }
+
+    private static final int OUTSIDE = 0, INTERSECTING = 1, INSIDE = 2;
+
+    private int classify(final float minX, final float minY, final float minZ,
+                         final float maxX, final float maxY, final float maxZ) {
+        int result = INSIDE;
+
+        for(int offset = 0; offset < planes.length; offset += 4) {
+            final float a = planes[offset], b = planes[offset + 1], c = planes[offset + 2], d = planes[offset + 3];
+
+            // Test the corner furthest along the normal first, then the one furthest against it
+            final float positive = a * (a >= 0.0f ? maxX : minX) + b * (b >= 0.0f ? maxY : minY) + c * (c >= 0.0f ? maxZ : minZ) + d;
+            if(positive < 0.0f)
+                return OUTSIDE;
+
+            final float negative = a * (a >= 0.0f ? minX : maxX) + b * (b >= 0.0f ? minY : maxY) + c * (c >= 0.0f ? minZ : maxZ) + d;
+            if(negative < 0.0f)
+                result = INTERSECTING;
+        }
+
+        return result;
+    }
+
+    /**
+     * Appends all leaves below the given node to the results, using the part of the stack above
+     * stackBase as scratch memory.
+     */
+    private int collectLeaves(final int node, final int stackBase, final int[] results, int resultCount) {
+        int stackSize = stackBase;
+        int[] stack = ensureStack(stackSize);
+        stack[stackSize++] = node;
+
+        while(stackSize > stackBase && resultCount < results.length) {
+            final int current = stack[--stackSize];
+
+            if(child1[current] == NULL_NODE) {
+                results[resultCount++] = userData[current];
+            } else {
+                stack = ensureStack(stackSize + 1);
+                stack[stackSize++] = child1[current];
+                stack[stackSize++] = child2[current];
+            }
+        }
+
+        return resultCount;
+    }
+
+    /**
+     * Finds the closest proxy hit by the given ray. The distance to the hit can be queried with
+     * getLastHitDistance() afterwards.
+     *
+     * @param originX The x coordinate of the ray origin.
+     * @param originY The y coordinate of the ray origin.
+     * @param originZ The z coordinate of the ray origin.
+     * @param directionX The x component of the normalized ray direction.
+     * @param directionY The y component of the normalized ray direction.
+     * @param directionZ The z component of the normalized ray direction.
+     * @param maxDistance The length of the ray.
+     * @return The user data of the closest hit proxy, or NULL_NODE if nothing was hit.
+     */
+    public int rayCast(final float originX, final float originY, final float originZ,
+                       final float directionX, final float directionY, final float directionZ,
+                       final float maxDistance) {
+        lastHitDistance = Float.POSITIVE_INFINITY;
+        if(root == NULL_NODE)
+            return NULL_NODE;
+
+        // Division by zero yields infinity, which the slab test handles correctly
+        final float inverseX = 1.0f / directionX;
+        final float inverseY = 1.0f / directionY;
+        final float inverseZ = 1.0f / directionZ;
+
+        float closest = maxDistance;
+        int hit = NULL_NODE;
+        int stackSize = 0;
+        int[] stack = this.stack;
+        stack[stackSize++] = root;
+
+        while(stackSize > 0) {
+            final int node = stack[--stackSize];
+
+            if(child1[node] == NULL_NODE) {
+                final float distance = slab(originX, originY, originZ, inverseX, inverseY, inverseZ,
+                        tightMinX[node], tightMinY[node], tightMinZ[node], tightMaxX[node], tightMaxY[node], tightMaxZ[node]);
+                // A miss is infinitely far away, which would still pass for rays of infinite length
+                if(distance != Float.POSITIVE_INFINITY && distance <= closest) {
+                    closest = distance;
+                    hit = node;
+                }
+            } else {
+                final float distance = slab(originX, originY, originZ, inverseX, inverseY, inverseZ,
+                        minX[node], minY[node], minZ[node], maxX[node], maxY[node], maxZ[node]);
+                if(distance != Float.POSITIVE_INFINITY && distance <= closest) {
+                    stack = ensureStack(stackSize + 1);
+                    stack[stackSize++] = child1[node];
+                    stack[stackSize++] = child2[node];
+                }
+            }
+        }
+
+        if(hit == NULL_NODE)
+            return NULL_NODE;
+
+        lastHitDistance = closest;
+        return userData[hit];
+    }
+
+    /**
+     * Finds the closest proxy hit by the given ray.
+     *
+     * @param origin The ray origin.
+     * @param direction The normalized ray direction.
+     * @param maxDistance The length of the ray.
+     * @return The user data of the closest hit proxy, or NULL_NODE if nothing was hit.
+     */
+    public int rayCast(final Vector3f origin, final Vector3f direction, final float maxDistance) {
+        return rayCast(origin.x, origin.y, origin.z, direction.x, direction.y, direction.z, maxDistance);
+    }
+
+    /**
+     * Returns the distance from the ray origin to the hit of the last successful rayCast call, or
+     * the distance from the point to the closest proxy of the last successful findNearest call.
+     *
+     * @return The distance, or positive infinity if the last query found nothing.
+     */
+    public float getLastHitDistance() {
+        return lastHitDistance;
+    }
+
+    /**
+     * Returns the distance along the ray to the entry point of the box, or positive infinity if
+     * the ray misses it. Rays starting inside of a box hit it at distance 0.
+     */
+    private static float slab(final float originX, final float originY, final float originZ,
+                              final float inverseX, final float inverseY, final float inverseZ,
+                              final float minX, final float minY, final float minZ,
+                              final float maxX, final float maxY, final float maxZ) {
+        final float x1 = (minX - originX) * inverseX, x2 = (maxX - originX) * inverseX;
+        final float y1 = (minY - originY) * inverseY, y2 = (maxY - originY) * inverseY;
+        final float z1 = (minZ - originZ) * inverseZ, z2 = (maxZ - originZ) * inverseZ;
+
+        final float near = Math.max(Math.max(Math.min(x1, x2), Math.min(y1, y2)), Math.max(Math.min(z1, z2), 0.0f));
+        final float far = Math.min(Math.min(Math.max(x1, x2), Math.max(y1, y2)), Math.max(z1, z2));
+
+        // NaN (origin on a slab boundary with a zero direction) fails this check, counting as miss
+        return near <= far ? near : Float.POSITIVE_INFINITY;
+    }
+
+    /**
+     * Finds the proxy closest to the given point, measured as the distance from the point to the
+     * bounds of the proxy. Proxies containing the point have a distance of 0.
+     *
+     * @param x The x coordinate of the point.
+     * @param y The y coordinate of the point.
+     * @param z The z coordinate of the point.
+     * @param maxDistance Proxies further away than this are ignored.
+     * @return The user data of the closest proxy, or NULL_NODE if none is within maxDistance.
+     */
+    public int findNearest(final float x, final float y, final float z, final float maxDistance) {
+        lastHitDistance = Float.POSITIVE_INFINITY;
+        if(root == NULL_NODE)
+            return NULL_NODE;
+
+        float closestSquared = maxDistance * maxDistance;
+        int closest = NULL_NODE;
+        int stackSize = 0;
+        int[] stack = this.stack;
+        stack[stackSize++] = root;
+
+        while(stackSize > 0) {
+            final int node = stack[--stackSize];
+
+            if(child1[node] == NULL_NODE) {
+                final float distanceSquared = distanceSquared(x, y, z,
+                        tightMinX[node], tightMinY[node], tightMinZ[node], tightMaxX[node], tightMaxY[node], tightMaxZ[node]);
+                if(distanceSquared <= closestSquared) {
+                    closestSquared = distanceSquared;
+                    closest = node;
+                }
+                continue;
+            }
+
+            final int left = child1[node];
+            final int right = child2[node];
+            final float leftDistance = distanceSquared(x, y, z, minX[left], minY[left], minZ[left], maxX[left], maxY[left], maxZ[left]);
+            final float rightDistance = distanceSquared(x, y, z, minX[right], minY[right], minZ[right], maxX[right], maxY[right], maxZ[right]);
+
+            // Push the closer child last, so it is visited first and tightens the bound early
+            stack = ensureStack(stackSize + 1);
+            if(leftDistance < rightDistance) {
+                if(rightDistance <= closestSquared) stack[stackSize++] = right;
+                if(leftDistance <= closestSquared) stack[stackSize++] = left;
+            } else {
+                if(leftDistance <= closestSquared) stack[stackSize++] = left;
+                if(rightDistance <= closestSquared) stack[stackSize++] = right;
+            }
+        }
+
+        if(closest == NULL_NODE)
+            return NULL_NODE;
+
+        lastHitDistance = (float) Math.sqrt(closestSquared);
+        return userData[closest];
+    }
+
+    /**
+     * Finds the proxy closest to the given point.
+     *
+     * @param point The point to search around.
+     * @param maxDistance Proxies further away than this are ignored.
+     * @return The user data of the closest proxy, or NULL_NODE if none is within maxDistance.
+     */
+    public int findNearest(final Vector3f point, final float maxDistance) {
+        return findNearest(point.x, point.y, point.z, maxDistance);
+    }
+
+    private static float distanceSquared(final float x, final float y, final float z,
+                                         final float minX, final float minY, final float minZ,
+                                         final float maxX, final float maxY, final float maxZ) {
+        final float deltaX = Math.max(Math.max(minX - x, 0.0f), x - maxX);
+        final float deltaY = Math.max(Math.max(minY - y, 0.0f), y - maxY);
+        final float deltaZ = Math.max(Math.max(minZ - z, 0.0f), z - maxZ);
+        return deltaX * deltaX + deltaY * deltaY + deltaZ * deltaZ;
+    }
+}
@@ -0,0 +1,79 @@
+package com.tembins.tagdk.spatial;
+
+import java.util.Arrays;
+
+/**
+ * A reusable list of candidate pairs produced by a broadphase. Every pair is stored as a single
+ * long with the smaller body first, so the buffer only allocates when it has to grow.
+ */
+public final class PairBuffer {
+
+    private long[] pairs;
+    private int size;
+
+    /**
+     * Initializes an empty buffer.
+     *
+     * @param initialCapacity The amount of pairs to reserve memory for.
+     */
+    public PairBuffer(final int initialCapacity) {
+        pairs = new long[Math.max(1, initialCapacity)];
+    }
+
+    /**
+     * Adds a pair. The order of the bodies does not matter.
+     *
+     * @param first The first body.
+     * @param second The second body.
+     */
+    public void add(final int first, final int second) {
+        if(size == pairs.length)
+            pairs = Arrays.copyOf(pairs, size * 2);
+
+        pairs[size++] = first < second ? (long) first << 32 | second : (long) second << 32 | first;
+    }
+
+    /**
+     * Removes all pairs, keeping the allocated memory.
+     */
+    public void clear() {
+        size = 0;
+    }
+
+    /**
+     * Sorts the pairs by their first and then their second body, e.g. to compare the results of
+     * different broadphases.
+     */
+    public void sort() {
+        Arrays.sort(pairs, 0, size);
+    }
+
+    /**
+     * Returns the amount of pairs.
+     *
+     * @return The pair count.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns the smaller body of a pair.
+     *
+     * @param pair The pair index.
+     * @return The first body.
+     */
+    public int getFirst(final int pair) {
+        return (int) (pairs[pair] >>> 32);
+    }
+
+    /**
+     * Returns the larger body of a pair.
+     *
+     * @param pair The pair index.
+     * @return The second body.
+     */
+    public int getSecond(final int pair) {
+        return (int) pairs[pair];
+    }
+}
@@ -0,0 +1,233 @@
+package com.tembins.tagdk.spatial;
+
+import java.util.Arrays;
+
+/**
+ * A broadphase for 2D games which finds overlapping boxes with a uniform grid. Every update, each
+ * body is entered into all cells its box covers, and the cell entries are grouped by a hash of
+ * the cell with a counting sort, so no per-cell lists are allocated. Bodies sharing a cell are
+ * tested against each other; a pair covering several common cells is only reported by the cell
+ * containing the minimum corner of the intersection of both boxes, so no duplicate removal is
+ * needed.
+ *
+ * The cell size should be about the size of a typical body. Boxes that only touch count as
+ * overlapping.
+ */
+public final class SpatialHash2D {
+
+    private static final int NO_BODY = -1;
+    private static final int MAX_CELL = Short.MAX_VALUE, MIN_CELL = Short.MIN_VALUE;
+
+    private final float inverseCellSize;
+
+    private float[] minX, minY, maxX, maxY;
+    private boolean[] alive;
+    private int[] nextFree;
+    private int capacity, freeList = NO_BODY, bodyCount, highestBody;
+
+    private int[] entryBodies = new int[0], entryCells = new int[0], entryBuckets = new int[0];
+    private int[] sortedBodies = new int[0], sortedCells = new int[0];
+    private int[] bucketStarts = new int[0];
+
+    /**
+     * Initializes an empty broadphase.
+     *
+     * @param cellSize The edge length of the square grid cells.
+     * @param initialCapacity The amount of bodies to reserve memory for.
+     */
+    public SpatialHash2D(final float cellSize, final int initialCapacity) {
+        if(cellSize <= 0.0f)
+            throw new IllegalArgumentException("The cell size must be positive");
+
+        inverseCellSize = 1.0f / cellSize;
+        allocate(Math.max(1, initialCapacity));
+    }
+
+    private void allocate(final int newCapacity) {
+        minX = minX == null ? new float[newCapacity] : Arrays.copyOf(minX, newCapacity);
+        minY = minY == null ? new float[newCapacity] : Arrays.copyOf(minY, newCapacity);
+        maxX = maxX == null ? new float[newCapacity] : Arrays.copyOf(maxX, newCapacity);
+        maxY = maxY == null ? new float[newCapacity] : Arrays.copyOf(maxY, newCapacity);
+        alive = alive == null ? new boolean[newCapacity] : Arrays.copyOf(alive, newCapacity);
+        nextFree = nextFree == null ? new int[newCapacity] : Arrays.copyOf(nextFree, newCapacity);
+        capacity = newCapacity;
+    }
+
+    /**
+     * Adds a body.
+     *
+     * @param minX The smallest x coordinate of the box.
+     * @param minY The smallest y coordinate of the box.
+     * @param maxX The largest x coordinate of the box.
+     * @param maxY The largest y coordinate of the box.
+     * @return The ID of the body.
+     */
+    public int add(final float minX, final float minY, final float maxX, final float maxY) {
+        final int body;
+        if(freeList != NO_BODY) {
+            body = freeList;
+            freeList = nextFree[body];
+        } else {
+            if(highestBody == capacity)
+                allocate(capacity * 2);
+            body = highestBody++;
+        }
+
+        alive[body] = true;
+        bodyCount++;
+        set(body, minX, minY, maxX, maxY);
+        return body;
+    }
+
+    /**
+     * Moves a body.
+     *
+     * @param body The ID of the body.
+     * @param minX The smallest x coordinate of the box.
+     * @param minY The smallest y coordinate of the box.
+     * @param maxX The largest x coordinate of the box.
+     * @param maxY The largest y coordinate of the box.
+     */
+    public void update(final int body, final float minX, final float minY, final float maxX, final float maxY) {
+        checkBody(body);
+        set(body, minX, minY, maxX, maxY);
+    }
+
+    private void set(final int body, final float minX, final float minY, final float maxX, final float maxY) {
+        this.minX[body] = minX;
+        this.minY[body] = minY;
+        this.maxX[body] = maxX;
+        this.maxY[body] = maxY;
+    }
+
+    private void checkBody(final int body) {
+        if(body < 0 || body >= highestBody || !alive[body])
+            throw new IllegalArgumentException("Body " + body + " does not exist");
+    }
+
+    /**
+     * Removes a body. Its ID may be reused by later additions.
+     *
+     * @param body The ID of the body.
+     */
+    public void remove(final int body) {
+        checkBody(body);
+        alive[body] = false;
+        nextFree[body] = freeList;
+        freeList = body;
+        bodyCount--;
+    }
+
+    /**
+     * Returns the cell coordinate of a position. Coordinates are clamped to 16 bits, so distant
+     * bodies share the border cells instead of overflowing.
+     */
+    private int cell(final float position) {
+        final float scaled = (float) Math.floor(position * inverseCellSize);
+        return (int) Math.max(MIN_CELL, Math.min(MAX_CELL, scaled));
+    }
+
+    private static int packCell(final int x, final int y) {
+        return x << 16 | (y & 0xFFFF);
+    }
+
+    /**
+     * Rebuilds the grid from the current boxes and writes all pairs of overlapping bodies into the
+     * given buffer.
+     *
+     * @param pairs The buffer to write to, cleared first.
+     * @return The amount of pairs.
+     */
+    public int findPairs(final PairBuffer pairs) {
+        pairs.clear();
+
+        int entryCount = 0;
+        for(int body = 0; body < highestBody; body++)
+            if(alive[body])
+                entryCount += (cell(maxX[body]) - cell(minX[body]) + 1) * (cell(maxY[body]) - cell(minY[body]) + 1);
+        if(entryCount == 0)
+            return 0;
+
+        // Twice as many buckets as entries keeps collisions of different cells rare
+        final int bucketBits = 32 - Integer.numberOfLeadingZeros(Math.max(1, entryCount * 2 - 1));
+        final int bucketCount = 1 << bucketBits;
+        ensureCapacity(entryCount, bucketCount);
+        Arrays.fill(bucketStarts, 0, bucketCount + 1, 0);
+
+        int entry = 0;
+        for(int body = 0; body < highestBody; body++) {
+            if(!alive[body])
+                continue;
+
+            final int cellMaxX = cell(maxX[body]), cellMinY = cell(minY[body]), cellMaxY = cell(maxY[body]);
+            for(int x = cell(minX[body]); x <= cellMaxX; x++) {
+                for(int y = cellMinY; y <= cellMaxY; y++) {
+                    final int packed = packCell(x, y);
+                    final int bucket = bucketBits == 0 ? 0 : (packed * 0x9E3779B1) >>> (32 - bucketBits);
+                    entryBodies[entry] = body;
+                    entryCells[entry] = packed;
+                    entryBuckets[entry] = bucket;
+                    bucketStarts[bucket + 1]++;
+                    entry++;
+                }
+            }
+        }
+
+        for(int bucket = 0; bucket < bucketCount; bucket++)
+            bucketStarts[bucket + 1] += bucketStarts[bucket];
+
+        // Scatters the entries using the starts as write cursors, then shifts the cursors back
+        for(entry = 0; entry < entryCount; entry++) {
+            final int target = bucketStarts[entryBuckets[entry]]++;
+            sortedBodies[target] = entryBodies[entry];
+            sortedCells[target] = entryCells[entry];
+        }
+        for(int bucket = bucketCount; bucket > 0; bucket--)
+            bucketStarts[bucket] = bucketStarts[bucket - 1];
+        bucketStarts[0] = 0;
+
+        for(int bucket = 0; bucket < bucketCount; bucket++) {
+            final int end = bucketStarts[bucket + 1];
+            for(int first = bucketStarts[bucket]; first < end - 1; first++) {
+                final int body = sortedBodies[first], cell = sortedCells[first];
+                for(int second = first + 1; second < end; second++)
+                    if(sortedCells[second] == cell)
+                        testPair(body, sortedBodies[second], cell, pairs);
+            }
+        }
+
+        return pairs.size();
+    }
+
+    private void testPair(final int body, final int other, final int cell, final PairBuffer pairs) {
+        if(minX[body] > maxX[other] || minX[other] > maxX[body] || minY[body] > maxY[other] || minY[other] > maxY[body])
+            return;
+
+        final int ownerX = cell(Math.max(minX[body], minX[other]));
+        final int ownerY = cell(Math.max(minY[body], minY[other]));
+        if(packCell(ownerX, ownerY) == cell)
+            pairs.add(body, other);
+    }
+
+    private void ensureCapacity(final int entryCount, final int bucketCount) {
+        if(entryBodies.length < entryCount) {
+            final int newLength = Math.max(entryCount, entryBodies.length * 2);
+            entryBodies = new int[newLength];
+            entryCells = new int[newLength];
+            entryBuckets = new int[newLength];
+            sortedBodies = new int[newLength];
+            sortedCells = new int[newLength];
+        }
+        if(bucketStarts.length < bucketCount + 1)
+            bucketStarts = new int[bucketCount + 1];
+    }
+
+    /**
+     * Returns the amount of bodies.
+     *
+     * @return The body count.
+     */
+    public int getBodyCount() {
+        return bodyCount;
+    }
+}
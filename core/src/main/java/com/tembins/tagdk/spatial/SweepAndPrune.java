@@ -0,0 +1,299 @@
+package com.tembins.tagdk.spatial;
+
+import java.util.Arrays;
+
+/**
+ * A broadphase finding all pairs of overlapping axis aligned boxes by sweeping along the x axis.
+ * The interval endpoints of all bodies are kept in primitive arrays sorted by x. Bodies usually
+ * move only a little per frame, so the endpoints are re-sorted with an insertion sort, which is
+ * close to linear for nearly sorted data. The sweep keeps the bodies whose x interval contains
+ * the current endpoint in an active list and tests the other axes only against those.
+ *
+ * Bodies can be 2D or 3D; 2D bodies have an empty z range at 0 and therefore always overlap along
+ * z. Boxes that only touch count as overlapping.
+ */
+public final class SweepAndPrune {
+
+    private static final int NO_BODY = -1;
+
+    /**
+     * Above this amount of endpoints added since the last sort, a full sort is cheaper than
+     * inserting all of them into place.
+     */
+    private static final int MAX_INSERTIONS = 32;
+
+    private float[] minX, minY, minZ, maxX, maxY, maxZ;
+    private boolean[] alive;
+    private int[] nextFree;
+    private int capacity, freeList = NO_BODY, bodyCount, highestBody;
+
+    // Endpoints are stored as body * 2 + 1 for maxima, body * 2 for minima
+    private float[] endpointValues;
+    private int[] endpoints;
+    private int endpointCount, addedEndpoints;
+    private long[] sortKeys = new long[0];
+
+    private int[] active, activeIndices;
+    private int activeCount;
+
+    /**
+     * Initializes an empty broadphase.
+     *
+     * @param initialCapacity The amount of bodies to reserve memory for.
+     */
+    public SweepAndPrune(final int initialCapacity) {
+        allocate(Math.max(1, initialCapacity));
+    }
+
+    private void allocate(final int newCapacity) {
+        minX = grow(minX, newCapacity);
+        minY = grow(minY, newCapacity);
+        minZ = grow(minZ, newCapacity);
+        maxX = grow(maxX, newCapacity);
+        maxY = grow(maxY, newCapacity);
+        maxZ = grow(maxZ, newCapacity);
+        alive = alive == null ? new boolean[newCapacity] : Arrays.copyOf(alive, newCapacity);
+        nextFree = grow(nextFree, newCapacity);
+        endpointValues = grow(endpointValues, newCapacity * 2);
+        endpoints = grow(endpoints, newCapacity * 2);
+        active = grow(active, newCapacity);
+        activeIndices = grow(activeIndices, newCapacity);
+        capacity = newCapacity;
+    }
+
+    private static float[] grow(final float[] array, final int capacity) {
+        return array == null ? new float[capacity] : Arrays.copyOf(array, capacity);
+    }
+
+    private static int[] grow(final int[] array, final int capacity) {
+        return array == null ? new int[capacity] : Arrays.copyOf(array, capacity);
+    }
+
+    /**
+     * Adds a 2D body.
+     *
+     * @param minX The smallest x coordinate of the box.
+     * @param minY The smallest y coordinate of the box.
+     * @param maxX The largest x coordinate of the box.
+     * @param maxY The largest y coordinate of the box.
+     * @return The ID of the body.
+     */
+    public int add(final float minX, final float minY, final float maxX, final float maxY) {
+        return add(minX, minY, 0.0f, maxX, maxY, 0.0f);
+    }
+
+    /**
+     * Adds a 3D body. Its endpoints are appended and sorted into place by the next findPairs.
+     *
+     * @param minX The smallest x coordinate of the box.
+     * @param minY The smallest y coordinate of the box.
+     * @param minZ The smallest z coordinate of the box.
+     * @param maxX The largest x coordinate of the box.
+     * @param maxY The largest y coordinate of the box.
+     * @param maxZ The largest z coordinate of the box.
+     * @return The ID of the body.
+     */
+    public int add(final float minX, final float minY, final float minZ,
+                   final float maxX, final float maxY, final float maxZ) {
+        final int body;
+        if(freeList != NO_BODY) {
+            body = freeList;
+            freeList = nextFree[body];
+        } else {
+            if(highestBody == capacity)
+                allocate(capacity * 2);
+            body = highestBody++;
+        }
+
+        alive[body] = true;
+        bodyCount++;
+        set(body, minX, minY, minZ, maxX, maxY, maxZ);
+
+        endpoints[endpointCount++] = body << 1;
+        endpoints[endpointCount++] = body << 1 | 1;
+        addedEndpoints += 2;
+        return body;
+    }
+
+    /**
+     * Moves a 2D body.
+     *
+     * @param body The ID of the body.
+     * @param minX The smallest x coordinate of the box.
+     * @param minY The smallest y coordinate of the box.
+     * @param maxX The largest x coordinate of the box.
+     * @param maxY The largest y coordinate of the box.
+     */
+    public void update(final int body, final float minX, final float minY, final float maxX, final float maxY) {
+        update(body, minX, minY, 0.0f, maxX, maxY, 0.0f);
+    }
+
+    /**
+     * Moves a 3D body. The endpoints are re-sorted by the next findPairs.
+     *
+     * @param body The ID of the body.
+     * @param minX The smallest x coordinate of the box.
+     * @param minY The smallest y coordinate of the box.
+     * @param minZ The smallest z coordinate of the box.
+     * @param maxX The largest x coordinate of the box.
+     * @param maxY The largest y coordinate of the box.
+     * @param maxZ The largest z coordinate of the box.
+     */
+    public void update(final int body, final float minX, final float minY, final float minZ,
+                       final float maxX, final float maxY, final float maxZ) {
+        checkBody(body);
+        set(body, minX, minY, minZ, maxX, maxY, maxZ);
+    }
+
+    private void set(final int body, final float minX, final float minY, final float minZ,
+                     final float maxX, final float maxY, final float maxZ) {
+        this.minX[body] = minX;
+        this.minY[body] = minY;
+        this.minZ[body] = minZ;
+        this.maxX[body] = maxX;
+        this.maxY[body] = maxY;
+        this.maxZ[body] = maxZ;
+    }
+
+    private void checkBody(final int body) {
+        if(body < 0 || body >= highestBody || !alive[body])
+            throw new IllegalArgumentException("Body " + body + " does not exist");
+    }
+
+    /**
+     * Removes a body. Its ID may be reused by later additions.
+     *
+     * @param body The ID of the body.
+     */
+    public void remove(final int body) {
+        checkBody(body);
+        alive[body] = false;
+        nextFree[body] = freeList;
+        freeList = body;
+        bodyCount--;
+
+        // Removing keeps the order of the remaining endpoints, so they stay sorted
+        int count = 0;
+        for(int endpoint = 0; endpoint < endpointCount; endpoint++) {
+            if(endpoints[endpoint] >>> 1 != body) {
+                endpoints[count] = endpoints[endpoint];
+                endpointValues[count] = endpointValues[endpoint];
+                count++;
+            }
+        }
+        endpointCount = count;
+    }
+
+    /**
+     * Sorts the endpoints and writes all pairs of overlapping bodies into the given buffer.
+     *
+     * @param pairs The buffer to write to, cleared first.
+     * @return The amount of pairs.
+     */
+    public int findPairs(final PairBuffer pairs) {
+        pairs.clear();
+        sortEndpoints();
+
+        final int[] endpoints = this.endpoints, active = this.active, activeIndices = this.activeIndices;
+        final float[] minY = this.minY, minZ = this.minZ, maxY = this.maxY, maxZ = this.maxZ;
+        activeCount = 0;
+
+        for(int index = 0; index < endpointCount; index++) {
+            final int endpoint = endpoints[index];
+            final int body = endpoint >>> 1;
+
+            if((endpoint & 1) != 0) {
+                final int slot = activeIndices[body];
+                final int last = active[--activeCount];
+                active[slot] = last;
+                activeIndices[last] = slot;
+                continue;
+            }
+
+            final float bodyMinY = minY[body], bodyMaxY = maxY[body];
+            final float bodyMinZ = minZ[body], bodyMaxZ = maxZ[body];
+            for(int slot = 0; slot < activeCount; slot++) {
+                final int other = active[slot];
+                if(bodyMinY <= maxY[other] && minY[other] <= bodyMaxY
+                        && bodyMinZ <= maxZ[other] && minZ[other] <= bodyMaxZ)
+                    pairs.add(body, other);
+            }
+
+            activeIndices[body] = activeCount;
+            active[activeCount++] = body;
+        }
+
+        return pairs.size();
+    }
+
+    /**
+     * Refreshes the endpoint values from the boxes and restores the order with an insertion sort.
+     * Among equal values minima come first, so touching boxes are reported.
+     */
+    private void sortEndpoints() {
+        final int[] endpoints = this.endpoints;
+        final float[] values = endpointValues;
+        for(int index = 0; index < endpointCount; index++) {
+            final int endpoint = endpoints[index];
+            values[index] = (endpoint & 1) != 0 ? maxX[endpoint >>> 1] : minX[endpoint >>> 1];
+        }
+
+        if(addedEndpoints > MAX_INSERTIONS) {
+            sortEndpointsFully();
+            addedEndpoints = 0;
+            return;
+        }
+        addedEndpoints = 0;
+
+        for(int index = 1; index < endpointCount; index++) {
+            final int endpoint = endpoints[index];
+            final float value = values[index];
+            final int isMax = endpoint & 1;
+
+            int target = index;
+            while(target > 0 && (values[target - 1] > value
+                    || (values[target - 1] == value && (endpoints[target - 1] & 1) > isMax))) {
+                values[target] = values[target - 1];
+                endpoints[target] = endpoints[target - 1];
+                target--;
+            }
+            values[target] = value;
+            endpoints[target] = endpoint;
+        }
+    }
+
+    /**
+     * Sorts all endpoints at once by packing their value and the endpoint into a single long. The
+     * float bits are flipped so negative values compare correctly as integers.
+     */
+    private void sortEndpointsFully() {
+        if(sortKeys.length < endpointCount)
+            sortKeys = new long[endpoints.length];
+
+        for(int index = 0; index < endpointCount; index++) {
+            // Adding zero turns -0 into 0, which compare equal as floats but not as bits
+            final int bits = Float.floatToIntBits(endpointValues[index] + 0.0f);
+            final int sortable = bits ^ ((bits >> 31) & 0x7FFFFFFF);
+            final int endpoint = endpoints[index];
+            sortKeys[index] = (long) sortable << 32 | (long) (endpoint & 1) << 31 | endpoint >>> 1;
+        }
+        Arrays.sort(sortKeys, 0, endpointCount);
+
+        for(int index = 0; index < endpointCount; index++) {
+            final long key = sortKeys[index];
+            final int body = (int) key & 0x7FFFFFFF;
+            final int endpoint = body << 1 | (int) (key >>> 31) & 1;
+            endpoints[index] = endpoint;
+            endpointValues[index] = (endpoint & 1) != 0 ? maxX[body] : minX[body];
+        }
+    }
+
+    /**
+     * Returns the amount of bodies.
+     *
+     * @return The body count.
+     */
+    public int getBodyCount() {
+        return bodyCount;
+    }
+}
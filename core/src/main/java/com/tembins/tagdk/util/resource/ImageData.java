@@ -0,0 +1,30 @@
+package com.tembins.tagdk.util.resource;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Holds a decoded image as tightly packed RGBA pixels with 8 bits per channel, row by row
+ * starting with the top row.
+ */
+public final class ImageData {
+
+    public final int width, height;
+    public final ByteBuffer pixels;
+
+    /**
+     * Initializes the image with the following parameters:
+     *
+     * @param width The width in pixels.
+     * @param height The height in pixels.
+     * @param pixels The pixel data, width * height * 4 bytes starting at its position.
+     */
+    public ImageData(final int width, final int height, final ByteBuffer pixels) {
+        if(pixels.remaining() < width * height * 4)
+            throw new IllegalArgumentException("Pixel data of " + pixels.remaining() + " bytes is too small for "
+                    + width + "x" + height + " RGBA pixels");
+
+        this.width = width;
+        this.height = height;
+        this.pixels = pixels;
+    }
+}
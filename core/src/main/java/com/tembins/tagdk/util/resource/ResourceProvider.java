@@ -0,0 +1,29 @@
+package com.tembins.tagdk.util.resource;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Gives loading tasks access to resources, so they do not depend on where the resources are
+ * stored. On Android, the resources are read from the resource directory of the app.
+ */
+public interface ResourceProvider {
+
+    /**
+     * Opens a resource for reading. The caller has to close the returned stream.
+     *
+     * @param resourceID The ID of the resource to open.
+     * @return The stream reading the resource.
+     * @throws IOException If the resource can not be opened.
+     */
+    InputStream openResource(final int resourceID) throws IOException;
+
+    /**
+     * Decodes an image resource into RGBA pixels.
+     *
+     * @param resourceID The ID of the image resource.
+     * @return The decoded image.
+     * @throws IOException If the resource can not be read or decoded.
+     */
+    ImageData decodeImage(final int resourceID) throws IOException;
+}
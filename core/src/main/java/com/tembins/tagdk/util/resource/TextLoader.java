@@ -0,0 +1,40 @@
+package com.tembins.tagdk.util.resource;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.Charset;
+
+/**
+ * This class provides platform independent utility functions to load text.
+ */
+public final class TextLoader {
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+    private static final int BUFFER_SIZE = 8192;
+
+    /**
+     * Reads the whole stream as UTF-8 text and closes it.
+     *
+     * @param inputStream The stream to read.
+     * @return A string containing the read text.
+     * @throws IOException If the reading fails due to IO errors.
+     */
+    public static String loadText(final InputStream inputStream) throws IOException {
+        final Reader reader = new InputStreamReader(inputStream, UTF_8);
+        try {
+            final StringBuilder stringBuilder = new StringBuilder(Math.max(16, inputStream.available()));
+            final char[] buffer = new char[BUFFER_SIZE];
+
+            // Reading in blocks instead of single characters avoids a call per character
+            int readChars;
+            while((readChars = reader.read(buffer)) != -1)
+                stringBuilder.append(buffer, 0, readChars);
+
+            return stringBuilder.toString();
+        } finally {
+            reader.close();
+        }
+    }
+}
@@ -0,0 +1,184 @@
+package com.tembins.tagdk.animation;
+
+import com.tembins.tagdk.graphics.backend.RecordingBackend;
+import com.tembins.tagdk.jobs.JobSystem;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+/**
+ * Compresses procedural clips and checks the sampled poses and skinning palettes.
+ */
+public class PoseSamplerTest {
+
+    private static final float FRAME_RATE = 30.0f;
+
+    /**
+     * Builds a chain of joints, each offset by one unit along x and rotating around z over time.
+     */
+    private static float[] swingFrames(final int jointCount, final int frameCount) {
+        final float[] frames = new float[frameCount * jointCount * AnimationClip.POSE_SIZE];
+        for(int frame = 0; frame < frameCount; frame++) {
+            for(int joint = 0; joint < jointCount; joint++) {
+                final int offset = (frame * jointCount + joint) * AnimationClip.POSE_SIZE;
+                final float angle = (float) Math.sin(frame * 0.2 + joint) * 0.5f;
+                frames[offset] = joint == 0 ? 0.0f : 1.0f;
+                frames[offset + 5] = (float) Math.sin(angle * 0.5);
+                frames[offset + 6] = (float) Math.cos(angle * 0.5);
+                frames[offset + 7] = 1.0f;
+                frames[offset + 8] = 1.0f;
+                frames[offset + 9] = 1.0f;
+            }
+        }
+        return frames;
+    }
+
+    private static int[] chain(final int jointCount) {
+        final int[] parents = new int[jointCount];
+        for(int joint = 0; joint < jointCount; joint++)
+            parents[joint] = joint - 1;
+        return parents;
+    }
+
+    @Test
+    public void compression_dropsConstantChannels() {
+        final int jointCount = 20, frameCount = 60;
+        final float[] frames = swingFrames(jointCount, frameCount);
+        final AnimationClip clip = AnimationClip.compress(jointCount, FRAME_RATE, frames);
+
+        // Only the rotations change
+        assertEquals(jointCount, clip.getAnimatedChannelCount());
+        assertTrue(clip.getCompressedSize() * 5 < frames.length * 4);
+        assertEquals((frameCount - 1) / FRAME_RATE, clip.getDuration(), 1.0e-6f);
+    }
+
+    @Test
+    public void sampledFrames_matchTheSource() {
+        final int jointCount = 8, frameCount = 30;
+        final float[] frames = swingFrames(jointCount, frameCount);
+        frames[AnimationClip.POSE_SIZE * 3 + 1] = 5.0f;
+        final AnimationClip clip = AnimationClip.compress(jointCount, FRAME_RATE, frames);
+
+        final float[] pose = new float[jointCount * AnimationClip.POSE_SIZE];
+        for(int frame = 0; frame < frameCount; frame++) {
+            clip.sample(frame / FRAME_RATE, false, pose, 0);
+            for(int value = 0; value < pose.length; value++)
+                assertEquals(frames[frame * pose.length + value], pose[value], 1.0e-3f);
+        }
+    }
+
+    @Test
+    public void looping_wrapsAroundTheDuration() {
+        final AnimationClip clip = AnimationClip.compress(4, FRAME_RATE, swingFrames(4, 31));
+        final float[] first = new float[4 * AnimationClip.POSE_SIZE];
+        final float[] wrapped = new float[first.length];
+
+        clip.sample(0.25f, true, first, 0);
+        clip.sample(0.25f + clip.getDuration() * 2.0f, true, wrapped, 0);
+        assertArrayEquals(first, wrapped, 1.0e-4f);
+    }
+
+    @Test
+    public void palettes_composeTheHierarchy() {
+        final int jointCount = 3;
+        final float[] frames = new float[jointCount * AnimationClip.POSE_SIZE];
+        for(int joint = 0; joint < jointCount; joint++) {
+            final int offset = joint * AnimationClip.POSE_SIZE;
+            frames[offset] = 1.0f;
+            // A quarter turn around z per joint
+            frames[offset + 5] = (float) Math.sqrt(0.5);
+            frames[offset + 6] = (float) Math.sqrt(0.5);
+            frames[offset + 7] = 1.0f;
+            frames[offset + 8] = 1.0f;
+            frames[offset + 9] = 1.0f;
+        }
+
+        final PoseSampler sampler = new PoseSampler(Skeleton.withIdentityBindPose(chain(jointCount)), 1);
+        final int character = sampler.addCharacter();
+        sampler.setAnimation(character, AnimationClip.compress(jointCount, FRAME_RATE, frames), 0.0f, false);
+        sampler.evaluate();
+
+        // The joints end up at (1, 0), (1, 1) and (0, 1)
+        final float[] palettes = sampler.getPalettes();
+        assertEquals(1.0f, palettes[3], 1.0e-4f);
+        assertEquals(0.0f, palettes[7], 1.0e-4f);
+        assertEquals(1.0f, palettes[PoseSampler.PALETTE_SIZE + 3], 1.0e-4f);
+        assertEquals(1.0f, palettes[PoseSampler.PALETTE_SIZE + 7], 1.0e-4f);
+        assertEquals(0.0f, palettes[PoseSampler.PALETTE_SIZE * 2 + 3], 1.0e-4f);
+        assertEquals(1.0f, palettes[PoseSampler.PALETTE_SIZE * 2 + 7], 1.0e-4f);
+    }
+
+    @Test
+    public void parallelEvaluation_matchesSerialEvaluation() {
+        final int jointCount = 30, characterCount = 100;
+        final AnimationClip clip = AnimationClip.compress(jointCount, FRAME_RATE, swingFrames(jointCount, 40));
+        final PoseSampler serial = new PoseSampler(Skeleton.withIdentityBindPose(chain(jointCount)), 4);
+        final PoseSampler parallel = new PoseSampler(serial.getSkeleton(), characterCount);
+        for(int character = 0; character < characterCount; character++) {
+            serial.setAnimation(serial.addCharacter(), clip, character * 0.01f, true);
+            parallel.setAnimation(parallel.addCharacter(), clip, character * 0.01f, true);
+        }
+
+        final JobSystem jobs = new JobSystem(4);
+        try {
+            serial.evaluate();
+            parallel.evaluate(jobs);
+        } finally {
+            jobs.shutdown();
+        }
+        final int paletteLength = serial.getPaletteOffset(characterCount);
+        assertArrayEquals(Arrays.copyOf(serial.getPalettes(), paletteLength),
+                Arrays.copyOf(parallel.getPalettes(), paletteLength), 0.0f);
+
+        final RecordingBackend graphics = new RecordingBackend();
+        serial.uploadPalette(graphics, 0, characterCount - 1);
+        assertEquals(1, graphics.getTotalCount(RecordingBackend.Counter.CALLS));
+    }
+
+    @Test
+    public void clearedClip_resetsToBindPose() {
+        final int jointCount = 3;
+        // Every joint is bound two units further along x, scaled by 2 and turned a quarter around z
+        final float[] inverseBindMatrices = new float[jointCount * 16];
+        for(int joint = 0; joint < jointCount; joint++) {
+            final int offset = joint * 16;
+            inverseBindMatrices[offset + 1] = 0.5f;
+            inverseBindMatrices[offset + 4] = -0.5f;
+            inverseBindMatrices[offset + 7] = joint;
+            inverseBindMatrices[offset + 10] = 0.5f;
+            inverseBindMatrices[offset + 15] = 1.0f;
+        }
+
+        final PoseSampler sampler = new PoseSampler(new Skeleton(chain(jointCount), inverseBindMatrices), 1);
+        final int character = sampler.addCharacter();
+        sampler.setAnimation(character, AnimationClip.compress(jointCount, FRAME_RATE, swingFrames(jointCount, 4)),
+                0.05f, false);
+        sampler.evaluate();
+        sampler.setAnimation(character, null, 0.0f, false);
+        sampler.evaluate();
+
+        final float[] palettes = sampler.getPalettes(), models = sampler.getModelMatrices();
+        for(int joint = 0; joint < jointCount; joint++) {
+            final int offset = sampler.getPaletteOffset(character) + joint * PoseSampler.PALETTE_SIZE;
+            assertArrayEquals(new float[] { 1, 0, 0, 0, 0, 1, 0, 0, 0, 0, 1, 0 },
+                    Arrays.copyOfRange(palettes, offset, offset + PoseSampler.PALETTE_SIZE), 0.0f);
+            assertArrayEquals(new float[] { 0, -2, 0, 2 * joint, 2, 0, 0, 0, 0, 0, 2, 0 },
+                    Arrays.copyOfRange(models, offset, offset + PoseSampler.PALETTE_SIZE), 1.0e-5f);
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void singularBindMatrices_areRejected() {
+        new Skeleton(new int[] { Skeleton.NO_PARENT }, new float[16]);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void mismatchingClips_areRejected() {
+        final PoseSampler sampler = new PoseSampler(Skeleton.withIdentityBindPose(chain(4)), 1);
+        sampler.setAnimation(sampler.addCharacter(), AnimationClip.compress(3, FRAME_RATE, swingFrames(3, 2)), 0.0f,
+                false);
+    }
+}
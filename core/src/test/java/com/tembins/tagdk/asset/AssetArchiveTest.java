@@ -0,0 +1,199 @@
+package com.tembins.tagdk.asset;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+
+import static org.junit.Assert.*;
+
+/**
+ * Packs archives on the JVM and reads them back, both mapped from files and from memory.
+ */
+public class AssetArchiveTest {
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private static byte[] bytes(final String text) {
+        return text.getBytes(UTF_8);
+    }
+
+    private static String text(final ByteBuffer buffer) {
+        final byte[] bytes = new byte[buffer.remaining()];
+        buffer.duplicate().get(bytes);
+        return new String(bytes, UTF_8);
+    }
+
+    private static AssetArchive writeToMemory(final AssetArchiveWriter writer) throws IOException {
+        final ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        writer.write(outputStream);
+        return new AssetArchive(ByteBuffer.wrap(outputStream.toByteArray()));
+    }
+
+    @Test
+    public void mappedArchive_returnsAssetSlices() throws IOException {
+        final AssetArchiveWriter writer = new AssetArchiveWriter();
+        writer.add(30, 1, 0, bytes("third"));
+        writer.add(10, 2, 0, bytes("first asset"));
+        writer.add(20, 1, 0, new byte[0]);
+
+        final File file = File.createTempFile("assets", ".pak");
+        try {
+            writer.write(file);
+            final AssetArchive archive = AssetArchive.open(file);
+
+            assertEquals(3, archive.getAssetCount());
+            assertEquals("first asset", text(archive.get(10)));
+            assertEquals("third", text(archive.get(30)));
+            assertEquals(0, archive.get(20).remaining());
+            assertEquals(2, archive.getType(10));
+            assertEquals(11, archive.getSize(10));
+            assertTrue(archive.verify(10));
+            assertFalse(archive.contains(40));
+            assertTrue(archive.get(10).isReadOnly());
+        } finally {
+            assertTrue(file.delete());
+        }
+    }
+
+    @Test
+    public void assetData_isAligned() throws IOException {
+        final AssetArchiveWriter writer = new AssetArchiveWriter();
+        writer.add(1, 0, 0, new byte[3]);
+        writer.add(2, 0, 0, new byte[17]);
+        final AssetArchive archive = writeToMemory(writer);
+
+        final ByteBuffer whole = archive.getGroupData(0);
+        // Asset 1 starts the group, asset 2 follows at the next aligned offset
+        assertEquals(AssetArchive.DATA_ALIGNMENT + 17, whole.remaining());
+        assertEquals(3, archive.get(1).remaining());
+    }
+
+    @Test
+    public void groups_areStoredContiguously() throws IOException {
+        final AssetArchiveWriter writer = new AssetArchiveWriter();
+        writer.add(1, 0, 2, bytes("level two a"));
+        writer.add(2, 0, 1, bytes("level one a"));
+        writer.add(3, 0, 2, bytes("level two b"));
+        writer.add(4, 0, 1, bytes("level one b"));
+        final AssetArchive archive = writeToMemory(writer);
+
+        assertEquals(2, archive.getGroupAssetCount(1));
+        assertEquals(2, archive.getGroupAssetCount(2));
+        final String levelTwo = text(archive.getGroupData(2));
+        assertTrue(levelTwo.startsWith("level two a"));
+        assertTrue(levelTwo.endsWith("level two b"));
+        assertFalse(levelTwo.contains("level one"));
+    }
+
+    @Test
+    public void stream_readsAssetData() throws IOException {
+        final AssetArchiveWriter writer = new AssetArchiveWriter();
+        writer.add(7, 0, 0, bytes("streamed"));
+        final AssetArchive archive = writeToMemory(writer);
+
+        final InputStream inputStream = archive.openStream(7);
+        final byte[] read = new byte[16];
+        assertEquals(8, inputStream.read(read));
+        assertEquals(-1, inputStream.read());
+        assertEquals("streamed", new String(read, 0, 8, UTF_8));
+    }
+
+    @Test
+    public void compressedAssets_loadTransparently() throws IOException {
+        final StringBuilder text = new StringBuilder();
+        for(int line = 0; line < 2000; line++)
+            text.append("v ").append(line % 10).append(" 0.5 1.0\n");
+        final byte[] data = bytes(text.toString());
+
+        final AssetArchiveWriter writer = new AssetArchiveWriter();
+        writer.add(1, 0, 0, data, true);
+        writer.add(2, 0, 0, bytes("tiny"), true);
+        final AssetArchive archive = writeToMemory(writer);
+
+        assertTrue(archive.isCompressed(1));
+        assertTrue(archive.getSize(1) < data.length / 4);
+        assertEquals(data.length, archive.getUncompressedSize(1));
+        assertTrue(archive.verify(1));
+        // Compressing four bytes would grow them, so they are stored as they are
+        assertFalse(archive.isCompressed(2));
+
+        final ByteBuffer loaded = archive.load(1, null);
+        assertTrue(loaded.isDirect());
+        assertEquals(text.toString(), text(loaded));
+
+        final InputStream inputStream = archive.openStream(1);
+        final byte[] streamed = new byte[data.length];
+        int read = 0;
+        while(read < streamed.length)
+            read += inputStream.read(streamed, read, streamed.length - read);
+        assertEquals(-1, inputStream.read());
+        assertArrayEquals(data, streamed);
+
+        final ByteBuffer staging = ByteBuffer.allocate(data.length + 4);
+        archive.load(1, staging, null);
+        archive.load(2, staging, null);
+        staging.flip();
+        assertEquals(text.toString() + "tiny", text(staging));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void duplicateID_isRejected() {
+        final AssetArchiveWriter writer = new AssetArchiveWriter();
+        writer.add(1, 0, 0, new byte[1]);
+        writer.add(1, 0, 0, new byte[1]);
+    }
+
+    @Test(expected = IOException.class)
+    public void invalidData_isRejected() throws IOException {
+        new AssetArchive(ByteBuffer.wrap(bytes("definitely not an archive")));
+    }
+
+    @Test(expected = IOException.class)
+    public void unsortedGroups_areRejected() throws IOException {
+        final AssetArchiveWriter writer = new AssetArchiveWriter();
+        writer.add(1, 0, 1, bytes("level one"));
+        writer.add(2, 0, 2, bytes("level two"));
+        final ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        writer.write(outputStream);
+        final byte[] archive = outputStream.toByteArray();
+
+        // Swaps the IDs of both groups, which breaks the binary search over the group table
+        final int groups = AssetArchive.HEADER_SIZE + 2 * AssetArchive.ENTRY_SIZE;
+        for(int index = 0; index < 4; index++) {
+            final byte first = archive[groups + index];
+            archive[groups + index] = archive[groups + AssetArchive.GROUP_SIZE + index];
+            archive[groups + AssetArchive.GROUP_SIZE + index] = first;
+        }
+        new AssetArchive(ByteBuffer.wrap(archive));
+    }
+
+    @Test
+    public void packer_readsManifest() throws IOException {
+        final File directory = Files.createTempDirectory("packer").toFile();
+        final File asset = new File(directory, "shader.vert");
+        final File manifest = new File(directory, "assets.manifest");
+        try {
+            Files.write(asset.toPath(), bytes("void main() { }"));
+            final FileOutputStream outputStream = new FileOutputStream(manifest);
+            outputStream.write(bytes("# id type group [lz4] path\n\n5 3 1 shader.vert\n6 3 1 lz4 shader.vert\n"));
+            outputStream.close();
+
+            final AssetArchive archive = writeToMemory(AssetPacker.pack(manifest));
+            assertEquals("void main() { }", text(archive.get(5)));
+            assertEquals(3, archive.getType(5));
+            assertEquals(1, archive.getGroup(5));
+            assertEquals("void main() { }", text(archive.load(6, null)));
+        } finally {
+            asset.delete();
+            manifest.delete();
+            directory.delete();
+        }
+    }
+}
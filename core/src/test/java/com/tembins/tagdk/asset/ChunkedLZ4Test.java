@@ -0,0 +1,116 @@
+package com.tembins.tagdk.asset;
+
+import com.tembins.tagdk.jobs.JobSystem;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Round trips the LZ4 block codec and the chunked format through arrays, heap and direct buffers.
+ */
+public class ChunkedLZ4Test {
+
+    private static byte[] meshLikeData(final int size) {
+        // Interleaved positions, normals and UVs of a flat grid, which repeat a lot like real meshes
+        final ByteBuffer buffer = ByteBuffer.allocate(size).order(ByteOrder.LITTLE_ENDIAN);
+        for(int vertex = 0; buffer.remaining() >= 4; vertex++) {
+            final float[] attributes = {vertex % 64, vertex / 64, 0, 0, 0, 1, (vertex % 64) / 63f, 0.5f};
+            for(int index = 0; index < attributes.length && buffer.remaining() >= 4; index++)
+                buffer.putFloat(attributes[index]);
+        }
+        return buffer.array();
+    }
+
+    private static byte[] randomData(final int size) {
+        final byte[] data = new byte[size];
+        new Random(3).nextBytes(data);
+        return data;
+    }
+
+    private static byte[] decompress(final byte[] compressed, final ByteBuffer destination, final JobSystem jobs) {
+        ChunkedLZ4.decompress(ByteBuffer.wrap(compressed), destination, jobs);
+        destination.flip();
+        final byte[] result = new byte[destination.remaining()];
+        destination.get(result);
+        return result;
+    }
+
+    @Test
+    public void block_roundTripsRepetitiveData() {
+        final byte[] data = new byte[1000];
+        for(int index = 0; index < data.length; index++)
+            data[index] = (byte) (index % 3 == 0 ? 'a' : 'b');
+
+        final byte[] compressed = new byte[LZ4Block.maxCompressedLength(data.length)];
+        final int size = LZ4Block.compress(data, 0, data.length, compressed, 0);
+        assertTrue(size < 50);
+
+        final byte[] array = new byte[data.length];
+        assertEquals(data.length, LZ4Block.decompress(compressed, 0, size, array, 0, array.length));
+        assertArrayEquals(data, array);
+
+        final ByteBuffer direct = ByteBuffer.allocateDirect(data.length);
+        final ByteBuffer source = ByteBuffer.allocateDirect(size);
+        source.put(compressed, 0, size);
+        assertEquals(data.length, LZ4Block.decompress(source, 0, size, direct, 0, data.length));
+        final byte[] fromDirect = new byte[data.length];
+        direct.get(fromDirect);
+        assertArrayEquals(data, fromDirect);
+    }
+
+    @Test
+    public void block_handlesTinyInputs() {
+        for(int length = 0; length < 20; length++) {
+            final byte[] data = Arrays.copyOf(meshLikeData(32), length);
+            final byte[] compressed = new byte[LZ4Block.maxCompressedLength(length)];
+            final int size = LZ4Block.compress(data, 0, length, compressed, 0);
+            final byte[] result = new byte[length];
+            assertEquals(length, LZ4Block.decompress(compressed, 0, size, result, 0, length));
+            assertArrayEquals(data, result);
+        }
+    }
+
+    @Test
+    public void chunks_decompressInParallelIntoDirectBuffer() {
+        final byte[] data = meshLikeData(300 * 1024 + 13);
+        final byte[] compressed = ChunkedLZ4.compress(data, 16 * 1024);
+        assertTrue(compressed.length < data.length / 2);
+        assertEquals(data.length, ChunkedLZ4.getUncompressedSize(ByteBuffer.wrap(compressed)));
+
+        final JobSystem jobs = new JobSystem(3);
+        try {
+            final ByteBuffer destination = ByteBuffer.allocateDirect(data.length);
+            assertArrayEquals(data, decompress(compressed, destination, jobs));
+        } finally {
+            jobs.shutdown();
+        }
+        assertArrayEquals(data, decompress(compressed, ByteBuffer.allocate(data.length), null));
+    }
+
+    @Test
+    public void incompressibleChunks_areStored() {
+        final byte[] data = randomData(100 * 1024);
+        final byte[] compressed = ChunkedLZ4.compress(data, 32 * 1024);
+
+        assertEquals(ChunkedLZ4.HEADER_SIZE + 4 * 4 + data.length, compressed.length);
+        assertArrayEquals(data, decompress(compressed, ByteBuffer.allocateDirect(data.length), null));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void truncatedData_isRejected() {
+        final byte[] compressed = ChunkedLZ4.compress(meshLikeData(4096));
+        ChunkedLZ4.decompress(ByteBuffer.wrap(Arrays.copyOf(compressed, compressed.length - 10)),
+                ByteBuffer.allocate(4096), null);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void smallDestination_isRejected() {
+        ChunkedLZ4.decompress(ByteBuffer.wrap(ChunkedLZ4.compress(meshLikeData(4096))), ByteBuffer.allocate(4095), null);
+    }
+}
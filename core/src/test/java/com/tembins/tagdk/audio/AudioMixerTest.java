@@ -0,0 +1,253 @@
+package com.tembins.tagdk.audio;
+
+import com.tembins.tagdk.graphics.resource.tasks.ResourceLoadingException;
+import com.tembins.tagdk.loop.Clock;
+import com.tembins.tagdk.profiling.FrameProfiler;
+import com.tembins.tagdk.util.resource.ImageData;
+import com.tembins.tagdk.util.resource.ResourceProvider;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+import static org.junit.Assert.*;
+
+/**
+ * Decodes and caches sounds and mixes them on the test thread, checking gains, resampling and
+ * the voice lifetime.
+ */
+public class AudioMixerTest {
+
+    private static final int RATE = 48000;
+    private static final float EPSILON = 1e-4f;
+
+    private static byte[] wav(final short[] samples, final int channelCount, final int sampleRate) {
+        final ByteBuffer buffer = ByteBuffer.allocate(44 + samples.length * 2).order(ByteOrder.LITTLE_ENDIAN);
+        buffer.put("RIFF".getBytes()).putInt(36 + samples.length * 2).put("WAVE".getBytes());
+        buffer.put("fmt ".getBytes()).putInt(16).putShort((short) 1).putShort((short) channelCount)
+                .putInt(sampleRate).putInt(sampleRate * channelCount * 2)
+                .putShort((short) (channelCount * 2)).putShort((short) 16);
+        buffer.put("data".getBytes()).putInt(samples.length * 2);
+        for(final short sample : samples)
+            buffer.putShort(sample);
+        return buffer.array();
+    }
+
+    private static SoundData constant(final int frames, final short value) {
+        final short[] samples = new short[frames];
+        for(int frame = 0; frame < frames; frame++)
+            samples[frame] = value;
+        return new SoundData(samples, 1, RATE);
+    }
+
+    private static final class FakeResources implements ResourceProvider {
+
+        int openCount;
+
+        @Override
+        public InputStream openResource(final int resourceID) throws IOException {
+            openCount++;
+            if(resourceID != 1)
+                throw new IOException("Unknown resource " + resourceID);
+            return new ByteArrayInputStream(wav(new short[] { 1, 2, 3, 4 }, 2, 22050));
+        }
+
+        @Override
+        public ImageData decodeImage(final int resourceID) throws IOException {
+            throw new IOException("No images");
+        }
+    }
+
+    @Test
+    public void wavDecoder_readsPcm() throws IOException {
+        final SoundData sound = WavDecoder.decode(wav(new short[] { 100, -100, 200, -200, 300, -300 }, 2, 44100));
+
+        assertEquals(2, sound.getChannelCount());
+        assertEquals(44100, sound.getSampleRate());
+        assertEquals(3, sound.getFrameCount());
+        assertEquals(200, sound.samples[2]);
+        assertEquals(-300, sound.samples[5]);
+    }
+
+    @Test(expected = IOException.class)
+    public void wavDecoder_rejectsInvalidData() throws IOException {
+        WavDecoder.decode("RIFF but not a wave".getBytes());
+    }
+
+    @Test
+    public void soundCache_decodesOnce() throws ResourceLoadingException {
+        final SoundCache cache = new SoundCache();
+        final FakeResources resources = new FakeResources();
+
+        final FrameProfiler profiler = new FrameProfiler("loader", 4, 4, Clock.SYSTEM);
+        cache.setProfiler(profiler);
+        profiler.beginFrame();
+
+        final SoundData sound = cache.get(resources, 1);
+        assertSame(sound, cache.get(resources, 1));
+        assertEquals(1, resources.openCount);
+        assertTrue(cache.contains(1));
+        profiler.endFrame();
+        assertEquals(1, profiler.getFrameCounter(0, FrameProfiler.Counter.LOADED_RESOURCES));
+
+        cache.release(1);
+        assertFalse(cache.contains(1));
+        assertEquals(0, cache.getCachedBytes());
+    }
+
+    @Test
+    public void pan_usesEqualPower() {
+        final AudioMixer mixer = new AudioMixer(RATE, 4, 16);
+        final float[] output = new float[64 * 2];
+
+        mixer.play(constant(1000, (short) 16384), 1.0f, 0.0f, 1.0f, false);
+        mixer.mix(output, 64);
+        final float center = (float) (0.5 * Math.sqrt(0.5));
+        assertEquals(center, output[10], EPSILON);
+        assertEquals(center, output[11], EPSILON);
+
+        mixer.stopAll();
+        mixer.mix(output, 64);
+        mixer.play(constant(1000, (short) 16384), 1.0f, -1.0f, 1.0f, false);
+        mixer.mix(output, 64);
+        assertEquals(0.5f, output[10], EPSILON);
+        assertEquals(0.0f, output[11], EPSILON);
+    }
+
+    @Test
+    public void pitch_interpolatesLinearly() {
+        final AudioMixer mixer = new AudioMixer(RATE, 1, 16);
+        final short[] ramp = new short[100];
+        for(int frame = 0; frame < ramp.length; frame++)
+            ramp[frame] = (short) (frame * 100);
+        final float[] output = new float[30 * 2];
+
+        // Half the speed advances half a frame per output frame, hitting every midpoint
+        mixer.play(new SoundData(ramp, 1, RATE), 1.0f, -1.0f, 0.5f, false);
+        mixer.mix(output, 30);
+        assertEquals(1000 / 32768.0f, output[20 * 2], EPSILON);
+        assertEquals(1050 / 32768.0f, output[21 * 2], EPSILON);
+    }
+
+    @Test
+    public void sampleRate_isConverted() {
+        final AudioMixer mixer = new AudioMixer(RATE, 1, 16);
+        mixer.play(new SoundData(new short[480], 1, RATE / 2), 1.0f, 0.0f, 1.0f, false);
+
+        // 480 frames at half the rate last 960 output frames
+        final float[] output = new float[500 * 2];
+        mixer.mix(output, 500);
+        assertEquals(1, mixer.getActiveVoiceCount());
+        mixer.mix(output, 459);
+        assertEquals(1, mixer.getActiveVoiceCount());
+        mixer.mix(output, 2);
+        assertEquals(0, mixer.getActiveVoiceCount());
+    }
+
+    @Test
+    public void loopingVoice_wrapsAround() {
+        final AudioMixer mixer = new AudioMixer(RATE, 1, 16);
+        final short[] samples = { 1000, 2000, 3000 };
+        final float[] output = new float[8 * 2];
+
+        mixer.play(new SoundData(samples, 1, RATE), 1.0f, -1.0f, 1.0f, true);
+        mixer.mix(output, 8);
+        for(int frame = 0; frame < 8; frame++)
+            assertEquals(samples[frame % 3] / 32768.0f, output[frame * 2], EPSILON);
+        assertEquals(1, mixer.getActiveVoiceCount());
+    }
+
+    @Test
+    public void endOfSound_interpolatesTowardsSilenceOrStart() {
+        final SoundData sound = new SoundData(new short[] { 4000, 8000 }, 1, RATE);
+        final float[] output = new float[5 * 2];
+
+        // Half the speed reaches the midpoint after the last frame in the fourth output frame
+        final AudioMixer once = new AudioMixer(RATE, 1, 16);
+        once.play(sound, 1.0f, -1.0f, 0.5f, false);
+        once.mix(output, 4);
+        assertEquals(6000 / 32768.0f, output[1 * 2], EPSILON);
+        assertEquals(8000 / 32768.0f, output[2 * 2], EPSILON);
+        assertEquals(4000 / 32768.0f, output[3 * 2], EPSILON);
+        once.mix(output, 1);
+        assertEquals(0, once.getActiveVoiceCount());
+
+        final AudioMixer looping = new AudioMixer(RATE, 1, 16);
+        looping.play(sound, 1.0f, -1.0f, 0.5f, true);
+        looping.mix(output, 5);
+        assertEquals(6000 / 32768.0f, output[3 * 2], EPSILON);
+        assertEquals(4000 / 32768.0f, output[4 * 2], EPSILON);
+    }
+
+    @Test
+    public void stop_fadesOutWithinOneBuffer() {
+        final AudioMixer mixer = new AudioMixer(RATE, 2, 16);
+        final float[] output = new float[100 * 2];
+
+        final int voice = mixer.play(constant(10000, (short) 16384), 1.0f, -1.0f, 1.0f, true);
+        mixer.mix(output, 100);
+        mixer.stop(voice);
+        mixer.mix(output, 100);
+
+        assertEquals(0.5f, output[0], EPSILON);
+        assertTrue(output[100] < 0.3f && output[100] > 0.2f);
+        assertTrue(output[198] < 0.01f);
+        assertEquals(0, mixer.getActiveVoiceCount());
+
+        // The handle is gone, stopping it again is ignored
+        assertTrue(mixer.stop(voice));
+        mixer.mix(output, 100);
+        assertEquals(0.0f, output[0], 0.0f);
+    }
+
+    @Test
+    public void volumeChange_isRamped() {
+        final AudioMixer mixer = new AudioMixer(RATE, 1, 16);
+        final float[] output = new float[10 * 2];
+
+        final int voice = mixer.play(constant(1000, (short) 16384), 1.0f, -1.0f, 1.0f, false);
+        mixer.mix(output, 10);
+        mixer.setVolume(voice, 0.0f);
+        mixer.mix(output, 10);
+
+        for(int frame = 1; frame < 10; frame++)
+            assertTrue(output[frame * 2] < output[frame * 2 - 2]);
+        mixer.mix(output, 10);
+        assertEquals(0.0f, output[0], EPSILON);
+    }
+
+    @Test
+    public void fullMixer_stealsOldestVoice() {
+        final AudioMixer mixer = new AudioMixer(RATE, 2, 16);
+        final float[] output = new float[4 * 2];
+
+        mixer.play(constant(1000, (short) 1000), 1.0f, -1.0f, 1.0f, true);
+        mixer.play(constant(1000, (short) 2000), 1.0f, -1.0f, 1.0f, true);
+        mixer.play(constant(1000, (short) 4000), 1.0f, -1.0f, 1.0f, true);
+        mixer.mix(output, 4);
+
+        assertEquals(2, mixer.getActiveVoiceCount());
+        assertEquals(6000 / 32768.0f, output[0], EPSILON);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void play_rejectsNullSound() {
+        new AudioMixer(RATE, 1, 16).play(null, 1.0f, 0.0f, 1.0f, false);
+    }
+
+    @Test
+    public void fullCommandRing_rejectsPlay() {
+        final AudioMixer mixer = new AudioMixer(RATE, 2, 2);
+        final SoundData sound = constant(10, (short) 0);
+
+        assertNotEquals(AudioMixer.NO_VOICE, mixer.play(sound, 1.0f, 0.0f, 1.0f, false));
+        assertNotEquals(AudioMixer.NO_VOICE, mixer.play(sound, 1.0f, 0.0f, 1.0f, false));
+        assertEquals(AudioMixer.NO_VOICE, mixer.play(sound, 1.0f, 0.0f, 1.0f, false));
+        mixer.mix(new float[2], 1);
+        assertNotEquals(AudioMixer.NO_VOICE, mixer.play(sound, 1.0f, 0.0f, 1.0f, false));
+    }
+}
@@ -0,0 +1,220 @@
+package com.tembins.tagdk.ecs;
+
+import org.junit.Test;
+
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests entity recycling, the sparse sets behind the component storages, queries over several
+ * storages and the phase order of the system scheduler.
+ */
+public class EcsTest {
+
+    /**
+     * Records the position at which it ran within one scheduler run.
+     */
+    private static final class OrderSystem implements EntitySystem {
+
+        private final AtomicInteger clock;
+        private final ComponentStorage[] reads, writes;
+        private int order = -1;
+
+        private OrderSystem(final AtomicInteger clock, final ComponentStorage[] reads, final ComponentStorage[] writes) {
+            this.clock = clock;
+            this.reads = reads;
+            this.writes = writes;
+        }
+
+        @Override
+        public ComponentStorage[] getReadStorages() {
+            return reads;
+        }
+
+        @Override
+        public ComponentStorage[] getWrittenStorages() {
+            return writes;
+        }
+
+        @Override
+        public void update(final float deltaTime) {
+            order = clock.getAndIncrement();
+        }
+    }
+
+    @Test
+    public void destroyedIndices_areReusedWithNewGeneration() {
+        final EntityRegistry registry = new EntityRegistry(1);
+        final FloatComponentStorage positions = registry.register(new FloatComponentStorage(3, 1));
+
+        final int first = registry.create();
+        final int second = registry.create();
+        positions.add(first, 1.0f);
+        registry.destroy(first);
+
+        assertFalse(registry.isAlive(first));
+        assertFalse(positions.contains(first));
+        assertEquals(1, registry.getAliveCount());
+
+        final int reused = registry.create();
+        assertEquals(EntityRegistry.indexOf(first), EntityRegistry.indexOf(reused));
+        assertEquals(EntityRegistry.generationOf(first) + 1, EntityRegistry.generationOf(reused));
+        assertNotEquals(first, reused);
+        assertTrue(registry.isAlive(reused));
+        assertTrue(registry.isAlive(second));
+
+        // The stale handle must not see the component of the entity now owning its index
+        positions.add(reused, 2.0f);
+        assertFalse(positions.contains(first));
+        assertEquals(-1, positions.indexOf(first));
+        assertFalse(positions.remove(first));
+        assertEquals(1, positions.size());
+
+        // Destroying through the stale handle does nothing
+        registry.destroy(first);
+        assertTrue(registry.isAlive(reused));
+        assertTrue(positions.contains(reused));
+        assertFalse(registry.isAlive(EntityRegistry.NULL_ENTITY));
+    }
+
+    @Test
+    public void remove_keepsDenseArraysConsistent() {
+        final Random random = new Random(5);
+        final EntityRegistry registry = new EntityRegistry(4);
+        final IntComponentStorage values = registry.register(new IntComponentStorage(2, 4));
+        final int[] entities = new int[200];
+        final boolean[] owns = new boolean[entities.length];
+
+        for(int index = 0; index < entities.length; index++) {
+            entities[index] = registry.create();
+            final int denseIndex = values.add(entities[index], index);
+            values.set(denseIndex, 1, -index);
+            owns[index] = true;
+        }
+
+        for(int step = 0; step < 500; step++) {
+            final int index = random.nextInt(entities.length);
+            if(owns[index]) {
+                assertTrue(values.remove(entities[index]));
+            } else {
+                final int denseIndex = values.add(entities[index], index);
+                values.set(denseIndex, 1, -index);
+            }
+            owns[index] = !owns[index];
+
+            int expectedSize = 0;
+            for(int entity = 0; entity < entities.length; entity++) {
+                assertEquals(owns[entity], values.contains(entities[entity]));
+                if(owns[entity])
+                    expectedSize++;
+            }
+            assertEquals(expectedSize, values.size());
+
+            // Every dense slot maps back to its owner and still holds the data of that owner
+            for(int denseIndex = 0; denseIndex < values.size(); denseIndex++) {
+                final int entity = values.getEntity(denseIndex);
+                final int owner = EntityRegistry.indexOf(entity);
+                assertEquals(denseIndex, values.indexOf(entity));
+                assertEquals(owner, values.get(denseIndex, 0));
+                assertEquals(-owner, values.get(denseIndex, 1));
+            }
+        }
+    }
+
+    @Test
+    public void query_findsEntitiesOwningAllComponents() {
+        final EntityRegistry registry = new EntityRegistry(16);
+        final FloatComponentStorage positions = registry.register(new FloatComponentStorage(3, 16));
+        final FloatComponentStorage velocities = registry.register(new FloatComponentStorage(3, 16));
+        final IntComponentStorage tags = registry.register(new IntComponentStorage(1, 16));
+
+        for(int index = 0; index < 100; index++) {
+            final int entity = registry.create();
+            positions.add(entity, index);
+            if(index % 2 == 0)
+                velocities.add(entity, index * 10.0f);
+            if(index % 3 == 0)
+                tags.add(entity, index);
+        }
+
+        final EntityQuery query = new EntityQuery(positions, velocities, tags);
+        assertEquals(17, query.run());
+        assertEquals(17, query.getCount());
+        for(int match = 0; match < query.getCount(); match++) {
+            final int entity = query.getEntities()[match];
+            final int index = EntityRegistry.indexOf(entity);
+            assertEquals(0, index % 6);
+            assertEquals(index, positions.get(query.getIndices(0)[match], 2), 0.0f);
+            assertEquals(index * 10.0f, velocities.get(query.getIndices(1)[match], 0), 0.0f);
+            assertEquals(index, tags.get(query.getIndices(2)[match], 0));
+        }
+
+        // Destroying entities removes them from all storages and so from the results
+        registry.destroy(query.getEntities()[0]);
+        registry.destroy(query.getEntities()[1]);
+        assertEquals(15, query.run());
+
+        final EntityQuery none = new EntityQuery(velocities, new IntComponentStorage(1, 1));
+        assertEquals(0, none.run());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void query_rejectsEmptyStorageList() {
+        new EntityQuery();
+    }
+
+    @Test
+    public void scheduler_runsConflictingSystemsInAddOrder() {
+        final EntityRegistry registry = new EntityRegistry(1);
+        final ComponentStorage positions = registry.register(new FloatComponentStorage(3, 1));
+        final ComponentStorage velocities = registry.register(new FloatComponentStorage(3, 1));
+        final ComponentStorage health = registry.register(new IntComponentStorage(1, 1));
+
+        final AtomicInteger clock = new AtomicInteger();
+        final ComponentStorage[] nothing = new ComponentStorage[0];
+        // Phase 0: writes velocities, and independently writes health
+        final OrderSystem accelerate = new OrderSystem(clock, nothing, new ComponentStorage[] { velocities });
+        final OrderSystem regenerate = new OrderSystem(clock, nothing, new ComponentStorage[] { health });
+        // Phase 1: reads velocities written by accelerate
+        final OrderSystem integrate = new OrderSystem(clock, new ComponentStorage[] { velocities }, new ComponentStorage[] { positions });
+        // Phase 1 as well: only reads velocities and health, which integrate does not write
+        final OrderSystem damage = new OrderSystem(clock, new ComponentStorage[] { velocities, health }, nothing);
+        // Phase 2: reads positions written by integrate
+        final OrderSystem render = new OrderSystem(clock, new ComponentStorage[] { positions }, nothing);
+
+        final OrderSystem[] systems = { accelerate, regenerate, integrate, damage, render };
+        final ForkJoinPool pool = new ForkJoinPool(2);
+        try {
+            for(final ForkJoinPool schedulerPool : new ForkJoinPool[] { null, pool }) {
+                final SystemScheduler scheduler = new SystemScheduler(schedulerPool);
+                for(final OrderSystem system : systems)
+                    scheduler.add(system);
+                assertEquals(3, scheduler.getPhaseCount());
+
+                for(int run = 0; run < 3; run++) {
+                    clock.set(0);
+                    scheduler.run(0.016f);
+
+                    assertTrue(accelerate.order < integrate.order);
+                    assertTrue(accelerate.order < damage.order);
+                    assertTrue(regenerate.order < damage.order);
+                    assertTrue(integrate.order < render.order);
+                    assertTrue(damage.order < render.order);
+                    assertEquals(4, render.order);
+                }
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void scheduler_rejectsUnregisteredStorages() {
+        final SystemScheduler scheduler = new SystemScheduler(null);
+        scheduler.add(new OrderSystem(new AtomicInteger(), new ComponentStorage[] { new FloatComponentStorage(1, 1) },
+                new ComponentStorage[0]));
+    }
+}
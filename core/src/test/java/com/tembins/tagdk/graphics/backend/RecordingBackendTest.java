@@ -0,0 +1,207 @@
+package com.tembins.tagdk.graphics.backend;
+
+import com.tembins.tagdk.graphics.resource.TextureParameter;
+import com.tembins.tagdk.graphics.resource.tasks.MeshLoadingTask;
+import com.tembins.tagdk.graphics.resource.tasks.ResourceLoadingException;
+import com.tembins.tagdk.graphics.resource.tasks.ShaderLoadingTask;
+import com.tembins.tagdk.graphics.resource.tasks.TextureLoadingTask;
+import com.tembins.tagdk.graphics.util.ErrorCheckLevel;
+import com.tembins.tagdk.util.resource.ImageData;
+import com.tembins.tagdk.util.resource.ResourceProvider;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+
+import static org.junit.Assert.*;
+
+/**
+ * Runs the loading tasks and a small frame against the recording backend and checks the counted
+ * calls, state changes and uploads.
+ */
+public class RecordingBackendTest {
+
+    private static final int QUAD_MESH = 1;
+    private static final int VERTEX_SHADER = 2;
+    private static final int FRAGMENT_SHADER = 3;
+    private static final int TEXTURE = 4;
+
+    private static final String QUAD_OBJ =
+            "v 0 0 0\nv 1 0 0\nv 1 1 0\nv 0 1 0\n"
+            + "vt 0 0\nvt 1 0\nvt 1 1\nvt 0 1\n"
+            + "vn 0 0 1\n"
+            + "f 1/1/1 2/2/1 3/3/1 4/4/1\n";
+
+    private static final class FakeResources implements ResourceProvider {
+
+        @Override
+        public InputStream openResource(final int resourceID) throws IOException {
+            final String text;
+            switch(resourceID) {
+                case QUAD_MESH: text = QUAD_OBJ; break;
+                case VERTEX_SHADER: text = "void main() { gl_Position = vec4(0.0); }"; break;
+                case FRAGMENT_SHADER: text = "void main() { }"; break;
+                default: throw new IOException("Unknown resource " + resourceID);
+            }
+            return new ByteArrayInputStream(text.getBytes(Charset.forName("UTF-8")));
+        }
+
+        @Override
+        public ImageData decodeImage(final int resourceID) throws IOException {
+            if(resourceID != TEXTURE)
+                throw new IOException("Unknown image " + resourceID);
+
+            return new ImageData(64, 32, ByteBuffer.allocate(64 * 32 * 4));
+        }
+    }
+
+    @Test
+    public void meshLoading_uploadsVerticesAndIndices() throws ResourceLoadingException {
+        final RecordingBackend graphics = new RecordingBackend();
+        final MeshLoadingTask task = new MeshLoadingTask(QUAD_MESH);
+
+        assertTrue(task.load(new FakeResources(), graphics) > 0);
+
+        // 4 vertices with 3 + 2 + 3 floats, 2 triangles with 3 short indices
+        final long expectedBytes = 4 * (3 + 2 + 3) * 4 + 2 * 3 * 2;
+        assertEquals(expectedBytes, graphics.getTotalCount(RecordingBackend.Counter.UPLOADED_BYTES));
+        assertEquals(expectedBytes, graphics.getAllocatedBytes());
+        assertEquals(5, graphics.getTotalCount(RecordingBackend.Counter.CREATED_OBJECTS));
+        assertEquals(0, graphics.getTotalCount(RecordingBackend.Counter.REDUNDANT_CALLS));
+        assertEquals(0, graphics.getTotalCount(RecordingBackend.Counter.DRAW_CALLS));
+        graphics.assertTotalBudget(RecordingBackend.Counter.BINDS, 6);
+    }
+
+    @Test
+    public void textureLoading_uploadsPixels() throws ResourceLoadingException {
+        final RecordingBackend graphics = new RecordingBackend();
+        final TextureLoadingTask task = new TextureLoadingTask(TEXTURE,
+                TextureParameter.WRAP.REPEAT, TextureParameter.FILTER.LINEAR);
+
+        task.load(new FakeResources(), graphics);
+
+        assertEquals(64 * 32 * 4, graphics.getTotalCount(RecordingBackend.Counter.UPLOADED_BYTES));
+        assertEquals(1, graphics.getTotalCount(RecordingBackend.Counter.BINDS));
+    }
+
+    @Test
+    public void shaderLoading_createsProgram() throws ResourceLoadingException {
+        final RecordingBackend graphics = new RecordingBackend();
+        final ShaderLoadingTask task = new ShaderLoadingTask(VERTEX_SHADER, FRAGMENT_SHADER);
+
+        assertTrue(task.load(new FakeResources(), graphics) > 0);
+        assertEquals(3, graphics.getTotalCount(RecordingBackend.Counter.CREATED_OBJECTS));
+        assertEquals(0, graphics.getTotalCount(RecordingBackend.Counter.UPLOADED_BYTES));
+    }
+
+    @Test
+    public void loadingTasks_countLoadedResources() throws ResourceLoadingException {
+        final RecordingBackend graphics = new RecordingBackend();
+        final FakeResources resources = new FakeResources();
+
+        new MeshLoadingTask(QUAD_MESH).load(resources, graphics);
+        new TextureLoadingTask(TEXTURE, TextureParameter.WRAP.REPEAT, TextureParameter.FILTER.LINEAR)
+                .load(resources, graphics);
+        new ShaderLoadingTask(VERTEX_SHADER, FRAGMENT_SHADER).load(resources, graphics);
+        assertEquals(3, graphics.getFrameCount(RecordingBackend.Counter.LOADED_RESOURCES));
+
+        // Failed loads are not counted
+        try {
+            new MeshLoadingTask(TEXTURE).load(resources, graphics);
+            fail("Expected the texture to fail loading as a mesh");
+        } catch(ResourceLoadingException exception) {
+            assertEquals(3, graphics.getTotalCount(RecordingBackend.Counter.LOADED_RESOURCES));
+        }
+    }
+
+    @Test(expected = ResourceLoadingException.class)
+    public void missingResource_failsLoading() throws ResourceLoadingException {
+        new MeshLoadingTask(TEXTURE).load(new FakeResources(), new RecordingBackend());
+    }
+
+    @Test
+    public void raisedErrors_areReturnedByChecks() {
+        final RecordingBackend graphics = new RecordingBackend();
+        graphics.raiseError(GLConstants.GL_OUT_OF_MEMORY);
+
+        assertNull(graphics.checkError(ErrorCheckLevel.OFF));
+        assertEquals(GLConstants.GL_OUT_OF_MEMORY, graphics.checkError(ErrorCheckLevel.LOAD_ONLY).code);
+        assertNull(graphics.checkError(ErrorCheckLevel.LOAD_ONLY));
+    }
+
+    @Test
+    public void errorChecks_areGatedByLevel() {
+        final RecordingBackend graphics = new RecordingBackend();
+        graphics.raiseError(GLConstants.GL_INVALID_OPERATION);
+
+        // The default level only checks while loading
+        assertNull(graphics.checkError(ErrorCheckLevel.PER_DRAW));
+        assertNull(graphics.checkError(ErrorCheckLevel.PARANOID));
+
+        graphics.setErrorCheckLevel(ErrorCheckLevel.PER_DRAW);
+        assertNull(graphics.checkError(ErrorCheckLevel.PARANOID));
+        assertEquals(GLConstants.GL_INVALID_OPERATION, graphics.checkError(ErrorCheckLevel.PER_DRAW).code);
+
+        graphics.raiseError(GLConstants.GL_INVALID_VALUE);
+        graphics.setErrorCheckLevel(ErrorCheckLevel.PARANOID);
+        assertEquals(GLConstants.GL_INVALID_VALUE, graphics.checkError(ErrorCheckLevel.PARANOID).code);
+
+        graphics.raiseError(GLConstants.GL_INVALID_VALUE);
+        graphics.setErrorCheckLevel(ErrorCheckLevel.OFF);
+        assertNull(graphics.checkError(ErrorCheckLevel.LOAD_ONLY));
+        graphics.clearErrors(ErrorCheckLevel.LOAD_ONLY);
+        graphics.setErrorCheckLevel(ErrorCheckLevel.LOAD_ONLY);
+        assertEquals(GLConstants.GL_INVALID_VALUE, graphics.checkError(ErrorCheckLevel.LOAD_ONLY).code);
+    }
+
+    @Test
+    public void errorCheckLevels_includeAllLowerLevels() {
+        final ErrorCheckLevel[] levels = ErrorCheckLevel.values();
+        for(final ErrorCheckLevel level : levels) {
+            assertFalse(level.includes(ErrorCheckLevel.OFF));
+            for(final ErrorCheckLevel check : levels)
+                if(check != ErrorCheckLevel.OFF)
+                    assertEquals(level.ordinal() >= check.ordinal(), level.includes(check));
+        }
+
+        assertTrue(ErrorCheckLevel.PER_DRAW.includes(ErrorCheckLevel.LOAD_ONLY));
+        assertFalse(ErrorCheckLevel.PER_DRAW.includes(ErrorCheckLevel.PARANOID));
+        assertFalse(ErrorCheckLevel.LOAD_ONLY.includes(ErrorCheckLevel.PER_DRAW));
+    }
+
+    @Test
+    public void frame_countsRedundantStateSeparately() {
+        final RecordingBackend graphics = new RecordingBackend();
+
+        graphics.beginFrame();
+        for(int draw = 0; draw < 10; draw++) {
+            graphics.useProgram(1);
+            graphics.enable(GLConstants.GL_DEPTH_TEST);
+            graphics.bindVertexArray(draw % 2 + 1);
+            graphics.drawElements(GLConstants.GL_TRIANGLES, 6, GLConstants.GL_UNSIGNED_SHORT, 0);
+        }
+
+        assertEquals(10, graphics.getFrameCount(RecordingBackend.Counter.DRAW_CALLS));
+        assertEquals(20, graphics.getFrameCount(RecordingBackend.Counter.BINDS));
+        // Program and depth test are set once, the vertex array alternates every draw
+        assertEquals(12, graphics.getFrameCount(RecordingBackend.Counter.STATE_CHANGES));
+        assertEquals(18, graphics.getFrameCount(RecordingBackend.Counter.REDUNDANT_CALLS));
+
+        graphics.beginFrame();
+        assertEquals(0, graphics.getFrameCount(RecordingBackend.Counter.DRAW_CALLS));
+        assertEquals(10, graphics.getTotalCount(RecordingBackend.Counter.DRAW_CALLS));
+    }
+
+    @Test(expected = AssertionError.class)
+    public void budget_failsWhenExceeded() {
+        final RecordingBackend graphics = new RecordingBackend();
+        graphics.beginFrame();
+        graphics.drawArrays(GLConstants.GL_TRIANGLES, 0, 3);
+        graphics.drawArrays(GLConstants.GL_TRIANGLES, 0, 3);
+        graphics.assertFrameBudget(RecordingBackend.Counter.DRAW_CALLS, 1);
+    }
+}
@@ -0,0 +1,85 @@
+package com.tembins.tagdk.graphics.batching;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks best fit allocation, alignment and merging of freed ranges.
+ */
+public class GpuHeapAllocatorTest {
+
+    @Test
+    public void allocations_arePackedFromTheStart() {
+        final GpuHeapAllocator heap = new GpuHeapAllocator(100);
+
+        assertEquals(0, heap.allocate(10));
+        assertEquals(10, heap.allocate(20));
+        assertEquals(30, heap.allocate(70));
+        assertEquals(-1, heap.allocate(1));
+        assertEquals(100, heap.getUsedSize());
+        assertEquals(0, heap.getFreeBlockCount());
+        assertEquals(20, heap.getSize(10));
+    }
+
+    @Test
+    public void freedRanges_areMerged() {
+        final GpuHeapAllocator heap = new GpuHeapAllocator(100);
+        final int a = heap.allocate(25), b = heap.allocate(25), c = heap.allocate(25);
+
+        heap.free(a);
+        heap.free(c);
+        assertEquals(2, heap.getFreeBlockCount());
+        assertEquals(50, heap.getLargestFreeBlock());
+
+        heap.free(b);
+        assertEquals(1, heap.getFreeBlockCount());
+        assertEquals(100, heap.getLargestFreeBlock());
+        assertEquals(0, heap.getAllocationCount());
+    }
+
+    @Test
+    public void allocate_picksTheBestFittingBlock() {
+        final GpuHeapAllocator heap = new GpuHeapAllocator(100);
+        final int a = heap.allocate(30);
+        heap.allocate(10);
+        final int c = heap.allocate(10);
+        heap.allocate(10);
+        heap.free(a);
+        heap.free(c);
+
+        // The 10 unit hole fits exactly, the 30 unit hole and the tail stay intact
+        assertEquals(c, heap.allocate(10));
+        assertEquals(a, heap.allocate(30));
+    }
+
+    @Test
+    public void alignedAllocations_keepThePaddingFree() {
+        final GpuHeapAllocator heap = new GpuHeapAllocator(64);
+        assertEquals(0, heap.allocate(3));
+
+        final int aligned = heap.allocate(8, 16);
+        assertEquals(16, aligned);
+        // The padding between 3 and 16 is the best fit for a range of 12
+        assertEquals(3, heap.allocate(12));
+        assertEquals(2, heap.getFreeBlockCount());
+    }
+
+    @Test
+    public void grow_extendsTheLastFreeBlock() {
+        final GpuHeapAllocator heap = new GpuHeapAllocator(10);
+        heap.allocate(6);
+        assertEquals(-1, heap.allocate(8));
+
+        heap.grow(20);
+        assertEquals(1, heap.getFreeBlockCount());
+        assertEquals(6, heap.allocate(8));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void freeingUnknownOffsets_fails() {
+        final GpuHeapAllocator heap = new GpuHeapAllocator(10);
+        heap.allocate(4);
+        heap.free(2);
+    }
+}
@@ -0,0 +1,74 @@
+package com.tembins.tagdk.graphics.batching;
+
+import com.tembins.tagdk.graphics.backend.RecordingBackend;
+import com.tembins.tagdk.graphics.resource.mesh.MeshData;
+import com.tembins.tagdk.math.Matrix4f;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Batches many small props against the recording backend and checks the issued draw calls.
+ */
+public class StaticBatchTest {
+
+    private static MeshData quad() {
+        return new MeshData(
+                new float[] { 0, 0, 0, 1, 0, 0, 1, 1, 0, 0, 1, 0 },
+                new float[] { 0, 0, 1, 0, 1, 1, 0, 1 },
+                new float[] { 0, 0, 1, 0, 0, 1, 0, 0, 1, 0, 0, 1 },
+                new short[] { 0, 1, 2, 0, 2, 3 });
+    }
+
+    private static Matrix4f translation(final float x, final float y, final float z) {
+        return new Matrix4f(1, 0, 0, x, 0, 1, 0, y, 0, 0, 1, z, 0, 0, 0, 1);
+    }
+
+    @Test
+    public void manyProps_needOneDrawCall() {
+        final RecordingBackend graphics = new RecordingBackend();
+        final StaticBatch batch = new StaticBatch(graphics, 4096, 6144);
+        final MeshData quad = quad();
+        for(int prop = 0; prop < 1000; prop++)
+            assertTrue(batch.add(quad, translation(prop, 0, 0)) >= 0);
+
+        graphics.beginFrame();
+        assertEquals(1, batch.draw());
+        graphics.assertFrameBudget(RecordingBackend.Counter.DRAW_CALLS, 1);
+        assertEquals(1000, batch.getObjectCount());
+    }
+
+    @Test
+    public void removedProps_splitAndRefillRanges() {
+        final RecordingBackend graphics = new RecordingBackend();
+        final StaticBatch batch = new StaticBatch(graphics, 16, 24);
+        final MeshData quad = quad();
+        final int[] handles = new int[4];
+        for(int prop = 0; prop < 4; prop++)
+            handles[prop] = batch.add(quad, translation(prop, 0, 0));
+        assertEquals(-1, batch.add(quad, translation(0, 0, 0)));
+
+        batch.remove(handles[1]);
+        assertEquals(2, batch.draw());
+
+        // The freed space is reused, closing the gap again
+        assertTrue(batch.add(quad, translation(5, 0, 0)) >= 0);
+        assertEquals(1, batch.draw());
+        assertEquals(2, batch.draw(new int[] { handles[3], handles[0] }, 2));
+    }
+
+    @Test
+    public void batcher_groupsByMaterial() {
+        final RecordingBackend graphics = new RecordingBackend();
+        final StaticBatcher batcher = new StaticBatcher(graphics, 64, 96);
+        final MeshData quad = quad();
+        for(int prop = 0; prop < 40; prop++)
+            batcher.add(prop % 2, quad, translation(prop, 0, 0));
+
+        // 20 quads per material need 80 vertices, which takes two batches of 64
+        assertEquals(2, batcher.getBatchCount(0));
+        assertEquals(2, batcher.draw(1));
+        assertEquals(0, batcher.draw(7));
+    }
+}
@@ -0,0 +1,113 @@
+package com.tembins.tagdk.graphics.culling;
+
+import com.tembins.tagdk.math.BoundingBox;
+import com.tembins.tagdk.math.Matrix4f;
+import com.tembins.tagdk.math.Vector3f;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Extracts the frustum of a camera at the origin looking down -z and culls boxes against it, one
+ * by one and as a batch.
+ */
+public class CullingBatchTest {
+
+    private static Frustum frustum() {
+        // 90 degrees field of view, near plane at 1 and far plane at 100
+        final float near = 1.0f, far = 100.0f;
+        final Frustum frustum = new Frustum();
+        frustum.set(new Matrix4f(
+                1.0f, 0.0f, 0.0f, 0.0f,
+                0.0f, 1.0f, 0.0f, 0.0f,
+                0.0f, 0.0f, (far + near) / (near - far), 2.0f * far * near / (near - far),
+                0.0f, 0.0f, -1.0f, 0.0f));
+        return frustum;
+    }
+
+    @Test
+    public void planes_areNormalizedAndFaceInwards() {
+        final Frustum frustum = frustum();
+
+        for(int plane = 0; plane < Frustum.PLANE_COUNT; plane++) {
+            final float a = frustum.getPlane(plane, 0), b = frustum.getPlane(plane, 1), c = frustum.getPlane(plane, 2);
+            assertEquals(1.0f, a * a + b * b + c * c, 1e-5f);
+        }
+        // The near plane faces -z at distance 1, the far plane faces +z at distance 100
+        assertEquals(-1.0f, frustum.getPlane(Frustum.NEAR, 2), 1e-5f);
+        assertEquals(-1.0f, frustum.getPlane(Frustum.NEAR, 3), 1e-4f);
+        assertEquals(100.0f, frustum.getPlane(Frustum.FAR, 3), 1e-2f);
+        assertTrue(frustum.getPlane(Frustum.LEFT, 0) > 0.0f);
+    }
+
+    @Test
+    public void frustum_testsSpheresAndBoxes() {
+        final Frustum frustum = frustum();
+
+        assertTrue(frustum.testSphere(0.0f, 0.0f, -10.0f, 1.0f));
+        assertFalse(frustum.testSphere(0.0f, 0.0f, 10.0f, 1.0f));
+        assertFalse(frustum.testSphere(0.0f, 0.0f, -110.0f, 5.0f));
+        // The center is outside, but the sphere reaches into the frustum
+        assertTrue(frustum.testSphere(12.0f, 0.0f, -10.0f, 2.0f));
+
+        assertTrue(frustum.testBox(-1.0f, -1.0f, -11.0f, 1.0f, 1.0f, -9.0f));
+        assertFalse(frustum.testBox(20.0f, -1.0f, -11.0f, 22.0f, 1.0f, -9.0f));
+        // Crossing the near plane is visible, lying between it and the camera is not
+        assertTrue(frustum.testBox(-1.0f, -1.0f, -2.0f, 1.0f, 1.0f, 0.0f));
+        assertFalse(frustum.testBox(-1.0f, -1.0f, -0.5f, 1.0f, 1.0f, 0.5f));
+        assertTrue(new Frustum().testBox(1000.0f, 1000.0f, 1000.0f, 1001.0f, 1001.0f, 1001.0f));
+    }
+
+    @Test
+    public void batch_matchesSingleTests() {
+        final Frustum frustum = frustum();
+        final CullingBatch batch = new CullingBatch(4);
+        final float[] boxes = new float[500 * 6];
+        final Random random = new Random(3);
+        for(int box = 0; box < 500; box++) {
+            final float x = random.nextFloat() * 200.0f - 100.0f, y = random.nextFloat() * 200.0f - 100.0f;
+            final float z = random.nextFloat() * 200.0f - 150.0f, size = random.nextFloat() * 5.0f;
+            boxes[box * 6] = x;
+            boxes[box * 6 + 1] = y;
+            boxes[box * 6 + 2] = z;
+            boxes[box * 6 + 3] = x + size;
+            boxes[box * 6 + 4] = y + size;
+            boxes[box * 6 + 5] = z + size;
+            assertEquals(box, batch.add(x, y, z, x + size, y + size, z + size));
+        }
+
+        final int[] visible = new int[batch.size()];
+        final int visibleCount = batch.cull(frustum, visible);
+        int expected = 0;
+        for(int box = 0; box < 500; box++) {
+            if(frustum.testBox(boxes[box * 6], boxes[box * 6 + 1], boxes[box * 6 + 2],
+                    boxes[box * 6 + 3], boxes[box * 6 + 4], boxes[box * 6 + 5]))
+                assertEquals(box, visible[expected++]);
+        }
+        assertEquals(expected, visibleCount);
+        assertTrue(visibleCount > 0 && visibleCount < 500);
+    }
+
+    @Test
+    public void set_movesObject() {
+        final Frustum frustum = frustum();
+        final CullingBatch batch = new CullingBatch(1);
+        batch.add(new BoundingBox(new Vector3f(-1.0f, -1.0f, -11.0f), new Vector3f(1.0f, 1.0f, -9.0f)));
+        final int[] visible = new int[1];
+        assertEquals(1, batch.cull(frustum, visible));
+
+        batch.set(0, -1.0f, -1.0f, 9.0f, 1.0f, 1.0f, 11.0f);
+        assertEquals(0, batch.cull(frustum, visible));
+
+        batch.clear();
+        assertEquals(0, batch.size());
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void set_rejectsInvalidIndex() {
+        new CullingBatch(4).set(0, 0.0f, 0.0f, 0.0f, 1.0f, 1.0f, 1.0f);
+    }
+}
@@ -0,0 +1,98 @@
+package com.tembins.tagdk.graphics.culling;
+
+import com.tembins.tagdk.jobs.JobSystem;
+import com.tembins.tagdk.loop.Clock;
+import com.tembins.tagdk.math.Matrix4f;
+import com.tembins.tagdk.profiling.FrameProfiler;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Rasterizes walls in front of a camera at the origin looking down -z and tests boxes around them.
+ */
+public class OcclusionCullerTest {
+
+    private static Matrix4f perspective(final float near, final float far) {
+        // 90 degrees vertical field of view, aspect ratio 2 like the default depth buffer
+        return new Matrix4f(
+                0.5f, 0.0f, 0.0f, 0.0f,
+                0.0f, 1.0f, 0.0f, 0.0f,
+                0.0f, 0.0f, (far + near) / (near - far), 2.0f * far * near / (near - far),
+                0.0f, 0.0f, -1.0f, 0.0f);
+    }
+
+    private static void addWall(final OcclusionCuller culler, final float minX, final float maxX, final float z) {
+        culler.addOccluder(new float[] { minX, -50.0f, z, maxX, -50.0f, z, maxX, 50.0f, z, minX, 50.0f, z },
+                new short[] { 0, 1, 2, 0, 2, 3 });
+    }
+
+    @Test
+    public void boxes_behindWallAreOccluded() {
+        final OcclusionCuller culler = new OcclusionCuller();
+        addWall(culler, -5.0f, 5.0f, -10.0f);
+        culler.render(perspective(0.1f, 100.0f), null);
+
+        assertFalse(culler.isVisible(-1.0f, -1.0f, -16.0f, 1.0f, 1.0f, -14.0f));
+        assertTrue(culler.isVisible(-1.0f, -1.0f, -6.0f, 1.0f, 1.0f, -5.0f));
+        // Intersecting the wall, so partially in front of it
+        assertTrue(culler.isVisible(-1.0f, -1.0f, -11.0f, 1.0f, 1.0f, -9.0f));
+        // Behind the wall but visible past its side
+        assertTrue(culler.isVisible(8.0f, -1.0f, -21.0f, 10.0f, 1.0f, -19.0f));
+        // Crossing the near plane
+        assertTrue(culler.isVisible(-1.0f, -1.0f, -1.0f, 1.0f, 1.0f, 1.0f));
+        assertEquals(1.0f, culler.getDepth(0, 0), 0.0f);
+        assertTrue(culler.getDepth(128, 64) < 1.0f);
+    }
+
+    @Test
+    public void occludersBehindCamera_areSkipped() {
+        final OcclusionCuller culler = new OcclusionCuller();
+        addWall(culler, -5.0f, 5.0f, 10.0f);
+        culler.render(perspective(0.1f, 100.0f), null);
+
+        assertTrue(culler.isVisible(-1.0f, -1.0f, -16.0f, 1.0f, 1.0f, -14.0f));
+    }
+
+    @Test
+    public void cull_matchesOnJobSystem() {
+        final OcclusionCuller culler = new OcclusionCuller();
+        addWall(culler, -20.0f, 0.0f, -10.0f);
+        addWall(culler, 2.0f, 30.0f, -30.0f);
+
+        final CullingBatch batch = new CullingBatch(64);
+        for(int row = 0; row < 8; row++)
+            for(int column = 0; column < 8; column++)
+                batch.add(column * 4.0f - 16.0f, -1.0f, -5.0f - row * 6.0f,
+                        column * 4.0f - 15.0f, 1.0f, -4.0f - row * 6.0f);
+
+        final int[] serial = new int[batch.size()];
+        for(int index = 0; index < serial.length; index++)
+            serial[index] = index;
+        final int[] parallel = serial.clone();
+
+        culler.render(perspective(0.1f, 100.0f), null);
+        final int serialCount = culler.cull(batch, serial, serial.length, null);
+        assertTrue(serialCount > 0 && serialCount < batch.size());
+
+        final FrameProfiler profiler = new FrameProfiler("main", 16, 4, Clock.SYSTEM);
+        culler.setProfiler(profiler);
+        final JobSystem jobs = new JobSystem(3);
+        try {
+            profiler.beginFrame();
+            culler.render(perspective(0.1f, 100.0f), jobs);
+            assertEquals(serialCount, culler.cull(batch, parallel, parallel.length, jobs));
+            profiler.endFrame();
+        } finally {
+            jobs.shutdown();
+        }
+
+        for(int index = 0; index < serialCount; index++)
+            assertEquals(serial[index], parallel[index]);
+        assertEquals(batch.size() - serialCount, culler.getLastCulledCount());
+        assertEquals(batch.size(), profiler.getFrameCounter(0, FrameProfiler.Counter.OCCLUSION_TESTED));
+        assertEquals(batch.size() - serialCount, profiler.getFrameCounter(0, FrameProfiler.Counter.OCCLUSION_CULLED));
+        assertEquals(2, profiler.getEventCount());
+    }
+}
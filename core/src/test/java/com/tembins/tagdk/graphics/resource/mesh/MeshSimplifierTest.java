@@ -0,0 +1,147 @@
+package com.tembins.tagdk.graphics.resource.mesh;
+
+import com.tembins.tagdk.graphics.culling.LodSelector;
+import com.tembins.tagdk.math.Matrix4f;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+/**
+ * Simplifies generated grids and spheres and checks the index counts, errors and level selection.
+ */
+public class MeshSimplifierTest {
+
+    private static float[] gridPositions(final int size) {
+        final float[] positions = new float[(size + 1) * (size + 1) * 3];
+        for(int y = 0; y <= size; y++) {
+            for(int x = 0; x <= size; x++) {
+                final int vertex = y * (size + 1) + x;
+                positions[vertex * 3] = x;
+                positions[vertex * 3 + 2] = y;
+            }
+        }
+        return positions;
+    }
+
+    private static short[] gridIndices(final int width, final int height, final int stride) {
+        final short[] indices = new short[width * height * 6];
+        int index = 0;
+        for(int y = 0; y < height; y++) {
+            for(int x = 0; x < width; x++) {
+                final int corner = y * stride + x;
+                indices[index++] = (short) corner;
+                indices[index++] = (short) (corner + stride);
+                indices[index++] = (short) (corner + stride + 1);
+                indices[index++] = (short) corner;
+                indices[index++] = (short) (corner + stride + 1);
+                indices[index++] = (short) (corner + 1);
+            }
+        }
+        return indices;
+    }
+
+    private static float[] spherePositions(final int rings, final int segments) {
+        // Every ring has segments + 1 vertices with the last one duplicating the first, like a UV seam
+        final float[] positions = new float[(rings + 1) * (segments + 1) * 3];
+        for(int ring = 0; ring <= rings; ring++) {
+            final double polar = Math.PI * ring / rings;
+            for(int segment = 0; segment <= segments; segment++) {
+                final double azimuth = 2.0 * Math.PI * (segment % segments) / segments;
+                final int vertex = ring * (segments + 1) + segment;
+                positions[vertex * 3] = (float) (Math.sin(polar) * Math.cos(azimuth));
+                positions[vertex * 3 + 1] = (float) Math.cos(polar);
+                positions[vertex * 3 + 2] = (float) (Math.sin(polar) * Math.sin(azimuth));
+            }
+        }
+        return positions;
+    }
+
+    private static short[] removeDegenerate(final float[] positions, final short[] indices) {
+        // The pole rings collapse to single points, so their triangles have no area
+        final short[] kept = new short[indices.length];
+        int count = 0;
+        for(int triangle = 0; triangle < indices.length; triangle += 3) {
+            boolean degenerate = false;
+            for(int corner = 0; corner < 3; corner++) {
+                final int a = indices[triangle + corner], b = indices[triangle + (corner + 1) % 3];
+                degenerate |= Math.abs(positions[a * 3] - positions[b * 3]) < 1e-6f
+                        && Math.abs(positions[a * 3 + 1] - positions[b * 3 + 1]) < 1e-6f
+                        && Math.abs(positions[a * 3 + 2] - positions[b * 3 + 2]) < 1e-6f;
+            }
+            if(!degenerate) {
+                System.arraycopy(indices, triangle, kept, count, 3);
+                count += 3;
+            }
+        }
+        return Arrays.copyOf(kept, count);
+    }
+
+    @Test
+    public void flatGrid_collapsesWithoutError() {
+        final float[] positions = gridPositions(16);
+        final short[] indices = gridIndices(16, 16, 17);
+        final float[] error = new float[1];
+
+        final short[] simplified = new MeshSimplifier(positions, indices).simplify(indices, 6 * 16, 0.01f, error);
+
+        assertTrue(simplified.length <= 6 * 16);
+        assertEquals(0.0f, error[0], 1e-4f);
+
+        // The border only moves along itself, so the corners remain and the area is unchanged
+        double area = 0.0;
+        for(int triangle = 0; triangle < simplified.length; triangle += 3) {
+            final int a = simplified[triangle], b = simplified[triangle + 1], c = simplified[triangle + 2];
+            area += Math.abs((positions[b * 3] - positions[a * 3]) * (positions[c * 3 + 2] - positions[a * 3 + 2])
+                    - (positions[c * 3] - positions[a * 3]) * (positions[b * 3 + 2] - positions[a * 3 + 2])) / 2.0;
+        }
+        assertEquals(256.0, area, 1e-3);
+    }
+
+    @Test
+    public void sphereLods_reduceTrianglesWithGrowingError() {
+        final float[] positions = spherePositions(24, 48);
+        final short[] indices = removeDegenerate(positions, gridIndices(48, 24, 49));
+        final MeshLods lods = MeshLods.generate(positions, indices, 5, 0.5f, 0.2f);
+
+        assertTrue(lods.getLodCount() >= 4);
+        assertEquals(0.0f, lods.getError(0), 0.0f);
+        assertEquals(indices.length, lods.getIndexCount(0));
+        for(int lod = 1; lod < lods.getLodCount(); lod++) {
+            assertTrue(lods.getIndexCount(lod) <= lods.getIndexCount(lod - 1) * 0.9f);
+            assertTrue(lods.getError(lod) >= lods.getError(lod - 1));
+            assertTrue(lods.getError(lod) <= 0.2f);
+            assertEquals(lods.getIndexOffset(lod - 1) + lods.getIndexCount(lod - 1), lods.getIndexOffset(lod));
+        }
+        for(final short index : lods.indices)
+            assertTrue((index & 0xFFFF) < positions.length / 3);
+    }
+
+    @Test
+    public void seamVertices_stayInPlace() {
+        // Two quads sharing an edge by position only, as with different texture coordinates
+        final float[] positions = { 0, 0, 0, 1, 0, 0, 1, 0, 1, 0, 0, 1, 1, 0, 0, 2, 0, 0, 2, 0, 1, 1, 0, 1 };
+        final short[] indices = { 0, 3, 2, 0, 2, 1, 4, 7, 6, 4, 6, 5 };
+
+        // The seam vertices are locked and moving a corner along the border costs its full distance
+        final short[] simplified = new MeshSimplifier(positions, indices).simplify(indices, 0, 0.5f, null);
+        assertArrayEquals(indices, simplified);
+    }
+
+    @Test
+    public void selector_picksCoarserLevelsWithDistance() {
+        final MeshLods lods = new MeshLods(new short[12], new int[] { 0, 6, 9, 12 }, new float[] { 0.0f, 0.01f, 0.1f });
+        final LodSelector selector = new LodSelector(1.0f);
+        final Matrix4f identity = new Matrix4f(1, 0, 0, 0, 0, 1, 0, 0, 0, 0, 1, 0, 0, 0, 0, 1);
+        // A 90 degree vertical field of view, so the projection scale is half the viewport height
+        selector.set(identity, identity, 1000);
+
+        assertEquals(0, selector.select(lods, 0.0f, 0.0f, -2.0f, 1.0f, 1.0f));
+        assertEquals(1, selector.select(lods, 0.0f, 0.0f, -10.0f, 1.0f, 1.0f));
+        assertEquals(2, selector.select(lods, 0.0f, 0.0f, -100.0f, 1.0f, 1.0f));
+        assertEquals(1, selector.select(lods, 0.0f, 0.0f, -100.0f, 1.0f, 10.0f));
+        assertEquals(0, selector.select(lods, 0.0f, 0.0f, 5.0f, 1.0f, 1.0f));
+    }
+}
@@ -0,0 +1,75 @@
+package com.tembins.tagdk.graphics.resource.mesh;
+
+import org.junit.Test;
+
+import java.io.IOException;
+
+import static org.junit.Assert.*;
+
+/**
+ * Parses small OBJ sources and checks the deduplicated vertices and the triangulated indices.
+ */
+public class ObjParserTest {
+
+    private static final String SQUARE_POSITIONS = "v 0 0 0\nv 1 0 0\nv 1 1 0\nv 0 1 0\n";
+
+    @Test
+    public void polygons_areTriangulatedAsFan() throws IOException {
+        final MeshData mesh = ObjParser.parse(SQUARE_POSITIONS + "v 0.5 1.5 0\nf 1 2 3 5 4\n");
+
+        assertEquals(5 * 3, mesh.positions.length);
+        assertArrayEquals(new short[] { 0, 1, 2, 0, 2, 3, 0, 3, 4 }, mesh.indices);
+        // The fifth corner references the fourth position
+        assertEquals(0.5f, mesh.positions[3 * 3], 0.0f);
+        assertEquals(1.5f, mesh.positions[3 * 3 + 1], 0.0f);
+    }
+
+    @Test
+    public void negativeIndices_areRelative() throws IOException {
+        final MeshData mesh = ObjParser.parse(SQUARE_POSITIONS + "vt 0.25 0.75\nvn 0 0 1\nf -4/-1/-1 -3/-1/-1 -2/-1/-1\n");
+
+        assertArrayEquals(new short[] { 0, 1, 2 }, mesh.indices);
+        assertEquals(1.0f, mesh.positions[2 * 3 + 1], 0.0f);
+        assertEquals(0.75f, mesh.textureCoordinates[1], 0.0f);
+        assertEquals(1.0f, mesh.normals[2], 0.0f);
+    }
+
+    @Test
+    public void sharedCorners_areDeduplicated() throws IOException {
+        final MeshData mesh = ObjParser.parse(SQUARE_POSITIONS + "vt 0 0\nvt 1 1\n"
+                + "f 1/1 2/1 3/1\nf 1/1 3/1 4/1\nf 1/2 2/2 3/2\n");
+
+        // Position 1 with texture coordinate 2 is a different vertex than with coordinate 1
+        assertEquals(7 * 3, mesh.positions.length);
+        assertArrayEquals(new short[] { 0, 1, 2, 0, 2, 3, 4, 5, 6 }, mesh.indices);
+    }
+
+    @Test
+    public void missingAttributes_areZero() throws IOException {
+        final MeshData mesh = ObjParser.parse("# comment\no object\n" + SQUARE_POSITIONS + "vn 0 1 0\nf 1//1 2//1 3//1\n");
+
+        assertEquals(3 * 2, mesh.textureCoordinates.length);
+        assertEquals(0.0f, mesh.textureCoordinates[4], 0.0f);
+        assertEquals(1.0f, mesh.normals[7], 0.0f);
+    }
+
+    @Test(expected = IOException.class)
+    public void malformedNumber_isRejected() throws IOException {
+        ObjParser.parse("v 0 zero 0\n");
+    }
+
+    @Test(expected = IOException.class)
+    public void missingComponent_isRejected() throws IOException {
+        ObjParser.parse("v 0 0\n");
+    }
+
+    @Test(expected = IOException.class)
+    public void degenerateFace_isRejected() throws IOException {
+        ObjParser.parse(SQUARE_POSITIONS + "f 1 2\n");
+    }
+
+    @Test(expected = IOException.class)
+    public void outOfRangeIndex_isRejected() throws IOException {
+        ObjParser.parse(SQUARE_POSITIONS + "f 1 2 5\n");
+    }
+}
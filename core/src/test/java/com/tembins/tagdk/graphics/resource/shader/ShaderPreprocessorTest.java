@@ -0,0 +1,165 @@
+package com.tembins.tagdk.graphics.resource.shader;
+
+import com.tembins.tagdk.graphics.backend.RecordingBackend;
+import com.tembins.tagdk.graphics.resource.tasks.ResourceLoadingException;
+import com.tembins.tagdk.util.resource.ImageData;
+import com.tembins.tagdk.util.resource.ResourceProvider;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.util.HashMap;
+
+import static org.junit.Assert.*;
+
+/**
+ * Preprocesses in-memory shader sources and compiles variants against the recording backend.
+ */
+public class ShaderPreprocessorTest {
+
+    private static final int VERTEX_SHADER = 1;
+    private static final int FRAGMENT_SHADER = 2;
+    private static final int LIGHTING = 3;
+
+    private static final class FakeResources implements ResourceProvider {
+
+        private final HashMap<Integer, String> sources = new HashMap<>();
+        private int openCount;
+
+        @Override
+        public InputStream openResource(final int resourceID) throws IOException {
+            final String source = sources.get(resourceID);
+            if(source == null)
+                throw new IOException("Unknown resource " + resourceID);
+
+            openCount++;
+            return new ByteArrayInputStream(source.getBytes(Charset.forName("UTF-8")));
+        }
+
+        @Override
+        public ImageData decodeImage(final int resourceID) throws IOException {
+            throw new IOException("No images");
+        }
+    }
+
+    private static FakeResources createResources() {
+        final FakeResources resources = new FakeResources();
+        resources.sources.put(VERTEX_SHADER, "#version 300 es\n#include \"common\"\nvoid main() { }\n");
+        resources.sources.put(FRAGMENT_SHADER, "#version 300 es\n#include \"common\"\n#include <lighting>\n"
+                + "#ifdef FOG\nvec3 fog;\n#endif\nvoid main() { }");
+        resources.sources.put(LIGHTING, "#include \"common\"\nvec3 light() { return vec3(1.0); }\n");
+        return resources;
+    }
+
+    private static ShaderPreprocessor createPreprocessor() {
+        final ShaderPreprocessor preprocessor = new ShaderPreprocessor();
+        preprocessor.addInclude("common", "precision mediump float;\n#include \"lighting\"");
+        preprocessor.addInclude("lighting", LIGHTING);
+        return preprocessor;
+    }
+
+    @Test
+    public void includes_areExpandedOnce() throws IOException {
+        final String source = createPreprocessor().preprocess(createResources(), FRAGMENT_SHADER);
+
+        assertEquals("#version 300 es\n#line 1 1\nprecision mediump float;\n"
+                + "#line 2 2\nvec3 light() { return vec3(1.0); }\n"
+                + "#line 4 0\n#ifdef FOG\nvec3 fog;\n#endif\nvoid main() { }\n", source);
+    }
+
+    @Test
+    public void lines_areResyncedAfterIncludes() throws IOException {
+        final ShaderPreprocessor preprocessor = new ShaderPreprocessor();
+        preprocessor.addInclude("noise", "float noise() {\n    return 0.5;\n}\n");
+
+        final String source = preprocessor.preprocess(createResources(),
+                "#version 100\n#include \"noise\"\nvoid main() { }\n#includeNoise\n", "FOG");
+        // GLSL ES 1.00 numbers the line after #line n as n + 1
+        assertEquals("#version 100\n#define FOG 1\n#line 1\n"
+                + "#line 0 1\nfloat noise() {\n    return 0.5;\n}\n"
+                + "#line 2 0\nvoid main() { }\n#includeNoise\n", source);
+    }
+
+    @Test
+    public void defines_followVersion() throws IOException {
+        final String source = createPreprocessor().preprocess(createResources(),
+                "#version 300 es\r\nvoid main() { }", "FOG", "MAX_LIGHTS 4");
+
+        assertEquals("#version 300 es\r\n#define FOG 1\n#define MAX_LIGHTS 4\n#line 2\nvoid main() { }\n", source);
+        // Without a version the shader is GLSL ES 1.00, where #line numbers the line after it
+        assertEquals("#define SKINNING 1\n#line 0\nvoid main() { }\n",
+                createPreprocessor().preprocess(createResources(), "void main() { }", "SKINNING"));
+    }
+
+    @Test
+    public void defines_followVersionAfterComments() throws IOException {
+        final String source = createPreprocessor().preprocess(createResources(),
+                "// Lit surface\n\n/* #version 100\n */ #version 300 es\nvoid main() { }", "FOG");
+
+        assertEquals("// Lit surface\n\n/* #version 100\n */ #version 300 es\n"
+                + "#define FOG 1\n#line 5\nvoid main() { }\n", source);
+        assertEquals("// Lit surface\n#version 100\n#define FOG 1\n#line 2\nvoid main() { }\n",
+                createPreprocessor().preprocess(createResources(),
+                        "// Lit surface\n#version 100\nvoid main() { }", "FOG"));
+    }
+
+    @Test
+    public void defines_splitOnAnyWhitespace() throws IOException {
+        final String source = createPreprocessor().preprocess(createResources(),
+                "#version 300 es\nvoid main() { }", "MAX_LIGHTS\t4", " FOG\t", "SCALE \t 0.5 ");
+
+        assertEquals("#version 300 es\n#define MAX_LIGHTS 4\n#define FOG 1\n#define SCALE 0.5\n"
+                + "#line 2\nvoid main() { }\n", source);
+    }
+
+    @Test
+    public void preprocessedSources_areCached() throws IOException {
+        final FakeResources resources = createResources();
+        final ShaderPreprocessor preprocessor = createPreprocessor();
+
+        final String fog = preprocessor.preprocess(resources, FRAGMENT_SHADER, "FOG");
+        assertSame(fog, preprocessor.preprocess(resources, FRAGMENT_SHADER, "FOG"));
+        assertNotEquals(fog, preprocessor.preprocess(resources, FRAGMENT_SHADER));
+        // The shader and its include were read once each
+        assertEquals(2, resources.openCount);
+        assertEquals(2, preprocessor.getCachedSourceCount());
+    }
+
+    @Test(expected = IOException.class)
+    public void unknownInclude_fails() throws IOException {
+        createPreprocessor().preprocess(createResources(), "#include \"missing\"\n");
+    }
+
+    @Test
+    public void variants_compileOncePerMask() throws ResourceLoadingException {
+        final FakeResources resources = createResources();
+        final RecordingBackend graphics = new RecordingBackend();
+        final ShaderVariants variants = new ShaderVariants(createPreprocessor(),
+                VERTEX_SHADER, FRAGMENT_SHADER, "FOG", "SKINNING", "NORMAL_MAP");
+
+        final int fogSkinning = variants.getFeatureMask("SKINNING", "FOG");
+        assertEquals(3, fogSkinning);
+        assertArrayEquals(new String[] { "FOG", "SKINNING" }, variants.getDefines(fogSkinning));
+
+        variants.prewarm(resources, graphics, 0, fogSkinning);
+        final long created = graphics.getTotalCount(RecordingBackend.Counter.CREATED_OBJECTS);
+        assertEquals(2, variants.getCompiledCount());
+        assertTrue(variants.isCompiled(fogSkinning));
+        assertFalse(variants.isCompiled(variants.getFeatureMask("NORMAL_MAP")));
+
+        final int program = variants.getProgram(resources, graphics, fogSkinning);
+        assertEquals(program, variants.getProgram(resources, graphics, fogSkinning));
+        assertEquals(created, graphics.getTotalCount(RecordingBackend.Counter.CREATED_OBJECTS));
+
+        variants.release(graphics);
+        assertEquals(0, variants.getCompiledCount());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void undefinedFeatureBits_areRejected() {
+        new ShaderVariants(new ShaderPreprocessor(), VERTEX_SHADER, FRAGMENT_SHADER, "FOG").getDefines(2);
+    }
+}
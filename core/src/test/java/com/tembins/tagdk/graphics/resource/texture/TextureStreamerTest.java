@@ -0,0 +1,171 @@
+package com.tembins.tagdk.graphics.resource.texture;
+
+import com.tembins.tagdk.graphics.backend.RecordingBackend;
+import com.tembins.tagdk.util.resource.ImageData;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+
+import static org.junit.Assert.*;
+
+/**
+ * Drives the texture streamer against the recording backend to check its budgets and priorities
+ * without a GPU.
+ */
+public class TextureStreamerTest {
+
+    private static final int FULL_SIZE = 256 * 256 * 4;
+
+    private final RecordingBackend graphics = new RecordingBackend();
+
+    private StreamingTexture addTexture(final TextureStreamer streamer) {
+        final int textureID = graphics.createTexture();
+        return streamer.add(textureID, MipChain.generate(new ImageData(256, 256, ByteBuffer.allocateDirect(FULL_SIZE))));
+    }
+
+    private void runFrame(final TextureStreamer streamer, final StreamingTexture texture, final float size) {
+        graphics.beginFrame();
+        texture.requestSize(size);
+        streamer.update();
+    }
+
+    @Test
+    public void mipChain_averagesDownTo1x1() {
+        final ByteBuffer pixels = ByteBuffer.allocate(2 * 2 * 4);
+        pixels.put(new byte[] { 0, 0, 0, 0, 4, 8, 12, (byte) 200, 0, 0, 0, 0, 4, 8, 12, (byte) 200 }).flip();
+
+        final ImageData[] levels = MipChain.generate(new ImageData(2, 2, pixels));
+        assertEquals(2, levels.length);
+        assertEquals(1, levels[1].width);
+        assertEquals(2, levels[1].pixels.get(0));
+        assertEquals(100, levels[1].pixels.get(3) & 0xFF);
+
+        final ImageData[] oblong = MipChain.generate(new ImageData(8, 2, ByteBuffer.allocate(8 * 2 * 4)));
+        assertEquals(4, oblong.length);
+        assertEquals(1, oblong[3].width);
+        assertEquals(1, oblong[3].height);
+    }
+
+    @Test
+    public void add_uploadsOnlyTheTail() {
+        final TextureStreamer streamer = new TextureStreamer(graphics, 64 * 1024, 1 << 20);
+        final StreamingTexture texture = addTexture(streamer);
+
+        // Levels of 32x32 and smaller are the tail of a 256x256 texture
+        assertEquals(3, texture.getTailLevel());
+        assertEquals(3, texture.getResidentLevel());
+        assertEquals(graphics.getAllocatedBytes(), streamer.getResidentBytes());
+        assertTrue(streamer.getResidentBytes() < 32 * 32 * 4 * 2);
+    }
+
+    @Test
+    public void uploads_respectTheFrameBudget() {
+        final TextureStreamer streamer = new TextureStreamer(graphics, 16 * 1024, 1 << 20);
+        final StreamingTexture texture = addTexture(streamer);
+
+        int frames = 0;
+        while(texture.getResidentLevel() > 0) {
+            runFrame(streamer, texture, 300.0f);
+            graphics.assertFrameBudget(RecordingBackend.Counter.UPLOADED_BYTES, 16 * 1024);
+            assertTrue(++frames < 100);
+        }
+
+        // The 256x256 level alone takes 16 frames, levels 2 and 1 take 5 more
+        assertEquals(21, frames);
+        assertEquals(graphics.getAllocatedBytes(), streamer.getResidentBytes());
+    }
+
+    @Test
+    public void desiredLevel_followsScreenSize() {
+        final TextureStreamer streamer = new TextureStreamer(graphics, 1 << 20, 1 << 20);
+        final StreamingTexture texture = addTexture(streamer);
+
+        runFrame(streamer, texture, 70.0f);
+        assertEquals(1, texture.getDesiredLevel());
+        assertEquals(1, texture.getResidentLevel());
+
+        runFrame(streamer, texture, 0.0f);
+        assertEquals(texture.getTailLevel(), texture.getDesiredLevel());
+        // Without memory pressure, levels are kept in case the texture comes back into view
+        assertEquals(1, texture.getResidentLevel());
+    }
+
+    @Test
+    public void largerTextures_areUploadedFirst() {
+        final TextureStreamer streamer = new TextureStreamer(graphics, 64 * 64 * 4, 1 << 20);
+        final StreamingTexture near = addTexture(streamer);
+        final StreamingTexture far = addTexture(streamer);
+
+        graphics.beginFrame();
+        near.requestSize(256.0f);
+        far.requestSize(64.0f);
+        streamer.update();
+
+        assertEquals(2, near.getResidentLevel());
+        assertEquals(3, far.getResidentLevel());
+    }
+
+    @Test
+    public void memoryPressure_dropsLeastMagnifiedLevels() {
+        final TextureStreamer streamer = new TextureStreamer(graphics, 1 << 20, 1 << 20);
+        final StreamingTexture near = addTexture(streamer);
+        final StreamingTexture far = addTexture(streamer);
+
+        graphics.beginFrame();
+        near.requestSize(256.0f);
+        far.requestSize(256.0f);
+        streamer.update();
+        assertEquals(0, near.getResidentLevel());
+        assertEquals(0, far.getResidentLevel());
+        final long peak = streamer.getPeakResidentBytes();
+
+        streamer.setMemoryBudget(2 * FULL_SIZE);
+        graphics.beginFrame();
+        near.requestSize(256.0f);
+        far.requestSize(100.0f);
+        streamer.update();
+
+        assertEquals(0, near.getResidentLevel());
+        assertEquals(1, far.getResidentLevel());
+        assertTrue(streamer.getResidentBytes() <= 2 * FULL_SIZE);
+        assertEquals(graphics.getAllocatedBytes(), streamer.getResidentBytes());
+        assertEquals(peak, streamer.getPeakResidentBytes());
+    }
+
+    @Test
+    public void uploads_replaceOnlyExcessLevels() {
+        final TextureStreamer streamer = new TextureStreamer(graphics, 1 << 20, 2 * FULL_SIZE);
+        final StreamingTexture first = addTexture(streamer);
+        final StreamingTexture second = addTexture(streamer);
+
+        runFrame(streamer, first, 256.0f);
+        assertEquals(0, first.getResidentLevel());
+
+        // The first texture went out of view, so its full level makes room for the second one
+        runFrame(streamer, second, 256.0f);
+        assertEquals(0, second.getResidentLevel());
+        assertEquals(1, first.getResidentLevel());
+
+        // Both are needed now and the budget holds no second full level, so nothing changes
+        graphics.beginFrame();
+        first.requestSize(256.0f);
+        second.requestSize(256.0f);
+        streamer.update();
+        assertEquals(1, first.getResidentLevel());
+        assertEquals(0, second.getResidentLevel());
+        assertEquals(0, graphics.getFrameCount(RecordingBackend.Counter.UPLOADED_BYTES));
+    }
+
+    @Test
+    public void remove_releasesAllLevels() {
+        final TextureStreamer streamer = new TextureStreamer(graphics, 1 << 20, 1 << 20);
+        final StreamingTexture texture = addTexture(streamer);
+        runFrame(streamer, texture, 256.0f);
+
+        streamer.remove(texture);
+        assertEquals(0, streamer.getResidentBytes());
+        assertEquals(0, graphics.getAllocatedBytes());
+        assertEquals(0, streamer.getTextureCount());
+    }
+}
@@ -0,0 +1,165 @@
+package com.tembins.tagdk.graphics.target;
+
+import com.tembins.tagdk.graphics.backend.GLConstants;
+import com.tembins.tagdk.graphics.backend.RecordingBackend;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Drives the resolution controller with synthetic frame time traces, in which the resolution
+ * dependent part of a frame scales with the pixel count, and checks the pooled render targets.
+ */
+public class DynamicResolutionTest {
+
+    private static final long MILLISECOND = 1000000L;
+    private static final long TARGET = 16 * MILLISECOND;
+    private static final long FIXED_COST = 2 * MILLISECOND;
+
+    private static long frameTime(final long fullCost, final float scale) {
+        return FIXED_COST + (long) ((fullCost - FIXED_COST) * scale * scale);
+    }
+
+    @Test
+    public void lightLoad_keepsFullResolution() {
+        final ResolutionController controller = new ResolutionController(TARGET, 0.5f, 1.0f);
+        for(int frame = 0; frame < 300; frame++)
+            controller.update(frameTime(10 * MILLISECOND, controller.getScale()));
+
+        assertEquals(1.0f, controller.getScale(), 0.0f);
+    }
+
+    @Test
+    public void overload_convergesToTarget() {
+        final ResolutionController controller = new ResolutionController(TARGET, 0.5f, 1.0f);
+        final Random random = new Random(7);
+        float minScale = 1.0f, maxScale = 0.0f;
+        for(int frame = 0; frame < 1000; frame++) {
+            final double noise = 1.0 + (random.nextDouble() - 0.5) * 0.3;
+            controller.update((long) (frameTime(24 * MILLISECOND, controller.getScale()) * noise));
+            if(frame >= 500) {
+                minScale = Math.min(minScale, controller.getScale());
+                maxScale = Math.max(maxScale, controller.getScale());
+            }
+        }
+
+        // 24 ms at full resolution reach 16 ms at about 80 percent per axis
+        assertEquals(0.8f, controller.getScale(), 0.03f);
+        assertEquals(TARGET, controller.getSmoothedFrameNanos(), 0.05 * TARGET);
+        assertTrue(maxScale - minScale < 0.06f);
+    }
+
+    @Test
+    public void scale_staysWithinBounds() {
+        final ResolutionController controller = new ResolutionController(TARGET, 0.6f, 0.9f);
+        for(int frame = 0; frame < 200; frame++)
+            controller.update(100 * MILLISECOND);
+        assertEquals(0.6f, controller.getScale(), 0.0f);
+
+        // The scale recovers right away after a long time at the bound
+        for(int frame = 0; frame < 100; frame++)
+            controller.update(5 * MILLISECOND);
+        assertEquals(0.9f, controller.getScale(), 0.0f);
+    }
+
+    @Test
+    public void loadSpike_lowersAndRestoresScale() {
+        final ResolutionController controller = new ResolutionController(TARGET, 0.5f, 1.0f);
+        for(int frame = 0; frame < 100; frame++)
+            controller.update(frameTime(12 * MILLISECOND, controller.getScale()));
+        for(int frame = 0; frame < 100; frame++)
+            controller.update(frameTime(30 * MILLISECOND, controller.getScale()));
+        final float loweredScale = controller.getScale();
+        for(int frame = 0; frame < 100; frame++)
+            controller.update(frameTime(12 * MILLISECOND, controller.getScale()));
+
+        assertTrue(loweredScale < 0.8f);
+        assertEquals(1.0f, controller.getScale(), 0.0f);
+    }
+
+    @Test
+    public void pool_reusesReleasedTargets() {
+        final RecordingBackend graphics = new RecordingBackend();
+        final RenderTargetPool pool = new RenderTargetPool(graphics, 2);
+
+        final RenderTarget first = pool.acquire(256, 128, GLConstants.GL_RGBA8, GLConstants.GL_DEPTH24_STENCIL8);
+        assertEquals(256 * 128 * 8, graphics.getAllocatedBytes());
+        pool.release(first);
+        assertSame(first, pool.acquire(256, 128, GLConstants.GL_RGBA8, GLConstants.GL_DEPTH24_STENCIL8));
+        final RenderTarget other = pool.acquire(256, 128, GLConstants.GL_RGBA8, 0);
+        assertNotSame(first, other);
+        assertEquals(2, pool.getCreatedCount());
+
+        pool.release(first);
+        pool.release(other);
+        pool.beginFrame();
+        pool.beginFrame();
+        assertEquals(2, pool.getFreeCount());
+        pool.beginFrame();
+        assertEquals(0, pool.getTargetCount());
+        assertEquals(0, graphics.getAllocatedBytes());
+        assertEquals(0, pool.getAllocatedBytes());
+    }
+
+    @Test
+    public void pool_rejectsUnsupportedFormatsBeforeCreatingObjects() {
+        final RecordingBackend graphics = new RecordingBackend();
+        final RenderTargetPool pool = new RenderTargetPool(graphics, 2);
+
+        final int[][] formats = {
+                { GLConstants.GL_DEPTH_COMPONENT24, 0 },
+                { GLConstants.GL_RGBA8, GLConstants.GL_RGBA8 }
+        };
+        for(final int[] format : formats) {
+            try {
+                pool.acquire(16, 16, format[0], format[1]);
+                fail("Expected the formats to be rejected");
+            } catch(IllegalArgumentException exception) {
+                assertEquals(0, graphics.getTotalCount(RecordingBackend.Counter.CREATED_OBJECTS));
+                assertEquals(0, graphics.getTotalCount(RecordingBackend.Counter.BINDS));
+            }
+        }
+        assertEquals(0, pool.getTargetCount());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void pool_rejectsDoubleRelease() {
+        final RenderTargetPool pool = new RenderTargetPool(new RecordingBackend(), 2);
+        final RenderTarget target = pool.acquire(16, 16, GLConstants.GL_RGBA8, 0);
+        pool.release(target);
+        pool.release(target);
+    }
+
+    @Test
+    public void scaleChanges_doNotReallocate() {
+        final RecordingBackend graphics = new RecordingBackend();
+        final RenderTargetPool pool = new RenderTargetPool(graphics, 2);
+        final DynamicResolution resolution = new DynamicResolution(graphics, pool,
+                new ResolutionController(TARGET, 0.5f, 1.0f), GLConstants.GL_RGBA8, GLConstants.GL_DEPTH24_STENCIL8);
+
+        for(int frame = 0; frame < 120; frame++) {
+            pool.beginFrame();
+            graphics.beginFrame();
+            resolution.beginScene(1920, 1080);
+            resolution.endScene();
+            graphics.assertFrameBudget(RecordingBackend.Counter.DRAW_CALLS, 1);
+            resolution.update(frameTime(24 * MILLISECOND, resolution.getController().getScale()));
+        }
+
+        assertEquals(1, pool.getCreatedCount());
+        assertTrue(resolution.getSceneWidth() < 1700);
+        assertEquals(1080 * resolution.getSceneWidth() / 1920.0f, resolution.getSceneHeight(), 1.0f);
+
+        // A new screen size replaces the target, the old one is deleted once idle
+        resolution.beginScene(1080, 1920);
+        assertEquals(2, pool.getCreatedCount());
+        for(int frame = 0; frame < 3; frame++)
+            pool.beginFrame();
+        assertEquals(1, pool.getTargetCount());
+        resolution.release();
+        assertEquals(1, pool.getFreeCount());
+    }
+}
@@ -0,0 +1,163 @@
+package com.tembins.tagdk.graphics.target;
+
+import com.tembins.tagdk.graphics.backend.GLConstants;
+import com.tembins.tagdk.graphics.backend.GraphicsBackend;
+import com.tembins.tagdk.graphics.backend.RecordingBackend;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+
+import static org.junit.Assert.*;
+
+/**
+ * Compiles a bloom pipeline headlessly, checking culling, lifetimes and aliasing, and executes it
+ * against the recording backend.
+ */
+public class RenderGraphTest {
+
+    private static final int WIDTH = 1280, HEIGHT = 720;
+
+    private static final class RecordingPass implements RenderPass {
+
+        final String name;
+        final ArrayList<String> log;
+        final int[] reads;
+        final int[] textures;
+
+        RecordingPass(final String name, final ArrayList<String> log, final int... reads) {
+            this.name = name;
+            this.log = log;
+            this.reads = reads;
+            textures = new int[reads.length];
+        }
+
+        @Override
+        public void execute(final RenderGraph graph, final GraphicsBackend graphics) {
+            log.add(name);
+            for(int read = 0; read < reads.length; read++)
+                textures[read] = graph.getTexture(reads[read]);
+            graphics.drawArrays(GLConstants.GL_TRIANGLES, 0, 3);
+        }
+    }
+
+    private final ArrayList<String> log = new ArrayList<>();
+    private int color, depth, bright, blurH, blurV;
+    private RecordingPass brightPass, blurHPass, blurVPass, compositePass;
+
+    private RenderGraph bloomGraph(final GraphicsBackend graphics, final RenderTargetPool pool) {
+        final RenderGraph graph = new RenderGraph(graphics, pool);
+        graph.setScreenSize(WIDTH, HEIGHT);
+        color = graph.createTexture("Scene Color", WIDTH, HEIGHT, GLConstants.GL_RGBA16F);
+        depth = graph.createRenderbuffer("Scene Depth", WIDTH, HEIGHT, GLConstants.GL_DEPTH24_STENCIL8);
+        bright = graph.createTexture("Bright", WIDTH / 2, HEIGHT / 2, GLConstants.GL_RGBA16F);
+        blurH = graph.createTexture("Blur Horizontal", WIDTH / 2, HEIGHT / 2, GLConstants.GL_RGBA16F);
+        blurV = graph.createTexture("Blur Vertical", WIDTH / 2, HEIGHT / 2, GLConstants.GL_RGBA16F);
+
+        final int scene = graph.addPass("Scene", new RecordingPass("Scene", log));
+        graph.write(scene, color);
+        graph.write(scene, depth);
+        brightPass = new RecordingPass("Bright", log, color);
+        final int brightIndex = graph.addPass("Bright", brightPass);
+        graph.read(brightIndex, color);
+        graph.write(brightIndex, bright);
+        blurHPass = new RecordingPass("Blur Horizontal", log, bright);
+        final int horizontal = graph.addPass("Blur Horizontal", blurHPass);
+        graph.read(horizontal, bright);
+        graph.write(horizontal, blurH);
+        blurVPass = new RecordingPass("Blur Vertical", log, blurH);
+        final int vertical = graph.addPass("Blur Vertical", blurVPass);
+        graph.read(vertical, blurH);
+        graph.write(vertical, blurV);
+        compositePass = new RecordingPass("Composite", log, color, blurV);
+        final int composite = graph.addPass("Composite", compositePass);
+        graph.read(composite, color);
+        graph.read(composite, blurV);
+        graph.writeScreen(composite);
+        return graph;
+    }
+
+    @Test
+    public void compile_computesLifetimesAndAliases() {
+        final RenderGraph graph = bloomGraph(new RecordingBackend(), new RenderTargetPool(new RecordingBackend(), 2));
+        graph.compile();
+
+        assertEquals(0, graph.getFirstPass(color));
+        assertEquals(4, graph.getLastPass(color));
+        assertEquals(0, graph.getLastPass(depth));
+        assertEquals(1, graph.getFirstPass(bright));
+        assertEquals(2, graph.getLastPass(bright));
+
+        // The bright texture is dead once the vertical blur starts, which reuses it
+        assertEquals(graph.getSlot(bright), graph.getSlot(blurV));
+        assertNotEquals(graph.getSlot(bright), graph.getSlot(blurH));
+        assertNotEquals(graph.getSlot(color), graph.getSlot(blurH));
+        assertEquals(4, graph.getSlotCount());
+        assertEquals(graph.getResourceBytes() - WIDTH / 2 * HEIGHT / 2 * 8, graph.getSlotBytes());
+    }
+
+    @Test
+    public void unusedOutput_isCulled() {
+        final RecordingBackend graphics = new RecordingBackend();
+        final RenderGraph graph = bloomGraph(graphics, new RenderTargetPool(graphics, 2));
+        final int debug = graph.createTexture("Debug", 64, 64, GLConstants.GL_RGBA8);
+        final int debugPass = graph.addPass("Debug", new RecordingPass("Debug", log, color));
+        graph.read(debugPass, color);
+        graph.write(debugPass, debug);
+        graph.execute();
+
+        assertTrue(graph.isCulled(debugPass));
+        assertFalse(graph.isCulled(0));
+        assertEquals(-1, graph.getSlot(debug));
+        assertFalse(log.contains("Debug"));
+        assertEquals(5, log.size());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void readBeforeWrite_isRejected() {
+        final RenderGraph graph = new RenderGraph(new RecordingBackend(), new RenderTargetPool(new RecordingBackend(), 2));
+        final int texture = graph.createTexture("Texture", 16, 16, GLConstants.GL_RGBA8);
+        final int pass = graph.addPass("Pass", new RecordingPass("Pass", log, texture));
+        graph.read(pass, texture);
+        graph.writeScreen(pass);
+        graph.compile();
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void secondColorWrite_isRejected() {
+        final RenderGraph graph = new RenderGraph(new RecordingBackend(), new RenderTargetPool(new RecordingBackend(), 2));
+        final int pass = graph.addPass("Pass", new RecordingPass("Pass", log));
+        graph.write(pass, graph.createTexture("First", 16, 16, GLConstants.GL_RGBA8));
+        graph.write(pass, graph.createTexture("Second", 16, 16, GLConstants.GL_RGBA8));
+    }
+
+    @Test
+    public void execute_reusesObjectsAndInvalidates() {
+        final RecordingBackend graphics = new RecordingBackend();
+        final RenderTargetPool pool = new RenderTargetPool(graphics, 2);
+        final RenderGraph graph = bloomGraph(graphics, pool);
+
+        graph.execute();
+        final long createdObjects = graphics.getTotalCount(RecordingBackend.Counter.CREATED_OBJECTS);
+        // Four attachments and the framebuffers of the four offscreen passes
+        assertEquals(8, createdObjects);
+        assertEquals(4, pool.getAttachmentCount());
+        assertEquals(brightPass.textures[0], compositePass.textures[0]);
+        // The vertical blur writes into the texture the bright pass wrote
+        assertEquals(blurHPass.textures[0], compositePass.textures[1]);
+        assertNotEquals(blurVPass.textures[0], compositePass.textures[1]);
+
+        graphics.beginFrame();
+        graph.execute();
+        assertEquals(createdObjects, graphics.getTotalCount(RecordingBackend.Counter.CREATED_OBJECTS));
+        assertEquals(5, graphics.getFrameCount(RecordingBackend.Counter.DRAW_CALLS));
+        // Every first write is invalidated before the pass, the depth buffer also after it
+        assertEquals(6, graphics.getFrameCount(RecordingBackend.Counter.INVALIDATED_ATTACHMENTS));
+
+        graph.release();
+        assertEquals(4, pool.getFreeAttachmentCount());
+        final RenderGraph other = bloomGraph(graphics, pool);
+        other.execute();
+        assertEquals(4, pool.getCreatedAttachmentCount());
+    }
+}
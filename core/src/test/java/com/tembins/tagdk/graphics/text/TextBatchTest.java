@@ -0,0 +1,160 @@
+package com.tembins.tagdk.graphics.text;
+
+import com.tembins.tagdk.graphics.backend.RecordingBackend;
+import com.tembins.tagdk.util.resource.ImageData;
+
+import org.junit.Test;
+
+import java.io.IOException;
+
+import static org.junit.Assert.*;
+
+/**
+ * Builds and parses small fonts and lays out text against the recording backend.
+ */
+public class TextBatchTest {
+
+    private static final String FONT = ""
+            + "info face=\"Test Sans\" size=32\n"
+            + "common lineHeight=32 base=26 scaleW=128 scaleH=64 pages=1\n"
+            + "distanceField fieldType=sdf distanceRange=4\n"
+            + "chars count=4\n"
+            + "char id=32 x=0 y=0 width=0 height=0 xoffset=0 yoffset=0 xadvance=8 page=0\n"
+            + "char id=48 x=0 y=0 width=16 height=24 xoffset=1 yoffset=4 xadvance=16 page=0\n"
+            + "char id=49 x=16 y=0 width=16 height=24 xoffset=2 yoffset=4 xadvance=16 page=0\n"
+            + "char id=63 x=32 y=0 width=16 height=24 xoffset=0 yoffset=4 xadvance=14 page=0\n"
+            + "kerning first=48 second=49 amount=-1\n";
+
+    private static byte[] square(final int size, final int border) {
+        final byte[] coverage = new byte[size * size];
+        for(int y = border; y < size - border; y++)
+            for(int x = border; x < size - border; x++)
+                coverage[y * size + x] = (byte) 255;
+        return coverage;
+    }
+
+    @Test
+    public void distanceField_isSignedAroundOutline() {
+        final byte[] field = SdfGenerator.generate(square(24, 8), 24, 24, 4.0f);
+
+        // 3.5 pixels from the outline, 128 + 3.5 / 4 * 127
+        assertEquals(239, field[12 * 24 + 11] & 0xFF);
+        assertEquals(0, field[0] & 0xFF);
+        // The outline lies between pixel 7 and 8, half a pixel from both centers
+        assertEquals(144, field[12 * 24 + 8] & 0xFF);
+        assertEquals(112, field[12 * 24 + 7] & 0xFF);
+        assertEquals(field[8 * 24 + 12], field[12 * 24 + 8]);
+        // Diagonal distance from the corner
+        assertEquals(Math.round(128.0f + (0.5f - (float) Math.sqrt(8.0)) / 4.0f * 127.0f), field[6 * 24 + 6] & 0xFF);
+    }
+
+    @Test
+    public void parsedFont_mapsCharacters() throws IOException {
+        final FontAtlas font = FontAtlas.parse(FONT);
+
+        assertEquals(4, font.getGlyphCount());
+        assertEquals(4.0f, font.getDistanceRange(), 0.0f);
+        assertEquals(16.0f, font.getAdvance(font.getGlyph('1')), 0.0f);
+        // Unknown characters fall back to '?'
+        assertEquals(font.getGlyph('?'), font.getGlyph('Z'));
+        assertEquals(0.25f, font.u1[font.getGlyph('1')], 0.0f);
+        assertEquals((16 + 8 + 16) / 2.0f, font.measure("0 1", 16.0f), 1.0e-5f);
+        assertEquals(16.0f, font.measure("0\n1", 32.0f), 1.0e-5f);
+    }
+
+    @Test(expected = IOException.class)
+    public void fontWithoutCommonLine_isRejected() throws IOException {
+        FontAtlas.parse("char id=48 x=0 y=0 width=16 height=24 xoffset=1 yoffset=4 xadvance=16\n");
+    }
+
+    @Test
+    public void atlasBuilder_packsGlyphsIntoShelves() {
+        final SdfAtlasBuilder builder = new SdfAtlasBuilder(32, 32, 2.0f, 2);
+        // 16 coverage pixels with a border of 2 * 2 on each side become 12 atlas pixels
+        assertTrue(builder.addGlyph('a', square(16, 2), 16, 16, 0.0f, 4.0f, 18.0f));
+        assertTrue(builder.addGlyph('b', square(16, 2), 16, 16, 0.0f, 4.0f, 18.0f));
+        assertFalse(builder.addGlyph('c', new byte[40 * 40], 40, 40, 0.0f, 0.0f, 40.0f));
+        assertTrue(builder.addGlyph('d', square(16, 2), 16, 16, 0.0f, 4.0f, 18.0f));
+        assertEquals(3, builder.getGlyphCount());
+
+        final FontAtlas font = builder.buildAtlas(40.0f, 30.0f);
+        assertEquals(20.0f, font.getLineHeight(), 0.0f);
+        assertEquals(9.0f, font.getAdvance(font.getGlyph('b')), 0.0f);
+        assertEquals(-2.0f, font.offsetX[font.getGlyph('a')], 0.0f);
+        assertEquals(14.0f / 32.0f, font.u0[font.getGlyph('b')], 0.0f);
+        assertEquals(14.0f / 32.0f, font.v0[font.getGlyph('d')], 0.0f);
+        assertEquals(FontAtlas.NO_GLYPH, font.getGlyph('c'));
+
+        final ImageData image = builder.buildImage();
+        assertEquals(32 * 32 * 4, image.pixels.remaining());
+        // Inside of glyph 'a', whose field starts at pixel 1, 1
+        assertTrue((image.pixels.get((7 * 32 + 7) * 4 + 3) & 0xFF) > 128);
+        assertEquals(0, image.pixels.get(3) & 0xFF);
+    }
+
+    @Test
+    public void emptyGlyphs_takeNoAtlasRoomOrInstances() {
+        final SdfAtlasBuilder builder = new SdfAtlasBuilder(32, 32, 2.0f, 2);
+        assertTrue(builder.addGlyph(' ', new byte[0], 0, 0, 0.0f, 0.0f, 8.0f));
+        assertTrue(builder.addGlyph('1', square(16, 2), 16, 16, 0.0f, 4.0f, 18.0f));
+        assertEquals(2, builder.getGlyphCount());
+
+        final FontAtlas font = builder.buildAtlas(40.0f, 30.0f);
+        assertEquals(0.0f, font.width[font.getGlyph(' ')], 0.0f);
+        assertEquals(4.0f, font.getAdvance(font.getGlyph(' ')), 0.0f);
+        // The space did not move the shelf, the first packed glyph still starts at the padding
+        assertEquals(1.0f / 32.0f, font.u0[font.getGlyph('1')], 0.0f);
+
+        final TextBatch batch = new TextBatch(new RecordingBackend(), font, 16);
+        assertEquals(3 * 9.0f + 2 * 4.0f, batch.add("1 1 1", 0.0f, 0.0f, 20.0f, 0xFFFFFFFF), 1.0e-5f);
+        assertEquals(3, batch.getGlyphCount());
+    }
+
+    @Test
+    public void textBatch_uploadsOnlyChangedText() throws IOException {
+        final RecordingBackend graphics = new RecordingBackend();
+        final TextBatch batch = new TextBatch(graphics, FontAtlas.parse(FONT), 16);
+
+        graphics.beginFrame();
+        final float end = batch.add("1 0", 10.0f, 20.0f, 16.0f, 0xFFFFFFFF);
+        assertEquals(10.0f + (16 + 8 + 16) / 2.0f, end, 1.0e-5f);
+        assertEquals(end + (14 + 16 + 16) / 2.0f, batch.addNumber(-10, end, 20.0f, 16.0f, 0xFF0000FF), 1.0e-5f);
+        // The space has no quad, the minus sign falls back to '?'
+        assertEquals(5, batch.getGlyphCount());
+        assertEquals(5, batch.upload());
+        batch.draw();
+        assertEquals(5 * TextBatch.INSTANCE_STRIDE, graphics.getFrameCount(RecordingBackend.Counter.UPLOADED_BYTES));
+        assertEquals(1, graphics.getFrameCount(RecordingBackend.Counter.DRAW_CALLS));
+
+        graphics.beginFrame();
+        assertEquals(5, batch.upload());
+        batch.draw();
+        assertEquals(0, graphics.getFrameCount(RecordingBackend.Counter.UPLOADED_BYTES));
+        assertEquals(1, graphics.getFrameCount(RecordingBackend.Counter.DRAW_CALLS));
+
+        // Laying out the same text again, like every frame of a HUD, does not upload anything
+        graphics.beginFrame();
+        batch.clear();
+        batch.add("1 0", 10.0f, 20.0f, 16.0f, 0xFFFFFFFF);
+        batch.addNumber(-10, end, 20.0f, 16.0f, 0xFF0000FF);
+        assertEquals(5, batch.upload());
+        assertEquals(0, graphics.getFrameCount(RecordingBackend.Counter.UPLOADED_BYTES));
+
+        // A different color with the same glyph count is uploaded
+        graphics.beginFrame();
+        batch.clear();
+        batch.add("1 0", 10.0f, 20.0f, 16.0f, 0xFFFFFFFF);
+        batch.addNumber(-10, end, 20.0f, 16.0f, 0x00FF00FF);
+        assertEquals(5, batch.upload());
+        assertEquals(5 * TextBatch.INSTANCE_STRIDE, graphics.getFrameCount(RecordingBackend.Counter.UPLOADED_BYTES));
+
+        batch.clear();
+        batch.addNumber(Long.MIN_VALUE, 0.0f, 0.0f, 32.0f, 0xFFFFFFFF);
+        assertEquals(16, batch.getGlyphCount());
+        assertEquals(16, batch.upload());
+
+        batch.clear();
+        assertEquals(0, batch.upload());
+        batch.draw();
+    }
+}
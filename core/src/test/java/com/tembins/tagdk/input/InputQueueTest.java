@@ -0,0 +1,94 @@
+package com.tembins.tagdk.input;
+
+import org.junit.Test;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.*;
+
+/**
+ * Pushes and drains events on one thread, then stresses the queue with a real producer thread.
+ */
+public class InputQueueTest {
+
+    @Test
+    public void events_drainInOrderUntilTime() {
+        final InputQueue queue = new InputQueue(5);
+        final InputBatch batch = new InputBatch(16);
+        assertEquals(8, queue.getCapacity());
+
+        assertTrue(queue.push(InputQueue.TOUCH_DOWN, 3, 10.0f, 20.0f, 100L));
+        assertTrue(queue.push(InputQueue.TOUCH_MOVE, 3, 11.0f, 21.0f, 200L));
+        assertTrue(queue.push(InputQueue.KEY_DOWN, 66, 0.0f, 0.0f, 300L));
+
+        assertEquals(2, queue.drain(batch, 250L));
+        assertEquals(InputQueue.TOUCH_DOWN, batch.getType(0));
+        assertEquals(3, batch.getCode(1));
+        assertEquals(21.0f, batch.getY(1), 0.0f);
+        assertEquals(150L, queue.getMaxLatencyNanos());
+        assertEquals(100L, queue.getAverageLatencyNanos());
+
+        // The key event happened after the first tick, so it is delivered by the next one
+        assertEquals(1, queue.size());
+        assertEquals(1, queue.drain(batch, 400L));
+        assertEquals(66, batch.getCode(0));
+        assertEquals(0, queue.drain(batch, 500L));
+        assertEquals(0, batch.size());
+    }
+
+    @Test
+    public void fullQueue_dropsEvents() {
+        final InputQueue queue = new InputQueue(4);
+        final InputBatch batch = new InputBatch(3);
+
+        for(int event = 0; event < 6; event++)
+            assertEquals(event < 4, queue.push(InputQueue.TOUCH_MOVE, event, 0.0f, 0.0f, event));
+        assertEquals(2, queue.getDroppedCount());
+
+        // A small batch leaves the rest in the queue, freeing slots for wrapping around
+        assertEquals(3, queue.drain(batch, 10L));
+        assertTrue(queue.push(InputQueue.TOUCH_UP, 4, 0.0f, 0.0f, 4L));
+        assertEquals(2, queue.drain(batch, 10L));
+        assertEquals(3, batch.getCode(0));
+        assertEquals(InputQueue.TOUCH_UP, batch.getType(1));
+    }
+
+    @Test(timeout = 30000)
+    public void concurrentProducer_deliversEveryEventOnce() throws InterruptedException {
+        final int eventCount = 1000000;
+        final InputQueue queue = new InputQueue(256);
+        final AtomicReference<Throwable> failure = new AtomicReference<>();
+
+        final Thread producer = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    for(int event = 0; event < eventCount; event++)
+                        while(!queue.push(InputQueue.TOUCH_MOVE, event, event * 0.5f, -event, System.nanoTime()))
+                            Thread.yield();
+                } catch(Throwable throwable) {
+                    failure.set(throwable);
+                }
+            }
+        }, "InputProducer");
+        producer.start();
+
+        final InputBatch batch = new InputBatch(64);
+        int expected = 0;
+        while(expected < eventCount) {
+            final int count = queue.drain(batch, System.nanoTime());
+            for(int index = 0; index < count; index++, expected++) {
+                assertEquals(expected, batch.getCode(index));
+                assertEquals(expected * 0.5f, batch.getX(index), 0.0f);
+                assertEquals(-expected, batch.getY(index), 0.0f);
+            }
+            if(count == 0)
+                Thread.yield();
+        }
+        producer.join();
+
+        assertNull(failure.get());
+        assertEquals(0, queue.size());
+        assertTrue(queue.getMaxLatencyNanos() >= queue.getAverageLatencyNanos());
+    }
+}
@@ -0,0 +1,261 @@
+package com.tembins.tagdk.jobs;
+
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.*;
+
+/**
+ * Runs jobs on small job systems and checks counters, dependencies, nesting and the release of
+ * scratch memory between jobs.
+ */
+public class JobSystemTest {
+
+    private static Job incrementJob(final AtomicInteger value) {
+        return new Job() {
+            @Override
+            public void execute(final ScratchAllocator scratch) {
+                value.incrementAndGet();
+            }
+        };
+    }
+
+    @Test
+    public void counter_reachesZeroAfterAllJobs() {
+        final JobSystem jobs = new JobSystem(3);
+        try {
+            final JobCounter counter = new JobCounter();
+            final AtomicInteger executed = new AtomicInteger();
+            assertTrue(counter.isDone());
+
+            // The counter is reused for every round, like a per frame counter
+            for(int round = 1; round <= 3; round++) {
+                for(int job = 0; job < 100; job++)
+                    jobs.run(incrementJob(executed), counter);
+                counter.await();
+
+                assertTrue(counter.isDone());
+                assertEquals(round * 100, executed.get());
+            }
+        } finally {
+            jobs.shutdown();
+        }
+    }
+
+    @Test
+    public void dependentJobs_startAfterTheirDependency() {
+        final JobSystem jobs = new JobSystem(2);
+        try {
+            final JobCounter first = new JobCounter(), second = new JobCounter();
+            final AtomicInteger finished = new AtomicInteger();
+            final AtomicInteger finishedBeforeDependents = new AtomicInteger(-1);
+
+            for(int job = 0; job < 20; job++) {
+                jobs.run(new Job() {
+                    @Override
+                    public void execute(final ScratchAllocator scratch) {
+                        Thread.yield();
+                        finished.incrementAndGet();
+                    }
+                }, first);
+            }
+            jobs.run(new Job() {
+                @Override
+                public void execute(final ScratchAllocator scratch) {
+                    finishedBeforeDependents.set(finished.get());
+                }
+            }, second, first);
+            second.await();
+
+            assertEquals(20, finishedBeforeDependents.get());
+            assertTrue(first.isDone());
+
+            // A dependency which already reached zero starts the job right away
+            jobs.run(incrementJob(finished), second, first);
+            second.await();
+            assertEquals(21, finished.get());
+        } finally {
+            jobs.shutdown();
+        }
+    }
+
+    @Test
+    public void nestedJobs_awaitOnWorkersWithoutDeadlock() {
+        // A single worker can only finish if waiting jobs run the nested jobs themselves
+        final JobSystem jobs = new JobSystem(1);
+        try {
+            final JobCounter outer = new JobCounter();
+            final AtomicInteger leaves = new AtomicInteger();
+            final AtomicInteger completedParents = new AtomicInteger();
+
+            for(int parent = 0; parent < 4; parent++) {
+                jobs.run(new Job() {
+                    @Override
+                    public void execute(final ScratchAllocator scratch) {
+                        final JobCounter inner = new JobCounter();
+                        for(int child = 0; child < 8; child++)
+                            jobs.run(incrementJob(leaves), inner);
+                        inner.await();
+
+                        if(inner.isDone())
+                            completedParents.incrementAndGet();
+                    }
+                }, outer);
+            }
+            outer.await();
+
+            assertEquals(32, leaves.get());
+            assertEquals(4, completedParents.get());
+        } finally {
+            jobs.shutdown();
+        }
+    }
+
+    @Test
+    public void await_rethrowsJobFailuresOnce() {
+        final JobSystem jobs = new JobSystem(2);
+        try {
+            final JobCounter counter = new JobCounter();
+            final AtomicInteger executed = new AtomicInteger();
+            jobs.run(new Job() {
+                @Override
+                public void execute(final ScratchAllocator scratch) {
+                    throw new IllegalStateException("Broken job");
+                }
+            }, counter);
+            jobs.run(incrementJob(executed), counter);
+
+            try {
+                counter.await();
+                fail("Expected the job failure");
+            } catch(RuntimeException exception) {
+                assertTrue(exception.getCause() instanceof IllegalStateException);
+            }
+            assertEquals(1, executed.get());
+
+            // The failure is reported once, the counter stays usable
+            jobs.run(incrementJob(executed), counter);
+            counter.await();
+            assertEquals(2, executed.get());
+        } finally {
+            jobs.shutdown();
+        }
+    }
+
+    @Test
+    public void failuresWithoutCounter_goToExceptionHandler() throws InterruptedException {
+        final AtomicReference<Throwable> reported = new AtomicReference<>();
+        final CountDownLatch reportedLatch = new CountDownLatch(1);
+        final JobSystem jobs = new JobSystem(2, new Thread.UncaughtExceptionHandler() {
+            @Override
+            public void uncaughtException(final Thread thread, final Throwable throwable) {
+                reported.set(throwable);
+                reportedLatch.countDown();
+            }
+        });
+        try {
+            final IllegalStateException broken = new IllegalStateException("Broken job");
+            jobs.run(new Job() {
+                @Override
+                public void execute(final ScratchAllocator scratch) {
+                    throw broken;
+                }
+            }, null);
+
+            assertTrue(reportedLatch.await(5L, TimeUnit.SECONDS));
+            assertSame(broken, reported.get());
+        } finally {
+            jobs.shutdown();
+        }
+    }
+
+    @Test
+    public void parallelFor_processesEveryIndexOnce() {
+        final JobSystem jobs = new JobSystem(3);
+        try {
+            final AtomicIntegerArray visits = new AtomicIntegerArray(10_000);
+            final AtomicInteger oversizedRanges = new AtomicInteger();
+            jobs.parallelFor(0, visits.length(), 100, new RangeJob() {
+                @Override
+                public void execute(final int start, final int end, final ScratchAllocator scratch) {
+                    if(end - start > 100)
+                        oversizedRanges.incrementAndGet();
+                    for(int index = start; index < end; index++)
+                        visits.incrementAndGet(index);
+                }
+            });
+
+            for(int index = 0; index < visits.length(); index++)
+                assertEquals(1, visits.get(index));
+            assertEquals(0, oversizedRanges.get());
+        } finally {
+            jobs.shutdown();
+        }
+    }
+
+    @Test
+    public void scratch_isReleasedAfterEveryJob() {
+        final JobSystem jobs = new JobSystem(1);
+        try {
+            final JobCounter counter = new JobCounter();
+            final AtomicInteger leakedJobs = new AtomicInteger();
+            final AtomicInteger wrongWorker = new AtomicInteger();
+
+            for(int job = 0; job < 50; job++) {
+                jobs.run(new Job() {
+                    @Override
+                    public void execute(final ScratchAllocator scratch) {
+                        if(scratch.mark() != 0L)
+                            leakedJobs.incrementAndGet();
+                        if(JobSystem.getWorkerIndex() != 0 || JobSystem.getScratch() != scratch)
+                            wrongWorker.incrementAndGet();
+
+                        scratch.allocateFloats(1000);
+                        scratch.allocateInts(500);
+                    }
+                }, counter);
+            }
+            counter.await();
+
+            assertEquals(0, leakedJobs.get());
+            assertEquals(0, wrongWorker.get());
+            assertEquals(-1, JobSystem.getWorkerIndex());
+        } finally {
+            jobs.shutdown();
+        }
+    }
+
+    @Test
+    public void scratchAllocator_growsAndReleasesToMark() {
+        final ScratchAllocator scratch = new ScratchAllocator(8, 4);
+        assertEquals(0, scratch.allocateFloats(6));
+        final long mark = scratch.mark();
+
+        assertEquals(6, scratch.allocateFloats(2));
+        final int offset = scratch.allocateFloats(10);
+        assertEquals(8, offset);
+        assertTrue(scratch.getFloats().length >= 18);
+        scratch.getFloats()[offset + 9] = 1.0f;
+
+        assertEquals(0, scratch.allocateInts(4));
+        assertEquals(4, scratch.allocateInts(1));
+        assertTrue(scratch.getInts().length >= 5);
+
+        scratch.release(mark);
+        assertEquals(6, scratch.allocateFloats(1));
+        assertEquals(0, scratch.allocateInts(1));
+
+        scratch.release(0L);
+        assertEquals(0L, scratch.mark());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void jobSystem_rejectsZeroWorkers() {
+        new JobSystem(0);
+    }
+}
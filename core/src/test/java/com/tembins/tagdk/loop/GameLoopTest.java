@@ -0,0 +1,135 @@
+package com.tembins.tagdk.loop;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Drives the game loop scheduling with a fake clock, without any threads.
+ */
+public class GameLoopTest {
+
+    private static final long FRAME_NANOS = 16_666_667L;
+
+    private static final class FakeClock implements Clock {
+        long time;
+
+        @Override
+        public long nanoTime() {
+            return time;
+        }
+    }
+
+    private static final class CountingSimulation implements GameLoop.Simulation<float[]> {
+        int steps;
+
+        @Override
+        public void step(final float deltaTime) {
+            steps++;
+        }
+
+        @Override
+        public void writeRenderState(final float[] state, final float alpha) {
+            state[0] = steps;
+            state[1] = alpha;
+        }
+    }
+
+    @Test
+    public void tick_runsOneStepPerFrameAtMatchingRates() throws InterruptedException {
+        final FakeClock clock = new FakeClock();
+        final CountingSimulation simulation = new CountingSimulation();
+        final StateBuffer<float[]> buffer = new StateBuffer<>(new float[2], new float[2]);
+        final GameLoop<float[]> loop = new GameLoop<>(simulation, buffer, new FixedTimestep(60, 5), clock);
+
+        assertEquals(0, loop.tick(clock.time));
+        buffer.acquire();
+
+        for(int frame = 1; frame <= 120; frame++) {
+            clock.time = frame * FRAME_NANOS;
+            loop.tick(clock.time);
+            assertEquals(frame, (int) buffer.acquire()[0]);
+        }
+    }
+
+    @Test
+    public void tick_interpolatesBetweenSteps() throws InterruptedException {
+        final CountingSimulation simulation = new CountingSimulation();
+        final StateBuffer<float[]> buffer = new StateBuffer<>(new float[2], new float[2]);
+        final GameLoop<float[]> loop = new GameLoop<>(simulation, buffer, new FixedTimestep(30, 5), new FakeClock());
+
+        loop.tick(0L);
+        buffer.acquire();
+
+        // At 60 fps display and 30 Hz simulation, every other frame is half way between steps
+        assertEquals(0, loop.tick(FRAME_NANOS));
+        assertEquals(0.5f, buffer.acquire()[1], 0.01f);
+        assertEquals(1, loop.tick(2 * FRAME_NANOS));
+        assertEquals(0.0f, buffer.acquire()[1], 0.01f);
+    }
+
+    @Test
+    public void tick_dropsTimeBeyondMaxSteps() throws InterruptedException {
+        final CountingSimulation simulation = new CountingSimulation();
+        final StateBuffer<float[]> buffer = new StateBuffer<>(new float[2], new float[2]);
+        final FixedTimestep timestep = new FixedTimestep(60, 4);
+        final GameLoop<float[]> loop = new GameLoop<>(simulation, buffer, timestep, new FakeClock());
+
+        loop.tick(0L);
+        buffer.acquire();
+
+        // A one second hitch only runs the maximum amount of steps
+        assertEquals(4, loop.tick(1_000_000_000L));
+        assertEquals(56, timestep.getDroppedSteps());
+    }
+
+    @Test
+    public void failingTick_stopsLoopAndKeepsFailure() throws InterruptedException {
+        final IllegalStateException broken = new IllegalStateException("Broken render state");
+        final StateBuffer<float[]> buffer = new StateBuffer<>(new float[2], new float[2]);
+        final GameLoop<float[]> loop = new GameLoop<>(new GameLoop.Simulation<float[]>() {
+            @Override
+            public void step(final float deltaTime) {
+            }
+
+            @Override
+            public void writeRenderState(final float[] state, final float alpha) {
+                throw broken;
+            }
+        }, buffer, new FixedTimestep(60, 5), new FakeClock());
+
+        loop.start();
+        loop.requestTick(FRAME_NANOS);
+        for(int wait = 0; wait < 500 && loop.isRunning(); wait++)
+            Thread.sleep(10L);
+
+        assertFalse(loop.isRunning());
+        assertSame(broken, loop.getFailure());
+
+        // Restarting clears the failure
+        loop.stop();
+        loop.start();
+        assertTrue(loop.isRunning());
+        assertNull(loop.getFailure());
+        loop.stop();
+        assertFalse(loop.isRunning());
+    }
+
+    @Test
+    public void stateBuffer_keepsUpdateOneFrameAhead() throws InterruptedException {
+        final float[] first = new float[1], second = new float[1];
+        final StateBuffer<float[]> buffer = new StateBuffer<>(first, second);
+
+        buffer.beginWrite()[0] = 1.0f;
+        buffer.publish();
+        assertTrue(buffer.hasPublished());
+
+        // The renderer picks up the published state and keeps it until a newer one arrives
+        final float[] front = buffer.acquire();
+        assertEquals(1.0f, front[0], 0.0f);
+        assertSame(front, buffer.acquire());
+
+        // The next write goes to the other state, never to the one being rendered
+        assertNotSame(front, buffer.beginWrite());
+    }
+}
@@ -0,0 +1,101 @@
+package com.tembins.tagdk.particles;
+
+import com.tembins.tagdk.graphics.backend.RecordingBackend;
+import com.tembins.tagdk.jobs.JobSystem;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Simulates small particle systems and checks compaction, emission and the instance upload.
+ */
+public class ParticleSystemTest {
+
+    @Test
+    public void deadParticles_areCompacted() {
+        final ParticlePool pool = new ParticlePool(4);
+        pool.emit(0, 0, 0, 1, 0, 0, 1.0f, 1.0f, 0);
+        pool.emit(1, 0, 0, 1, 0, 0, 3.0f, 1.0f, 0);
+        pool.emit(2, 0, 0, 1, 0, 0, 1.0f, 1.0f, 0);
+        pool.emit(3, 0, 0, 1, 0, 0, 3.0f, 1.0f, 0);
+        assertEquals(-1, pool.emit(4, 0, 0, 0, 0, 0, 1.0f, 1.0f, 0));
+
+        pool.integrate(2.0f);
+
+        // Both survivors moved two units and the last one took the first slot
+        assertEquals(2, pool.getCount());
+        assertEquals(5.0f, pool.getX(0), 0.0f);
+        assertEquals(3.0f, pool.getX(1), 0.0f);
+        assertEquals(2.0f, pool.getAge(0), 0.0f);
+    }
+
+    @Test
+    public void emitter_reachesSteadyState() {
+        final ParticleEmitter emitter = new ParticleEmitter(1000, 7);
+        emitter.setEmissionRate(100.0f);
+        emitter.setLifetime(2.0f, 2.0f);
+        emitter.setVelocity(0.0f, 1.0f, 0.0f, 0.5f);
+        emitter.addAffector(new ForceAffector(0.0f, -9.81f, 0.0f));
+        emitter.addAffector(new DragAffector(0.1f));
+
+        for(int frame = 0; frame < 300; frame++)
+            emitter.update(1.0f / 60.0f);
+
+        // 100 particles per second living for 2 seconds
+        assertEquals(200, emitter.getPool().getCount(), 2);
+        for(int particle = 0; particle < emitter.getPool().getCount(); particle++)
+            assertTrue(emitter.getPool().getAge(particle) < 2.0f);
+    }
+
+    @Test
+    public void parallelUpdate_matchesSerialUpdate() {
+        final ParticleSystem serial = new ParticleSystem();
+        final ParticleSystem parallel = new ParticleSystem();
+        for(int index = 0; index < 8; index++) {
+            for(final ParticleSystem system : new ParticleSystem[] { serial, parallel }) {
+                final ParticleEmitter emitter = new ParticleEmitter(500, index + 1);
+                emitter.setEmissionRate(150.0f);
+                emitter.setLifetime(0.5f, 1.5f);
+                emitter.setExtent(1.0f, 1.0f, 1.0f);
+                emitter.addAffector(new ForceAffector(0.0f, -1.0f, 0.0f));
+                system.addEmitter(emitter);
+            }
+        }
+
+        final JobSystem jobs = new JobSystem(4);
+        try {
+            for(int frame = 0; frame < 120; frame++) {
+                serial.update(1.0f / 60.0f);
+                parallel.update(1.0f / 60.0f, jobs);
+            }
+        } finally {
+            jobs.shutdown();
+        }
+
+        assertEquals(serial.getParticleCount(), parallel.getParticleCount());
+        final ParticlePool expected = serial.getEmitter(3).getPool(), actual = parallel.getEmitter(3).getPool();
+        for(int particle = 0; particle < expected.getCount(); particle++)
+            assertEquals(expected.getY(particle), actual.getY(particle), 0.0f);
+    }
+
+    @Test
+    public void renderer_drawsAllParticlesInOneCall() {
+        final ParticleSystem system = new ParticleSystem();
+        for(int index = 0; index < 3; index++) {
+            final ParticleEmitter emitter = new ParticleEmitter(100, index + 1);
+            emitter.burst(100);
+            system.addEmitter(emitter);
+        }
+
+        final RecordingBackend graphics = new RecordingBackend();
+        final ParticleRenderer renderer = new ParticleRenderer(graphics, 250);
+        graphics.beginFrame();
+        assertEquals(250, renderer.upload(system));
+        renderer.draw();
+
+        assertEquals(250 * ParticleRenderer.INSTANCE_STRIDE,
+                graphics.getFrameCount(RecordingBackend.Counter.UPLOADED_BYTES));
+        graphics.assertFrameBudget(RecordingBackend.Counter.DRAW_CALLS, 1);
+    }
+}
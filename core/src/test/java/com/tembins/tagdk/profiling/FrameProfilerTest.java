@@ -0,0 +1,172 @@
+package com.tembins.tagdk.profiling;
+
+import com.tembins.tagdk.loop.Clock;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.StringWriter;
+
+import static org.junit.Assert.*;
+
+/**
+ * Records scopes and counters with a fake clock and checks the recorded and exported data.
+ */
+public class FrameProfilerTest {
+
+    private static final class FakeClock implements Clock {
+        long time;
+        int reads;
+
+        @Override
+        public long nanoTime() {
+            reads++;
+            return time;
+        }
+    }
+
+    @Test
+    public void scopes_recordNestingAndTimes() {
+        final FakeClock clock = new FakeClock();
+        final FrameProfiler profiler = new FrameProfiler("Render", 16, 4, clock);
+        final int frame = profiler.registerScope("Frame");
+        final int culling = profiler.registerScope("Culling");
+        assertEquals(culling, profiler.registerScope("Culling"));
+
+        profiler.beginFrame();
+        profiler.begin(frame);
+        clock.time = 100;
+        profiler.begin(culling);
+        clock.time = 350;
+        profiler.end();
+        clock.time = 500;
+        profiler.end();
+        profiler.endFrame();
+
+        assertEquals(2, profiler.getEventCount());
+        assertEquals(frame, profiler.getEventScope(0));
+        assertEquals(0, profiler.getEventDepth(0));
+        assertEquals(0, profiler.getEventStart(0));
+        assertEquals(500, profiler.getEventEnd(0));
+        assertEquals(culling, profiler.getEventScope(1));
+        assertEquals(1, profiler.getEventDepth(1));
+        assertEquals(250, profiler.getEventEnd(1) - profiler.getEventStart(1));
+    }
+
+    @Test
+    public void disabled_doesNotReadClock() {
+        final FakeClock clock = new FakeClock();
+        final FrameProfiler profiler = new FrameProfiler("Render", 16, 4, clock);
+        final int scope = profiler.registerScope("Scope");
+        profiler.setEnabled(false);
+
+        profiler.beginFrame();
+        profiler.begin(scope);
+        profiler.end();
+        profiler.endFrame();
+
+        assertEquals(0, clock.reads);
+        assertEquals(0, profiler.getEventCount());
+        assertEquals(0, profiler.getFrameCount());
+    }
+
+    @Test
+    public void toggling_withOpenScopesKeepsNesting() {
+        final FakeClock clock = new FakeClock();
+        final FrameProfiler profiler = new FrameProfiler("Render", 16, 4, clock);
+        final int outer = profiler.registerScope("Outer");
+        final int inner = profiler.registerScope("Inner");
+
+        // Opened while enabled, closed while disabled
+        profiler.begin(outer);
+        assertEquals(1, profiler.getEventCount());
+        assertEquals(-1, profiler.getEventEnd(0));
+        profiler.setEnabled(false);
+        clock.time = 40;
+        profiler.end();
+        assertEquals(40, profiler.getEventEnd(0));
+
+        // Opened while disabled, closed while enabled: not recorded, but still balanced
+        profiler.begin(outer);
+        profiler.setEnabled(true);
+        profiler.begin(inner);
+        clock.time = 70;
+        profiler.end();
+        profiler.end();
+        assertEquals(2, profiler.getEventCount());
+        assertEquals(inner, profiler.getEventScope(1));
+        assertEquals(1, profiler.getEventDepth(1));
+        assertEquals(70, profiler.getEventEnd(1));
+
+        // Depth is back at 0, so the next scope is outermost again
+        profiler.begin(inner);
+        profiler.end();
+        assertEquals(0, profiler.getEventDepth(2));
+
+        // Unbalanced ends are ignored
+        final int reads = clock.reads;
+        profiler.end();
+        assertEquals(reads, clock.reads);
+        assertEquals(3, profiler.getEventCount());
+    }
+
+    @Test
+    public void ringBuffer_keepsNewestEvents() {
+        final FrameProfiler profiler = new FrameProfiler("Render", 4, 4, new FakeClock());
+        final int[] scopes = new int[6];
+        for(int scope = 0; scope < scopes.length; scope++) {
+            scopes[scope] = profiler.registerScope("Scope " + scope);
+            profiler.begin(scopes[scope]);
+            profiler.end();
+        }
+
+        assertEquals(4, profiler.getEventCount());
+        assertEquals(scopes[2], profiler.getEventScope(0));
+        assertEquals(scopes[5], profiler.getEventScope(3));
+    }
+
+    @Test
+    public void counters_resetPerFrame() {
+        final FrameProfiler profiler = new FrameProfiler("Render", 4, 4, new FakeClock());
+
+        profiler.beginFrame();
+        profiler.count(FrameProfiler.Counter.DRAW_CALLS, 3);
+        profiler.count(FrameProfiler.Counter.DRAW_CALLS, 2);
+        profiler.count(FrameProfiler.Counter.UPLOADED_BYTES, 1024);
+        profiler.endFrame();
+        profiler.beginFrame();
+        profiler.count(FrameProfiler.Counter.DRAW_CALLS, 1);
+        profiler.endFrame();
+
+        assertEquals(2, profiler.getFrameCount());
+        assertEquals(5, profiler.getFrameCounter(0, FrameProfiler.Counter.DRAW_CALLS));
+        assertEquals(1024, profiler.getFrameCounter(0, FrameProfiler.Counter.UPLOADED_BYTES));
+        assertEquals(1, profiler.getFrameCounter(1, FrameProfiler.Counter.DRAW_CALLS));
+        assertEquals(0, profiler.getFrameCounter(1, FrameProfiler.Counter.UPLOADED_BYTES));
+    }
+
+    @Test
+    public void chromeTrace_containsScopesAndCounters() throws IOException {
+        final FakeClock clock = new FakeClock();
+        final FrameProfiler profiler = new FrameProfiler("Render", 16, 4, clock);
+        final int shadows = profiler.registerScope("Shadow \"pass\"");
+
+        clock.time = 2_000;
+        profiler.beginFrame();
+        profiler.begin(shadows);
+        clock.time = 3_500;
+        profiler.end();
+        profiler.count(FrameProfiler.Counter.DRAW_CALLS, 7);
+        profiler.endFrame();
+        profiler.recordGpuTime(shadows, profiler.getFrameNumber(), 800);
+
+        final StringWriter writer = new StringWriter();
+        ChromeTraceWriter.write(writer, profiler);
+        final String json = writer.toString();
+
+        assertTrue(json.startsWith("{\"traceEvents\":["));
+        assertTrue(json.contains("\"name\":\"Shadow \\\"pass\\\"\",\"ph\":\"X\",\"pid\":1,\"tid\":1,\"ts\":2.000,\"dur\":1.500"));
+        assertTrue(json.contains("\"name\":\"Render DRAW_CALLS\",\"ph\":\"C\",\"pid\":1,\"ts\":2.000,\"args\":{\"value\":7}"));
+        assertTrue(json.contains("\"tid\":2,\"ts\":2.000,\"dur\":0.800"));
+    }
+}
@@ -0,0 +1,171 @@
+package com.tembins.tagdk.scene;
+
+import com.tembins.tagdk.math.Matrix4f;
+
+import org.junit.Test;
+
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.Assert.*;
+
+/**
+ * Builds small hierarchies and compares the world matrices with products of the local matrices.
+ */
+public class TransformHierarchyTest {
+
+    private static Matrix4f translation(final float x, final float y, final float z) {
+        return new Matrix4f(
+                1.0f, 0.0f, 0.0f, x,
+                0.0f, 1.0f, 0.0f, y,
+                0.0f, 0.0f, 1.0f, z,
+                0.0f, 0.0f, 0.0f, 1.0f);
+    }
+
+    private static void assertMatrix(final Matrix4f expected, final Matrix4f actual) {
+        final float[] expectedValues = new float[16], actualValues = new float[16];
+        expected.store(expectedValues, 0);
+        actual.store(actualValues, 0);
+        assertArrayEquals(expectedValues, actualValues, 1e-4f);
+    }
+
+    @Test
+    public void nodes_areStoredAfterTheirParents() {
+        final TransformHierarchy hierarchy = new TransformHierarchy(1);
+        final int root = hierarchy.addNode(TransformHierarchy.NO_PARENT);
+        final int child = hierarchy.addNode(root);
+        final int grandchild = hierarchy.addNode(child);
+        final int sibling = hierarchy.addNode(root);
+
+        assertEquals(4, hierarchy.size());
+        for(int node = 0; node < hierarchy.size(); node++)
+            assertTrue(hierarchy.getParent(node) < node);
+        assertEquals(TransformHierarchy.NO_PARENT, hierarchy.getParent(root));
+        assertEquals(child, hierarchy.getParent(grandchild));
+        assertEquals(root, hierarchy.getParent(sibling));
+    }
+
+    @Test
+    public void update_multipliesParentAndLocalMatrices() {
+        final TransformHierarchy hierarchy = new TransformHierarchy(4);
+        final int root = hierarchy.addNode(TransformHierarchy.NO_PARENT);
+        final int child = hierarchy.addNode(root);
+        final int grandchild = hierarchy.addNode(child);
+
+        // A rotation of 90 degrees around z, scaled by 2
+        final float half = (float) Math.sqrt(0.5);
+        hierarchy.setLocalTransform(root, 1.0f, 2.0f, 3.0f, 0.0f, 0.0f, half, half, 2.0f, 2.0f, 2.0f);
+        hierarchy.setLocalTransform(child, translation(1.0f, 0.0f, 0.0f));
+        hierarchy.setLocalTranslation(grandchild, 0.0f, 1.0f, 0.0f);
+        hierarchy.update();
+
+        final Matrix4f rootWorld = new Matrix4f(
+                0.0f, -2.0f, 0.0f, 1.0f,
+                2.0f, 0.0f, 0.0f, 2.0f,
+                0.0f, 0.0f, 2.0f, 3.0f,
+                0.0f, 0.0f, 0.0f, 1.0f);
+        assertMatrix(rootWorld, hierarchy.getWorldTransform(root));
+        assertMatrix(rootWorld.mul(translation(1.0f, 0.0f, 0.0f)), hierarchy.getWorldTransform(child));
+        assertMatrix(rootWorld.mul(translation(1.0f, 1.0f, 0.0f)), hierarchy.getWorldTransform(grandchild));
+
+        // The grandchild origin ends up at (1, 2, 3) + 2 * rotated (1, 1, 0)
+        final float[] world = hierarchy.getWorldMatrices();
+        assertEquals(-1.0f, world[grandchild * 16 + 3], 1e-4f);
+        assertEquals(4.0f, world[grandchild * 16 + 7], 1e-4f);
+        assertEquals(3.0f, world[grandchild * 16 + 11], 1e-4f);
+    }
+
+    @Test
+    public void update_recomputesOnlyDirtySubtrees() {
+        final TransformHierarchy hierarchy = new TransformHierarchy(8);
+        final int root = hierarchy.addNode(TransformHierarchy.NO_PARENT);
+        final int left = hierarchy.addNode(root);
+        final int leftChild = hierarchy.addNode(left);
+        final int right = hierarchy.addNode(root);
+        final int rightChild = hierarchy.addNode(right);
+
+        hierarchy.update();
+        for(int node = 0; node < hierarchy.size(); node++)
+            assertTrue(hierarchy.hasWorldChanged(node));
+
+        hierarchy.update();
+        for(int node = 0; node < hierarchy.size(); node++)
+            assertFalse(hierarchy.hasWorldChanged(node));
+
+        hierarchy.setLocalTranslation(left, 5.0f, 0.0f, 0.0f);
+        hierarchy.update();
+        assertFalse(hierarchy.hasWorldChanged(root));
+        assertTrue(hierarchy.hasWorldChanged(left));
+        assertTrue(hierarchy.hasWorldChanged(leftChild));
+        assertFalse(hierarchy.hasWorldChanged(right));
+        assertFalse(hierarchy.hasWorldChanged(rightChild));
+        assertEquals(5.0f, hierarchy.getWorldMatrices()[leftChild * 16 + 3], 0.0f);
+
+        // Changes made through the backing array only show up after markDirty
+        hierarchy.getLocalMatrices()[root * 16 + 7] = 2.0f;
+        hierarchy.update();
+        assertEquals(0.0f, hierarchy.getWorldMatrices()[rightChild * 16 + 7], 0.0f);
+        hierarchy.markDirty(root);
+        hierarchy.update();
+        for(int node = 0; node < hierarchy.size(); node++) {
+            assertTrue(hierarchy.hasWorldChanged(node));
+            assertEquals(2.0f, hierarchy.getWorldMatrices()[node * 16 + 7], 0.0f);
+        }
+    }
+
+    @Test
+    public void parallelUpdate_matchesSerialUpdate() {
+        final Random random = new Random(11);
+        final TransformHierarchy serial = new TransformHierarchy(16);
+        final TransformHierarchy parallel = new TransformHierarchy(16);
+        for(int node = 0; node < 5000; node++) {
+            final int parent = node < 4 ? TransformHierarchy.NO_PARENT : random.nextInt(node);
+            serial.addNode(parent);
+            parallel.addNode(parent);
+
+            final float x = random.nextFloat(), y = random.nextFloat(), z = random.nextFloat();
+            serial.setLocalTranslation(node, x, y, z);
+            parallel.setLocalTranslation(node, x, y, z);
+        }
+
+        final ForkJoinPool pool = new ForkJoinPool(3);
+        try {
+            serial.update();
+            parallel.update(pool);
+            assertArrayEquals(serial.getWorldMatrices(), parallel.getWorldMatrices(), 0.0f);
+
+            serial.setLocalTranslation(7, 1.0f, 1.0f, 1.0f);
+            parallel.setLocalTranslation(7, 1.0f, 1.0f, 1.0f);
+            serial.update();
+            parallel.update(pool);
+            assertArrayEquals(serial.getWorldMatrices(), parallel.getWorldMatrices(), 0.0f);
+            for(int node = 0; node < serial.size(); node++)
+                assertEquals(serial.hasWorldChanged(node), parallel.hasWorldChanged(node));
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void setLocalTransform_rejectsNodesPastSize() {
+        final TransformHierarchy hierarchy = new TransformHierarchy(8);
+        hierarchy.addNode(TransformHierarchy.NO_PARENT);
+        // Within the capacity but not an added node
+        hierarchy.setLocalTransform(1, translation(1.0f, 0.0f, 0.0f));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void setLocalTranslation_rejectsNegativeNodes() {
+        final TransformHierarchy hierarchy = new TransformHierarchy(8);
+        hierarchy.addNode(TransformHierarchy.NO_PARENT);
+        hierarchy.setLocalTranslation(-1, 0.0f, 0.0f, 0.0f);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void getWorldTransform_rejectsNodesAfterClear() {
+        final TransformHierarchy hierarchy = new TransformHierarchy(8);
+        hierarchy.addNode(TransformHierarchy.NO_PARENT);
+        hierarchy.clear();
+        hierarchy.getWorldTransform(0);
+    }
+}
@@ -0,0 +1,155 @@
+package com.tembins.tagdk.spatial;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Compares the pairs found by sweep and prune and the spatial hash with brute force tests, while
+ * bodies move, get removed and get added.
+ */
+public class BroadphaseTest {
+
+    private static final int BODY_COUNT = 400;
+    private static final float WORLD_SIZE = 100.0f;
+
+    private static void randomize(final Random random, final float[] boxes, final int body, final int dimensions) {
+        for(int axis = 0; axis < 3; axis++) {
+            final float min = axis < dimensions ? random.nextFloat() * WORLD_SIZE : 0.0f;
+            final float size = axis < dimensions ? random.nextFloat() * 6.0f : 0.0f;
+            boxes[body * 6 + axis] = min;
+            boxes[body * 6 + 3 + axis] = min + size;
+        }
+    }
+
+    private static PairBuffer bruteForce(final float[] boxes, final boolean[] alive) {
+        final PairBuffer pairs = new PairBuffer(16);
+        for(int first = 0; first < alive.length; first++) {
+            for(int second = first + 1; second < alive.length; second++) {
+                if(!alive[first] || !alive[second])
+                    continue;
+
+                boolean overlap = true;
+                for(int axis = 0; axis < 3; axis++)
+                    overlap &= boxes[first * 6 + axis] <= boxes[second * 6 + 3 + axis]
+                            && boxes[second * 6 + axis] <= boxes[first * 6 + 3 + axis];
+                if(overlap)
+                    pairs.add(first, second);
+            }
+        }
+        return pairs;
+    }
+
+    private static void assertSamePairs(final PairBuffer expected, final PairBuffer actual) {
+        expected.sort();
+        actual.sort();
+        assertEquals(expected.size(), actual.size());
+        for(int pair = 0; pair < expected.size(); pair++) {
+            assertEquals(expected.getFirst(pair), actual.getFirst(pair));
+            assertEquals(expected.getSecond(pair), actual.getSecond(pair));
+        }
+    }
+
+    @Test
+    public void sweepAndPrune3D_matchesBruteForce() {
+        final Random random = new Random(3);
+        final float[] boxes = new float[BODY_COUNT * 6];
+        final boolean[] alive = new boolean[BODY_COUNT];
+        final SweepAndPrune broadphase = new SweepAndPrune(16);
+        final PairBuffer pairs = new PairBuffer(16);
+
+        for(int body = 0; body < BODY_COUNT; body++) {
+            randomize(random, boxes, body, 3);
+            final int offset = body * 6;
+            assertEquals(body, broadphase.add(boxes[offset], boxes[offset + 1], boxes[offset + 2],
+                    boxes[offset + 3], boxes[offset + 4], boxes[offset + 5]));
+            alive[body] = true;
+        }
+
+        for(int step = 0; step < 20; step++) {
+            // Small moves keep the endpoints nearly sorted, a few bodies teleport or get removed
+            for(int body = 0; body < BODY_COUNT; body++) {
+                if(!alive[body])
+                    continue;
+
+                final float dx = random.nextFloat() - 0.5f;
+                for(int axis = 0; axis < 6; axis += 3)
+                    boxes[body * 6 + axis] += dx;
+                if(random.nextInt(50) == 0)
+                    randomize(random, boxes, body, 3);
+
+                final int offset = body * 6;
+                broadphase.update(body, boxes[offset], boxes[offset + 1], boxes[offset + 2],
+                        boxes[offset + 3], boxes[offset + 4], boxes[offset + 5]);
+            }
+
+            final int removed = random.nextInt(BODY_COUNT);
+            if(alive[removed]) {
+                broadphase.remove(removed);
+                alive[removed] = false;
+            }
+
+            broadphase.findPairs(pairs);
+            assertSamePairs(bruteForce(boxes, alive), pairs);
+        }
+    }
+
+    @Test
+    public void sweepAndPrune2D_reportsTouchingBoxes() {
+        final SweepAndPrune broadphase = new SweepAndPrune(4);
+        final int a = broadphase.add(0.0f, 0.0f, 1.0f, 1.0f);
+        final int b = broadphase.add(1.0f, 0.5f, 2.0f, 2.0f);
+        final int c = broadphase.add(2.5f, 0.0f, 3.0f, 1.0f);
+        final PairBuffer pairs = new PairBuffer(1);
+
+        assertEquals(1, broadphase.findPairs(pairs));
+        assertEquals(a, pairs.getFirst(0));
+        assertEquals(b, pairs.getSecond(0));
+
+        broadphase.update(b, 1.5f, 0.5f, 2.5f, 2.0f);
+        assertEquals(1, broadphase.findPairs(pairs));
+        assertEquals(b, pairs.getFirst(0));
+        assertEquals(c, pairs.getSecond(0));
+    }
+
+    @Test
+    public void spatialHash_matchesBruteForce() {
+        final Random random = new Random(5);
+        final float[] boxes = new float[BODY_COUNT * 6];
+        final boolean[] alive = new boolean[BODY_COUNT];
+        final SpatialHash2D broadphase = new SpatialHash2D(4.0f, 16);
+        final PairBuffer pairs = new PairBuffer(16);
+
+        for(int body = 0; body < BODY_COUNT; body++) {
+            randomize(random, boxes, body, 2);
+            final int offset = body * 6;
+            broadphase.add(boxes[offset], boxes[offset + 1], boxes[offset + 3], boxes[offset + 4]);
+            alive[body] = true;
+        }
+        // Bodies outside of the 16 bit cell range end up in the border cells
+        boxes[0] = -1.0e7f;
+        broadphase.update(0, boxes[0], boxes[1], boxes[3], boxes[4]);
+
+        for(int step = 0; step < 10; step++) {
+            for(int body = 1; body < BODY_COUNT; body++) {
+                if(!alive[body])
+                    continue;
+
+                randomize(random, boxes, body, 2);
+                final int offset = body * 6;
+                broadphase.update(body, boxes[offset], boxes[offset + 1], boxes[offset + 3], boxes[offset + 4]);
+            }
+
+            final int removed = 1 + random.nextInt(BODY_COUNT - 1);
+            if(alive[removed]) {
+                broadphase.remove(removed);
+                alive[removed] = false;
+            }
+
+            broadphase.findPairs(pairs);
+            assertSamePairs(bruteForce(boxes, alive), pairs);
+        }
+    }
+}
@@ -0,0 +1,184 @@
+package com.tembins.tagdk.spatial;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Compares ray casts and nearest queries of the tree with brute force loops over all boxes, while
+ * proxies move, get refitted, get removed and get added.
+ */
+public class DynamicAABBTreeTest {
+
+    private static final int BOX_COUNT = 300;
+    private static final float WORLD_SIZE = 100.0f;
+    private static final float EPSILON = 1e-3f;
+
+    private static void randomize(final Random random, final float[] boxes, final int box) {
+        for(int axis = 0; axis < 3; axis++) {
+            final float min = random.nextFloat() * WORLD_SIZE;
+            boxes[box * 6 + axis] = min;
+            boxes[box * 6 + 3 + axis] = min + random.nextFloat() * 4.0f;
+        }
+    }
+
+    private static int create(final DynamicAABBTree tree, final float[] boxes, final int box) {
+        final int offset = box * 6;
+        return tree.createProxy(boxes[offset], boxes[offset + 1], boxes[offset + 2],
+                boxes[offset + 3], boxes[offset + 4], boxes[offset + 5], box);
+    }
+
+    private static float bruteForceRay(final float[] boxes, final boolean[] alive, final float[] origin,
+                                       final float[] direction, final float maxDistance) {
+        float closest = Float.POSITIVE_INFINITY;
+        for(int box = 0; box < alive.length; box++) {
+            if(!alive[box])
+                continue;
+
+            float near = 0.0f, far = Float.POSITIVE_INFINITY;
+            for(int axis = 0; axis < 3; axis++) {
+                final float t1 = (boxes[box * 6 + axis] - origin[axis]) / direction[axis];
+                final float t2 = (boxes[box * 6 + 3 + axis] - origin[axis]) / direction[axis];
+                near = Math.max(near, Math.min(t1, t2));
+                far = Math.min(far, Math.max(t1, t2));
+            }
+            if(near <= far && near <= maxDistance)
+                closest = Math.min(closest, near);
+        }
+        return closest;
+    }
+
+    private static float bruteForceNearest(final float[] boxes, final boolean[] alive, final float[] point,
+                                           final float maxDistance) {
+        float closest = Float.POSITIVE_INFINITY;
+        for(int box = 0; box < alive.length; box++) {
+            if(!alive[box])
+                continue;
+
+            float distanceSquared = 0.0f;
+            for(int axis = 0; axis < 3; axis++) {
+                final float delta = Math.max(Math.max(boxes[box * 6 + axis] - point[axis], 0.0f),
+                        point[axis] - boxes[box * 6 + 3 + axis]);
+                distanceSquared += delta * delta;
+            }
+            final float distance = (float) Math.sqrt(distanceSquared);
+            if(distance <= maxDistance)
+                closest = Math.min(closest, distance);
+        }
+        return closest;
+    }
+
+    private static void assertQueriesMatch(final Random random, final DynamicAABBTree tree,
+                                           final float[] boxes, final boolean[] alive) {
+        final float[] origin = new float[3], direction = new float[3];
+        for(int query = 0; query < 100; query++) {
+            float length = 0.0f;
+            for(int axis = 0; axis < 3; axis++) {
+                origin[axis] = random.nextFloat() * WORLD_SIZE * 1.4f - WORLD_SIZE * 0.2f;
+                direction[axis] = random.nextFloat() * 2.0f - 1.0f;
+                length += direction[axis] * direction[axis];
+            }
+            length = (float) Math.sqrt(length);
+            for(int axis = 0; axis < 3; axis++)
+                direction[axis] /= length;
+
+            final float maxDistance = query % 2 == 0 ? Float.POSITIVE_INFINITY : random.nextFloat() * WORLD_SIZE;
+            final float expected = bruteForceRay(boxes, alive, origin, direction, maxDistance);
+            final int hit = tree.rayCast(origin[0], origin[1], origin[2],
+                    direction[0], direction[1], direction[2], maxDistance);
+            if(expected == Float.POSITIVE_INFINITY) {
+                assertEquals(DynamicAABBTree.NULL_NODE, hit);
+            } else {
+                assertTrue(alive[hit]);
+                assertEquals(expected, tree.getLastHitDistance(), EPSILON);
+            }
+
+            final float nearestRange = query % 2 == 0 ? Float.POSITIVE_INFINITY : random.nextFloat() * 10.0f;
+            final float expectedNearest = bruteForceNearest(boxes, alive, origin, nearestRange);
+            final int nearest = tree.findNearest(origin[0], origin[1], origin[2], nearestRange);
+            if(expectedNearest == Float.POSITIVE_INFINITY) {
+                assertEquals(DynamicAABBTree.NULL_NODE, nearest);
+            } else {
+                assertTrue(alive[nearest]);
+                assertEquals(expectedNearest, tree.getLastHitDistance(), EPSILON);
+            }
+        }
+    }
+
+    @Test
+    public void queries_matchBruteForce() {
+        final Random random = new Random(7);
+        final float[] boxes = new float[BOX_COUNT * 6];
+        final boolean[] alive = new boolean[BOX_COUNT];
+        final int[] proxies = new int[BOX_COUNT];
+        final DynamicAABBTree tree = new DynamicAABBTree(16, 0.5f);
+
+        for(int box = 0; box < BOX_COUNT; box++) {
+            randomize(random, boxes, box);
+            proxies[box] = create(tree, boxes, box);
+            alive[box] = true;
+        }
+        assertQueriesMatch(random, tree, boxes, alive);
+
+        for(int step = 0; step < 5; step++) {
+            for(int box = 0; box < BOX_COUNT; box++) {
+                final int offset = box * 6;
+                switch(random.nextInt(4)) {
+                    case 0:
+                        randomize(random, boxes, box);
+                        if(alive[box]) {
+                            tree.moveProxy(proxies[box], boxes[offset], boxes[offset + 1], boxes[offset + 2],
+                                    boxes[offset + 3], boxes[offset + 4], boxes[offset + 5]);
+                        } else {
+                            proxies[box] = create(tree, boxes, box);
+                            alive[box] = true;
+                        }
+                        break;
+                    case 1:
+                        if(alive[box]) {
+                            for(int axis = 0; axis < 3; axis++) {
+                                final float delta = random.nextFloat() * 2.0f - 1.0f;
+                                boxes[offset + axis] += delta;
+                                boxes[offset + 3 + axis] += delta;
+                            }
+                            tree.refitProxy(proxies[box], boxes[offset], boxes[offset + 1], boxes[offset + 2],
+                                    boxes[offset + 3], boxes[offset + 4], boxes[offset + 5]);
+                        }
+                        break;
+                    case 2:
+                        if(alive[box] && random.nextInt(4) == 0) {
+                            tree.destroyProxy(proxies[box]);
+                            alive[box] = false;
+                        }
+                        break;
+                    default:
+                        break;
+                }
+            }
+            assertQueriesMatch(random, tree, boxes, alive);
+        }
+    }
+
+    @Test
+    public void rayCast_missWithInfiniteLengthReturnsNoHit() {
+        final DynamicAABBTree tree = new DynamicAABBTree(4, 0.1f);
+        tree.createProxy(10.0f, 10.0f, 10.0f, 11.0f, 11.0f, 11.0f, 1);
+        tree.createProxy(-5.0f, 3.0f, -5.0f, -4.0f, 4.0f, -4.0f, 2);
+
+        assertEquals(DynamicAABBTree.NULL_NODE, tree.rayCast(0.0f, 0.0f, 0.0f, 0.0f, -1.0f, 0.0f, Float.POSITIVE_INFINITY));
+        assertEquals(Float.POSITIVE_INFINITY, tree.getLastHitDistance(), 0.0f);
+
+        final float diagonal = (float) (1.0 / Math.sqrt(3.0));
+        assertEquals(1, tree.rayCast(0.0f, 0.0f, 0.0f, diagonal, diagonal, diagonal, Float.POSITIVE_INFINITY));
+        assertEquals(10.0f * (float) Math.sqrt(3.0), tree.getLastHitDistance(), EPSILON);
+    }
+
+    @Test
+    public void queries_onEmptyTreeFindNothing() {
+        final DynamicAABBTree tree = new DynamicAABBTree(4, 0.1f);
+        assertEquals(DynamicAABBTree.NULL_NODE, tree.rayCast(0.0f, 0.0f, 0.0f, 1.0f, 0.0f, 0.0f, Float.POSITIVE_INFINITY));
+        assertEquals(DynamicAABBTree.NULL_NODE, tree.findNearest(0.0f, 0.0f, 0.0f, Float.POSITIVE_INFINITY));
+    }
+}